@@ -3,21 +3,27 @@ package uk.ac.starlink.fits;
 import java.io.BufferedOutputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Date;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.logging.Logger;
 import nom.tam.fits.FitsException;
 import nom.tam.fits.Header;
+import nom.tam.fits.HeaderCard;
 import nom.tam.fits.HeaderCardException;
 import uk.ac.starlink.table.MultiStarTableWriter;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StarTableOutput;
+import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.StreamStarTableWriter;
 import uk.ac.starlink.table.TableSequence;
 import uk.ac.starlink.table.Tables;
@@ -39,6 +45,15 @@ import uk.ac.starlink.util.IOUtils;
  *     not 16-bit signed integers (<code>TFORMn='I'</code>).</li>
  * </ul>
  *
+ * <p>Writing a FITS table sometimes requires a first pass through the
+ * data to determine column widths or the row count.  If a
+ * {@link #setSpillPolicy spill policy} is set, serializers that support it
+ * cache the rows of non-random tables during that pass, so that
+ * the input is only read once.
+ * When writing to a file location, a pass needed only to count the rows
+ * is avoided altogether; the rows are written as they are read,
+ * and the NAXIS2 header card is updated in place afterwards.
+ *
  * @author   Mark Taylor
  * @since    27 Jun 2006
  */
@@ -46,12 +61,21 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
                                               implements MultiStarTableWriter {
 
     private String formatName_;
+    private StoragePolicy spillPolicy_;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.fits" );
 
     /** Hard limit for FITS table columns (TTYPE1000 has too many chars). */
     private static final int MAX_FITS_COLUMNS = 999;
 
+    /**
+     * Name of system property ({@value}) which, if set to "true",
+     * causes FITS writers by default to cache non-random tables using the
+     * default storage policy rather than reading them twice.
+     */
+    public static final String SINGLEPASS_PROPERTY =
+        "startable.fits.singlepass";
+
     /**
      * Constructor.
      *
@@ -59,6 +83,8 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
      */
     protected AbstractFitsTableWriter( String formatName ) {
         setFormatName( formatName );
+        spillPolicy_ = isDefaultSinglePass() ? StoragePolicy.getDefaultPolicy()
+                                             : null;
     }
 
     public String getFormatName() {
@@ -74,6 +100,30 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
         formatName_ = formatName;
     }
 
+    /**
+     * Sets the storage policy used to cache the rows of a non-random
+     * table if a first pass through the data is required before writing.
+     * If null, such tables are read twice instead.
+     * By default this is null, unless the {@link #SINGLEPASS_PROPERTY}
+     * system property is set to "true", in which case the default
+     * storage policy is used.
+     *
+     * @param  spillPolicy  policy for caching rows, or null
+     */
+    public void setSpillPolicy( StoragePolicy spillPolicy ) {
+        spillPolicy_ = spillPolicy;
+    }
+
+    /**
+     * Returns the storage policy used to cache the rows of a non-random
+     * table if a first pass through the data is required before writing.
+     *
+     * @return  policy for caching rows, or null
+     */
+    public StoragePolicy getSpillPolicy() {
+        return spillPolicy_;
+    }
+
     /**
      * Returns "application/fits".
      *
@@ -92,6 +142,17 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
         writeStarTables( Tables.singleTableSequence( table ), out );
     }
 
+    /**
+     * Writes a single table to a location.
+     * Invokes {@link #writeStarTables(uk.ac.starlink.table.TableSequence,
+     *                                 java.lang.String,
+     *                                 uk.ac.starlink.table.StarTableOutput)}.
+     */
+    public void writeStarTable( StarTable table, String location,
+                                StarTableOutput sto ) throws IOException {
+        writeStarTables( Tables.singleTableSequence( table ), location, sto );
+    }
+
     /**
      * Writes tables.  Calls {@link #writePrimaryHDU(java.io.DataOutput)}
      * to write the primary HDU.
@@ -102,9 +163,18 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
     public void writeStarTables( TableSequence tableSeq, OutputStream out )
             throws IOException {
         DataOutputStream ostrm = new DataOutputStream( out );
+        FileChannel chan = out instanceof FileBufferedOutputStream
+                         ? ((FileBufferedOutputStream) out).channel_
+                         : null;
         writePrimaryHDU( ostrm );
         for ( StarTable table; ( table = tableSeq.nextTable() ) != null; ) {
-            writeTableHDU( table, createSerializer( table ), ostrm );
+            if ( chan == null ) {
+                writeTableHDU( table, createSerializer( table ), ostrm );
+            }
+            else {
+                writeTableHDU( table, createSerializer( table, true ),
+                               ostrm, chan );
+            }
         }
         ostrm.flush();
     }
@@ -117,7 +187,9 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
                                  StarTableOutput sto ) throws IOException {
         OutputStream out = sto.getOutputStream( location );
         try {
-            out = new BufferedOutputStream( out );
+            out = out instanceof FileOutputStream
+                ? new FileBufferedOutputStream( (FileOutputStream) out )
+                : new BufferedOutputStream( out );
             writeStarTables( tableSeq, out );
             out.flush();
         }
@@ -165,6 +237,41 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
         fitser.writeData( out );
     }
 
+    /**
+     * Writes a data HDU to a file, updating the NAXIS2 header card
+     * in place after the data has been written if the serializer
+     * did not know the row count in advance.
+     *
+     * @param   table  the table to be written into the HDU
+     * @param   fitser  fits serializer initalised from <code>table</code>
+     * @param   out  destination stream
+     * @param   chan  channel for the file underlying <code>out</code>
+     */
+    private void writeTableHDU( StarTable table, FitsTableSerializer fitser,
+                                DataOutputStream out, FileChannel chan )
+            throws IOException {
+        if ( fitser.getRowCount() >= 0 ) {
+            writeTableHDU( table, fitser, out );
+            return;
+        }
+        out.flush();
+        long hdrPos = chan.position();
+        writeTableHDU( table, fitser, out );
+        out.flush();
+        long nrow = fitser.getRowCount();
+        assert nrow >= 0;
+        logger_.config( "Updating NAXIS2 to " + nrow );
+        Header hdr;
+        try {
+            hdr = fitser.getHeader();
+        }
+        catch ( HeaderCardException e ) {
+            throw (IOException) new IOException( e.getMessage() )
+                               .initCause( e );
+        }
+        patchRowCount( chan, hdrPos, hdr, nrow );
+    }
+
     /**
      * Provides a suitable serializer for a given table.
      *
@@ -174,6 +281,27 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
     protected abstract FitsTableSerializer createSerializer( StarTable table )
             throws IOException;
 
+    /**
+     * Provides a suitable serializer for a given table, optionally
+     * one which leaves the row count to be determined while writing.
+     * If <code>allowUnknownRows</code> is true, the returned serializer's
+     * <code>getRowCount</code> method may return a negative value
+     * before its data has been written; in that case the caller is
+     * responsible for fixing the NAXIS2 header card afterwards.
+     *
+     * <p>The default implementation ignores <code>allowUnknownRows</code>
+     * and calls {@link #createSerializer(uk.ac.starlink.table.StarTable)}.
+     *
+     * @param   table  table to serialize
+     * @param   allowUnknownRows  whether the row count may be left unknown
+     * @return  FITS serializer
+     */
+    protected FitsTableSerializer createSerializer( StarTable table,
+                                                    boolean allowUnknownRows )
+            throws IOException {
+        return createSerializer( table );
+    }
+
     /**
      * Adds some standard metadata header cards to a FITS table header.
      * This includes date stamp, STIL version, etc.
@@ -196,6 +324,22 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
         }
     }
 
+    /**
+     * Indicates whether the {@link #SINGLEPASS_PROPERTY} system property
+     * requests single-pass writing.
+     *
+     * @return   true iff single-pass writing is the default
+     */
+    private static boolean isDefaultSinglePass() {
+        try {
+            String prop = System.getProperty( SINGLEPASS_PROPERTY );
+            return "true".equalsIgnoreCase( prop );
+        }
+        catch ( SecurityException e ) {
+            return false;
+        }
+    }
+
     /**
      * Returns an ISO-8601 data string representing the time at which this
      * method is called.
@@ -209,4 +353,61 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
         fmt.setCalendar( new GregorianCalendar( utc, Locale.UK ) );
         return fmt.format( new Date() );
     }
+
+    /**
+     * Overwrites the NAXIS2 card of a FITS header already written to a file.
+     *
+     * @param  chan  file channel
+     * @param  hdrPos  file offset of the start of the header
+     * @param  hdr   header as written, though with the wrong NAXIS2 value
+     * @param  nrow  row count to write
+     */
+    private static void patchRowCount( FileChannel chan, long hdrPos,
+                                       Header hdr, long nrow )
+            throws IOException {
+        int icard = 0;
+        for ( Iterator it = hdr.iterator(); it.hasNext(); icard++ ) {
+            HeaderCard card = (HeaderCard) it.next();
+            if ( "NAXIS2".equals( card.getKey() ) ) {
+                String newCard;
+                try {
+                    newCard = new HeaderCard( "NAXIS2", nrow,
+                                              card.getComment() )
+                             .toString();
+                }
+                catch ( HeaderCardException e ) {
+                    throw (IOException) new IOException( e.getMessage() )
+                                       .initCause( e );
+                }
+                byte[] cardBuf = newCard.getBytes( "US-ASCII" );
+                assert cardBuf.length == 80;
+                long pos = hdrPos + 80L * icard;
+                ByteBuffer bbuf = ByteBuffer.wrap( cardBuf );
+                while ( bbuf.hasRemaining() ) {
+                    chan.write( bbuf, pos + bbuf.position() );
+                }
+                return;
+            }
+        }
+        throw new IOException( "No NAXIS2 card in header" );
+    }
+
+    /**
+     * Buffered output stream writing to a file, which provides access
+     * to the file's channel so that written headers can be updated.
+     */
+    private static class FileBufferedOutputStream
+            extends BufferedOutputStream {
+        final FileChannel channel_;
+
+        /**
+         * Constructor.
+         *
+         * @param  out  file output stream
+         */
+        FileBufferedOutputStream( FileOutputStream out ) {
+            super( out );
+            channel_ = out.getChannel();
+        }
+    }
 }
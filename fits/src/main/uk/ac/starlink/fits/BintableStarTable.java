@@ -12,6 +12,8 @@ import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.DoubleCellAccess;
+import uk.ac.starlink.table.RowRangeAccess;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.TableSink;
 import uk.ac.starlink.table.Tables;
@@ -25,6 +27,9 @@ import uk.ac.starlink.table.ValueInfo;
  * <p>The implementation varies according to whether random or sequential-only
  * access is provided by the underlying data access.
  * A factory method is provided to create an appropriate instance.
+ * Random-access instances can also supply independent row sequences
+ * over row ranges for concurrent reading, and numeric cell values
+ * as primitives without object creation (see {@link DoubleCellAccess}).
  *
  * <p>Some instances of this class hang on to file descriptors.
  * If you are in danger of running out of that resource before
@@ -35,7 +40,8 @@ import uk.ac.starlink.table.ValueInfo;
  * @author   Mark Taylor
  */
 public abstract class BintableStarTable extends AbstractStarTable
-                                        implements Closeable {
+                                        implements Closeable, RowRangeAccess,
+                                                   DoubleCellAccess {
 
     private final int ncol_;
     private final long nrow_;
@@ -363,6 +369,124 @@ public abstract class BintableStarTable extends AbstractStarTable
         return colReaders_[ icol ].readValue( stream );
     }
 
+    /**
+     * Reads a cell from a given column from the current position in
+     * a stream as a double value.
+     *
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     * @return  numeric value, or NaN for null or non-numeric values
+     */
+    protected double readDoubleCell( BasicInput stream, int icol )
+            throws IOException {
+        return colReaders_[ icol ].readDouble( stream );
+    }
+
+    /**
+     * Reads the values of a column for a contiguous range of rows
+     * as double precision values into a supplied array
+     * (optional operation).
+     * TNULLn, TSCALn and TZEROn values are taken into account as for
+     * the objects returned by <code>getCell</code>; null values,
+     * and values which are not numeric scalars, are returned as NaN.
+     * For numeric scalar columns no objects are created,
+     * so this is considerably faster than reading the cells one by one.
+     * Random-access implementations may be called concurrently
+     * from multiple threads without contention.
+     *
+     * @param  icol  column index
+     * @param  irow0  index of first row to read
+     * @param  nrow  number of rows to read
+     * @param  buf  buffer to receive values
+     * @param  off  offset into <code>buf</code> at which to write
+     *              the first value
+     * @throws  UnsupportedOperationException  if this table is not
+     *          random-access
+     */
+    public void readDoubleColumn( int icol, long irow0, int nrow,
+                                  double[] buf, int off )
+            throws IOException {
+        throw new UnsupportedOperationException( "Not random access" );
+    }
+
+    /**
+     * Reads a cell from a given column from the current position in
+     * a stream as a long integer value.
+     *
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  nullValue  value to return for null cells or values which
+     *                    are not integer scalars
+     * @return  integer value
+     */
+    protected long readLongCell( BasicInput stream, int icol,
+                                 long nullValue )
+            throws IOException {
+        return colReaders_[ icol ].readLong( stream, nullValue );
+    }
+
+    /**
+     * Reads the values of a column for a contiguous range of rows
+     * as long integer values into a supplied array
+     * (optional operation).
+     * TNULLn and TZEROn values are taken into account as for
+     * the objects returned by <code>getCell</code>.
+     * Null values, and values which are not integer scalars
+     * (including scaled integer columns), are returned as
+     * the supplied <code>nullValue</code>.
+     * Otherwise behaviour is as for
+     * {@link #readDoubleColumn readDoubleColumn}.
+     *
+     * @param  icol  column index
+     * @param  irow0  index of first row to read
+     * @param  nrow  number of rows to read
+     * @param  buf  buffer to receive values
+     * @param  off  offset into <code>buf</code> at which to write
+     *              the first value
+     * @param  nullValue  value to write for null or non-integer cells
+     * @throws  UnsupportedOperationException  if this table is not
+     *          random-access
+     */
+    public void readLongColumn( int icol, long irow0, int nrow,
+                                long[] buf, int off, long nullValue )
+            throws IOException {
+        throw new UnsupportedOperationException( "Not random access" );
+    }
+
+    /**
+     * Checks that a range of rows lies within this table.
+     *
+     * @param  irow0  index of first row
+     * @param  nrow  number of rows
+     * @throws  IllegalArgumentException  if the range is out of bounds
+     */
+    protected void checkRowRange( long irow0, long nrow ) {
+        if ( irow0 < 0 || nrow < 0 || irow0 + nrow > nrow_ ) {
+            throw new IllegalArgumentException( "Row range out of bounds" );
+        }
+    }
+
+    /**
+     * Returns true if this table has random access and the given
+     * column contains numeric scalar values.
+     */
+    public boolean hasDoubleCells( int icol ) {
+        return isRandom()
+            && Number.class
+              .isAssignableFrom( colInfos_[ icol ].getContentClass() );
+    }
+
+    /**
+     * The <code>BintableStarTable</code> implementation throws
+     * UnsupportedOperationException; random-access subclasses
+     * override it.
+     */
+    public double getDouble( long lrow, int icol ) throws IOException {
+        throw new UnsupportedOperationException( "Not random access" );
+    }
+
     /**
      * Reads a whole row of the table from the current position in a stream,
      * returning a new Object[] array.
@@ -537,6 +661,14 @@ public abstract class BintableStarTable extends AbstractStarTable
             };
         }
 
+        public boolean hasRowRanges() {
+            return false;
+        }
+
+        public RowSequence getRowRangeSequence( long irow0, long nrow ) {
+            throw new UnsupportedOperationException();
+        }
+
         public void close() throws IOException {
             inputFact_.close();
         }
@@ -589,18 +721,71 @@ public abstract class BintableStarTable extends AbstractStarTable
             }
         }
 
+        public void readDoubleColumn( int icol, long irow0, int nrow,
+                                      double[] buf, int off )
+                throws IOException {
+            checkRowRange( irow0, nrow );
+            BasicInput input = inputFact_.createInput( true );
+            try {
+                long pos = irow0 * rowLength_ + colOffsets_[ icol ];
+                for ( int i = 0; i < nrow; i++ ) {
+                    input.seek( pos );
+                    buf[ off + i ] = readDoubleCell( input, icol );
+                    pos += rowLength_;
+                }
+            }
+            finally {
+                input.close();
+            }
+        }
+
+        public void readLongColumn( int icol, long irow0, int nrow,
+                                    long[] buf, int off, long nullValue )
+                throws IOException {
+            checkRowRange( irow0, nrow );
+            BasicInput input = inputFact_.createInput( true );
+            try {
+                long pos = irow0 * rowLength_ + colOffsets_[ icol ];
+                for ( int i = 0; i < nrow; i++ ) {
+                    input.seek( pos );
+                    buf[ off + i ] = readLongCell( input, icol, nullValue );
+                    pos += rowLength_;
+                }
+            }
+            finally {
+                input.close();
+            }
+        }
+
+        public double getDouble( long lrow, int icol ) throws IOException {
+            synchronized ( randomInput_ ) {
+                randomInput_.seek( lrow * rowLength_ + colOffsets_[ icol ] );
+                return readDoubleCell( randomInput_, icol );
+            }
+        }
+
         public RowSequence getRowSequence() throws IOException {
+            return getRowRangeSequence( 0, getRowCount() );
+        }
+
+        public boolean hasRowRanges() {
+            return true;
+        }
+
+        public RowSequence getRowRangeSequence( long irow0, long nrow )
+                throws IOException {
             final BasicInput input = inputFact_.createInput( true );
             assert input.isRandom();
-            final long endPos = getRowCount() * rowLength_;
+            final long endPos = ( irow0 + nrow ) * rowLength_;
+            final long startPos = irow0 * rowLength_;
             return new RowSequence() {
-                long pos = -rowLength_;
+                long pos = startPos - rowLength_;
                 public boolean next() {
                     pos += rowLength_;
                     return pos < endPos;
                 }
                 public Object getCell( int icol ) throws IOException {
-                    if ( pos >= 0 && pos < endPos ) {
+                    if ( pos >= startPos && pos < endPos ) {
                         input.seek( pos + colOffsets_[ icol ] );
                         return readCell( input, icol );
                     }
@@ -609,7 +794,7 @@ public abstract class BintableStarTable extends AbstractStarTable
                     }
                 }
                 public Object[] getRow() throws IOException {
-                    if ( pos >= 0 && pos < endPos ) {
+                    if ( pos >= startPos && pos < endPos ) {
                         input.seek( pos );
                         return readRow( input );
                     }
@@ -19,6 +19,8 @@ import java.util.logging.Logger;
  *
  * <p><strong>Note:</strong> <strong>DO NOT</strong> use an instance
  * of this class from multiple threads - see {@link Unmapper}.
+ * To read the same file from multiple threads without each mapping
+ * its own blocks, use the instances supplied by a {@link SharedBlockCache}.
  *
  * @author   Mark Taylor
  * @since    2 Dec 2014
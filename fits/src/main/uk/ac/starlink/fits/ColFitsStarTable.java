@@ -10,6 +10,8 @@ import java.util.logging.Logger;
 import nom.tam.fits.Header;
 import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DoubleCellAccess;
+import uk.ac.starlink.table.RowRangeAccess;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.TableFormatException;
 import uk.ac.starlink.table.Tables;
@@ -32,7 +34,9 @@ import uk.ac.starlink.util.Loader;
  * @author   Mark Taylor
  * @since    21 Jun 2006
  */
-public class ColFitsStarTable extends AbstractStarTable implements Closeable {
+public class ColFitsStarTable extends AbstractStarTable
+                              implements Closeable, RowRangeAccess,
+                                         DoubleCellAccess {
 
     private final int ncol_;
     private final long nrow_;
@@ -208,18 +212,19 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                 pos += leng;
                 final String logName =
                     file.getName() + ":col" + ( icol + 1 ) + "/" + ncol_;
+                int blockSize = leng <= BlockMappedInput.DEFAULT_BLOCKSIZE
+                              ? (int) Math.max( leng, 1 )
+                              : BlockMappedInput.DEFAULT_BLOCKSIZE;
+                final SharedBlockCache cache =
+                    new SharedBlockCache( chan, offset, leng, logName,
+                                          blockSize );
                 inputFacts_[ icol ] = new InputFactory() {
                     public boolean isRandom() {
                         return true;
                     }
                     public BasicInput createInput( boolean isSeq )
                             throws IOException {
-                        return leng <= BlockMappedInput.DEFAULT_BLOCKSIZE
-                             ? new SimpleMappedInput( chan, offset, (int) leng,
-                                                      logName )
-                             : BlockMappedInput
-                              .createInput( chan, offset, leng, logName,
-                                            ! isSeq );
+                        return cache.createInput( isSeq );
                     }
                     public void close() {
                     }
@@ -265,7 +270,6 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
         if ( isRandom ) {
             randomColReaders_ = new ColumnReader[ ncol_ ];
             for ( int icol = 0; icol < ncol_; icol++ ) {
-                BasicInput input = inputFacts_[ icol ].createInput( false );
                 randomColReaders_[ icol ] =
                    new ColumnReader( valReaders_[ icol ],
                                      inputFacts_[ icol ].createInput( false ) );
@@ -322,14 +326,136 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
         }
     }
 
+    /**
+     * Reads the values of a column for a contiguous range of rows
+     * as double precision values into a supplied array
+     * (optional operation).
+     * Null values, and values which are not numeric scalars,
+     * are returned as NaN.
+     * Since column data is stored contiguously, and no objects are
+     * created for numeric scalar columns, this is considerably faster
+     * than reading the cells one by one.
+     *
+     * @param  icol  column index
+     * @param  irow0  index of first row to read
+     * @param  nrow  number of rows to read
+     * @param  buf  buffer to receive values
+     * @param  off  offset into <code>buf</code> at which to write
+     *              the first value
+     * @throws  UnsupportedOperationException  if this table is not
+     *          random-access
+     */
+    public void readDoubleColumn( int icol, long irow0, int nrow,
+                                  double[] buf, int off )
+            throws IOException {
+        if ( randomColReaders_ == null ) {
+            throw new UnsupportedOperationException( "Not random access" );
+        }
+        ColumnReader colReader = createRangeReader( icol, irow0, nrow );
+        try {
+            colReader.seekRow( irow0 );
+            colReader.readDoubles( buf, off, nrow );
+        }
+        finally {
+            colReader.close();
+        }
+    }
+
+    /**
+     * Reads the values of a column for a contiguous range of rows
+     * as long integer values into a supplied array
+     * (optional operation).
+     * Null values, and values which are not integer scalars,
+     * are returned as the supplied <code>nullValue</code>.
+     *
+     * @param  icol  column index
+     * @param  irow0  index of first row to read
+     * @param  nrow  number of rows to read
+     * @param  buf  buffer to receive values
+     * @param  off  offset into <code>buf</code> at which to write
+     *              the first value
+     * @param  nullValue  value to write for null or non-integer cells
+     * @throws  UnsupportedOperationException  if this table is not
+     *          random-access
+     */
+    public void readLongColumn( int icol, long irow0, int nrow,
+                                long[] buf, int off, long nullValue )
+            throws IOException {
+        if ( randomColReaders_ == null ) {
+            throw new UnsupportedOperationException( "Not random access" );
+        }
+        ColumnReader colReader = createRangeReader( icol, irow0, nrow );
+        try {
+            colReader.seekRow( irow0 );
+            colReader.readLongs( buf, off, nrow, nullValue );
+        }
+        finally {
+            colReader.close();
+        }
+    }
+
+    /**
+     * Returns true if this table has random access and the given
+     * column contains numeric scalar values.
+     */
+    public boolean hasDoubleCells( int icol ) {
+        return randomColReaders_ != null
+            && Number.class
+              .isAssignableFrom( getColumnInfo( icol ).getContentClass() );
+    }
+
+    public double getDouble( long irow, int icol ) throws IOException {
+        if ( randomColReaders_ == null ) {
+            throw new UnsupportedOperationException( "Not random access" );
+        }
+        ColumnReader colReader = randomColReaders_[ icol ];
+        synchronized ( colReader ) {
+            colReader.seekRow( irow );
+            return colReader.readDouble();
+        }
+    }
+
     public RowSequence getRowSequence() throws IOException {
-        return new ColFitsRowSequence();
+        return new ColFitsRowSequence( 0, nrow_ );
+    }
+
+    /**
+     * Returns true if this table has random access,
+     * so that the start of each row range can be reached cheaply.
+     */
+    public boolean hasRowRanges() {
+        return isRandom();
+    }
+
+    public RowSequence getRowRangeSequence( long irow0, long nrow )
+            throws IOException {
+        return new ColFitsRowSequence( irow0, nrow );
     }
 
     public void close() throws IOException {
         closer_.close();
     }
 
+    /**
+     * Returns a new reader for a given column, for reading a contiguous
+     * range of rows without contention for the shared readers used by
+     * <code>getCell</code> and <code>getRow</code>.
+     * The caller should close it after use.
+     *
+     * @param  icol  column index
+     * @param  irow0  index of first row to read
+     * @param  nrow  number of rows to read
+     * @return  new column reader, not yet positioned
+     */
+    private ColumnReader createRangeReader( int icol, long irow0, long nrow )
+            throws IOException {
+        if ( irow0 < 0 || nrow < 0 || irow0 + nrow > nrow_ ) {
+            throw new IllegalArgumentException( "Row range out of bounds" );
+        }
+        return new ColumnReader( valReaders_[ icol ],
+                                 inputFacts_[ icol ].createInput( true ) );
+    }
+
     /**
      * Parse the content of a FITS TDIMnn header card.
      * This has the form (a,b,c,..), where a, b, c are integer values.
@@ -461,6 +587,17 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Short( (short) ( val & 0xff ) );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        byte val = in.readByte();
+                        return ( hasBad && val == badval ) ? Double.NaN
+                                                           : ( val & 0xff );
+                    }
+                    long readLong( BasicInput in, long nullValue )
+                            throws IOException {
+                        byte val = in.readByte();
+                        return ( hasBad && val == badval ) ? nullValue
+                                                           : ( val & 0xff );
+                    }
                 };
             }
 
@@ -476,6 +613,15 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Short( (short) val );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        byte val = in.readByte();
+                        return ( hasBad && val == badval ) ? Double.NaN : val;
+                    }
+                    long readLong( BasicInput in, long nullValue )
+                            throws IOException {
+                        byte val = in.readByte();
+                        return ( hasBad && val == badval ) ? nullValue : val;
+                    }
                 };
             }
 
@@ -491,6 +637,15 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Short( val );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        short val = in.readShort();
+                        return ( hasBad && val == badval ) ? Double.NaN : val;
+                    }
+                    long readLong( BasicInput in, long nullValue )
+                            throws IOException {
+                        short val = in.readShort();
+                        return ( hasBad && val == badval ) ? nullValue : val;
+                    }
                 };
             }
 
@@ -506,6 +661,15 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Integer( val );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        int val = in.readInt();
+                        return ( hasBad && val == badval ) ? Double.NaN : val;
+                    }
+                    long readLong( BasicInput in, long nullValue )
+                            throws IOException {
+                        int val = in.readInt();
+                        return ( hasBad && val == badval ) ? nullValue : val;
+                    }
                 };
             }
 
@@ -521,6 +685,15 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Long( val );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        long val = in.readLong();
+                        return ( hasBad && val == badval ) ? Double.NaN : val;
+                    }
+                    long readLong( BasicInput in, long nullValue )
+                            throws IOException {
+                        long val = in.readLong();
+                        return ( hasBad && val == badval ) ? nullValue : val;
+                    }
                 };
             }
 
@@ -530,6 +703,9 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                     Object readValue( BasicInput in ) throws IOException {
                         return new Float( in.readFloat() );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        return in.readFloat();
+                    }
                 };
             }
 
@@ -539,6 +715,9 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                     Object readValue( BasicInput in ) throws IOException {
                         return new Double( in.readDouble() );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        return in.readDouble();
+                    }
                 };
             }
         }
@@ -722,17 +901,24 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
 
     /**
      * RowSequence implementation for this table.
+     * Each column input is read from its start, skipping to the
+     * first required row when the first cell is read.
      */
     private class ColFitsRowSequence implements RowSequence {
         private final ColumnReader[] seqColReaders_;
         private final long[] cursors_;
         private final Object[] lastValues_;
+        private final long irow0_;
+        private final long irowEnd_;
         private long irow_;
 
         /**
          * Constructor.
+         *
+         * @param  irow0  index of first row in sequence
+         * @param  nrow   number of rows in sequence
          */
-        ColFitsRowSequence() throws IOException {
+        ColFitsRowSequence( long irow0, long nrow ) throws IOException {
             seqColReaders_ = new ColumnReader[ ncol_ ];
             cursors_ = new long[ ncol_ ];
             for ( int icol = 0; icol < ncol_; icol++ ) {
@@ -742,11 +928,13 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                 cursors_[ icol ] = -1;
             }
             lastValues_ = new Object[ ncol_ ];
-            irow_ = -1;
+            irow0_ = irow0;
+            irowEnd_ = irow0 + nrow;
+            irow_ = irow0 - 1;
         }
 
         public boolean next() {
-            return ++irow_ < nrow_;
+            return ++irow_ < irowEnd_;
         }
 
         public Object getCell( int icol ) throws IOException {
@@ -759,7 +947,7 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                 lastValues_[ icol ] = colReader.readCell();
                 cursors_[ icol ] = irow_;
             }
-            else if ( irow_ < 0 ) {
+            else if ( irow_ < irow0_ ) {
                 throw new IllegalStateException();
             }
             return lastValues_[ icol ];
@@ -813,6 +1001,43 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
          */
         abstract Object readValue( BasicInput in ) throws IOException;
 
+        /**
+         * Reads a numeric value from a byte buffer as a double.
+         * Null values, and values which are not numeric scalars, give NaN.
+         * The default implementation calls <code>readValue</code>;
+         * numeric scalar readers override it to avoid object creation.
+         *
+         * @param    in   input stream, positioned at read point
+         * @return   numeric value, or NaN
+         * @throws   IOException  in case of a read error
+         */
+        double readDouble( BasicInput in ) throws IOException {
+            Object value = readValue( in );
+            return value instanceof Number ? ((Number) value).doubleValue()
+                                           : Double.NaN;
+        }
+
+        /**
+         * Reads an integer value from a byte buffer as a long.
+         * Null values, and values which are not integer scalars,
+         * give a supplied null value.
+         * The default implementation calls <code>readValue</code>;
+         * integer scalar readers override it to avoid object creation.
+         *
+         * @param    in   input stream, positioned at read point
+         * @param    nullValue  value to return for null or
+         *                      non-integer values
+         * @return   integer value, or <code>nullValue</code>
+         * @throws   IOException  in case of a read error
+         */
+        long readLong( BasicInput in, long nullValue ) throws IOException {
+            Object value = readValue( in );
+            return value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte
+                 ? ((Number) value).longValue()
+                 : nullValue;
+        }
+
         /**
          * Returns the number of bytes for a single cell of this type.
          *
@@ -871,6 +1096,43 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
             return valReader_.readValue( input_ );
         }
 
+        /**
+         * Reads the next cell value as a double.
+         *
+         * @return  numeric value, or NaN
+         */
+        double readDouble() throws IOException {
+            return valReader_.readDouble( input_ );
+        }
+
+        /**
+         * Reads a number of consecutive cell values as doubles.
+         *
+         * @param  buf  buffer to receive values
+         * @param  off  offset into buf of first value
+         * @param  n    number of values to read
+         */
+        void readDoubles( double[] buf, int off, int n ) throws IOException {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ off + i ] = valReader_.readDouble( input_ );
+            }
+        }
+
+        /**
+         * Reads a number of consecutive cell values as long integers.
+         *
+         * @param  buf  buffer to receive values
+         * @param  off  offset into buf of first value
+         * @param  n    number of values to read
+         * @param  nullValue  value for null or non-integer cells
+         */
+        void readLongs( long[] buf, int off, int n, long nullValue )
+                throws IOException {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ off + i ] = valReader_.readLong( input_, nullValue );
+            }
+        }
+
         void skipCells( long nrow ) throws IOException {
             input_.skip( itemBytes_ * nrow );
         }
@@ -67,6 +67,46 @@ abstract class ColumnReader {
      */
     abstract Object readValue( BasicInput stream ) throws IOException;
 
+    /**
+     * Reads bytes from a stream to return a numeric value as a double.
+     * The number of bytes read is the same as for <tt>readValue</tt>.
+     * Null values, and values which are not numeric scalars, give NaN.
+     *
+     * <p>The default implementation calls <tt>readValue</tt>,
+     * but readers for numeric scalar columns override it
+     * so that no objects are created.
+     *
+     * @param  stream containing bytes to turn into a value
+     * @return  numeric value, or NaN
+     */
+    double readDouble( BasicInput stream ) throws IOException {
+        Object value = readValue( stream );
+        return value instanceof Number ? ((Number) value).doubleValue()
+                                       : Double.NaN;
+    }
+
+    /**
+     * Reads bytes from a stream to return an integer value as a long.
+     * The number of bytes read is the same as for <tt>readValue</tt>.
+     * Null values, and values which are not integer scalars,
+     * give a supplied null value.
+     *
+     * <p>The default implementation calls <tt>readValue</tt>,
+     * but readers for integer scalar columns override it
+     * so that no objects are created.
+     *
+     * @param  stream containing bytes to turn into a value
+     * @param  nullValue  value to return for null or non-integer values
+     * @return  integer value, or <tt>nullValue</tt>
+     */
+    long readLong( BasicInput stream, long nullValue ) throws IOException {
+        Object value = readValue( stream );
+        return value instanceof Long || value instanceof Integer
+            || value instanceof Short || value instanceof Byte
+             ? ((Number) value).longValue()
+             : nullValue;
+    }
+
     /**
      * Returns the class which objects returned by <tt>readValue</tt>
      * will belong to.
@@ -401,6 +441,20 @@ abstract class ColumnReader {
                                         : new Byte( (byte)
                                                     ( val ^ (byte) 0x80 ) );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            byte val = stream.readByte();
+                            return ( hasBlank && val == (byte) blank )
+                                        ? Double.NaN
+                                        : (byte) ( val ^ (byte) 0x80 );
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            byte val = stream.readByte();
+                            return ( hasBlank && val == (byte) blank )
+                                        ? nullValue
+                                        : (byte) ( val ^ (byte) 0x80 );
+                        }
                     };
                 }
                 else if ( shortable ) {
@@ -415,6 +469,20 @@ abstract class ColumnReader {
                                                      ( ( val & mask ) +
                                                          sZero ) );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            byte val = stream.readByte();
+                            return ( hasBlank && val == (byte) blank )
+                                        ? Double.NaN
+                                        : (short) ( ( val & mask ) + sZero );
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            byte val = stream.readByte();
+                            return ( hasBlank && val == (byte) blank )
+                                        ? nullValue
+                                        : (short) ( ( val & mask ) + sZero );
+                        }
                     };
                 }
                 else if ( isScaled ) {
@@ -427,6 +495,14 @@ abstract class ColumnReader {
                                         : new Float( ( val & mask )
                                                      * scale + dZero );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            byte val = stream.readByte();
+                            return ( hasBlank && val == (byte) blank )
+                                        ? Double.NaN
+                                        : (float) ( ( val & mask )
+                                                    * scale + dZero );
+                        }
                     };
                 }
                 else {
@@ -439,6 +515,20 @@ abstract class ColumnReader {
                                         : new Short( (short)
                                                      ( val & mask ) );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            byte val = stream.readByte();
+                            return ( hasBlank && val == (byte) blank )
+                                        ? Double.NaN
+                                        : ( val & mask );
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            byte val = stream.readByte();
+                            return ( hasBlank && val == (byte) blank )
+                                        ? nullValue
+                                        : ( val & mask );
+                        }
                     };
                 }
                 return reader;
@@ -458,6 +548,20 @@ abstract class ColumnReader {
                                         ? null
                                         : new Integer( (int) ( val + iZero ) );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                        ? Double.NaN
+                                        : (int) ( val + iZero );
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                        ? nullValue
+                                        : (int) ( val + iZero );
+                        }
                     };
                 }
                 else if ( isScaled ) {
@@ -470,6 +574,13 @@ abstract class ColumnReader {
                                         : new Float( (float)
                                                    ( val * scale + dZero ) );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                        ? Double.NaN
+                                        : (float) ( val * scale + dZero );
+                        }
                     };
                 }
                 else {
@@ -481,6 +592,20 @@ abstract class ColumnReader {
                                         ? null
                                         : new Short( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                        ? Double.NaN
+                                        : val;
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                        ? nullValue
+                                        : val;
+                        }
                     };
                 }
                 return reader;
@@ -499,6 +624,20 @@ abstract class ColumnReader {
                                         ? null
                                         : new Long( (long) ( val + lZero ) );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                        ? Double.NaN
+                                        : (long) ( val + lZero );
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            long val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                        ? nullValue
+                                        : (long) ( val + lZero );
+                        }
                     };
                 }
                 else if ( isScaled ) {
@@ -510,6 +649,13 @@ abstract class ColumnReader {
                                         ? null
                                         : new Double( val * scale + dZero );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                        ? Double.NaN
+                                        : val * scale + dZero;
+                        }
                     };
                 }
                 else {
@@ -521,6 +667,20 @@ abstract class ColumnReader {
                                         ? null
                                         : new Integer( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                        ? Double.NaN
+                                        : val;
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                        ? nullValue
+                                        : val;
+                        }
                     };
                 }
                 return reader;
@@ -546,6 +706,22 @@ abstract class ColumnReader {
                                      : null;
                             }
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank ) ||
+                                   ! ranger.inRange( val )
+                                 ? Double.NaN
+                                 : val + Long.MAX_VALUE + 1L;
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank ) ||
+                                   ! ranger.inRange( val )
+                                 ? nullValue
+                                 : val + Long.MAX_VALUE + 1L;
+                        }
                     };
                 }
                 else if ( intOffset ) {
@@ -568,6 +744,22 @@ abstract class ColumnReader {
                                      : null;
                             }
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank ) ||
+                                   ! ranger.inRange( val )
+                                 ? Double.NaN
+                                 : val + lZero;
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank ) ||
+                                   ! ranger.inRange( val )
+                                 ? nullValue
+                                 : val + lZero;
+                        }
                     };
                 }
                 else if ( isScaled ) {
@@ -579,6 +771,13 @@ abstract class ColumnReader {
                                         ? null
                                         : new Double( val * scale + dZero );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank )
+                                        ? Double.NaN
+                                        : val * scale + dZero;
+                        }
                     };
                 }
                 else {
@@ -590,6 +789,20 @@ abstract class ColumnReader {
                                         ? null
                                         : new Long( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank )
+                                        ? Double.NaN
+                                        : val;
+                        }
+                        long readLong( BasicInput stream, long nullValue )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank )
+                                        ? nullValue
+                                        : val;
+                        }
                     };
                 }
                 return reader;
@@ -614,6 +827,11 @@ abstract class ColumnReader {
                             float val = stream.readFloat();
                             return new Float( val * scale + dZero );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            float val = stream.readFloat();
+                            return (float) ( val * scale + dZero );
+                        }
                     };
                 }
                 else {
@@ -623,6 +841,10 @@ abstract class ColumnReader {
                             float val = stream.readFloat();
                             return new Float( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            return stream.readFloat();
+                        }
                     };
                 }
                 return reader;    
@@ -636,6 +858,10 @@ abstract class ColumnReader {
                             double val = stream.readDouble();
                             return new Double( val * scale + dZero );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            return stream.readDouble() * scale + dZero;
+                        }
                     };
                 }
                 else {
@@ -645,6 +871,10 @@ abstract class ColumnReader {
                             double val = stream.readDouble();
                             return new Double( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            return stream.readDouble();
+                        }
                     };
                 }
                 return reader;
@@ -5,6 +5,9 @@ import java.io.IOException;
 
 /**
  * Writes the data for a single column of a FITS BINTABLE.
+ * Unless the serializer using it declares otherwise, an instance may be
+ * used from multiple threads concurrently, so it should not hold
+ * mutable state such as shared buffers.
  *
  * @author   Mark Taylor
  * @since    10 Jul 2008
@@ -0,0 +1,505 @@
+package uk.ac.starlink.fits;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import nom.tam.fits.FitsException;
+import nom.tam.fits.Header;
+import nom.tam.fits.HeaderCard;
+import nom.tam.util.Cursor;
+import uk.ac.starlink.table.RowSequence;
+
+/**
+ * BintableStarTable implementation for binary tables stored using the
+ * FITS tiled table compression convention.
+ * Such an HDU is a BINTABLE with <code>ZTABLE=T</code> in which each row
+ * represents a tile of <code>ZTILELEN</code> rows of the uncompressed
+ * table, and each cell is a byte-array descriptor pointing to the
+ * compressed data in the heap for that tile of the corresponding column.
+ *
+ * <p>The data is accessed one tile at a time.  When a tile is read,
+ * its columns are decompressed in parallel.
+ * Random access is supported, with the most recently used tile cached;
+ * row sequences decompress tiles independently, so that multiple
+ * sequences can be read concurrently.
+ *
+ * <p>Variable-length array columns in the uncompressed table
+ * are not currently supported.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class CompressedBintableStarTable extends BintableStarTable {
+
+    private final InputFactory inputFact_;
+    private final BasicInput randomInput_;
+    private final int ncol_;
+    private final long nrow_;
+    private final int tileLen_;
+    private final int ctileLength_;
+    private final long heapStart_;
+    private final TileCompression[] compressions_;
+    private final boolean[] isQ_;
+    private final int[] descOffsets_;
+    private final int[] cellLengths_;
+    private final int[] elSizes_;
+    private Tile tile_;
+
+    /** Pattern for a byte array descriptor TFORM value. */
+    private static final Pattern DESC_REGEX =
+        Pattern.compile( "1?([PQ])B(\\([0-9]*\\))?" );
+
+    /** Pattern for a fixed-length TFORM value. */
+    private static final Pattern FORM_REGEX =
+        Pattern.compile( "([0-9]*)([LXBIJKAEDCM])(.*)" );
+
+    /**
+     * Constructor.
+     *
+     * @param  chdr   header of the compressed BINTABLE HDU
+     * @param  uhdr   equivalent header of the uncompressed table
+     * @param  inputFact  random-access factory for the data part of the
+     *                    compressed HDU
+     */
+    private CompressedBintableStarTable( Header chdr, Header uhdr,
+                                         InputFactory inputFact )
+            throws IOException, FitsException {
+        super( uhdr, true );
+        inputFact_ = inputFact;
+        ncol_ = getColumnCount();
+        nrow_ = getRowCount();
+        HeaderCards cards = new HeaderCards( chdr );
+        if ( ! cards.containsKey( "ZTILELEN" ) ) {
+            throw new FitsException( "No ZTILELEN in compressed table" );
+        }
+        tileLen_ = cards.getIntValue( "ZTILELEN" ).intValue();
+        if ( tileLen_ <= 0 ) {
+            throw new FitsException( "Bad ZTILELEN " + tileLen_ );
+        }
+        ctileLength_ = cards.getIntValue( "NAXIS1" ).intValue();
+        long ntile = cards.getLongValue( "NAXIS2" ).longValue();
+        if ( ntile != ( nrow_ + tileLen_ - 1 ) / tileLen_ ) {
+            throw new FitsException( "Tile count " + ntile
+                                   + " inconsistent with ZTILELEN" );
+        }
+        heapStart_ = cards.containsKey( "THEAP" )
+                   ? cards.getLongValue( "THEAP" ).longValue()
+                   : ntile * ctileLength_;
+
+        /* Work out how to find and decode the data for each column. */
+        int[] colOffsets = getColumnOffsets();
+        compressions_ = new TileCompression[ ncol_ ];
+        isQ_ = new boolean[ ncol_ ];
+        descOffsets_ = new int[ ncol_ ];
+        cellLengths_ = new int[ ncol_ ];
+        elSizes_ = new int[ ncol_ ];
+        int descOff = 0;
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            int jcol = icol + 1;
+            String tform = cards.getStringValue( "TFORM" + jcol );
+            Matcher dMatcher = DESC_REGEX.matcher( tform == null
+                                                   ? "" : tform.trim() );
+            if ( ! dMatcher.matches() ) {
+                throw new FitsException( "Compressed column TFORM" + jcol
+                                       + " = " + tform
+                                       + " is not a byte array descriptor" );
+            }
+            isQ_[ icol ] = "Q".equals( dMatcher.group( 1 ) );
+            descOffsets_[ icol ] = descOff;
+            descOff += isQ_[ icol ] ? 16 : 8;
+            String zctype = cards.getStringValue( "ZCTYP" + jcol );
+            TileCompression comp = TileCompression.getCompression( zctype );
+            if ( comp == null ) {
+                throw new FitsException( "Unsupported tile compression ZCTYP"
+                                       + jcol + " = " + zctype );
+            }
+            compressions_[ icol ] = comp;
+            char formatChar = getFormatChar( uhdr, jcol );
+            elSizes_[ icol ] = TileCompression.getElementSize( formatChar );
+            if ( ! comp.isApplicable( formatChar ) ) {
+                throw new FitsException( "Compression " + comp
+                                       + " not applicable to TFORM"
+                                       + jcol + " type " + formatChar );
+            }
+            cellLengths_[ icol ] = ( icol < ncol_ - 1 ? colOffsets[ icol + 1 ]
+                                                      : getRowLength() )
+                                 - colOffsets[ icol ];
+        }
+        if ( descOff != ctileLength_ ) {
+            throw new FitsException( "Got wrong row length: " + ctileLength_
+                                   + " != " + descOff );
+        }
+        randomInput_ = inputFact.createInput( false );
+    }
+
+    public boolean isRandom() {
+        return true;
+    }
+
+    public Object getCell( long lrow, int icol ) throws IOException {
+        synchronized ( this ) {
+            return readCell( getCachedTile( lrow ).getInput( icol, lrow ),
+                             icol );
+        }
+    }
+
+    public Object[] getRow( long lrow ) throws IOException {
+        synchronized ( this ) {
+            return readTileRow( getCachedTile( lrow ), lrow );
+        }
+    }
+
+    public void readDoubleColumn( int icol, long irow0, int nrow,
+                                  double[] buf, int off )
+            throws IOException {
+        checkRowRange( irow0, nrow );
+        Tile tile = null;
+        for ( int i = 0; i < nrow; i++ ) {
+            long lrow = irow0 + i;
+            if ( tile == null || ! tile.containsRow( lrow ) ) {
+                tile = readTile( lrow / tileLen_ );
+            }
+            buf[ off + i ] = readDoubleCell( tile.getInput( icol, lrow ),
+                                             icol );
+        }
+    }
+
+    public void readLongColumn( int icol, long irow0, int nrow,
+                                long[] buf, int off, long nullValue )
+            throws IOException {
+        checkRowRange( irow0, nrow );
+        Tile tile = null;
+        for ( int i = 0; i < nrow; i++ ) {
+            long lrow = irow0 + i;
+            if ( tile == null || ! tile.containsRow( lrow ) ) {
+                tile = readTile( lrow / tileLen_ );
+            }
+            buf[ off + i ] = readLongCell( tile.getInput( icol, lrow ),
+                                           icol, nullValue );
+        }
+    }
+
+    public double getDouble( long lrow, int icol ) throws IOException {
+        synchronized ( this ) {
+            return readDoubleCell( getCachedTile( lrow )
+                                  .getInput( icol, lrow ), icol );
+        }
+    }
+
+    public RowSequence getRowSequence() throws IOException {
+        return getRowRangeSequence( 0, nrow_ );
+    }
+
+    public boolean hasRowRanges() {
+        return true;
+    }
+
+    public RowSequence getRowRangeSequence( final long irow0, long nrow ) {
+        final long irow1 = irow0 + nrow;
+        return new RowSequence() {
+            long lrow_ = irow0 - 1;
+            Tile tile_;
+            public boolean next() {
+                return ++lrow_ < irow1;
+            }
+            public Object getCell( int icol ) throws IOException {
+                return readCell( getTile().getInput( icol, lrow_ ), icol );
+            }
+            public Object[] getRow() throws IOException {
+                return readTileRow( getTile(), lrow_ );
+            }
+            public void close() {
+                tile_ = null;
+            }
+            private Tile getTile() throws IOException {
+                if ( lrow_ < irow0 || lrow_ >= irow1 ) {
+                    throw new IllegalStateException();
+                }
+                if ( tile_ == null || ! tile_.containsRow( lrow_ ) ) {
+                    tile_ = readTile( lrow_ / tileLen_ );
+                }
+                return tile_;
+            }
+        };
+    }
+
+    public void close() throws IOException {
+        randomInput_.close();
+        inputFact_.close();
+    }
+
+    /**
+     * Reads a row from an uncompressed tile.
+     *
+     * @param  tile  tile containing row
+     * @param  lrow  row index in table
+     * @return  row data
+     */
+    private Object[] readTileRow( Tile tile, long lrow ) throws IOException {
+        Object[] row = new Object[ ncol_ ];
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            row[ icol ] = readCell( tile.getInput( icol, lrow ), icol );
+        }
+        return row;
+    }
+
+    /**
+     * Returns the tile containing a given row, using a cached copy
+     * if possible.  Must be called while holding this object's lock.
+     *
+     * @param  lrow  row index
+     * @return  tile containing row
+     */
+    private Tile getCachedTile( long lrow ) throws IOException {
+        if ( tile_ == null || ! tile_.containsRow( lrow ) ) {
+            tile_ = null;
+            tile_ = readTile( lrow / tileLen_ );
+        }
+        return tile_;
+    }
+
+    /**
+     * Reads and decompresses a tile.
+     *
+     * @param  itile  tile index
+     * @return  new tile
+     */
+    private Tile readTile( long itile ) throws IOException {
+        final long irow0 = itile * tileLen_;
+        final int nr = (int) Math.min( tileLen_, nrow_ - irow0 );
+
+        /* Read the compressed data for each column. */
+        final byte[][] cdatas = new byte[ ncol_ ][];
+        synchronized ( randomInput_ ) {
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                randomInput_.seek( itile * ctileLength_
+                                 + descOffsets_[ icol ] );
+                long count;
+                long offset;
+                if ( isQ_[ icol ] ) {
+                    count = randomInput_.readLong();
+                    offset = randomInput_.readLong();
+                }
+                else {
+                    count = randomInput_.readInt() & 0xffffffffL;
+                    offset = randomInput_.readInt() & 0xffffffffL;
+                }
+                if ( count > Integer.MAX_VALUE ) {
+                    throw new IOException( "Compressed tile too large" );
+                }
+                byte[] cdata = new byte[ (int) count ];
+                randomInput_.seek( heapStart_ + offset );
+                for ( int i = 0; i < cdata.length; i++ ) {
+                    cdata[ i ] = randomInput_.readByte();
+                }
+                cdatas[ icol ] = cdata;
+            }
+        }
+
+        /* Decompress the columns, in parallel if there are several. */
+        @SuppressWarnings("unchecked")
+        Callable<byte[]>[] tasks = new Callable[ ncol_ ];
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            final int ic = icol;
+            tasks[ ic ] = new Callable<byte[]>() {
+                public byte[] call() throws IOException {
+                    return uncompressColumn( ic, cdatas[ ic ], nr );
+                }
+            };
+        }
+        byte[][] udatas = TileCompression.executeTasks( tasks );
+        return new Tile( irow0, nr, udatas );
+    }
+
+    /**
+     * Decompresses the data for one tile of a column.
+     *
+     * @param  icol  column index
+     * @param  cdata  compressed data
+     * @param  nr   number of rows in tile
+     * @return  uncompressed data
+     */
+    private byte[] uncompressColumn( int icol, byte[] cdata, int nr )
+            throws IOException {
+        int nbyte = nr * cellLengths_[ icol ];
+        byte[] udata = compressions_[ icol ]
+                      .uncompress( cdata, elSizes_[ icol ], nbyte );
+        if ( udata.length != nbyte ) {
+            throw new IOException( "Wrong uncompressed size for column "
+                                 + ( icol + 1 ) + " tile: "
+                                 + udata.length + " != " + nbyte );
+        }
+        return udata;
+    }
+
+    /**
+     * Indicates whether a header represents a compressed binary table.
+     *
+     * @param  hdr  FITS header
+     * @return  true iff hdr is a BINTABLE header with ZTABLE=T
+     */
+    public static boolean isCompressedTable( Header hdr ) {
+        return "BINTABLE".equals( hdr.getStringValue( "XTENSION" ) )
+            && hdr.getBooleanValue( "ZTABLE", false );
+    }
+
+    /**
+     * Returns a table reading a compressed BINTABLE HDU.
+     *
+     * @param  hdr  FITS header of compressed BINTABLE HDU
+     * @param  inputFact  factory for access to the data part of the HDU;
+     *                    must be random-access
+     * @return  new table
+     */
+    public static BintableStarTable createTable( Header hdr,
+                                                 InputFactory inputFact )
+            throws IOException, FitsException {
+        if ( ! inputFact.isRandom() ) {
+            throw new IllegalArgumentException( "not random" );
+        }
+        return new CompressedBintableStarTable( hdr, uncompressHeader( hdr ),
+                                                inputFact );
+    }
+
+    /**
+     * Returns a header describing the uncompressed table corresponding
+     * to a compressed BINTABLE header.
+     *
+     * @param  chdr  compressed table header
+     * @return  uncompressed table header
+     */
+    static Header uncompressHeader( Header chdr ) throws FitsException {
+        if ( chdr.getLongValue( "ZPCOUNT", 0 ) != 0 ) {
+            throw new FitsException( "Variable-length columns not supported"
+                                   + " in compressed tables" );
+        }
+        Header uhdr = new Header();
+        Cursor out = uhdr.iterator();
+        for ( Iterator it = chdr.iterator(); it.hasNext(); ) {
+            HeaderCard card = (HeaderCard) it.next();
+            String key = card.getKey();
+            HeaderCard ucard;
+            if ( key == null ) {
+                ucard = card;
+            }
+            else if ( "NAXIS1".equals( key ) || "NAXIS2".equals( key ) ) {
+                String zkey = "Z" + key;
+                if ( ! chdr.containsKey( zkey ) ) {
+                    throw new FitsException( "No " + zkey
+                                           + " in compressed table" );
+                }
+                ucard = new HeaderCard( key, chdr.getLongValue( zkey, 0 ),
+                                        card.getComment() );
+            }
+            else if ( "PCOUNT".equals( key ) ) {
+                ucard = new HeaderCard( key, 0, card.getComment() );
+            }
+            else if ( key.startsWith( "TFORM" ) ) {
+                String zkey = "ZFORM" + key.substring( 5 );
+                String zform = chdr.getStringValue( zkey );
+                if ( zform == null ) {
+                    throw new FitsException( "No " + zkey
+                                           + " in compressed table" );
+                }
+                ucard = new HeaderCard( key, zform.trim(), card.getComment() );
+            }
+            else if ( "THEAP".equals( key ) ||
+                      "ZTABLE".equals( key ) ||
+                      "ZTILELEN".equals( key ) ||
+                      "ZTHEAP".equals( key ) ||
+                      "ZNAXIS1".equals( key ) ||
+                      "ZNAXIS2".equals( key ) ||
+                      "ZPCOUNT".equals( key ) ||
+                      key.startsWith( "ZFORM" ) ||
+                      key.startsWith( "ZCTYP" ) ) {
+                ucard = null;
+            }
+            else {
+                ucard = card;
+            }
+            if ( ucard != null ) {
+                if ( ucard.isKeyValuePair() ) {
+                    out.add( ucard.getKey(), ucard );
+                }
+                else {
+                    out.add( ucard );
+                }
+            }
+        }
+        return uhdr;
+    }
+
+    /**
+     * Returns the data type letter for a column in an uncompressed
+     * table header.
+     *
+     * @param  hdr  uncompressed header
+     * @param  jcol  1-based column index
+     * @return  TFORMn data type character
+     */
+    private static char getFormatChar( Header hdr, int jcol )
+            throws FitsException {
+        String tform = hdr.getStringValue( "TFORM" + jcol );
+        Matcher matcher = FORM_REGEX.matcher( tform == null ? ""
+                                                            : tform.trim() );
+        if ( ! matcher.matches() ) {
+            throw new FitsException( "Unsupported compressed column format"
+                                   + " ZFORM" + jcol + " = " + tform );
+        }
+        return matcher.group( 2 ).charAt( 0 );
+    }
+
+    /**
+     * Holds the uncompressed data for one tile.
+     * Instances are not thread-safe.
+     */
+    private class Tile {
+        private final long irow0_;
+        private final int nrow_;
+        private final BasicInput[] inputs_;
+
+        /**
+         * Constructor.
+         *
+         * @param  irow0  index of first row in tile
+         * @param  nrow   number of rows in tile
+         * @param  udatas  per-column uncompressed data
+         */
+        Tile( long irow0, int nrow, byte[][] udatas ) {
+            irow0_ = irow0;
+            nrow_ = nrow;
+            inputs_ = new BasicInput[ udatas.length ];
+            for ( int icol = 0; icol < udatas.length; icol++ ) {
+                inputs_[ icol ] =
+                    InputFactory
+                   .createByteBufferInput( ByteBuffer.wrap( udatas[ icol ] ) );
+            }
+        }
+
+        /**
+         * Indicates whether this tile contains a given row.
+         *
+         * @param  lrow  row index
+         * @return  true iff row is in this tile
+         */
+        boolean containsRow( long lrow ) {
+            return lrow >= irow0_ && lrow < irow0_ + nrow_;
+        }
+
+        /**
+         * Returns an input positioned at the start of a given cell.
+         *
+         * @param  icol  column index
+         * @param  lrow  row index, which must be in this tile
+         * @return  positioned input
+         */
+        BasicInput getInput( int icol, long lrow ) throws IOException {
+            BasicInput input = inputs_[ icol ];
+            input.seek( ( lrow - irow0_ ) * cellLengths_[ icol ] );
+            return input;
+        }
+    }
+}
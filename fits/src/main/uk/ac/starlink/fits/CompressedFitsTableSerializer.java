@@ -0,0 +1,402 @@
+package uk.ac.starlink.fits;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import nom.tam.fits.Header;
+import nom.tam.fits.HeaderCard;
+import nom.tam.fits.HeaderCardException;
+import uk.ac.starlink.table.ByteStore;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+
+/**
+ * FitsTableSerializer which writes binary tables using the FITS
+ * tiled table compression convention.
+ *
+ * <p>The uncompressed row data is generated by the superclass,
+ * divided into tiles of a fixed number of rows, and each column of
+ * each tile is compressed separately; the columns of a tile are
+ * compressed in parallel.  Since the header has to record the size
+ * of the compressed data, all the compression is done, into a
+ * scratch buffer obtained from a storage policy, before the header
+ * is generated.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class CompressedFitsTableSerializer extends StandardFitsTableSerializer {
+
+    private final int tileLen_;
+    private final TileCompression compression_;
+    private final StoragePolicy storagePolicy_;
+    private ByteStore heapStore_;
+    private long[] descriptors_;
+    private int ntile_;
+
+    /**
+     * Constructor.
+     *
+     * @param  table  table to write
+     * @param  allowSignedByte  if true, bytes written as FITS signed bytes
+     *         (TZERO=-128), if false bytes written as signed shorts
+     * @param  spillPolicy  policy for caching rows of a non-random table
+     *         during the first pass, or null to read the table twice
+     * @param  storagePolicy  policy for acquiring a scratch buffer to hold
+     *         the compressed data
+     * @param  tileLen   number of rows per tile
+     * @param  compression  compression to use for all columns to which it
+     *         is applicable, or null for a sensible per-column choice
+     */
+    CompressedFitsTableSerializer( StarTable table, boolean allowSignedByte,
+                                   StoragePolicy spillPolicy,
+                                   StoragePolicy storagePolicy, int tileLen,
+                                   TileCompression compression )
+            throws IOException {
+        super( allowSignedByte, spillPolicy );
+        if ( tileLen <= 0 ) {
+            throw new IllegalArgumentException( "Bad tile length " + tileLen );
+        }
+        storagePolicy_ = storagePolicy;
+        tileLen_ = tileLen;
+        compression_ = compression;
+        init( table );
+    }
+
+    public Header getHeader() throws HeaderCardException {
+        Header hdr = super.getHeader();
+        try {
+            compressData();
+        }
+        catch ( IOException e ) {
+            throw (HeaderCardException)
+                  new HeaderCardException( "Table compression failed: "
+                                         + e.getMessage() ).initCause( e );
+        }
+        ColumnWriter[] writers = getUsedColumnWriters();
+        int ncol = writers.length;
+        int rowLength = 0;
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            rowLength += writers[ icol ].getLength();
+        }
+
+        /* Adjust the uncompressed table header to describe the table of
+         * tile descriptors, recording the original values in Z* cards. */
+        final List cardList = new ArrayList();
+        for ( Iterator it = hdr.iterator(); it.hasNext(); ) {
+            HeaderCard card = (HeaderCard) it.next();
+            String key = card.getKey();
+            if ( "NAXIS1".equals( key ) ) {
+                cardList.add( new HeaderCard( "NAXIS1", 16 * ncol,
+                                              "width of descriptor table" ) );
+            }
+            else if ( "NAXIS2".equals( key ) ) {
+                cardList.add( new HeaderCard( "NAXIS2", ntile_,
+                                              "number of tiles" ) );
+            }
+            else if ( "PCOUNT".equals( key ) ) {
+                cardList.add( new HeaderCard( "PCOUNT",
+                                              heapStore_.getLength(),
+                                              "size of compressed data" ) );
+            }
+            else if ( "TFIELDS".equals( key ) ) {
+                cardList.add( card );
+                cardList.add( new HeaderCard( "ZTABLE", true,
+                                              "compressed table" ) );
+                cardList.add( new HeaderCard( "ZTILELEN", tileLen_,
+                                              "rows per tile" ) );
+                cardList.add( new HeaderCard( "ZNAXIS1", rowLength,
+                                              "uncompressed table width" ) );
+                cardList.add( new HeaderCard( "ZNAXIS2", getRowCount(),
+                                              "uncompressed row count" ) );
+                cardList.add( new HeaderCard( "ZPCOUNT", 0,
+                                              "uncompressed heap size" ) );
+            }
+            else if ( key != null && key.startsWith( "TFORM" ) ) {
+                String jcol = key.substring( 5 );
+                int icol = Integer.parseInt( jcol ) - 1;
+                cardList.add( new HeaderCard( key, "1QB",
+                                              "tile descriptor" ) );
+                cardList.add( new HeaderCard( "ZFORM" + jcol,
+                                              card.getValue(),
+                                              card.getComment() ) );
+                cardList.add( new HeaderCard( "ZCTYP" + jcol,
+                                              getCompression( writers[ icol ] )
+                                             .getName(),
+                                              "compression algorithm" ) );
+            }
+            else {
+                cardList.add( card );
+            }
+        }
+        return new Header() {
+            {
+                for ( Iterator it = cardList.iterator(); it.hasNext(); ) {
+                    addLine( (HeaderCard) it.next() );
+                }
+            }
+        };
+    }
+
+    public void writeData( DataOutput out ) throws IOException {
+        try {
+            compressData();
+        }
+        catch ( IOException e ) {
+            discardHeap();
+            throw e;
+        }
+        try {
+            for ( int i = 0; i < descriptors_.length; i++ ) {
+                out.writeLong( descriptors_[ i ] );
+            }
+            OutputStream ostrm = toStream( out );
+            heapStore_.copy( ostrm );
+            ostrm.flush();
+            long nbyte = descriptors_.length * 8L + heapStore_.getLength();
+            int over = (int) ( nbyte % 2880 );
+            if ( over > 0 ) {
+                out.write( new byte[ 2880 - over ] );
+            }
+        }
+        finally {
+            discardHeap();
+        }
+    }
+
+    /**
+     * Returns the compression algorithm used for the column written by
+     * a given column writer.
+     *
+     * @param  writer  column writer
+     * @return  compression
+     */
+    private TileCompression getCompression( ColumnWriter writer ) {
+        char formatChar = writer.getFormatChar();
+        if ( compression_ != null && compression_.isApplicable( formatChar ) ) {
+            return compression_;
+        }
+        else {
+            return TileCompression.getElementSize( formatChar ) > 1
+                 ? TileCompression.GZIP_2
+                 : TileCompression.GZIP_1;
+        }
+    }
+
+    /**
+     * Returns the column writers for the columns actually being written.
+     *
+     * @return  non-null column writers
+     */
+    private ColumnWriter[] getUsedColumnWriters() {
+        List<ColumnWriter> list = new ArrayList<ColumnWriter>();
+        ColumnWriter[] writers = getColumnWriters();
+        for ( int icol = 0; icol < writers.length; icol++ ) {
+            if ( writers[ icol ] != null ) {
+                list.add( writers[ icol ] );
+            }
+        }
+        return list.toArray( new ColumnWriter[ 0 ] );
+    }
+
+    /**
+     * Reads the table data and compresses it into the heap store,
+     * recording the tile descriptors.  Does nothing if it has already
+     * been done.
+     */
+    private void compressData() throws IOException {
+        if ( heapStore_ != null ) {
+            return;
+        }
+        long nrow = getRowCount();
+        long ntile = ( nrow + tileLen_ - 1 ) / tileLen_;
+        ColumnWriter[] writers = getUsedColumnWriters();
+        int ncol = writers.length;
+        if ( ntile * ncol * 2 > Integer.MAX_VALUE ) {
+            throw new IOException( "Too many tiles (" + ntile + ")" );
+        }
+        ntile_ = (int) ntile;
+        descriptors_ = new long[ ntile_ * ncol * 2 ];
+        heapStore_ = storagePolicy_.makeByteStore();
+        TileOutputStream tileOut = new TileOutputStream( writers, nrow );
+        super.writeData( new DataOutputStream( tileOut ) );
+        tileOut.finish();
+    }
+
+    /**
+     * Releases resources associated with the heap store.
+     */
+    private void discardHeap() {
+        if ( heapStore_ != null ) {
+            heapStore_.close();
+        }
+    }
+
+    /**
+     * Gets an OutputStream based on a given DataOutput.
+     *
+     * @param   dataOut  data output object
+     * @return   stream which writes to the same place as <code>dataOut</code>
+     */
+    private static OutputStream toStream( final DataOutput dataOut ) {
+        if ( dataOut instanceof OutputStream ) {
+            return (OutputStream) dataOut;
+        }
+        else {
+            return new OutputStream() {
+                public void write( int b ) throws IOException {
+                    dataOut.write( b );
+                }
+                public void write( byte[] buf ) throws IOException {
+                    dataOut.write( buf );
+                }
+                public void write( byte[] buf, int off, int leng )
+                        throws IOException {
+                    dataOut.write( buf, off, leng );
+                }
+            };
+        }
+    }
+
+    /**
+     * OutputStream which accepts the uncompressed row data of the table,
+     * and writes compressed tiles to the heap store.
+     * Any bytes written beyond the end of the expected row data
+     * (padding) are ignored.
+     */
+    private class TileOutputStream extends OutputStream {
+
+        private final int ncol_;
+        private final int rowLength_;
+        private final int[] colOffsets_;
+        private final int[] colLengths_;
+        private final int[] elSizes_;
+        private final TileCompression[] compressions_;
+        private final long nbyte_;
+        private final byte[] tileBuf_;
+        private final OutputStream heapOut_;
+        private long nWritten_;
+        private int nBuf_;
+        private int itile_;
+        private long heapOffset_;
+
+        /**
+         * Constructor.
+         *
+         * @param  writers  column writers for used columns
+         * @param  nrow   number of rows in table
+         */
+        TileOutputStream( ColumnWriter[] writers, long nrow )
+                throws IOException {
+            ncol_ = writers.length;
+            colOffsets_ = new int[ ncol_ ];
+            colLengths_ = new int[ ncol_ ];
+            elSizes_ = new int[ ncol_ ];
+            compressions_ = new TileCompression[ ncol_ ];
+            int off = 0;
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                ColumnWriter writer = writers[ icol ];
+                colOffsets_[ icol ] = off;
+                colLengths_[ icol ] = writer.getLength();
+                off += colLengths_[ icol ];
+                elSizes_[ icol ] =
+                    TileCompression.getElementSize( writer.getFormatChar() );
+                compressions_[ icol ] = getCompression( writer );
+            }
+            rowLength_ = off;
+            nbyte_ = nrow * rowLength_;
+            long tileBytes = (long) tileLen_ * rowLength_;
+            if ( tileBytes > Integer.MAX_VALUE ) {
+                throw new IOException( "Tile too large (" + tileBytes
+                                     + " bytes)" );
+            }
+            tileBuf_ = new byte[ (int) Math.min( tileBytes, nbyte_ ) ];
+            heapOut_ = new BufferedOutputStream( heapStore_.getOutputStream(),
+                                                 64 * 1024 );
+        }
+
+        public void write( int b ) throws IOException {
+            write( new byte[] { (byte) b }, 0, 1 );
+        }
+
+        public void write( byte[] b, int off, int len ) throws IOException {
+            while ( len > 0 && nWritten_ < nbyte_ ) {
+                int n = (int) Math.min( Math.min( len, tileBuf_.length - nBuf_ ),
+                                        nbyte_ - nWritten_ );
+                System.arraycopy( b, off, tileBuf_, nBuf_, n );
+                nBuf_ += n;
+                nWritten_ += n;
+                off += n;
+                len -= n;
+                if ( nBuf_ == tileBuf_.length ) {
+                    writeTile();
+                }
+            }
+        }
+
+        /**
+         * Must be called after all the row data has been written.
+         */
+        void finish() throws IOException {
+            if ( nWritten_ != nbyte_ ) {
+                throw new IOException( "Row count mismatch: wrote "
+                                     + nWritten_ / Math.max( rowLength_, 1 )
+                                     + " rows, expected "
+                                     + nbyte_ / Math.max( rowLength_, 1 ) );
+            }
+            if ( nBuf_ > 0 ) {
+                writeTile();
+            }
+            heapOut_.flush();
+            assert itile_ == ntile_;
+        }
+
+        /**
+         * Compresses the rows currently buffered as a tile,
+         * and writes the result to the heap.
+         */
+        private void writeTile() throws IOException {
+            final int nr = nBuf_ / rowLength_;
+
+            /* Transpose the buffered rows into per-column data,
+             * and compress each column in parallel. */
+            @SuppressWarnings("unchecked")
+            Callable<byte[]>[] tasks = new Callable[ ncol_ ];
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                final int ic = icol;
+                tasks[ ic ] = new Callable<byte[]>() {
+                    public byte[] call() throws IOException {
+                        int coff = colOffsets_[ ic ];
+                        int clen = colLengths_[ ic ];
+                        byte[] cdata = new byte[ nr * clen ];
+                        for ( int ir = 0; ir < nr; ir++ ) {
+                            System.arraycopy( tileBuf_, ir * rowLength_ + coff,
+                                              cdata, ir * clen, clen );
+                        }
+                        return compressions_[ ic ]
+                              .compress( cdata, elSizes_[ ic ] );
+                    }
+                };
+            }
+            byte[][] cdatas = TileCompression.executeTasks( tasks );
+
+            /* Append the compressed data to the heap. */
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                byte[] cdata = cdatas[ icol ];
+                int id = ( itile_ * ncol_ + icol ) * 2;
+                descriptors_[ id ] = cdata.length;
+                descriptors_[ id + 1 ] = heapOffset_;
+                heapOut_.write( cdata );
+                heapOffset_ += cdata.length;
+            }
+            itile_++;
+            nBuf_ = 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package uk.ac.starlink.fits;
+
+import java.io.IOException;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+
+/**
+ * Handles writing of a <code>StarTable</code> in FITS binary format
+ * using the FITS tiled table compression convention.
+ * The table rows are grouped into tiles, and the data for each column
+ * of each tile is compressed separately (using GZIP_2 for multi-byte
+ * data types and GZIP_1 otherwise).  The result can be read by
+ * {@link FitsTableBuilder} as well as by other software which
+ * understands the convention (e.g. CFITSIO's <code>funpack</code>).
+ *
+ * <p>Since the header records the size of the compressed data,
+ * the whole table is compressed into temporary storage before
+ * any output is written.
+ * Variable-length array columns are not supported.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public class CompressedFitsTableWriter extends AbstractFitsTableWriter {
+
+    private int tileLength_;
+    private StoragePolicy storagePolicy_;
+
+    /** Default number of rows per compressed tile. */
+    public static final int DEFAULT_TILE_LENGTH = 10000;
+
+    /**
+     * Constructor.
+     */
+    public CompressedFitsTableWriter() {
+        super( "fits-compressed" );
+        tileLength_ = DEFAULT_TILE_LENGTH;
+        storagePolicy_ = StoragePolicy.getDefaultPolicy();
+    }
+
+    /**
+     * Sets the number of table rows in each compressed tile.
+     * Larger values generally give better compression but require
+     * more memory for reading and writing.
+     *
+     * @param  tileLength  rows per tile
+     */
+    public void setTileLength( int tileLength ) {
+        if ( tileLength <= 0 ) {
+            throw new IllegalArgumentException( "Bad tile length "
+                                              + tileLength );
+        }
+        tileLength_ = tileLength;
+    }
+
+    /**
+     * Returns the number of table rows in each compressed tile.
+     *
+     * @return  rows per tile
+     */
+    public int getTileLength() {
+        return tileLength_;
+    }
+
+    /**
+     * Sets the storage policy which will be used for temporary storage
+     * during writing.  Temporary storage is required for the compressed
+     * data while the header is being prepared.
+     * By default the system default storage policy is used.
+     *
+     * @param  storagePolicy   policy to use
+     */
+    public void setStoragePolicy( StoragePolicy storagePolicy ) {
+        storagePolicy_ = storagePolicy;
+    }
+
+    /**
+     * Always returns false.
+     */
+    public boolean looksLikeFile( String location ) {
+        return false;
+    }
+
+    protected FitsTableSerializer createSerializer( StarTable table )
+            throws IOException {
+        return new CompressedFitsTableSerializer( table, true,
+                                                  getSpillPolicy(),
+                                                  storagePolicy_, tileLength_,
+                                                  null );
+    }
+}
@@ -4,8 +4,18 @@ import java.awt.datatransfer.DataFlavor;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 import nom.tam.fits.AsciiTable;
 import nom.tam.fits.AsciiTableHDU;
@@ -27,6 +37,7 @@ import uk.ac.starlink.table.TableSequence;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.util.Compression;
 import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
 import uk.ac.starlink.util.IOUtils;
 
 /**
@@ -41,12 +52,19 @@ import uk.ac.starlink.util.IOUtils;
  * file location as a URL (e.g. "file:spec23.fits" rather than "spec23.fits"),
  * which fools the handler into thinking that it can't be mapped.
  *
+ * <p>For uncompressed files on disk, the positions of all the HDUs are
+ * recorded in an index (see {@link HduIndex}) by a single scan of the
+ * headers.  This is used to locate HDUs referenced by number or name,
+ * and to load multiple tables in parallel from a shared, bounded
+ * thread pool.
+ *
  * @author   Mark Taylor (Starlink)
  */
 public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
 
     private static final Logger logger =
         Logger.getLogger( "uk.ac.starlink.fits" );
+    private static ExecutorService loadExecutor_;
 
     /**
      * Returns "FITS".
@@ -114,28 +132,59 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
                 catch ( NumberFormatException e ) {
                     ihdu = -1;
                 }
+                HduIndex index = getHduIndex( datsrc );
                 if ( ihdu >= 0 ) {
-                    try {
-                        pos[ 0 ] += FitsConstants.skipHDUs( strm, ihdu );
+
+                    /* Use the index if it can locate the HDU.
+                     * If the index stopped short at a bad header,
+                     * HDUs beyond it are sought by scanning as usual,
+                     * which will report the error in the normal way. */
+                    if ( index != null &&
+                         ( ihdu < index.getHduCount() ||
+                           index.isComplete() ) ) {
+                        if ( ihdu >= index.getHduCount() ) {
+                            throw new IOException( "Fell off end of file "
+                                                 + "looking for HDU #"
+                                                 + ihdu );
+                        }
+                        pos[ 0 ] = index.getHduPosition( ihdu );
+                        ((RandomAccess) strm).seek( pos[ 0 ] );
                         table = attemptReadTable( strm, wantRandom, datsrc,
                                                   pos );
                     }
-                    catch ( EOFException e ) {
-                        throw new IOException( "Fell off end of file "
-                                             + "looking for HDU #" + ihdu );
+                    else {
+                        try {
+                            pos[ 0 ] += FitsConstants.skipHDUs( strm, ihdu );
+                            table = attemptReadTable( strm, wantRandom,
+                                                      datsrc, pos );
+                        }
+                        catch ( EOFException e ) {
+                            throw new IOException( "Fell off end of file "
+                                                 + "looking for HDU #"
+                                                 + ihdu );
+                        }
                     }
                 }
 
                 /* Otherwise treat it as an extension name or name-version
                  * string (EXTNAME and EXTVER headers, see FITS standard). */
                 else {
-                    try {
-                        table = findNamedTable( strm, datsrc, spos, pos );
+                    int jhdu = index == null ? -1 : index.getNamedHdu( spos );
+                    if ( jhdu >= 0 ) {
+                        pos[ 0 ] = index.getHduPosition( jhdu );
+                        ((RandomAccess) strm).seek( pos[ 0 ] );
+                        table = attemptReadTable( strm, wantRandom, datsrc,
+                                                  pos );
                     }
-                    catch ( EOFException e ) {
-                        throw new IOException( "No extension found with "
-                                             + "EXTNAME or EXTNAME-EXTVER "
-                                             + "\"" + spos + "\"" );
+                    else {
+                        try {
+                            table = findNamedTable( strm, datsrc, spos, pos );
+                        }
+                        catch ( EOFException e ) {
+                            throw new IOException( "No extension found with "
+                                                 + "EXTNAME or EXTNAME-EXTVER "
+                                                 + "\"" + spos + "\"" );
+                        }
                     }
                 }
 
@@ -197,9 +246,22 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
         if ( ! FitsConstants.isMagic( datsrc.getIntro() ) ) {
             throw new TableFormatException( "Doesn't look like a FITS file" );
         }
-        MultiLoadWorker loadWorker = new MultiLoadWorker( datsrc );
-        loadWorker.start();
-        return loadWorker.getTableSequence();
+        HduIndex index;
+        try {
+            index = getHduIndex( datsrc );
+        }
+        catch ( FitsException e ) {
+            throw (TableFormatException)
+                  new TableFormatException( e.getMessage() ).initCause( e );
+        }
+        if ( index != null && index.isComplete() ) {
+            return new IndexedTableSequence( datsrc, index );
+        }
+        else {
+            MultiLoadWorker loadWorker = new MultiLoadWorker( datsrc );
+            loadWorker.start();
+            return loadWorker.getTableSequence();
+        }
     }
 
     /**
@@ -274,7 +336,20 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
                   new TableFormatException( "Can't read FITS header", e );
         }
         String xtension = hdr.getStringValue( "XTENSION" );
-        if ( "BINTABLE".equals( xtension ) ) {
+        if ( CompressedBintableStarTable.isCompressedTable( hdr ) ) {
+            long datasize = FitsConstants.getDataSize( hdr );
+            InputFactory inFact = readDataFactory( in, datasize );
+            StarTable table =
+                CompressedBintableStarTable.createTable( hdr, inFact );
+            try {
+                Tables.streamStarTable( table, sink );
+            }
+            finally {
+                inFact.close();
+            }
+            return true;
+        }
+        else if ( "BINTABLE".equals( xtension ) ) {
             BasicInput input = InputFactory.createSequentialInput( in );
             BintableStarTable.streamStarTable( hdr, input, sink );
             return true;
@@ -417,8 +492,25 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
         long afterpos = datpos + datasize;
         String xtension = hdr.getStringValue( "XTENSION" );
 
+        /* If it's a tile-compressed BINTABLE HDU, it needs random access
+         * to the data, so read the data into memory if it can't
+         * be got any other way. */
+        if ( CompressedBintableStarTable.isCompressedTable( hdr ) ) {
+            InputFactory inFact =
+                InputFactory.createFactory( datsrc, datpos, datasize );
+            if ( inFact.isRandom() ) {
+                IOUtils.skipBytes( strm, datasize );
+            }
+            else {
+                inFact = readDataFactory( strm, datasize );
+            }
+            StarTable table =
+                CompressedBintableStarTable.createTable( hdr, inFact );
+            return new TableResult( table, afterpos );
+        }
+
         /* If it's a BINTABLE HDU, make a BintableStarTable out of it. */
-        if ( "BINTABLE".equals( xtension ) ) {
+        else if ( "BINTABLE".equals( xtension ) ) {
             InputFactory inFact =
                 InputFactory.createFactory( datsrc, datpos, datasize );
             StarTable table = BintableStarTable.createTable( hdr, inFact );
@@ -442,6 +534,26 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
         }
     }
 
+    /**
+     * Reads the data part of an HDU into memory and returns an
+     * InputFactory which can supply random access to it.
+     *
+     * @param  strm  stream positioned at the start of the data part
+     * @param  datasize  number of bytes in the data part
+     * @return  random-access input factory for the data
+     */
+    private static InputFactory readDataFactory( ArrayDataInput strm,
+                                                 long datasize )
+            throws IOException {
+        if ( datasize > Integer.MAX_VALUE ) {
+            throw new IOException( "Compressed table too large ("
+                                 + datasize + " bytes) to read from stream" );
+        }
+        byte[] buf = new byte[ (int) datasize ];
+        strm.readFully( buf );
+        return InputFactory.createByteBufferFactory( ByteBuffer.wrap( buf ) );
+    }
+
     /**
      * Indicates whether the header has a given name.
      * EXTNAME or EXTNAME-VERSION, matched case-insensitively, count.
@@ -451,18 +563,73 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
      * @return  true iff <code>hdr</code> appears to be named <code>name</code>
      */
     private static boolean headerName( Header hdr, String name ) {
-        String extname = hdr.getStringValue( "EXTNAME" );
-        if ( extname == null || extname.trim().length() == 0 ) {
-            return false;
+        return HduIndex.isNamed( hdr.getStringValue( "EXTNAME" ),
+                                 hdr.getIntValue( "EXTVER",
+                                                  Integer.MIN_VALUE ),
+                                 name );
+    }
+
+    /**
+     * Returns an HDU index for a data source if it represents an
+     * uncompressed file.
+     *
+     * @param  datsrc  data source
+     * @return  HDU index, or null if the source is not a plain file
+     */
+    private static HduIndex getHduIndex( DataSource datsrc )
+            throws IOException, FitsException {
+        return datsrc instanceof FileDataSource
+            && datsrc.getCompression() == Compression.NONE
+             ? HduIndex.getIndex( ((FileDataSource) datsrc).getFile() )
+             : null;
+    }
+
+    /**
+     * Sets the name and URL of a table loaded from a numbered HDU,
+     * if they are not already known.
+     *
+     * @param  table  table
+     * @param  datsrc  data source containing the HDU
+     * @param  ihdu   HDU index
+     */
+    private static void configureHduTable( StarTable table, DataSource datsrc,
+                                           int ihdu ) {
+        if ( table.getName() == null ) {
+            table.setName( datsrc.getName() + "#" + ihdu );
         }
-        if ( extname.trim().equalsIgnoreCase( name ) ) {
-            return true;
+        URL baseUrl = datsrc.getURL();
+        if ( baseUrl != null &&
+             baseUrl.toString().indexOf( '#' ) < 0 ) {
+            String hduUrl = baseUrl + "#" + ihdu;
+            try {
+                table.setURL( new URL( hduUrl ) );
+            }
+            catch ( MalformedURLException e ) {
+                logger.info( "Bad URL " + hduUrl + "?" );
+            }
         }
-        int extver = hdr.getIntValue( "EXTVER", Integer.MIN_VALUE );
-        if ( extver != Integer.MIN_VALUE ) {
-            return (extname + "-" + extver).equalsIgnoreCase( name );
+    }
+
+    /**
+     * Returns the executor service used for loading tables from HDUs
+     * in parallel.  This is a lazily created, bounded pool of daemon
+     * threads shared by all instances of this class.
+     *
+     * @return  executor
+     */
+    private static synchronized ExecutorService getLoadExecutor() {
+        if ( loadExecutor_ == null ) {
+            int nthread = Runtime.getRuntime().availableProcessors();
+            loadExecutor_ =
+                Executors.newFixedThreadPool( nthread, new ThreadFactory() {
+                    public Thread newThread( Runnable r ) {
+                        Thread th = new Thread( r, "FITS HDU loader" );
+                        th.setDaemon( true );
+                        return th;
+                    }
+                } );
         }
-        return false;
+        return loadExecutor_;
     }
 
     /**
@@ -589,20 +756,7 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
                     StarTable table = tres.table_;
                     pos = tres.afterPos_;
                     if ( table != null ) {
-                        if ( table.getName() == null ) {
-                            table.setName( datsrc_.getName() + "#" + ihdu );
-                        }
-                        URL baseUrl = datsrc_.getURL();
-                        if ( baseUrl != null &&
-                             baseUrl.toString().indexOf( '#' ) < 0 ) {
-                            String hduUrl = baseUrl + "#" + ihdu;
-                            try {
-                                table.setURL( new URL( hduUrl ) );
-                            }
-                            catch ( MalformedURLException e ) {
-                                logger.info( "Bad URL " + hduUrl + "?" );
-                            }
-                        }
+                        configureHduTable( table, datsrc_, ihdu );
                         tqueue_.addTable( table );
                     }
                     done = isEof( in );
@@ -616,6 +770,130 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
         }
     }
 
+    /**
+     * TableSequence which loads the table HDUs of an indexed file
+     * using the shared load executor.
+     * Loading is lazy, but runs a few HDUs ahead of the consumer,
+     * so that several tables may be loaded in parallel.
+     */
+    private static class IndexedTableSequence implements TableSequence {
+        private final DataSource datsrc_;
+        private final HduIndex index_;
+        private final int[] tableHdus_;
+        private final List<Future<StarTable>> futures_;
+        private final int lookahead_;
+        private int itab_;
+
+        /**
+         * Constructor.
+         *
+         * @param  datsrc  data source for uncompressed FITS file
+         * @param  index   HDU index for the file
+         */
+        IndexedTableSequence( DataSource datsrc, HduIndex index ) {
+            datsrc_ = datsrc;
+            index_ = index;
+            List<Integer> hduList = new ArrayList<Integer>();
+            for ( int ihdu = 0; ihdu < index.getHduCount(); ihdu++ ) {
+                if ( index.isTable( ihdu ) ) {
+                    hduList.add( new Integer( ihdu ) );
+                }
+            }
+            tableHdus_ = new int[ hduList.size() ];
+            for ( int i = 0; i < tableHdus_.length; i++ ) {
+                tableHdus_[ i ] = hduList.get( i ).intValue();
+            }
+            futures_ = new ArrayList<Future<StarTable>>();
+            lookahead_ = Runtime.getRuntime().availableProcessors();
+            submitUpTo( lookahead_ );
+        }
+
+        public StarTable nextTable() throws IOException {
+            if ( itab_ >= tableHdus_.length ) {
+                return null;
+            }
+            submitUpTo( itab_ + 1 + lookahead_ );
+            Future<StarTable> future = futures_.get( itab_ );
+            futures_.set( itab_, null );
+            itab_++;
+            try {
+                return future.get();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw (IOException)
+                      new InterruptedIOException( "Interrupted" )
+                     .initCause( e );
+            }
+            catch ( ExecutionException e ) {
+                Throwable err = e.getCause();
+                if ( err instanceof IOException ) {
+                    throw (IOException) err;
+                }
+                else if ( err instanceof FitsException ) {
+                    throw (TableFormatException)
+                          new TableFormatException( err.getMessage() )
+                         .initCause( err );
+                }
+                else if ( err instanceof RuntimeException ) {
+                    throw (RuntimeException) err;
+                }
+                else if ( err instanceof Error ) {
+                    throw (Error) err;
+                }
+                else {
+                    throw (IOException)
+                          new IOException( err.getMessage() ).initCause( err );
+                }
+            }
+        }
+
+        /**
+         * Ensures that load tasks have been submitted for all the
+         * table HDUs up to a given count.
+         *
+         * @param  ntab  number of tables required
+         */
+        private void submitUpTo( int ntab ) {
+            ntab = Math.min( ntab, tableHdus_.length );
+            ExecutorService executor = getLoadExecutor();
+            for ( int i = futures_.size(); i < ntab; i++ ) {
+                final int ihdu = tableHdus_[ i ];
+                final long hpos = index_.getHduPosition( ihdu );
+                futures_.add( executor.submit( new Callable<StarTable>() {
+                    public StarTable call() throws IOException, FitsException {
+                        return loadHdu( ihdu, hpos );
+                    }
+                } ) );
+            }
+        }
+
+        /**
+         * Loads the table from a given HDU.
+         *
+         * @param  ihdu  HDU index
+         * @param  hpos  file offset of the HDU's header
+         * @return  table
+         */
+        private StarTable loadHdu( int ihdu, long hpos )
+                throws IOException, FitsException {
+            ArrayDataInput in = FitsConstants.getInputStreamStart( datsrc_ );
+            try {
+                ((RandomAccess) in).seek( hpos );
+                StarTable table = attemptReadTable( in, datsrc_, hpos ).table_;
+                if ( table == null ) {
+                    throw new TableFormatException( "HDU #" + ihdu
+                                                  + " not a table" );
+                }
+                configureHduTable( table, datsrc_, ihdu );
+                return table;
+            }
+            finally {
+                in.close();
+            }
+        }
+    }
+
     /**
      * Encapsulates information about the attempt to read a table from
      * a FITS HDU in a stream.
@@ -68,6 +68,14 @@ public class FitsTableWriter extends AbstractFitsTableWriter {
 
     protected FitsTableSerializer createSerializer( StarTable table )
             throws IOException {
-        return new StandardFitsTableSerializer( table );
+        return new StandardFitsTableSerializer( table, true,
+                                                getSpillPolicy() );
+    }
+
+    protected FitsTableSerializer createSerializer( StarTable table,
+                                                    boolean allowUnknownRows )
+            throws IOException {
+        return new StandardFitsTableSerializer( table, true, getSpillPolicy(),
+                                                allowUnknownRows );
     }
 }
@@ -40,6 +40,14 @@ public class HduFitsTableWriter extends AbstractFitsTableWriter {
 
     protected FitsTableSerializer createSerializer( StarTable table )
             throws IOException {
-        return new StandardFitsTableSerializer( table );
+        return new StandardFitsTableSerializer( table, true,
+                                                getSpillPolicy() );
+    }
+
+    protected FitsTableSerializer createSerializer( StarTable table,
+                                                    boolean allowUnknownRows )
+            throws IOException {
+        return new StandardFitsTableSerializer( table, true, getSpillPolicy(),
+                                                allowUnknownRows );
     }
 }
@@ -0,0 +1,240 @@
+package uk.ac.starlink.fits;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import nom.tam.fits.FitsException;
+import nom.tam.fits.Header;
+import nom.tam.util.BufferedFile;
+
+/**
+ * Records the positions and basic characteristics of the HDUs in
+ * an uncompressed FITS file.
+ * The index is built by a single scan which reads only the headers,
+ * skipping over the data parts, so it is cheap even for files
+ * containing very many HDUs.  It allows an HDU to be located directly
+ * by index or by name without rescanning the file.
+ *
+ * <p>If a header that cannot be parsed is found after the first HDU,
+ * for instance because of junk appended to the file, the scan stops
+ * there and the index records only the HDUs that precede it;
+ * see {@link #isComplete}.
+ *
+ * <p>Indexes are cached per file, and a cached index is reused as long as
+ * the file's length and modification time are unchanged.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class HduIndex {
+
+    private final File file_;
+    private final long length_;
+    private final long lastModified_;
+    private final long[] positions_;
+    private final String[] xtensions_;
+    private final String[] extnames_;
+    private final int[] extvers_;
+    private final boolean isComplete_;
+
+    /** Maximum number of file indexes cached. */
+    private static final int CACHE_SIZE = 32;
+
+    private static final Map<File,HduIndex> cache_ =
+        new LinkedHashMap<File,HduIndex>( 16, 0.75f, true ) {
+            protected boolean removeEldestEntry( Map.Entry<File,HduIndex> e ) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.fits" );
+
+    /**
+     * Constructor.  Scans the file.
+     *
+     * @param  file  uncompressed FITS file
+     */
+    private HduIndex( File file ) throws IOException, FitsException {
+        file_ = file;
+        length_ = file.length();
+        lastModified_ = file.lastModified();
+        List<Long> posList = new ArrayList<Long>();
+        List<String> xtList = new ArrayList<String>();
+        List<String> nameList = new ArrayList<String>();
+        List<Integer> verList = new ArrayList<Integer>();
+        BufferedFile in = new BufferedFile( file.getPath(), "r" );
+        boolean isComplete = true;
+        try {
+            long pos = 0L;
+            while ( pos < length_ ) {
+                in.seek( pos );
+                Header hdr = new Header();
+                int headsize = 0;
+                Exception error = null;
+                try {
+                    headsize = FitsConstants.readHeader( hdr, in );
+                }
+                catch ( IOException e ) {
+                    if ( posList.isEmpty() ) {
+                        throw e;
+                    }
+                    error = e;
+                }
+                catch ( FitsException e ) {
+                    if ( posList.isEmpty() ) {
+                        throw e;
+                    }
+                    error = e;
+                }
+                if ( error != null ) {
+                    logger_.warning( "Unreadable HDU header at " + pos
+                                   + " in " + file + " (" + error
+                                   + ") - index stops there" );
+                    isComplete = false;
+                    break;
+                }
+                long datasize = FitsConstants.getDataSize( hdr );
+                posList.add( new Long( pos ) );
+                xtList.add( hdr.getStringValue( "XTENSION" ) );
+                nameList.add( hdr.getStringValue( "EXTNAME" ) );
+                verList.add( new Integer( hdr.getIntValue( "EXTVER",
+                                                           Integer
+                                                          .MIN_VALUE ) ) );
+                pos += headsize + datasize;
+            }
+        }
+        finally {
+            in.close();
+        }
+        isComplete_ = isComplete;
+        int nhdu = posList.size();
+        positions_ = new long[ nhdu ];
+        extvers_ = new int[ nhdu ];
+        for ( int i = 0; i < nhdu; i++ ) {
+            positions_[ i ] = posList.get( i ).longValue();
+            extvers_[ i ] = verList.get( i ).intValue();
+        }
+        xtensions_ = xtList.toArray( new String[ 0 ] );
+        extnames_ = nameList.toArray( new String[ 0 ] );
+        logger_.config( "Indexed " + nhdu + " HDUs in " + file );
+    }
+
+    /**
+     * Returns the number of HDUs in the file, including the primary.
+     *
+     * @return  HDU count
+     */
+    public int getHduCount() {
+        return positions_.length;
+    }
+
+    /**
+     * Indicates whether the index covers the whole file.
+     * If false, the scan was abandoned at an unreadable header following
+     * the last indexed HDU, and anything after that is unknown.
+     *
+     * @return  true iff all the HDUs in the file are indexed
+     */
+    public boolean isComplete() {
+        return isComplete_;
+    }
+
+    /**
+     * Returns the offset into the file at which a given HDU's header starts.
+     *
+     * @param  ihdu  HDU index; 0 is the primary
+     * @return  file offset
+     */
+    public long getHduPosition( int ihdu ) {
+        return positions_[ ihdu ];
+    }
+
+    /**
+     * Indicates whether a given HDU is a table extension
+     * (BINTABLE or TABLE).
+     *
+     * @param  ihdu  HDU index
+     * @return  true iff the HDU contains a table
+     */
+    public boolean isTable( int ihdu ) {
+        String xtension = xtensions_[ ihdu ];
+        return "BINTABLE".equals( xtension ) || "TABLE".equals( xtension );
+    }
+
+    /**
+     * Returns the index of the first HDU with a given name.
+     * The rules are those of {@link #isNamed}.
+     *
+     * @param  name  required name
+     * @return  index of first matching HDU, or -1 if none matches
+     */
+    public int getNamedHdu( String name ) {
+        for ( int ihdu = 0; ihdu < positions_.length; ihdu++ ) {
+            if ( isNamed( extnames_[ ihdu ], extvers_[ ihdu ], name ) ) {
+                return ihdu;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates whether this index is still valid for its file.
+     *
+     * @return  true iff the file appears unchanged since it was indexed
+     */
+    private boolean isCurrent() {
+        return file_.length() == length_
+            && file_.lastModified() == lastModified_;
+    }
+
+    /**
+     * Returns an index for a given uncompressed FITS file.
+     * A cached copy is used if available and current.
+     *
+     * @param  file  FITS file
+     * @return  HDU index
+     */
+    public static HduIndex getIndex( File file )
+            throws IOException, FitsException {
+        File key = file.getCanonicalFile();
+        synchronized ( cache_ ) {
+            HduIndex index = cache_.get( key );
+            if ( index != null && index.isCurrent() ) {
+                return index;
+            }
+        }
+        HduIndex index = new HduIndex( file );
+        synchronized ( cache_ ) {
+            cache_.put( key, index );
+        }
+        return index;
+    }
+
+    /**
+     * Indicates whether an HDU with given extension name and version
+     * matches a given name.
+     * EXTNAME or EXTNAME-EXTVER, matched case-insensitively, count.
+     *
+     * @param  extname  EXTNAME value, or null
+     * @param  extver   EXTVER value, or Integer.MIN_VALUE if absent
+     * @param  name   required name
+     * @return  true iff the HDU appears to be named <code>name</code>
+     */
+    static boolean isNamed( String extname, int extver, String name ) {
+        if ( extname == null || extname.trim().length() == 0 ) {
+            return false;
+        }
+        if ( extname.trim().equalsIgnoreCase( name ) ) {
+            return true;
+        }
+        if ( extver != Integer.MIN_VALUE ) {
+            return (extname + "-" + extver).equalsIgnoreCase( name );
+        }
+        return false;
+    }
+}
@@ -4,10 +4,13 @@ import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 import nom.tam.util.BufferedFile;
@@ -111,6 +114,11 @@ public abstract class InputFactory implements Closeable {
      * Constructs an instance of this class to read a given uncompressed file.
      * It must be uncompressed for the random access to be able to locate
      * the right part to read.
+     * Where the file is mapped, the inputs created by the returned factory
+     * share a single {@link SharedBlockCache}, so that concurrent readers
+     * use the same mapped buffers; blocks no longer required by
+     * sequential readers are discarded promptly, and those used by
+     * random readers are kept until they have been idle for a while.
      *
      * @param  uncompressedFile  unencoded file
      * @param   offset   offset into file of stream start
@@ -125,14 +133,15 @@ public abstract class InputFactory implements Closeable {
         final String logName = file.getName();
         if ( leng <= BlockMappedInput.DEFAULT_BLOCKSIZE * 2 ) {
             logger_.info( "Will map as single block: " + logName );
-            final int ileng = (int) leng;
             RandomAccessFile raf = new RandomAccessFile( file, "r" );
             final FileChannel chan = raf.getChannel();
+            final SharedBlockCache cache =
+                new SharedBlockCache( chan, offset, leng, logName,
+                                      (int) Math.max( leng, 1 ) );
             return new AbstractInputFactory( true ) {
                 public BasicInput createInput( boolean isSeq )
                         throws IOException {
-                    return new SimpleMappedInput( chan, offset, ileng,
-                                                  logName );
+                    return cache.createInput( isSeq );
                 }
                 public void close() throws IOException {
                     chan.close();
@@ -143,11 +152,13 @@ public abstract class InputFactory implements Closeable {
             logger_.info( "Will map as multiple blocks: " + file );
             RandomAccessFile raf = new RandomAccessFile( file, "r" );
             final FileChannel chan = raf.getChannel();
+            final SharedBlockCache cache =
+                new SharedBlockCache( chan, offset, leng, logName,
+                                      BlockMappedInput.DEFAULT_BLOCKSIZE );
             return new AbstractInputFactory( true ) {
                 public BasicInput createInput( boolean isSeq )
                         throws IOException {
-                    return BlockMappedInput
-                          .createInput( chan, offset, leng, logName, ! isSeq );
+                    return cache.createInput( isSeq );
                 }
                 public void close() throws IOException {
                     chan.close();
@@ -169,6 +180,38 @@ public abstract class InputFactory implements Closeable {
         }
     }
 
+    /**
+     * Constructs an instance of this class to read the content of
+     * a byte buffer.  Each created input reads from its own view
+     * of the buffer, so inputs are independent of each other.
+     *
+     * @param  buf  buffer containing the byte sequence, from its
+     *              current position to its limit
+     * @return  new random-access instance
+     */
+    public static InputFactory createByteBufferFactory( ByteBuffer buf ) {
+        final ByteBuffer buf0 = buf.slice();
+        return new AbstractInputFactory( true ) {
+            public BasicInput createInput( boolean isSeq ) {
+                return createByteBufferInput( buf0 );
+            }
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Returns a random-access BasicInput reading from a byte buffer.
+     * The content is taken from the buffer's current position to its limit;
+     * the state of the supplied buffer is not affected by reads.
+     *
+     * @param  buf  byte buffer
+     * @return  new random-access input
+     */
+    public static BasicInput createByteBufferInput( ByteBuffer buf ) {
+        return new ByteBufferInput( buf.slice() );
+    }
+
     /**
      * Returns a non-random-access BasicInput based on a supplied input stream.
      * The result is just an adapter wrapping the supplied DataInput.
@@ -233,6 +276,99 @@ public abstract class InputFactory implements Closeable {
         }
     }
 
+    /**
+     * Random-access BasicInput based on a byte buffer.
+     */
+    private static class ByteBufferInput implements BasicInput {
+        private final ByteBuffer buf_;
+
+        /**
+         * Constructor.
+         *
+         * @param  buf  buffer, positioned at zero, which will be used
+         *              exclusively by this object
+         */
+        ByteBufferInput( ByteBuffer buf ) {
+            buf_ = buf;
+        }
+
+        public byte readByte() throws IOException {
+            try {
+                return buf_.get();
+            }
+            catch ( BufferUnderflowException e ) {
+                throw (EOFException) new EOFException().initCause( e );
+            }
+        }
+
+        public short readShort() throws IOException {
+            try {
+                return buf_.getShort();
+            }
+            catch ( BufferUnderflowException e ) {
+                throw (EOFException) new EOFException().initCause( e );
+            }
+        }
+
+        public int readInt() throws IOException {
+            try {
+                return buf_.getInt();
+            }
+            catch ( BufferUnderflowException e ) {
+                throw (EOFException) new EOFException().initCause( e );
+            }
+        }
+
+        public long readLong() throws IOException {
+            try {
+                return buf_.getLong();
+            }
+            catch ( BufferUnderflowException e ) {
+                throw (EOFException) new EOFException().initCause( e );
+            }
+        }
+
+        public float readFloat() throws IOException {
+            try {
+                return buf_.getFloat();
+            }
+            catch ( BufferUnderflowException e ) {
+                throw (EOFException) new EOFException().initCause( e );
+            }
+        }
+
+        public double readDouble() throws IOException {
+            try {
+                return buf_.getDouble();
+            }
+            catch ( BufferUnderflowException e ) {
+                throw (EOFException) new EOFException().initCause( e );
+            }
+        }
+
+        public void skip( long nbyte ) throws IOException {
+            seek( getOffset() + nbyte );
+        }
+
+        public boolean isRandom() {
+            return true;
+        }
+
+        public void seek( long offset ) throws IOException {
+            if ( offset < 0 || offset > buf_.limit() ) {
+                throw new EOFException( "Out of bounds: " + offset );
+            }
+            buf_.position( (int) offset );
+        }
+
+        public long getOffset() {
+            return buf_.position();
+        }
+
+        public void close() {
+        }
+    }
+
     /**
      * Adaptor from RandomAccess object to BasicInput object.
      */
@@ -0,0 +1,499 @@
+package uk.ac.starlink.fits;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * Thread-safe cache of mapped blocks covering a given region of a file,
+ * which can be shared between multiple readers.
+ *
+ * <p>Blocks are mapped lazily when first required.
+ * Each block keeps a count of the inputs currently positioned in it,
+ * and a block that is not in use is discarded, and an attempt made
+ * to unmap it (see {@link Unmapper}), once it has been idle for
+ * a given expiry period.  If a sequential input leaves a block
+ * that no other input is using, the block is discarded straight away,
+ * since a sequential reader will not come back for it.
+ * Readers register their interest in the cache as a whole using the
+ * {@link #acquire} and {@link #release} methods; the {@link BasicInput}s
+ * returned by {@link #createInput} do this automatically.
+ * When the reference count drops to zero, all the remaining blocks
+ * are discarded; if further readers are acquired after that,
+ * blocks will be mapped again as required.
+ *
+ * <p>As well as supplying independent BasicInput instances, this class
+ * provides absolute-offset read methods, which do not depend on any
+ * current position and so may be called concurrently from any thread.
+ * Callers of these methods should hold a reference for the duration
+ * of their use.  These methods mark the block in use for the duration
+ * of each read, so they are somewhat slower than reads from an input.
+ *
+ * <p>The point of all this is that many readers, possibly in different
+ * threads, can read from a single large file using the same
+ * set of mapped buffers, rather than each mapping and unmapping
+ * its own.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public class SharedBlockCache {
+
+    private final FileChannel channel_;
+    private final long pos_;
+    private final long size_;
+    private final String logName_;
+    private final int blockSize_;
+    private final int nblock_;
+    private final long expiryMillis_;
+    private final long tidyMillis_;
+    private final AtomicReferenceArray<MappedByteBuffer> bufs_;
+    private final AtomicIntegerArray nusers_;
+    private final AtomicLongArray useEpochs_;
+    private final Unmapper unmapper_;
+    private int nref_;
+    private volatile long lastTidy_;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.fits" );
+
+    /**
+     * Constructs an instance with the default expiry period.
+     *
+     * @param   channel  file channel, preferably read-only
+     * @param   pos   offset into file of region start
+     * @param   size  number of bytes in region
+     * @param   logName  name for mapped region used in logging messages
+     * @param   blockSize  (maximum) number of bytes per mapped block
+     */
+    public SharedBlockCache( FileChannel channel, long pos, long size,
+                             String logName, int blockSize ) {
+        this( channel, pos, size, logName, blockSize,
+              BlockMappedInput.DEFAULT_EXPIRYMILLIS );
+    }
+
+    /**
+     * Constructs an instance with an explicit expiry period.
+     *
+     * @param   channel  file channel, preferably read-only
+     * @param   pos   offset into file of region start
+     * @param   size  number of bytes in region
+     * @param   logName  name for mapped region used in logging messages
+     * @param   blockSize  (maximum) number of bytes per mapped block
+     * @param   expiryMillis  time in milliseconds after which unused
+     *                        blocks are discarded
+     */
+    public SharedBlockCache( FileChannel channel, long pos, long size,
+                             String logName, int blockSize,
+                             long expiryMillis ) {
+        channel_ = channel;
+        pos_ = pos;
+        size_ = size;
+        logName_ = logName;
+        blockSize_ = blockSize;
+        long nb = ( ( size - 1 ) / blockSize ) + 1;
+        nblock_ = (int) nb;
+        if ( nblock_ != nb ) {
+            throw new IllegalArgumentException( "Block count " + nb
+                                              + " too high" );
+        }
+        expiryMillis_ = expiryMillis;
+        tidyMillis_ = expiryMillis / 4;
+        bufs_ = new AtomicReferenceArray<MappedByteBuffer>( nblock_ );
+        nusers_ = new AtomicIntegerArray( nblock_ );
+        useEpochs_ = new AtomicLongArray( nblock_ );
+        unmapper_ = Unmapper.getInstance();
+        lastTidy_ = System.currentTimeMillis();
+        logger_.config( logName_ + " shared mapping as " + nblock_
+                      + " blocks of " + blockSize_ + " bytes" );
+    }
+
+    /**
+     * Returns the number of bytes in the mapped region.
+     *
+     * @return  region size
+     */
+    public long getSize() {
+        return size_;
+    }
+
+    /**
+     * Returns the maximum number of bytes per mapped block.
+     *
+     * @return  block size
+     */
+    public int getBlockSize() {
+        return blockSize_;
+    }
+
+    /**
+     * Returns the number of blocks covering the mapped region.
+     *
+     * @return  block count
+     */
+    public int getBlockCount() {
+        return nblock_;
+    }
+
+    /**
+     * Registers interest in this cache.  Blocks will not be unmapped
+     * until a matching call to {@link #release} has been made.
+     */
+    public synchronized void acquire() {
+        nref_++;
+    }
+
+    /**
+     * Deregisters interest in this cache.  If no references remain,
+     * any mapped blocks are discarded and an attempt is made to unmap them.
+     * Buffers obtained from this cache must not be used by the
+     * caller following this call.
+     */
+    public synchronized void release() {
+        if ( nref_ <= 0 ) {
+            throw new IllegalStateException( "Too many releases" );
+        }
+        if ( --nref_ == 0 ) {
+            for ( int ib = 0; ib < nblock_; ib++ ) {
+                discardBlock( ib );
+            }
+        }
+    }
+
+    /**
+     * Returns a new random-access BasicInput reading from this cache.
+     * The returned object has its own position, so is independent of
+     * other inputs, but like other BasicInput implementations it must
+     * not itself be used from multiple threads.
+     * It holds a reference to this cache until it is closed.
+     *
+     * <p>The <code>isSeq</code> flag is a hint about how the input
+     * will be used.  If true, blocks left behind by the input are
+     * discarded as soon as no other input is using them,
+     * otherwise they are kept for the expiry period in case
+     * they are wanted again.
+     *
+     * @param  isSeq  true if the input is expected to be read
+     *                sequentially rather than randomly
+     * @return  new input positioned at the start of the region
+     */
+    public BasicInput createInput( boolean isSeq ) throws IOException {
+        return new SharedBlockMappedInput( isSeq );
+    }
+
+    /**
+     * Returns the number of blocks currently mapped.
+     * This is intended for monitoring and testing.
+     *
+     * @return  number of blocks currently held by this cache
+     */
+    int getMappedBlockCount() {
+        int n = 0;
+        for ( int ib = 0; ib < nblock_; ib++ ) {
+            if ( bufs_.get( ib ) != null ) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Reads a byte at a given offset.
+     *
+     * @param  offset  offset into mapped region
+     * @return  byte value
+     */
+    public byte getByte( long offset ) throws IOException {
+        int ib = getBlockIndex( offset, 1 );
+        int ioff = (int) ( offset - ib * (long) blockSize_ );
+        try {
+            return pinBlock( ib ).get( ioff );
+        }
+        finally {
+            unpinBlock( ib, false );
+        }
+    }
+
+    /**
+     * Reads a 2-byte integer at a given offset.
+     *
+     * @param  offset  offset into mapped region
+     * @return  short value
+     */
+    public short getShort( long offset ) throws IOException {
+        int ib = getBlockIndex( offset, 2 );
+        int ioff = (int) ( offset - ib * (long) blockSize_ );
+        ByteBuffer buf = pinBlock( ib );
+        try {
+            if ( ioff + 2 <= buf.limit() ) {
+                return buf.getShort( ioff );
+            }
+        }
+        finally {
+            unpinBlock( ib, false );
+        }
+        return getStraddled( offset, 2 ).getShort();
+    }
+
+    /**
+     * Reads a 4-byte integer at a given offset.
+     *
+     * @param  offset  offset into mapped region
+     * @return  int value
+     */
+    public int getInt( long offset ) throws IOException {
+        int ib = getBlockIndex( offset, 4 );
+        int ioff = (int) ( offset - ib * (long) blockSize_ );
+        ByteBuffer buf = pinBlock( ib );
+        try {
+            if ( ioff + 4 <= buf.limit() ) {
+                return buf.getInt( ioff );
+            }
+        }
+        finally {
+            unpinBlock( ib, false );
+        }
+        return getStraddled( offset, 4 ).getInt();
+    }
+
+    /**
+     * Reads an 8-byte integer at a given offset.
+     *
+     * @param  offset  offset into mapped region
+     * @return  long value
+     */
+    public long getLong( long offset ) throws IOException {
+        int ib = getBlockIndex( offset, 8 );
+        int ioff = (int) ( offset - ib * (long) blockSize_ );
+        ByteBuffer buf = pinBlock( ib );
+        try {
+            if ( ioff + 8 <= buf.limit() ) {
+                return buf.getLong( ioff );
+            }
+        }
+        finally {
+            unpinBlock( ib, false );
+        }
+        return getStraddled( offset, 8 ).getLong();
+    }
+
+    /**
+     * Reads a 4-byte floating point value at a given offset.
+     *
+     * @param  offset  offset into mapped region
+     * @return  float value
+     */
+    public float getFloat( long offset ) throws IOException {
+        return Float.intBitsToFloat( getInt( offset ) );
+    }
+
+    /**
+     * Reads an 8-byte floating point value at a given offset.
+     *
+     * @param  offset  offset into mapped region
+     * @return  double value
+     */
+    public double getDouble( long offset ) throws IOException {
+        return Double.longBitsToDouble( getLong( offset ) );
+    }
+
+    /**
+     * Marks a block as in use and returns its shared buffer,
+     * mapping it if required.
+     * The block will not be discarded until a matching call to
+     * {@link #unpinBlock} has been made.
+     * The state (position, limit, mark) of the returned buffer must not
+     * be modified; use <code>duplicate</code> if relative reads are
+     * required.
+     *
+     * @param  iblock  block index
+     * @return  mapped buffer for block
+     */
+    private MappedByteBuffer pinBlock( int iblock ) throws IOException {
+
+        /* A negative user count means the block is being discarded;
+         * wait for that to finish, it will not take long. */
+        while ( true ) {
+            int nuser = nusers_.get( iblock );
+            if ( nuser >= 0 &&
+                 nusers_.compareAndSet( iblock, nuser, nuser + 1 ) ) {
+                break;
+            }
+            Thread.yield();
+        }
+        MappedByteBuffer buf = bufs_.get( iblock );
+        if ( buf == null ) {
+            synchronized ( this ) {
+                buf = bufs_.get( iblock );
+                if ( buf == null ) {
+                    long offset = iblock * (long) blockSize_;
+                    long leng = Math.min( blockSize_, size_ - offset );
+                    logger_.config( "Mapping shared file region "
+                                  + ( iblock + 1 ) + "/" + nblock_
+                                  + " of " + logName_ );
+                    try {
+                        buf = channel_.map( FileChannel.MapMode.READ_ONLY,
+                                            pos_ + offset, leng );
+                    }
+                    catch ( IOException e ) {
+                        nusers_.decrementAndGet( iblock );
+                        throw e;
+                    }
+                    bufs_.set( iblock, buf );
+                }
+            }
+        }
+        return buf;
+    }
+
+    /**
+     * Marks a block as no longer in use by a caller of {@link #pinBlock}.
+     * The caller must not use the block's buffer following this call.
+     *
+     * @param  iblock  block index
+     * @param  discard  if true, the block is discarded immediately
+     *                  if no other user holds it;
+     *                  otherwise it is kept until it expires
+     */
+    private void unpinBlock( int iblock, boolean discard ) {
+        useEpochs_.set( iblock, System.currentTimeMillis() );
+        if ( nusers_.decrementAndGet( iblock ) == 0 && discard ) {
+            discardBlock( iblock );
+        }
+    }
+
+    /**
+     * Discards, and attempts to unmap, any blocks that are not in use
+     * and have been idle for longer than the expiry period.
+     * To keep it cheap, this only does the work if it has not been
+     * done recently.
+     */
+    private void tidyBlocks() {
+        long now = System.currentTimeMillis();
+        if ( now - lastTidy_ > tidyMillis_ ) {
+            lastTidy_ = now;
+            long lastOkUse = now - expiryMillis_;
+            for ( int ib = 0; ib < nblock_; ib++ ) {
+                if ( useEpochs_.get( ib ) < lastOkUse ) {
+                    discardBlock( ib );
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards, and attempts to unmap, a given block if it is mapped
+     * and not currently in use.
+     *
+     * @param  iblock  block index
+     */
+    private void discardBlock( int iblock ) {
+        if ( bufs_.get( iblock ) != null &&
+             nusers_.compareAndSet( iblock, 0, -1 ) ) {
+            try {
+                MappedByteBuffer buf = bufs_.getAndSet( iblock, null );
+                if ( buf != null ) {
+                    boolean unmapped = unmapper_.unmap( buf );
+                    logger_.config( "Expiring shared buffer "
+                                  + ( iblock + 1 ) + "/" + nblock_
+                                  + " of " + logName_
+                                  + ( unmapped ? " (unmapped)"
+                                               : " (not unmapped)" ) );
+                }
+            }
+            finally {
+                nusers_.set( iblock, 0 );
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the block containing a given offset,
+     * checking that a given number of bytes are available there.
+     *
+     * @param  offset  offset into mapped region
+     * @param  count   number of bytes required
+     * @return  block index
+     * @throws  EOFException  if the requested bytes are out of range
+     */
+    private int getBlockIndex( long offset, int count ) throws EOFException {
+        if ( offset < 0 || offset + count > size_ ) {
+            throw new EOFException( "Out of bounds: " + offset );
+        }
+        return (int) ( offset / blockSize_ );
+    }
+
+    /**
+     * Returns a buffer containing a given number of bytes read from
+     * a given offset that straddles block boundaries.
+     * This is not expected to be called frequently.
+     *
+     * @param  offset  offset into mapped region
+     * @param  count   number of bytes required
+     * @return  buffer positioned at start of the requested bytes
+     */
+    private ByteBuffer getStraddled( long offset, int count )
+            throws IOException {
+        byte[] array = new byte[ count ];
+        for ( int i = 0; i < count; i++ ) {
+            array[ i ] = getByte( offset + i );
+        }
+        return ByteBuffer.wrap( array );
+    }
+
+    /**
+     * BlockMappedInput implementation that uses views of the shared
+     * buffers owned by this cache.
+     */
+    private class SharedBlockMappedInput extends BlockMappedInput {
+        private final boolean isSeq_;
+        private int pinned_;
+        private boolean isClosed_;
+
+        /**
+         * Constructor.
+         *
+         * @param  isSeq  true if sequential access is expected
+         */
+        SharedBlockMappedInput( boolean isSeq ) throws IOException {
+            super( channel_, pos_, size_, logName_, blockSize_ );
+            isSeq_ = isSeq;
+            pinned_ = -1;
+            acquire();
+        }
+
+        protected MappedByteBuffer acquireBlock( int iblock )
+                throws IOException {
+
+            /* The duplicate is a view of the same mapped memory with
+             * independent position; it is a MappedByteBuffer in practice,
+             * though the ByteBuffer.duplicate signature does not say so
+             * prior to Java 13. */
+            MappedByteBuffer buf =
+                (MappedByteBuffer) pinBlock( iblock ).duplicate();
+            if ( pinned_ >= 0 ) {
+                unpinBlock( pinned_, isSeq_ );
+            }
+            pinned_ = iblock;
+            tidyBlocks();
+            return buf;
+        }
+
+        public void close() {
+            if ( ! isClosed_ ) {
+                isClosed_ = true;
+                if ( pinned_ >= 0 ) {
+                    unpinBlock( pinned_, isSeq_ );
+                    pinned_ = -1;
+                }
+                release();
+            }
+        }
+    }
+}
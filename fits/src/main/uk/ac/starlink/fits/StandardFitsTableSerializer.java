@@ -10,8 +10,11 @@ import nom.tam.fits.Header;
 import nom.tam.fits.HeaderCardException;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.PipelinedRowWriter;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowStore;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.Tables;
 
 /**
@@ -21,6 +24,20 @@ import uk.ac.starlink.table.Tables;
  * Array-valued columns are all written as fixed size arrays.
  * This class does the hard work for FitsTableWriter.
  *
+ * <p>If the table metadata does not fully determine the output format
+ * (variable string lengths or array shapes, nullable integer columns
+ * without a declared null value, or unknown row count) a first pass
+ * through the data is required before the header can be written.
+ * If a spill storage policy is supplied and the table is not random-access,
+ * the rows read during that pass are cached using the policy and the
+ * data is written from the cache, so that the input table is only
+ * read once.
+ * If the row count is the only unknown, and the caller is able to
+ * update the header once the data has been written,
+ * the serializer may instead be constructed to skip the first pass;
+ * in that case {@link #getRowCount} returns -1 until
+ * {@link #writeData} has been called.
+ *
  * @author   Mark Taylor (Starlink)
  */
 public class StandardFitsTableSerializer implements FitsTableSerializer {
@@ -28,6 +45,8 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
     private static Logger logger = Logger.getLogger( "uk.ac.starlink.fits" );
 
     private final boolean allowSignedByte;
+    private final StoragePolicy spillPolicy;
+    private final boolean allowUnknownRows;
     private StarTable table;
     private ColumnWriter[] colWriters;
     private ColumnInfo[] colInfos;
@@ -40,7 +59,41 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
      *          (TZERO=-128), if false bytes written as signed shorts
      */
     StandardFitsTableSerializer( boolean allowSignedByte ) {
+        this( allowSignedByte, null );
+    }
+
+    /**
+     * Package-private constructor intended for use by subclasses,
+     * with a policy for caching rows read in a first pass.
+     *
+     * @param   allowSignedByte  if true, bytes written as FITS signed bytes
+     *          (TZERO=-128), if false bytes written as signed shorts
+     * @param   spillPolicy  policy for caching rows of a non-random table
+     *          during the first pass, or null to read the table twice
+     */
+    StandardFitsTableSerializer( boolean allowSignedByte,
+                                 StoragePolicy spillPolicy ) {
+        this( allowSignedByte, spillPolicy, false );
+    }
+
+    /**
+     * Package-private constructor intended for use by subclasses,
+     * with a policy for caching rows and an option to leave the
+     * row count undetermined.
+     *
+     * @param   allowSignedByte  if true, bytes written as FITS signed bytes
+     *          (TZERO=-128), if false bytes written as signed shorts
+     * @param   spillPolicy  policy for caching rows of a non-random table
+     *          during the first pass, or null to read the table twice
+     * @param   allowUnknownRows  if true, no first pass is made
+     *          just to count the rows
+     */
+    StandardFitsTableSerializer( boolean allowSignedByte,
+                                 StoragePolicy spillPolicy,
+                                 boolean allowUnknownRows ) {
         this.allowSignedByte = allowSignedByte;
+        this.spillPolicy = spillPolicy;
+        this.allowUnknownRows = allowUnknownRows;
     }
 
     /**
@@ -57,7 +110,56 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
     public StandardFitsTableSerializer( StarTable table,
                                         boolean allowSignedByte )
             throws IOException {
-        this( allowSignedByte );
+        this( table, allowSignedByte, null );
+    }
+
+    /**
+     * Constructs a serializer to write a given StarTable, with explicit
+     * instructions about byte-type columns and about how to avoid
+     * reading the table twice.
+     * If a first pass through the data is required, and the table
+     * is not random-access, the rows are cached using
+     * <code>spillPolicy</code> so that the source table is only read once.
+     * If <code>spillPolicy</code> is null, the table is read twice
+     * in that case.
+     *
+     * @param  table  the table to be written
+     * @param  allowSignedByte  if true, bytes written as FITS signed bytes
+     *         (TZERO=-128), if false bytes written as signed shorts
+     * @param  spillPolicy  policy for caching rows read during the first pass,
+     *         or null
+     */
+    public StandardFitsTableSerializer( StarTable table,
+                                        boolean allowSignedByte,
+                                        StoragePolicy spillPolicy )
+            throws IOException {
+        this( table, allowSignedByte, spillPolicy, false );
+    }
+
+    /**
+     * Constructs a serializer to write a given StarTable, optionally
+     * leaving the row count to be determined while the data is written.
+     * If <code>allowUnknownRows</code> is true and the row count is
+     * the only thing that the table metadata does not determine,
+     * the table is not read before the data is written.
+     * In that case the header's NAXIS2 card has the value zero,
+     * and the caller must update it with the value of
+     * {@link #getRowCount} once {@link #writeData} has completed.
+     *
+     * @param  table  the table to be written
+     * @param  allowSignedByte  if true, bytes written as FITS signed bytes
+     *         (TZERO=-128), if false bytes written as signed shorts
+     * @param  spillPolicy  policy for caching rows read during the first pass,
+     *         or null
+     * @param  allowUnknownRows  if true, the caller can patch the row count
+     *         after writing the data
+     */
+    public StandardFitsTableSerializer( StarTable table,
+                                        boolean allowSignedByte,
+                                        StoragePolicy spillPolicy,
+                                        boolean allowUnknownRows )
+            throws IOException {
+        this( allowSignedByte, spillPolicy, allowUnknownRows );
         init( table );
     }
 
@@ -163,8 +265,14 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
 
         /* If necessary, make a first pass through the table data to
          * find out the maximum size of variable length fields and the length
-         * of the table. */
-        if ( hasVarShapes || checkForNullableInts || nrow < 0 ) {
+         * of the table.  If only the length is unknown and the caller
+         * can patch it in later, the pass is not required. */
+        boolean deferCount = nrow < 0 && allowUnknownRows
+                          && ! hasVarShapes && ! checkForNullableInts;
+        if ( deferCount ) {
+            logger.config( "Row count will be determined during write" );
+        }
+        else if ( hasVarShapes || checkForNullableInts || nrow < 0 ) {
             StringBuffer sbuf = new StringBuffer( "First pass needed: " );
             if ( hasVarShapes ) {
                 sbuf.append( "(variable array shapes) " );
@@ -175,6 +283,17 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
             if ( nrow < 0 ) {
                 sbuf.append( "(unknown row count) " );
             }
+
+            /* If the table can only be read sequentially, optionally
+             * keep the rows as we go so that we don't have to read
+             * it again to write the data. */
+            RowStore spillStore = spillPolicy != null && ! table.isRandom()
+                                ? spillPolicy.makeRowStore()
+                                : null;
+            if ( spillStore != null ) {
+                sbuf.append( "(caching rows) " );
+                spillStore.acceptMetadata( table );
+            }
             logger.config( sbuf.toString() );
             nrow = 0L;
 
@@ -183,6 +302,11 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
             try {
                 while ( rseq.next() ) {
                     nrow++;
+                    Object[] row = null;
+                    if ( spillStore != null ) {
+                        row = rseq.getRow();
+                        spillStore.acceptRow( row );
+                    }
                     for ( int icol = 0; icol < ncol; icol++ ) {
                         if ( useCols[ icol ] &&
                              ( varShapes[ icol ] || 
@@ -190,7 +314,8 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
                                varElementChars[ icol ] || 
                                ( mayHaveNullableInts[ icol ] && 
                                  ! hasNulls[ icol ] ) ) ) {
-                            Object cell = rseq.getCell( icol );
+                            Object cell = row != null ? row[ icol ]
+                                                      : rseq.getCell( icol );
                             if ( cell == null ) {
                                 if ( mayHaveNullableInts[ icol ] ) {
                                     hasNulls[ icol ] = true;
@@ -225,6 +350,12 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
                 rseq.close();
             }
 
+            /* Write the data from the cached copy from now on. */
+            if ( spillStore != null ) {
+                spillStore.endRows();
+                this.table = spillStore.getStarTable();
+            }
+
             /* In the case of variable string lengths and no non-null data
              * in any of the cells, maxChars could still be set negative.
              * Fix that here. */
@@ -265,8 +396,9 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
             }
         }
 
-        /* Store the row count, which we must have got by now. */
-        assert nrow >= 0;
+        /* Store the row count, which we must have got by now
+         * unless it is deliberately deferred. */
+        assert nrow >= 0 || deferCount;
         rowCount = nrow;
 
         /* We now have all the information we need about the table.
@@ -329,7 +461,8 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
         hdr.addValue( "BITPIX", 8, "8-bit bytes" );
         hdr.addValue( "NAXIS", 2, "2-dimensional table" );
         hdr.addValue( "NAXIS1", rowLength, "width of table in bytes" );
-        hdr.addValue( "NAXIS2", rowCount, "number of rows in table" );
+        hdr.addValue( "NAXIS2", Math.max( rowCount, 0L ),
+                      "number of rows in table" );
         hdr.addValue( "PCOUNT", 0, "size of special data area" );
         hdr.addValue( "GCOUNT", 1, "one data group" );
         hdr.addValue( "TFIELDS", nUseCol, "number of columns" );
@@ -444,7 +577,7 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
 
         /* Work out the length of each row in bytes. */
         int rowBytes = 0;
-        int ncol = table.getColumnCount();
+        final int ncol = table.getColumnCount();
         for ( int icol = 0; icol < ncol; icol++ ) {
             ColumnWriter writer = colWriters[ icol ];
             if ( writer != null ) {
@@ -453,24 +586,37 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
         }
 
         /* Write the data cells, delegating the item in each column to
-         * the writer that knows how to handle it. */
-        long nWritten = 0L;
-        RowSequence rseq = table.getRowSequence();
-        try {
-            while ( rseq.next() ) {
-                Object[] row = rseq.getRow();
-                for ( int icol = 0; icol < ncol; icol++ ) {
-                    ColumnWriter writer = colWriters[ icol ];
-                    if ( writer != null ) {
-                        writer.writeValue( strm, row[ icol ] );
+         * the writer that knows how to handle it.  If the writers permit,
+         * rows are encoded in parallel. */
+        int nthread = isConcurrentWriting() ? PipelinedRowWriter.DEFAULT_NTHREAD
+                                            : 1;
+        PipelinedRowWriter rowWriter = new PipelinedRowWriter( nthread ) {
+            protected RowEncoder createRowEncoder() {
+                return new RowEncoder() {
+                    public void encodeRow( Object[] row, DataOutput out )
+                            throws IOException {
+                        for ( int icol = 0; icol < ncol; icol++ ) {
+                            ColumnWriter writer = colWriters[ icol ];
+                            if ( writer != null ) {
+                                writer.writeValue( out, row[ icol ] );
+                            }
+                        }
                     }
-                }
-                nWritten += rowBytes;
+                };
             }
+        };
+        long nrowWritten;
+        RowSequence rseq = table.getRowSequence();
+        try {
+            nrowWritten = rowWriter.writeRows( rseq, strm );
         }
         finally {
             rseq.close();
         }
+        if ( rowCount < 0 ) {
+            rowCount = nrowWritten;
+        }
+        long nWritten = nrowWritten * rowBytes;
 
         /* Write padding. */
         int extra = (int) ( nWritten % (long) 2880 );
@@ -479,6 +625,18 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
         }
     }
 
+    /**
+     * Indicates whether the column writers used by this serializer
+     * may be invoked concurrently from multiple threads, in any order.
+     * If so, {@link #writeData} encodes rows in parallel.
+     * The StandardFitsTableSerializer implementation returns true.
+     *
+     * @return  true iff rows may be encoded in parallel
+     */
+    boolean isConcurrentWriting() {
+        return true;
+    }
+
     public char getFormatChar( int icol ) {
         if ( colWriters[ icol ] == null ) {
             return (char) 0;
@@ -537,7 +695,6 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
         if ( clazz == String.class ) {
             final int maxChars = eSize;
             final int[] dims = new int[] { maxChars };
-            final byte[] buf = new byte[ maxChars ];
             final byte[] blankBuf = new byte[ maxChars ];
             final byte padByte = (byte) ' ';
             Arrays.fill( blankBuf, padByte );
@@ -549,7 +706,7 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
                         bytes = blankBuf;
                     }
                     else {
-                        bytes = buf;
+                        bytes = new byte[ maxChars ];
                         String sval = (String) value;
                         int leng = Math.min( sval.length(), maxChars );
                         for ( int i = 0; i < leng; i++ ) {
@@ -589,11 +746,11 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
             final int[] charDims = new int[ shape.length + 1 ];
             charDims[ 0 ] = maxChars;
             System.arraycopy( shape, 0, charDims, 1, shape.length );
-            final byte[] buf = new byte[ maxChars ];
             final byte padByte = (byte) ' ';
             return new ColumnWriter() {
                 public void writeValue( DataOutput out, Object value )
                         throws IOException {
+                    byte[] buf = new byte[ maxChars ];
                     int is = 0;
                     if ( value != null ) {
                         String[] svals = (String[]) value;
@@ -0,0 +1,687 @@
+package uk.ac.starlink.fits;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression algorithm for a column tile in a compressed binary table,
+ * as defined by the FITS tiled table compression convention.
+ * The data for a tile of a column is the big-endian byte representation
+ * of all the elements of all the cells in that column for the rows
+ * in the tile, concatenated in row order.
+ *
+ * <p>Instances of this class are stateless and may be used from
+ * multiple threads.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+abstract class TileCompression {
+
+    private final String name_;
+
+    /** No compression. */
+    public static final TileCompression NOCOMPRESS =
+            new TileCompression( "NOCOMPRESS" ) {
+        byte[] compress( byte[] data, int elSize ) {
+            return data;
+        }
+        byte[] uncompress( byte[] cdata, int elSize, int nbyte ) {
+            return cdata;
+        }
+    };
+
+    /** Gzip compression. */
+    public static final TileCompression GZIP_1 =
+            new TileCompression( "GZIP_1" ) {
+        byte[] compress( byte[] data, int elSize ) throws IOException {
+            return gzip( data );
+        }
+        byte[] uncompress( byte[] cdata, int elSize, int nbyte )
+                throws IOException {
+            return gunzip( cdata, nbyte );
+        }
+    };
+
+    /** Gzip compression applied to byte-shuffled data. */
+    public static final TileCompression GZIP_2 =
+            new TileCompression( "GZIP_2" ) {
+        byte[] compress( byte[] data, int elSize ) throws IOException {
+            return gzip( shuffle( data, elSize ) );
+        }
+        byte[] uncompress( byte[] cdata, int elSize, int nbyte )
+                throws IOException {
+            return unshuffle( gunzip( cdata, nbyte ), elSize );
+        }
+    };
+
+    /** Rice compression, for 1-, 2- and 4-byte integer elements. */
+    public static final TileCompression RICE_1 =
+            new TileCompression( "RICE_1" ) {
+        boolean isApplicable( char formatChar ) {
+            return formatChar == 'B' || formatChar == 'I'
+                || formatChar == 'J';
+        }
+        byte[] compress( byte[] data, int elSize ) {
+            return Rice.compress( data, elSize );
+        }
+        byte[] uncompress( byte[] cdata, int elSize, int nbyte )
+                throws IOException {
+            return Rice.uncompress( cdata, elSize, nbyte );
+        }
+    };
+
+    private static final TileCompression[] KNOWN_COMPRESSIONS = {
+        NOCOMPRESS, GZIP_1, GZIP_2, RICE_1,
+    };
+
+    private static ExecutorService executor_;
+
+    /**
+     * Constructor.
+     *
+     * @param  name  algorithm name, as used in the ZCTYPn header card
+     */
+    protected TileCompression( String name ) {
+        name_ = name;
+    }
+
+    /**
+     * Returns the name of this algorithm, as used in the ZCTYPn card.
+     *
+     * @return  name
+     */
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * Indicates whether this algorithm may be used for a column with
+     * a given TFORM data type character.
+     *
+     * @param  formatChar  TFORMn data type letter
+     * @return  true iff this compression can be used
+     */
+    boolean isApplicable( char formatChar ) {
+        return true;
+    }
+
+    /**
+     * Compresses the data for one tile of a column.
+     *
+     * @param  data  uncompressed big-endian data
+     * @param  elSize  number of bytes per element
+     * @return  compressed data
+     */
+    abstract byte[] compress( byte[] data, int elSize ) throws IOException;
+
+    /**
+     * Uncompresses the data for one tile of a column.
+     *
+     * @param  cdata  compressed data
+     * @param  elSize  number of bytes per element
+     * @param  nbyte  number of bytes of uncompressed data expected
+     * @return  <code>nbyte</code>-element uncompressed big-endian data
+     * @throws  IOException  if the data cannot be decoded
+     */
+    abstract byte[] uncompress( byte[] cdata, int elSize, int nbyte )
+            throws IOException;
+
+    @Override
+    public String toString() {
+        return name_;
+    }
+
+    /**
+     * Returns the compression with a given ZCTYPn name.
+     *
+     * @param  name  algorithm name
+     * @return  compression, or null if not known
+     */
+    public static TileCompression getCompression( String name ) {
+        if ( name != null ) {
+            for ( int i = 0; i < KNOWN_COMPRESSIONS.length; i++ ) {
+                TileCompression comp = KNOWN_COMPRESSIONS[ i ];
+                if ( comp.getName().equalsIgnoreCase( name.trim() ) ) {
+                    return comp;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of bytes per primitive element for a
+     * given TFORM data type character.
+     *
+     * @param  formatChar  TFORMn data type letter
+     * @return  element size in bytes
+     */
+    static int getElementSize( char formatChar ) {
+        switch ( formatChar ) {
+            case 'I':
+                return 2;
+            case 'J':
+            case 'E':
+            case 'C':
+                return 4;
+            case 'K':
+            case 'D':
+            case 'M':
+                return 8;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Executes a number of (de)compression tasks, in parallel if
+     * there is more than one, and returns their results.
+     *
+     * @param  tasks  tasks each returning a byte array
+     * @return   array of task results, one for each input task
+     */
+    static byte[][] executeTasks( Callable<byte[]>[] tasks )
+            throws IOException {
+        int ntask = tasks.length;
+        byte[][] results = new byte[ ntask ][];
+        if ( ntask == 1 ) {
+            try {
+                results[ 0 ] = tasks[ 0 ].call();
+            }
+            catch ( IOException e ) {
+                throw e;
+            }
+            catch ( RuntimeException e ) {
+                throw e;
+            }
+            catch ( Exception e ) {
+                throw (IOException)
+                      new IOException( e.getMessage() ).initCause( e );
+            }
+            return results;
+        }
+        ExecutorService executor = getExecutor();
+        List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>( ntask );
+        for ( int i = 0; i < ntask; i++ ) {
+            futures.add( executor.submit( tasks[ i ] ) );
+        }
+        try {
+            for ( int i = 0; i < ntask; i++ ) {
+                results[ i ] = futures.get( i ).get();
+            }
+        }
+        catch ( InterruptedException e ) {
+            for ( Future<byte[]> future : futures ) {
+                future.cancel( true );
+            }
+            Thread.currentThread().interrupt();
+            throw (IOException)
+                  new InterruptedIOException( "Interrupted" ).initCause( e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable err = e.getCause();
+            if ( err instanceof IOException ) {
+                throw (IOException) err;
+            }
+            else if ( err instanceof RuntimeException ) {
+                throw (RuntimeException) err;
+            }
+            else if ( err instanceof Error ) {
+                throw (Error) err;
+            }
+            else {
+                throw (IOException)
+                      new IOException( err.getMessage() ).initCause( err );
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the executor service used for parallel tile processing.
+     * This is a lazily created fixed-size pool of daemon threads,
+     * shared by all readers and writers.
+     *
+     * @return  executor
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if ( executor_ == null ) {
+            int nthread = Runtime.getRuntime().availableProcessors();
+            executor_ =
+                Executors.newFixedThreadPool( nthread, new ThreadFactory() {
+                    public Thread newThread( Runnable r ) {
+                        Thread th = new Thread( r, "FITS tile compression" );
+                        th.setDaemon( true );
+                        return th;
+                    }
+                } );
+        }
+        return executor_;
+    }
+
+    /**
+     * Gzip-compresses a byte array.
+     *
+     * @param  data  input data
+     * @return  compressed data
+     */
+    private static byte[] gzip( byte[] data ) throws IOException {
+        ByteArrayOutputStream bout =
+            new ByteArrayOutputStream( data.length / 2 + 64 );
+        GZIPOutputStream zout = new GZIPOutputStream( bout );
+        zout.write( data );
+        zout.close();
+        return bout.toByteArray();
+    }
+
+    /**
+     * Gzip-uncompresses a byte array of known uncompressed size.
+     *
+     * @param  cdata  compressed data
+     * @param  nbyte  expected uncompressed size
+     * @return  uncompressed data
+     */
+    private static byte[] gunzip( byte[] cdata, int nbyte )
+            throws IOException {
+        byte[] data = new byte[ nbyte ];
+        InputStream zin =
+            new GZIPInputStream( new ByteArrayInputStream( cdata ) );
+        try {
+            int n = 0;
+            while ( n < nbyte ) {
+                int nr = zin.read( data, n, nbyte - n );
+                if ( nr < 0 ) {
+                    throw new IOException( "Compressed tile too short ("
+                                         + n + " < " + nbyte + ")" );
+                }
+                n += nr;
+            }
+        }
+        finally {
+            zin.close();
+        }
+        return data;
+    }
+
+    /**
+     * Reorders the bytes of an array so that all the first bytes of
+     * each element come first, then all the second bytes, etc.
+     *
+     * @param  data  input data
+     * @param  elSize  element size in bytes
+     * @return  shuffled data
+     */
+    static byte[] shuffle( byte[] data, int elSize ) {
+        if ( elSize <= 1 ) {
+            return data;
+        }
+        int nel = data.length / elSize;
+        byte[] out = new byte[ data.length ];
+        for ( int ie = 0; ie < nel; ie++ ) {
+            int base = ie * elSize;
+            for ( int ib = 0; ib < elSize; ib++ ) {
+                out[ ib * nel + ie ] = data[ base + ib ];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Inverts the {@link #shuffle} operation.
+     *
+     * @param  data  shuffled data
+     * @param  elSize  element size in bytes
+     * @return  unshuffled data
+     */
+    static byte[] unshuffle( byte[] data, int elSize ) {
+        if ( elSize <= 1 ) {
+            return data;
+        }
+        int nel = data.length / elSize;
+        byte[] out = new byte[ data.length ];
+        for ( int ie = 0; ie < nel; ie++ ) {
+            int base = ie * elSize;
+            for ( int ib = 0; ib < elSize; ib++ ) {
+                out[ base + ib ] = data[ ib * nel + ie ];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Implements the Rice compression algorithm as used by CFITSIO,
+     * with a block size of 32 elements.
+     * Differences between successive elements are calculated with
+     * wraparound in the element width, so any integer data can be
+     * represented.
+     */
+    static class Rice {
+
+        private static final int NBLOCK = 32;
+
+        /**
+         * Private sole constructor prevents instantiation.
+         */
+        private Rice() {
+        }
+
+        /**
+         * Rice-compresses big-endian integer data.
+         *
+         * @param  data  input data
+         * @param  elSize  element size, 1, 2 or 4
+         * @return  compressed data
+         */
+        static byte[] compress( byte[] data, int elSize ) {
+            int bbits = elSize * 8;
+            int fsbits = getFsBits( elSize );
+            int fsmax = getFsMax( elSize );
+            long mask = ( 1L << bbits ) - 1;
+            int nel = data.length / elSize;
+            BitWriter out = new BitWriter( data.length / 2 + 16 );
+            if ( nel == 0 ) {
+                return out.toByteArray();
+            }
+            long lastpix = readElement( data, 0, elSize );
+            out.writeBits( lastpix & mask, bbits );
+            long[] diff = new long[ NBLOCK ];
+            for ( int i = 0; i < nel; i += NBLOCK ) {
+                int nb = Math.min( NBLOCK, nel - i );
+                double pixelsum = 0;
+                for ( int j = 0; j < nb; j++ ) {
+                    long nextpix = readElement( data, i + j, elSize );
+                    long pdiff = signExtend( nextpix - lastpix, bbits );
+                    long d = pdiff < 0 ? ~( pdiff << 1 ) : ( pdiff << 1 );
+                    diff[ j ] = d & mask;
+                    pixelsum += diff[ j ];
+                    lastpix = nextpix;
+                }
+                double dpsum = ( pixelsum - ( nb / 2 ) - 1 ) / nb;
+                if ( dpsum < 0 ) {
+                    dpsum = 0;
+                }
+                long psum = ( (long) dpsum ) >> 1;
+                int fs = 0;
+                while ( psum > 0 ) {
+                    psum >>= 1;
+                    fs++;
+                }
+                if ( fs >= fsmax ) {
+                    out.writeBits( fsmax + 1, fsbits );
+                    for ( int j = 0; j < nb; j++ ) {
+                        out.writeBits( diff[ j ], bbits );
+                    }
+                }
+                else if ( fs == 0 && pixelsum == 0 ) {
+                    out.writeBits( 0, fsbits );
+                }
+                else {
+                    out.writeBits( fs + 1, fsbits );
+                    long fsmask = ( 1L << fs ) - 1;
+                    for ( int j = 0; j < nb; j++ ) {
+                        long v = diff[ j ];
+                        long top = v >> fs;
+                        out.writeZeros( top );
+                        out.writeBits( 1, 1 );
+                        if ( fs > 0 ) {
+                            out.writeBits( v & fsmask, fs );
+                        }
+                    }
+                }
+            }
+            return out.toByteArray();
+        }
+
+        /**
+         * Uncompresses Rice-compressed data to big-endian integers.
+         *
+         * @param  cdata  compressed data
+         * @param  elSize  element size, 1, 2 or 4
+         * @param  nbyte  size of uncompressed data in bytes
+         * @return  uncompressed data
+         */
+        static byte[] uncompress( byte[] cdata, int elSize, int nbyte )
+                throws IOException {
+            int bbits = elSize * 8;
+            int fsbits = getFsBits( elSize );
+            int fsmax = getFsMax( elSize );
+            int nel = nbyte / elSize;
+            byte[] data = new byte[ nbyte ];
+            if ( nel == 0 ) {
+                return data;
+            }
+            try {
+                int ic = 0;
+                long lastpix = 0;
+                for ( int i = 0; i < elSize; i++ ) {
+                    lastpix = ( lastpix << 8 ) | ( cdata[ ic++ ] & 0xff );
+                }
+                long b = cdata[ ic++ ] & 0xff;
+                int nbits = 8;
+                for ( int i = 0; i < nel; ) {
+                    nbits -= fsbits;
+                    while ( nbits < 0 ) {
+                        b = ( b << 8 ) | ( cdata[ ic++ ] & 0xff );
+                        nbits += 8;
+                    }
+                    int fs = (int) ( b >> nbits ) - 1;
+                    b &= ( 1L << nbits ) - 1;
+                    int imax = Math.min( i + NBLOCK, nel );
+                    if ( fs < 0 ) {
+                        for ( ; i < imax; i++ ) {
+                            writeElement( data, i, elSize, lastpix );
+                        }
+                    }
+                    else if ( fs == fsmax ) {
+                        for ( ; i < imax; i++ ) {
+                            int k = bbits - nbits;
+                            long diff = b << k;
+                            for ( k -= 8; k >= 0; k -= 8 ) {
+                                b = cdata[ ic++ ] & 0xff;
+                                diff |= b << k;
+                            }
+                            if ( nbits > 0 ) {
+                                b = cdata[ ic++ ] & 0xff;
+                                diff |= b >> ( -k );
+                                b &= ( 1L << nbits ) - 1;
+                            }
+                            else {
+                                b = 0;
+                            }
+                            lastpix = lastpix + unmap( diff );
+                            writeElement( data, i, elSize, lastpix );
+                        }
+                    }
+                    else {
+                        for ( ; i < imax; i++ ) {
+                            while ( b == 0 ) {
+                                nbits += 8;
+                                b = cdata[ ic++ ] & 0xff;
+                            }
+                            int nzero = nbits
+                                      - ( 64 - Long.numberOfLeadingZeros( b ) );
+                            nbits -= nzero + 1;
+                            b ^= 1L << nbits;
+                            nbits -= fs;
+                            while ( nbits < 0 ) {
+                                b = ( b << 8 ) | ( cdata[ ic++ ] & 0xff );
+                                nbits += 8;
+                            }
+                            long diff = ( ( (long) nzero ) << fs )
+                                      | ( b >> nbits );
+                            b &= ( 1L << nbits ) - 1;
+                            lastpix = lastpix + unmap( diff );
+                            writeElement( data, i, elSize, lastpix );
+                        }
+                    }
+                }
+            }
+            catch ( ArrayIndexOutOfBoundsException e ) {
+                throw (IOException)
+                      new IOException( "Rice-compressed tile too short" )
+                     .initCause( e );
+            }
+            return data;
+        }
+
+        /**
+         * Undoes the mapping of signed differences to non-negative values.
+         *
+         * @param  diff  mapped difference
+         * @return  signed difference
+         */
+        private static long unmap( long diff ) {
+            return ( diff & 1 ) == 0 ? ( diff >> 1 ) : ~( diff >> 1 );
+        }
+
+        /**
+         * Sign-extends the low bits of a value.
+         *
+         * @param  value  value
+         * @param  nbit   number of significant bits
+         * @return  sign-extended value
+         */
+        private static long signExtend( long value, int nbit ) {
+            int shift = 64 - nbit;
+            return ( value << shift ) >> shift;
+        }
+
+        /**
+         * Reads a signed big-endian integer element from a byte array.
+         */
+        private static long readElement( byte[] data, int iel, int elSize ) {
+            int off = iel * elSize;
+            long v = data[ off ];
+            for ( int i = 1; i < elSize; i++ ) {
+                v = ( v << 8 ) | ( data[ off + i ] & 0xff );
+            }
+            return v;
+        }
+
+        /**
+         * Writes the low bytes of an integer element to a byte array
+         * in big-endian order.
+         */
+        private static void writeElement( byte[] data, int iel, int elSize,
+                                          long value ) {
+            int off = iel * elSize;
+            for ( int i = elSize - 1; i >= 0; i-- ) {
+                data[ off + i ] = (byte) value;
+                value >>= 8;
+            }
+        }
+
+        private static int getFsBits( int elSize ) {
+            switch ( elSize ) {
+                case 1:
+                    return 3;
+                case 2:
+                    return 4;
+                case 4:
+                    return 5;
+                default:
+                    throw new IllegalArgumentException( "Bad Rice element size "
+                                                      + elSize );
+            }
+        }
+
+        private static int getFsMax( int elSize ) {
+            switch ( elSize ) {
+                case 1:
+                    return 6;
+                case 2:
+                    return 14;
+                case 4:
+                    return 25;
+                default:
+                    throw new IllegalArgumentException( "Bad Rice element size "
+                                                      + elSize );
+            }
+        }
+    }
+
+    /**
+     * Accumulates a big-endian bit stream.
+     */
+    private static class BitWriter {
+        private final ByteArrayOutputStream out_;
+        private int buffer_;
+        private int nbits_;
+
+        /**
+         * Constructor.
+         *
+         * @param  size  initial buffer size in bytes
+         */
+        BitWriter( int size ) {
+            out_ = new ByteArrayOutputStream( size );
+        }
+
+        /**
+         * Writes the low bits of a value, most significant first.
+         *
+         * @param  value  value
+         * @param  nbit   number of bits to write
+         */
+        void writeBits( long value, int nbit ) {
+            for ( int i = nbit - 1; i >= 0; i-- ) {
+                writeBit( (int) ( value >> i ) & 1 );
+            }
+        }
+
+        /**
+         * Writes a number of zero bits.
+         *
+         * @param  nzero  number of zero bits
+         */
+        void writeZeros( long nzero ) {
+            for ( ; nzero > 0 && nbits_ > 0; nzero-- ) {
+                writeBit( 0 );
+            }
+            for ( ; nzero >= 8; nzero -= 8 ) {
+                out_.write( 0 );
+            }
+            for ( ; nzero > 0; nzero-- ) {
+                writeBit( 0 );
+            }
+        }
+
+        /**
+         * Returns the bytes written so far, padding the final byte with
+         * zeros if required.
+         *
+         * @return  byte array
+         */
+        byte[] toByteArray() {
+            if ( nbits_ > 0 ) {
+                out_.write( buffer_ << ( 8 - nbits_ ) );
+                buffer_ = 0;
+                nbits_ = 0;
+            }
+            return out_.toByteArray();
+        }
+
+        private void writeBit( int bit ) {
+            buffer_ = ( buffer_ << 1 ) | bit;
+            if ( ++nbits_ == 8 ) {
+                out_.write( buffer_ );
+                buffer_ = 0;
+                nbits_ = 0;
+            }
+        }
+    }
+}
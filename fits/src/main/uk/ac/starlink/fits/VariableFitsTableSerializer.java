@@ -142,6 +142,14 @@ public class VariableFitsTableSerializer extends StandardFitsTableSerializer {
         return count;
     }
 
+    /**
+     * Returns false, since variable array column writers append to
+     * a shared heap in row order.
+     */
+    boolean isConcurrentWriting() {
+        return false;
+    }
+
     public void writeData( DataOutput out ) throws IOException {
         VariableArrayColumnWriter[] vcws = getVariableArrayColumnWriters();
         ByteStore byteStore = storagePolicy_.makeByteStore();
@@ -69,6 +69,48 @@ public class BasicInputTest extends TestCase {
         exerciseInput( BlockMappedInput
                       .createInput( chan, off1, leng1, "test", leng1*2, 0 ) );
 
+        SharedBlockCache cache =
+            new SharedBlockCache( chan, off1, leng1, "test", isiz + 3 );
+        BasicInput in1 = cache.createInput( false );
+        exerciseInput( cache.createInput( false ) );
+        exerciseInput( cache.createInput( true ) );
+        exerciseAbsolute( cache );
+        in1.close();
+        assertEquals( 0, cache.getMappedBlockCount() );
+        exerciseInput( new SharedBlockCache( chan, off1, leng1, "test", leng1 )
+                      .createInput( false ) );
+
+        /* Sequential readers discard blocks as they leave them. */
+        SharedBlockCache seqCache =
+            new SharedBlockCache( chan, off1, leng1, "test", isiz );
+        BasicInput seqIn = seqCache.createInput( true );
+        for ( int i = 1; i < count; i++ ) {
+            assertEquals( byteFor( i ), seqIn.readByte() );
+            seqIn.skip( isiz - 1 );
+            assertTrue( seqCache.getMappedBlockCount() <= 1 );
+        }
+
+        /* Random readers keep blocks until they have been idle
+         * for the expiry period. */
+        SharedBlockCache rndCache =
+            new SharedBlockCache( chan, off1, leng1, "test", isiz, 40 );
+        BasicInput rndIn = rndCache.createInput( false );
+        rndIn.seek( isiz * 2 );
+        rndIn.seek( isiz * 4 );
+        assertEquals( 2, rndCache.getMappedBlockCount() );
+        try {
+            Thread.sleep( 100 );
+        }
+        catch ( InterruptedException e ) {
+            fail();
+        }
+        rndIn.seek( isiz * 6 );
+        assertEquals( 2, rndCache.getMappedBlockCount() );
+        assertEquals( byteFor( 7 ), rndIn.readByte() );
+        seqIn.close();
+        rndIn.close();
+        assertEquals( 0, rndCache.getMappedBlockCount() );
+
         // Note this one fails: the EOFException is not thrown at the
         // right place.  Hmm.
 //      exerciseInput( seqOffInput( off1,
@@ -122,6 +164,26 @@ public class BasicInputTest extends TestCase {
         in.close();
     }
 
+    private void exerciseAbsolute( SharedBlockCache cache )
+            throws IOException {
+        for ( int i = 1; i < count; i++ ) {
+            long off = isiz * ( i - 1 );
+            assertEquals( byteFor( i ), cache.getByte( off ) );
+            assertEquals( shortFor( i ), cache.getShort( off + 1 ) );
+            assertEquals( intFor( i ), cache.getInt( off + 3 ) );
+            assertEquals( longFor( i ), cache.getLong( off + 17 ) );
+            assertEquals( floatFor( i ), cache.getFloat( off + 25 ) );
+            assertEquals( doubleFor( i ), cache.getDouble( off + 29 ) );
+        }
+        try {
+            cache.getLong( cache.getSize() - 4 );
+            fail();
+        }
+        catch ( EOFException e ) {
+            // ok
+        }
+    }
+
     private static BasicInput seqOffInput( int offset, DataInput dataIn )
             throws IOException {
         BasicInput input = InputFactory.createSequentialInput( dataIn );
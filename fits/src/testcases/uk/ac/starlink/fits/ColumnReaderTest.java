@@ -14,6 +14,7 @@ import nom.tam.util.BufferedDataOutputStream;
 import uk.ac.starlink.table.ArrayColumn;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.DoubleCellAccess;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StarTableOutput;
@@ -52,6 +53,169 @@ public class ColumnReaderTest extends TestCase {
         // new TextTableWriter().writeStarTable( inTable, System.out );
 
         checkIntegersTable( inTable );
+        assertTrue( inTable instanceof BintableStarTable );
+        BintableStarTable bTable = (BintableStarTable) inTable;
+        for ( int icol = 0; icol < inTable.getColumnCount(); icol++ ) {
+            double[] buf = new double[ 9 ];
+            bTable.readDoubleColumn( icol, 2, 5, buf, 3 );
+            checkDoubleColumn( inTable, icol, 2, buf, 3, 5 );
+            long[] lbuf = new long[ 9 ];
+            bTable.readLongColumn( icol, 2, 5, lbuf, 3, -99L );
+            checkLongColumn( inTable, icol, 2, lbuf, 3, 5, -99L );
+        }
+        try {
+            bTable.readDoubleColumn( 0, 4, 5, new double[ 5 ], 0 );
+            fail();
+        }
+        catch ( IllegalArgumentException e ) {
+        }
+        checkDoubleCells( bTable );
+    }
+
+    public void testColFitsDoubles() throws IOException {
+        File f = File.createTempFile( "table", ".colfits" );
+        f.deleteOnExit();
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( 6 );
+        table.addColumn( ArrayColumn.makeColumn( "s", new short[] {
+            1, 2, 3, 4, 5, 6,
+        } ) );
+        table.addColumn( ArrayColumn.makeColumn( "i", new int[] {
+            10, 20, Integer.MIN_VALUE, 40, 50, 60,
+        } ) );
+        table.addColumn( ArrayColumn.makeColumn( "d", new double[] {
+            0.5, 1.5, Double.NaN, 3.5, 4.5, 5.5,
+        } ) );
+        table.addColumn( ArrayColumn.makeColumn( "t", new String[] {
+            "a", "b", "c", "d", "e", "f",
+        } ) );
+        OutputStream out = new FileOutputStream( f );
+        new ColFitsTableWriter().writeStarTable( table, out );
+        out.close();
+        StarTable inTable = new ColFitsTableBuilder()
+                           .makeStarTable( new FileDataSource( f ), true,
+                                           StoragePolicy.PREFER_MEMORY );
+        assertTrue( inTable instanceof ColFitsStarTable );
+        ColFitsStarTable cTable = (ColFitsStarTable) inTable;
+        for ( int icol = 0; icol < inTable.getColumnCount(); icol++ ) {
+            double[] buf = new double[ 6 ];
+            cTable.readDoubleColumn( icol, 1, 5, buf, 1 );
+            checkDoubleColumn( inTable, icol, 1, buf, 1, 5 );
+            long[] lbuf = new long[ 6 ];
+            cTable.readLongColumn( icol, 0, 6, lbuf, 0, Long.MIN_VALUE );
+            checkLongColumn( inTable, icol, 0, lbuf, 0, 6, Long.MIN_VALUE );
+        }
+        checkDoubleCells( cTable );
+        cTable.close();
+        f.delete();
+    }
+
+    /**
+     * Checks that values read in bulk as doubles match the cell values
+     * of a table.
+     */
+    private void checkDoubleColumn( StarTable table, int icol, long irow0,
+                                    double[] buf, int off, int nrow )
+            throws IOException {
+        for ( int i = 0; i < nrow; i++ ) {
+            Object cell = table.getCell( irow0 + i, icol );
+            double expected = cell instanceof Number
+                            ? ((Number) cell).doubleValue()
+                            : Double.NaN;
+            assertEquals( expected, buf[ off + i ] );
+        }
+    }
+
+    /**
+     * Checks that values read in bulk as longs match the cell values
+     * of a table.
+     */
+    static void checkLongColumn( StarTable table, int icol, long irow0,
+                                 long[] buf, int off, int nrow,
+                                 long nullValue )
+            throws IOException {
+        for ( int i = 0; i < nrow; i++ ) {
+            Object cell = table.getCell( irow0 + i, icol );
+            long expected = cell instanceof Long || cell instanceof Integer
+                         || cell instanceof Short || cell instanceof Byte
+                          ? ((Number) cell).longValue()
+                          : nullValue;
+            assertEquals( expected, buf[ off + i ] );
+        }
+    }
+
+    /**
+     * Checks typed cell access for a random-access table,
+     * including concurrent reads from several threads.
+     */
+    static void checkDoubleCells( final StarTable table ) throws IOException {
+        final DoubleCellAccess dAccess = (DoubleCellAccess) table;
+        final int ncol = table.getColumnCount();
+        final long nrow = table.getRowCount();
+        final double[][] expected = new double[ ncol ][ (int) nrow ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            Class clazz = table.getColumnInfo( icol ).getContentClass();
+            boolean isNum = Number.class.isAssignableFrom( clazz );
+            assertEquals( isNum, dAccess.hasDoubleCells( icol ) );
+            for ( int irow = 0; irow < nrow; irow++ ) {
+                Object cell = table.getCell( irow, icol );
+                expected[ icol ][ irow ] =
+                    cell instanceof Number ? ((Number) cell).doubleValue()
+                                           : Double.NaN;
+            }
+        }
+        final boolean[] ok = new boolean[ 4 ];
+        Thread[] threads = new Thread[ ok.length ];
+        for ( int it = 0; it < threads.length; it++ ) {
+            final int it0 = it;
+            threads[ it ] = new Thread() {
+                public void run() {
+                    try {
+                        boolean match = true;
+                        for ( int rep = 0; rep < 50 && match; rep++ ) {
+                            match = doublesMatch( dAccess, expected );
+                        }
+                        ok[ it0 ] = match;
+                    }
+                    catch ( IOException e ) {
+                    }
+                }
+            };
+            threads[ it ].start();
+        }
+        for ( int it = 0; it < threads.length; it++ ) {
+            try {
+                threads[ it ].join();
+            }
+            catch ( InterruptedException e ) {
+                fail();
+            }
+            assertTrue( ok[ it ] );
+        }
+    }
+
+    private static boolean doublesMatch( DoubleCellAccess dAccess,
+                                         double[][] expected )
+            throws IOException {
+        for ( int icol = 0; icol < expected.length; icol++ ) {
+            if ( dAccess.hasDoubleCells( icol ) ) {
+                double[] dvals = expected[ icol ];
+                for ( int ir = dvals.length - 1; ir >= 0; ir-- ) {
+                    if ( Double.compare( dvals[ ir ],
+                                         dAccess.getDouble( ir, icol ) )
+                         != 0 ) {
+                        return false;
+                    }
+                }
+                double[] buf = new double[ dvals.length ];
+                dAccess.readDoubleColumn( icol, 0, dvals.length, buf, 0 );
+                for ( int ir = 0; ir < dvals.length; ir++ ) {
+                    if ( Double.compare( dvals[ ir ], buf[ ir ] ) != 0 ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -0,0 +1,318 @@
+package uk.ac.starlink.fits;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowListStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableSink;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.TestCase;
+import uk.ac.starlink.util.URLDataSource;
+
+public class CompressedTableTest extends TestCase {
+
+    public CompressedTableTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.fits" ).setLevel( Level.WARNING );
+    }
+
+    public void testCompressions() throws IOException {
+        StarTable table = createTable( 23 );
+        TileCompression[] comps = {
+            null,
+            TileCompression.NOCOMPRESS,
+            TileCompression.GZIP_1,
+            TileCompression.GZIP_2,
+            TileCompression.RICE_1,
+        };
+        int[] tileLengths = { 1, 7, 23, 100 };
+        for ( int ic = 0; ic < comps.length; ic++ ) {
+            for ( int it = 0; it < tileLengths.length; it++ ) {
+                byte[] buf =
+                    writeTable( table, tileLengths[ it ], comps[ ic ] );
+                checkFile( table, buf );
+                checkStream( table, buf );
+            }
+        }
+    }
+
+    public void testWriter() throws IOException {
+        StarTable table = createTable( 1000 );
+        CompressedFitsTableWriter writer = new CompressedFitsTableWriter();
+        writer.setTileLength( 64 );
+        assertEquals( 64, writer.getTileLength() );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeStarTable( table, out );
+        byte[] buf = out.toByteArray();
+        assertEquals( 0, buf.length % 2880 );
+        StarTable inTable = checkFile( table, buf );
+        assertTrue( inTable instanceof CompressedBintableStarTable );
+        BintableStarTable bTable = (BintableStarTable) inTable;
+        double[] dbuf = new double[ 200 ];
+        bTable.readDoubleColumn( 3, 50, 190, dbuf, 10 );
+        for ( int i = 0; i < 190; i++ ) {
+            assertEquals( ((Number) table.getCell( 50 + i, 3 )).doubleValue(),
+                          dbuf[ 10 + i ] );
+        }
+        long[] lbuf = new long[ 300 ];
+        for ( int icol = 0; icol < table.getColumnCount(); icol++ ) {
+            bTable.readLongColumn( icol, 20, 300, lbuf, 0, -1L );
+            ColumnReaderTest.checkLongColumn( bTable, icol, 20, lbuf, 0, 300,
+                                              -1L );
+        }
+        ColumnReaderTest.checkDoubleCells( bTable );
+        bTable.close();
+
+        ByteArrayOutputStream out0 = new ByteArrayOutputStream();
+        new FitsTableWriter().writeStarTable( table, out0 );
+        assertTrue( buf.length < out0.size() );
+    }
+
+    /**
+     * Reads tables compressed by other software rather than by
+     * CompressedFitsTableWriter.  The fixtures hold the same 50-row table
+     * compressed with GZIP_1 (1PB descriptors), GZIP_2 (1QB) and
+     * RICE_1 (1QB, integer columns only, others gzipped), in tiles of
+     * 16 rows.  They were prepared following the tiled table
+     * compression convention, with a Rice coder written after
+     * CFITSIO's, independently of the code in this package.
+     */
+    public void testFixtures() throws IOException {
+        StarTable table = createFixtureTable();
+        String[] fnames = {
+            "ctab-gzip1.fits", "ctab-gzip2.fits", "ctab-rice1.fits",
+        };
+        for ( int i = 0; i < fnames.length; i++ ) {
+            URL url = CompressedTableTest.class.getResource( fnames[ i ] );
+            StarTable inTable =
+                new FitsTableBuilder()
+               .makeStarTable( new URLDataSource( url ), false,
+                               StoragePolicy.PREFER_MEMORY );
+            checkTable( table, inTable );
+            InputStream in = url.openStream();
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            byte[] buf = new byte[ 2880 ];
+            for ( int n; ( n = in.read( buf ) ) >= 0; ) {
+                bout.write( buf, 0, n );
+            }
+            in.close();
+            StarTable fileTable = checkFile( table, bout.toByteArray() );
+            assertTrue( fileTable instanceof CompressedBintableStarTable );
+            checkStream( table, bout.toByteArray() );
+            ColumnReaderTest.checkDoubleCells( fileTable );
+        }
+    }
+
+    public void testEmpty() throws IOException {
+        StarTable table = createTable( 0 );
+        checkFile( table, writeTable( table, 10, null ) );
+    }
+
+    private byte[] writeTable( StarTable table, final int tileLen,
+                               final TileCompression comp )
+            throws IOException {
+        CompressedFitsTableWriter writer = new CompressedFitsTableWriter() {
+            protected FitsTableSerializer createSerializer( StarTable t )
+                    throws IOException {
+                return new CompressedFitsTableSerializer(
+                               t, true, null, StoragePolicy.PREFER_MEMORY,
+                               tileLen, comp );
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeStarTable( table, out );
+        return out.toByteArray();
+    }
+
+    private StarTable checkFile( StarTable table, byte[] buf )
+            throws IOException {
+        File f = File.createTempFile( "ctable", ".fits" );
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream( f );
+        out.write( buf );
+        out.close();
+        StarTable inTable = new FitsTableBuilder()
+                           .makeStarTable( new FileDataSource( f ), false,
+                                           StoragePolicy.PREFER_MEMORY );
+        assertTrue( inTable.isRandom() );
+        checkTable( table, inTable );
+        f.delete();
+        return inTable;
+    }
+
+    private void checkStream( StarTable table, byte[] buf )
+            throws IOException {
+        final RowListStarTable[] result = new RowListStarTable[ 1 ];
+        new FitsTableBuilder()
+           .streamStarTable( new ByteArrayInputStream( buf ),
+                             new TableSink() {
+            public void acceptMetadata( StarTable meta ) {
+                result[ 0 ] = new RowListStarTable( meta );
+            }
+            public void acceptRow( Object[] row ) {
+                result[ 0 ].addRow( row );
+            }
+            public void endRows() {
+            }
+        }, "" );
+        checkTable( table, result[ 0 ] );
+    }
+
+    private void checkTable( StarTable t0, StarTable t1 ) throws IOException {
+        int ncol = t0.getColumnCount();
+        long nrow = t0.getRowCount();
+        assertEquals( ncol, t1.getColumnCount() );
+        assertEquals( nrow, t1.getRowCount() );
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            assertEquals( t0.getColumnInfo( ic ).getName(),
+                          t1.getColumnInfo( ic ).getName() );
+        }
+        RowSequence rseq = t1.getRowSequence();
+        for ( long ir = 0; ir < nrow; ir++ ) {
+            assertTrue( rseq.next() );
+            Object[] row = rseq.getRow();
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                assertValueEquals( t0.getCell( ir, ic ), row[ ic ] );
+            }
+        }
+        assertTrue( ! rseq.next() );
+        rseq.close();
+        if ( t1.isRandom() ) {
+            for ( long ir = nrow - 1; ir >= 0; ir -= 3 ) {
+                for ( int ic = 0; ic < ncol; ic++ ) {
+                    assertValueEquals( t0.getCell( ir, ic ),
+                                       t1.getCell( ir, ic ) );
+                }
+            }
+        }
+    }
+
+    private void assertValueEquals( Object v0, Object v1 ) {
+        if ( v0 != null && v0.getClass().isArray() ) {
+            assertArrayEquals( v0, v1 );
+        }
+        else {
+            assertEquals( v0, v1 );
+        }
+    }
+
+    /**
+     * Returns the table whose compressed forms are stored in the
+     * ctab-*.fits fixtures.
+     *
+     * @return  50-row table
+     */
+    private static StarTable createFixtureTable() {
+        int nrow = 50;
+        int[] ids = new int[ nrow ];
+        short[] shorts = new short[ nrow ];
+        short[] ubytes = new short[ nrow ];
+        double[] doubles = new double[ nrow ];
+        float[] floats = new float[ nrow ];
+        long[] longs = new long[ nrow ];
+        String[] names = new String[ nrow ];
+        int[][] vecs = new int[ nrow ][];
+        boolean[] flags = new boolean[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+
+            /* Each 16-row tile has integers of a different character,
+             * to exercise the different Rice block encodings. */
+            ids[ i ] = i < 16 ? 7
+                     : i < 32 ? 3 * i - 20
+                     : i < 48 ? (int) ( fixtureHash( i, 1 ) % 200000001 )
+                                - 100000000
+                              : 1000000 + i;
+            shorts[ i ] = (short) ( i < 16 ? i * i - 100
+                                  : i < 32 ? -1234
+                                  : i < 48 ? fixtureHash( i, 2 ) % 32001
+                                             - 16000
+                                           : 5 );
+            ubytes[ i ] = (short) ( i < 16 ? 5 * i
+                                  : i < 32 ? 100 - i
+                                  : i < 48 ? fixtureHash( i, 3 ) % 128
+                                           : 127 );
+            doubles[ i ] = i == 40 ? Double.NaN : ( i - 20 ) / 8.0;
+            floats[ i ] = (float) ( i * 1.5 - 7 );
+            longs[ i ] = fixtureHash( i, 4 ) * 1000003L - ( 1L << 40 );
+            names[ i ] = "r" + i;
+            vecs[ i ] = new int[] { i, -i, i * i };
+            flags[ i ] = i % 3 == 0;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "ID", ids ) );
+        table.addColumn( ArrayColumn.makeColumn( "S", shorts ) );
+        table.addColumn( ArrayColumn.makeColumn( "U", ubytes ) );
+        table.addColumn( ArrayColumn.makeColumn( "X", doubles ) );
+        table.addColumn( ArrayColumn.makeColumn( "F", floats ) );
+        table.addColumn( ArrayColumn.makeColumn( "K", longs ) );
+        table.addColumn( ArrayColumn.makeColumn( "NAME", names ) );
+        table.addColumn( ArrayColumn.makeColumn( "V", vecs ) );
+        table.addColumn( ArrayColumn.makeColumn( "FLAG", flags ) );
+        return table;
+    }
+
+    /**
+     * Deterministic pseudo-random value used for the fixture table.
+     *
+     * @param  i  row index
+     * @param  k  column discriminator
+     * @return  value in the range 0..2^31-1
+     */
+    private static long fixtureHash( int i, int k ) {
+        long s = i * 7919L + k;
+        for ( int j = 0; j < 3; j++ ) {
+            s = ( s * 1103515245L + 12345L ) & 0x7fffffffL;
+        }
+        return s;
+    }
+
+    private static StarTable createTable( int nrow ) {
+        Random rnd = new Random( 23L + nrow );
+        byte[] bytes = new byte[ nrow ];
+        short[] shorts = new short[ nrow ];
+        int[] ints = new int[ nrow ];
+        long[] longs = new long[ nrow ];
+        float[] floats = new float[ nrow ];
+        double[] doubles = new double[ nrow ];
+        boolean[] flags = new boolean[ nrow ];
+        String[] strings = new String[ nrow ];
+        int[][] vecs = new int[ nrow ][];
+        for ( int i = 0; i < nrow; i++ ) {
+            bytes[ i ] = (byte) rnd.nextInt( 100 );
+            shorts[ i ] = (short) ( 1000 + rnd.nextInt( 50 ) );
+            ints[ i ] = i * 3 - rnd.nextInt( 1000000 );
+            longs[ i ] = rnd.nextLong();
+            floats[ i ] = (float) rnd.nextGaussian();
+            doubles[ i ] = i * 0.25;
+            flags[ i ] = rnd.nextBoolean();
+            strings[ i ] = "s" + rnd.nextInt( 1000 );
+            vecs[ i ] = new int[] { i, -i, rnd.nextInt() };
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "b", bytes ) );
+        table.addColumn( ArrayColumn.makeColumn( "s", shorts ) );
+        table.addColumn( ArrayColumn.makeColumn( "i", ints ) );
+        table.addColumn( ArrayColumn.makeColumn( "l", longs ) );
+        table.addColumn( ArrayColumn.makeColumn( "f", floats ) );
+        table.addColumn( ArrayColumn.makeColumn( "d", doubles ) );
+        table.addColumn( ArrayColumn.makeColumn( "z", flags ) );
+        table.addColumn( ArrayColumn.makeColumn( "t", strings ) );
+        ArrayColumn vcol = ArrayColumn.makeColumn( "v", vecs );
+        vcol.getColumnInfo().setShape( new int[] { 3 } );
+        table.addColumn( vcol );
+        return table;
+    }
+}
@@ -0,0 +1,229 @@
+package uk.ac.starlink.fits;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import nom.tam.util.BufferedDataOutputStream;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.join.IsotropicCartesianMatchEngine;
+import uk.ac.starlink.table.join.LinkSet;
+import uk.ac.starlink.table.join.MatchEngine;
+import uk.ac.starlink.table.join.RowMatcher;
+import uk.ac.starlink.util.TestCase;
+
+/**
+ * Tests parallel match binning on FITS-backed tables.
+ */
+public class FitsMatchTest extends TestCase {
+
+    public FitsMatchTest( String name ) {
+        super( name );
+    }
+
+    public void testParallelFitsBinning() throws Exception {
+        ColumnStarTable colTable = createTable( 60000, new Random( 5501 ) );
+        FitsTableSerializer ser = new StandardFitsTableSerializer( colTable );
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        BufferedDataOutputStream dout = new BufferedDataOutputStream( bout );
+        ser.writeData( dout );
+        dout.flush();
+        ByteBuffer buf = ByteBuffer.wrap( bout.toByteArray() );
+        CountingInputFactory inFact =
+            new CountingInputFactory( InputFactory
+                                     .createByteBufferFactory( buf ) );
+        StarTable fitsTable =
+            BintableStarTable.createTable( ser.getHeader(), inFact );
+        assertTrue( fitsTable.isRandom() );
+
+        MatchEngine engine =
+            new IsotropicCartesianMatchEngine( 2, 0.002, false );
+        List seqLinks = toList( createMatcher( engine, 1, colTable )
+                               .findInternalMatches( false ) );
+        inFact.reset();
+        List parLinks = toList( createMatcher( engine, 4, fitsTable )
+                               .findInternalMatches( false ) );
+        assertTrue( seqLinks.size() > 100 );
+        assertEquals( seqLinks, parLinks );
+
+        /* Binning reads must have used independent per-partition inputs,
+         * rather than the table's synchronized random-access input,
+         * and must have been able to run in more than one thread at once.
+         * Reads from the shared input, used by match scoring,
+         * are not counted. */
+        assertTrue( inFact.maxActive_.get() > 1 );
+    }
+
+    private static RowMatcher createMatcher( MatchEngine engine,
+                                             int parallelism,
+                                             StarTable table ) {
+        RowMatcher matcher =
+            new RowMatcher( engine, new StarTable[] { table } );
+        matcher.setParallelism( parallelism );
+        return matcher;
+    }
+
+    private static ColumnStarTable createTable( int nrow, Random rnd ) {
+        double[] xs = new double[ nrow ];
+        double[] ys = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = rnd.nextDouble();
+            ys[ i ] = rnd.nextDouble();
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "X", xs ) );
+        table.addColumn( ArrayColumn.makeColumn( "Y", ys ) );
+        return table;
+    }
+
+    private static List toList( LinkSet links ) {
+        links.sort();
+        List list = new ArrayList();
+        for ( Iterator it = links.iterator(); it.hasNext(); ) {
+            list.add( it.next() );
+        }
+        return list;
+    }
+
+    /**
+     * InputFactory wrapper that keeps track of how its inputs are read.
+     */
+    private static class CountingInputFactory extends InputFactory {
+        final InputFactory base_;
+        final AtomicInteger active_;
+        final AtomicInteger maxActive_;
+
+        CountingInputFactory( InputFactory base ) {
+            base_ = base;
+            active_ = new AtomicInteger();
+            maxActive_ = new AtomicInteger();
+        }
+
+        void reset() {
+            maxActive_.set( 0 );
+        }
+
+        public boolean isRandom() {
+            return base_.isRandom();
+        }
+
+        public BasicInput createInput( boolean isSeq ) throws IOException {
+            return new CountingInput( base_.createInput( isSeq ), ! isSeq );
+        }
+
+        public void close() throws IOException {
+            base_.close();
+        }
+
+        private class CountingInput implements BasicInput {
+            final BasicInput base_;
+            final boolean isShared_;
+
+            CountingInput( BasicInput base, boolean isShared ) {
+                base_ = base;
+                isShared_ = isShared;
+            }
+
+            /**
+             * Records the start of a read from an unshared input,
+             * yielding to give other threads a chance to overlap with it.
+             */
+            private void enter() {
+                if ( isShared_ ) {
+                    return;
+                }
+                int nactive = active_.incrementAndGet();
+                while ( true ) {
+                    int max = maxActive_.get();
+                    if ( nactive <= max ||
+                         maxActive_.compareAndSet( max, nactive ) ) {
+                        break;
+                    }
+                }
+                Thread.yield();
+            }
+
+            private void exit() {
+                if ( ! isShared_ ) {
+                    active_.decrementAndGet();
+                }
+            }
+
+            public byte readByte() throws IOException {
+                enter();
+                try {
+                    return base_.readByte();
+                }
+                finally {
+                    exit();
+                }
+            }
+            public short readShort() throws IOException {
+                enter();
+                try {
+                    return base_.readShort();
+                }
+                finally {
+                    exit();
+                }
+            }
+            public int readInt() throws IOException {
+                enter();
+                try {
+                    return base_.readInt();
+                }
+                finally {
+                    exit();
+                }
+            }
+            public long readLong() throws IOException {
+                enter();
+                try {
+                    return base_.readLong();
+                }
+                finally {
+                    exit();
+                }
+            }
+            public float readFloat() throws IOException {
+                enter();
+                try {
+                    return base_.readFloat();
+                }
+                finally {
+                    exit();
+                }
+            }
+            public double readDouble() throws IOException {
+                enter();
+                try {
+                    return base_.readDouble();
+                }
+                finally {
+                    exit();
+                }
+            }
+            public void skip( long nbyte ) throws IOException {
+                base_.skip( nbyte );
+            }
+            public void close() throws IOException {
+                base_.close();
+            }
+            public boolean isRandom() {
+                return base_.isRandom();
+            }
+            public void seek( long offset ) throws IOException {
+                base_.seek( offset );
+            }
+            public long getOffset() {
+                return base_.getOffset();
+            }
+        }
+    }
+}
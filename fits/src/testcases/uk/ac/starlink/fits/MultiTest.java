@@ -1,20 +1,28 @@
 package uk.ac.starlink.fits;
 
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
 import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
 import uk.ac.starlink.table.RowListStarTable;
+import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableOutput;
 import uk.ac.starlink.table.StarTableWriter;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
 import uk.ac.starlink.util.DataSource;
 import uk.ac.starlink.util.FileDataSource;
 
@@ -32,6 +40,222 @@ public class MultiTest extends TestCase {
                                                              ".fits.gz" ) ) );
     }
 
+    public void testSinglePassWrite() throws IOException {
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( 4 );
+        table.addColumn( ArrayColumn.makeColumn( "name", new String[] {
+            "a", "bb", null, "dddd",
+        } ) );
+        table.addColumn( ArrayColumn.makeColumn( "n", new int[] {
+            1, 2, 3, 4,
+        } ) );
+        final int[] nread = new int[ 1 ];
+        StarTable seqTable = new WrapperStarTable( table ) {
+            public boolean isRandom() {
+                return false;
+            }
+            public long getRowCount() {
+                return -1L;
+            }
+            public RowSequence getRowSequence() throws IOException {
+                nread[ 0 ]++;
+                return super.getRowSequence();
+            }
+        };
+        FitsTableWriter writer = new FitsTableWriter();
+        assertNull( writer.getSpillPolicy() );
+        for ( int ip = 0; ip < 2; ip++ ) {
+            boolean isSpill = ip == 1;
+            writer.setSpillPolicy( isSpill ? StoragePolicy.PREFER_MEMORY
+                                           : null );
+            nread[ 0 ] = 0;
+            File f = File.createTempFile( "table", ".fits" );
+            f.deleteOnExit();
+            OutputStream out = new FileOutputStream( f );
+            writer.writeStarTable( seqTable, out );
+            out.close();
+            assertEquals( isSpill ? 1 : 2, nread[ 0 ] );
+            StarTable inTable = new FitsTableBuilder()
+                               .makeStarTable( new FileDataSource( f ), true,
+                                               StoragePolicy.PREFER_MEMORY );
+            assertEquals( 4L, inTable.getRowCount() );
+            assertEquals( 4, inTable.getColumnInfo( 0 ).getElementSize() );
+            for ( int ir = 0; ir < 4; ir++ ) {
+                for ( int ic = 0; ic < 2; ic++ ) {
+                    assertEquals( table.getCell( ir, ic ),
+                                  inTable.getCell( ir, ic ) );
+                }
+            }
+            f.delete();
+        }
+    }
+
+    public void testPatchedRowCount() throws IOException {
+        int nrow = 3000;
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        String[] names = new String[ nrow ];
+        double[] xs = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            names[ i ] = "r" + ( i % 100 );
+            xs[ i ] = i * 0.5;
+        }
+        table.addColumn( ArrayColumn.makeColumn( "name", names ) );
+        table.addColumn( ArrayColumn.makeColumn( "x", xs ) );
+        table.getColumnInfo( 0 ).setElementSize( 3 );
+        final int[] nread = new int[ 1 ];
+        StarTable seqTable = new WrapperStarTable( table ) {
+            public boolean isRandom() {
+                return false;
+            }
+            public long getRowCount() {
+                return -1L;
+            }
+            public RowSequence getRowSequence() throws IOException {
+                nread[ 0 ]++;
+                return super.getRowSequence();
+            }
+        };
+        StarTableWriter[] writers = new StarTableWriter[] {
+            new FitsTableWriter(),
+            new HduFitsTableWriter(),
+        };
+        for ( int iw = 0; iw < writers.length; iw++ ) {
+            nread[ 0 ] = 0;
+            File f = File.createTempFile( "table", ".fits" );
+            f.deleteOnExit();
+            writers[ iw ].writeStarTable( seqTable, f.toString(),
+                                          new StarTableOutput() );
+            assertEquals( 1, nread[ 0 ] );
+            assertEquals( 0, f.length() % 2880 );
+            if ( writers[ iw ] instanceof FitsTableWriter ) {
+                StarTable inTable =
+                    new FitsTableBuilder()
+                   .makeStarTable( new FileDataSource( f ), true,
+                                   StoragePolicy.PREFER_MEMORY );
+                assertEquals( (long) nrow, inTable.getRowCount() );
+                for ( int ir = 0; ir < nrow; ir += 7 ) {
+                    for ( int ic = 0; ic < 2; ic++ ) {
+                        assertEquals( table.getCell( ir, ic ),
+                                      inTable.getCell( ir, ic ) );
+                    }
+                }
+            }
+            else {
+                byte[] hbuf = new byte[ 2880 ];
+                InputStream in = new FileInputStream( f );
+                new DataInputStream( in ).readFully( hbuf );
+                in.close();
+                String hdr = new String( hbuf, "US-ASCII" );
+                int ipos = hdr.indexOf( "NAXIS2  =" );
+                assertEquals( 0, ipos % 80 );
+                assertEquals( nrow,
+                              Integer.parseInt( hdr.substring( ipos + 10,
+                                                               ipos + 30 )
+                                                   .trim() ) );
+            }
+            f.delete();
+        }
+    }
+
+    public void testManyHdus() throws Exception {
+        File file = File.createTempFile( "many", ".fits" );
+        file.deleteOnExit();
+        int nt = 40;
+        StarTable[] outTables = writeNamedTables( file, nt );
+        assertTrue( HduIndex.getIndex( file ) == HduIndex.getIndex( file ) );
+        assertEquals( nt + 1, HduIndex.getIndex( file ).getHduCount() );
+
+        FitsTableBuilder builder = new FitsTableBuilder();
+        StarTable[] inTables =
+            Tables.tableArray( builder
+                              .makeStarTables( new FileDataSource( file ),
+                                               StoragePolicy.PREFER_MEMORY ) );
+        assertEquals( nt, inTables.length );
+        for ( int i = 0; i < nt; i++ ) {
+            assertEquals( "T" + i, inTables[ i ].getName() );
+            assertTableEquals( outTables[ i ], inTables[ i ] );
+        }
+        for ( int i = nt - 1; i >= 0; i -= 7 ) {
+            DataSource datsrc = new FileDataSource( file );
+            datsrc.setPosition( "t" + i );
+            assertTableEquals( outTables[ i ],
+                               builder.makeStarTable( datsrc, false,
+                                                      StoragePolicy
+                                                     .PREFER_MEMORY ) );
+        }
+        DataSource badsrc = new FileDataSource( file );
+        badsrc.setPosition( Integer.toString( nt + 1 ) );
+        try {
+            builder.makeStarTable( badsrc, false, StoragePolicy.PREFER_MEMORY );
+            fail();
+        }
+        catch ( IOException e ) {
+        }
+
+        /* Rewrite the file and check the index is updated. */
+        HduIndex index0 = HduIndex.getIndex( file );
+        writeNamedTables( file, 3 );
+        file.setLastModified( file.lastModified() + 2000 );
+        assertEquals( 4, HduIndex.getIndex( file ).getHduCount() );
+        assertTrue( index0 != HduIndex.getIndex( file ) );
+        file.delete();
+    }
+
+    public void testTrailingJunk() throws Exception {
+        File file = File.createTempFile( "junk", ".fits" );
+        file.deleteOnExit();
+        StarTable table = createTestTable( 5 );
+        OutputStream out = new FileOutputStream( file );
+        new FitsTableWriter().writeStarTable( table, out );
+        byte[] junk = new byte[ 2880 ];
+        for ( int i = 0; i < junk.length; i++ ) {
+            junk[ i ] = (byte) ( 'a' + i % 26 );
+        }
+        out.write( junk );
+        out.close();
+        HduIndex index = HduIndex.getIndex( file );
+        assertEquals( 2, index.getHduCount() );
+        assertFalse( index.isComplete() );
+
+        FitsTableBuilder builder = new FitsTableBuilder();
+        DataSource datsrc = new FileDataSource( file );
+        datsrc.setPosition( "1" );
+        assertTableEquals( table,
+                           builder.makeStarTable( datsrc, false,
+                                                  StoragePolicy
+                                                 .PREFER_MEMORY ) );
+        assertTableEquals( table,
+                           builder.makeStarTable( new FileDataSource( file ),
+                                                  false,
+                                                  StoragePolicy
+                                                 .PREFER_MEMORY ) );
+        DataSource badsrc = new FileDataSource( file );
+        badsrc.setPosition( "2" );
+        try {
+            builder.makeStarTable( badsrc, false, StoragePolicy.PREFER_MEMORY );
+            fail();
+        }
+        catch ( IOException e ) {
+        }
+        file.delete();
+    }
+
+    private StarTable[] writeNamedTables( File file, int nt )
+            throws IOException {
+        OutputStream out = new FileOutputStream( file );
+        FitsConstants.writeEmptyPrimary( new DataOutputStream( out ) );
+        StarTableWriter writer = new HduFitsTableWriter();
+        StarTable[] tables = new StarTable[ nt ];
+        for ( int i = 0; i < nt; i++ ) {
+            RowListStarTable table =
+                (RowListStarTable) createTestTable( i % 5 + 1 );
+            table.setName( "T" + i );
+            tables[ i ] = table;
+            writer.writeStarTable( table, out );
+        }
+        out.close();
+        return tables;
+    }
+
     private void multiWriteTrial( IOer ioer ) throws IOException {
         OutputStream out = ioer.createOutputStream();
         FitsConstants.writeEmptyPrimary( new DataOutputStream( out ) );
@@ -0,0 +1,23 @@
+package uk.ac.starlink.table;
+
+/**
+ * Interface which may be implemented by random-access tables that
+ * can supply a {@link ColumnBlockIndex} for some of their columns.
+ * Code that is looking for rows within a given range of column values
+ * can use such indexes to avoid reading blocks of rows
+ * that cannot contain any matching rows.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public interface BlockIndexAccess {
+
+    /**
+     * Returns a block index for a given column, if one is available.
+     * The index covers all the rows of this table.
+     *
+     * @param  icol  column index
+     * @return  block index, or null
+     */
+    ColumnBlockIndex getBlockIndex( int icol );
+}
@@ -0,0 +1,320 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Records the range of values in each fixed-size block of rows
+ * in a numeric table column.
+ * This is sometimes known as a zone map.
+ * Given a range of interest, it can tell which blocks of rows
+ * certainly lie entirely outside or entirely inside that range,
+ * so that code looking for rows in the range may skip them or count
+ * them without reading the data.
+ * The index is most effective for columns whose values are sorted or
+ * clustered, for instance HEALPix-ordered position columns.
+ *
+ * <p>For each block, the minimum and maximum non-blank values are
+ * stored, along with a flag indicating whether any blank values
+ * (null or NaN) are present.
+ * Values are stored as doubles; for <code>long</code> columns this may
+ * lose precision, but the range tests are done in such a way that
+ * the results are conservative.
+ *
+ * <p>Instances are immutable and may be built using a {@link Builder}.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public class ColumnBlockIndex {
+
+    private final int blockSize_;
+    private final long nrow_;
+    private final double[] mins_;
+    private final double[] maxs_;
+    private final BitSet blankBlocks_;
+    private final double min_;
+    private final double max_;
+
+    /** Default number of rows per block. */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /** Block state indicating no rows in a block are in the range. */
+    public static final int OUTSIDE = 0;
+
+    /** Block state indicating all rows in a block are in the range. */
+    public static final int INSIDE = 1;
+
+    /** Block state indicating rows must be examined individually. */
+    public static final int PARTIAL = 2;
+
+    /**
+     * Constructor.
+     *
+     * @param  blockSize  number of rows per block
+     * @param  nrow   number of rows in column
+     * @param  mins   per-block minimum values, NaN for no non-blank values
+     * @param  maxs   per-block maximum values, NaN for no non-blank values
+     * @param  blankBlocks  flags for blocks which contain blank values
+     */
+    private ColumnBlockIndex( int blockSize, long nrow, double[] mins,
+                              double[] maxs, BitSet blankBlocks ) {
+        blockSize_ = blockSize;
+        nrow_ = nrow;
+        mins_ = mins;
+        maxs_ = maxs;
+        blankBlocks_ = blankBlocks;
+        double min = Double.NaN;
+        double max = Double.NaN;
+        for ( int ib = 0; ib < mins.length; ib++ ) {
+            if ( ! ( mins[ ib ] >= min ) ) {
+                min = Double.isNaN( mins[ ib ] ) ? min : mins[ ib ];
+            }
+            if ( ! ( maxs[ ib ] <= max ) ) {
+                max = Double.isNaN( maxs[ ib ] ) ? max : maxs[ ib ];
+            }
+        }
+        min_ = min;
+        max_ = max;
+    }
+
+    /**
+     * Returns the number of rows in each block.
+     * The final block may contain fewer.
+     *
+     * @return  block size
+     */
+    public int getBlockSize() {
+        return blockSize_;
+    }
+
+    /**
+     * Returns the number of blocks.
+     *
+     * @return  block count
+     */
+    public int getBlockCount() {
+        return mins_.length;
+    }
+
+    /**
+     * Returns the number of rows covered by this index.
+     *
+     * @return  row count
+     */
+    public long getRowCount() {
+        return nrow_;
+    }
+
+    /**
+     * Returns the index of the first row in a given block.
+     *
+     * @param  iblock  block index
+     * @return  row index
+     */
+    public long getBlockStart( int iblock ) {
+        return (long) iblock * blockSize_;
+    }
+
+    /**
+     * Returns the number of rows in a given block.
+     *
+     * @param  iblock  block index
+     * @return  row count
+     */
+    public int getBlockLength( int iblock ) {
+        return (int) Math.min( blockSize_, nrow_ - getBlockStart( iblock ) );
+    }
+
+    /**
+     * Returns the smallest non-blank value in the column.
+     *
+     * @return  minimum, or NaN if there are no non-blank values
+     */
+    public double getMinimum() {
+        return min_;
+    }
+
+    /**
+     * Returns the largest non-blank value in the column.
+     *
+     * @return  maximum, or NaN if there are no non-blank values
+     */
+    public double getMaximum() {
+        return max_;
+    }
+
+    /**
+     * Indicates whether any values in the column are blank.
+     *
+     * @return  true iff some values are null or NaN
+     */
+    public boolean hasBlanks() {
+        return ! blankBlocks_.isEmpty();
+    }
+
+    /**
+     * Assesses the values in a block of rows against a range.
+     * The range is inclusive at both ends; infinite bounds may be used
+     * to indicate no limit.
+     * The result is {@link #OUTSIDE} or {@link #INSIDE} only if the
+     * block contains no blank values and all its values are respectively
+     * outside or inside the range; otherwise it is {@link #PARTIAL}.
+     *
+     * @param  iblock  block index
+     * @param  lo   lower bound of range
+     * @param  hi   upper bound of range
+     * @return  one of OUTSIDE, INSIDE or PARTIAL
+     */
+    public int getBlockState( int iblock, double lo, double hi ) {
+        if ( blankBlocks_.get( iblock ) ) {
+            return PARTIAL;
+        }
+        double bmin = mins_[ iblock ];
+        double bmax = maxs_[ iblock ];
+        if ( bmax < lo || bmin > hi ) {
+            return OUTSIDE;
+        }
+
+        /* Inequalities are strict here so that rounding of long values
+         * to doubles cannot misclassify a block. */
+        else if ( ( bmin > lo || lo == Double.NEGATIVE_INFINITY ) &&
+                  ( bmax < hi || hi == Double.POSITIVE_INFINITY ) ) {
+            return INSIDE;
+        }
+        else {
+            return PARTIAL;
+        }
+    }
+
+    /**
+     * Constructs an index by reading a column of a table.
+     *
+     * @param  table  table
+     * @param  icol   index of column, which must have a numeric
+     *                content class
+     * @param  blockSize   number of rows per block
+     * @return  new index
+     */
+    public static ColumnBlockIndex readIndex( StarTable table, int icol,
+                                              int blockSize )
+            throws IOException {
+        Builder builder = new Builder( blockSize );
+        RowSequence rseq = table.getRowSequence();
+        try {
+            while ( rseq.next() ) {
+                builder.acceptValue( rseq.getCell( icol ) );
+            }
+        }
+        finally {
+            rseq.close();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Accumulates values in row order to build a ColumnBlockIndex.
+     */
+    public static class Builder {
+
+        private final int blockSize_;
+        private double[] mins_;
+        private double[] maxs_;
+        private final BitSet blankBlocks_;
+        private long nrow_;
+        private int iblock_;
+        private int ninBlock_;
+        private double bmin_;
+        private double bmax_;
+
+        /**
+         * Constructor.
+         *
+         * @param  blockSize  number of rows per block
+         */
+        public Builder( int blockSize ) {
+            if ( blockSize < 1 ) {
+                throw new IllegalArgumentException( "Block size " + blockSize
+                                                  + " < 1" );
+            }
+            blockSize_ = blockSize;
+            mins_ = new double[ 16 ];
+            maxs_ = new double[ 16 ];
+            blankBlocks_ = new BitSet();
+            bmin_ = Double.NaN;
+            bmax_ = Double.NaN;
+        }
+
+        /**
+         * Accepts the next value in the column.
+         *
+         * @param  value  cell value; non-Number values count as blank
+         */
+        public void acceptValue( Object value ) {
+            accept( value instanceof Number ? ((Number) value).doubleValue()
+                                            : Double.NaN );
+        }
+
+        /**
+         * Accepts the next value in the column as a double.
+         *
+         * @param  value  cell value; NaN counts as blank
+         */
+        public void accept( double value ) {
+            if ( Double.isNaN( value ) ) {
+                blankBlocks_.set( iblock_ );
+            }
+            else {
+                if ( ! ( value >= bmin_ ) ) {
+                    bmin_ = value;
+                }
+                if ( ! ( value <= bmax_ ) ) {
+                    bmax_ = value;
+                }
+            }
+            nrow_++;
+            if ( ++ninBlock_ == blockSize_ ) {
+                endBlock();
+            }
+        }
+
+        /**
+         * Returns an index containing the values accepted so far.
+         * No further values may be accepted following this call.
+         *
+         * @return  new index
+         */
+        public ColumnBlockIndex build() {
+            if ( ninBlock_ > 0 ) {
+                endBlock();
+            }
+            double[] mins = new double[ iblock_ ];
+            double[] maxs = new double[ iblock_ ];
+            System.arraycopy( mins_, 0, mins, 0, iblock_ );
+            System.arraycopy( maxs_, 0, maxs, 0, iblock_ );
+            return new ColumnBlockIndex( blockSize_, nrow_, mins, maxs,
+                                         (BitSet) blankBlocks_.clone() );
+        }
+
+        /**
+         * Records the current block and starts a new one.
+         */
+        private void endBlock() {
+            if ( iblock_ == mins_.length ) {
+                int nb = iblock_ * 2;
+                double[] mins = new double[ nb ];
+                double[] maxs = new double[ nb ];
+                System.arraycopy( mins_, 0, mins, 0, iblock_ );
+                System.arraycopy( maxs_, 0, maxs, 0, iblock_ );
+                mins_ = mins;
+                maxs_ = maxs;
+            }
+            mins_[ iblock_ ] = bmin_;
+            maxs_[ iblock_ ] = bmax_;
+            iblock_++;
+            ninBlock_ = 0;
+            bmin_ = Double.NaN;
+            bmax_ = Double.NaN;
+        }
+    }
+}
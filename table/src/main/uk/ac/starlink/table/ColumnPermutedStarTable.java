@@ -35,7 +35,8 @@ import java.io.IOException;
  *
  * @author   Mark Taylor (Starlink)
  */
-public class ColumnPermutedStarTable extends WrapperStarTable {
+public class ColumnPermutedStarTable extends WrapperStarTable
+                                     implements BlockIndexAccess {
 
     private int[] columnMap_;
     private boolean fixReadRow_;
@@ -120,10 +121,69 @@ public class ColumnPermutedStarTable extends WrapperStarTable {
     }
 
     public RowSequence getRowSequence() throws IOException {
+        return permuteSequence( baseTable.getRowSequence() );
+    }
+
+    public boolean hasRowRanges() {
+        return Tables.hasRowRanges( baseTable );
+    }
+
+    public boolean hasDoubleCells( int icol ) {
+        return Tables.hasDoubleCells( baseTable, columnMap_[ icol ] );
+    }
+
+    public double getDouble( long irow, int icol ) throws IOException {
+        return ((DoubleCellAccess) baseTable)
+              .getDouble( irow, columnMap_[ icol ] );
+    }
+
+    public void readDoubleColumn( int icol, long irow0, int nrow,
+                                  double[] buf, int off )
+            throws IOException {
+        ((DoubleCellAccess) baseTable)
+       .readDoubleColumn( columnMap_[ icol ], irow0, nrow, buf, off );
+    }
+
+    public RowSequence getRowRangeSequence( long irow0, long nrow )
+            throws IOException {
+        return permuteSequence( ((RowRangeAccess) baseTable)
+                               .getRowRangeSequence( irow0, nrow ) );
+    }
+
+    public Object getCell( long irow, int icol ) throws IOException {
+        return baseTable.getCell( irow, columnMap_[ icol ] );
+    }
+
+    public ColumnBlockIndex getBlockIndex( int icol ) {
+        return Tables.getBlockIndex( baseTable, columnMap_[ icol ] );
+    }
+
+    public Object[] getRow( long irow ) throws IOException {
+        if ( readRow_ ) {
+            return permuteRow( baseTable.getRow( irow ) );
+        }
+        else {
+            int ncol = columnMap_.length;
+            Object[] row = new Object[ ncol ];
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                row[ icol ] = getCell( irow, icol );
+            }
+            return row;
+        }
+    }
+
+    /**
+     * Returns a row sequence over this table's columns given one over
+     * the base table's columns.
+     *
+     * @param  rseq  base table row sequence
+     * @return  permuted row sequence
+     */
+    private RowSequence permuteSequence( RowSequence rseq ) {
         final int ncol = getColumnCount();
         return readRow_
              ? (RowSequence)
-               new WrapperRowSequence( baseTable.getRowSequence() ) {
+               new WrapperRowSequence( rseq ) {
                    public Object getCell( int icol ) throws IOException {
                        return baseSeq.getCell( columnMap_[ icol ] );
                    }
@@ -132,7 +192,7 @@ public class ColumnPermutedStarTable extends WrapperStarTable {
                    }
                }
              : (RowSequence)
-               new WrapperRowSequence( baseTable.getRowSequence() ) {
+               new WrapperRowSequence( rseq ) {
                    public Object getCell( int icol ) throws IOException {
                        return baseSeq.getCell( columnMap_[ icol ] );
                    }
@@ -146,24 +206,6 @@ public class ColumnPermutedStarTable extends WrapperStarTable {
                };
     }
 
-    public Object getCell( long irow, int icol ) throws IOException {
-        return baseTable.getCell( irow, columnMap_[ icol ] );
-    }
-
-    public Object[] getRow( long irow ) throws IOException {
-        if ( readRow_ ) {
-            return permuteRow( baseTable.getRow( irow ) );
-        }
-        else {
-            int ncol = columnMap_.length;
-            Object[] row = new Object[ ncol ];
-            for ( int icol = 0; icol < ncol; icol++ ) {
-                row[ icol ] = getCell( irow, icol );
-            }
-            return row;
-        }
-    }
-
     /**
      * Turns a row of the base table into a row of this table.
      *
@@ -0,0 +1,71 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+
+/**
+ * Interface which may be implemented by random-access tables that can
+ * supply the values of numeric columns as primitive <code>double</code>s.
+ * Reading cells using these methods avoids the creation of a wrapper
+ * object for each value read by {@link StarTable#getCell}, which can
+ * be an important saving in garbage collection time when processing
+ * very large tables.
+ *
+ * <p>Code which processes numeric cell values may test whether a
+ * table implements this interface and make use of it if so,
+ * falling back to <code>getCell</code> otherwise.
+ * Implementations must be safe for concurrent use from multiple threads.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public interface DoubleCellAccess {
+
+    /**
+     * Indicates whether the {@link #getDouble} method may be used
+     * for a given column.
+     * If true, the column's content class will be a subclass of
+     * {@link java.lang.Number}.
+     *
+     * @param  icol  column index
+     * @return  true iff typed access is available for column
+     *          <code>icol</code>
+     */
+    boolean hasDoubleCells( int icol );
+
+    /**
+     * Returns the value of a numeric cell as a double.
+     * The result is the same as calling <code>doubleValue()</code>
+     * on the result of <code>getCell(lrow,icol)</code>,
+     * except that null values are returned as NaN.
+     * Behaviour is undefined if {@link #hasDoubleCells hasDoubleCells(icol)}
+     * returns false.
+     *
+     * @param  lrow  row index
+     * @param  icol  column index
+     * @return  cell value, or NaN for a blank cell
+     */
+    double getDouble( long lrow, int icol ) throws IOException;
+
+    /**
+     * Reads the values of a numeric column for a contiguous range of rows
+     * into a supplied array.
+     * The effect is the same as calling {@link #getDouble} for each row
+     * in the range, but implementations may do it more efficiently,
+     * and concurrent calls from different threads should not contend
+     * with each other for shared resources.
+     * Callers processing many rows from several threads should
+     * therefore prefer this method to <code>getDouble</code>.
+     * Behaviour is undefined if {@link #hasDoubleCells hasDoubleCells(icol)}
+     * returns false.
+     *
+     * @param  icol  column index
+     * @param  irow0  index of first row to read
+     * @param  nrow  number of rows to read
+     * @param  buf  buffer to receive values
+     * @param  off  offset into <code>buf</code> at which to write
+     *              the first value
+     */
+    void readDoubleColumn( int icol, long irow0, int nrow,
+                           double[] buf, int off )
+            throws IOException;
+}
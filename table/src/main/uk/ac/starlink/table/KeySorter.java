@@ -0,0 +1,870 @@
+package uk.ac.starlink.table;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.storage.ByteStoreAccess;
+import uk.ac.starlink.table.storage.NioByteStoreAccess;
+
+/**
+ * Determines the sorted order of a sequence of rows given one or more
+ * sort keys for each row.
+ *
+ * <p>Rather than comparing rows by reading key values from the
+ * table on every comparison, the key values are first read once for
+ * each row into arrays, using primitive arrays for numeric keys,
+ * and an array of row indices is then sorted with reference to those.
+ * The sort is stable, so rows with equal keys retain their original
+ * relative order, and it may be done using several threads.
+ *
+ * <p>If the key arrays for the whole table would exceed a configurable
+ * memory budget, and all the keys are numeric or strings,
+ * an external merge sort is used instead:
+ * the rows are processed in chunks that fit within the budget,
+ * each sorted chunk is written out to a byte store obtained from a
+ * {@link StoragePolicy}, and the resulting runs are merged.
+ * The result is the same in either case.
+ *
+ * <p>Values which are blank according to {@link Tables#isBlank},
+ * including floating point NaNs, are collated either before or after
+ * all non-blank values.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public class KeySorter {
+
+    private final boolean up_;
+    private final boolean nullsLast_;
+    private int parallelism_;
+    private StoragePolicy policy_;
+    private long maxMem_;
+
+    /** Sub-array length below which insertion sort is used. */
+    private static final int INSERTION_LENGTH = 32;
+
+    /** Minimum number of rows per thread for parallel sorting. */
+    private static final int MIN_PARALLEL_ROWS = 50000;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table" );
+
+    /**
+     * Constructor.
+     *
+     * @param   up  true for sorting into ascending order, false for
+     *          descending order
+     * @param   nullsLast  true if blank values should be considered
+     *          last in the collation order, false if they should
+     *          be considered first
+     */
+    public KeySorter( boolean up, boolean nullsLast ) {
+        up_ = up;
+        nullsLast_ = nullsLast;
+        parallelism_ = Runtime.getRuntime().availableProcessors();
+        policy_ = StoragePolicy.getDefaultPolicy();
+        maxMem_ = Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Sets the maximum number of threads used for sorting.
+     * The default is the number of available processors.
+     *
+     * @param  parallelism  thread count; 1 means sort sequentially
+     */
+    public void setParallelism( int parallelism ) {
+        if ( parallelism < 1 ) {
+            throw new IllegalArgumentException( "Parallelism " + parallelism
+                                              + " < 1" );
+        }
+        parallelism_ = parallelism;
+    }
+
+    /**
+     * Returns the maximum number of threads used for sorting.
+     *
+     * @return  thread count
+     */
+    public int getParallelism() {
+        return parallelism_;
+    }
+
+    /**
+     * Configures the external merge sort.
+     * If the estimated memory required for holding the sort keys
+     * exceeds <code>maxMem</code> bytes, sorted runs will be written
+     * to byte stores obtained from the given policy.
+     * By default, the policy is the default storage policy,
+     * and the memory budget is a quarter of the maximum heap size.
+     *
+     * @param  policy  storage policy for sorted runs,
+     *                 or null to sort in memory regardless of size
+     * @param  maxMem  memory budget in bytes for in-memory sort keys
+     */
+    public void setExternalStorage( StoragePolicy policy, long maxMem ) {
+        policy_ = policy;
+        maxMem_ = maxMem;
+    }
+
+    /**
+     * Returns an array giving the sorted order of a sequence of rows.
+     *
+     * @param   keys  key readers; first element is primary key etc
+     * @param   nrow  number of rows
+     * @return  <code>nrow</code>-element array giving the row indices
+     *          in sorted order
+     */
+    public long[] sort( KeyReader[] keys, long nrow ) throws IOException {
+        int n = Tables.checkedLongToInt( nrow );
+        int nkey = keys.length;
+        long rowBytes = 8;
+        boolean canSpill = policy_ != null;
+        for ( int ik = 0; ik < nkey; ik++ ) {
+            KeyType type = getKeyType( keys[ ik ].getKeyClass() );
+            rowBytes += type.rowBytes_;
+            canSpill = canSpill && type != KeyType.OBJECT;
+        }
+        long chunkRows = Math.max( 1, maxMem_ / rowBytes );
+        if ( ! canSpill || n <= chunkRows ) {
+            KeyColumn[] cols = readKeys( keys, 0, n );
+            int[] order = sortIndices( cols, n );
+            long[] result = new long[ n ];
+            for ( int i = 0; i < n; i++ ) {
+                result[ i ] = order[ i ];
+            }
+            return result;
+        }
+        else {
+            return externalSort( keys, n, (int) chunkRows );
+        }
+    }
+
+    /**
+     * Performs an external merge sort.
+     *
+     * @param  keys  key readers
+     * @param  nrow  row count
+     * @param  chunkRows  maximum number of rows sorted in memory at once
+     * @return  sorted row indices
+     */
+    private long[] externalSort( KeyReader[] keys, int nrow, int chunkRows )
+            throws IOException {
+        int nkey = keys.length;
+        List<ByteStore> stores = new ArrayList<ByteStore>();
+        try {
+
+            /* Write sorted runs. */
+            for ( int irow0 = 0; irow0 < nrow; irow0 += chunkRows ) {
+                int n = Math.min( chunkRows, nrow - irow0 );
+                KeyColumn[] cols = readKeys( keys, irow0, n );
+                int[] order = sortIndices( cols, n );
+                ByteStore store = policy_.makeByteStore();
+                stores.add( store );
+                DataOutputStream out =
+                    new DataOutputStream(
+                        new BufferedOutputStream( store.getOutputStream() ) );
+                for ( int i = 0; i < n; i++ ) {
+                    int ix = order[ i ];
+                    out.writeLong( irow0 + ix );
+                    for ( int ik = 0; ik < nkey; ik++ ) {
+                        cols[ ik ].write( out, ix );
+                    }
+                }
+                out.flush();
+            }
+            int nrun = stores.size();
+            logger_.config( "External sort of " + nrow + " rows in "
+                        + nrun + " runs" );
+
+            /* Merge them.  The head record of each run is held in
+             * slot irun of a set of key arrays, and a heap of run
+             * indices is maintained in order of head record. */
+            ByteStoreAccess[] ins = new ByteStoreAccess[ nrun ];
+            long[] remaining = new long[ nrun ];
+            for ( int ir = 0; ir < nrun; ir++ ) {
+                ins[ ir ] = NioByteStoreAccess
+                           .createAccess( stores.get( ir ).toByteBuffers() );
+                remaining[ ir ] = Math.min( chunkRows,
+                                            nrow - (long) ir * chunkRows );
+            }
+            final KeyColumn[] heads = new KeyColumn[ nkey ];
+            for ( int ik = 0; ik < nkey; ik++ ) {
+                heads[ ik ] = createKeyColumn( keys[ ik ].getKeyClass(),
+                                               nrun );
+            }
+            final long[] headRows = new long[ nrun ];
+            IndexComparator comp = new IndexComparator() {
+                public int compare( int i1, int i2 ) {
+                    int c = compareKeys( heads, i1, i2 );
+                    return c != 0 ? c
+                                  : compareLongs( headRows[ i1 ],
+                                                  headRows[ i2 ] );
+                }
+            };
+            int[] heap = new int[ nrun ];
+            int nheap = 0;
+            for ( int ir = 0; ir < nrun; ir++ ) {
+                readHead( ins[ ir ], heads, headRows, ir );
+                remaining[ ir ]--;
+                heap[ nheap++ ] = ir;
+            }
+            for ( int i = nheap / 2 - 1; i >= 0; i-- ) {
+                siftDown( heap, i, nheap, comp );
+            }
+            long[] result = new long[ nrow ];
+            for ( int i = 0; i < nrow; i++ ) {
+                int ir = heap[ 0 ];
+                result[ i ] = headRows[ ir ];
+                if ( remaining[ ir ] > 0 ) {
+                    readHead( ins[ ir ], heads, headRows, ir );
+                    remaining[ ir ]--;
+                }
+                else {
+                    heap[ 0 ] = heap[ --nheap ];
+                }
+                siftDown( heap, 0, nheap, comp );
+            }
+            assert nheap == 0;
+            return result;
+        }
+        finally {
+            for ( ByteStore store : stores ) {
+                store.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the next record of a sorted run into a given slot of the
+     * head arrays.
+     *
+     * @param  in  run reader
+     * @param  heads  key arrays
+     * @param  headRows  row index array
+     * @param  islot  slot index
+     */
+    private static void readHead( ByteStoreAccess in, KeyColumn[] heads,
+                                  long[] headRows, int islot )
+            throws IOException {
+        headRows[ islot ] = in.readLong();
+        for ( int ik = 0; ik < heads.length; ik++ ) {
+            heads[ ik ].read( in, islot );
+        }
+    }
+
+    /**
+     * Restores the heap property for a binary heap of indices.
+     *
+     * @param  heap  heap array
+     * @param  i   index of element which may be out of place
+     * @param  n   number of elements in heap
+     * @param  comp  index comparator
+     */
+    private static void siftDown( int[] heap, int i, int n,
+                                  IndexComparator comp ) {
+        int item = heap[ i ];
+        while ( true ) {
+            int ic = 2 * i + 1;
+            if ( ic >= n ) {
+                break;
+            }
+            if ( ic + 1 < n && comp.compare( heap[ ic + 1 ], heap[ ic ] ) < 0 ) {
+                ic++;
+            }
+            if ( comp.compare( heap[ ic ], item ) >= 0 ) {
+                break;
+            }
+            heap[ i ] = heap[ ic ];
+            i = ic;
+        }
+        heap[ i ] = item;
+    }
+
+    /**
+     * Reads the key values for a contiguous range of rows into arrays.
+     *
+     * @param  keys  key readers
+     * @param  irow0  index of first row
+     * @param  n   number of rows
+     * @return   array of populated key arrays, one for each key
+     */
+    private KeyColumn[] readKeys( KeyReader[] keys, long irow0, int n )
+            throws IOException {
+        int nkey = keys.length;
+        KeyColumn[] cols = new KeyColumn[ nkey ];
+        for ( int ik = 0; ik < nkey; ik++ ) {
+            cols[ ik ] = createKeyColumn( keys[ ik ].getKeyClass(), n );
+        }
+        for ( int i = 0; i < n; i++ ) {
+            long irow = irow0 + i;
+            for ( int ik = 0; ik < nkey; ik++ ) {
+                cols[ ik ].read( keys[ ik ], irow, i );
+            }
+        }
+        return cols;
+    }
+
+    /**
+     * Returns the indices 0..n-1 sorted according to the values in
+     * given key arrays.
+     *
+     * @param  cols  key arrays
+     * @param  n   number of rows
+     * @return  sorted index array
+     */
+    private int[] sortIndices( final KeyColumn[] cols, int n )
+            throws IOException {
+        final int[] order = new int[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            order[ i ] = i;
+        }
+        final int[] work = new int[ n ];
+        final IndexComparator comp = new IndexComparator() {
+            public int compare( int i1, int i2 ) {
+                int c = compareKeys( cols, i1, i2 );
+                return c != 0 ? c : ( i1 < i2 ? -1 : ( i1 > i2 ? +1 : 0 ) );
+            }
+        };
+        int npart = (int) Math.min( parallelism_,
+                                    Math.max( 1, n / MIN_PARALLEL_ROWS ) );
+        if ( npart <= 1 ) {
+            mergeSort( order, work, 0, n, comp );
+            return order;
+        }
+
+        /* Sort partitions in parallel, then merge adjacent pairs of sorted
+         * ranges in parallel until there is only one. */
+        final int[] bounds = new int[ npart + 1 ];
+        for ( int ip = 0; ip <= npart; ip++ ) {
+            bounds[ ip ] = (int) ( (long) n * ip / npart );
+        }
+        ExecutorService executor =
+            Executors.newFixedThreadPool( npart, new ThreadFactory() {
+                public Thread newThread( Runnable r ) {
+                    Thread th = new Thread( r, "Table Sorter" );
+                    th.setDaemon( true );
+                    return th;
+                }
+            } );
+        try {
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            for ( int ip = 0; ip < npart; ip++ ) {
+                final int lo = bounds[ ip ];
+                final int hi = bounds[ ip + 1 ];
+                tasks.add( new Callable<Object>() {
+                    public Object call() {
+                        mergeSort( order, work, lo, hi, comp );
+                        return null;
+                    }
+                } );
+            }
+            runTasks( executor, tasks );
+            for ( int width = 1; width < npart; width *= 2 ) {
+                tasks.clear();
+                for ( int ip = 0; ip + width < npart; ip += 2 * width ) {
+                    final int lo = bounds[ ip ];
+                    final int mid = bounds[ ip + width ];
+                    final int hi = bounds[ Math.min( ip + 2 * width, npart ) ];
+                    tasks.add( new Callable<Object>() {
+                        public Object call() {
+                            merge( order, work, lo, mid, hi, comp );
+                            return null;
+                        }
+                    } );
+                }
+                runTasks( executor, tasks );
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return order;
+    }
+
+    /**
+     * Runs a list of tasks and waits for them all to complete.
+     *
+     * @param  executor  executor service
+     * @param  tasks   tasks
+     */
+    private static void runTasks( ExecutorService executor,
+                                  List<Callable<Object>> tasks )
+            throws IOException {
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for ( Callable<Object> task : tasks ) {
+            futures.add( executor.submit( task ) );
+        }
+        try {
+            for ( Future<Object> future : futures ) {
+                future.get();
+            }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new IOException( "Sort interrupted" )
+                               .initCause( e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                throw (IOException) new IOException( "Sort error" )
+                                   .initCause( cause );
+            }
+        }
+    }
+
+    /**
+     * Sorts a range of an index array.
+     *
+     * @param  a  index array
+     * @param  work  workspace array, at least as long as <code>a</code>
+     * @param  lo  start of range (inclusive)
+     * @param  hi  end of range (exclusive)
+     * @param  comp  index comparator
+     */
+    private static void mergeSort( int[] a, int[] work, int lo, int hi,
+                                   IndexComparator comp ) {
+        if ( hi - lo <= INSERTION_LENGTH ) {
+            for ( int i = lo + 1; i < hi; i++ ) {
+                int item = a[ i ];
+                int j = i;
+                while ( j > lo && comp.compare( a[ j - 1 ], item ) > 0 ) {
+                    a[ j ] = a[ j - 1 ];
+                    j--;
+                }
+                a[ j ] = item;
+            }
+        }
+        else {
+            int mid = ( lo + hi ) >>> 1;
+            mergeSort( a, work, lo, mid, comp );
+            mergeSort( a, work, mid, hi, comp );
+            merge( a, work, lo, mid, hi, comp );
+        }
+    }
+
+    /**
+     * Merges two adjacent sorted ranges of an index array.
+     *
+     * @param  a  index array
+     * @param  work  workspace array, at least as long as <code>a</code>
+     * @param  lo  start of first range
+     * @param  mid  end of first range and start of second
+     * @param  hi  end of second range
+     * @param  comp  index comparator
+     */
+    private static void merge( int[] a, int[] work, int lo, int mid, int hi,
+                               IndexComparator comp ) {
+        if ( comp.compare( a[ mid - 1 ], a[ mid ] ) <= 0 ) {
+            return;
+        }
+        System.arraycopy( a, lo, work, lo, hi - lo );
+        int i = lo;
+        int j = mid;
+        int k = lo;
+        while ( i < mid && j < hi ) {
+            a[ k++ ] = comp.compare( work[ j ], work[ i ] ) < 0 ? work[ j++ ]
+                                                                : work[ i++ ];
+        }
+        while ( i < mid ) {
+            a[ k++ ] = work[ i++ ];
+        }
+        while ( j < hi ) {
+            a[ k++ ] = work[ j++ ];
+        }
+    }
+
+    /**
+     * Compares two slots of a set of key arrays.
+     *
+     * @param  cols  key arrays
+     * @param  i1  first slot
+     * @param  i2  second slot
+     * @return  comparison result in sort order
+     */
+    private int compareKeys( KeyColumn[] cols, int i1, int i2 ) {
+        for ( int ik = 0; ik < cols.length; ik++ ) {
+            int c = cols[ ik ].compare( i1, i2 );
+            if ( c != 0 ) {
+                return up_ ? c : -c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares two long values.
+     *
+     * @param  l1  first value
+     * @param  l2  second value
+     * @return  -1, 0 or +1
+     */
+    private static int compareLongs( long l1, long l2 ) {
+        return l1 < l2 ? -1 : ( l1 > l2 ? +1 : 0 );
+    }
+
+    /**
+     * Returns the key storage type for a given key class.
+     *
+     * @param  clazz  key content class
+     * @return  key type
+     */
+    private static KeyType getKeyType( Class clazz ) {
+        if ( clazz == Byte.class || clazz == Short.class ||
+             clazz == Integer.class || clazz == Long.class ) {
+            return KeyType.LONG;
+        }
+        else if ( clazz == Float.class || clazz == Double.class ) {
+            return KeyType.DOUBLE;
+        }
+        else if ( clazz == String.class ) {
+            return KeyType.STRING;
+        }
+        else {
+            return KeyType.OBJECT;
+        }
+    }
+
+    /**
+     * Creates a key array suitable for a given key class.
+     *
+     * @param  clazz  key content class
+     * @param  n   number of slots
+     * @return  new key array
+     */
+    private KeyColumn createKeyColumn( Class clazz, int n ) {
+        switch ( getKeyType( clazz ) ) {
+            case LONG:
+                return new LongKeyColumn( n );
+            case DOUBLE:
+                return new DoubleKeyColumn( n );
+            default:
+                return new ObjectKeyColumn( n );
+        }
+    }
+
+    /**
+     * Compares the null status of two values.
+     *
+     * @param  null1  true iff first value is blank
+     * @param  null2  true iff second value is blank
+     * @return  collation order of blank values relative to each other
+     *          and to non-blank values; only meaningful if at least one
+     *          is blank
+     */
+    private int compareNulls( boolean null1, boolean null2 ) {
+        if ( null1 && null2 ) {
+            return 0;
+        }
+        else if ( null1 ) {
+            return nullsLast_ ? +1 : -1;
+        }
+        else {
+            return nullsLast_ ? -1 : +1;
+        }
+    }
+
+    /**
+     * Reads key values for rows.
+     * Instances do not need to be safe for concurrent use.
+     */
+    public static abstract class KeyReader {
+
+        private final Class clazz_;
+
+        /**
+         * Constructor.
+         *
+         * @param  clazz  class of which all non-null key values will be
+         *                instances; must implement {@link java.lang.Comparable}
+         */
+        protected KeyReader( Class clazz ) {
+            if ( ! Comparable.class.isAssignableFrom( clazz ) ) {
+                throw new IllegalArgumentException( clazz.getName()
+                                                  + " has no defined"
+                                                  + " sort order" );
+            }
+            clazz_ = clazz;
+        }
+
+        /**
+         * Returns the class of key values.
+         *
+         * @return  key content class
+         */
+        public Class getKeyClass() {
+            return clazz_;
+        }
+
+        /**
+         * Reads the key value for a given row.
+         *
+         * @param  irow  row index
+         * @return  key value, an instance of the key class or null
+         */
+        public abstract Object readKey( long irow ) throws IOException;
+
+        /**
+         * Reads a floating point key value for a given row.
+         * Only called if the key class is <code>Float</code> or
+         * <code>Double</code>.  The default implementation calls
+         * {@link #readKey}, but implementations may override it
+         * to avoid object creation.
+         *
+         * @param  irow  row index
+         * @return  key value, NaN for blank
+         */
+        public double readDoubleKey( long irow ) throws IOException {
+            Object value = readKey( irow );
+            return value instanceof Number ? ((Number) value).doubleValue()
+                                           : Double.NaN;
+        }
+    }
+
+    /**
+     * Returns a key reader for a column of a random-access table.
+     * If the table implements {@link DoubleCellAccess}, it is used
+     * where possible.
+     *
+     * @param  table  random-access table
+     * @param  icol   column index
+     * @return   key reader
+     */
+    public static KeyReader createColumnKeyReader( final StarTable table,
+                                                   final int icol ) {
+        ColumnInfo info = table.getColumnInfo( icol );
+        Class clazz = info.getContentClass();
+        if ( ! Comparable.class.isAssignableFrom( clazz ) ) {
+            throw new IllegalArgumentException( "Column " + info
+                                              + " has no defined sort order" );
+        }
+        final DoubleCellAccess dAccess =
+              Tables.hasDoubleCells( table, icol )
+            ? (DoubleCellAccess) table
+            : null;
+        return new KeyReader( clazz ) {
+            public Object readKey( long irow ) throws IOException {
+                return table.getCell( irow, icol );
+            }
+            public double readDoubleKey( long irow ) throws IOException {
+                return dAccess != null ? dAccess.getDouble( irow, icol )
+                                       : super.readDoubleKey( irow );
+            }
+        };
+    }
+
+    /**
+     * Compares two integers representing slots in key arrays.
+     */
+    private interface IndexComparator {
+
+        /**
+         * Compares two slots.
+         *
+         * @param  i1  first slot
+         * @param  i2  second slot
+         * @return  negative, zero or positive
+         */
+        int compare( int i1, int i2 );
+    }
+
+    /**
+     * Enumerates storage types for sort keys.
+     */
+    private enum KeyType {
+        LONG( 9 ), DOUBLE( 8 ), STRING( 64 ), OBJECT( 64 );
+
+        final int rowBytes_;
+
+        /**
+         * Constructor.
+         *
+         * @param  rowBytes  approximate memory used per key value
+         */
+        KeyType( int rowBytes ) {
+            rowBytes_ = rowBytes;
+        }
+    }
+
+    /**
+     * Array of key values.
+     */
+    private abstract class KeyColumn {
+
+        /**
+         * Reads a value from a key reader into a slot.
+         *
+         * @param  rdr  key reader
+         * @param  irow  row index
+         * @param  i   slot index
+         */
+        abstract void read( KeyReader rdr, long irow, int i )
+                throws IOException;
+
+        /**
+         * Compares the values in two slots, in ascending collation order.
+         *
+         * @param  i1  first slot
+         * @param  i2  second slot
+         * @return  negative, zero or positive
+         */
+        abstract int compare( int i1, int i2 );
+
+        /**
+         * Serializes the value from a slot.
+         *
+         * @param  out  destination
+         * @param  i   slot index
+         */
+        abstract void write( DataOutput out, int i ) throws IOException;
+
+        /**
+         * Deserializes a value into a slot.
+         *
+         * @param  in  source
+         * @param  i   slot index
+         */
+        abstract void read( ByteStoreAccess in, int i ) throws IOException;
+    }
+
+    /**
+     * KeyColumn for integer values.
+     */
+    private class LongKeyColumn extends KeyColumn {
+        final long[] values_;
+        final BitSet nulls_;
+
+        LongKeyColumn( int n ) {
+            values_ = new long[ n ];
+            nulls_ = new BitSet();
+        }
+
+        void read( KeyReader rdr, long irow, int i ) throws IOException {
+            Object value = rdr.readKey( irow );
+            if ( value instanceof Number ) {
+                values_[ i ] = ((Number) value).longValue();
+            }
+            else {
+                nulls_.set( i );
+            }
+        }
+
+        int compare( int i1, int i2 ) {
+            boolean null1 = nulls_.get( i1 );
+            boolean null2 = nulls_.get( i2 );
+            return null1 || null2 ? compareNulls( null1, null2 )
+                                  : compareLongs( values_[ i1 ],
+                                                  values_[ i2 ] );
+        }
+
+        void write( DataOutput out, int i ) throws IOException {
+            boolean isNull = nulls_.get( i );
+            out.writeBoolean( isNull );
+            out.writeLong( isNull ? 0L : values_[ i ] );
+        }
+
+        void read( ByteStoreAccess in, int i ) throws IOException {
+            nulls_.set( i, in.readByte() != 0 );
+            values_[ i ] = in.readLong();
+        }
+    }
+
+    /**
+     * KeyColumn for floating point values.  NaN represents blank.
+     */
+    private class DoubleKeyColumn extends KeyColumn {
+        final double[] values_;
+
+        DoubleKeyColumn( int n ) {
+            values_ = new double[ n ];
+        }
+
+        void read( KeyReader rdr, long irow, int i ) throws IOException {
+            values_[ i ] = rdr.readDoubleKey( irow );
+        }
+
+        int compare( int i1, int i2 ) {
+            double d1 = values_[ i1 ];
+            double d2 = values_[ i2 ];
+            boolean null1 = Double.isNaN( d1 );
+            boolean null2 = Double.isNaN( d2 );
+            return null1 || null2 ? compareNulls( null1, null2 )
+                                  : Double.compare( d1, d2 );
+        }
+
+        void write( DataOutput out, int i ) throws IOException {
+            out.writeDouble( values_[ i ] );
+        }
+
+        void read( ByteStoreAccess in, int i ) throws IOException {
+            values_[ i ] = in.readDouble();
+        }
+    }
+
+    /**
+     * KeyColumn for Comparable objects.
+     * Only strings can be serialized.
+     */
+    private class ObjectKeyColumn extends KeyColumn {
+        final Comparable[] values_;
+
+        ObjectKeyColumn( int n ) {
+            values_ = new Comparable[ n ];
+        }
+
+        void read( KeyReader rdr, long irow, int i ) throws IOException {
+            Object value = rdr.readKey( irow );
+            values_[ i ] = Tables.isBlank( value ) ? null : (Comparable) value;
+        }
+
+        int compare( int i1, int i2 ) {
+            Comparable c1 = values_[ i1 ];
+            Comparable c2 = values_[ i2 ];
+            return c1 == null || c2 == null
+                 ? compareNulls( c1 == null, c2 == null )
+                 : c1.compareTo( c2 );
+        }
+
+        void write( DataOutput out, int i ) throws IOException {
+            String sval = (String) values_[ i ];
+            if ( sval == null ) {
+                out.writeInt( -1 );
+            }
+            else {
+                out.writeInt( sval.length() );
+                out.writeChars( sval );
+            }
+        }
+
+        void read( ByteStoreAccess in, int i ) throws IOException {
+            int leng = in.readInt();
+            if ( leng < 0 ) {
+                values_[ i ] = null;
+            }
+            else {
+                char[] cbuf = new char[ leng ];
+                for ( int ic = 0; ic < leng; ic++ ) {
+                    cbuf[ ic ] = in.readChar();
+                }
+                values_[ i ] = new String( cbuf );
+            }
+        }
+    }
+}
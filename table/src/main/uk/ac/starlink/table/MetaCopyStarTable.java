@@ -16,7 +16,8 @@ import java.util.List;
  * @author   Mark Taylor
  * @since    23 Jul 2010
  */
-public class MetaCopyStarTable extends WrapperStarTable {
+public class MetaCopyStarTable extends WrapperStarTable
+                               implements BlockIndexAccess {
 
     private String name_;
     private URL url_;
@@ -103,4 +104,16 @@ public class MetaCopyStarTable extends WrapperStarTable {
     public void setColumnInfo( int icol, ColumnInfo colInfo ) {
         colInfos_[ icol ] = colInfo;
     }
+
+    public boolean hasRowRanges() {
+        return Tables.hasRowRanges( baseTable );
+    }
+
+    public boolean hasDoubleCells( int icol ) {
+        return Tables.hasDoubleCells( baseTable, icol );
+    }
+
+    public ColumnBlockIndex getBlockIndex( int icol ) {
+        return Tables.getBlockIndex( baseTable, icol );
+    }
 }
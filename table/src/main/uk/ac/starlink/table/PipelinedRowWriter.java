@@ -0,0 +1,311 @@
+package uk.ac.starlink.table;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Writes the rows of a table to a binary output stream using a
+ * pipeline of threads.
+ * The calling thread reads rows from the row sequence and groups them
+ * into batches; each batch is encoded into a byte buffer by one of a
+ * pool of worker threads; and a dedicated writer thread copies the
+ * encoded buffers, in their original order, to the destination.
+ * The output is therefore identical to that which would be produced by
+ * encoding each row in turn on a single thread, but encoding is
+ * spread across processors and overlaps with reading and writing.
+ *
+ * <p>Concrete subclasses supply the row encoding by implementing
+ * {@link #createRowEncoder}.
+ * If only a single thread is requested, rows are simply encoded and
+ * written on the calling thread.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public abstract class PipelinedRowWriter {
+
+    private final int nthread_;
+
+    /** Default number of encoding threads. */
+    public static final int DEFAULT_NTHREAD =
+        Runtime.getRuntime().availableProcessors();
+
+    /** Approximate number of cells encoded by each batch job. */
+    private static final int BATCH_CELLS = 16 * 1024;
+
+    private static final Future<byte[]> END = new FutureTask<byte[]>(
+        new Callable<byte[]>() {
+            public byte[] call() {
+                return null;
+            }
+        } );
+
+    private static ExecutorService executor_;
+
+    /**
+     * Constructs a writer with a default number of threads.
+     */
+    protected PipelinedRowWriter() {
+        this( DEFAULT_NTHREAD );
+    }
+
+    /**
+     * Constructs a writer with a given number of threads.
+     *
+     * @param  nthread  number of encoding threads;
+     *                  if &lt;=1 no additional threads are used
+     */
+    protected PipelinedRowWriter( int nthread ) {
+        nthread_ = nthread;
+    }
+
+    /**
+     * Returns a new object which can encode rows.
+     * Each encoder returned is used by only one thread at a time,
+     * so need not be thread-safe, but different encoders may be
+     * used concurrently.
+     *
+     * @return  new row encoder
+     */
+    protected abstract RowEncoder createRowEncoder();
+
+    /**
+     * Encodes and writes all the rows from a row sequence.
+     * The sequence is not closed by this method.
+     *
+     * @param  rseq  row sequence
+     * @param  out   destination
+     * @return  number of rows written
+     */
+    public long writeRows( RowSequence rseq, DataOutput out )
+            throws IOException {
+        return nthread_ > 1 ? writeRowsParallel( rseq, out )
+                            : writeRowsSequential( rseq, out );
+    }
+
+    /**
+     * Writes rows on the current thread.
+     *
+     * @param  rseq  row sequence
+     * @param  out   destination
+     * @return  number of rows written
+     */
+    private long writeRowsSequential( RowSequence rseq, DataOutput out )
+            throws IOException {
+        RowEncoder encoder = createRowEncoder();
+        long nrow = 0;
+        while ( rseq.next() ) {
+            encoder.encodeRow( rseq.getRow(), out );
+            nrow++;
+        }
+        return nrow;
+    }
+
+    /**
+     * Writes rows using the thread pipeline.
+     *
+     * @param  rseq  row sequence
+     * @param  out   destination
+     * @return  number of rows written
+     */
+    private long writeRowsParallel( RowSequence rseq, DataOutput out )
+            throws IOException {
+        BlockingQueue<Future<byte[]>> queue =
+            new ArrayBlockingQueue<Future<byte[]>>( 2 * nthread_ );
+        WriterThread writer = new WriterThread( queue, out );
+        writer.start();
+        ExecutorService executor = getExecutor();
+        long nrow = 0;
+        boolean done = false;
+        try {
+            Object[][] batch = null;
+            int ir = 0;
+            while ( writer.error_ == null && rseq.next() ) {
+                Object[] row = rseq.getRow();
+                if ( batch == null ) {
+                    int ncol = Math.max( 1, row.length );
+                    batch = new Object[ Math.max( 1, BATCH_CELLS / ncol ) ][];
+                }
+
+                /* Copy the row array, since some sequences reuse it. */
+                batch[ ir++ ] = (Object[]) row.clone();
+                nrow++;
+                if ( ir == batch.length ) {
+                    queue.put( executor.submit( new EncodeJob( batch, ir ) ) );
+                    batch = new Object[ batch.length ][];
+                    ir = 0;
+                }
+            }
+            if ( ir > 0 && writer.error_ == null ) {
+                queue.put( executor.submit( new EncodeJob( batch, ir ) ) );
+            }
+            queue.put( END );
+            done = true;
+            writer.join();
+        }
+        catch ( InterruptedException e ) {
+            throw (IOException)
+                  new InterruptedIOException( "Interrupted" ).initCause( e );
+        }
+        finally {
+
+            /* Make sure that the writer thread terminates even if the
+             * read failed.  Don't interrupt it, since that can close
+             * the underlying channel of some streams. */
+            if ( ! done ) {
+                writer.abort_ = true;
+                queue.clear();
+                queue.offer( END );
+                try {
+                    writer.join();
+                }
+                catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        Throwable error = writer.error_;
+        if ( error instanceof IOException ) {
+            throw (IOException) error;
+        }
+        else if ( error instanceof RuntimeException ) {
+            throw (RuntimeException) error;
+        }
+        else if ( error instanceof Error ) {
+            throw (Error) error;
+        }
+        else if ( error != null ) {
+            throw (IOException) new IOException( error.getMessage() )
+                               .initCause( error );
+        }
+        return nrow;
+    }
+
+    /**
+     * Returns the executor service used for encoding batches.
+     * This is a lazily created, bounded pool of daemon threads
+     * shared by all instances of this class.
+     *
+     * @return  executor
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if ( executor_ == null ) {
+            executor_ =
+                Executors.newFixedThreadPool( DEFAULT_NTHREAD,
+                                              new ThreadFactory() {
+                    public Thread newThread( Runnable r ) {
+                        Thread th = new Thread( r, "Row encoder" );
+                        th.setDaemon( true );
+                        return th;
+                    }
+                } );
+        }
+        return executor_;
+    }
+
+    /**
+     * Encodes rows to a destination stream.
+     */
+    public interface RowEncoder {
+
+        /**
+         * Writes the serialized form of a row.
+         *
+         * @param  row  row data
+         * @param  out  destination
+         */
+        void encodeRow( Object[] row, DataOutput out ) throws IOException;
+    }
+
+    /**
+     * Job which encodes a batch of rows into a byte array.
+     */
+    private class EncodeJob implements Callable<byte[]> {
+        private final Object[][] rows_;
+        private final int nrow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  rows  row array
+         * @param  nrow  number of rows from array to encode
+         */
+        EncodeJob( Object[][] rows, int nrow ) {
+            rows_ = rows;
+            nrow_ = nrow;
+        }
+
+        public byte[] call() throws IOException {
+            RowEncoder encoder = createRowEncoder();
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            DataOutputStream dout = new DataOutputStream( bout );
+            for ( int ir = 0; ir < nrow_; ir++ ) {
+                encoder.encodeRow( rows_[ ir ], dout );
+            }
+            dout.flush();
+            return bout.toByteArray();
+        }
+    }
+
+    /**
+     * Thread which writes encoded batches to the destination in order.
+     */
+    private static class WriterThread extends Thread {
+        private final BlockingQueue<Future<byte[]>> queue_;
+        private final DataOutput out_;
+        volatile Throwable error_;
+        volatile boolean abort_;
+
+        /**
+         * Constructor.
+         *
+         * @param  queue  queue of encoded batches, terminated by END
+         * @param  out   destination
+         */
+        WriterThread( BlockingQueue<Future<byte[]>> queue, DataOutput out ) {
+            super( "Row writer" );
+            setDaemon( true );
+            queue_ = queue;
+            out_ = out;
+        }
+
+        public void run() {
+            try {
+                for ( Future<byte[]> batch; ( batch = queue_.take() ) != END
+                                            && ! abort_; ) {
+
+                    /* After an error, keep draining the queue so that the
+                     * reading thread does not block. */
+                    if ( error_ == null ) {
+                        try {
+                            out_.write( batch.get() );
+                        }
+                        catch ( ExecutionException e ) {
+                            error_ = e.getCause();
+                        }
+                        catch ( Throwable e ) {
+                            error_ = e;
+                        }
+                    }
+                }
+            }
+            catch ( InterruptedException e ) {
+                if ( ! abort_ && error_ == null ) {
+                    error_ = e;
+                }
+            }
+        }
+    }
+}
@@ -5,12 +5,15 @@ import java.util.NoSuchElementException;
 
 /**
  * An implementation of <tt>RowSequence</tt> which obtains its data
- * from a random-access <tt>StarTable</tt> object.
+ * from a random-access <tt>StarTable</tt> object,
+ * optionally restricted to a range of its rows.
  */
 public class RandomRowSequence implements RowSequence {
 
     private StarTable startab;
     private long irow = -1;
+    private long irowStart = 0;
+    private long irowEnd = -1;
 
     /**
      * Constructs a RowSequence from a StarTable which must offer random
@@ -34,8 +37,33 @@ public class RandomRowSequence implements RowSequence {
         }
     }
 
+    /**
+     * Constructs a RowSequence over a range of rows from a StarTable
+     * which must offer random access.
+     *
+     * @param  startab  the StarTable object providing the data
+     * @param  irow0  index of the first row in the sequence
+     * @param  nrow   number of rows in the sequence
+     * @throws IllegalArgumentException if <tt>startab.isRandom()==false</tt>
+     */
+    public RandomRowSequence( StarTable startab, long irow0, long nrow ) {
+        this.startab = startab;
+        if ( ! startab.isRandom() ) {
+            throw new IllegalArgumentException( 
+                "Table " + startab + " is not random access" );
+        }
+        if ( irow0 < 0 || nrow < 0 ) {
+            throw new IllegalArgumentException( "Bad row range " + irow0
+                                              + "+" + nrow );
+        }
+        irowStart = irow0;
+        irow = irow0 - 1;
+        irowEnd = irow0 + nrow;
+    }
+
     public boolean next() {
-        if ( irow < getRowCount() - 1 ) {
+        long iend = irowEnd >= 0 ? irowEnd : getRowCount();
+        if ( irow < iend - 1 ) {
             irow++;
             return true;
         }
@@ -45,7 +73,7 @@ public class RandomRowSequence implements RowSequence {
     }
 
     public Object[] getRow() throws IOException {
-        if ( irow >= 0 ) {
+        if ( irow >= irowStart ) {
             return startab.getRow( irow );
         }
         else {
@@ -54,7 +82,7 @@ public class RandomRowSequence implements RowSequence {
     }
 
     public Object getCell( int icol ) throws IOException {
-        if ( irow >= 0 ) {
+        if ( irow >= irowStart ) {
             return startab.getCell( irow, icol );
         }
         else {
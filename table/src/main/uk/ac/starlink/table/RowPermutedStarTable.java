@@ -106,4 +106,27 @@ public class RowPermutedStarTable extends WrapperStarTable {
         return baseRow >= 0 ? baseTable.getRow( baseRow )
                             : new Object[ baseTable.getColumnCount() ];
     }
+
+    public boolean hasDoubleCells( int icol ) {
+        return Tables.hasDoubleCells( baseTable, icol );
+    }
+
+    public double getDouble( long irow, int icol ) throws IOException {
+        long baseRow = rowMap[ checkedLongToInt( irow ) ];
+        return baseRow >= 0
+             ? ((DoubleCellAccess) baseTable).getDouble( baseRow, icol )
+             : Double.NaN;
+    }
+
+    /**
+     * Rows are read one at a time from the base table,
+     * since they are not in general contiguous there.
+     */
+    public void readDoubleColumn( int icol, long irow0, int nrow,
+                                  double[] buf, int off )
+            throws IOException {
+        for ( int i = 0; i < nrow; i++ ) {
+            buf[ off + i ] = getDouble( irow0 + i, icol );
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+
+/**
+ * Interface which may be implemented by tables that can supply
+ * independent row sequences over contiguous ranges of their rows.
+ * Since each such sequence has its own read position, a table can be
+ * split into several ranges which are read concurrently by different
+ * threads, and the per-range results combined afterwards.
+ *
+ * <p>The {@link Tables#getRowRangeSequences} utility method
+ * provides a convenient way to use this interface,
+ * falling back to random access or a single sequential
+ * row sequence for tables that do not implement it.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public interface RowRangeAccess {
+
+    /**
+     * Indicates whether the {@link #getRowRangeSequence} method may be used.
+     * If true, the table's row count will be known
+     * (<code>getRowCount()&gt;=0</code>).
+     *
+     * @return  true iff row range sequences are available
+     */
+    boolean hasRowRanges();
+
+    /**
+     * Returns a new row sequence which iterates over a contiguous range
+     * of this table's rows.  The sequence is independent of any other
+     * row sequence obtained from this table, and may be used in a
+     * different thread from them.
+     * Behaviour is undefined if {@link #hasRowRanges} returns false.
+     *
+     * @param  irow0  index of the first row in the range
+     * @param  nrow   number of rows in the range
+     * @return  row sequence whose first row is row <code>irow0</code>
+     *          of this table, and which has <code>nrow</code> rows
+     */
+    RowSequence getRowRangeSequence( long irow0, long nrow )
+            throws IOException;
+}
@@ -247,6 +247,10 @@ public abstract class StoragePolicy {
      * It's generally more expensive on system resources than 
      * {@link #PREFER_DISK} however, so it is only the best choice in
      * rather specialised circumstances.
+     * Numeric columns are held as mapped arrays of primitive values,
+     * and tables obtained from its row stores implement
+     * {@link DoubleCellAccess}, so that numeric cells can be
+     * read without creating a wrapper object for each value.
      * If it's impossible for some reason to store the data in this way,
      * or if the number of cells requested is small, it will fall back
      * to using memory storage.
@@ -386,6 +386,103 @@ public class Tables {
         return new RowPermutedStarTable( table, rowMap );
     }
 
+    /**
+     * Indicates whether a table can supply independent row sequences
+     * over ranges of its rows using the {@link RowRangeAccess} interface.
+     *
+     * @param  table  table
+     * @return  true iff <code>table</code> is a <code>RowRangeAccess</code>
+     *          whose row range sequences are available
+     */
+    public static boolean hasRowRanges( StarTable table ) {
+        return table instanceof RowRangeAccess
+            && ((RowRangeAccess) table).hasRowRanges()
+            && table.getRowCount() >= 0;
+    }
+
+    /**
+     * Indicates whether the cells of a given column of a table can be
+     * read as primitive values using the {@link DoubleCellAccess}
+     * interface.
+     *
+     * @param  table  table
+     * @param  icol   column index
+     * @return  true iff <code>table</code> is a random-access
+     *          <code>DoubleCellAccess</code> with typed access
+     *          available for column <code>icol</code>
+     */
+    public static boolean hasDoubleCells( StarTable table, int icol ) {
+        return table instanceof DoubleCellAccess
+            && table.isRandom()
+            && ((DoubleCellAccess) table).hasDoubleCells( icol );
+    }
+
+    /**
+     * Returns a block index for a column of a table if one is available.
+     *
+     * @param  table  table
+     * @param  icol   column index
+     * @return  block index from <code>table</code>'s
+     *          {@link BlockIndexAccess} implementation, or null
+     */
+    public static ColumnBlockIndex getBlockIndex( StarTable table, int icol ) {
+        return table instanceof BlockIndexAccess
+             ? ((BlockIndexAccess) table).getBlockIndex( icol )
+             : null;
+    }
+
+    /**
+     * Splits a table into a number of row sequences which together cover
+     * all its rows, and which may be read concurrently.
+     * The sequences cover contiguous row ranges and are returned in order,
+     * so that concatenating their rows gives the rows of the table.
+     * If <code>n</code> sequences are returned for a table with
+     * <code>nrow</code> rows, sequence <code>i</code> starts at row
+     * <code>nrow*i/n</code>.
+     *
+     * <p>If the table is a {@link RowRangeAccess} which supports it,
+     * its row range sequences are used.  Otherwise, if it has random
+     * access, sequences using its random access methods are used.
+     * Failing that, a single-element array containing
+     * the table's normal row sequence is returned.
+     * In any case, fewer than <code>nsplit</code> sequences may be returned.
+     *
+     * @param  table  table to split
+     * @param  nsplit  maximum number of sequences required
+     * @return  array of between 1 and <code>nsplit</code> row sequences
+     */
+    public static RowSequence[] getRowRangeSequences( StarTable table,
+                                                      int nsplit )
+            throws IOException {
+        long nrow = table.getRowCount();
+        boolean hasRanges = hasRowRanges( table );
+        if ( nsplit <= 1 || nrow < 2 ||
+             ! ( hasRanges || table.isRandom() ) ) {
+            return new RowSequence[] { table.getRowSequence() };
+        }
+        int nseq = (int) Math.min( nsplit, nrow );
+        RowSequence[] rseqs = new RowSequence[ nseq ];
+        try {
+            for ( int is = 0; is < nseq; is++ ) {
+                long irow0 = nrow * is / nseq;
+                long irow1 = nrow * ( is + 1 ) / nseq;
+                rseqs[ is ] = hasRanges
+                    ? ((RowRangeAccess) table)
+                     .getRowRangeSequence( irow0, irow1 - irow0 )
+                    : new RandomRowSequence( table, irow0, irow1 - irow0 );
+            }
+        }
+        catch ( IOException e ) {
+            for ( int is = 0; is < nseq; is++ ) {
+                if ( rseqs[ is ] != null ) {
+                    rseqs[ is ].close();
+                }
+            }
+            throw e;
+        }
+        return rseqs;
+    }
+
     /**
      * Convenience method to get an <tt>int</tt> value from a <tt>long</tt>.
      * If the supplied long integer <tt>lval</tt> is out of the range
@@ -14,11 +14,25 @@ import java.util.List;
  * <p>
  * This class is provided so that it can be extended by
  * subclasses which modify the view of the base table in useful ways.
+ * <p>
+ * Row range access (see {@link RowRangeAccess}) is not forwarded by
+ * default, since subclasses commonly alter the row data.
+ * Subclasses which present the base table's rows unchanged
+ * may override {@link #hasRowRanges} to return
+ * <code>Tables.hasRowRanges(baseTable)</code>,
+ * so that the {@link #getRowRangeSequence} implementation provided here,
+ * which forwards to the base table, is used.
+ * <p>
+ * Similarly, typed numeric cell access (see {@link DoubleCellAccess})
+ * is not forwarded by default.  Subclasses which present the base
+ * table's cells unchanged may override {@link #hasDoubleCells} to return
+ * <code>Tables.hasDoubleCells(baseTable,icol)</code>.
  *
  * @author   Mark Taylor (Starlink)
  * @see      WrapperRowSequence
  */
-public class WrapperStarTable implements StarTable {
+public class WrapperStarTable
+        implements StarTable, RowRangeAccess, DoubleCellAccess {
 
     protected StarTable baseTable;
     private String name;
@@ -115,6 +129,38 @@ public class WrapperStarTable implements StarTable {
         return baseTable.getRow( irow );
     }
 
+    /**
+     * Returns false.
+     * Subclasses may override this as described in the class comment.
+     */
+    public boolean hasRowRanges() {
+        return false;
+    }
+
+    public RowSequence getRowRangeSequence( long irow0, long nrow )
+            throws IOException {
+        return ((RowRangeAccess) baseTable).getRowRangeSequence( irow0, nrow );
+    }
+
+    /**
+     * Returns false.
+     * Subclasses may override this as described in the class comment.
+     */
+    public boolean hasDoubleCells( int icol ) {
+        return false;
+    }
+
+    public double getDouble( long irow, int icol ) throws IOException {
+        return ((DoubleCellAccess) baseTable).getDouble( irow, icol );
+    }
+
+    public void readDoubleColumn( int icol, long irow0, int nrow,
+                                  double[] buf, int off )
+            throws IOException {
+        ((DoubleCellAccess) baseTable)
+       .readDoubleColumn( icol, irow0, nrow, buf, off );
+    }
+
     /**
      * Convenience method to get an <tt>int</tt> value from a <tt>long</tt>.
      * Invokes {@link Tables#checkedLongToInt}.
@@ -95,6 +95,17 @@ public class AsciiStarTable extends StreamStarTable {
         init( datsrc );
     }
 
+    /**
+     * Constructs an uninitialised table for single-pass reading.
+     *
+     * @see  #streamData
+     * @see  #loadSampled
+     */
+    AsciiStarTable() {
+        super();
+        comments_ = new ArrayList();
+    }
+
     protected RowEvaluator.Metadata obtainMetadata()
             throws TableFormatException, IOException {
 
@@ -135,6 +146,27 @@ public class AsciiStarTable extends StreamStarTable {
         return meta;
     }
 
+    protected RowEvaluator.Metadata obtainSampleMetadata( List rows )
+            throws TableFormatException, IOException {
+        if ( rows.isEmpty() ) {
+            throw new TableFormatException( "No rows" );
+        }
+        RowEvaluator evaluator = new RowEvaluator();
+        for ( int i = 0; i < rows.size(); i++ ) {
+            try {
+                evaluator.submitRow( (List) rows.get( i ) );
+            }
+            catch ( TableFormatException e ) {
+                throw new TableFormatException( e.getMessage() + " at row "
+                                              + ( i + 1 ), e );
+            }
+        }
+        RowEvaluator.Metadata meta = evaluator.getMetadata();
+        interpretComments( meta.colInfos_ );
+        comments_ = null;
+        return meta;
+    }
+
     /**
      * Tries to make sense of any comment lines which have been read.
      * It may make changes to the initial <tt>colInfos</tt> set with
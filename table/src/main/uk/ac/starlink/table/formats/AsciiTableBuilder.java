@@ -3,6 +3,7 @@ package uk.ac.starlink.table.formats;
 import java.awt.datatransfer.DataFlavor;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableBuilder;
@@ -19,6 +20,47 @@ import uk.ac.starlink.util.DataSource;
  */
 public class AsciiTableBuilder implements TableBuilder {
 
+    private int sampleSize_;
+
+    /**
+     * Constructor.
+     * The sample size is initialised from the
+     * {@link StreamStarTable#SAMPLE_PROPERTY} system property.
+     */
+    public AsciiTableBuilder() {
+        sampleSize_ = StreamStarTable.getDefaultSampleSize();
+    }
+
+    /**
+     * Sets the number of rows used to infer column types.
+     * If zero, the default, the whole table is read to work out
+     * column types before the data is read, so two passes are required.
+     * If positive, column types are inferred from the given number of
+     * rows at the start of the table, and the table is read in a
+     * single pass into storage obtained from the storage policy.
+     * If later rows contain values which cannot be represented by the
+     * (widened) inferred types, the table is re-read using two passes.
+     * Streaming using {@link #streamStarTable} is only possible
+     * if the sample size is positive.
+     *
+     * @param  sampleSize  number of rows to sample, or 0 for two-pass reads
+     */
+    public void setSampleSize( int sampleSize ) {
+        if ( sampleSize < 0 ) {
+            throw new IllegalArgumentException( "Negative sample size" );
+        }
+        sampleSize_ = sampleSize;
+    }
+
+    /**
+     * Returns the number of rows used to infer column types.
+     *
+     * @return  sample size, or 0 for two-pass reads
+     */
+    public int getSampleSize() {
+        return sampleSize_;
+    }
+
     public String getFormatName() {
         return "ASCII";
     }
@@ -30,11 +72,25 @@ public class AsciiTableBuilder implements TableBuilder {
     public StarTable makeStarTable( DataSource datsrc, boolean wantRandom,
                                     StoragePolicy policy )
             throws TableFormatException, IOException {
+        if ( sampleSize_ > 0 ) {
+            StarTable table =
+                new AsciiStarTable().loadSampled( datsrc, policy, sampleSize_ );
+            if ( table != null ) {
+                return table;
+            }
+        }
         return new AsciiStarTable( datsrc );
     }
 
     public void streamStarTable( InputStream in, TableSink sink, String pos )
-            throws TableFormatException {
-        throw new TableFormatException( "Can't stream ASCII format tables" ); 
+            throws IOException {
+        if ( sampleSize_ > 0 ) {
+            new AsciiStarTable().streamData( new PushbackInputStream( in ), sink,
+                                 sampleSize_ );
+        }
+        else {
+            throw new TableFormatException( "Can't stream ASCII format tables"
+                                          + " without a sample size" );
+        }
     }
 }
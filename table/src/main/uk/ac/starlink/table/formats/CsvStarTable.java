@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.List;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.TableSink;
 import uk.ac.starlink.util.DataSource;
 
 /**
@@ -40,6 +41,8 @@ import uk.ac.starlink.util.DataSource;
 public class CsvStarTable extends StreamStarTable {
 
     private boolean hasHeading_;
+    private int parallelism_;
+    private int blockSize_;
 
     public CsvStarTable( DataSource datsrc )
             throws TableFormatException, IOException {
@@ -47,6 +50,51 @@ public class CsvStarTable extends StreamStarTable {
         init( datsrc );
     }
 
+    /**
+     * Constructs an uninitialised table for single-pass reading.
+     *
+     * @see  #streamData
+     * @see  #loadSampled
+     */
+    CsvStarTable() {
+        super();
+        parallelism_ = 1;
+        blockSize_ = ParallelCsvReader.DEFAULT_BLOCK_SIZE;
+    }
+
+    /**
+     * Sets the number of threads used to parse rows following the sample
+     * when reading in a single pass.
+     * If greater than 1, a {@link ParallelCsvReader} is used.
+     *
+     * @param  parallelism  number of parsing threads
+     */
+    void setParallelism( int parallelism ) {
+        parallelism_ = parallelism;
+    }
+
+    /**
+     * Sets the approximate number of bytes parsed by each task
+     * when reading rows in parallel.
+     *
+     * @param  blockSize  chunk size in bytes
+     */
+    void setBlockSize( int blockSize ) {
+        blockSize_ = blockSize;
+    }
+
+    protected void streamRows( PushbackInputStream in, TableSink sink,
+                               long irow0 )
+            throws TableFormatException, IOException {
+        if ( parallelism_ > 1 ) {
+            new ParallelCsvReader( this, parallelism_, blockSize_ )
+               .readRows( in, sink, irow0 );
+        }
+        else {
+            super.streamRows( in, sink, irow0 );
+        }
+    }
+
     protected PushbackInputStream getInputStream() throws IOException {
         PushbackInputStream in = super.getInputStream();
 
@@ -88,6 +136,47 @@ public class CsvStarTable extends StreamStarTable {
             }
         }
 
+        return interpretMetadata( row0, evaluator );
+    }
+
+    protected RowEvaluator.Metadata obtainSampleMetadata( List rows )
+            throws TableFormatException, IOException {
+        if ( rows.isEmpty() ) {
+            throw new TableFormatException( "No rows" );
+        }
+        String[] row0 =
+            (String[]) ((List) rows.get( 0 )).toArray( new String[ 0 ] );
+        RowEvaluator evaluator = new RowEvaluator();
+        for ( int i = 1; i < rows.size(); i++ ) {
+            try {
+                evaluator.submitRow( (List) rows.get( i ) );
+            }
+            catch ( TableFormatException e ) {
+                throw new TableFormatException( e.getMessage() + " at line "
+                                              + ( i + 1 ), e );
+            }
+        }
+        RowEvaluator.Metadata meta = interpretMetadata( row0, evaluator );
+        if ( hasHeading_ ) {
+            rows.remove( 0 );
+        }
+        return meta;
+    }
+
+    /**
+     * Works out the metadata given the first row and an evaluator
+     * which has seen the subsequent rows.
+     * The first row may be a heading row or a data row;
+     * this method sets the <code>hasHeading_</code> flag accordingly.
+     *
+     * @param  row0  cells of the first row
+     * @param  evaluator  evaluator which has seen the other rows
+     * @return  table metadata
+     */
+    private RowEvaluator.Metadata interpretMetadata( String[] row0,
+                                                     RowEvaluator evaluator )
+            throws TableFormatException {
+
         /* Get a first look at the metadata (may be adjusted later). */
         RowEvaluator.Metadata meta = evaluator.getMetadata();
         if ( meta.nrow_ == 0 ) {
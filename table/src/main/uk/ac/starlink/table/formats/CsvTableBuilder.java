@@ -3,12 +3,16 @@ package uk.ac.starlink.table.formats;
 import java.awt.datatransfer.DataFlavor;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.logging.Logger;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableBuilder;
 import uk.ac.starlink.table.TableFormatException;
 import uk.ac.starlink.table.TableSink;
+import uk.ac.starlink.util.Compression;
 import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
 
 /**
  * A table builder which reads tables in Comma-Separated Values format.
@@ -20,6 +24,91 @@ import uk.ac.starlink.util.DataSource;
  */
 public class CsvTableBuilder implements TableBuilder {
 
+    private int sampleSize_;
+    private int parallelism_;
+
+    /**
+     * Name of system property giving the default number of threads
+     * used to parse CSV rows in single-pass reads from uncompressed files.
+     * If not set, the number of available processors is used.
+     * Name is {@value}.
+     */
+    public static final String PARALLELISM_PROPERTY =
+        "startable.csv.parallelism";
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table.formats" );
+
+    /**
+     * Constructor.
+     * The sample size is initialised from the
+     * {@link StreamStarTable#SAMPLE_PROPERTY} system property,
+     * and the parallelism from the {@link #PARALLELISM_PROPERTY}
+     * system property.
+     */
+    public CsvTableBuilder() {
+        sampleSize_ = StreamStarTable.getDefaultSampleSize();
+        parallelism_ = getDefaultParallelism();
+    }
+
+    /**
+     * Sets the number of rows used to infer column types.
+     * If zero, the default, the whole table is read to work out
+     * column types before the data is read, so two passes are required.
+     * If positive, column types are inferred from the given number of
+     * rows at the start of the table, and the table is read in a
+     * single pass into storage obtained from the storage policy.
+     * If later rows contain values which cannot be represented by the
+     * (widened) inferred types, the table is re-read using two passes.
+     * Streaming using {@link #streamStarTable} is only possible
+     * if the sample size is positive.
+     *
+     * @param  sampleSize  number of rows to sample, or 0 for two-pass reads
+     */
+    public void setSampleSize( int sampleSize ) {
+        if ( sampleSize < 0 ) {
+            throw new IllegalArgumentException( "Negative sample size" );
+        }
+        sampleSize_ = sampleSize;
+    }
+
+    /**
+     * Returns the number of rows used to infer column types.
+     *
+     * @return  sample size, or 0 for two-pass reads
+     */
+    public int getSampleSize() {
+        return sampleSize_;
+    }
+
+    /**
+     * Sets the number of threads used to parse rows.
+     * This only has an effect for single-pass reads, that is if the
+     * sample size is positive, from uncompressed local files.
+     * In that case, if the value is greater than 1,
+     * the rows following the sample are split into chunks
+     * which are parsed concurrently.
+     *
+     * @param  parallelism  number of parsing threads
+     */
+    public void setParallelism( int parallelism ) {
+        if ( parallelism < 1 ) {
+            throw new IllegalArgumentException( "Parallelism must be"
+                                              + " at least 1" );
+        }
+        parallelism_ = parallelism;
+    }
+
+    /**
+     * Returns the number of threads used to parse rows
+     * in single-pass reads.
+     *
+     * @return  parallelism
+     */
+    public int getParallelism() {
+        return parallelism_;
+    }
+
     public String getFormatName() {
         return "CSV";
     }
@@ -31,11 +120,81 @@ public class CsvTableBuilder implements TableBuilder {
     public StarTable makeStarTable( DataSource datsrc, boolean wantRandom,
                                     StoragePolicy policy )
             throws TableFormatException, IOException {
+        if ( sampleSize_ > 0 ) {
+            int parallelism = isParallelSource( datsrc ) ? parallelism_ : 1;
+            StarTable table =
+                createSampledTable( parallelism )
+               .loadSampled( datsrc, policy, sampleSize_ );
+            if ( table != null ) {
+                return table;
+            }
+        }
         return new CsvStarTable( datsrc );
     }
 
     public void streamStarTable( InputStream in, TableSink sink, String pos )
-            throws TableFormatException {
-        throw new TableFormatException( "Can't stream ASCII format tables" ); 
+            throws IOException {
+        if ( sampleSize_ > 0 ) {
+            createSampledTable( 1 )
+               .streamData( new PushbackInputStream( in ), sink, sampleSize_ );
+        }
+        else {
+            throw new TableFormatException( "Can't stream CSV format tables"
+                                          + " without a sample size" );
+        }
+    }
+
+    /**
+     * Returns an uninitialised table for single-pass reading.
+     *
+     * @param  parallelism  number of parsing threads
+     * @return  new table
+     */
+    private static CsvStarTable createSampledTable( int parallelism ) {
+        CsvStarTable table = new CsvStarTable();
+        table.setParallelism( parallelism );
+        return table;
+    }
+
+    /**
+     * Indicates whether a data source is suitable for parallel parsing.
+     * Only uncompressed local files qualify; for other sources
+     * the cost of obtaining the bytes is likely to dominate.
+     *
+     * @param  datsrc  data source
+     * @return  true iff rows from datsrc may be parsed in parallel
+     */
+    static boolean isParallelSource( DataSource datsrc ) throws IOException {
+        return datsrc instanceof FileDataSource
+            && datsrc.getCompression() == Compression.NONE;
+    }
+
+    /**
+     * Returns the default parallelism, as given by the
+     * {@link #PARALLELISM_PROPERTY} system property.
+     *
+     * @return  default number of parsing threads
+     */
+    private static int getDefaultParallelism() {
+        String pval;
+        try {
+            pval = System.getProperty( PARALLELISM_PROPERTY );
+        }
+        catch ( SecurityException e ) {
+            pval = null;
+        }
+        if ( pval != null && pval.trim().length() > 0 ) {
+            try {
+                int ival = Integer.parseInt( pval.trim() );
+                if ( ival >= 1 ) {
+                    return ival;
+                }
+            }
+            catch ( NumberFormatException e ) {
+            }
+            logger_.warning( "Ignoring bad value for " + PARALLELISM_PROPERTY
+                           + " \"" + pval + "\"" );
+        }
+        return Runtime.getRuntime().availableProcessors();
     }
 }
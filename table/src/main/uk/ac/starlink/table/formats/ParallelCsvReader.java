@@ -0,0 +1,537 @@
+package uk.ac.starlink.table.formats;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.TableSink;
+
+/**
+ * Reads the rows of a CSV stream using multiple threads.
+ * The stream is read sequentially in blocks, each of which is cut
+ * at the last record boundary it contains, taking account of
+ * line breaks within quoted cells.
+ * The resulting chunks are tokenised and decoded in parallel
+ * using the row reading method and column decoders of a
+ * {@link CsvStarTable}.  Numeric and boolean columns are decoded into
+ * primitive buffers, so the parsing threads do not create an object
+ * per cell; the rows are assembled from these buffers and passed to
+ * a sink in their original order.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class ParallelCsvReader {
+
+    private final CsvStarTable table_;
+    private final int nthread_;
+    private final int blockSize_;
+
+    /** Default number of bytes read at a time. */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * Constructor.
+     *
+     * @param  table  table supplying row parsing and decoding;
+     *                its sample metadata must have been set up
+     * @param  nthread  number of parsing threads
+     * @param  blockSize  approximate number of bytes in each chunk
+     */
+    public ParallelCsvReader( CsvStarTable table, int nthread,
+                              int blockSize ) {
+        table_ = table;
+        nthread_ = nthread;
+        blockSize_ = blockSize;
+    }
+
+    /**
+     * Reads all the remaining rows from a stream and passes them to a sink.
+     * The stream must be positioned at the start of a record.
+     *
+     * @param  in  input stream
+     * @param  sink  destination for decoded rows
+     * @param  irow0  index of the first row to be read
+     */
+    public void readRows( InputStream in, TableSink sink, long irow0 )
+            throws IOException {
+        ExecutorService executor =
+            Executors.newFixedThreadPool( nthread_, new ThreadFactory() {
+                public Thread newThread( Runnable r ) {
+                    Thread th = new Thread( r, "CSV Parser" );
+                    th.setDaemon( true );
+                    return th;
+                }
+            } );
+        LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+        int maxPending = nthread_ + 2;
+        ChunkSplitter splitter = new ChunkSplitter( in, blockSize_ );
+        long irow = irow0;
+        try {
+            boolean eof = false;
+            while ( ! eof || ! pending.isEmpty() ) {
+
+                /* Keep enough chunks in the queue to occupy the threads. */
+                while ( ! eof && pending.size() < maxPending ) {
+                    final ByteChunk bchunk = splitter.nextChunk();
+                    if ( bchunk == null ) {
+                        eof = true;
+                    }
+                    else {
+                        pending.add( executor.submit( new Callable<Chunk>() {
+                            public Chunk call() {
+                                return parseChunk( bchunk );
+                            }
+                        } ) );
+                    }
+                }
+
+                /* Deliver the rows from the oldest chunk. */
+                if ( ! pending.isEmpty() ) {
+                    Chunk chunk = pending.removeFirst().get();
+                    int nr = chunk.nrow_;
+                    for ( int i = 0; i < nr; i++ ) {
+                        sink.acceptRow( chunk.getRow( i ) );
+                    }
+                    irow += nr;
+
+                    /* Decode the offending row again to get an error
+                     * message with the correct row number. */
+                    if ( chunk.errorCells_ != null ) {
+                        table_.decodeSampledRow( chunk.errorCells_, irow );
+                        throw new TableFormatException( "Bad row "
+                                                      + ( irow + 1 ) );
+                    }
+                    if ( chunk.error_ != null ) {
+                        throw chunk.error_;
+                    }
+                }
+            }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new IOException( "CSV read interrupted" )
+                               .initCause( e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                throw (IOException) new IOException( "CSV read error" )
+                                   .initCause( cause );
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tokenises and decodes the rows in a chunk of bytes.
+     * Parsing stops at the first error, which is recorded in the result.
+     *
+     * @param  bchunk  chunk containing whole records
+     * @return   parsed chunk
+     */
+    private Chunk parseChunk( ByteChunk bchunk ) {
+        PushbackInputStream in =
+            new PushbackInputStream(
+                new ByteArrayInputStream( bchunk.buf_, 0, bchunk.leng_ ) );
+        int ncol = table_.getColumnCount();
+        ColumnBuffer[] colBufs = new ColumnBuffer[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            colBufs[ icol ] = createColumnBuffer( table_.getDecoder( icol ) );
+        }
+        Chunk chunk = new Chunk( colBufs );
+        try {
+            for ( List cells; ( cells = table_.readRow( in ) ) != null; ) {
+                if ( ! chunk.addRow( cells ) ) {
+                    chunk.errorCells_ = cells;
+                    break;
+                }
+            }
+        }
+        catch ( IOException e ) {
+            chunk.error_ = e;
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns a buffer for the decoded values of a column.
+     *
+     * @param  decoder  decoder for column values
+     * @return  new buffer
+     */
+    private static ColumnBuffer createColumnBuffer( RowEvaluator.Decoder
+                                                        decoder ) {
+        if ( decoder instanceof RowEvaluator.DoubleDecoder ) {
+            return new DoubleColumnBuffer( (RowEvaluator.DoubleDecoder)
+                                           decoder );
+        }
+        else if ( decoder instanceof RowEvaluator.LongDecoder ) {
+            return new LongColumnBuffer( (RowEvaluator.LongDecoder) decoder );
+        }
+        else if ( decoder instanceof RowEvaluator.BooleanDecoder ) {
+            return new BooleanColumnBuffer( (RowEvaluator.BooleanDecoder)
+                                            decoder );
+        }
+        else {
+            return new ObjectColumnBuffer( decoder );
+        }
+    }
+
+    /**
+     * Returns the position of the last record boundary in a buffer
+     * starting at a record boundary.  A boundary is only reported
+     * if it is followed by a non-line-end character within the buffer.
+     * Since doubled quote characters within quoted cells come in pairs,
+     * a position is outside quotes if an even number of quote characters
+     * precede it.
+     *
+     * @param  buf  buffer
+     * @param  leng  number of bytes used in buffer
+     * @return  offset of last boundary, or 0 if none
+     */
+    static int lastBoundary( byte[] buf, int leng ) {
+        int cut = 0;
+        boolean inQuote = false;
+        boolean afterEol = false;
+        for ( int i = 0; i < leng; i++ ) {
+            byte b = buf[ i ];
+            if ( b == '\r' || b == '\n' ) {
+                if ( ! inQuote ) {
+                    afterEol = true;
+                }
+            }
+            else {
+                if ( afterEol ) {
+                    cut = i;
+                    afterEol = false;
+                }
+                if ( b == '"' ) {
+                    inQuote = ! inQuote;
+                }
+            }
+        }
+        return cut;
+    }
+
+    /**
+     * Result of parsing a chunk.
+     */
+    private static class Chunk {
+        final ColumnBuffer[] colBufs_;
+        int nrow_;
+        IOException error_;
+        List errorCells_;
+
+        /**
+         * Constructor.
+         *
+         * @param  colBufs  per-column buffers for decoded values
+         */
+        Chunk( ColumnBuffer[] colBufs ) {
+            colBufs_ = colBufs;
+        }
+
+        /**
+         * Decodes a row and appends it to this chunk.
+         * If the row cannot be decoded, it is not added.
+         *
+         * @param  cells  list of Strings one for each cell
+         * @return  true iff the row was decoded successfully
+         */
+        boolean addRow( List cells ) {
+            int ncol = colBufs_.length;
+            if ( cells.size() != ncol ) {
+                return false;
+            }
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                String sval = (String) cells.get( icol );
+                boolean isBlank = sval == null || sval.trim().length() == 0;
+                try {
+                    colBufs_[ icol ].set( nrow_, isBlank ? null : sval );
+                }
+                catch ( RuntimeException e ) {
+                    return false;
+                }
+            }
+            nrow_++;
+            return true;
+        }
+
+        /**
+         * Returns a decoded row.
+         *
+         * @param  irow  row index within this chunk
+         * @return  row cell values
+         */
+        Object[] getRow( int irow ) {
+            int ncol = colBufs_.length;
+            Object[] row = new Object[ ncol ];
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                row[ icol ] = colBufs_[ icol ].get( irow );
+            }
+            return row;
+        }
+    }
+
+    /**
+     * Stores the decoded values of a column for the rows of a chunk.
+     */
+    private static abstract class ColumnBuffer {
+
+        /** Initial buffer size. */
+        static final int INIT_SIZE = 256;
+
+        /**
+         * Decodes and stores a value.
+         * Values may be overwritten.
+         *
+         * @param  irow  row index within chunk
+         * @param  sval  non-blank string to decode, or null for blank
+         * @throws  RuntimeException  if the value cannot be decoded
+         */
+        abstract void set( int irow, String sval );
+
+        /**
+         * Returns a stored value.
+         *
+         * @param  irow  row index within chunk
+         * @return  decoded value, or null for blank
+         */
+        abstract Object get( int irow );
+
+        /**
+         * Returns the buffer size required to store a given row,
+         * expanding the current size if necessary.
+         *
+         * @param  irow  row index within chunk
+         * @param  leng  current buffer size
+         * @return  required buffer size
+         */
+        static int newSize( int irow, int leng ) {
+            return irow < leng ? leng : Math.max( leng * 2, irow + 1 );
+        }
+    }
+
+    /**
+     * ColumnBuffer implementation for double values.
+     */
+    private static class DoubleColumnBuffer extends ColumnBuffer {
+        final RowEvaluator.DoubleDecoder decoder_;
+        final BitSet blanks_;
+        double[] values_;
+
+        DoubleColumnBuffer( RowEvaluator.DoubleDecoder decoder ) {
+            decoder_ = decoder;
+            blanks_ = new BitSet();
+            values_ = new double[ INIT_SIZE ];
+        }
+        void set( int irow, String sval ) {
+            int leng = newSize( irow, values_.length );
+            if ( leng > values_.length ) {
+                double[] values = new double[ leng ];
+                System.arraycopy( values_, 0, values, 0, values_.length );
+                values_ = values;
+            }
+            values_[ irow ] = sval == null ? Double.NaN
+                                           : decoder_.decodeDouble( sval );
+            blanks_.set( irow, sval == null );
+        }
+        Object get( int irow ) {
+            return blanks_.get( irow ) ? null
+                                       : new Double( values_[ irow ] );
+        }
+    }
+
+    /**
+     * ColumnBuffer implementation for long values.
+     */
+    private static class LongColumnBuffer extends ColumnBuffer {
+        final RowEvaluator.LongDecoder decoder_;
+        final BitSet blanks_;
+        long[] values_;
+
+        LongColumnBuffer( RowEvaluator.LongDecoder decoder ) {
+            decoder_ = decoder;
+            blanks_ = new BitSet();
+            values_ = new long[ INIT_SIZE ];
+        }
+        void set( int irow, String sval ) {
+            int leng = newSize( irow, values_.length );
+            if ( leng > values_.length ) {
+                long[] values = new long[ leng ];
+                System.arraycopy( values_, 0, values, 0, values_.length );
+                values_ = values;
+            }
+            values_[ irow ] = sval == null ? 0L : decoder_.decodeLong( sval );
+            blanks_.set( irow, sval == null );
+        }
+        Object get( int irow ) {
+            return blanks_.get( irow ) ? null : new Long( values_[ irow ] );
+        }
+    }
+
+    /**
+     * ColumnBuffer implementation for boolean values.
+     */
+    private static class BooleanColumnBuffer extends ColumnBuffer {
+        final RowEvaluator.BooleanDecoder decoder_;
+        final BitSet blanks_;
+        final BitSet values_;
+
+        BooleanColumnBuffer( RowEvaluator.BooleanDecoder decoder ) {
+            decoder_ = decoder;
+            blanks_ = new BitSet();
+            values_ = new BitSet();
+        }
+        void set( int irow, String sval ) {
+            values_.set( irow, sval != null && decoder_.decodeBoolean( sval ) );
+            blanks_.set( irow, sval == null );
+        }
+        Object get( int irow ) {
+            return blanks_.get( irow ) ? null
+                                       : Boolean.valueOf( values_.get( irow ) );
+        }
+    }
+
+    /**
+     * ColumnBuffer implementation for other values.
+     */
+    private static class ObjectColumnBuffer extends ColumnBuffer {
+        final RowEvaluator.Decoder decoder_;
+        Object[] values_;
+
+        ObjectColumnBuffer( RowEvaluator.Decoder decoder ) {
+            decoder_ = decoder;
+            values_ = new Object[ INIT_SIZE ];
+        }
+        void set( int irow, String sval ) {
+            int leng = newSize( irow, values_.length );
+            if ( leng > values_.length ) {
+                Object[] values = new Object[ leng ];
+                System.arraycopy( values_, 0, values, 0, values_.length );
+                values_ = values;
+            }
+            values_[ irow ] = sval == null ? null : decoder_.decode( sval );
+        }
+        Object get( int irow ) {
+            return values_[ irow ];
+        }
+    }
+
+    /**
+     * Byte buffer containing a whole number of records.
+     */
+    private static class ByteChunk {
+        final byte[] buf_;
+        final int leng_;
+
+        /**
+         * Constructor.
+         *
+         * @param  buf  buffer
+         * @param  leng  number of bytes used in buffer
+         */
+        ByteChunk( byte[] buf, int leng ) {
+            buf_ = buf;
+            leng_ = leng;
+        }
+    }
+
+    /**
+     * Splits a CSV byte stream into chunks at record boundaries.
+     * A record boundary is the end of a run of line end characters
+     * which is not inside a quoted cell.
+     */
+    private static class ChunkSplitter {
+        private final InputStream in_;
+        private final int blockSize_;
+        private byte[] carry_;
+        private int ncarry_;
+        private boolean eof_;
+
+        /**
+         * Constructor.
+         *
+         * @param  in  input stream positioned at the start of a record
+         * @param  blockSize  approximate chunk size in bytes
+         */
+        ChunkSplitter( InputStream in, int blockSize ) {
+            in_ = in;
+            blockSize_ = blockSize;
+            carry_ = new byte[ 0 ];
+        }
+
+        /**
+         * Returns the next chunk from the stream.
+         *
+         * @return  chunk containing whole records, or null at end of stream
+         */
+        ByteChunk nextChunk() throws IOException {
+            if ( eof_ && ncarry_ == 0 ) {
+                return null;
+            }
+            byte[] buf = new byte[ Math.max( blockSize_, ncarry_ * 2 ) ];
+            System.arraycopy( carry_, 0, buf, 0, ncarry_ );
+            int leng = ncarry_;
+            while ( true ) {
+
+                /* Fill the buffer. */
+                while ( ! eof_ && leng < buf.length ) {
+                    int n = in_.read( buf, leng, buf.length - leng );
+                    if ( n < 0 ) {
+                        eof_ = true;
+                    }
+                    else {
+                        leng += n;
+                    }
+                }
+
+                /* At end of stream, the rest is the last chunk. */
+                if ( eof_ ) {
+                    ncarry_ = 0;
+                    carry_ = new byte[ 0 ];
+                    return leng > 0 ? new ByteChunk( buf, leng ) : null;
+                }
+
+                /* Otherwise cut it at the last record boundary. */
+                int cut = lastBoundary( buf, leng );
+                if ( cut > 0 ) {
+                    ncarry_ = leng - cut;
+                    carry_ = new byte[ ncarry_ ];
+                    System.arraycopy( buf, cut, carry_, 0, ncarry_ );
+                    return new ByteChunk( buf, cut );
+                }
+
+                /* If there is no boundary, read some more. */
+                if ( buf.length > Integer.MAX_VALUE / 2 ) {
+                    throw new TableFormatException( "CSV record too long" );
+                }
+                byte[] buf1 = new byte[ buf.length * 2 ];
+                System.arraycopy( buf, 0, buf1, 0, leng );
+                buf = buf1;
+            }
+        }
+    }
+}
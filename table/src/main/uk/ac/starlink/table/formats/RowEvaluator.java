@@ -147,9 +147,9 @@ public class RowEvaluator {
     };
 
     /** Decoder for doubles. */
-    private static Decoder DOUBLE_DECODER = new Decoder( Double.class ) {
-        public Object decode( String value ) {
-            return new Double( parseFloating( value.trim() ).dValue );
+    private static Decoder DOUBLE_DECODER = new DoubleDecoder() {
+        double decodeDouble( String value ) {
+            return parseFloating( value.trim() ).dValue;
         }
         public boolean isValid( String value ) {
             try {
@@ -207,6 +207,41 @@ public class RowEvaluator {
         }
     };
 
+    /**
+     * Decoder for booleans which fails on values that don't look boolean,
+     * for use with sampled metadata.
+     */
+    private static Decoder CHECKED_BOOLEAN_DECODER = new BooleanDecoder() {
+        boolean decodeBoolean( String value ) {
+            String tval = value.trim();
+            if ( ! isValid( tval ) ) {
+                throw new IllegalArgumentException( "Not boolean: " + value );
+            }
+            return BOOLEAN_DECODER.decode( tval ) == Boolean.TRUE;
+        }
+        public boolean isValid( String value ) {
+            return BOOLEAN_DECODER.isValid( value );
+        }
+    };
+
+    /**
+     * Decoder for longs which fails on negative zero,
+     * for use with sampled metadata.
+     */
+    private static Decoder CHECKED_LONG_DECODER = new LongDecoder() {
+        long decodeLong( String value ) {
+            String tval = value.trim();
+            long lval = Long.parseLong( tval );
+            if ( lval == 0L && tval.charAt( 0 ) == '-' ) {
+                throw new NumberFormatException( "Negative zero" );
+            }
+            return lval;
+        }
+        public boolean isValid( String value ) {
+            return LONG_DECODER.isValid( value );
+        }
+    };
+
     /**
      * Constructs a new RowEvaluator which will work out the number of
      * columns from the data.
@@ -401,6 +436,49 @@ public class RowEvaluator {
         return new Metadata( colInfos, decoders, nrow_ );
     }
 
+    /**
+     * Returns metadata based on that obtained from a sample of rows,
+     * with column types widened so that they are more likely to be
+     * able to represent the rest of the table.
+     * Short and Integer columns become Long, Float columns become Double,
+     * and string columns have no fixed element size.
+     * The decoders of the returned metadata throw an unchecked exception
+     * when presented with a value they cannot decode.
+     *
+     * @param  meta  metadata obtained from a sample
+     * @return  widened metadata
+     */
+    static Metadata widenMetadata( Metadata meta ) {
+        int ncol = meta.ncol_;
+        ColumnInfo[] colInfos = new ColumnInfo[ ncol ];
+        Decoder[] decoders = new Decoder[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            Decoder dec = meta.decoders_[ icol ];
+            final Decoder wdec;
+            if ( dec == BOOLEAN_DECODER ) {
+                wdec = CHECKED_BOOLEAN_DECODER;
+            }
+            else if ( dec == SHORT_DECODER || dec == INTEGER_DECODER ||
+                      dec == LONG_DECODER ) {
+                wdec = CHECKED_LONG_DECODER;
+            }
+            else if ( dec == FLOAT_DECODER ) {
+                wdec = DOUBLE_DECODER;
+            }
+            else {
+                wdec = dec;
+            }
+            ColumnInfo info = new ColumnInfo( meta.colInfos_[ icol ] );
+            info.setContentClass( wdec.clazz_ );
+            if ( wdec instanceof StringDecoder ) {
+                info.setElementSize( -1 );
+            }
+            colInfos[ icol ] = info;
+            decoders[ icol ] = wdec;
+        }
+        return new Metadata( colInfos, decoders, meta.nrow_ );
+    }
+
     /**
      * Returns a new <tt>ncol</tt>-element boolean array.
      *
@@ -558,6 +636,81 @@ public class RowEvaluator {
         public abstract boolean isValid( String value );
     }
 
+    /**
+     * Partial Decoder implementation for values which can be
+     * decoded to a primitive long.
+     */
+    static abstract class LongDecoder extends Decoder {
+        LongDecoder() {
+            super( Long.class );
+        }
+
+        /**
+         * Decodes a value to a primitive.
+         * Will complete without exception if {@link #isValid} returns true
+         * for the presented <code>value</code>; otherwise may throw an
+         * unchecked exception.
+         *
+         * @param  value  string to decode
+         * @return   decoded value
+         */
+        abstract long decodeLong( String value );
+
+        public Object decode( String value ) {
+            return new Long( decodeLong( value ) );
+        }
+    }
+
+    /**
+     * Partial Decoder implementation for values which can be
+     * decoded to a primitive double.
+     */
+    static abstract class DoubleDecoder extends Decoder {
+        DoubleDecoder() {
+            super( Double.class );
+        }
+
+        /**
+         * Decodes a value to a primitive.
+         * Will complete without exception if {@link #isValid} returns true
+         * for the presented <code>value</code>; otherwise may throw an
+         * unchecked exception.
+         *
+         * @param  value  string to decode
+         * @return   decoded value
+         */
+        abstract double decodeDouble( String value );
+
+        public Object decode( String value ) {
+            return new Double( decodeDouble( value ) );
+        }
+    }
+
+    /**
+     * Partial Decoder implementation for values which can be
+     * decoded to a primitive boolean.
+     */
+    static abstract class BooleanDecoder extends Decoder {
+        BooleanDecoder() {
+            super( Boolean.class );
+        }
+
+        /**
+         * Decodes a value to a primitive.
+         * Will complete without exception if {@link #isValid} returns true
+         * for the presented <code>value</code>; otherwise may throw an
+         * unchecked exception.
+         *
+         * @param  value  string to decode
+         * @return   decoded value
+         */
+        abstract boolean decodeBoolean( String value );
+
+        public Object decode( String value ) {
+            return Boolean.valueOf( decodeBoolean( value ) );
+        }
+    }
+
     /**
      * Partial Decoder implementation for strings..
      */
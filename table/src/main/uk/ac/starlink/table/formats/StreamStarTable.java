@@ -3,12 +3,18 @@ package uk.ac.starlink.table.formats;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.PushbackInputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Logger;
 import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.ReaderRowSequence;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.TableSink;
 import uk.ac.starlink.util.DataSource;
 
 /**
@@ -20,6 +26,12 @@ import uk.ac.starlink.util.DataSource;
  * a further pass through for each required RowSequence, using the
  * metadata obtained earlier.
  *
+ * <p>Alternatively, the data can be read in a single pass
+ * by the {@link #streamData} or {@link #loadSampled} methods.
+ * In that case column types are inferred from a sample of rows
+ * at the start of the stream, and widened to make it more likely that
+ * later values can be represented.
+ *
  * @author   Mark Taylor (Starlink)
  * @since    21 Sep 2004
  * @see   RowEvaluator
@@ -35,6 +47,20 @@ public abstract class StreamStarTable extends AbstractStarTable {
     /** Char representation of -1 (as returned end-of-stream read) */
     protected final static char END = (char) -1;
 
+    /**
+     * Name of system property {@value} which may be used to set the
+     * default sample size for reading text tables in a single pass.
+     * If set to a positive integer, column types are inferred from
+     * that many rows at the start of the table, and the rows are then
+     * streamed directly to storage.
+     * If not set, column types are inferred from the whole table,
+     * which requires an extra pass through the data.
+     */
+    public static final String SAMPLE_PROPERTY = "startable.text.sample";
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table.formats" );
+
     /**
      * Constructor.  This doesn't perform any processing; you must call
      * {@link #init} before doing anything with the constructed table.
@@ -111,6 +137,244 @@ public abstract class StreamStarTable extends AbstractStarTable {
         };
     }
 
+    /**
+     * Reads the data for this table in a single pass from a stream,
+     * sending the metadata and rows to a sink.
+     * Column types are inferred from the first <code>nsample</code> rows
+     * using {@link #obtainSampleMetadata}, and then widened
+     * (for instance integer columns are read as long integers and
+     * float columns as doubles).
+     * If a later value cannot be decoded using the widened type,
+     * a TableFormatException is thrown.
+     *
+     * <p>This method may be called instead of {@link #init}
+     * on an uninitialised table.  The row count of this table,
+     * as passed to the sink, is -1.
+     *
+     * @param  in  input stream containing the table text
+     * @param  sink  destination for table metadata and rows
+     * @param  nsample  maximum number of rows used to infer column types
+     * @throws   TableFormatException  if the data doesn't represent this
+     *           kind of table, or doesn't match the inferred types
+     * @throws   IOException   if I/O error is encountered
+     */
+    protected void streamData( PushbackInputStream in, TableSink sink,
+                               int nsample )
+            throws TableFormatException, IOException {
+        if ( datsrc_ != null || decoders_ != null ) {
+            throw new IllegalStateException( "Already initialised" );
+        }
+
+        /* Read the sample rows and work out metadata from them. */
+        List sample = new ArrayList();
+        for ( List row; sample.size() < nsample &&
+                        ( row = readRow( in ) ) != null; ) {
+            sample.add( row );
+        }
+        RowEvaluator.Metadata meta =
+            RowEvaluator.widenMetadata( obtainSampleMetadata( sample ) );
+        decoders_ = meta.decoders_;
+        colInfos_ = meta.colInfos_;
+        ncol_ = meta.ncol_;
+        nrow_ = -1;
+
+        /* Pass the sampled rows and then the rest to the sink. */
+        sink.acceptMetadata( this );
+        long irow = 0;
+        for ( int i = 0; i < sample.size(); i++ ) {
+            sink.acceptRow( decodeSampledRow( (List) sample.get( i ),
+                                              irow++ ) );
+        }
+        sample = null;
+        streamRows( in, sink, irow );
+        sink.endRows();
+    }
+
+    /**
+     * Reads the rows following the sample when streaming data,
+     * and passes them to a sink.
+     * This is called by {@link #streamData} after the sample rows
+     * have been passed to the sink; it should not call
+     * <code>acceptMetadata</code> or <code>endRows</code>.
+     * Rows should be decoded using {@link #decodeSampledRow}.
+     *
+     * <p>The default implementation reads the rows sequentially
+     * using {@link #readRow}.
+     *
+     * @param  in  input stream positioned after the sample rows
+     * @param  sink  destination for rows
+     * @param  irow0  index of the first row to be read
+     * @throws   TableFormatException  if the data doesn't represent this
+     *           kind of table, or doesn't match the inferred types
+     * @throws   IOException   if I/O error is encountered
+     */
+    protected void streamRows( PushbackInputStream in, TableSink sink,
+                               long irow0 )
+            throws TableFormatException, IOException {
+        long irow = irow0;
+        for ( List row; ( row = readRow( in ) ) != null; ) {
+            sink.acceptRow( decodeSampledRow( row, irow++ ) );
+        }
+    }
+
+    /**
+     * Reads the data for this table in a single pass from a data source
+     * into storage, and returns the stored table.
+     * Column types are inferred from a sample as for {@link #streamData}.
+     * If the data does not match the inferred types,
+     * null is returned, and the caller may fall back to the
+     * two-pass behaviour by initialising a new table
+     * in the usual way.
+     *
+     * <p>This method may be called instead of {@link #init}
+     * on an uninitialised table.
+     *
+     * @param  datsrc  data source from which the stream can be obtained
+     * @param  policy  storage policy for the row data, or null for default
+     * @param  nsample  maximum number of rows used to infer column types
+     * @return  random-access table containing the data,
+     *          or null if the sample types were inadequate
+     * @throws   TableFormatException  if the data doesn't represent this
+     *           kind of table
+     * @throws   IOException   if I/O error is encountered
+     */
+    public StarTable loadSampled( DataSource datsrc, StoragePolicy policy,
+                                  int nsample )
+            throws TableFormatException, IOException {
+        setName( datsrc.getName() );
+        setURL( datsrc.getURL() );
+        if ( policy == null ) {
+            policy = StoragePolicy.getDefaultPolicy();
+        }
+        RowStore store = policy.makeRowStore();
+        PushbackInputStream in =
+            new PushbackInputStream(
+                new BufferedInputStream( datsrc.getInputStream() ) );
+        try {
+            streamData( in, store, nsample );
+        }
+        catch ( SampleMismatchException e ) {
+            logger_.info( "Text table " + datsrc.getName() + ": "
+                        + e.getMessage() + "; re-reading whole table" );
+            return null;
+        }
+        finally {
+            in.close();
+        }
+        return store.getStarTable();
+    }
+
+    /**
+     * Obtains column metadata for this table from a sample of rows
+     * at the start of the stream, in preparation for reading in a
+     * single pass.
+     * Any leading elements of the <code>rows</code> list which do not
+     * represent data (for instance header rows) should be removed from it.
+     *
+     * <p>The default implementation submits all the rows to a
+     * {@link RowEvaluator}.
+     *
+     * @param  rows  list of rows read using {@link #readRow},
+     *               each a list of Strings; may be modified
+     * @return   information about the table represented by the rows
+     * @throws   TableFormatException  if the data doesn't represent this
+     *           kind of table
+     * @throws   IOException   if I/O error is encountered
+     */
+    protected RowEvaluator.Metadata obtainSampleMetadata( List rows )
+            throws TableFormatException, IOException {
+        if ( rows.isEmpty() ) {
+            throw new TableFormatException( "No rows" );
+        }
+        RowEvaluator evaluator = new RowEvaluator();
+        for ( int i = 0; i < rows.size(); i++ ) {
+            evaluator.submitRow( (List) rows.get( i ) );
+        }
+        return evaluator.getMetadata();
+    }
+
+    /**
+     * Decodes a row read when streaming data,
+     * checking that it is consistent with the sampled metadata.
+     * This method may be called concurrently from multiple threads.
+     *
+     * @param  cellList  list of Strings one for each cell
+     * @param  irow   index of the row in the table, used for error
+     *                reporting; if negative no row number is reported
+     * @return  decoded row
+     * @throws   TableFormatException  if the row doesn't match the
+     *           sampled metadata
+     */
+    protected Object[] decodeSampledRow( List cellList, long irow )
+            throws TableFormatException {
+        String atRow = irow >= 0 ? " at row " + ( irow + 1 ) : "";
+        int ncol = ncol_;
+        if ( cellList.size() != ncol ) {
+            throw new TableFormatException(
+                "Wrong number of columns" + atRow +
+                " (expecting " + ncol + ", found " + cellList.size() + ")" );
+        }
+        Object[] row = new Object[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            String sval = (String) cellList.get( icol );
+            if ( sval != null && sval.trim().length() > 0 ) {
+                try {
+                    row[ icol ] = decoders_[ icol ].decode( sval );
+                }
+                catch ( RuntimeException e ) {
+                    throw new SampleMismatchException(
+                        "Value \"" + sval.trim() + "\"" + atRow
+                      + " does not match type "
+                      + colInfos_[ icol ].getContentClass().getSimpleName()
+                      + " of column " + colInfos_[ icol ].getName()
+                      + " inferred from sample" );
+                }
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Returns the decoder used for a column when streaming data.
+     * This may only be called after the sample rows have been read
+     * by {@link #streamData}.
+     *
+     * @param  icol  column index
+     * @return  decoder for values in the column
+     */
+    RowEvaluator.Decoder getDecoder( int icol ) {
+        return decoders_[ icol ];
+    }
+
+    /**
+     * Returns the default sample size for single-pass reading,
+     * as given by the {@link #SAMPLE_PROPERTY} system property.
+     *
+     * @return  sample size, or 0 for two-pass reading
+     */
+    public static int getDefaultSampleSize() {
+        String pval;
+        try {
+            pval = System.getProperty( SAMPLE_PROPERTY );
+        }
+        catch ( SecurityException e ) {
+            pval = null;
+        }
+        if ( pval != null && pval.trim().length() > 0 ) {
+            try {
+                int ival = Integer.parseInt( pval.trim() );
+                if ( ival >= 0 ) {
+                    return ival;
+                }
+            }
+            catch ( NumberFormatException e ) {
+            }
+            logger_.warning( "Ignoring bad value for " + SAMPLE_PROPERTY
+                           + " \"" + pval + "\"" );
+        }
+        return 0;
+    }
+
     /**
      * Convenience method which returns a buffered pushback stream based
      * on this table's data source.
@@ -148,4 +412,20 @@ public abstract class StreamStarTable extends AbstractStarTable {
      */
     protected abstract List readRow( PushbackInputStream in )
             throws TableFormatException, IOException;
+
+    /**
+     * Exception indicating that a value read after the sample
+     * does not match the column types inferred from the sample.
+     */
+    static class SampleMismatchException extends TableFormatException {
+
+        /**
+         * Constructor.
+         *
+         * @param  msg  message
+         */
+        SampleMismatchException( String msg ) {
+            super( msg );
+        }
+    }
 }
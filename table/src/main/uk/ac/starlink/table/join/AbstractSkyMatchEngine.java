@@ -165,10 +165,29 @@ public abstract class AbstractSkyMatchEngine implements MatchEngine {
     private static double
             haversineSeparationFormula( double alpha1, double delta1,
                                         double alpha2, double delta2 ) {
+        return haversineSeparation( alpha1, delta1, Math.cos( delta1 ),
+                                    alpha2, delta2, Math.cos( delta2 ) );
+    }
+
+    /**
+     * Haversine formula for spherical trigonometry,
+     * using precomputed declination cosines.
+     *
+     * @param   alpha1  right ascension of point 1 in radians
+     * @param   delta1  declination of point 1 in radians
+     * @param   cosDelta1  cosine of <code>delta1</code>
+     * @param   alpha2  right ascension of point 2 in radians
+     * @param   delta2  declination of point 2 in radians
+     * @param   cosDelta2  cosine of <code>delta2</code>
+     * @return  angular separation of point 1 and point 2 in radians
+     */
+    static double haversineSeparation( double alpha1, double delta1,
+                                       double cosDelta1,
+                                       double alpha2, double delta2,
+                                       double cosDelta2 ) {
         double sd2 = Math.sin( 0.5 * ( delta2 - delta1 ) );
         double sa2 = Math.sin( 0.5 * ( alpha2 - alpha1 ) );
-        double a = sd2 * sd2 +
-                   sa2 * sa2 * Math.cos( delta1 ) * Math.cos( delta2 );
+        double a = sd2 * sd2 + sa2 * sa2 * cosDelta1 * cosDelta2;
         return a < 1.0 ? 2.0 * Math.asin( Math.sqrt( a ) )
                        : Math.PI;
     }
@@ -288,6 +307,129 @@ public abstract class AbstractSkyMatchEngine implements MatchEngine {
         }
     }
 
+    /**
+     * Returns a cache which can be used to score candidate pairs against
+     * the rows of a table without repeating per-row calculations.
+     * The default implementation returns null.
+     *
+     * @param  nrow  number of rows to cache
+     * @return  new tuple cache, or null if not supported
+     */
+    TupleCache createTupleCache( int nrow ) {
+        return null;
+    }
+
+    /**
+     * Partial TupleCache implementation for sky positions.
+     * For each row it stores the unit vector, which allows cheap
+     * rejection of most non-matching pairs by chord length,
+     * along with the quantities required to calculate the exact
+     * separation in the same way as {@link #calculateSeparation}.
+     */
+    static abstract class SkyTupleCache extends TupleCache {
+
+        private final double[] xs_;
+        private final double[] ys_;
+        private final double[] zs_;
+        private final double[] alphas_;
+        private final double[] deltas_;
+        private final double[] cosDeltas_;
+        private double qx_;
+        private double qy_;
+        private double qz_;
+        private double qAlpha_;
+        private double qDelta_;
+        private double qCosDelta_;
+
+        /**
+         * Absolute tolerance in radians for chord length comparisons,
+         * covering rounding errors in the unit vector calculations.
+         */
+        private static final double CHORD_TOL = 1e-14;
+
+        /**
+         * Constructor.
+         *
+         * @param  nrow  number of rows
+         */
+        SkyTupleCache( int nrow ) {
+            xs_ = new double[ nrow ];
+            ys_ = new double[ nrow ];
+            zs_ = new double[ nrow ];
+            alphas_ = new double[ nrow ];
+            deltas_ = new double[ nrow ];
+            cosDeltas_ = new double[ nrow ];
+        }
+
+        /**
+         * Stores the position for a given row.
+         *
+         * @param  irow  row index
+         * @param  alpha  right ascension in radians
+         * @param  delta  declination in radians
+         */
+        void setPosition( int irow, double alpha, double delta ) {
+            double cosDelta = Math.cos( delta );
+            xs_[ irow ] = cosDelta * Math.cos( alpha );
+            ys_[ irow ] = cosDelta * Math.sin( alpha );
+            zs_[ irow ] = Math.sin( delta );
+            alphas_[ irow ] = alpha;
+            deltas_[ irow ] = delta;
+            cosDeltas_[ irow ] = cosDelta;
+        }
+
+        /**
+         * Sets the query position.
+         *
+         * @param  alpha  right ascension in radians
+         * @param  delta  declination in radians
+         */
+        void setQueryPosition( double alpha, double delta ) {
+            double cosDelta = Math.cos( delta );
+            qx_ = cosDelta * Math.cos( alpha );
+            qy_ = cosDelta * Math.sin( alpha );
+            qz_ = Math.sin( delta );
+            qAlpha_ = alpha;
+            qDelta_ = delta;
+            qCosDelta_ = cosDelta;
+        }
+
+        /**
+         * Returns the separation between the query position and
+         * a cached row if it may be within a given maximum.
+         * The result is exactly that of {@link #calculateSeparation},
+         * except that if the positions are certainly separated
+         * by more than <code>maxSep</code>, it may be NaN instead.
+         *
+         * @param  irow  row index
+         * @param  maxSep  maximum separation of interest in radians
+         * @return  separation of query and row positions in radians, or NaN
+         */
+        double getSeparation( int irow, double maxSep ) {
+
+            /* Cheap test on declination as used by the match engines. */
+            double delta = deltas_[ irow ];
+            if ( Math.abs( qDelta_ - delta ) > maxSep ) {
+                return Double.NaN;
+            }
+
+            /* The chord length is never larger than the arc length,
+             * so a long chord means no match. */
+            double dx = qx_ - xs_[ irow ];
+            double dy = qy_ - ys_[ irow ];
+            double dz = qz_ - zs_[ irow ];
+            double chordMax = maxSep + CHORD_TOL;
+            if ( dx * dx + dy * dy + dz * dz > chordMax * chordMax ) {
+                return Double.NaN;
+            }
+
+            /* Otherwise calculate the separation exactly. */
+            return haversineSeparation( qAlpha_, qDelta_, qCosDelta_,
+                                        alphas_[ irow ], delta,
+                                        cosDeltas_[ irow ] );
+        }
+    }
+
     /**
      * Implements the parameter which controls the angular scale.
      */
@@ -1,5 +1,6 @@
 package uk.ac.starlink.table.join;
 
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -27,11 +28,15 @@ class Binners {
 
     /**
      * Returns a new binnner which may not support optional operations.
+     * The returned binner is optimised for use with {@link RowRef} items
+     * binned under <code>Long</code> or <code>Integer</code> keys,
+     * as produced by pixel-based match engines,
+     * but can store any keys and items.
      *
      * @return   new binner
      */
     public static ObjectBinner createObjectBinner() {
-        return new CombinationObjectBinner();
+        return new RowRefObjectBinner();
     }
 
     /**
@@ -51,11 +56,342 @@ class Binners {
      * @return   new LongBinner
      */
     public static LongBinner createLongBinner( long nrow ) {
+        return new PrimitiveLongBinner( nrow );
+    }
+
+    /**
+     * Returns a new binner for storing long integer values which
+     * does not attempt any primitive key optimisation.
+     *
+     * @param  nrow  maximum value to be stored, or -1 if not known
+     * @return   new LongBinner
+     */
+    private static LongBinner createMapLongBinner( long nrow ) {
         return nrow >= 0 && nrow < Integer.MAX_VALUE
              ? (LongBinner) new CombinationIntLongBinner()
              : (LongBinner) new LongListLongBinner();
     }
 
+    /**
+     * Returns the class of a bin key if it is of a type that can be
+     * stored as a primitive long integer.
+     *
+     * @param  key  bin key
+     * @return  <code>Long.class</code>, <code>Integer.class</code> or null
+     */
+    private static Class getLongKeyClass( Object key ) {
+        if ( key instanceof Long ) {
+            return Long.class;
+        }
+        else if ( key instanceof Integer ) {
+            return Integer.class;
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Converts a primitive key value back to a boxed key.
+     *
+     * @param  keyClazz  key class, Long or Integer
+     * @param  lkey   primitive key value
+     * @return   boxed key
+     */
+    private static Object toKeyObject( Class keyClazz, long lkey ) {
+        return keyClazz == Integer.class ? (Object) new Integer( (int) lkey )
+                                         : (Object) new Long( lkey );
+    }
+
+    /**
+     * Adapts a LongKeyBinStore cursor to an Iterator over boxed keys.
+     *
+     * @param  cursor   key cursor
+     * @param  keyClazz  key class, Long or Integer
+     * @return  iterator with working remove method
+     */
+    private static Iterator createKeyIterator(
+            final LongKeyBinStore.KeyCursor cursor, final Class keyClazz ) {
+        return new Iterator() {
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+            public Object next() {
+                return toKeyObject( keyClazz, cursor.nextKey() );
+            }
+            public void remove() {
+                cursor.remove();
+            }
+        };
+    }
+
+    /**
+     * Non-modifiable ObjectBinner implementation which stores
+     * {@link RowRef} items binned under Long or Integer keys in a compact
+     * primitive {@link LongKeyBinStore}.  Each RowRef is packed into a
+     * single long, with the table index in the top bits.
+     * If a key or item which cannot be stored in this way is added,
+     * the existing contents are transferred to a general purpose
+     * fallback binner which is used from then on.
+     */
+    private static class RowRefObjectBinner implements ObjectBinner {
+        private LongKeyBinStore store_;
+        private ObjectBinner fallback_;
+        private Class keyClazz_;
+        private long nItem_;
+
+        private static final int ROW_BITS = 48;
+        private static final long ROW_MASK = ( 1L << ROW_BITS ) - 1;
+        private static final int MAX_TABLE = 1 << ( 63 - ROW_BITS );
+
+        RowRefObjectBinner() {
+            store_ = new LongKeyBinStore();
+        }
+
+        public void addItem( Object key, Object item ) {
+            if ( store_ != null ) {
+                if ( keyClazz_ == null ) {
+                    keyClazz_ = getLongKeyClass( key );
+                }
+                if ( keyClazz_ != null && keyClazz_.isInstance( key ) &&
+                     isPackable( item ) ) {
+                    store_.addItem( ((Number) key).longValue(),
+                                    pack( (RowRef) item ) );
+                    nItem_++;
+                    return;
+                }
+                else {
+                    useFallback();
+                }
+            }
+            fallback_.addItem( key, item );
+        }
+
+        public List getList( Object key ) {
+            if ( store_ != null ) {
+                if ( keyClazz_ != null && keyClazz_.isInstance( key ) ) {
+                    long[] items =
+                        store_.getItems( ((Number) key).longValue() );
+                    if ( items != null ) {
+                        return new PackedRefList( items );
+                    }
+                }
+                return null;
+            }
+            else {
+                return fallback_.getList( key );
+            }
+        }
+
+        public boolean containsKey( Object key ) {
+            if ( store_ != null ) {
+                return keyClazz_ != null && keyClazz_.isInstance( key )
+                    && store_.containsKey( ((Number) key).longValue() );
+            }
+            else {
+                return fallback_.containsKey( key );
+            }
+        }
+
+        public void remove( Object key ) {
+            if ( store_ != null ) {
+                if ( keyClazz_ != null && keyClazz_.isInstance( key ) ) {
+                    store_.remove( ((Number) key).longValue() );
+                }
+            }
+            else {
+                fallback_.remove( key );
+            }
+        }
+
+        public Iterator getKeyIterator() {
+            return store_ != null
+                 ? createKeyIterator( store_.createKeyCursor(), keyClazz_ )
+                 : fallback_.getKeyIterator();
+        }
+
+        public long getItemCount() {
+            return store_ != null ? nItem_ : fallback_.getItemCount();
+        }
+
+        public long getBinCount() {
+            return store_ != null ? store_.getBinCount()
+                                  : fallback_.getBinCount();
+        }
+
+        /**
+         * Transfers the current contents to a general purpose binner,
+         * which will be used for all subsequent operations.
+         */
+        private void useFallback() {
+            fallback_ = new CombinationObjectBinner();
+            for ( Iterator it = getKeyIterator(); it.hasNext(); ) {
+                Object key = it.next();
+                for ( Iterator lit = getList( key ).iterator();
+                      lit.hasNext(); ) {
+                    fallback_.addItem( key, lit.next() );
+                }
+            }
+            store_ = null;
+        }
+
+        /**
+         * Indicates whether an item can be packed into a long.
+         *
+         * @param  item  item
+         * @return  true iff <code>pack</code> can be used on item
+         */
+        private static boolean isPackable( Object item ) {
+            if ( item instanceof RowRef ) {
+                RowRef ref = (RowRef) item;
+                int itab = ref.getTableIndex();
+                long irow = ref.getRowIndex();
+                return itab >= 0 && itab < MAX_TABLE
+                    && irow >= 0 && irow <= ROW_MASK;
+            }
+            else {
+                return false;
+            }
+        }
+
+        /**
+         * Packs a RowRef into a long.
+         *
+         * @param  ref  packable row ref
+         * @return  packed value
+         */
+        private static long pack( RowRef ref ) {
+            return ( ((long) ref.getTableIndex()) << ROW_BITS )
+                 | ref.getRowIndex();
+        }
+
+        /**
+         * Unpacks a RowRef from a long.
+         *
+         * @param  packed  packed value
+         * @return  row ref
+         */
+        private static RowRef unpack( long packed ) {
+            return new RowRef( (int) ( packed >>> ROW_BITS ),
+                               packed & ROW_MASK );
+        }
+
+        /**
+         * Unmodifiable list view of packed RowRefs.
+         * RowRef objects are only created when elements are retrieved,
+         * so that callers which only look at the size of a bin,
+         * as is typical for the many single-item bins in a match,
+         * generate no garbage beyond the packed array.
+         */
+        private static class PackedRefList extends AbstractList {
+            private final long[] items_;
+            private RowRef[] refs_;
+
+            /**
+             * Constructor.
+             *
+             * @param  items  packed RowRefs
+             */
+            PackedRefList( long[] items ) {
+                items_ = items;
+            }
+
+            public int size() {
+                return items_.length;
+            }
+
+            public Object get( int i ) {
+                if ( refs_ == null ) {
+                    refs_ = new RowRef[ items_.length ];
+                }
+                RowRef ref = refs_[ i ];
+                if ( ref == null ) {
+                    ref = unpack( items_[ i ] );
+                    refs_[ i ] = ref;
+                }
+                return ref;
+            }
+        }
+    }
+
+    /**
+     * LongBinner implementation which stores items binned under
+     * Long or Integer keys in a compact primitive {@link LongKeyBinStore}.
+     * If a key of any other type is added, the existing contents are
+     * transferred to a general purpose map-based fallback binner
+     * which is used from then on.
+     */
+    private static class PrimitiveLongBinner implements LongBinner {
+        private final long nrow_;
+        private LongKeyBinStore store_;
+        private LongBinner fallback_;
+        private Class keyClazz_;
+
+        /**
+         * Constructor.
+         *
+         * @param  nrow  maximum value to be stored, or -1 if not known
+         */
+        PrimitiveLongBinner( long nrow ) {
+            nrow_ = nrow;
+            store_ = new LongKeyBinStore();
+        }
+
+        public void addItem( Object key, long item ) {
+            if ( store_ != null ) {
+                if ( keyClazz_ == null ) {
+                    keyClazz_ = getLongKeyClass( key );
+                }
+                if ( keyClazz_ != null && keyClazz_.isInstance( key ) ) {
+                    store_.addItem( ((Number) key).longValue(), item );
+                    return;
+                }
+                else {
+                    useFallback();
+                }
+            }
+            fallback_.addItem( key, item );
+        }
+
+        public long[] getLongs( Object key ) {
+            if ( store_ != null ) {
+                return keyClazz_ != null && keyClazz_.isInstance( key )
+                     ? store_.getItems( ((Number) key).longValue() )
+                     : null;
+            }
+            else {
+                return fallback_.getLongs( key );
+            }
+        }
+
+        public Iterator getKeyIterator() {
+            return store_ != null
+                 ? createKeyIterator( store_.createKeyCursor(), keyClazz_ )
+                 : fallback_.getKeyIterator();
+        }
+
+        public long getBinCount() {
+            return store_ != null ? store_.getBinCount()
+                                  : fallback_.getBinCount();
+        }
+
+        /**
+         * Transfers the current contents to a general purpose binner,
+         * which will be used for all subsequent operations.
+         */
+        private void useFallback() {
+            fallback_ = createMapLongBinner( nrow_ );
+            for ( Iterator it = getKeyIterator(); it.hasNext(); ) {
+                Object key = it.next();
+                long[] items = getLongs( key );
+                for ( int i = 0; i < items.length; i++ ) {
+                    fallback_.addItem( key, items[ i ] );
+                }
+            }
+            store_ = null;
+        }
+    }
+
     /**
      * Partial ObjectBinner implementation based on a HashMap.
      * Concrete subclasses must arrange for storing and retrieving 
@@ -194,6 +194,24 @@ public class EllipseSkyMatchEngine extends AbstractSkyMatchEngine {
         return "Sky Ellipses";
     }
 
+    @Override
+    TupleCache createTupleCache( final int nrow ) {
+        return new TupleCache() {
+            final SkyEllipse[] ellipses_ = new SkyEllipse[ nrow ];
+            SkyEllipse query_;
+            public void setTuple( int irow, Object[] tuple ) {
+                ellipses_[ irow ] = toSkyEllipse( tuple );
+            }
+            public void setQuery( Object[] tuple ) {
+                query_ = toSkyEllipse( tuple );
+            }
+            public double score( int irow ) {
+                Match match = getMatch( query_, ellipses_[ irow ], false );
+                return match == null ? -1 : match.score_;
+            }
+        };
+    }
+
     /**
      * Turns a tuple as accepted by this match engine into a SkyEllipse object
      * as used by the internal calculations.
@@ -148,6 +148,32 @@ public class ErrorSkyMatchEngine extends AbstractSkyMatchEngine {
         return "Sky with Errors";
     }
 
+    @Override
+    TupleCache createTupleCache( final int nrow ) {
+        return new SkyTupleCache( nrow ) {
+            final double[] errs_ = new double[ nrow ];
+            double qErr_;
+            public void setTuple( int irow, Object[] tuple ) {
+                setPosition( irow, getAlpha( tuple ), getDelta( tuple ) );
+                errs_[ irow ] = getError( tuple );
+            }
+            public void setQuery( Object[] tuple ) {
+                setQueryPosition( getAlpha( tuple ), getDelta( tuple ) );
+                qErr_ = getError( tuple );
+            }
+            public double score( int irow ) {
+                double maxerr = qErr_ + errs_[ irow ];
+                double sep = getSeparation( irow, maxerr );
+                if ( sep <= maxerr ) {
+                    return maxerr > 0 ? sep / maxerr : 0.0;
+                }
+                else {
+                    return -1.0;
+                }
+            }
+        };
+    }
+
     /**
      * Extracts the RA value from a tuple.
      *
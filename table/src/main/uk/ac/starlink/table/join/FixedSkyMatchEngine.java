@@ -108,6 +108,23 @@ public class FixedSkyMatchEngine extends AbstractSkyMatchEngine {
         return "Sky";
     }
 
+    @Override
+    TupleCache createTupleCache( int nrow ) {
+        final double maxerr = getSeparation();
+        return new SkyTupleCache( nrow ) {
+            public void setTuple( int irow, Object[] tuple ) {
+                setPosition( irow, getAlpha( tuple ), getDelta( tuple ) );
+            }
+            public void setQuery( Object[] tuple ) {
+                setQueryPosition( getAlpha( tuple ), getDelta( tuple ) );
+            }
+            public double score( int irow ) {
+                double sep = getSeparation( irow, maxerr );
+                return sep <= maxerr ? sep * INVERSE_ARC_SECOND : -1.0;
+            }
+        };
+    }
+
     /**
      * Extracts the RA value from a tuple.
      *
@@ -0,0 +1,582 @@
+package uk.ac.starlink.table.join;
+
+import gov.fnal.eag.healpix.PixTools;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.vecmath.Vector3d;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+
+/**
+ * Locates matched pairs between two tables which are both sorted by
+ * HEALPix NESTED pixel index, using a single sequential pass through
+ * each table.
+ *
+ * <p>Both tables are read concurrently, a sky pixel at a time,
+ * at a HEALPix order (the sweep order) no finer than the one at which
+ * the tables are sorted.
+ * Rows within the current sweep pixel are matched against each other
+ * using an in-memory binning of that pixel only.
+ * Rows close enough to the edge of their sweep pixel to match rows in
+ * a neighbouring one are retained, but only until all the neighbouring
+ * pixels they could match have been read.
+ * Memory use is therefore determined by the number of rows in a sweep
+ * pixel and the number of rows near pixel edges, rather than by the
+ * size of the tables.
+ * Neither table needs to provide random access.
+ *
+ * <p>The candidate pairs and scores are determined by the match engine
+ * in the same way as for {@link RowMatcher}'s normal binning algorithm,
+ * so the pairs found are the same.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class HealpixMergeScanner {
+
+    private final FixedSkyMatchEngine engine_;
+    private final StarTable[] tables_;
+    private final int indexA_;
+    private final int indexB_;
+    private final int order_;
+    private final long nside_;
+    private final double radius_;
+    private final ProgressIndicator indicator_;
+    private final PixTools pixTools_;
+
+    /**
+     * Angular tolerance in radians within which rows may appear
+     * out of sweep pixel order, to accommodate rounding differences
+     * in the calculation of pixel indices used for sorting.
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    /** Number of rows read between progress level updates. */
+    private static final int PROGRESS_BLOCK = 4096;
+
+    /**
+     * Constructor.
+     *
+     * @param  engine  match engine
+     * @param  tables  tables containing match tuples
+     * @param  indexA  index into <code>tables</code> of first table to match
+     * @param  indexB  index into <code>tables</code> of second table to match
+     * @param  sortOrder  HEALPix order at which both tables are sorted
+     *                    by NESTED pixel index
+     * @param  indicator  progress indicator
+     */
+    HealpixMergeScanner( FixedSkyMatchEngine engine, StarTable[] tables,
+                         int indexA, int indexB, int sortOrder,
+                         ProgressIndicator indicator ) {
+        engine_ = engine;
+        tables_ = tables;
+        indexA_ = indexA;
+        indexB_ = indexB;
+        radius_ = engine.getSeparation() + TOLERANCE;
+        order_ = Math.min( sortOrder, getDefaultOrder( radius_ ) );
+        nside_ = 1L << order_;
+        indicator_ = indicator;
+        pixTools_ = PixTools.getInstance();
+    }
+
+    /**
+     * Returns the HEALPix order used for the sweep.
+     *
+     * @return  sweep order
+     */
+    public int getSweepOrder() {
+        return order_;
+    }
+
+    /**
+     * Performs the scan, adding matched pairs to a given link set.
+     * One of the tables is designated the scan table; its tuples
+     * are given first when invoking the match engine's scoring method.
+     * If <code>bestOnly</code> is set, then for each row of the scan table
+     * only the best match (the one with the lowest score) is added;
+     * ties are resolved in favour of the lowest row index in the other table.
+     * Otherwise, all matched pairs are added.
+     *
+     * @param  indexS  index of the scan table; must be one of the
+     *                 two matched table indices
+     * @param  bestOnly  true to add only the best match for each
+     *                   scan table row, false for all pairs
+     * @param  linkSet   link set to receive pair links
+     */
+    public void scan( int indexS, boolean bestOnly, LinkSet linkSet )
+            throws IOException, InterruptedException {
+        boolean scanA = indexS == indexA_;
+        SweepReader rdrA = new SweepReader( indexA_ );
+        SweepReader rdrB = new SweepReader( indexB_ );
+        Map blocks = new HashMap();
+        TreeMap blockExpiry = new TreeMap();
+        TreeMap bestExpiry = new TreeMap();
+        Collector collector =
+            new Collector( scanA, bestOnly, linkSet, bestExpiry );
+        long nrowA = tables_[ indexA_ ].getRowCount();
+        long nrowB = tables_[ indexB_ ].getRowCount();
+        long nrow = nrowA >= 0 && nrowB >= 0 ? nrowA + nrowB : -1;
+        long nEdge = 0;
+        long maxEdge = 0;
+        long nextProgress = PROGRESS_BLOCK;
+        indicator_.startStage( "Merging rows for tables " + ( indexA_ + 1 )
+                             + " and " + ( indexB_ + 1 )
+                             + " (HEALPix order " + order_ + ")" );
+        try {
+            while ( rdrA.peek() != null || rdrB.peek() != null ) {
+                long group = rdrA.peek() == null
+                           ? rdrB.peek().group_
+                           : rdrB.peek() == null
+                           ? rdrA.peek().group_
+                           : Math.min( rdrA.peek().group_,
+                                       rdrB.peek().group_ );
+
+                /* Discard retained edge rows that can no longer match,
+                 * and output best links that can no longer be bettered. */
+                while ( ! blockExpiry.isEmpty() &&
+                        ((Long) blockExpiry.firstKey()).longValue()
+                        < group ) {
+                    List expired =
+                        (List) blockExpiry.remove( blockExpiry.firstKey() );
+                    for ( Iterator it = expired.iterator(); it.hasNext(); ) {
+                        EdgeBlock block =
+                            (EdgeBlock) blocks.remove( it.next() );
+                        nEdge -= block.nrow_;
+                    }
+                }
+                while ( ! bestExpiry.isEmpty() &&
+                        ((Long) bestExpiry.firstKey()).longValue()
+                        < group ) {
+                    List expired =
+                        (List) bestExpiry.remove( bestExpiry.firstKey() );
+                    for ( Iterator it = expired.iterator(); it.hasNext(); ) {
+                        Entry entry = (Entry) it.next();
+                        linkSet.addLink( entry.bestLink_ );
+                        entry.bestLink_ = null;
+                    }
+                }
+
+                /* Read all the rows from both tables in the current
+                 * sweep pixel. */
+                List entsA = rdrA.readGroup( group );
+                List entsB = rdrB.readGroup( group );
+
+                /* Match rows within the current pixel. */
+                if ( entsA.size() > 0 && entsB.size() > 0 ) {
+                    Map binsB = new HashMap();
+                    for ( Iterator it = entsB.iterator(); it.hasNext(); ) {
+                        addEntry( binsB, (Entry) it.next() );
+                    }
+                    for ( Iterator it = entsA.iterator(); it.hasNext(); ) {
+                        Entry entA = (Entry) it.next();
+                        Set candsB = new HashSet();
+                        addCandidates( candsB, entA, binsB );
+                        for ( Iterator ib = candsB.iterator();
+                              ib.hasNext(); ) {
+                            collector.matchPair( entA, (Entry) ib.next() );
+                        }
+                    }
+                }
+
+                /* Match rows in the current pixel against retained
+                 * edge rows of earlier pixels. */
+                for ( Iterator it = entsA.iterator(); it.hasNext(); ) {
+                    Entry entA = (Entry) it.next();
+                    Set candsB = new HashSet();
+                    for ( int ip = 0; ip < entA.pixels_.length; ip++ ) {
+                        EdgeBlock block = (EdgeBlock)
+                            blocks.get( new Long( entA.pixels_[ ip ] ) );
+                        if ( block != null ) {
+                            addCandidates( candsB, entA, block.binsB_ );
+                        }
+                    }
+                    for ( Iterator ib = candsB.iterator(); ib.hasNext(); ) {
+                        collector.matchPair( entA, (Entry) ib.next() );
+                    }
+                }
+                for ( Iterator it = entsB.iterator(); it.hasNext(); ) {
+                    Entry entB = (Entry) it.next();
+                    Set candsA = new HashSet();
+                    for ( int ip = 0; ip < entB.pixels_.length; ip++ ) {
+                        EdgeBlock block = (EdgeBlock)
+                            blocks.get( new Long( entB.pixels_[ ip ] ) );
+                        if ( block != null ) {
+                            addCandidates( candsA, entB, block.binsA_ );
+                        }
+                    }
+                    for ( Iterator ia = candsA.iterator(); ia.hasNext(); ) {
+                        collector.matchPair( (Entry) ia.next(), entB );
+                    }
+                }
+
+                /* Retain rows which may match rows in pixels yet to come. */
+                EdgeBlock block = new EdgeBlock( group, entsA, entsB );
+                if ( block.nrow_ > 0 ) {
+                    Long key = new Long( group );
+                    blocks.put( key, block );
+                    Long expiry = new Long( block.maxPixel_ );
+                    List expList = (List) blockExpiry.get( expiry );
+                    if ( expList == null ) {
+                        expList = new ArrayList();
+                        blockExpiry.put( expiry, expList );
+                    }
+                    expList.add( key );
+                    nEdge += block.nrow_;
+                    maxEdge = Math.max( maxEdge, nEdge );
+                }
+
+                /* Report progress. */
+                long nread = rdrA.nread_ + rdrB.nread_;
+                if ( nread >= nextProgress ) {
+                    if ( nrow > 0 ) {
+                        indicator_.setLevel( Math.min( 1.0, nread
+                                                          / (double) nrow ) );
+                    }
+                    nextProgress = nread + PROGRESS_BLOCK;
+                }
+            }
+
+            /* Output any remaining best links. */
+            for ( Iterator it = bestExpiry.values().iterator();
+                  it.hasNext(); ) {
+                for ( Iterator ie = ((List) it.next()).iterator();
+                      ie.hasNext(); ) {
+                    linkSet.addLink( ((Entry) ie.next()).bestLink_ );
+                }
+            }
+        }
+        finally {
+            rdrA.close();
+            rdrB.close();
+        }
+        indicator_.endStage();
+        indicator_.logMessage( "Maximum " + maxEdge + " edge rows retained "
+                             + "for " + ( rdrA.nread_ + rdrB.nread_ )
+                             + " rows" );
+    }
+
+    /**
+     * Adds an entry to a map from engine bins to entry lists.
+     *
+     * @param  binMap  bin map
+     * @param  entry   entry to add
+     */
+    private static void addEntry( Map binMap, Entry entry ) {
+        Object[] bins = entry.bins_;
+        for ( int ib = 0; ib < bins.length; ib++ ) {
+            Object bin = bins[ ib ];
+            List list = (List) binMap.get( bin );
+            if ( list == null ) {
+                list = new ArrayList( 2 );
+                binMap.put( bin, list );
+            }
+            list.add( entry );
+        }
+    }
+
+    /**
+     * Adds to a set all the entries in a bin map which share a bin
+     * with a given entry.
+     *
+     * @param  cands  set to which candidate entries are added
+     * @param  entry  entry to match
+     * @param  binMap  bin map
+     */
+    private static void addCandidates( Set cands, Entry entry, Map binMap ) {
+        if ( binMap != null ) {
+            Object[] bins = entry.bins_;
+            for ( int ib = 0; ib < bins.length; ib++ ) {
+                List list = (List) binMap.get( bins[ ib ] );
+                if ( list != null ) {
+                    cands.addAll( list );
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the largest HEALPix order whose pixels are comfortably
+     * larger than a given radius.
+     *
+     * @param  radius  match radius in radians
+     * @return  HEALPix order
+     */
+    private static int getDefaultOrder( double radius ) {
+        return new PixtoolsHealpixSkyPixellator( true )
+              .calculateDefaultK( radius );
+    }
+
+    /**
+     * Accepts candidate pairs, and passes matched ones on to the
+     * output link set.
+     */
+    private class Collector {
+        private final boolean scanA_;
+        private final boolean bestOnly_;
+        private final LinkSet linkSet_;
+        private final TreeMap bestExpiry_;
+
+        /**
+         * Constructor.
+         *
+         * @param  scanA  true if table A is the scan table,
+         *                false if table B is
+         * @param  bestOnly  true to retain only the best link for
+         *                   each scan table row
+         * @param  linkSet  destination link set
+         * @param  bestExpiry  map from pixel index to list of entries
+         *                     whose best link is final once that pixel
+         *                     has been processed
+         */
+        Collector( boolean scanA, boolean bestOnly, LinkSet linkSet,
+                   TreeMap bestExpiry ) {
+            scanA_ = scanA;
+            bestOnly_ = bestOnly;
+            linkSet_ = linkSet;
+            bestExpiry_ = bestExpiry;
+        }
+
+        /**
+         * Scores a candidate pair and records it if it matches.
+         *
+         * @param  entA  entry from table A
+         * @param  entB  entry from table B
+         */
+        void matchPair( Entry entA, Entry entB ) {
+            Entry entS = scanA_ ? entA : entB;
+            Entry entR = scanA_ ? entB : entA;
+            double score = engine_.matchScore( entS.tuple_, entR.tuple_ );
+            if ( score >= 0 ) {
+                RowLink2 link =
+                    new RowLink2( new RowRef( indexA_, entA.irow_ ),
+                                  new RowRef( indexB_, entB.irow_ ) );
+                link.setScore( score );
+                if ( bestOnly_ ) {
+                    submitBest( entS, entR.irow_, link );
+                }
+                else {
+                    linkSet_.addLink( link );
+                }
+            }
+        }
+
+        /**
+         * Records a link as the best one for an entry if it is better
+         * than any so far.
+         *
+         * @param  entry  entry whose best link is required
+         * @param  otherRow  row index of the other row in the link
+         * @param  link   matched link
+         */
+        private void submitBest( Entry entry, long otherRow, RowLink2 link ) {
+            RowLink2 best = entry.bestLink_;
+            if ( best == null ) {
+                entry.bestLink_ = link;
+                entry.bestRow_ = otherRow;
+                Long expiry = new Long( entry.maxPixel_ );
+                List expList = (List) bestExpiry_.get( expiry );
+                if ( expList == null ) {
+                    expList = new ArrayList();
+                    bestExpiry_.put( expiry, expList );
+                }
+                expList.add( entry );
+            }
+            else if ( link.getScore() < best.getScore() ||
+                      ( link.getScore() == best.getScore() &&
+                        otherRow < entry.bestRow_ ) ) {
+                entry.bestLink_ = link;
+                entry.bestRow_ = otherRow;
+            }
+        }
+    }
+
+    /**
+     * Reads rows from one table in sweep pixel order.
+     */
+    private class SweepReader {
+        private final int tIndex_;
+        private final RowSequence rseq_;
+        private long irow_;
+        private long nread_;
+        private long group_;
+        private Entry next_;
+
+        /**
+         * Constructor.
+         *
+         * @param  tIndex  table index
+         */
+        SweepReader( int tIndex ) throws IOException {
+            tIndex_ = tIndex;
+            rseq_ = tables_[ tIndex ].getRowSequence();
+            group_ = -1;
+            next_ = readEntry();
+        }
+
+        /**
+         * Returns the next entry without consuming it.
+         *
+         * @return  next entry, or null at end of table
+         */
+        Entry peek() {
+            return next_;
+        }
+
+        /**
+         * Reads all the entries in a given sweep pixel.
+         * The next entry must not be in an earlier pixel.
+         *
+         * @param  group  sweep pixel index
+         * @return  list of entries
+         */
+        List readGroup( long group ) throws IOException {
+            List list = new ArrayList();
+            while ( next_ != null && next_.group_ == group ) {
+                list.add( next_ );
+                next_ = readEntry();
+            }
+            return list;
+        }
+
+        /**
+         * Reads the next entry with a usable sky position.
+         *
+         * @return  next entry, or null at end of table
+         */
+        private Entry readEntry() throws IOException {
+            while ( rseq_.next() ) {
+                long irow = irow_++;
+                nread_++;
+                Object[] tuple = rseq_.getRow();
+                Object[] bins = engine_.getBins( tuple );
+                if ( bins.length > 0 ) {
+                    double alpha =
+                        AbstractSkyMatchEngine.getNumberValue( tuple[ 0 ] );
+                    double delta =
+                        AbstractSkyMatchEngine.getNumberValue( tuple[ 1 ] );
+                    Vector3d vec =
+                        pixTools_.Ang2Vec( Math.PI * 0.5 - delta, alpha );
+                    long pixel = pixTools_.vect2pix_nest( nside_, vec );
+                    if ( pixel < group_ ) {
+                        if ( ! pixTools_.query_disc( nside_, vec, TOLERANCE,
+                                                     1, 1 )
+                                        .contains( new Long( group_ ) ) ) {
+                            throw new IOException( "Table " + ( tIndex_ + 1 )
+                                                 + " not sorted by HEALPix "
+                                                 + "index at order " + order_
+                                                 + " (row " + ( irow + 1 )
+                                                 + ")" );
+                        }
+                    }
+                    else {
+                        group_ = pixel;
+                    }
+                    List pixList =
+                        pixTools_.query_disc( nside_, vec, radius_, 1, 1 );
+                    int npix = pixList.size();
+                    long[] pixels = new long[ npix + 1 ];
+                    for ( int ip = 0; ip < npix; ip++ ) {
+                        pixels[ ip ] = ((Number) pixList.get( ip ))
+                                      .longValue();
+                    }
+                    pixels[ npix ] = group_;
+                    Arrays.sort( pixels );
+                    return new Entry( irow, tuple, bins, group_, pixels );
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Releases resources.
+         */
+        void close() throws IOException {
+            rseq_.close();
+        }
+    }
+
+    /**
+     * Stores information about a table row.
+     */
+    private static class Entry {
+        final long irow_;
+        final Object[] tuple_;
+        final Object[] bins_;
+        final long group_;
+        final long[] pixels_;
+        final long maxPixel_;
+        RowLink2 bestLink_;
+        long bestRow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  irow  row index
+         * @param  tuple  match tuple
+         * @param  bins   match engine bins
+         * @param  group  sweep pixel in which this row is processed
+         * @param  pixels  sorted array of sweep pixels containing
+         *                 any possible match for this row,
+         *                 including <code>group</code>
+         */
+        Entry( long irow, Object[] tuple, Object[] bins, long group,
+               long[] pixels ) {
+            irow_ = irow;
+            tuple_ = tuple;
+            bins_ = bins;
+            group_ = group;
+            pixels_ = pixels;
+            maxPixel_ = pixels[ pixels.length - 1 ];
+        }
+    }
+
+    /**
+     * Holds the edge rows from one sweep pixel; these are the ones
+     * that may match rows in sweep pixels not yet read.
+     */
+    private static class EdgeBlock {
+        final Map binsA_;
+        final Map binsB_;
+        final long maxPixel_;
+        final int nrow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  group  sweep pixel index
+         * @param  entsA  entries from table A in sweep pixel
+         * @param  entsB  entries from table B in sweep pixel
+         */
+        EdgeBlock( long group, List entsA, List entsB ) {
+            long maxPixel = group;
+            int nrow = 0;
+            Map[] binMaps = new Map[ 2 ];
+            List[] entLists = new List[] { entsA, entsB };
+            for ( int i = 0; i < 2; i++ ) {
+                for ( Iterator it = entLists[ i ].iterator(); it.hasNext(); ) {
+                    Entry entry = (Entry) it.next();
+                    if ( entry.maxPixel_ > group ) {
+                        if ( binMaps[ i ] == null ) {
+                            binMaps[ i ] = new HashMap();
+                        }
+                        addEntry( binMaps[ i ], entry );
+                        maxPixel = Math.max( maxPixel, entry.maxPixel_ );
+                        nrow++;
+                    }
+                }
+            }
+            binsA_ = binMaps[ 0 ];
+            binsB_ = binMaps[ 1 ];
+            maxPixel_ = maxPixel;
+            nrow_ = nrow;
+        }
+    }
+}
@@ -14,14 +14,19 @@ import uk.ac.starlink.table.ValueInfo;
  *     neighbours than triangular HTM ones of a similar size</li>
  * </ol>
  *
+ * <p>Configuration is held in volatile fields, so that a pixellator
+ * configured in one thread may be used for {@link #getPixels getPixels}
+ * calls from other threads.  Implementations should keep any
+ * per-call working state local to the call.
+ *
  * @author   Mark Taylor (Starlink)
  */
 public abstract class HealpixSkyPixellator implements SkyPixellator {
 
     private final DescribedValue healpixKParam_;
     private final int maxK_;
-    private double scale_;
-    private int healpixK_;
+    private volatile double scale_;
+    private volatile int healpixK_;
 
     /**
      * Constructor.
@@ -21,6 +21,9 @@ import uk.ac.starlink.table.ValueInfo;
  * much faster matching than this and should generally be used in
  * preference.
  *
+ * <p>The {@link #getPixels} method may be called concurrently from
+ * multiple threads; each thread uses its own HTM index object.
+ *
  * @author   Mark Taylor (Starlink)
  * @see      <a href="http://www.skyserver.org/htm/doc/java/index.html"
  *                   >http://www.skyserver.org/htm/doc/java/index.html</a>
@@ -28,9 +31,10 @@ import uk.ac.starlink.table.ValueInfo;
 public class HtmSkyPixellator implements SkyPixellator {
 
     private final DescribedValue levelParam_;
-    private double scale_;
-    private int level_;
-    private HTMindexImp htm_;
+    private final ThreadLocal<HTMindexImp> htmLocal_;
+    private volatile double scale_;
+    private volatile int level_;
+    private volatile int htmLevel_;
 
     /**
      * Scale factor which determines the sky pixel size to use,
@@ -54,7 +58,9 @@ public class HtmSkyPixellator implements SkyPixellator {
      */
     public HtmSkyPixellator() {
         levelParam_ = new LevelParameter();
+        htmLocal_ = new ThreadLocal<HTMindexImp>();
         level_ = -1;
+        htmLevel_ = -1;
     }
 
     public void setScale( double scale ) {
@@ -81,10 +87,11 @@ public class HtmSkyPixellator implements SkyPixellator {
          * pixels at different HTM levels (i.e. of different sizes).
          * By doing it as below (on advice from Wil O'Mullane) we
          * ensure that all the pixels are at the HTM's natural level. */
+        HTMindexImp htm = getIndex();
         Domain domain = zone.getDomain();
-        domain.setOlevel( htm_.maxlevel_ );
+        domain.setOlevel( htm.maxlevel_ );
         HTMrange range = new HTMrange();
-        domain.intersect( htm_, range, false );
+        domain.intersect( htm, range, false );
 
         /* Accumulate a list of the pixel IDs. */
         List binList = new ArrayList();
@@ -139,8 +146,23 @@ public class HtmSkyPixellator implements SkyPixellator {
      * Updates internal state for the current values of scale and level.
      */
     private void configureLevel() {
-        int level = getLevel();
-        htm_ = new HTMindexImp( level, Math.min( level, 2 ) );
+        htmLevel_ = getLevel();
+    }
+
+    /**
+     * Returns an HTM index object for the current level,
+     * private to the calling thread.
+     *
+     * @return  HTM index
+     */
+    private HTMindexImp getIndex() {
+        int level = htmLevel_;
+        HTMindexImp htm = htmLocal_.get();
+        if ( htm == null || htm.maxlevel_ != level ) {
+            htm = new HTMindexImp( level, Math.min( level, 2 ) );
+            htmLocal_.set( htm );
+        }
+        return htm;
     }
 
     /**
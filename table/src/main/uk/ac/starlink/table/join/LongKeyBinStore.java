@@ -0,0 +1,363 @@
+package uk.ac.starlink.table.join;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact map from <code>long</code> keys to lists of <code>long</code>
+ * items, stored entirely in primitive arrays.
+ *
+ * <p>Keys are held in an open-addressing hash table, and each occupied
+ * slot points to the most recently added item of its bin.
+ * Items are stored in paged arrays along with the index of the
+ * previously added item in the same bin, so that each bin is a
+ * singly-linked list threaded through the item arrays.
+ * This costs around 16 bytes per item and 24 bytes per bin,
+ * with no per-entry objects, compared to several tens of bytes per
+ * item for a HashMap-based implementation holding boxed keys and
+ * list objects.
+ * Item indices are longs, so the number of items is not limited
+ * by array sizes.
+ *
+ * <p>Bins may be removed, but the storage used by their items is only
+ * reclaimed when the store becomes empty.
+ *
+ * <p>Not thread-safe.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+final class LongKeyBinStore {
+
+    private long[] keys_;
+    private long[] heads_;
+    private int mask_;
+    private int nSlotUsed_;
+    private int nBin_;
+    private long[][] itemPages_;
+    private long[][] prevPages_;
+    private long nItem_;
+
+    /** Value of heads_ element for a slot which has never been used. */
+    private static final long EMPTY = -1;
+
+    /** Value of heads_ element for a slot whose bin has been removed. */
+    private static final long REMOVED = -2;
+
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+
+    /**
+     * Constructor.
+     */
+    public LongKeyBinStore() {
+        reset();
+    }
+
+    /**
+     * Adds an item to the bin with a given key.
+     *
+     * @param  key  bin key
+     * @param  item  item value
+     */
+    public void addItem( long key, long item ) {
+        int islot = findSlot( key );
+        if ( heads_[ islot ] < 0 ) {
+            if ( heads_[ islot ] == EMPTY ) {
+                nSlotUsed_++;
+            }
+            keys_[ islot ] = key;
+            heads_[ islot ] = storeItem( item, EMPTY );
+            nBin_++;
+            if ( nSlotUsed_ > ( mask_ + 1 ) * MAX_LOAD ) {
+                rehash( nBin_ > ( mask_ + 1 ) * MAX_LOAD / 2
+                        ? ( mask_ + 1 ) * 2
+                        : mask_ + 1 );
+            }
+        }
+        else {
+            heads_[ islot ] = storeItem( item, heads_[ islot ] );
+        }
+    }
+
+    /**
+     * Indicates whether a bin with a given key is present.
+     *
+     * @param  key  bin key
+     * @return  true iff at least one item has been added to the bin
+     *          and it has not been removed
+     */
+    public boolean containsKey( long key ) {
+        return heads_[ findSlot( key ) ] >= 0;
+    }
+
+    /**
+     * Returns the items in a given bin in order of addition.
+     *
+     * @param  key  bin key
+     * @return  array of items, or null if the bin is empty
+     */
+    public long[] getItems( long key ) {
+        int islot = findSlot( key );
+        return heads_[ islot ] >= 0 ? getSlotItems( islot ) : null;
+    }
+
+    /**
+     * Removes a bin.
+     *
+     * @param  key  bin key
+     */
+    public void remove( long key ) {
+        int islot = findSlot( key );
+        if ( heads_[ islot ] >= 0 ) {
+            removeSlot( islot );
+        }
+    }
+
+    /**
+     * Returns the number of non-empty bins.
+     *
+     * @return  bin count
+     */
+    public int getBinCount() {
+        return nBin_;
+    }
+
+    /**
+     * Returns a cursor over the keys of the non-empty bins.
+     * The store must not be modified except by use of the cursor's
+     * own <code>remove</code> method while the cursor is in use.
+     *
+     * @return  new key cursor
+     */
+    public KeyCursor createKeyCursor() {
+        return new KeyCursor();
+    }
+
+    /**
+     * Returns the slot index at which a given key is, or should be, stored.
+     *
+     * @param  key  bin key
+     * @return  slot index
+     */
+    private int findSlot( long key ) {
+        int islot = hash( key ) & mask_;
+        int iRemoved = -1;
+        while ( true ) {
+            long head = heads_[ islot ];
+            if ( head == EMPTY ) {
+                return iRemoved >= 0 ? iRemoved : islot;
+            }
+            else if ( head == REMOVED ) {
+                if ( iRemoved < 0 ) {
+                    iRemoved = islot;
+                }
+            }
+            else if ( keys_[ islot ] == key ) {
+                return islot;
+            }
+            islot = ( islot + 1 ) & mask_;
+        }
+    }
+
+    /**
+     * Stores a new item in the item arrays.
+     *
+     * @param  item  item value
+     * @param  prev  index of previous item in the same bin, or EMPTY
+     * @return   index of new item
+     */
+    private long storeItem( long item, long prev ) {
+        long index = nItem_;
+        int ipage = (int) ( index >>> PAGE_SHIFT );
+        if ( ipage == itemPages_.length ) {
+            int npage = ipage * 2;
+            long[][] itemPages = new long[ npage ][];
+            long[][] prevPages = new long[ npage ][];
+            System.arraycopy( itemPages_, 0, itemPages, 0, ipage );
+            System.arraycopy( prevPages_, 0, prevPages, 0, ipage );
+            itemPages_ = itemPages;
+            prevPages_ = prevPages;
+        }
+        if ( itemPages_[ ipage ] == null ) {
+            itemPages_[ ipage ] = new long[ PAGE_SIZE ];
+            prevPages_[ ipage ] = new long[ PAGE_SIZE ];
+        }
+        int ioff = (int) ( index & PAGE_MASK );
+        itemPages_[ ipage ][ ioff ] = item;
+        prevPages_[ ipage ][ ioff ] = prev;
+        nItem_++;
+        return index;
+    }
+
+    /**
+     * Returns the items stored in a given occupied slot.
+     *
+     * @param  islot  slot index
+     * @return  items in order of addition
+     */
+    private long[] getSlotItems( int islot ) {
+        int n = 0;
+        for ( long i = heads_[ islot ]; i >= 0; i = getPrev( i ) ) {
+            n++;
+        }
+        long[] items = new long[ n ];
+        for ( long i = heads_[ islot ]; i >= 0; i = getPrev( i ) ) {
+            items[ --n ] = itemPages_[ (int) ( i >>> PAGE_SHIFT ) ]
+                                     [ (int) ( i & PAGE_MASK ) ];
+        }
+        return items;
+    }
+
+    /**
+     * Returns the index of the item added before a given one
+     * in the same bin.
+     *
+     * @param  index  item index
+     * @return  previous item index, or a negative value if none
+     */
+    private long getPrev( long index ) {
+        return prevPages_[ (int) ( index >>> PAGE_SHIFT ) ]
+                         [ (int) ( index & PAGE_MASK ) ];
+    }
+
+    /**
+     * Removes the bin at a given occupied slot.
+     *
+     * @param  islot  slot index
+     */
+    private void removeSlot( int islot ) {
+        heads_[ islot ] = REMOVED;
+        if ( --nBin_ == 0 ) {
+            reset();
+        }
+    }
+
+    /**
+     * Resizes the hash table, discarding any removed slots.
+     *
+     * @param  capacity  new slot count, a power of two
+     */
+    private void rehash( int capacity ) {
+        long[] oldKeys = keys_;
+        long[] oldHeads = heads_;
+        keys_ = new long[ capacity ];
+        heads_ = new long[ capacity ];
+        Arrays.fill( heads_, EMPTY );
+        mask_ = capacity - 1;
+        nSlotUsed_ = 0;
+        for ( int i = 0; i < oldHeads.length; i++ ) {
+            if ( oldHeads[ i ] >= 0 ) {
+                int islot = findSlot( oldKeys[ i ] );
+                keys_[ islot ] = oldKeys[ i ];
+                heads_[ islot ] = oldHeads[ i ];
+                nSlotUsed_++;
+            }
+        }
+    }
+
+    /**
+     * Discards all content and releases storage.
+     */
+    private void reset() {
+        keys_ = new long[ INITIAL_CAPACITY ];
+        heads_ = new long[ INITIAL_CAPACITY ];
+        Arrays.fill( heads_, EMPTY );
+        mask_ = INITIAL_CAPACITY - 1;
+        nSlotUsed_ = 0;
+        nBin_ = 0;
+        itemPages_ = new long[ 1 ][];
+        prevPages_ = new long[ 1 ][];
+        nItem_ = 0;
+    }
+
+    /**
+     * Scrambles the bits of a long key to give a well-distributed hash.
+     * Keys such as pixel indices tend to be clustered, so some mixing
+     * is required to avoid long collision chains.
+     *
+     * @param  key  key
+     * @return  hash value
+     */
+    private static int hash( long key ) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Iterates over the keys of non-empty bins.
+     */
+    class KeyCursor {
+        private final long[] cKeys_;
+        private final long[] cHeads_;
+        private int islot_;
+        private int inext_;
+
+        /**
+         * Constructor.
+         */
+        KeyCursor() {
+            cKeys_ = keys_;
+            cHeads_ = heads_;
+            islot_ = -1;
+            inext_ = advance( 0 );
+        }
+
+        /**
+         * Indicates whether there are more keys.
+         *
+         * @return  true iff {@link #nextKey} may be called
+         */
+        public boolean hasNext() {
+            return inext_ < cHeads_.length;
+        }
+
+        /**
+         * Returns the next key.
+         *
+         * @return  key
+         */
+        public long nextKey() {
+            if ( ! hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            islot_ = inext_;
+            inext_ = advance( inext_ + 1 );
+            return cKeys_[ islot_ ];
+        }
+
+        /**
+         * Removes the bin whose key was most recently returned by
+         * {@link #nextKey}.
+         */
+        public void remove() {
+            if ( islot_ < 0 || cHeads_[ islot_ ] < 0 ) {
+                throw new IllegalStateException();
+            }
+            removeSlot( islot_ );
+        }
+
+        /**
+         * Returns the index of the first occupied slot at or after a
+         * given index.
+         *
+         * @param  islot  start slot
+         * @return  index of next occupied slot, or slot count if none
+         */
+        private int advance( int islot ) {
+            int n = cHeads_.length;
+            while ( islot < n && cHeads_[ islot ] < 0 ) {
+                islot++;
+            }
+            return islot;
+        }
+    }
+}
@@ -45,6 +45,11 @@ import uk.ac.starlink.table.ValueInfo;
  * These two efficiency requirements are usually conflicting to some extent.
  * <p>
  * It may help to think of all this as a sort of fuzzy hash.
+ * <p>
+ * The {@link #getBins} and {@link #matchScore} methods may be called
+ * concurrently from multiple threads (see
+ * {@link RowMatcher#setParallelism}), so implementations should be
+ * thread-safe, at least once their configuration has been set up.
  * 
  * @author   Mark Taylor (Starlink)
  */
@@ -20,8 +20,7 @@ public class PixtoolsHealpixSkyPixellator extends HealpixSkyPixellator {
 
     private final PixTools pixTools_;
     private final int scheme_;
-    private int healpixK_;
-    private long nside_;
+    private volatile long nside_;
 
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.table.join" );
@@ -35,6 +34,16 @@ public class PixtoolsHealpixSkyPixellator extends HealpixSkyPixellator {
      */
     private static final int DEFAULT_SCALE_FACTOR = 8;
 
+    /* PixTools fills some static lookup tables lazily on first use,
+     * which is not safe if the first calls are made concurrently.
+     * Make sure they are filled before any instance of this class
+     * can be used. */
+    static {
+        PixTools pixTools = PixTools.getInstance();
+        pixTools.nest2ring( 1, 0 );
+        pixTools.ring2nest( 1, 0 );
+    }
+
     /**
      * Constructs a pixellator using either the RING or NESTED HEALPix scheme.
      *
@@ -0,0 +1,55 @@
+package uk.ac.starlink.table.join;
+
+import java.io.IOException;
+
+/**
+ * Accumulates information from the rows of a table.
+ * This abstraction allows the rows of a table to be processed
+ * either in sequence into a single accumulator, or in a number of
+ * independent row-range partitions, each with its own accumulator,
+ * possibly in parallel.
+ * In the latter case the partition accumulators are combined in row order
+ * once all the partitions have been processed.
+ * Provided that the {@link #combine} method is implemented correctly,
+ * the final result will be the same in either case.
+ *
+ * <p>The {@link #accumulateRow} method may be called concurrently
+ * from different threads, but never concurrently for the same
+ * accumulator.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+abstract class RowCollector<A> {
+
+    /**
+     * Returns a new accumulator into which the rows of a single
+     * row-range partition can be accumulated.
+     *
+     * @return  new empty accumulator
+     */
+    public abstract A createAccumulator();
+
+    /**
+     * Accumulates the data from a single row into a given accumulator.
+     *
+     * @param  acc  accumulator
+     * @param  irow  index of the row in its table
+     * @param  row   row data
+     */
+    public abstract void accumulateRow( A acc, long irow, Object[] row )
+            throws IOException;
+
+    /**
+     * Merges the contents of one accumulator into another.
+     * The rows accumulated into <code>acc1</code> all follow
+     * (in table row order) the rows accumulated into <code>acc0</code>.
+     * Following this call, <code>acc0</code> contains the combined result
+     * and <code>acc1</code> will not be used again, so its contents
+     * may be disrupted.
+     *
+     * @param  acc0  accumulator into which the result is to be merged
+     * @param  acc1  accumulator whose contents are to be merged
+     */
+    public abstract void combine( A acc0, A acc1 );
+}
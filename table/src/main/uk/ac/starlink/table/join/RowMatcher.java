@@ -13,9 +13,22 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnBlockIndex;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.DoubleCellAccess;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 
@@ -32,6 +45,16 @@ import uk.ac.starlink.table.ValueInfo;
  * memory as possible.  Techniques include removing items from one
  * collection as they are added to another.  This means that in many
  * cases input values may be modified by the methods.
+ *
+ * <p>The row binning stages, which are typically the most expensive
+ * part of the match, may be performed in parallel for random-access
+ * tables, see {@link #setParallelism}.
+ * The results are the same whether binning is done sequentially
+ * or in parallel.
+ *
+ * <p>For sky matches between tables which are already sorted by
+ * HEALPix index, pair matching may instead be done by streaming
+ * both tables in a single pass, see {@link #setSortedHealpixOrder}.
  * 
  * @author   Mark Taylor (Starlink)
  */
@@ -41,8 +64,56 @@ public class RowMatcher {
     private final StarTable[] tables;
     private final int nTable;
     private ProgressIndicator indicator = new NullProgressIndicator();
+    private int parallelism;
+    private StoragePolicy spillPolicy;
+    private int spillCount;
+    private int sortedOrder = -1;
     private long startTime;
 
+    /**
+     * Name of system property {@value} which may be used to set the
+     * default parallelism for row binning.
+     * If not set, binning is done sequentially.
+     *
+     * @see  #setParallelism
+     */
+    public static final String PARALLELISM_PROPERTY =
+        "startable.match.parallelism";
+
+    /**
+     * Name of system property {@value} which may be used to set
+     * the maximum number of links held in memory by each of the link sets
+     * used during matching.
+     * If set, links in excess of this number are spilled to storage
+     * obtained from the default {@link uk.ac.starlink.table.StoragePolicy}.
+     * If not set, link sets are held entirely in memory.
+     *
+     * @see  #setLinkStorage
+     */
+    public static final String SPILL_PROPERTY = "startable.match.spill";
+
+    /**
+     * Minimum number of rows per partition for parallel binning.
+     * Smaller tables are binned sequentially, since the thread management
+     * and merge overheads are not worth paying.
+     */
+    private static final long MIN_PARTITION_ROWS = 10000;
+
+    /** Number of rows processed between progress count updates. */
+    private static final int PROGRESS_BLOCK = 4096;
+
+    /** Number of rows read at a time from typed numeric columns. */
+    private static final int DOUBLE_BLOCK = 1024;
+
+    /**
+     * Approximate per-row memory cost in bytes of a tuple cache;
+     * a cache is only used if it will fit comfortably in the heap.
+     */
+    private static final long TUPLE_CACHE_ROW_BYTES = 64;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table.join" );
+
     /**
      * Constructs a new matcher with match characteristics defined by
      * a given matching engine.
@@ -54,6 +125,12 @@ public class RowMatcher {
         this.engine = engine;
         this.tables = tables;
         this.nTable = tables.length;
+        this.parallelism = getPositiveIntProperty( PARALLELISM_PROPERTY, 1 );
+        int spillCount = getPositiveIntProperty( SPILL_PROPERTY, 0 );
+        if ( spillCount > 0 ) {
+            this.spillPolicy = StoragePolicy.getDefaultPolicy();
+            this.spillCount = spillCount;
+        }
     }
 
     /**
@@ -74,16 +151,134 @@ public class RowMatcher {
         return indicator;
     }
 
+    /**
+     * Sets the number of threads which may be used concurrently to
+     * bin the rows of random-access tables.
+     * If the value is greater than 1, row binning of random-access tables
+     * is done by splitting each table into row-range partitions
+     * which are binned independently and then merged.
+     * This uses more CPU cores and, temporarily during the merge,
+     * somewhat more memory, but produces exactly the same results
+     * as sequential binning.
+     * The default value is taken from the {@link #PARALLELISM_PROPERTY}
+     * system property, or 1 if that is not set.
+     *
+     * @param  parallelism  maximum number of binning threads;
+     *                      1 means sequential binning
+     */
+    public void setParallelism( int parallelism ) {
+        if ( parallelism < 1 ) {
+            throw new IllegalArgumentException( "Parallelism " + parallelism
+                                              + " < 1" );
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of threads which may be used concurrently to
+     * bin the rows of random-access tables.
+     *
+     * @return  maximum number of binning threads
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Configures storage of the links accumulated during matching.
+     * By default, link sets are held entirely in memory, which may
+     * exhaust the heap for very large matches.
+     * If a storage policy is set here, link sets will hold at most
+     * <code>maxMemLinks</code> links in memory, and spill the rest
+     * to byte stores obtained from the policy.
+     * This is slower, but allows match results larger than the heap.
+     * Note that the policy must not discard data, so
+     * {@link uk.ac.starlink.table.StoragePolicy#DISCARD} is not suitable.
+     * The default may be set using the {@link #SPILL_PROPERTY}
+     * system property.
+     *
+     * @param  policy  storage policy for spilled links,
+     *                 or null for in-memory link sets
+     * @param  maxMemLinks  maximum number of links per link set
+     *                      held in memory; ignored if policy is null
+     */
+    public void setLinkStorage( StoragePolicy policy, int maxMemLinks ) {
+        if ( policy != null && maxMemLinks < 1 ) {
+            throw new IllegalArgumentException( "Spill count " + maxMemLinks
+                                              + " < 1" );
+        }
+        this.spillPolicy = policy;
+        this.spillCount = maxMemLinks;
+    }
+
+    /**
+     * Returns the storage policy used for spilling links.
+     *
+     * @return  link storage policy, or null for in-memory link sets
+     * @see   #setLinkStorage
+     */
+    public StoragePolicy getLinkStoragePolicy() {
+        return spillPolicy;
+    }
+
+    /**
+     * Declares that this matcher's tables are sorted by HEALPix index,
+     * so that pair matches can be done by a streaming sort-merge.
+     * If a non-negative order is set, the pair matching stages of
+     * the match are done by reading the two tables concurrently,
+     * once each and in sequence, holding in memory only the rows
+     * in the current region of the sky along with rows near its edge.
+     * Neither table needs random access for this, and memory use
+     * does not grow with table size, though the link set holding
+     * the result does unless {@link #setLinkStorage link storage}
+     * is configured.
+     * The matched pairs are the same as for the normal binning algorithm.
+     *
+     * <p>This is only possible if the match engine is a
+     * {@link FixedSkyMatchEngine}, and the rows of each table are
+     * in ascending order of the HEALPix NESTED pixel index of the
+     * match position at the given order (or any higher order).
+     * If a table is found not to be in this order during the match,
+     * an IOException will result.
+     *
+     * @param  order  HEALPix order (log2(nside)) at which both tables
+     *                are sorted by NESTED pixel index,
+     *                or -1 to use the normal binning algorithm
+     * @throws  IllegalArgumentException  if the match engine does not
+     *          support sort-merge matching
+     */
+    public void setSortedHealpixOrder( int order ) {
+        if ( order >= 0 && ! ( engine instanceof FixedSkyMatchEngine ) ) {
+            throw new IllegalArgumentException( "Sort-merge match not "
+                                              + "supported for " + engine );
+        }
+        this.sortedOrder = order < 0 ? -1 : order;
+    }
+
+    /**
+     * Returns the HEALPix order at which this matcher's tables are
+     * declared to be sorted.
+     *
+     * @return  HEALPix sort order, or -1 for normal binning
+     * @see   #setSortedHealpixOrder
+     */
+    public int getSortedHealpixOrder() {
+        return sortedOrder;
+    }
+
     /**
      * Constructs a new empty LinkSet for use by this matcher.
-     * The current implementation returns one based on a SortedSet,
-     * but future implementations may provide the option of LinkSet
-     * implementations backed by disk.
+     * By default this is an in-memory implementation based on a SortedSet,
+     * but if link storage has been configured using
+     * {@link #setLinkStorage} a LinkSet which can spill to external
+     * storage is returned instead.
      *
      * @return  new LinkSet
      */
     public LinkSet createLinkSet() {
-        return new TreeSetLinkSet();
+        return spillPolicy == null
+             ? (LinkSet) new TreeSetLinkSet()
+             : (LinkSet) new SpillLinkSet( spillPolicy, spillCount );
     }
 
     /**
@@ -123,6 +318,9 @@ public class RowMatcher {
      */
     LinkSet findAllPairs( int index1, int index2, boolean bestOnly )
              throws IOException, InterruptedException {
+        if ( sortedOrder >= 0 ) {
+            return findSortedPairs( index1, index2, bestOnly );
+        }
         int ncol = getPairColumnCount( index1, index2 );
 
         /* Work out which table will have its rows cached in bins 
@@ -198,38 +396,23 @@ public class RowMatcher {
     LinkSet scanForPairs( int indexR, int indexS, NdRange range,
                           boolean bestOnly )
             throws IOException, InterruptedException {
-
-        /* Bin the row indices for the random table. */
-        ProgressRowSequence rseq =
-            new ProgressRowSequence( tables[ indexR ], indicator,
-                                     "Binning rows for table "
-                                     + ( indexR + 1 ) );
-        LongBinner binner =
-            Binners.createLongBinner( tables[ indexR ].getRowCount() );
-        long nrow = 0;
-        long nref = 0;
-        long nexclude = 0;
-        try {
-            for ( long lrow = 0; rseq.nextProgress(); lrow++ ) {
-                Object[] row = rseq.getRow();
-                if ( range.isInside( row ) ) {
-                    Object[] keys = engine.getBins( row );
-                    int nkey = keys.length;
-                    for ( int ikey = 0; ikey < nkey; ikey++ ) {
-                        binner.addItem( keys[ ikey ], lrow );
-                    }
-                    nref += nkey;
-                }
-                else {
-                    nexclude++;
-                }
-                nrow++;
-            }
-            assert nrow == tables[ indexR ].getRowCount();
-        }
-        finally {
-            rseq.close();
-        }
+        if ( sortedOrder >= 0 ) {
+            return scanSortedPairs( indexR, indexS, indexS, bestOnly );
+        }
+
+        /* Bin the row indices for the random table, caching the
+         * match tuples at the same time if the engine can do it. */
+        TupleCache tupleCache = createTupleCache( tables[ indexR ] );
+        LongBinAccumulator binAcc =
+            scanRows( indexR, "Binning rows for table " + ( indexR + 1 ),
+                      new LongBinCollector( range, tables[ indexR ],
+                                            tupleCache ),
+                      new LongBinAccumulator( tables[ indexR ] ) );
+        LongBinner binner = binAcc.binner_;
+        long nrow = binAcc.nrow_;
+        long nref = binAcc.nref_;
+        long nexclude = binAcc.nexclude_;
+        assert nrow == tables[ indexR ].getRowCount();
         if ( nexclude > 0 ) {
             indicator.logMessage( nexclude + "/" + nrow + " rows excluded "
                                 + "(out of match region)" );
@@ -252,31 +435,26 @@ public class RowMatcher {
                 if ( range.isInside( srowData ) ) {
 
                     /* Identify rows from table R which may match table S. */
-                    Object[] keys = engine.getBins( srowData );
-                    int nkey = keys.length;
-                    Set rrowSet = new HashSet();
-                    for ( int ikey = 0; ikey < nkey; ikey++ ) {
-                        long[] rrows = binner.getLongs( keys[ ikey ] );
-                        if ( rrows != null ) {
-                            for ( int ir = 0; ir < rrows.length; ir++ ) {
-                                rrowSet.add( new Long( rrows[ ir ] ) );
-                            }
-                        }
-                    }
-                    long[] rrows = new long[ rrowSet.size() ];
-                    int ir = 0;
-                    for ( Iterator it = rrowSet.iterator(); it.hasNext(); ) {
-                        rrows[ ir++ ] = ((Long) it.next()).longValue();
+                    long[] rrows =
+                        getCandidateRows( binner, engine.getBins( srowData ) );
+                    if ( tupleCache != null ) {
+                        tupleCache.setQuery( srowData );
                     }
-                    Arrays.sort( rrows );
 
                     /* Score and accumulate matched links. */
                     List linkList = new ArrayList( 1 );
                     double bestScore = Double.MAX_VALUE;
-                    for ( ir = 0; ir < rrows.length; ir++ ) {
+                    for ( int ir = 0; ir < rrows.length; ir++ ) {
                         long irrow = rrows[ ir ];
-                        Object[] rrowData = tables[ indexR ].getRow( irrow );
-                        double score = engine.matchScore( srowData, rrowData );
+                        double score;
+                        if ( tupleCache != null ) {
+                            score = tupleCache.score( (int) irrow );
+                        }
+                        else {
+                            Object[] rrowData =
+                                tables[ indexR ].getRow( irrow );
+                            score = engine.matchScore( srowData, rrowData );
+                        }
                         if ( score >= 0 &&
                              ( ! bestOnly || score < bestScore ) ) {
                             RowRef rref = new RowRef( indexR, irrow );
@@ -307,6 +485,135 @@ public class RowMatcher {
         return linkSet;
     }
 
+    /**
+     * Returns the distinct row indices binned under any of a given
+     * set of keys, in ascending order.
+     *
+     * @param  binner  binner containing row indices
+     * @param  keys   bin keys
+     * @return   sorted array of distinct row indices
+     */
+    private static long[] getCandidateRows( LongBinner binner,
+                                            Object[] keys ) {
+        int nkey = keys.length;
+        long[][] rrowArrays = new long[ nkey ][];
+        int ntot = 0;
+        for ( int ikey = 0; ikey < nkey; ikey++ ) {
+            long[] rrows = binner.getLongs( keys[ ikey ] );
+            if ( rrows != null ) {
+                rrowArrays[ ikey ] = rrows;
+                ntot += rrows.length;
+            }
+        }
+        long[] rrows = new long[ ntot ];
+        int ir = 0;
+        for ( int ikey = 0; ikey < nkey; ikey++ ) {
+            long[] krows = rrowArrays[ ikey ];
+            if ( krows != null ) {
+                System.arraycopy( krows, 0, rrows, ir, krows.length );
+                ir += krows.length;
+            }
+        }
+        Arrays.sort( rrows );
+        int nu = 0;
+        for ( int i = 0; i < ntot; i++ ) {
+            if ( nu == 0 || rrows[ i ] != rrows[ nu - 1 ] ) {
+                rrows[ nu++ ] = rrows[ i ];
+            }
+        }
+        if ( nu < ntot ) {
+            long[] urows = new long[ nu ];
+            System.arraycopy( rrows, 0, urows, 0, nu );
+            rrows = urows;
+        }
+        return rrows;
+    }
+
+    /**
+     * Returns a tuple cache for the rows of a given table if the match
+     * engine supports it and there is likely to be enough memory.
+     * The cache must be populated by binning the table's rows.
+     *
+     * @param  table  table whose rows are to be cached
+     * @return   empty tuple cache, or null
+     */
+    private TupleCache createTupleCache( StarTable table ) {
+        if ( engine instanceof AbstractSkyMatchEngine ) {
+            long nrow = table.getRowCount();
+            if ( nrow >= 0 && nrow < Integer.MAX_VALUE &&
+                 nrow * TUPLE_CACHE_ROW_BYTES <
+                 Runtime.getRuntime().maxMemory() / 4 ) {
+                return ((AbstractSkyMatchEngine) engine)
+                      .createTupleCache( (int) nrow );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Does the work for {@link #findAllPairs} using a streaming sort-merge
+     * of HEALPix-sorted tables.
+     * The scan table is chosen in the same way as for the binning
+     * algorithm, so that the results are the same.
+     * Where both tables are random-access, that requires assessing
+     * the tables' common region, so for reasons of efficiency it is
+     * only done if <code>bestOnly</code> is set;
+     * otherwise the pairs are the same, but scores may differ
+     * by rounding errors.
+     *
+     * @param  index1  index of first table to match
+     * @param  index2  index of second table to match
+     * @param  bestOnly  if false, all matches will be included in the result;
+     *         if true, the best matches will be included and some non-best
+     *         ones may be as well
+     * @return  links representing pair matches
+     */
+    private LinkSet findSortedPairs( int index1, int index2,
+                                     boolean bestOnly )
+            throws IOException, InterruptedException {
+        final int indexS;
+        if ( bestOnly && tables[ index1 ].isRandom() &&
+                         tables[ index2 ].isRandom() ) {
+            Intersection intersect =
+                getIntersection( new int[] { index1, index2 } );
+            if ( intersect.range_ == null ) {
+                return createLinkSet();
+            }
+            indexS = intersect.inRangeCounts_[ 0 ]
+                   < intersect.inRangeCounts_[ 1 ] ? index2 : index1;
+        }
+        else {
+            indexS = tables[ index1 ].isRandom() ? index2 : index1;
+        }
+        return scanSortedPairs( index1, index2, indexS, bestOnly );
+    }
+
+    /**
+     * Locates matched pairs between two HEALPix-sorted tables
+     * using a streaming sort-merge.
+     *
+     * @param  index1  index of first table to match
+     * @param  index2  index of second table to match
+     * @param  indexS  index of the scan table, whose tuples are supplied
+     *                 first to the match engine;
+     *                 one of <code>index1</code> or <code>index2</code>
+     * @param  bestOnly  if false, all matches will be included in the result;
+     *         if true, for each row in the scan table, only the best
+     *         match in the other table will be included
+     * @return  links representing pair matches
+     */
+    private LinkSet scanSortedPairs( int index1, int index2, int indexS,
+                                     boolean bestOnly )
+            throws IOException, InterruptedException {
+        HealpixMergeScanner scanner =
+            new HealpixMergeScanner( (FixedSkyMatchEngine) engine, tables,
+                                     index1, index2, sortedOrder, indicator );
+        LinkSet linkSet = createLinkSet();
+        scanner.scan( indexS, bestOnly, linkSet );
+        indicator.logMessage( linkSet.size() + " pairs found" );
+        return linkSet;
+    }
+
     /**
      * Returns a set of RowLink objects each of which represents matches
      * between one of the rows of a reference table and any of the other tables
@@ -588,22 +895,10 @@ public class RowMatcher {
             throws IOException, InterruptedException {
         StarTable table = tables[ itable ];
         long nRow = table.getRowCount();
-        LongBinner binner = Binners.createLongBinner( nRow );
-        ProgressRowSequence rseq =
-            new ProgressRowSequence( table, indicator, "Binning rows" );
-        try {
-            for ( long lrow = 0; rseq.nextProgress(); lrow++ ) {
-                Object[] row = rseq.getRow();
-                Object[] keys = engine.getBins( row );
-                int nkey = keys.length;
-                for ( int ikey = 0; ikey < nkey; ikey++ ) {
-                    binner.addItem( keys[ ikey ], lrow );
-                }
-            }
-        }
-        finally {
-            rseq.close();
-        }
+        LongBinner binner =
+            scanRows( itable, "Binning rows",
+                      new LongBinCollector( null, table ),
+                      new LongBinAccumulator( table ) ).binner_;
         long nBin = binner.getBinCount();
         indicator.logMessage( "Average bin count per row: " +
                               (float) ( nBin / (double) nRow ) );
@@ -1145,6 +1440,68 @@ public class RowMatcher {
     private LinkSet agglomerateLinks( LinkSet links ) 
             throws InterruptedException {
 
+        /* Assign each RowRef a compact identifier and join up those
+         * which appear in the same link.  The links are only streamed
+         * from the input set, not held in memory, so this works
+         * efficiently if the set has been spilled to disk. */
+        RowRefGrouper grouper = new RowRefGrouper();
+        indicator.startStage( "Mapping rows to groups" );
+        double nlink1 = links.size();
+        int ilink1 = 0;
+        for ( Iterator linkIt = links.iterator(); linkIt.hasNext(); ) {
+            indicator.setLevel( ++ilink1 / nlink1 );
+            if ( ! grouper.addLink( (RowLink) linkIt.next() ) ) {
+                indicator.endStage();
+                indicator.logMessage( "Row references too large"
+                                    + " for compact grouping" );
+                return agglomerateLinksInMemory( links );
+            }
+        }
+        indicator.endStage();
+        LinkSet agglomeratedLinks = createLinkSet();
+
+        /* Copy isolated links, that is ones none of whose members
+         * appear in any other links, directly to the output,
+         * since that retains any additional information such as scores. */
+        indicator.startStage( "Identifying isolated links" );
+        int ilink2 = 0;
+        for ( Iterator it = links.iterator(); it.hasNext(); ) {
+            indicator.setLevel( ++ilink2 / nlink1 );
+            RowLink link = (RowLink) it.next();
+            if ( grouper.isIsolated( link ) ) {
+                assert ! agglomeratedLinks.containsLink( link );
+                agglomeratedLinks.addLink( link );
+                grouper.markDone( link );
+            }
+        }
+        indicator.endStage();
+
+        /* Output a new link for each remaining group of connected rows. */
+        double nRefs = grouper.getRefCount();
+        int iref = 0;
+        indicator.startStage( "Walking links" );
+        for ( RowRef[] refs; ( refs = grouper.nextGroup() ) != null; ) {
+            iref += refs.length;
+            indicator.setLevel( iref / nRefs );
+            RowLink link = new RowLink( refs );
+            assert ! agglomeratedLinks.containsLink( link );
+            agglomeratedLinks.addLink( link );
+        }
+        indicator.endStage();
+        return agglomeratedLinks;
+    }
+
+    /**
+     * Does the same job as {@link #agglomerateLinks}, but holds
+     * all the links in memory.  This is used if the RowRefs are not
+     * suitable for compact grouping.
+     *
+     * @param   links  set of {@link RowLink} objects
+     * @return  disjoint set of {@link RowLink} objects
+     */
+    private LinkSet agglomerateLinksInMemory( LinkSet links )
+            throws InterruptedException {
+
         /* Construct a new hash mapping each RowRef in the given set of
          * links to a list of all the links it appears in. */
         ObjectBinner refBinner = Binners.createModifiableObjectBinner();
@@ -1337,6 +1694,23 @@ public class RowMatcher {
             return new NdRange( ncol );
         }
 
+        /* If block indexes are available for all the comparable columns,
+         * the limits can be got from those without reading the data. */
+        NdRange indexRange = readIndexedTupleRange( table, isComparable );
+        if ( indexRange != null ) {
+            indicator.logMessage( "Limits from block indexes are: "
+                                + indexRange );
+            return indexRange;
+        }
+
+        /* If the comparable columns can all be read as primitives,
+         * read them in blocks without creating per-cell objects. */
+        NdRange typedRange = readTypedTupleRange( tIndex, isComparable );
+        if ( typedRange != null ) {
+            indicator.logMessage( "Limits are: " + typedRange );
+            return typedRange;
+        }
+
         /* Go through each row finding the minimum and maximum value 
          * for each column (coordinate). */
         Comparable[] mins = new Comparable[ ncol ];
@@ -1421,37 +1795,13 @@ public class RowMatcher {
             return;
         }
         StarTable table = tables[ itab ];
-        ProgressRowSequence rseq =
-            new ProgressRowSequence( table, indicator,
-                                     "Binning rows for table " + ( itab + 1 ) );
-        long nrow = 0;
-        long nexclude = 0;
-        try {
-            for ( long lrow = 0; rseq.nextProgress(); lrow++ ) {
-                Object[] row = rseq.getRow();
-                if ( range.isInside( row ) ) {
-                    Object[] keys = engine.getBins( row );
-                    int nkey = keys.length;
-                    if ( nkey > 0 ) {
-                        RowRef rref = new RowRef( itab, lrow );
-                        for ( int ikey = 0; ikey < nkey; ikey++ ) {
-                            Object key = keys[ ikey ];
-                            if ( newBins || binner.containsKey( key ) ) {
-                                binner.addItem( key, rref );
-                            }
-                        }
-                    }
-                }
-                else {
-                    nexclude++;
-                }
-                nrow++;
-            }
-            assert nrow == table.getRowCount();
-        }
-        finally {
-            rseq.close();
-        }
+        ObjectBinAccumulator binAcc =
+            scanRows( itab, "Binning rows for table " + ( itab + 1 ),
+                      new ObjectBinCollector( itab, range, binner, newBins ),
+                      new ObjectBinAccumulator( binner ) );
+        long nrow = binAcc.nrow_;
+        long nexclude = binAcc.nexclude_;
+        assert nrow == table.getRowCount();
         if ( nexclude > 0 ) {
             indicator.logMessage( nexclude + "/" + nrow + " rows excluded "
                                 + "(out of match region)" );
@@ -1554,6 +1904,10 @@ public class RowMatcher {
      */
     private long countInRange( int tIndex, NdRange range )
             throws IOException, InterruptedException {
+        ColumnBlockIndex[] indexes = getRangeIndexes( tIndex, range );
+        if ( indexes != null ) {
+            return countInRangeIndexed( tIndex, range, indexes );
+        }
         ProgressRowSequence rseq = 
             new ProgressRowSequence( tables[ tIndex ], indicator, 
                                      "Counting rows in match region " +
@@ -1573,6 +1927,262 @@ public class RowMatcher {
         return nInclude;
     }
 
+    /**
+     * Returns the number of rows in a table which fall within a given
+     * range of min/max values, using block indexes to avoid reading
+     * rows where possible.
+     *
+     * @param  tIndex  index of table to assess
+     * @param  range   bounds of permissible coordinates
+     * @param  indexes  array of block indexes, one for each dimension of
+     *                  <code>range</code>, as returned by
+     *                  {@link #getRangeIndexes}
+     * @return  number of rows of <tt>table</tt> that fall within supplied
+     *          bounds
+     */
+    private long countInRangeIndexed( int tIndex, NdRange range,
+                                      ColumnBlockIndex[] indexes )
+            throws IOException, InterruptedException {
+        StarTable table = tables[ tIndex ];
+        int ndim = indexes.length;
+        double[] los = new double[ ndim ];
+        double[] his = new double[ ndim ];
+        Comparable[] mins = range.getMins();
+        Comparable[] maxs = range.getMaxs();
+        ColumnBlockIndex index0 = null;
+        for ( int id = 0; id < ndim; id++ ) {
+            los[ id ] = mins[ id ] == null
+                      ? Double.NEGATIVE_INFINITY
+                      : ((Number) mins[ id ]).doubleValue();
+            his[ id ] = maxs[ id ] == null
+                      ? Double.POSITIVE_INFINITY
+                      : ((Number) maxs[ id ]).doubleValue();
+            if ( indexes[ id ] != null ) {
+                index0 = indexes[ id ];
+            }
+        }
+        int nblock = index0.getBlockCount();
+        long nInclude = 0;
+        long nRead = 0;
+        indicator.startStage( "Counting rows in match region " +
+                              "for table " + ( tIndex + 1 ) +
+                              " using block indexes" );
+        for ( int ib = 0; ib < nblock; ib++ ) {
+            int state = ColumnBlockIndex.INSIDE;
+            for ( int id = 0; id < ndim &&
+                              state != ColumnBlockIndex.OUTSIDE; id++ ) {
+                if ( indexes[ id ] != null ) {
+                    int s = indexes[ id ].getBlockState( ib, los[ id ],
+                                                         his[ id ] );
+                    if ( s != ColumnBlockIndex.INSIDE ) {
+                        state = s;
+                    }
+                }
+            }
+            int nr = index0.getBlockLength( ib );
+            if ( state == ColumnBlockIndex.INSIDE ) {
+                nInclude += nr;
+            }
+            else if ( state == ColumnBlockIndex.PARTIAL ) {
+                long irow0 = index0.getBlockStart( ib );
+                for ( long irow = irow0; irow < irow0 + nr; irow++ ) {
+                    if ( range.isInside( table.getRow( irow ) ) ) {
+                        nInclude++;
+                    }
+                }
+                nRead += nr;
+            }
+            indicator.setLevel( ( ib + 1.0 ) / nblock );
+        }
+        indicator.endStage();
+        indicator.logMessage( nRead + "/" + table.getRowCount()
+                            + " rows read using block indexes" );
+        indicator.logMessage( nInclude + " rows in match region" );
+        return nInclude;
+    }
+
+    /**
+     * Returns block indexes suitable for assessing the rows of one of
+     * this matcher's tables against a given range.
+     * If the range is bounded in some dimensions, and block indexes
+     * with the same block size are available for all those dimensions,
+     * an array with an index for each bounded dimension and null for
+     * each unbounded one is returned.  Otherwise, null is returned.
+     *
+     * @param  tIndex  index of table
+     * @param  range   range of interest
+     * @return  array of block indexes, or null
+     */
+    private ColumnBlockIndex[] getRangeIndexes( int tIndex, NdRange range ) {
+        StarTable table = tables[ tIndex ];
+        if ( ! range.isBounded() || ! table.isRandom() ) {
+            return null;
+        }
+        Comparable[] mins = range.getMins();
+        Comparable[] maxs = range.getMaxs();
+        int ndim = mins.length;
+        ColumnBlockIndex[] indexes = new ColumnBlockIndex[ ndim ];
+        int blockSize = -1;
+        for ( int id = 0; id < ndim; id++ ) {
+            Comparable min = mins[ id ];
+            Comparable max = maxs[ id ];
+            if ( min != null || max != null ) {
+                if ( ( min != null && ! ( min instanceof Number ) ) ||
+                     ( max != null && ! ( max instanceof Number ) ) ) {
+                    return null;
+                }
+                ColumnBlockIndex index = Tables.getBlockIndex( table, id );
+                if ( index == null ||
+                     index.getRowCount() != table.getRowCount() ||
+                     ( blockSize >= 0 &&
+                       index.getBlockSize() != blockSize ) ) {
+                    return null;
+                }
+                blockSize = index.getBlockSize();
+                indexes[ id ] = index;
+            }
+        }
+        return blockSize >= 0 ? indexes : null;
+    }
+
+    /**
+     * Attempts to determine the range of coordinate values for a table
+     * from block indexes, without reading the data.
+     * This is only possible if every comparable column has an index,
+     * and has a content class which can be represented exactly
+     * as a double.
+     *
+     * @param  table  table
+     * @param  isComparable  flags indicating which columns are comparable
+     * @return  range, or null if it cannot be determined from indexes
+     */
+    private static NdRange readIndexedTupleRange( StarTable table,
+                                                  boolean[] isComparable ) {
+        int ncol = isComparable.length;
+        Comparable[] mins = new Comparable[ ncol ];
+        Comparable[] maxs = new Comparable[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            if ( isComparable[ icol ] ) {
+                ColumnBlockIndex index = Tables.getBlockIndex( table, icol );
+                Class clazz = table.getColumnInfo( icol ).getContentClass();
+                if ( index == null ||
+                     index.getRowCount() != table.getRowCount() ||
+                     ! ( clazz == Double.class || clazz == Float.class ||
+                         clazz == Integer.class || clazz == Short.class ||
+                         clazz == Byte.class ) ) {
+                    return null;
+                }
+                double min = index.getMinimum();
+                double max = index.getMaximum();
+                mins[ icol ] = toNumber( min, clazz );
+                maxs[ icol ] = toNumber( max, clazz );
+            }
+        }
+        return new NdRange( mins, maxs );
+    }
+
+    /**
+     * Attempts to determine the range of coordinate values for a table
+     * using primitive column reads.
+     * This is only possible if the table provides typed access to
+     * every comparable column, and each such column has a content class
+     * which can be represented exactly as a double.
+     * Only the comparable columns are read.
+     *
+     * @param  tIndex  index of table
+     * @param  isComparable  flags indicating which columns are comparable
+     * @return  range, or null if it cannot be determined using typed reads
+     */
+    private NdRange readTypedTupleRange( int tIndex, boolean[] isComparable )
+            throws IOException, InterruptedException {
+        StarTable table = tables[ tIndex ];
+        int ncol = isComparable.length;
+        long nrow = table.getRowCount();
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            if ( isComparable[ icol ] ) {
+                Class clazz = table.getColumnInfo( icol ).getContentClass();
+                if ( ! Tables.hasDoubleCells( table, icol ) ||
+                     ! ( clazz == Double.class || clazz == Float.class ||
+                         clazz == Integer.class || clazz == Short.class ||
+                         clazz == Byte.class ) ) {
+                    return null;
+                }
+            }
+        }
+        DoubleCellAccess dAccess = (DoubleCellAccess) table;
+        double[] mins = new double[ ncol ];
+        double[] maxs = new double[ ncol ];
+        Arrays.fill( mins, Double.NaN );
+        Arrays.fill( maxs, Double.NaN );
+        double[] buf = new double[ DOUBLE_BLOCK ];
+        indicator.startStage( "Assessing range of coordinates " +
+                              "from table " + ( tIndex + 1 ) );
+        for ( long irow0 = 0; irow0 < nrow; irow0 += DOUBLE_BLOCK ) {
+            int leng = (int) Math.min( DOUBLE_BLOCK, nrow - irow0 );
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                if ( isComparable[ icol ] ) {
+                    dAccess.readDoubleColumn( icol, irow0, leng, buf, 0 );
+                    double min = mins[ icol ];
+                    double max = maxs[ icol ];
+                    for ( int i = 0; i < leng; i++ ) {
+                        double d = buf[ i ];
+                        if ( ! Double.isNaN( d ) ) {
+                            if ( ! ( d >= min ) ) {
+                                min = d;
+                            }
+                            if ( ! ( d <= max ) ) {
+                                max = d;
+                            }
+                        }
+                    }
+                    mins[ icol ] = min;
+                    maxs[ icol ] = max;
+                }
+            }
+            indicator.setLevel( ( irow0 + leng ) / (double) nrow );
+        }
+        indicator.endStage();
+        Comparable[] cmins = new Comparable[ ncol ];
+        Comparable[] cmaxs = new Comparable[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            if ( isComparable[ icol ] ) {
+                Class clazz = table.getColumnInfo( icol ).getContentClass();
+                cmins[ icol ] = toNumber( mins[ icol ], clazz );
+                cmaxs[ icol ] = toNumber( maxs[ icol ], clazz );
+            }
+        }
+        return new NdRange( cmins, cmaxs );
+    }
+
+    /**
+     * Converts a double value to a Number of a given class.
+     * Funny numbers (NaN and infinities) give null.
+     *
+     * @param  dval  value
+     * @param  clazz  required class, Double, Float, Integer, Short or Byte
+     * @return  number of class <code>clazz</code>, or null
+     */
+    private static Comparable toNumber( double dval, Class clazz ) {
+        if ( Double.isNaN( dval ) || Double.isInfinite( dval ) ) {
+            return null;
+        }
+        else if ( clazz == Float.class ) {
+            return new Float( (float) dval );
+        }
+        else if ( clazz == Integer.class ) {
+            return new Integer( (int) dval );
+        }
+        else if ( clazz == Short.class ) {
+            return new Short( (short) dval );
+        }
+        else if ( clazz == Byte.class ) {
+            return new Byte( (byte) dval );
+        }
+        else {
+            return new Double( dval );
+        }
+    }
+
     /**
      * Returns a list with the same content of RowLinks as the
      * input LinkSet, but ordered according to the given comparator.
@@ -1595,6 +2205,413 @@ public class RowMatcher {
         return Arrays.asList( links );
     }
 
+    /**
+     * Accumulates information from all the rows of one of this matcher's
+     * tables.  If the table provides random or row range access,
+     * is large enough, and this matcher's parallelism is greater
+     * than one, the rows are processed in several row-range partitions
+     * concurrently, and the resulting accumulators are merged in row
+     * order into the supplied one.  Otherwise the rows are read sequentially
+     * straight into the supplied accumulator.
+     *
+     * @param   itab   index of table to scan
+     * @param   stage  description of processing stage for progress logging
+     * @param   collector  defines the processing
+     * @param   acc0   accumulator into which the result will be placed
+     * @return  <code>acc0</code>
+     */
+    private <A> A scanRows( int itab, String stage, RowCollector<A> collector,
+                            A acc0 )
+            throws IOException, InterruptedException {
+        StarTable table = tables[ itab ];
+        int npart = getPartitionCount( table );
+        if ( npart > 1 ) {
+            List<A> accs = scanPartitions( table, stage, collector, npart );
+            int nacc = accs.size();
+            indicator.startStage( "Merging " + nacc + " partitions" );
+            try {
+                for ( int ip = 0; ip < nacc; ip++ ) {
+                    collector.combine( acc0, accs.get( ip ) );
+                    accs.set( ip, null );
+                    indicator.setLevel( ( ip + 1 ) / (double) nacc );
+                }
+            }
+            finally {
+                indicator.endStage();
+            }
+        }
+        else {
+            ProgressRowSequence rseq =
+                new ProgressRowSequence( table, indicator, stage );
+            try {
+                for ( long lrow = 0; rseq.nextProgress(); lrow++ ) {
+                    collector.accumulateRow( acc0, lrow, rseq.getRow() );
+                }
+            }
+            finally {
+                rseq.close();
+            }
+        }
+        return acc0;
+    }
+
+    /**
+     * Accumulates information from a table by splitting
+     * it into contiguous row-range partitions and processing them
+     * concurrently.  Each partition is read using its own row sequence
+     * obtained from {@link Tables#getRowRangeSequences}, so that tables
+     * which can supply independent row range sequences are not
+     * serialized by a shared random-access read position.
+     *
+     * @param  table  table with random access or row range access
+     * @param  stage  description of processing stage for progress logging
+     * @param  collector  defines the processing
+     * @param  npart  maximum number of partitions
+     * @return  list of accumulators, one for each partition in row order
+     */
+    private <A> List<A> scanPartitions( final StarTable table, String stage,
+                                        final RowCollector<A> collector,
+                                        int npart )
+            throws IOException, InterruptedException {
+        final long nrow = table.getRowCount();
+        final RowSequence[] rseqs =
+            Tables.getRowRangeSequences( table, npart );
+        npart = rseqs.length;
+        final AtomicLong doneCount = new AtomicLong();
+        ExecutorService executor =
+                Executors.newFixedThreadPool( npart, new ThreadFactory() {
+            public Thread newThread( Runnable r ) {
+                Thread th = new Thread( r, "Match Binner" );
+                th.setDaemon( true );
+                return th;
+            }
+        } );
+        List<Future<A>> futures = new ArrayList<Future<A>>( npart );
+        for ( int ip = 0; ip < npart; ip++ ) {
+            final long lo = nrow * ip / npart;
+            final RowSequence rseq = rseqs[ ip ];
+            futures.add( executor.submit( new Callable<A>() {
+                public A call() throws IOException {
+                    A acc = collector.createAccumulator();
+                    Thread thread = Thread.currentThread();
+                    int nb = 0;
+                    try {
+                        for ( long lrow = lo; rseq.next(); lrow++ ) {
+                            collector.accumulateRow( acc, lrow,
+                                                     rseq.getRow() );
+                            if ( ++nb == PROGRESS_BLOCK ) {
+                                doneCount.addAndGet( nb );
+                                nb = 0;
+                                if ( thread.isInterrupted() ) {
+                                    return null;
+                                }
+                            }
+                        }
+                    }
+                    finally {
+                        rseq.close();
+                    }
+                    doneCount.addAndGet( nb );
+                    return acc;
+                }
+            } ) );
+        }
+        executor.shutdown();
+        indicator.logMessage( "Binning " + nrow + " rows in " + npart
+                            + " parallel partitions" );
+        indicator.startStage( stage );
+        try {
+            List<A> accs = new ArrayList<A>( npart );
+            for ( Future<A> future : futures ) {
+                while ( ! future.isDone() ) {
+                    try {
+                        future.get( 100, TimeUnit.MILLISECONDS );
+                    }
+                    catch ( TimeoutException e ) {
+                        indicator.setLevel( doneCount.get() / (double) nrow );
+                    }
+                }
+                accs.add( future.get() );
+            }
+            return accs;
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                throw (IOException) new IOException( "Binning error: "
+                                                   + cause )
+                                   .initCause( cause );
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            indicator.endStage();
+        }
+    }
+
+    /**
+     * Returns the number of partitions into which a given table
+     * should be split for row binning.
+     *
+     * @param  table  table to be binned
+     * @return  number of partitions; 1 means sequential processing
+     */
+    private int getPartitionCount( StarTable table ) {
+        if ( parallelism > 1 &&
+             ( table.isRandom() || Tables.hasRowRanges( table ) ) ) {
+            long nrow = table.getRowCount();
+            return (int) Math.max( 1, Math.min( (long) parallelism,
+                                                nrow / MIN_PARTITION_ROWS ) );
+        }
+        else {
+            return 1;
+        }
+    }
+
+    /**
+     * Returns the value of a positive integer system property.
+     * If it is not set, or has an illegal value, a default is returned.
+     *
+     * @param  name  property name
+     * @param  dflt  default value
+     * @return  property value
+     */
+    private static int getPositiveIntProperty( String name, int dflt ) {
+        String pval;
+        try {
+            pval = System.getProperty( name );
+        }
+        catch ( SecurityException e ) {
+            pval = null;
+        }
+        if ( pval != null && pval.trim().length() > 0 ) {
+            try {
+                int ival = Integer.parseInt( pval.trim() );
+                if ( ival >= 1 ) {
+                    return ival;
+                }
+            }
+            catch ( NumberFormatException e ) {
+            }
+            logger_.warning( "Ignoring bad value for " + name
+                           + " \"" + pval + "\"" );
+        }
+        return dflt;
+    }
+
+    /**
+     * Appends the contents of one ObjectBinner to another.
+     * Bins are removed from the source binner as they are copied.
+     *
+     * @param  binner0  destination binner
+     * @param  binner1  source binner, emptied by this call
+     */
+    private static void mergeBinners( ObjectBinner binner0,
+                                      ObjectBinner binner1 ) {
+        for ( Iterator it = binner1.getKeyIterator(); it.hasNext(); ) {
+            Object key = it.next();
+            for ( Iterator lit = binner1.getList( key ).iterator();
+                  lit.hasNext(); ) {
+                binner0.addItem( key, lit.next() );
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * Appends the contents of one LongBinner to another.
+     * Bins are removed from the source binner as they are copied.
+     *
+     * @param  binner0  destination binner
+     * @param  binner1  source binner, emptied by this call
+     */
+    private static void mergeBinners( LongBinner binner0, LongBinner binner1 ) {
+        for ( Iterator it = binner1.getKeyIterator(); it.hasNext(); ) {
+            Object key = it.next();
+            long[] items = binner1.getLongs( key );
+            for ( int i = 0; i < items.length; i++ ) {
+                binner0.addItem( key, items[ i ] );
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * Accumulator for binning row indices from a single table.
+     */
+    private static class LongBinAccumulator {
+        final LongBinner binner_;
+        long nrow_;
+        long nref_;
+        long nexclude_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  table whose rows will be binned
+         */
+        LongBinAccumulator( StarTable table ) {
+            binner_ = Binners.createLongBinner( table.getRowCount() );
+        }
+    }
+
+    /**
+     * Collector which bins row indices from a single table
+     * using this matcher's match engine.
+     */
+    private class LongBinCollector extends RowCollector<LongBinAccumulator> {
+        private final NdRange range_;
+        private final StarTable table_;
+        private final TupleCache tupleCache_;
+
+        /**
+         * Constructor.
+         *
+         * @param  range  range outside which rows are ignored,
+         *                or null for no restriction
+         * @param  table  table whose rows will be binned
+         */
+        LongBinCollector( NdRange range, StarTable table ) {
+            this( range, table, null );
+        }
+
+        /**
+         * Constructor with tuple cache.
+         *
+         * @param  range  range outside which rows are ignored,
+         *                or null for no restriction
+         * @param  table  table whose rows will be binned
+         * @param  tupleCache  cache to populate with the tuples of
+         *                     binned rows, or null
+         */
+        LongBinCollector( NdRange range, StarTable table,
+                          TupleCache tupleCache ) {
+            range_ = range;
+            table_ = table;
+            tupleCache_ = tupleCache;
+        }
+
+        public LongBinAccumulator createAccumulator() {
+            return new LongBinAccumulator( table_ );
+        }
+
+        public void accumulateRow( LongBinAccumulator acc, long lrow,
+                                   Object[] row ) {
+            if ( range_ == null || range_.isInside( row ) ) {
+                Object[] keys = engine.getBins( row );
+                int nkey = keys.length;
+                for ( int ikey = 0; ikey < nkey; ikey++ ) {
+                    acc.binner_.addItem( keys[ ikey ], lrow );
+                }
+                if ( tupleCache_ != null && nkey > 0 ) {
+                    tupleCache_.setTuple( (int) lrow, row );
+                }
+                acc.nref_ += nkey;
+            }
+            else {
+                acc.nexclude_++;
+            }
+            acc.nrow_++;
+        }
+
+        public void combine( LongBinAccumulator acc0,
+                             LongBinAccumulator acc1 ) {
+            mergeBinners( acc0.binner_, acc1.binner_ );
+            acc0.nrow_ += acc1.nrow_;
+            acc0.nref_ += acc1.nref_;
+            acc0.nexclude_ += acc1.nexclude_;
+        }
+    }
+
+    /**
+     * Accumulator for binning RowRefs.
+     */
+    private static class ObjectBinAccumulator {
+        final ObjectBinner binner_;
+        long nrow_;
+        long nexclude_;
+
+        /**
+         * Constructor.
+         *
+         * @param  binner  binner into which RowRefs are accumulated
+         */
+        ObjectBinAccumulator( ObjectBinner binner ) {
+            binner_ = binner;
+        }
+    }
+
+    /**
+     * Collector which bins RowRefs from a single table using this
+     * matcher's match engine.
+     */
+    private class ObjectBinCollector
+            extends RowCollector<ObjectBinAccumulator> {
+        private final int itab_;
+        private final NdRange range_;
+        private final ObjectBinner refBinner_;
+        private final boolean newBins_;
+
+        /**
+         * Constructor.
+         *
+         * @param   itab   index of table whose rows are binned
+         * @param   range  range of row coordinates of interest
+         * @param   refBinner  binner whose existing bins determine which
+         *                     bins may be added to if <code>newBins</code>
+         *                     is false; not modified by accumulation
+         * @param   newBins  whether new bins may be added
+         */
+        ObjectBinCollector( int itab, NdRange range, ObjectBinner refBinner,
+                            boolean newBins ) {
+            itab_ = itab;
+            range_ = range;
+            refBinner_ = refBinner;
+            newBins_ = newBins;
+        }
+
+        public ObjectBinAccumulator createAccumulator() {
+            return new ObjectBinAccumulator( Binners.createObjectBinner() );
+        }
+
+        public void accumulateRow( ObjectBinAccumulator acc, long lrow,
+                                   Object[] row ) {
+            if ( range_.isInside( row ) ) {
+                Object[] keys = engine.getBins( row );
+                int nkey = keys.length;
+                if ( nkey > 0 ) {
+                    RowRef rref = new RowRef( itab_, lrow );
+                    for ( int ikey = 0; ikey < nkey; ikey++ ) {
+                        Object key = keys[ ikey ];
+                        if ( newBins_ || refBinner_.containsKey( key ) ) {
+                            acc.binner_.addItem( key, rref );
+                        }
+                    }
+                }
+            }
+            else {
+                acc.nexclude_++;
+            }
+            acc.nrow_++;
+        }
+
+        public void combine( ObjectBinAccumulator acc0,
+                             ObjectBinAccumulator acc1 ) {
+            mergeBinners( acc0.binner_, acc1.binner_ );
+            acc0.nrow_ += acc1.nrow_;
+            acc0.nexclude_ += acc1.nexclude_;
+        }
+    }
+
     /**
      * Signals the start of a user-visible matching process.
      */
@@ -0,0 +1,348 @@
+package uk.ac.starlink.table.join;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Partitions the RowRefs of a sequence of links into connected groups,
+ * using a union-find structure held in primitive arrays.
+ *
+ * <p>Links are presented one at a time, and are not retained;
+ * each distinct RowRef is packed into a <code>long</code> and assigned
+ * a dense integer identifier, and the identifiers of refs appearing in
+ * the same link are joined.  The cost is around 30 bytes per distinct
+ * RowRef, with no per-ref or per-link objects, so that the links
+ * themselves may be streamed from storage that does not fit in memory.
+ *
+ * <p>Only RowRefs with small non-negative table indices and row indices
+ * less than 2<sup>48</sup> can be packed; {@link #addLink} returns
+ * false for links containing other refs.
+ *
+ * <p>Not thread-safe.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+final class RowRefGrouper {
+
+    private long[] refKeys_;
+    private int[] parents_;
+    private byte[] counts_;
+    private int[] slots_;
+    private int mask_;
+    private int nRef_;
+    private final BitSet doneRoots_;
+    private int[] groupStarts_;
+    private int[] groupMembers_;
+    private int iGroup_;
+
+    private static final int ROW_BITS = 48;
+    private static final long ROW_MASK = ( 1L << ROW_BITS ) - 1;
+    private static final int MAX_TABLE = 1 << ( 63 - ROW_BITS );
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final double MAX_LOAD = 0.7;
+
+    /**
+     * Constructor.
+     */
+    public RowRefGrouper() {
+        refKeys_ = new long[ INITIAL_CAPACITY ];
+        parents_ = new int[ INITIAL_CAPACITY ];
+        counts_ = new byte[ INITIAL_CAPACITY ];
+        slots_ = new int[ INITIAL_CAPACITY ];
+        Arrays.fill( slots_, -1 );
+        mask_ = INITIAL_CAPACITY - 1;
+        doneRoots_ = new BitSet();
+    }
+
+    /**
+     * Adds the refs of a link, joining them into the same group.
+     * This may not be called after {@link #nextGroup}.
+     *
+     * @param  link  link
+     * @return  true if the link was added, false if it contains
+     *          refs that cannot be handled by this object
+     */
+    public boolean addLink( RowLink link ) {
+        if ( groupStarts_ != null ) {
+            throw new IllegalStateException();
+        }
+        int nref = link.size();
+        for ( int i = 0; i < nref; i++ ) {
+            if ( ! isPackable( link.getRef( i ) ) ) {
+                return false;
+            }
+        }
+        int root0 = -1;
+        for ( int i = 0; i < nref; i++ ) {
+            int id = getId( pack( link.getRef( i ) ) );
+            if ( id < 0 ) {
+                return false;
+            }
+            if ( counts_[ id ] < 2 ) {
+                counts_[ id ]++;
+            }
+            int root = findRoot( id );
+            if ( root0 < 0 ) {
+                root0 = root;
+            }
+            else if ( root != root0 ) {
+
+                /* Join to the lower identifier, so that a root is always
+                 * the first ref of its group to have been seen. */
+                if ( root < root0 ) {
+                    parents_[ root0 ] = root;
+                    root0 = root;
+                }
+                else {
+                    parents_[ root ] = root0;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether a previously added link is isolated,
+     * that is none of its refs appears in any other link.
+     * In that case its group consists of exactly its own refs.
+     *
+     * @param  link  link that has been added to this object
+     * @return  true iff link is isolated
+     */
+    public boolean isIsolated( RowLink link ) {
+        int nref = link.size();
+        for ( int i = 0; i < nref; i++ ) {
+            int id = findId( pack( link.getRef( i ) ) );
+            if ( id < 0 || counts_[ id ] != 1 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the group containing the refs of a given link as done,
+     * so that it will not be returned by {@link #nextGroup}.
+     *
+     * @param  link  link that has been added to this object
+     */
+    public void markDone( RowLink link ) {
+        if ( link.size() > 0 ) {
+            int id = findId( pack( link.getRef( 0 ) ) );
+            if ( id >= 0 ) {
+                doneRoots_.set( findRoot( id ) );
+            }
+        }
+    }
+
+    /**
+     * Returns the number of distinct refs added.
+     *
+     * @return  ref count
+     */
+    public int getRefCount() {
+        return nRef_;
+    }
+
+    /**
+     * Returns the refs of the next group not marked as done.
+     * Once this method has been called, no more links may be added.
+     * The hash table is discarded at the first call, to make room for
+     * the group index.
+     *
+     * @return  refs in next group, or null if there are no more groups
+     */
+    public RowRef[] nextGroup() {
+        if ( groupStarts_ == null ) {
+            indexGroups();
+        }
+        while ( iGroup_ < nRef_ ) {
+            int ig = iGroup_++;
+            int i0 = groupStarts_[ ig ];
+            int i1 = groupStarts_[ ig + 1 ];
+            if ( i1 > i0 && ! doneRoots_.get( ig ) ) {
+                RowRef[] refs = new RowRef[ i1 - i0 ];
+                for ( int i = i0; i < i1; i++ ) {
+                    refs[ i - i0 ] = unpack( refKeys_[ groupMembers_[ i ] ] );
+                }
+                return refs;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Prepares arrays listing the members of each group,
+     * indexed by root identifier.
+     */
+    private void indexGroups() {
+        slots_ = null;
+        counts_ = null;
+        int[] starts = new int[ nRef_ + 1 ];
+        for ( int id = 0; id < nRef_; id++ ) {
+            int root = findRoot( id );
+            parents_[ id ] = root;
+            starts[ root + 1 ]++;
+        }
+        for ( int ig = 0; ig < nRef_; ig++ ) {
+            starts[ ig + 1 ] += starts[ ig ];
+        }
+        int[] members = new int[ nRef_ ];
+        int[] fill = new int[ nRef_ ];
+        for ( int id = 0; id < nRef_; id++ ) {
+            int root = parents_[ id ];
+            members[ starts[ root ] + fill[ root ]++ ] = id;
+        }
+        parents_ = null;
+        groupStarts_ = starts;
+        groupMembers_ = members;
+        iGroup_ = 0;
+    }
+
+    /**
+     * Returns the root identifier of the group containing a given
+     * identifier, halving the path as it goes.
+     *
+     * @param  id  ref identifier
+     * @return  root identifier
+     */
+    private int findRoot( int id ) {
+        while ( parents_[ id ] != id ) {
+            parents_[ id ] = parents_[ parents_[ id ] ];
+            id = parents_[ id ];
+        }
+        return id;
+    }
+
+    /**
+     * Returns the identifier for a packed ref, assigning a new one
+     * if it has not been seen before.
+     *
+     * @param  key  packed ref
+     * @return  identifier, or -1 if capacity is exhausted
+     */
+    private int getId( long key ) {
+        int islot = findSlot( key );
+        int id = slots_[ islot ];
+        if ( id >= 0 ) {
+            return id;
+        }
+        if ( nRef_ >= ( mask_ + 1 ) * MAX_LOAD ) {
+            if ( mask_ + 1 >= MAX_CAPACITY ) {
+                return -1;
+            }
+            rehash( ( mask_ + 1 ) * 2 );
+            islot = findSlot( key );
+        }
+        id = nRef_++;
+        if ( id == refKeys_.length ) {
+            int leng = refKeys_.length * 2;
+            long[] keys = new long[ leng ];
+            int[] parents = new int[ leng ];
+            byte[] counts = new byte[ leng ];
+            System.arraycopy( refKeys_, 0, keys, 0, id );
+            System.arraycopy( parents_, 0, parents, 0, id );
+            System.arraycopy( counts_, 0, counts, 0, id );
+            refKeys_ = keys;
+            parents_ = parents;
+            counts_ = counts;
+        }
+        refKeys_[ id ] = key;
+        parents_[ id ] = id;
+        slots_[ islot ] = id;
+        return id;
+    }
+
+    /**
+     * Returns the identifier for a packed ref if it has been seen.
+     *
+     * @param  key  packed ref
+     * @return  identifier, or -1
+     */
+    private int findId( long key ) {
+        return slots_[ findSlot( key ) ];
+    }
+
+    /**
+     * Returns the hash slot at which a packed ref is, or should be, stored.
+     *
+     * @param  key  packed ref
+     * @return  slot index
+     */
+    private int findSlot( long key ) {
+        int islot = hash( key ) & mask_;
+        while ( true ) {
+            int id = slots_[ islot ];
+            if ( id < 0 || refKeys_[ id ] == key ) {
+                return islot;
+            }
+            islot = ( islot + 1 ) & mask_;
+        }
+    }
+
+    /**
+     * Resizes the hash table.
+     *
+     * @param  capacity  new slot count, a power of two
+     */
+    private void rehash( int capacity ) {
+        slots_ = new int[ capacity ];
+        Arrays.fill( slots_, -1 );
+        mask_ = capacity - 1;
+        for ( int id = 0; id < nRef_; id++ ) {
+            slots_[ findSlot( refKeys_[ id ] ) ] = id;
+        }
+    }
+
+    /**
+     * Scrambles the bits of a packed ref to give a well-distributed hash.
+     *
+     * @param  key  key
+     * @return  hash value
+     */
+    private static int hash( long key ) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Indicates whether a RowRef can be packed into a long.
+     *
+     * @param  ref  row ref
+     * @return  true iff <code>pack</code> can be used on ref
+     */
+    private static boolean isPackable( RowRef ref ) {
+        int itab = ref.getTableIndex();
+        long irow = ref.getRowIndex();
+        return itab >= 0 && itab < MAX_TABLE
+            && irow >= 0 && irow <= ROW_MASK;
+    }
+
+    /**
+     * Packs a RowRef into a long.
+     *
+     * @param  ref  packable row ref
+     * @return  packed value
+     */
+    private static long pack( RowRef ref ) {
+        return ( ((long) ref.getTableIndex()) << ROW_BITS )
+             | ref.getRowIndex();
+    }
+
+    /**
+     * Unpacks a RowRef from a long.
+     *
+     * @param  packed  packed value
+     * @return  row ref
+     */
+    private static RowRef unpack( long packed ) {
+        return new RowRef( (int) ( packed >>> ROW_BITS ), packed & ROW_MASK );
+    }
+}
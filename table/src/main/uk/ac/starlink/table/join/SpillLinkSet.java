@@ -0,0 +1,762 @@
+package uk.ac.starlink.table.join;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ByteStore;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.storage.ByteStoreAccess;
+import uk.ac.starlink.table.storage.NioByteStoreAccess;
+
+/**
+ * LinkSet implementation which can hold more links than will fit in
+ * the heap, by spilling them to byte stores obtained from a
+ * {@link uk.ac.starlink.table.StoragePolicy}.
+ *
+ * <p>Links are first accumulated in an in-memory sorted set.
+ * When that reaches a given size, its contents are serialized in order
+ * to a new byte store as a sorted <em>run</em>, and the in-memory set
+ * is cleared.  Runs are merged together as they accumulate so that
+ * there are never more than a few (logarithmically many) of them.
+ * Only a sparse index of record offsets and a deletion bitmap per run
+ * are kept in memory, so the heap cost for spilled links is
+ * a few bits per link.
+ *
+ * <p>Additions do not consult the runs, so a link may be present in
+ * more than one run, or in a run and in memory; such duplicates are
+ * eliminated when runs are merged, and are skipped during iteration,
+ * the earliest-added copy being retained.
+ * Lookups and removals are done by binary search of the runs,
+ * and iteration is a merge of the in-memory set with the runs,
+ * so that links are always iterated over in their natural order;
+ * the {@link #sort} method is therefore a no-op.
+ * The size is counted by a merge pass over the runs when required,
+ * and cached until the next modification.
+ * The links returned from iteration are reconstructed from their
+ * serialized form, so are not in general the same objects as were added,
+ * though they will be equal to them, and the
+ * {@link RowLink2} and {@link PairsRowLink} scores are retained.
+ * As for {@link TreeSetLinkSet}, links which compare as equal are
+ * considered to be the same link.
+ *
+ * <p>Runs are reference counted, so that a run discarded following
+ * removals or merges is only released once no iterator is reading it.
+ * An iterator stops reading each run when it reaches its end;
+ * storage for runs read by iterators abandoned before that point
+ * is not released until this set is garbage collected.
+ *
+ * <p>Not thread-safe.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class SpillLinkSet implements LinkSet {
+
+    private final StoragePolicy policy_;
+    private final int maxMemLinks_;
+    private final List<Run> runs_;
+    private SortedSet memSet_;
+    private int size_;
+
+    /** Number of records between sparse index entries in a run. */
+    private static final int BLOCK_SIZE = 64;
+
+    /** Record type code for a plain RowLink. */
+    private static final byte KIND_LINK = 0;
+
+    /** Record type code for a RowLink2, with score. */
+    private static final byte KIND_LINK2 = 1;
+
+    /** Record type code for a PairsRowLink, with per-ref scores. */
+    private static final byte KIND_PAIRS = 2;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table.join" );
+
+    /**
+     * Constructor.
+     *
+     * @param  policy  storage policy used to obtain byte stores for
+     *                 spilled links; should not discard data
+     * @param  maxMemLinks  maximum number of links held in memory
+     *                      before spilling to a new byte store
+     */
+    public SpillLinkSet( StoragePolicy policy, int maxMemLinks ) {
+        if ( maxMemLinks < 1 ) {
+            throw new IllegalArgumentException( "Bad spill count "
+                                              + maxMemLinks );
+        }
+        policy_ = policy;
+        maxMemLinks_ = maxMemLinks;
+        runs_ = new ArrayList<Run>();
+        memSet_ = new TreeSet();
+        size_ = 0;
+    }
+
+    public void addLink( RowLink link ) {
+        if ( memSet_.add( link ) ) {
+            size_ = -1;
+            if ( memSet_.size() >= maxMemLinks_ ) {
+                try {
+                    spill();
+                }
+                catch ( IOException e ) {
+                    throw storageError( e );
+                }
+            }
+        }
+    }
+
+    public boolean containsLink( RowLink link ) {
+        return memSet_.contains( link ) || findRunLink( link );
+    }
+
+    public boolean removeLink( RowLink link ) {
+
+        /* Remove all copies, since a link may be present in more than
+         * one place. */
+        boolean removed = memSet_.remove( link );
+        try {
+            for ( Run run : runs_ ) {
+                int irec = run.find( link );
+                if ( irec >= 0 ) {
+                    run.delete( irec );
+                    removed = true;
+                }
+            }
+        }
+        catch ( IOException e ) {
+            throw storageError( e );
+        }
+        if ( removed ) {
+            size_ = -1;
+            purgeRuns();
+        }
+        return removed;
+    }
+
+    public Iterator iterator() {
+        purgeRuns();
+        return new MergeIterator();
+    }
+
+    public int size() {
+        if ( size_ < 0 ) {
+            if ( runs_.isEmpty() ) {
+                size_ = memSet_.size();
+            }
+            else {
+                long count = 0;
+                for ( Iterator it = new MergeIterator(); it.hasNext(); ) {
+                    it.next();
+                    count++;
+                }
+                size_ = (int) Math.min( count, Integer.MAX_VALUE );
+            }
+        }
+        return size_;
+    }
+
+    /**
+     * Does nothing, since iteration is always in natural order.
+     *
+     * @return  true
+     */
+    public boolean sort() {
+        return true;
+    }
+
+    /**
+     * Returns the number of links currently held in memory rather than
+     * in spilled storage.
+     *
+     * @return  in-memory link count
+     */
+    int getMemoryCount() {
+        return memSet_.size();
+    }
+
+    /**
+     * Returns the number of byte stores currently holding spilled links.
+     *
+     * @return  run count
+     */
+    int getRunCount() {
+        return runs_.size();
+    }
+
+    /**
+     * Writes the current in-memory links to a new run, and merges
+     * existing runs as required.
+     * Runs are merged so that each is at least twice as large as the
+     * following one, which keeps the run count logarithmic in the
+     * total link count, while each link is rewritten only
+     * a logarithmic number of times.
+     */
+    private void spill() throws IOException {
+        purgeRuns();
+        RunWriter writer = new RunWriter( policy_.makeByteStore() );
+        for ( Iterator it = memSet_.iterator(); it.hasNext(); ) {
+            writer.writeLink( (RowLink) it.next() );
+        }
+        runs_.add( writer.finish() );
+        memSet_ = new TreeSet();
+        int nr;
+        while ( ( nr = runs_.size() ) > 1 &&
+                runs_.get( nr - 2 ).nLive_ < 2 * runs_.get( nr - 1 ).nLive_ ) {
+            Run run1 = runs_.remove( nr - 1 );
+            Run run0 = runs_.remove( nr - 2 );
+            runs_.add( mergeRuns( run0, run1 ) );
+        }
+        logger_.config( "Spilled links to " + runs_.size() + " runs" );
+    }
+
+    /**
+     * Merges two runs to form a new one, omitting deleted records.
+     * Where the same link appears in both, only the copy from the
+     * first run is kept.
+     * The input runs are discarded.
+     *
+     * @param  run0  first run
+     * @param  run1  second run
+     * @return  new run containing the live contents of both inputs
+     */
+    private Run mergeRuns( Run run0, Run run1 ) throws IOException {
+        RunWriter writer = new RunWriter( policy_.makeByteStore() );
+        RunCursor c0 = new RunCursor( run0 );
+        RunCursor c1 = new RunCursor( run1 );
+        while ( c0.link_ != null || c1.link_ != null ) {
+            int cmp = c0.link_ == null ? 1
+                    : c1.link_ == null ? -1
+                    : c0.link_.compareTo( c1.link_ );
+            writer.writeLink( cmp <= 0 ? c0.link_ : c1.link_ );
+            if ( cmp <= 0 ) {
+                c0.advance();
+            }
+            if ( cmp >= 0 ) {
+                c1.advance();
+            }
+        }
+        run0.discard();
+        run1.discard();
+        return writer.finish();
+    }
+
+    /**
+     * Discards any runs all of whose links have been deleted.
+     * Their storage is released once no iterators are reading them.
+     */
+    private void purgeRuns() {
+        for ( Iterator<Run> it = runs_.iterator(); it.hasNext(); ) {
+            Run run = it.next();
+            if ( run.nLive_ == 0 ) {
+                run.discard();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Indicates whether a link is present in any of the spilled runs.
+     *
+     * @param  link  link to find
+     * @return  true iff a live copy of link is in a run
+     */
+    private boolean findRunLink( RowLink link ) {
+        try {
+            for ( Run run : runs_ ) {
+                if ( run.find( link ) >= 0 ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        catch ( IOException e ) {
+            throw storageError( e );
+        }
+    }
+
+    /**
+     * Returns an unchecked exception suitable for reporting a failure
+     * of the backing storage.
+     *
+     * @param  e  cause
+     * @return  new exception
+     */
+    private static RuntimeException storageError( IOException e ) {
+        return (RuntimeException)
+               new IllegalStateException( "Link storage error: "
+                                        + e.getMessage() ).initCause( e );
+    }
+
+    /**
+     * Returns the number of bytes occupied by the serialized form
+     * of a given link.
+     *
+     * @param  link  link
+     * @return  record length in bytes
+     */
+    private static int getRecordLength( RowLink link ) {
+        int nref = link.size();
+        int leng = 1 + 4 + nref * ( 4 + 8 );
+        if ( link instanceof RowLink2 ) {
+            leng += 8;
+        }
+        else if ( link instanceof PairsRowLink ) {
+            leng += nref * 8;
+        }
+        return leng;
+    }
+
+    /**
+     * Reads a link from the current position of a byte store reader.
+     *
+     * @param  in  reader
+     * @return  link
+     */
+    private static RowLink readLink( ByteStoreAccess in ) throws IOException {
+        byte kind = in.readByte();
+        int nref = in.readInt();
+        RowRef[] refs = new RowRef[ nref ];
+        for ( int i = 0; i < nref; i++ ) {
+            int itab = in.readInt();
+            long irow = in.readLong();
+            refs[ i ] = new RowRef( itab, irow );
+        }
+        if ( kind == KIND_LINK ) {
+            return new RowLink( refs );
+        }
+        else if ( kind == KIND_LINK2 ) {
+            RowLink2 link2 = new RowLink2( refs[ 0 ], refs[ 1 ] );
+            link2.setScore( in.readDouble() );
+            return link2;
+        }
+        else if ( kind == KIND_PAIRS ) {
+
+            /* The reference ref is the one without a score. */
+            double[] scores = new double[ nref ];
+            int i0 = -1;
+            for ( int i = 0; i < nref; i++ ) {
+                scores[ i ] = in.readDouble();
+                if ( i0 < 0 && Double.isNaN( scores[ i ] ) ) {
+                    i0 = i;
+                }
+            }
+            i0 = Math.max( i0, 0 );
+            RowRef[] ref1s = new RowRef[ nref - 1 ];
+            double[] scores1 = new double[ nref - 1 ];
+            for ( int i = 0, j = 0; i < nref; i++ ) {
+                if ( i != i0 ) {
+                    ref1s[ j ] = refs[ i ];
+                    scores1[ j ] = scores[ i ];
+                    j++;
+                }
+            }
+            return new PairsRowLink( refs[ i0 ], ref1s, scores1, false );
+        }
+        else {
+            throw new IOException( "Unknown link record type " + kind );
+        }
+    }
+
+    /**
+     * Returns a reader for a set of byte buffers.
+     * The buffers are duplicated so that the reader does not interfere
+     * with other readers of the same data.
+     *
+     * @param  bbufs  buffers
+     * @return  new reader
+     */
+    private static ByteStoreAccess createAccess( ByteBuffer[] bbufs ) {
+        ByteBuffer[] dbufs = new ByteBuffer[ bbufs.length ];
+        for ( int i = 0; i < bbufs.length; i++ ) {
+            dbufs[ i ] = bbufs[ i ].duplicate();
+            dbufs[ i ].position( 0 );
+        }
+        return NioByteStoreAccess.createAccess( dbufs );
+    }
+
+    /**
+     * Sorted sequence of serialized links held in a byte store.
+     */
+    private static class Run {
+        final ByteStore store_;
+        final ByteBuffer[] bbufs_;
+        final long[] blockOffsets_;
+        final int nRec_;
+        final BitSet deleted_;
+        final ByteStoreAccess in_;
+        int nLive_;
+        int nReaders_;
+        boolean isDiscarded_;
+
+        /**
+         * Constructor.
+         *
+         * @param  store  byte store containing serialized links
+         * @param  blockOffsets  byte offsets of every
+         *                       <code>BLOCK_SIZE</code>'th record
+         * @param  nRec  number of records
+         */
+        Run( ByteStore store, long[] blockOffsets, int nRec )
+                throws IOException {
+            store_ = store;
+            bbufs_ = store.toByteBuffers();
+            blockOffsets_ = blockOffsets;
+            nRec_ = nRec;
+            nLive_ = nRec;
+            deleted_ = new BitSet();
+            in_ = createAccess( bbufs_ );
+        }
+
+        /**
+         * Returns the index of the live record equal to a given link.
+         *
+         * @param  link  target link
+         * @return  record index, or -1 if not present
+         */
+        int find( RowLink link ) throws IOException {
+            if ( nLive_ == 0 ) {
+                return -1;
+            }
+
+            /* Binary search for the last block whose first record
+             * is not greater than the target. */
+            int lo = 0;
+            int hi = blockOffsets_.length - 1;
+            while ( lo < hi ) {
+                int mid = ( lo + hi + 1 ) >>> 1;
+                in_.seek( blockOffsets_[ mid ] );
+                if ( readLink( in_ ).compareTo( link ) <= 0 ) {
+                    lo = mid;
+                }
+                else {
+                    hi = mid - 1;
+                }
+            }
+
+            /* Scan within that block. */
+            in_.seek( blockOffsets_[ lo ] );
+            int irec0 = lo * BLOCK_SIZE;
+            int irec1 = Math.min( irec0 + BLOCK_SIZE, nRec_ );
+            for ( int irec = irec0; irec < irec1; irec++ ) {
+                int cmp = readLink( in_ ).compareTo( link );
+                if ( cmp == 0 ) {
+                    return deleted_.get( irec ) ? -1 : irec;
+                }
+                else if ( cmp > 0 ) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Marks a record as deleted.
+         *
+         * @param  irec  record index
+         */
+        void delete( int irec ) {
+            if ( ! deleted_.get( irec ) ) {
+                deleted_.set( irec );
+                nLive_--;
+            }
+        }
+
+        /**
+         * Registers a reader of this run's records.
+         * Each call must be matched by a call to {@link #release}.
+         */
+        void acquire() {
+            nReaders_++;
+        }
+
+        /**
+         * Deregisters a reader of this run's records.
+         */
+        void release() {
+            if ( --nReaders_ == 0 && isDiscarded_ ) {
+                store_.close();
+            }
+        }
+
+        /**
+         * Indicates that this run is no longer part of the set.
+         * Its storage is released now, or when the last reader
+         * is released.
+         */
+        void discard() {
+            if ( ! isDiscarded_ ) {
+                isDiscarded_ = true;
+                if ( nReaders_ == 0 ) {
+                    store_.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a sequence of links in order to a byte store to form a Run.
+     */
+    private static class RunWriter {
+        private final ByteStore store_;
+        private final DataOutputStream out_;
+        private long[] blockOffsets_;
+        private long offset_;
+        private int nRec_;
+
+        /**
+         * Constructor.
+         *
+         * @param  store  empty byte store
+         */
+        RunWriter( ByteStore store ) {
+            store_ = store;
+            out_ = new DataOutputStream(
+                       new BufferedOutputStream( store.getOutputStream() ) );
+            blockOffsets_ = new long[ 64 ];
+        }
+
+        /**
+         * Writes a link.  Links must be presented in natural order.
+         *
+         * @param  link  link
+         */
+        void writeLink( RowLink link ) throws IOException {
+            if ( nRec_ % BLOCK_SIZE == 0 ) {
+                int iblock = nRec_ / BLOCK_SIZE;
+                if ( iblock == blockOffsets_.length ) {
+                    long[] offs = new long[ iblock * 2 ];
+                    System.arraycopy( blockOffsets_, 0, offs, 0, iblock );
+                    blockOffsets_ = offs;
+                }
+                blockOffsets_[ iblock ] = offset_;
+            }
+            int nref = link.size();
+            byte kind = link instanceof RowLink2 ? KIND_LINK2
+                      : link instanceof PairsRowLink ? KIND_PAIRS
+                      : KIND_LINK;
+            out_.writeByte( kind );
+            out_.writeInt( nref );
+            for ( int i = 0; i < nref; i++ ) {
+                RowRef ref = link.getRef( i );
+                out_.writeInt( ref.getTableIndex() );
+                out_.writeLong( ref.getRowIndex() );
+            }
+            if ( kind == KIND_LINK2 ) {
+                out_.writeDouble( ((RowLink2) link).getScore() );
+            }
+            else if ( kind == KIND_PAIRS ) {
+                for ( int i = 0; i < nref; i++ ) {
+                    out_.writeDouble( ((PairsRowLink) link).getScore( i ) );
+                }
+            }
+            offset_ += getRecordLength( link );
+            nRec_++;
+        }
+
+        /**
+         * Completes writing and returns the resulting run.
+         *
+         * @return  run
+         */
+        Run finish() throws IOException {
+            out_.flush();
+            if ( store_.getLength() != offset_ ) {
+                store_.close();
+                throw new IOException( "Byte store lost data"
+                                     + " (discarding storage policy?)" );
+            }
+            int nblock = ( nRec_ + BLOCK_SIZE - 1 ) / BLOCK_SIZE;
+            long[] offs = new long[ nblock ];
+            System.arraycopy( blockOffsets_, 0, offs, 0, nblock );
+            return new Run( store_, offs, nRec_ );
+        }
+    }
+
+    /**
+     * Sequential reader over the live records of a run.
+     * The run is registered as being read until the end is reached.
+     */
+    private static class RunCursor {
+        final Run run_;
+        final ByteStoreAccess in_;
+        int irec_;
+        RowLink link_;
+
+        /**
+         * Constructor.  The cursor is positioned at the first live record.
+         *
+         * @param  run  run
+         */
+        RunCursor( Run run ) throws IOException {
+            run_ = run;
+            run.acquire();
+            in_ = createAccess( run.bbufs_ );
+            irec_ = -1;
+            advance();
+        }
+
+        /**
+         * Moves to the next live record.  On exit, link_ is null if
+         * there are no more records.
+         */
+        void advance() throws IOException {
+            if ( irec_ < run_.nRec_ ) {
+                link_ = null;
+                while ( link_ == null && ++irec_ < run_.nRec_ ) {
+                    RowLink link = readLink( in_ );
+                    if ( ! run_.deleted_.get( irec_ ) ) {
+                        link_ = link;
+                    }
+                }
+                if ( link_ == null ) {
+                    run_.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Iterator which merges the in-memory links with those from the runs.
+     * Where the same link is present in more than one place it is
+     * returned only once, the copy from the earliest run being preferred.
+     */
+    private class MergeIterator implements Iterator {
+        private final RunCursor[] cursors_;
+        private final int[] lastRecs_;
+        private RowLink memNext_;
+        private RowLink lastLink_;
+        private boolean lastInMem_;
+        private boolean canRemove_;
+
+        /**
+         * Constructor.
+         */
+        MergeIterator() {
+            cursors_ = new RunCursor[ runs_.size() ];
+            lastRecs_ = new int[ cursors_.length ];
+            try {
+                for ( int i = 0; i < cursors_.length; i++ ) {
+                    cursors_[ i ] = new RunCursor( runs_.get( i ) );
+                }
+            }
+            catch ( IOException e ) {
+                throw storageError( e );
+            }
+            memNext_ = memSet_.isEmpty() ? null : (RowLink) memSet_.first();
+        }
+
+        public boolean hasNext() {
+            if ( memNext_ != null ) {
+                return true;
+            }
+            for ( int i = 0; i < cursors_.length; i++ ) {
+                if ( cursors_[ i ].link_ != null ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public Object next() {
+            RowLink link = null;
+            for ( int i = 0; i < cursors_.length; i++ ) {
+                RowLink clink = cursors_[ i ].link_;
+                if ( clink != null &&
+                     ( link == null || clink.compareTo( link ) < 0 ) ) {
+                    link = clink;
+                }
+            }
+            if ( memNext_ != null &&
+                 ( link == null || memNext_.compareTo( link ) < 0 ) ) {
+                link = memNext_;
+            }
+            if ( link == null ) {
+                throw new NoSuchElementException();
+            }
+            lastLink_ = link;
+            canRemove_ = true;
+
+            /* Step past all copies of the link. */
+            lastInMem_ = memNext_ != null && memNext_.compareTo( link ) == 0;
+            if ( lastInMem_ ) {
+                memNext_ = nextMemLink( memNext_ );
+            }
+            try {
+                for ( int i = 0; i < cursors_.length; i++ ) {
+                    RunCursor cursor = cursors_[ i ];
+                    if ( cursor.link_ != null &&
+                         cursor.link_.compareTo( link ) == 0 ) {
+                        lastRecs_[ i ] = cursor.irec_;
+                        cursor.advance();
+                    }
+                    else {
+                        lastRecs_[ i ] = -1;
+                    }
+                }
+            }
+            catch ( IOException e ) {
+                throw storageError( e );
+            }
+            return link;
+        }
+
+        public void remove() {
+            if ( ! canRemove_ ) {
+                throw new IllegalStateException();
+            }
+            canRemove_ = false;
+            size_ = -1;
+            if ( lastInMem_ ) {
+                memSet_.remove( lastLink_ );
+            }
+            boolean isStale = false;
+            for ( int i = 0; i < cursors_.length; i++ ) {
+                if ( lastRecs_[ i ] >= 0 ) {
+                    Run run = cursors_[ i ].run_;
+                    if ( run.isDiscarded_ ) {
+                        isStale = true;
+                    }
+                    else {
+                        run.delete( lastRecs_[ i ] );
+                    }
+                }
+            }
+
+            /* If a run has been merged into another since this iterator
+             * was created, remove the link from wherever it is now. */
+            if ( isStale ) {
+                removeLink( lastLink_ );
+            }
+        }
+
+        /**
+         * Returns the in-memory link following a given one.
+         * This is done by lookup rather than using a set iterator,
+         * so that removals from the set do not invalidate iteration.
+         *
+         * @param  link  current link
+         * @return  next in-memory link, or null
+         */
+        private RowLink nextMemLink( RowLink link ) {
+            for ( Iterator it = memSet_.tailSet( link ).iterator();
+                  it.hasNext(); ) {
+                RowLink next = (RowLink) it.next();
+                if ( next.compareTo( link ) > 0 ) {
+                    return next;
+                }
+            }
+            return null;
+        }
+    }
+}
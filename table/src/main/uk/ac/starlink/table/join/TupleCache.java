@@ -0,0 +1,46 @@
+package uk.ac.starlink.table.join;
+
+/**
+ * Holds the match tuples for the rows of a table in a form which
+ * allows fast scoring of candidate pairs.
+ * Match engines which can precompute per-row quantities
+ * (for instance unit vectors for sky positions) may supply
+ * implementations of this class, so that pair scoring can be done
+ * without re-reading table rows or repeating per-row calculations
+ * for every candidate pair.
+ *
+ * <p>The {@link #setTuple} method may be called concurrently from
+ * different threads for different rows.  The query methods
+ * must be used from a single thread.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+abstract class TupleCache {
+
+    /**
+     * Stores the tuple for a given row.
+     *
+     * @param  irow  row index
+     * @param  tuple  match tuple for row
+     */
+    public abstract void setTuple( int irow, Object[] tuple );
+
+    /**
+     * Sets the query tuple against which cached rows will be scored.
+     *
+     * @param  tuple  match tuple
+     */
+    public abstract void setQuery( Object[] tuple );
+
+    /**
+     * Returns the match score between the current query tuple and
+     * the tuple cached for a given row.
+     * The result is the same as that of the match engine's
+     * <code>matchScore(query,tuple)</code> method.
+     *
+     * @param  irow  row index, for which {@link #setTuple} has been called
+     * @return  match score, or a negative value for no match
+     */
+    public abstract double score( int irow );
+}
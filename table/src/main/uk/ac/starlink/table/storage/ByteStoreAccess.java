@@ -13,7 +13,7 @@ import java.io.IOException;
  * @author   Mark Taylor
  * @since    20 Aug 2010
  */
-interface ByteStoreAccess {
+public interface ByteStoreAccess {
 
     /**
      * Reads a byte from the current position.
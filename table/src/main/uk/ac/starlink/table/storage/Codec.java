@@ -3,6 +3,7 @@ package uk.ac.starlink.table.storage;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.ValueInfo;
 
@@ -55,6 +56,33 @@ abstract class Codec {
      */
     abstract int getItemSize();
 
+    /**
+     * Indicates whether this codec serializes scalar numeric values
+     * which can be read using {@link #decodeDouble}.
+     * The default implementation returns false.
+     *
+     * @return  true iff <code>decodeDouble</code> may be used
+     */
+    boolean isNumeric() {
+        return false;
+    }
+
+    /**
+     * Deserializes a numeric value from an absolute position in a buffer
+     * as a double, without creating any objects.
+     * The buffer's position is not affected, so this method may be
+     * called concurrently on the same buffer.
+     * Only permitted if {@link #isNumeric} returns true;
+     * the default implementation throws an UnsupportedOperationException.
+     *
+     * @param  buf  buffer containing serialized data
+     * @param  pos  offset in buffer of start of serialized item
+     * @return   deserialized value, or NaN for null
+     */
+    double decodeDouble( ByteBuffer buf, int pos ) {
+        throw new UnsupportedOperationException( "Not numeric" );
+    }
+
     /**
      * Returns a codec suitable for serializing/deserializing the contents
      * of a given ValueInfo.  If no codec can be supplied to match
@@ -171,6 +199,12 @@ abstract class Codec {
         public int getItemSize() {
             return 1;
         }
+        boolean isNumeric() {
+            return true;
+        }
+        double decodeDouble( ByteBuffer buf, int pos ) {
+            return buf.get( pos );
+        }
     }
 
     private static class ShortCodec extends Codec {
@@ -184,6 +218,12 @@ abstract class Codec {
         public int getItemSize() {
             return 2;
         }
+        boolean isNumeric() {
+            return true;
+        }
+        double decodeDouble( ByteBuffer buf, int pos ) {
+            return buf.getShort( pos );
+        }
     }
 
     private static class IntCodec extends Codec {
@@ -197,6 +237,12 @@ abstract class Codec {
         public int getItemSize() {
             return 4;
         }
+        boolean isNumeric() {
+            return true;
+        }
+        double decodeDouble( ByteBuffer buf, int pos ) {
+            return buf.getInt( pos );
+        }
     }
 
     private static class LongCodec extends Codec {
@@ -210,6 +256,12 @@ abstract class Codec {
         public int getItemSize() {
             return 8;
         }
+        boolean isNumeric() {
+            return true;
+        }
+        double decodeDouble( ByteBuffer buf, int pos ) {
+            return buf.getLong( pos );
+        }
     }
 
     private static class CharCodec extends Codec {
@@ -237,6 +289,12 @@ abstract class Codec {
         public int getItemSize() {
             return 4;
         }
+        boolean isNumeric() {
+            return true;
+        }
+        double decodeDouble( ByteBuffer buf, int pos ) {
+            return buf.getFloat( pos );
+        }
     }
 
     private static class DoubleCodec extends Codec {
@@ -251,6 +309,12 @@ abstract class Codec {
         public int getItemSize() {
             return 8;
         }
+        boolean isNumeric() {
+            return true;
+        }
+        double decodeDouble( ByteBuffer buf, int pos ) {
+            return buf.getDouble( pos );
+        }
     }
 
     private static class BooleanCodec extends Codec {
@@ -324,6 +388,16 @@ abstract class Codec {
         public int getItemSize() {
             return itemSize_;
         }
+
+        boolean isNumeric() {
+            return baseCodec_.isNumeric();
+        }
+
+        double decodeDouble( ByteBuffer buf, int pos ) {
+            return buf.get( pos ) == OK
+                 ? baseCodec_.decodeDouble( buf, pos + 1 )
+                 : Double.NaN;
+        }
     }
 
     /**
@@ -11,7 +11,7 @@ import java.io.IOException;
  * <ol>
  * <li>Zero or more calls of {@link #acceptCell}</li>
  * <li>A call of {@link #endCells}</li>
- * <li>Zero or more calls of {@link #readCell}</li>
+ * <li>Zero or more calls of {@link #readCell} or {@link #readDouble}</li>
  * <li>Optionally, a call to {@link #dispose}</li>
  * <ol>
  * Behaviour will be undefined if you violate this sequence.
@@ -44,6 +44,27 @@ interface ColumnStore {
      */
     Object readCell( long lrow ) throws IOException;
 
+    /**
+     * Indicates whether {@link #readDouble} may be used to read
+     * values from this store.
+     *
+     * @return  true iff this store holds scalar numeric values
+     *          that can be read without object creation
+     */
+    boolean hasDoubles();
+
+    /**
+     * Retrieves a numeric datum from this store as a double,
+     * without creating any objects.
+     * Only permitted if {@link #hasDoubles} returns true.
+     * This method is safe for concurrent use.
+     *
+     * @param  lrow  index of datum to retrieve
+     * @return  the <code>lrow</code><sup>th</sup> written value,
+     *          or NaN if it was null
+     */
+    double readDouble( long lrow ) throws IOException;
+
     /**
      * Releases any resources.  This object may not subsequently be used.
      */
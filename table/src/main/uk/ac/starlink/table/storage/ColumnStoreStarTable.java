@@ -1,6 +1,9 @@
 package uk.ac.starlink.table.storage;
 
 import java.io.IOException;
+import uk.ac.starlink.table.BlockIndexAccess;
+import uk.ac.starlink.table.ColumnBlockIndex;
+import uk.ac.starlink.table.DoubleCellAccess;
 import uk.ac.starlink.table.RandomRowSequence;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
@@ -9,15 +12,23 @@ import uk.ac.starlink.table.WrapperStarTable;
 /**
  * StarTable implementation which retrieves its data from 
  * {@link ColumnStore} objects.
+ * Scalar numeric columns can be read without object creation
+ * using the {@link uk.ac.starlink.table.DoubleCellAccess} methods,
+ * row ranges may be read concurrently using the
+ * {@link uk.ac.starlink.table.RowRangeAccess} methods,
+ * and block indexes supplied at construction time are available using the
+ * {@link uk.ac.starlink.table.BlockIndexAccess} methods.
  *
  * @author   Mark Taylor
  * @since    21 Jun 2006
  */
-class ColumnStoreStarTable extends WrapperStarTable {
+class ColumnStoreStarTable extends WrapperStarTable
+                           implements DoubleCellAccess, BlockIndexAccess {
 
     private final long nrow_;
     private final int ncol_;
     private final ColumnStore[] colStores_;
+    private final ColumnBlockIndex[] indexes_;
 
     /**
      * Constructor.
@@ -26,13 +37,17 @@ class ColumnStoreStarTable extends WrapperStarTable {
      * @param  nrow       number of rows in this table
      * @param  colStores  array of ColumnStore objects, one for each 
      *                    column in the table
+     * @param  indexes    array of block indexes, one for each column
+     *                    in the table, elements may be null
      */
     public ColumnStoreStarTable( StarTable template, long nrow,
-                                 ColumnStore[] colStores ) {
+                                 ColumnStore[] colStores,
+                                 ColumnBlockIndex[] indexes ) {
         super( template );
         nrow_ = nrow;
         ncol_ = template.getColumnCount();
         colStores_ = colStores;
+        indexes_ = indexes;
     }
 
     public boolean isRandom() {
@@ -47,6 +62,23 @@ class ColumnStoreStarTable extends WrapperStarTable {
         return colStores_[ icol ].readCell( lrow );
     }
 
+    public boolean hasDoubleCells( int icol ) {
+        return colStores_[ icol ].hasDoubles();
+    }
+
+    public double getDouble( long lrow, int icol ) throws IOException {
+        return colStores_[ icol ].readDouble( lrow );
+    }
+
+    public void readDoubleColumn( int icol, long irow0, int nrow,
+                                  double[] buf, int off )
+            throws IOException {
+        ColumnStore colStore = colStores_[ icol ];
+        for ( int i = 0; i < nrow; i++ ) {
+            buf[ off + i ] = colStore.readDouble( irow0 + i );
+        }
+    }
+
     public Object[] getRow( long lrow ) throws IOException {
         Object[] row = new Object[ ncol_ ];
         for ( int icol = 0; icol < ncol_; icol++ ) {
@@ -58,4 +90,16 @@ class ColumnStoreStarTable extends WrapperStarTable {
     public RowSequence getRowSequence() throws IOException {
         return new RandomRowSequence( this );
     }
+
+    public ColumnBlockIndex getBlockIndex( int icol ) {
+        return indexes_[ icol ];
+    }
+
+    public boolean hasRowRanges() {
+        return true;
+    }
+
+    public RowSequence getRowRangeSequence( long irow0, long nrow ) {
+        return new RandomRowSequence( this, irow0, nrow );
+    }
 }
@@ -61,6 +61,14 @@ class IndexedMappedColumnStore implements ColumnStore {
         return codec_.decode( auxAccess_ );
     }
 
+    public boolean hasDoubles() {
+        return false;
+    }
+
+    public double readDouble( long lrow ) {
+        throw new UnsupportedOperationException();
+    }
+
     public void dispose() {
         try {
             auxRaf_.close();
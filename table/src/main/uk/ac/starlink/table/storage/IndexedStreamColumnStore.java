@@ -79,6 +79,14 @@ class IndexedStreamColumnStore implements ColumnStore {
         return codec_.decode( dataIn_ );
     }
 
+    public boolean hasDoubles() {
+        return false;
+    }
+
+    public double readDouble( long lrow ) {
+        throw new UnsupportedOperationException();
+    }
+
     public void dispose() {
         try {
             dataOut_.close();
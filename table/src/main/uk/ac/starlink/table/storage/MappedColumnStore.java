@@ -16,6 +16,7 @@ class MappedColumnStore implements ColumnStore {
 
     private final Codec codec_;
     private final int itemSize_;
+    private final ByteBuffer bbuf_;
     private final BufferIOAccess access_;
 
     /**
@@ -29,6 +30,7 @@ class MappedColumnStore implements ColumnStore {
     public MappedColumnStore( Codec codec, ByteBuffer bbuf ) {
         codec_ = codec;
         itemSize_ = codec.getItemSize();
+        bbuf_ = bbuf;
         access_ = new BufferIOAccess( bbuf );
         if ( itemSize_ < 0 ) {
             throw new IllegalArgumentException( "Must have fixed size codec" );
@@ -48,6 +50,14 @@ class MappedColumnStore implements ColumnStore {
         return codec_.decode( access_ );
     }
 
+    public boolean hasDoubles() {
+        return codec_.isNumeric();
+    }
+
+    public double readDouble( long lrow ) {
+        return codec_.decodeDouble( bbuf_, (int) ( lrow * itemSize_ ) );
+    }
+
     public void dispose() {
     }
 
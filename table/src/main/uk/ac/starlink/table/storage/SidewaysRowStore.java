@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnBlockIndex;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.RowStore;
 import uk.ac.starlink.table.StarTable;
@@ -18,6 +19,9 @@ import uk.ac.starlink.table.TableFormatException;
  * RowStore implementation which stores data cell data in a column-oriented
  * fashion, so that members of the same column, rather than of the same row, 
  * are stored contiguously on disk.
+ * While the data is being stored, a {@link ColumnBlockIndex} is
+ * accumulated for each scalar numeric column, and made available
+ * from the resulting table.
  *
  * @author   Mark Taylor
  * @since    21 Jun 2006
@@ -30,6 +34,7 @@ public class SidewaysRowStore implements RowStore {
     private StarTable template_;
     private long lrow_;
     private ColumnStore[] colStores_;
+    private ColumnBlockIndex.Builder[] indexBuilders_;
     private StarTable storedTable_;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.table.storage" );
@@ -98,6 +103,15 @@ public class SidewaysRowStore implements RowStore {
             codecs[ icol ] = codec;
         }
 
+        /* Prepare to accumulate block indexes for numeric columns. */
+        indexBuilders_ = new ColumnBlockIndex.Builder[ ncol_ ];
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            if ( codecs[ icol ].isNumeric() ) {
+                indexBuilders_[ icol ] = new ColumnBlockIndex
+                   .Builder( ColumnBlockIndex.DEFAULT_BLOCK_SIZE );
+            }
+        }
+
         /* Prepare an array of ColumnStore objects.  Different implementations
          * must be selected according to whether the size of each item
          * is fixed or variable, and whether the number of rows is known
@@ -179,6 +193,9 @@ public class SidewaysRowStore implements RowStore {
         }
         for ( int icol = 0; icol < ncol_; icol++ ) {
             colStores_[ icol ].acceptCell( row[ icol ] );
+            if ( indexBuilders_[ icol ] != null ) {
+                indexBuilders_[ icol ].acceptValue( row[ icol ] );
+            }
         }
         lrow_++;
     }
@@ -190,10 +207,16 @@ public class SidewaysRowStore implements RowStore {
         if ( storedTable_ != null ) {
             throw new IllegalStateException( "endRows already called" );
         }
+        ColumnBlockIndex[] indexes = new ColumnBlockIndex[ ncol_ ];
         for ( int icol = 0; icol < ncol_; icol++ ) {
             colStores_[ icol ].endCells();
+            if ( indexBuilders_[ icol ] != null ) {
+                indexes[ icol ] = indexBuilders_[ icol ].build();
+            }
         }
-        storedTable_ = new ColumnStoreStarTable( template_, lrow_, colStores_ );
+        indexBuilders_ = null;
+        storedTable_ = new ColumnStoreStarTable( template_, lrow_, colStores_,
+                                                 indexes );
     }
 
     public StarTable getStarTable() {
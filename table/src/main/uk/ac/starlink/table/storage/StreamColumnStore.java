@@ -23,6 +23,7 @@ class StreamColumnStore implements ColumnStore {
     private final DataOutputStream dataOut_;
     private final int itemSize_;
     private long nrow_;
+    private ByteBuffer dataBuf_;
     private ByteStoreAccess dataIn_;
 
     /**
@@ -57,6 +58,7 @@ class StreamColumnStore implements ColumnStore {
                          .getChannel()
                          .map( FileChannel.MapMode.READ_ONLY, 0,
                                itemSize_ * nrow_ );
+        dataBuf_ = bbuf;
         dataIn_ = new SingleNioAccess( bbuf );
     }
 
@@ -65,6 +67,14 @@ class StreamColumnStore implements ColumnStore {
         return codec_.decode( dataIn_ );
     }
 
+    public boolean hasDoubles() {
+        return codec_.isNumeric();
+    }
+
+    public double readDouble( long lrow ) {
+        return codec_.decodeDouble( dataBuf_, (int) ( lrow * itemSize_ ) );
+    }
+
     public void dispose() {
         try {
             dataOut_.close();
@@ -0,0 +1,161 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import uk.ac.starlink.table.join.IsotropicCartesianMatchEngine;
+import uk.ac.starlink.table.join.LinkSet;
+import uk.ac.starlink.table.join.MatchEngine;
+import uk.ac.starlink.table.join.PairMode;
+import uk.ac.starlink.table.join.RowMatcher;
+import uk.ac.starlink.util.TestCase;
+
+public class ColumnBlockIndexTest extends TestCase {
+
+    private final Random rnd_;
+
+    public ColumnBlockIndexTest( String name ) {
+        super( name );
+        rnd_ = new Random( 44901L );
+    }
+
+    public void testBuilder() {
+        ColumnBlockIndex.Builder builder = new ColumnBlockIndex.Builder( 10 );
+        for ( int i = 0; i < 35; i++ ) {
+            builder.accept( i == 22 ? Double.NaN : i );
+        }
+        ColumnBlockIndex index = builder.build();
+        assertEquals( 10, index.getBlockSize() );
+        assertEquals( 4, index.getBlockCount() );
+        assertEquals( 35L, index.getRowCount() );
+        assertEquals( 30L, index.getBlockStart( 3 ) );
+        assertEquals( 5, index.getBlockLength( 3 ) );
+        assertEquals( 0.0, index.getMinimum() );
+        assertEquals( 34.0, index.getMaximum() );
+        assertTrue( index.hasBlanks() );
+
+        assertEquals( ColumnBlockIndex.INSIDE,
+                      index.getBlockState( 0, -1, 9.5 ) );
+        assertEquals( ColumnBlockIndex.PARTIAL,
+                      index.getBlockState( 0, 0, 9.5 ) );
+        assertEquals( ColumnBlockIndex.OUTSIDE,
+                      index.getBlockState( 1, 20, 100 ) );
+        assertEquals( ColumnBlockIndex.PARTIAL,
+                      index.getBlockState( 2, Double.NEGATIVE_INFINITY,
+                                              Double.POSITIVE_INFINITY ) );
+        assertEquals( ColumnBlockIndex.INSIDE,
+                      index.getBlockState( 3, Double.NEGATIVE_INFINITY,
+                                              Double.POSITIVE_INFINITY ) );
+        assertEquals( ColumnBlockIndex.PARTIAL,
+                      index.getBlockState( 3, 31, 100 ) );
+
+        ColumnBlockIndex empty = new ColumnBlockIndex.Builder( 10 ).build();
+        assertEquals( 0, empty.getBlockCount() );
+        assertTrue( Double.isNaN( empty.getMinimum() ) );
+        assertFalse( empty.hasBlanks() );
+    }
+
+    public void testStored() throws IOException {
+        StarTable table = createTable( 10000, 0 );
+        assertNull( Tables.getBlockIndex( table, 0 ) );
+        assertNull( Tables.getBlockIndex( StoragePolicy.PREFER_MEMORY
+                                         .copyTable( table ), 0 ) );
+        StarTable stored = StoragePolicy.SIDEWAYS.copyTable( table );
+        for ( int ic = 0; ic < 2; ic++ ) {
+            ColumnBlockIndex index = Tables.getBlockIndex( stored, ic );
+            ColumnBlockIndex rindex =
+                ColumnBlockIndex
+               .readIndex( table, ic, ColumnBlockIndex.DEFAULT_BLOCK_SIZE );
+            assertEquals( 10000L, index.getRowCount() );
+            assertEquals( rindex.getBlockCount(), index.getBlockCount() );
+            assertEquals( rindex.getMinimum(), index.getMinimum() );
+            assertEquals( rindex.getMaximum(), index.getMaximum() );
+        }
+        assertNull( Tables.getBlockIndex( stored, 2 ) );
+        assertNotNull( Tables
+                      .getBlockIndex( new MetaCopyStarTable( stored ), 0 ) );
+        ColumnBlockIndex yIndex = Tables.getBlockIndex( stored, 1 );
+        assertTrue( yIndex ==
+                    Tables.getBlockIndex(
+                        new ColumnPermutedStarTable( stored,
+                                                     new int[] { 2, 1 } ),
+                        1 ) );
+    }
+
+    public void testMatch() throws Exception {
+        StarTable t1 = createTable( 20000, 0.0 );
+        StarTable t2 = createTable( 15000, 0.6 );
+        StarTable s1 = StoragePolicy.SIDEWAYS.copyTable( t1 );
+        StarTable s2 = StoragePolicy.SIDEWAYS.copyTable( t2 );
+        assertNotNull( Tables.getBlockIndex( s1, 0 ) );
+
+        /* Row-permuted views provide typed access but not block indexes,
+         * so the typed range calculation gets used. */
+        StarTable p1 = identityView( s1 );
+        StarTable p2 = identityView( s2 );
+        assertNull( Tables.getBlockIndex( p1, 0 ) );
+        assertTrue( Tables.hasDoubleCells( p1, 1 ) );
+        MatchEngine engine =
+            new IsotropicCartesianMatchEngine( 2, 0.003, false );
+        PairMode[] modes = PairMode.values();
+        for ( int im = 0; im < modes.length; im++ ) {
+            List links = toList( new RowMatcher( engine,
+                                                 new StarTable[] { t1, t2 } )
+                                .findPairMatches( modes[ im ] ) );
+            List slinks = toList( new RowMatcher( engine,
+                                                  new StarTable[] { s1, s2 } )
+                                 .findPairMatches( modes[ im ] ) );
+            List plinks = toList( new RowMatcher( engine,
+                                                  new StarTable[] { p1, p2 } )
+                                 .findPairMatches( modes[ im ] ) );
+            assertTrue( links.size() > 10 );
+            assertEquals( links, slinks );
+            assertEquals( links, plinks );
+        }
+    }
+
+    /**
+     * Returns a table sorted on its first column, with X values
+     * running from x0 to x0+1.
+     */
+    private StarTable createTable( int nrow, double x0 ) {
+        double[] xs = new double[ nrow ];
+        float[] ys = new float[ nrow ];
+        String[] labels = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = x0 + ( i + rnd_.nextDouble() ) / nrow;
+            ys[ i ] = i % 1000 == 0 ? Float.NaN : rnd_.nextFloat() * 0.2f;
+            labels[ i ] = "r" + i;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "X", xs ) );
+        table.addColumn( ArrayColumn.makeColumn( "Y", ys ) );
+        table.addColumn( ArrayColumn.makeColumn( "Label", labels ) );
+        return table;
+    }
+
+    /**
+     * Returns a view of the numeric columns of a table,
+     * with an identity row permutation.
+     */
+    private static StarTable identityView( StarTable table ) {
+        long[] rowMap = new long[ (int) table.getRowCount() ];
+        for ( int i = 0; i < rowMap.length; i++ ) {
+            rowMap[ i ] = i;
+        }
+        return new RowPermutedStarTable(
+                   new ColumnPermutedStarTable( table, new int[] { 0, 1 } ),
+                   rowMap );
+    }
+
+    private static List toList( LinkSet links ) {
+        links.sort();
+        List list = new ArrayList();
+        for ( Iterator it = links.iterator(); it.hasNext(); ) {
+            list.add( it.next() );
+        }
+        return list;
+    }
+}
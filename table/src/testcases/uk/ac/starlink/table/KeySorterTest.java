@@ -0,0 +1,133 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import uk.ac.starlink.util.TestCase;
+
+public class KeySorterTest extends TestCase {
+
+    private final Random rnd_;
+
+    public KeySorterTest( String name ) {
+        super( name );
+        rnd_ = new Random( 23001L );
+    }
+
+    public void testSort() throws IOException {
+        int nrow = 120000;
+        Object[] ivals = new Object[ nrow ];
+        Object[] dvals = new Object[ nrow ];
+        Object[] svals = new Object[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            int k = rnd_.nextInt( 40 );
+            ivals[ i ] = k == 0 ? null : new Integer( k % 7 - 3 );
+            dvals[ i ] = k == 1 ? new Double( Double.NaN )
+                                : new Double( rnd_.nextInt( 300 ) * 0.5 );
+            svals[ i ] = k == 2 ? null : "s" + rnd_.nextInt( 1000 );
+        }
+        KeySorter.KeyReader[][] keySets = new KeySorter.KeyReader[][] {
+            new KeySorter.KeyReader[] { createReader( Integer.class, ivals ) },
+            new KeySorter.KeyReader[] { createReader( Integer.class, ivals ),
+                                        createReader( Double.class, dvals ) },
+            new KeySorter.KeyReader[] { createReader( String.class, svals ),
+                                        createReader( Integer.class, ivals ) },
+        };
+        boolean[] flags = new boolean[] { true, false };
+        for ( int ik = 0; ik < keySets.length; ik++ ) {
+            KeySorter.KeyReader[] keys = keySets[ ik ];
+            for ( int iu = 0; iu < 2; iu++ ) {
+                for ( int in = 0; in < 2; in++ ) {
+                    boolean up = flags[ iu ];
+                    boolean nullsLast = flags[ in ];
+                    long[] expected = bruteSort( keys, nrow, up, nullsLast );
+
+                    KeySorter seqSorter = new KeySorter( up, nullsLast );
+                    seqSorter.setParallelism( 1 );
+                    assertArrayEquals( expected, seqSorter.sort( keys, nrow ) );
+
+                    KeySorter parSorter = new KeySorter( up, nullsLast );
+                    parSorter.setParallelism( 3 );
+                    assertArrayEquals( expected, parSorter.sort( keys, nrow ) );
+
+                    KeySorter extSorter = new KeySorter( up, nullsLast );
+                    extSorter.setExternalStorage( in == 0
+                                                ? StoragePolicy.PREFER_MEMORY
+                                                : StoragePolicy.PREFER_DISK,
+                                                  200000 );
+                    assertArrayEquals( expected, extSorter.sort( keys, nrow ) );
+                }
+            }
+        }
+    }
+
+    public void testTable() throws IOException {
+        int nrow = 1000;
+        double[] xs = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = i % 10 == 0 ? Double.NaN : rnd_.nextDouble();
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "X", xs ) );
+        StarTable sorted =
+            Tables.sortTable( table, new int[] { 0 }, true, false );
+        for ( int i = 0; i < 100; i++ ) {
+            assertTrue( Double.isNaN( ((Number) sorted.getCell( i, 0 ))
+                                     .doubleValue() ) );
+        }
+        for ( int i = 101; i < nrow; i++ ) {
+            assertTrue( ((Number) sorted.getCell( i - 1, 0 )).doubleValue()
+                     <= ((Number) sorted.getCell( i, 0 )).doubleValue() );
+        }
+    }
+
+    private KeySorter.KeyReader createReader( Class clazz,
+                                              final Object[] values ) {
+        return new KeySorter.KeyReader( clazz ) {
+            public Object readKey( long irow ) {
+                return values[ (int) irow ];
+            }
+        };
+    }
+
+    private static long[] bruteSort( final KeySorter.KeyReader[] keys,
+                                      int nrow, final boolean up,
+                                      final boolean nullsLast )
+            throws IOException {
+        final Object[][] rows = new Object[ nrow ][];
+        Integer[] order = new Integer[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            rows[ i ] = new Object[ keys.length ];
+            for ( int ik = 0; ik < keys.length; ik++ ) {
+                rows[ i ][ ik ] = keys[ ik ].readKey( i );
+            }
+            order[ i ] = new Integer( i );
+        }
+        Arrays.sort( order, new Comparator() {
+            public int compare( Object o1, Object o2 ) {
+                Object[] row1 = rows[ ((Integer) o1).intValue() ];
+                Object[] row2 = rows[ ((Integer) o2).intValue() ];
+                for ( int ik = 0; ik < keys.length; ik++ ) {
+                    Comparable v1 = (Comparable) row1[ ik ];
+                    Comparable v2 = (Comparable) row2[ ik ];
+                    boolean null1 = Tables.isBlank( v1 );
+                    boolean null2 = Tables.isBlank( v2 );
+                    int c = null1 && null2 ? 0
+                          : null1 ? ( nullsLast ? +1 : -1 )
+                          : null2 ? ( nullsLast ? -1 : +1 )
+                          : v1.compareTo( v2 );
+                    if ( c != 0 ) {
+                        return up ? c : -c;
+                    }
+                }
+                return 0;
+            }
+        } );
+        long[] result = new long[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            result[ i ] = order[ i ].intValue();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package uk.ac.starlink.table;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import uk.ac.starlink.util.TestCase;
+
+public class PipelinedRowWriterTest extends TestCase {
+
+    public PipelinedRowWriterTest( String name ) {
+        super( name );
+    }
+
+    public void testOrder() throws IOException {
+        int[] nrows = { 0, 1, 1000, 50001 };
+        int[] nthreads = { 1, 2, 5 };
+        for ( int in = 0; in < nrows.length; in++ ) {
+            StarTable table = createTable( nrows[ in ] );
+            byte[] seq = write( table, new TestWriter( 1 ) );
+            for ( int it = 0; it < nthreads.length; it++ ) {
+                assertArrayEquals( seq,
+                                   write( table,
+                                          new TestWriter( nthreads[ it ] ) ) );
+            }
+        }
+    }
+
+    public void testError() throws IOException {
+        StarTable table = createTable( 100000 );
+        PipelinedRowWriter writer = new PipelinedRowWriter( 4 ) {
+            protected RowEncoder createRowEncoder() {
+                return new RowEncoder() {
+                    public void encodeRow( Object[] row, DataOutput out )
+                            throws IOException {
+                        if ( ((Integer) row[ 0 ]).intValue() == 77777 ) {
+                            throw new IOException( "Bad row" );
+                        }
+                        out.writeInt( ((Integer) row[ 0 ]).intValue() );
+                    }
+                };
+            }
+        };
+        try {
+            write( table, writer );
+            fail();
+        }
+        catch ( IOException e ) {
+            assertEquals( "Bad row", e.getMessage() );
+        }
+    }
+
+    private static StarTable createTable( int nrow ) {
+        int[] ivals = new int[ nrow ];
+        String[] svals = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ivals[ i ] = i;
+            svals[ i ] = i % 3 == 0 ? null : "r" + i;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "I", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "S", svals ) );
+        return table;
+    }
+
+    private static byte[] write( StarTable table, PipelinedRowWriter writer )
+            throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bout );
+        RowSequence rseq = table.getRowSequence();
+        try {
+            assertEquals( table.getRowCount(), writer.writeRows( rseq, out ) );
+        }
+        finally {
+            rseq.close();
+        }
+        out.flush();
+        return bout.toByteArray();
+    }
+
+    private static class TestWriter extends PipelinedRowWriter {
+        TestWriter( int nthread ) {
+            super( nthread );
+        }
+        protected RowEncoder createRowEncoder() {
+            return new RowEncoder() {
+                public void encodeRow( Object[] row, DataOutput out )
+                        throws IOException {
+                    out.writeInt( ((Integer) row[ 0 ]).intValue() );
+                    String s = (String) row[ 1 ];
+                    out.writeUTF( s == null ? "" : s );
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import uk.ac.starlink.util.TestCase;
+
+public class RowRangeTest extends TestCase {
+
+    private final StarTable table_;
+
+    public RowRangeTest( String name ) {
+        super( name );
+        int nrow = 1001;
+        int[] ivals = new int[ nrow ];
+        double[] dvals = new double[ nrow ];
+        String[] svals = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ivals[ i ] = i;
+            dvals[ i ] = i * 0.5;
+            svals[ i ] = i % 3 == 0 ? null : "r" + i;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "I", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "D", dvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "S", svals ) );
+        table_ = table;
+    }
+
+    public void testRandom() throws IOException {
+        assertFalse( Tables.hasRowRanges( table_ ) );
+        checkRanges( table_ );
+    }
+
+    public void testSequential() throws IOException {
+        StarTable seqTable = new WrapperStarTable( table_ ) {
+            public boolean isRandom() {
+                return false;
+            }
+        };
+        assertEquals( 1, Tables.getRowRangeSequences( seqTable, 4 ).length );
+        checkRanges( seqTable );
+    }
+
+    public void testStored() throws IOException {
+        StoragePolicy[] policies = new StoragePolicy[] {
+            StoragePolicy.PREFER_MEMORY,
+            StoragePolicy.SIDEWAYS,
+        };
+        for ( int ip = 0; ip < policies.length; ip++ ) {
+            StarTable stored = policies[ ip ].copyTable( table_ );
+            checkRanges( stored );
+            checkRanges( new MetaCopyStarTable( stored ) );
+            checkRanges( new ColumnPermutedStarTable( stored,
+                                                      new int[] { 2, 0 } ) );
+        }
+        StarTable sideways = StoragePolicy.SIDEWAYS.copyTable( table_ );
+        assertTrue( Tables.hasRowRanges( sideways ) );
+        assertTrue( Tables.hasRowRanges( new MetaCopyStarTable( sideways ) ) );
+        assertFalse( Tables.hasRowRanges( new WrapperStarTable( sideways ) ) );
+    }
+
+    private void checkRanges( StarTable table ) throws IOException {
+        List<Object[]> rows = readRows( new RowSequence[] {
+                                            table.getRowSequence() } );
+        assertEquals( table.getRowCount(), rows.size() );
+        int[] nsplits = new int[] { 1, 2, 7, 5000 };
+        for ( int is = 0; is < nsplits.length; is++ ) {
+            RowSequence[] rseqs =
+                Tables.getRowRangeSequences( table, nsplits[ is ] );
+            assertTrue( rseqs.length <= nsplits[ is ] );
+            List<Object[]> splitRows = readRows( rseqs );
+            assertEquals( rows.size(), splitRows.size() );
+            for ( int i = 0; i < rows.size(); i++ ) {
+                assertArrayEquals( rows.get( i ), splitRows.get( i ) );
+            }
+        }
+    }
+
+    private static List<Object[]> readRows( RowSequence[] rseqs )
+            throws IOException {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for ( int is = 0; is < rseqs.length; is++ ) {
+            RowSequence rseq = rseqs[ is ];
+            while ( rseq.next() ) {
+                Object[] row = rseq.getRow();
+                for ( int ic = 0; ic < row.length; ic++ ) {
+                    assertEquals( row[ ic ], rseq.getCell( ic ) );
+                }
+                rows.add( row );
+            }
+            assertFalse( rseq.next() );
+            rseq.close();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,312 @@
+package uk.ac.starlink.table;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+import uk.ac.starlink.fits.ColFitsTableBuilder;
+import uk.ac.starlink.fits.ColFitsTableWriter;
+import uk.ac.starlink.fits.FitsTableBuilder;
+import uk.ac.starlink.fits.FitsTableWriter;
+import uk.ac.starlink.table.formats.CsvTableBuilder;
+import uk.ac.starlink.table.formats.CsvTableWriter;
+import uk.ac.starlink.table.join.FixedSkyMatchEngine;
+import uk.ac.starlink.table.join.IsotropicCartesianMatchEngine;
+import uk.ac.starlink.table.join.LinkSet;
+import uk.ac.starlink.table.join.MatchEngine;
+import uk.ac.starlink.table.join.PairMode;
+import uk.ac.starlink.table.join.PixtoolsHealpixSkyPixellator;
+import uk.ac.starlink.table.join.RowMatcher;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.TestCase;
+import uk.ac.starlink.votable.DataFormat;
+import uk.ac.starlink.votable.VOTableBuilder;
+import uk.ac.starlink.votable.VOTableVersion;
+import uk.ac.starlink.votable.VOTableWriter;
+
+/**
+ * Benchmarks for table I/O, storage and crossmatching.
+ * This is not run as part of the unit tests; use the <code>bench</code>
+ * target of the build file or run it directly with a JUnit runner.
+ * All data is generated synthetically.
+ *
+ * <p>Results are written to standard output as tab-separated lines
+ * with the columns
+ * <code>group, name, nrow, millis, rows_per_sec</code>.
+ * If the <code>bench.out</code> system property is set, the same lines
+ * are appended to the named file, so that results can be compared
+ * between releases.
+ * The <code>bench.nrow</code> and <code>bench.reps</code> properties
+ * control the table size and the number of timed repetitions;
+ * the reported time is the fastest repetition, following one
+ * untimed warm-up run.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public class TableBench extends TestCase {
+
+    private final int nrow_;
+    private final int nrep_;
+    private final String outFile_;
+    private final Random rnd_;
+
+    public TableBench( String name ) {
+        super( name );
+        nrow_ = Integer.getInteger( "bench.nrow", 200000 ).intValue();
+        nrep_ = Integer.getInteger( "bench.reps", 3 ).intValue();
+        outFile_ = System.getProperty( "bench.out" );
+        rnd_ = new Random( 23001L );
+    }
+
+    public void testFormats() throws Exception {
+        StarTable table = createTable( nrow_ );
+        benchFormat( "fits", new FitsTableWriter(), new FitsTableBuilder(),
+                     table );
+        benchFormat( "colfits", new ColFitsTableWriter(),
+                     new ColFitsTableBuilder(), table );
+        benchFormat( "votable-tabledata",
+                     new VOTableWriter( DataFormat.TABLEDATA, true,
+                                        VOTableVersion.V13 ),
+                     new VOTableBuilder(), table );
+        benchFormat( "votable-binary",
+                     new VOTableWriter( DataFormat.BINARY, true,
+                                        VOTableVersion.V13 ),
+                     new VOTableBuilder(), table );
+        benchFormat( "votable-binary2",
+                     new VOTableWriter( DataFormat.BINARY2, true,
+                                        VOTableVersion.V13 ),
+                     new VOTableBuilder(), table );
+        benchFormat( "csv", new CsvTableWriter(), new CsvTableBuilder(),
+                     table );
+    }
+
+    public void testStorage() throws Exception {
+        final StarTable table = createTable( nrow_ );
+        StoragePolicy[] policies = new StoragePolicy[] {
+            StoragePolicy.PREFER_MEMORY,
+            StoragePolicy.PREFER_DISK,
+            StoragePolicy.SIDEWAYS,
+            StoragePolicy.ADAPTIVE,
+        };
+        String[] names = new String[] {
+            "memory", "disk", "sideways", "adaptive",
+        };
+        for ( int ip = 0; ip < policies.length; ip++ ) {
+            final StoragePolicy policy = policies[ ip ];
+            final StarTable[] copy = new StarTable[ 1 ];
+            time( "storage", names[ ip ] + "-copy", nrow_, new Job() {
+                public void run() throws IOException {
+                    copy[ 0 ] = policy.copyTable( table );
+                }
+            } );
+            time( "storage", names[ ip ] + "-scan", nrow_, new Job() {
+                public void run() throws IOException {
+                    scan( copy[ 0 ] );
+                }
+            } );
+            final long[] irows = new long[ nrow_ ];
+            for ( int i = 0; i < nrow_; i++ ) {
+                irows[ i ] = (long) rnd_.nextInt( nrow_ );
+            }
+            time( "storage", names[ ip ] + "-random", nrow_, new Job() {
+                public void run() throws IOException {
+                    StarTable t = copy[ 0 ];
+                    for ( int i = 0; i < irows.length; i++ ) {
+                        t.getCell( irows[ i ], 2 );
+                    }
+                }
+            } );
+        }
+    }
+
+    public void testMatch() throws Exception {
+        int nm = nrow_ / 2;
+        double[] densities = new double[] { 0.1, 1.0, 10.0 };
+        for ( int id = 0; id < densities.length; id++ ) {
+            double density = densities[ id ];
+
+            /* Unit square: density is the mean number of neighbours
+             * within the match radius. */
+            double cartErr = Math.sqrt( density / ( nm * Math.PI ) );
+            benchMatch( "cartesian-" + density,
+                        new IsotropicCartesianMatchEngine( 2, cartErr, false ),
+                        createCartesianTable( nm ),
+                        createCartesianTable( nm ) );
+
+            /* Sky patch of 0.1 x 0.1 radians. */
+            double skySep = Math.sqrt( density * 0.01 / ( nm * Math.PI ) );
+            benchMatch( "sky-" + density,
+                        new FixedSkyMatchEngine(
+                                new PixtoolsHealpixSkyPixellator(), skySep ),
+                        createSkyTable( nm ), createSkyTable( nm ) );
+        }
+    }
+
+    /**
+     * Times writing and reading a table in a given format.
+     */
+    private void benchFormat( String name, final StarTableWriter writer,
+                              final TableBuilder builder,
+                              final StarTable table )
+            throws Exception {
+        final File file = File.createTempFile( "bench", "." + name );
+        file.deleteOnExit();
+        time( "format", name + "-write", nrow_, new Job() {
+            public void run() throws IOException {
+                OutputStream out =
+                    new BufferedOutputStream( new FileOutputStream( file ) );
+                try {
+                    writer.writeStarTable( table, out );
+                }
+                finally {
+                    out.close();
+                }
+            }
+        } );
+        time( "format", name + "-read", nrow_, new Job() {
+            public void run() throws IOException {
+                StarTable t =
+                    builder.makeStarTable( new FileDataSource( file ), false,
+                                           StoragePolicy.PREFER_MEMORY );
+                assertEquals( nrow_, scan( t ) );
+            }
+        } );
+        file.delete();
+    }
+
+    /**
+     * Times a best-match pair crossmatch between two tables.
+     */
+    private void benchMatch( String name, final MatchEngine engine,
+                             final StarTable t1, final StarTable t2 )
+            throws Exception {
+        time( "match", name, t1.getRowCount() + t2.getRowCount(), new Job() {
+            public void run() throws IOException, InterruptedException {
+                LinkSet links = new RowMatcher( engine,
+                                                new StarTable[] { t1, t2 } )
+                               .findPairMatches( PairMode.BEST );
+                assertTrue( links.size() >= 0 );
+            }
+        } );
+    }
+
+    /**
+     * Runs a job repeatedly and reports the fastest time.
+     */
+    private void time( String group, String name, long nrow, Job job )
+            throws Exception {
+        job.run();
+        long[] times = new long[ nrep_ ];
+        for ( int i = 0; i < nrep_; i++ ) {
+            long start = System.nanoTime();
+            job.run();
+            times[ i ] = System.nanoTime() - start;
+        }
+        Arrays.sort( times );
+        double millis = times[ 0 ] * 1e-6;
+        double rate = nrow / ( millis * 1e-3 );
+        String line = group + "\t" + name + "\t" + nrow + "\t"
+                    + (float) millis + "\t" + (long) rate;
+        System.out.println( line );
+        if ( outFile_ != null ) {
+            PrintWriter pout =
+                new PrintWriter( new FileWriter( outFile_, true ) );
+            pout.println( line );
+            pout.close();
+        }
+    }
+
+    /**
+     * Reads all the rows of a table and returns the row count.
+     */
+    private static long scan( StarTable table ) throws IOException {
+        RowSequence rseq = table.getRowSequence();
+        long n = 0;
+        try {
+            while ( rseq.next() ) {
+                rseq.getRow();
+                n++;
+            }
+        }
+        finally {
+            rseq.close();
+        }
+        return n;
+    }
+
+    /**
+     * Returns a table with a mix of column types.
+     */
+    private StarTable createTable( int nrow ) {
+        int[] ivals = new int[ nrow ];
+        long[] lvals = new long[ nrow ];
+        double[] dvals = new double[ nrow ];
+        float[] fvals = new float[ nrow ];
+        short[] svals = new short[ nrow ];
+        String[] strs = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ivals[ i ] = i;
+            lvals[ i ] = rnd_.nextLong();
+            dvals[ i ] = rnd_.nextGaussian();
+            fvals[ i ] = rnd_.nextFloat();
+            svals[ i ] = (short) rnd_.nextInt( 1000 );
+            strs[ i ] = "row-" + rnd_.nextInt( 100000 );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "I", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "L", lvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "D", dvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "F", fvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "S", svals ) );
+        ColumnInfo strInfo = new ColumnInfo( "Label", String.class, null );
+        strInfo.setElementSize( 12 );
+        table.addColumn( ArrayColumn.makeColumn( strInfo, strs ) );
+        return table;
+    }
+
+    /**
+     * Returns a table with X, Y columns uniformly filling the unit square.
+     */
+    private StarTable createCartesianTable( int nrow ) {
+        double[] xs = new double[ nrow ];
+        double[] ys = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = rnd_.nextDouble();
+            ys[ i ] = rnd_.nextDouble();
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "X", xs ) );
+        table.addColumn( ArrayColumn.makeColumn( "Y", ys ) );
+        return table;
+    }
+
+    /**
+     * Returns a table with RA, Dec columns in radians filling a
+     * 0.1 radian square patch of sky.
+     */
+    private StarTable createSkyTable( int nrow ) {
+        double[] ras = new double[ nrow ];
+        double[] decs = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ras[ i ] = 1.0 + 0.1 * rnd_.nextDouble();
+            decs[ i ] = 0.3 + 0.1 * rnd_.nextDouble();
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "RA", ras ) );
+        table.addColumn( ArrayColumn.makeColumn( "DEC", decs ) );
+        return table;
+    }
+
+    /**
+     * Unit of work to be timed.
+     */
+    private static interface Job {
+        void run() throws IOException, InterruptedException;
+    }
+}
@@ -1,13 +1,23 @@
 package uk.ac.starlink.table.formats;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
 import junit.framework.TestCase;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.RowStore;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
 
 public class TextTest extends TestCase {
 
@@ -62,6 +72,204 @@ public class TextTest extends TestCase {
         }
     }
 
+    public void testSampled() throws IOException {
+        AsciiTableBuilder abuilder = new AsciiTableBuilder();
+        assertEquals( 0, abuilder.getSampleSize() );
+        abuilder.setSampleSize( 3 );
+        StarTable atable =
+            abuilder.makeStarTable( new TableDataSource(), true,
+                                    StoragePolicy.PREFER_MEMORY );
+        assertTrue( atable.isRandom() );
+        assertEquals( 5, atable.getRowCount() );
+        assertTrue( ((String) atable.getParameterByName( "Description" )
+                             .getValue()).indexOf( "TEST_TABLE" ) >= 0 );
+        Class[] aclazzes = new Class[] {
+            Long.class, Long.class, Double.class, Double.class,
+            Boolean.class, String.class,
+        };
+        for ( int icol = 0; icol < aclazzes.length; icol++ ) {
+            assertEquals( aclazzes[ icol ],
+                          atable.getColumnInfo( icol ).getContentClass() );
+        }
+        assertEquals( "Short", atable.getColumnInfo( 0 ).getName() );
+        assertEquals( new Long( 31000 ), atable.getCell( 2, 0 ) );
+        assertNull( atable.getCell( 4, 0 ) );
+        assertEquals( "3f1415", atable.getCell( 3, 5 ) );
+
+        String csv = "a,b,c\n"
+                   + "1,2.5,x\n"
+                   + "2,3.5,y\n"
+                   + "3,4.5,z\n"
+                   + "4.5,5,w\n";
+        CsvTableBuilder cbuilder = new CsvTableBuilder();
+        cbuilder.setSampleSize( 3 );
+        RowStore store = StoragePolicy.PREFER_MEMORY.makeRowStore();
+        cbuilder.streamStarTable(
+            new ByteArrayInputStream( "a,b\n1,2\n3,4\n5,6\n7,8\n"
+                                     .getBytes() ), store, null );
+        StarTable stable = store.getStarTable();
+        assertEquals( 4, stable.getRowCount() );
+        assertEquals( "b", stable.getColumnInfo( 1 ).getName() );
+        assertEquals( new Long( 8 ), stable.getCell( 3, 1 ) );
+
+        /* Value not matching sampled type: streaming fails, but
+         * reading from a data source falls back to two passes. */
+        try {
+            cbuilder.streamStarTable( new ByteArrayInputStream( csv
+                                                               .getBytes() ),
+                                      StoragePolicy.PREFER_MEMORY
+                                                   .makeRowStore(), null );
+            fail();
+        }
+        catch ( TableFormatException e ) {
+        }
+        StarTable ctable =
+            cbuilder.makeStarTable( new TextDataSource( csv ), true,
+                                    StoragePolicy.PREFER_MEMORY );
+        assertEquals( 4, ctable.getRowCount() );
+        assertEquals( Float.class, ctable.getColumnInfo( 0 ).getContentClass() );
+        assertEquals( "c", ctable.getColumnInfo( 2 ).getName() );
+
+        try {
+            new CsvTableBuilder()
+               .streamStarTable( new ByteArrayInputStream( csv.getBytes() ),
+                                 StoragePolicy.PREFER_MEMORY.makeRowStore(),
+                                 null );
+            fail();
+        }
+        catch ( TableFormatException e ) {
+        }
+    }
+
+    public void testParallelCsv() throws IOException {
+        StringBuffer sbuf = new StringBuffer( "id,x,label\n" );
+        for ( int i = 0; i < 2000; i++ ) {
+            sbuf.append( i )
+                .append( ',' )
+                .append( i * 0.25 )
+                .append( ',' );
+            if ( i % 7 == 0 ) {
+                sbuf.append( "\"line\nbreak, \"\"" + i + "\"\"\"" );
+            }
+            else {
+                sbuf.append( "s" + i );
+            }
+            sbuf.append( i % 3 == 0 ? "\r\n" : "\n" );
+        }
+        String csv = sbuf.toString();
+        StarTable seqTable = readCsv( csv, 1, 64 );
+        assertEquals( 2000, seqTable.getRowCount() );
+        assertEquals( "line\nbreak, \"700\"",
+                      seqTable.getCell( 700, 2 ) );
+        int[] blockSizes = new int[] { 16, 100, 4096 };
+        for ( int ib = 0; ib < blockSizes.length; ib++ ) {
+            StarTable parTable = readCsv( csv, 3, blockSizes[ ib ] );
+            assertEquals( seqTable.getRowCount(), parTable.getRowCount() );
+            for ( long irow = 0; irow < seqTable.getRowCount(); irow++ ) {
+                assertEquals( Arrays.asList( seqTable.getRow( irow ) ),
+                              Arrays.asList( parTable.getRow( irow ) ) );
+            }
+        }
+
+        /* A late value not matching the sampled type fails in parallel
+         * as it does sequentially, so that the builder can fall back. */
+        String badCsv = csv + "9.5,1,a\n";
+        try {
+            readCsv( badCsv, 3, 100 );
+            fail();
+        }
+        catch ( TableFormatException e ) {
+            assertTrue( e.getMessage().indexOf( "row 2001 " ) >= 0 );
+        }
+        CsvTableBuilder builder = new CsvTableBuilder();
+        builder.setSampleSize( 10 );
+        builder.setParallelism( 4 );
+        StarTable ftable =
+            Tables.randomTable(
+                builder.makeStarTable( new TextDataSource( badCsv ), true,
+                                       StoragePolicy.PREFER_MEMORY ) );
+        assertEquals( 2001, ftable.getRowCount() );
+        assertEquals( "a", ftable.getCell( 2000, 2 ) );
+        assertTrue( ftable.getColumnInfo( 0 ).getContentClass()
+                    != Long.class );
+    }
+
+    public void testParallelQuotedCsv() throws IOException {
+        StringBuffer sbuf =
+            new StringBuffer( "\"name\",\"x\",\"n\",\"flag\"\n" );
+        for ( int i = 0; i < 3000; i++ ) {
+            sbuf.append( "\"r" + i + ( i % 11 == 0 ? "\n" : "" ) + "\"," )
+                .append( "\"" + ( i * 0.5 ) + "\"," )
+                .append( "\"" + ( i % 5 == 0 ? "" : Integer.toString( i ) )
+                       + "\"," )
+                .append( "\"" + ( i % 2 == 0 ) + "\"" )
+                .append( "\r\n" );
+        }
+        String csv = sbuf.toString();
+
+        /* Every record starts with a quote, but a boundary is found. */
+        byte[] bytes = csv.getBytes();
+        assertTrue( ParallelCsvReader.lastBoundary( bytes, 200 ) > 0 );
+
+        StarTable seqTable = readCsv( csv, 1, 64 );
+        assertEquals( 3000, seqTable.getRowCount() );
+        assertEquals( "r11\n", seqTable.getCell( 11, 0 ) );
+        assertNull( seqTable.getCell( 10, 2 ) );
+        assertEquals( new Long( 12 ), seqTable.getCell( 12, 2 ) );
+        assertEquals( Boolean.FALSE, seqTable.getCell( 13, 3 ) );
+        int[] blockSizes = new int[] { 64, 1000 };
+        for ( int ib = 0; ib < blockSizes.length; ib++ ) {
+            StarTable parTable = readCsv( csv, 3, blockSizes[ ib ] );
+            assertEquals( seqTable.getRowCount(), parTable.getRowCount() );
+            for ( long irow = 0; irow < seqTable.getRowCount(); irow++ ) {
+                assertEquals( Arrays.asList( seqTable.getRow( irow ) ),
+                              Arrays.asList( parTable.getRow( irow ) ) );
+            }
+        }
+    }
+
+    public void testParallelSource() throws IOException {
+        assertFalse( CsvTableBuilder
+                    .isParallelSource( new TextDataSource( "a,b\n1,2\n" ) ) );
+        File file = File.createTempFile( "ptest", ".csv" );
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream( file );
+        out.write( "a,b\n1,2\n".getBytes() );
+        out.close();
+        assertTrue( CsvTableBuilder
+                   .isParallelSource( new FileDataSource( file ) ) );
+        File gzFile = File.createTempFile( "ptest", ".csv.gz" );
+        gzFile.deleteOnExit();
+        out = new GZIPOutputStream( new FileOutputStream( gzFile ) );
+        out.write( "a,b\n1,2\n".getBytes() );
+        out.close();
+        assertFalse( CsvTableBuilder
+                    .isParallelSource( new FileDataSource( gzFile ) ) );
+    }
+
+    private static StarTable readCsv( String csv, int parallelism,
+                                      int blockSize )
+            throws IOException {
+        CsvStarTable reader = new CsvStarTable();
+        reader.setParallelism( parallelism );
+        reader.setBlockSize( blockSize );
+        RowStore store = StoragePolicy.PREFER_MEMORY.makeRowStore();
+        reader.streamData( new PushbackInputStream(
+                               new ByteArrayInputStream( csv.getBytes() ) ),
+                           store, 10 );
+        return store.getStarTable();
+    }
+
+    private static class TextDataSource extends DataSource {
+        final byte[] bbuf;
+        TextDataSource( String text ) {
+            bbuf = text.getBytes();
+        }
+        protected InputStream getRawInputStream() {
+            return new ByteArrayInputStream( bbuf );
+        }
+    }
+
     private static class TableDataSource extends DataSource {
         final byte[] bbuf;
         TableDataSource() {
@@ -1,8 +1,12 @@
 package uk.ac.starlink.table.join;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import uk.ac.starlink.util.TestCase;
@@ -23,6 +27,138 @@ public class BinnerTest extends TestCase {
         }
     }
 
+    public void testPrimitiveLongBinner() {
+        LongBinner binner = Binners.createLongBinner( 1000 );
+        Map map = new HashMap();
+        for ( int i = 0; i < 20000; i++ ) {
+            Long key = new Long( rnd_.nextInt( 3000 ) - 100 );
+            long item = rnd_.nextInt( 1000 );
+            binner.addItem( key, item );
+            if ( ! map.containsKey( key ) ) {
+                map.put( key, new ArrayList() );
+            }
+            ((List) map.get( key )).add( new Long( item ) );
+        }
+        assertLongBinnerEquals( map, binner );
+        assertNull( binner.getLongs( new Integer( 1 ) ) );
+
+        /* Add a non-numeric key, which forces a change of implementation. */
+        binner.addItem( "A", 99L );
+        map.put( "A", new ArrayList( Arrays.asList( new Long[] {
+                                                        new Long( 99 ) } ) ) );
+        assertLongBinnerEquals( map, binner );
+
+        /* Remove every bin. */
+        for ( Iterator it = binner.getKeyIterator(); it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+        assertEquals( 0, binner.getBinCount() );
+    }
+
+    public void testLongKeyBinStore() {
+        LongKeyBinStore store = new LongKeyBinStore();
+        Map map = new HashMap();
+        for ( int i = 0; i < 50000; i++ ) {
+            long key = rnd_.nextLong() % 4000;
+            long item = rnd_.nextLong();
+            store.addItem( key, item );
+            Long lkey = new Long( key );
+            if ( ! map.containsKey( lkey ) ) {
+                map.put( lkey, new ArrayList() );
+            }
+            ((List) map.get( lkey )).add( new Long( item ) );
+
+            /* Remove some bins along the way to exercise slot reuse. */
+            if ( i % 7 == 0 ) {
+                long rkey = rnd_.nextLong() % 4000;
+                store.remove( rkey );
+                map.remove( new Long( rkey ) );
+            }
+        }
+        assertEquals( map.size(), store.getBinCount() );
+        Set keys = new HashSet();
+        for ( LongKeyBinStore.KeyCursor cursor = store.createKeyCursor();
+              cursor.hasNext(); ) {
+            long key = cursor.nextKey();
+            assertTrue( keys.add( new Long( key ) ) );
+            assertTrue( store.containsKey( key ) );
+            assertArrayEquals( toLongArray( (List) map.get( new Long( key ) ) ),
+                               store.getItems( key ) );
+        }
+        assertEquals( map.keySet(), keys );
+        assertNull( store.getItems( 99999 ) );
+        for ( LongKeyBinStore.KeyCursor cursor = store.createKeyCursor();
+              cursor.hasNext(); ) {
+            cursor.nextKey();
+            cursor.remove();
+        }
+        assertEquals( 0, store.getBinCount() );
+        assertFalse( store.createKeyCursor().hasNext() );
+    }
+
+    public void testRowRefObjectBinner() {
+        ObjectBinner binner = Binners.createObjectBinner();
+        Map map = new HashMap();
+        for ( int i = 0; i < 5000; i++ ) {
+            Integer key = new Integer( rnd_.nextInt( 800 ) );
+            RowRef ref = new RowRef( rnd_.nextInt( 3 ), rnd_.nextInt( 10000 ) );
+            binner.addItem( key, ref );
+            if ( ! map.containsKey( key ) ) {
+                map.put( key, new ArrayList() );
+            }
+            ((List) map.get( key )).add( ref );
+        }
+        assertObjectBinnerEquals( map, binner );
+        assertFalse( binner.containsKey( new Long( 1 ) ) );
+        assertNull( binner.getList( new Long( 1 ) ) );
+
+        /* Add a non-RowRef item, which forces a change of implementation. */
+        binner.addItem( new Integer( 5 ), "X" );
+        ((List) map.get( new Integer( 5 ) )).add( "X" );
+        assertObjectBinnerEquals( map, binner );
+    }
+
+    private void assertLongBinnerEquals( Map map, LongBinner binner ) {
+        assertEquals( map.size(), binner.getBinCount() );
+        Set keys = new HashSet();
+        for ( Iterator it = binner.getKeyIterator(); it.hasNext(); ) {
+            keys.add( it.next() );
+        }
+        assertEquals( map.keySet(), keys );
+        for ( Iterator it = map.keySet().iterator(); it.hasNext(); ) {
+            Object key = it.next();
+            assertArrayEquals( toLongArray( (List) map.get( key ) ),
+                               binner.getLongs( key ) );
+        }
+    }
+
+    private void assertObjectBinnerEquals( Map map, ObjectBinner binner ) {
+        assertEquals( map.size(), binner.getBinCount() );
+        long nItem = 0;
+        Set keys = new HashSet();
+        for ( Iterator it = binner.getKeyIterator(); it.hasNext(); ) {
+            keys.add( it.next() );
+        }
+        assertEquals( map.keySet(), keys );
+        for ( Iterator it = map.keySet().iterator(); it.hasNext(); ) {
+            Object key = it.next();
+            List list = (List) map.get( key );
+            assertTrue( binner.containsKey( key ) );
+            assertEquals( list, new ArrayList( binner.getList( key ) ) );
+            nItem += list.size();
+        }
+        assertEquals( nItem, binner.getItemCount() );
+    }
+
+    private static long[] toLongArray( List list ) {
+        long[] array = new long[ list.size() ];
+        for ( int i = 0; i < array.length; i++ ) {
+            array[ i ] = ((Long) list.get( i )).longValue();
+        }
+        return array;
+    }
+
     private void exerciseLongBinner( LongBinner binner, int count ) {
         String[] keys = new String[] { "A", "B", };
         long[] a1 = new long[ count * 2 ];
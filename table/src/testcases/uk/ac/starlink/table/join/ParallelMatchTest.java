@@ -0,0 +1,99 @@
+package uk.ac.starlink.table.join;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.util.TestCase;
+
+public class ParallelMatchTest extends TestCase {
+
+    private final Random rnd_;
+
+    public ParallelMatchTest( String name ) {
+        super( name );
+        rnd_ = new Random( 23001L );
+    }
+
+    public void testParallelBinning() throws Exception {
+        StarTable t1 = createTable( 32000 );
+        StarTable t2 = createTable( 21000 );
+        MatchEngine engine =
+            new IsotropicCartesianMatchEngine( 2, 0.002, false );
+
+        PairMode[] modes = PairMode.values();
+        for ( int im = 0; im < modes.length; im++ ) {
+            PairMode mode = modes[ im ];
+            List seqLinks = toList( createMatcher( engine, 1, t1, t2 )
+                                   .findPairMatches( mode ) );
+            List parLinks = toList( createMatcher( engine, 4, t1, t2 )
+                                   .findPairMatches( mode ) );
+            assertTrue( seqLinks.size() > 100 );
+            assertEquals( seqLinks, parLinks );
+            assertScoresEqual( seqLinks, parLinks );
+        }
+
+        MultiJoinType[] joins =
+            new MultiJoinType[] { MultiJoinType.DEFAULT, MultiJoinType.DEFAULT};
+        assertEquals( toList( createMatcher( engine, 1, t1, t2 )
+                             .findGroupMatches( joins ) ),
+                      toList( createMatcher( engine, 3, t1, t2 )
+                             .findGroupMatches( joins ) ) );
+        assertEquals( toList( createMatcher( engine, 1, t1 )
+                             .findInternalMatches( false ) ),
+                      toList( createMatcher( engine, 5, t1 )
+                             .findInternalMatches( false ) ) );
+        assertEquals( toList( createMatcher( engine, 1, t1, t2 )
+                             .findMultiPairMatches( 0, false, joins ) ),
+                      toList( createMatcher( engine, 2, t1, t2 )
+                             .findMultiPairMatches( 0, false, joins ) ) );
+    }
+
+    private RowMatcher createMatcher( MatchEngine engine, int parallelism,
+                                      StarTable t1 ) {
+        RowMatcher matcher = new RowMatcher( engine, new StarTable[] { t1 } );
+        matcher.setParallelism( parallelism );
+        return matcher;
+    }
+
+    private RowMatcher createMatcher( MatchEngine engine, int parallelism,
+                                      StarTable t1, StarTable t2 ) {
+        RowMatcher matcher =
+            new RowMatcher( engine, new StarTable[] { t1, t2 } );
+        matcher.setParallelism( parallelism );
+        assertEquals( parallelism, matcher.getParallelism() );
+        return matcher;
+    }
+
+    private StarTable createTable( int nrow ) {
+        double[] xs = new double[ nrow ];
+        double[] ys = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = rnd_.nextDouble();
+            ys[ i ] = rnd_.nextDouble();
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "X", xs ) );
+        table.addColumn( ArrayColumn.makeColumn( "Y", ys ) );
+        return table;
+    }
+
+    private static List toList( LinkSet links ) {
+        links.sort();
+        List list = new ArrayList();
+        for ( Iterator it = links.iterator(); it.hasNext(); ) {
+            list.add( it.next() );
+        }
+        return list;
+    }
+
+    private void assertScoresEqual( List links1, List links2 ) {
+        for ( int i = 0; i < links1.size(); i++ ) {
+            assertEquals( ((RowLink2) links1.get( i )).getScore(),
+                          ((RowLink2) links2.get( i )).getScore() );
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package uk.ac.starlink.table.join;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import junit.framework.TestCase;
+
+public class RowRefGrouperTest extends TestCase {
+
+    public RowRefGrouperTest( String name ) {
+        super( name );
+    }
+
+    public void testGroups() {
+        RowRefGrouper grouper = new RowRefGrouper();
+        RowLink[] links = new RowLink[] {
+            link( 0, 1, 1, 1 ),
+            link( 0, 2, 1, 2 ),
+            link( 1, 2, 2, 7 ),
+            link( 0, 5, 2, 7 ),
+            link( 0, 9 ),
+            link( 0, 3, 1, 3 ),
+            link( 1, 3, 0, 4 ),
+        };
+        for ( int i = 0; i < links.length; i++ ) {
+            assertTrue( grouper.addLink( links[ i ] ) );
+        }
+        assertEquals( 10, grouper.getRefCount() );
+        boolean[] isolated = new boolean[ links.length ];
+        for ( int i = 0; i < links.length; i++ ) {
+            isolated[ i ] = grouper.isIsolated( links[ i ] );
+        }
+        assertTrue( Arrays.equals( new boolean[] {
+            true, false, false, false, true, false, false,
+        }, isolated ) );
+        grouper.markDone( links[ 0 ] );
+        Set groups = new HashSet();
+        for ( RowRef[] refs; ( refs = grouper.nextGroup() ) != null; ) {
+            groups.add( new RowLink( refs ) );
+        }
+        Set expected = new HashSet();
+        expected.add( link( 0, 2, 1, 2, 2, 7, 0, 5 ) );
+        expected.add( link( 0, 9 ) );
+        expected.add( link( 0, 3, 1, 3, 0, 4 ) );
+        assertEquals( expected, groups );
+
+        RowRefGrouper g2 = new RowRefGrouper();
+        assertTrue( g2.addLink( link( 0, 1 ) ) );
+        assertFalse( g2.addLink( new RowLink( new RowRef( 0, 1L << 50 ) ) ) );
+    }
+
+    public void testMany() {
+        RowRefGrouper grouper = new RowRefGrouper();
+        int n = 50000;
+        for ( int i = 0; i < n; i++ ) {
+            assertTrue( grouper.addLink( link( 0, i, 1, i / 10 ) ) );
+        }
+        int ngroup = 0;
+        for ( RowRef[] refs; ( refs = grouper.nextGroup() ) != null; ) {
+            assertEquals( 11, refs.length );
+            ngroup++;
+        }
+        assertEquals( n / 10, ngroup );
+    }
+
+    private static RowLink link( long... tabRows ) {
+        RowRef[] refs = new RowRef[ tabRows.length / 2 ];
+        for ( int i = 0; i < refs.length; i++ ) {
+            refs[ i ] = new RowRef( (int) tabRows[ 2 * i ],
+                                    tabRows[ 2 * i + 1 ] );
+        }
+        return new RowLink( refs );
+    }
+}
@@ -19,6 +19,55 @@ public class SkyPixellatorTest extends TestCase {
         }
     }
 
+    public void testConcurrent() throws Exception {
+        checkConcurrent( new PixtoolsHealpixSkyPixellator( false ) );
+        checkConcurrent( new PixtoolsHealpixSkyPixellator( true ) );
+        checkConcurrent( new HtmSkyPixellator() );
+    }
+
+    private void checkConcurrent( final SkyPixellator pixellator )
+            throws Exception {
+        pixellator.setScale( Math.toRadians( 0.1 ) );
+        Random rnd = new Random( 23001L );
+        int np = 2000;
+        final double[] ras = new double[ np ];
+        final double[] decs = new double[ np ];
+        final double radius = Math.toRadians( 0.05 );
+        Set[] expected = new Set[ np ];
+        for ( int ip = 0; ip < np; ip++ ) {
+            ras[ ip ] = rnd.nextDouble() * 2 * Math.PI;
+            decs[ ip ] = ( rnd.nextDouble() - 0.5 ) * Math.PI;
+            expected[ ip ] =
+                new HashSet( Arrays.asList( pixellator
+                                           .getPixels( ras[ ip ], decs[ ip ],
+                                                       radius ) ) );
+        }
+        int nthread = 4;
+        final Set[][] results = new Set[ nthread ][ np ];
+        Thread[] threads = new Thread[ nthread ];
+        for ( int it = 0; it < nthread; it++ ) {
+            final Set[] result = results[ it ];
+            threads[ it ] = new Thread() {
+                public void run() {
+                    for ( int ip = 0; ip < ras.length; ip++ ) {
+                        result[ ip ] =
+                            new HashSet( Arrays.asList( pixellator
+                                        .getPixels( ras[ ip ], decs[ ip ],
+                                                    radius ) ) );
+                    }
+                }
+            };
+        }
+        for ( int it = 0; it < nthread; it++ ) {
+            threads[ it ].start();
+        }
+        for ( int it = 0; it < nthread; it++ ) {
+            threads[ it ].join();
+            assertEquals( Arrays.asList( expected ),
+                          Arrays.asList( results[ it ] ) );
+        }
+    }
+
     private void checkOverlaps( SkyPixellator pixellator ) {
         Random rnd = new Random( 997521L );
         double scale = 0.05;  // degrees
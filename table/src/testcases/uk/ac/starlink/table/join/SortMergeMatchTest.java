@@ -0,0 +1,168 @@
+package uk.ac.starlink.table.join;
+
+import gov.fnal.eag.healpix.PixTools;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.util.TestCase;
+
+public class SortMergeMatchTest extends TestCase {
+
+    private final Random rnd_;
+    private static final int SORT_ORDER = 8;
+
+    public SortMergeMatchTest( String name ) {
+        super( name );
+        rnd_ = new Random( 77012L );
+    }
+
+    public void testSortMerge() throws Exception {
+        double sep = 0.01;
+        double[][] pos1 = createPositions( 6000, sep );
+        double[][] pos2 = createPositions( 5000, sep );
+        StarTable t1 = createTable( pos1, false );
+        StarTable t2 = createTable( pos2, false );
+        StarTable s1 = createTable( pos1, true );
+        StarTable s2 = createTable( pos2, true );
+        MatchEngine engine =
+            new FixedSkyMatchEngine( new PixtoolsHealpixSkyPixellator(),
+                                     sep );
+
+        PairMode[] modes = PairMode.values();
+        for ( int im = 0; im < modes.length; im++ ) {
+            PairMode mode = modes[ im ];
+            List links = toList( new RowMatcher( engine,
+                                                 new StarTable[] { t1, t2 } )
+                                .findPairMatches( mode ) );
+            assertTrue( links.size() > 100 );
+
+            RowMatcher sortMatcher =
+                new RowMatcher( engine, new StarTable[] { t1, t2 } );
+            sortMatcher.setSortedHealpixOrder( SORT_ORDER );
+            assertEquals( SORT_ORDER, sortMatcher.getSortedHealpixOrder() );
+            List sortLinks = toList( sortMatcher.findPairMatches( mode ) );
+            assertEquals( links, sortLinks );
+            assertScoresEqual( links, sortLinks,
+                               mode == PairMode.ALL ? 1e-9 : 0 );
+
+            if ( mode != PairMode.BEST ) {
+                RowMatcher seqMatcher =
+                    new RowMatcher( engine, new StarTable[] {
+                                                sequential( t1 ),
+                                                sequential( t2 ) } );
+                seqMatcher.setSortedHealpixOrder( SORT_ORDER );
+                assertEquals( links,
+                              toList( seqMatcher.findPairMatches( mode ) ) );
+            }
+        }
+
+        RowMatcher badMatcher =
+            new RowMatcher( engine, new StarTable[] { s1, s2 } );
+        badMatcher.setSortedHealpixOrder( SORT_ORDER );
+        try {
+            badMatcher.findPairMatches( PairMode.ALL );
+            fail();
+        }
+        catch ( IOException e ) {
+            // unsorted
+        }
+
+        try {
+            new RowMatcher( new IsotropicCartesianMatchEngine( 2, 1., false ),
+                            new StarTable[] { t1, t2 } )
+               .setSortedHealpixOrder( 4 );
+            fail();
+        }
+        catch ( IllegalArgumentException e ) {
+        }
+    }
+
+    /**
+     * Returns sky positions in a few clumps, in order of HEALPix NESTED
+     * index at SORT_ORDER.  Positions are in radians.
+     */
+    private double[][] createPositions( int n, double sep ) {
+        PixTools pixTools = PixTools.getInstance();
+        long nside = 1L << SORT_ORDER;
+        double[][] clumps = new double[][] {
+            { 0.0, 0.0 }, { 1.0, 0.3 }, { 4.0, -1.2 }, { 0.2, 1.56 },
+        };
+        List list = new ArrayList();
+        for ( int i = 0; i < n; i++ ) {
+            double[] clump = clumps[ i % clumps.length ];
+            double ra = clump[ 0 ] + ( rnd_.nextDouble() - 0.5 ) * 20 * sep;
+            double dec = clump[ 1 ] + ( rnd_.nextDouble() - 0.5 ) * 20 * sep;
+            if ( ra < 0 ) {
+                ra += 2 * Math.PI;
+            }
+            dec = Math.max( -Math.PI / 2, Math.min( Math.PI / 2, dec ) );
+            if ( i % 500 == 0 ) {
+                dec = Double.NaN;
+            }
+            long ipix = Double.isNaN( dec )
+                      ? -1
+                      : pixTools.vect2pix_nest( nside,
+                                                pixTools.Ang2Vec( Math.PI / 2
+                                                                - dec, ra ) );
+            list.add( new double[] { ipix, ra, dec } );
+        }
+        Collections.sort( list, new Comparator() {
+            public int compare( Object o1, Object o2 ) {
+                return Double.compare( ((double[]) o1)[ 0 ],
+                                       ((double[]) o2)[ 0 ] );
+            }
+        } );
+        return (double[][]) list.toArray( new double[ 0 ][] );
+    }
+
+    private StarTable createTable( double[][] positions, boolean shuffle ) {
+        int n = positions.length;
+        double[] ras = new double[ n ];
+        double[] decs = new double[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            int j = shuffle ? ( i * 7919 ) % n : i;
+            ras[ i ] = positions[ j ][ 1 ];
+            decs[ i ] = positions[ j ][ 2 ];
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( n );
+        table.addColumn( ArrayColumn.makeColumn( "RA", ras ) );
+        table.addColumn( ArrayColumn.makeColumn( "DEC", decs ) );
+        return table;
+    }
+
+    private static StarTable sequential( StarTable table ) {
+        return new WrapperStarTable( table ) {
+            public boolean isRandom() {
+                return false;
+            }
+            public Object[] getRow( long irow ) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static List toList( LinkSet links ) {
+        links.sort();
+        List list = new ArrayList();
+        for ( Iterator it = links.iterator(); it.hasNext(); ) {
+            list.add( it.next() );
+        }
+        return list;
+    }
+
+    private void assertScoresEqual( List links1, List links2,
+                                    double tol ) {
+        for ( int i = 0; i < links1.size(); i++ ) {
+            assertEquals( ((RowLink2) links1.get( i )).getScore(),
+                          ((RowLink2) links2.get( i )).getScore(), tol );
+        }
+    }
+}
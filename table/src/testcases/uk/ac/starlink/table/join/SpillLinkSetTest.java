@@ -0,0 +1,262 @@
+package uk.ac.starlink.table.join;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ByteStore;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.util.TestCase;
+
+public class SpillLinkSetTest extends TestCase {
+
+    private final Random rnd_;
+
+    public SpillLinkSetTest( String name ) {
+        super( name );
+        rnd_ = new Random( 44301L );
+    }
+
+    public void testLinkSet() {
+        exerciseLinkSet( StoragePolicy.PREFER_MEMORY, 1 );
+        exerciseLinkSet( StoragePolicy.PREFER_MEMORY, 17 );
+        exerciseLinkSet( StoragePolicy.PREFER_DISK, 100 );
+    }
+
+    public void testScores() {
+        SpillLinkSet lset = new SpillLinkSet( StoragePolicy.PREFER_MEMORY, 2 );
+        RowLink2 link2 = new RowLink2( new RowRef( 0, 5 ), new RowRef( 1, 8 ) );
+        link2.setScore( 0.25 );
+        PairsRowLink plink =
+            new PairsRowLink( new RowRef( 1, 3 ),
+                              new RowRef[] { new RowRef( 0, 9 ),
+                                             new RowRef( 2, 1 ) },
+                              new double[] { 1.5, 2.5 }, false );
+        RowLink link = new RowLink( new RowRef( 0, 1 ) );
+        lset.addLink( link2 );
+        lset.addLink( plink );
+        lset.addLink( link );
+        assertTrue( lset.getRunCount() > 0 );
+        assertEquals( 3, lset.size() );
+        Iterator it = lset.iterator();
+        assertEquals( link, it.next() );
+        RowLink2 l2 = (RowLink2) it.next();
+        assertEquals( link2, l2 );
+        assertEquals( 0.25, l2.getScore() );
+        PairsRowLink pl = (PairsRowLink) it.next();
+        assertEquals( plink, pl );
+        for ( int i = 0; i < 3; i++ ) {
+            assertEquals( plink.getRef( i ), pl.getRef( i ) );
+            assertEquals( new Double( plink.getScore( i ) ),
+                          new Double( pl.getScore( i ) ) );
+        }
+        assertFalse( it.hasNext() );
+    }
+
+    public void testDuplicates() {
+        SpillLinkSet lset = new SpillLinkSet( StoragePolicy.PREFER_MEMORY, 3 );
+        RowLink a = new RowLink( new RowRef( 0, 1 ) );
+        RowLink b = new RowLink( new RowRef( 0, 2 ) );
+        RowLink c = new RowLink( new RowRef( 0, 3 ) );
+        RowLink d = new RowLink( new RowRef( 0, 4 ) );
+        RowLink2 b2 = new RowLink2( new RowRef( 0, 2 ), new RowRef( 1, 2 ) );
+        b2.setScore( 0.5 );
+        lset.addLink( b2 );
+        lset.addLink( a );
+        lset.addLink( b );
+        assertEquals( 1, lset.getRunCount() );
+        lset.addLink( a );
+        lset.addLink( b2 );
+        lset.addLink( c );
+        lset.addLink( d );
+        assertEquals( 5, lset.size() );
+        List list = toList( lset );
+        assertEquals( 5, list.size() );
+        assertEquals( 0.5, ((RowLink2) list.get( list.indexOf( b2 ) ))
+                          .getScore() );
+        assertTrue( lset.removeLink( a ) );
+        assertFalse( lset.containsLink( a ) );
+        assertFalse( lset.removeLink( a ) );
+        assertEquals( 4, lset.size() );
+        assertEquals( 4, toList( lset ).size() );
+    }
+
+    public void testRunLifetime() {
+        CountingPolicy policy = new CountingPolicy();
+        SpillLinkSet lset = new SpillLinkSet( policy, 4 );
+        List links = new ArrayList();
+        for ( int i = 0; i < 40; i++ ) {
+            RowLink link = new RowLink( new RowRef( 0, i ) );
+            links.add( link );
+            lset.addLink( link );
+        }
+        int nrun = lset.getRunCount();
+        assertTrue( nrun > 1 );
+        assertEquals( nrun, policy.nOpen_ );
+
+        /* Runs emptied while an iterator is reading them are discarded
+         * from the set but not released until the iterator has done. */
+        Iterator it = lset.iterator();
+        assertEquals( links.get( 0 ), it.next() );
+        for ( Iterator lit = links.iterator(); lit.hasNext(); ) {
+            assertTrue( lset.removeLink( (RowLink) lit.next() ) );
+        }
+        assertEquals( 0, lset.getRunCount() );
+        assertEquals( 0, lset.size() );
+        assertEquals( nrun, policy.nOpen_ );
+        int nit = 1;
+        while ( it.hasNext() ) {
+            it.next();
+            nit++;
+        }
+        assertTrue( nit > 1 );
+        assertEquals( 0, policy.nOpen_ );
+    }
+
+    public void testMatch() throws Exception {
+        StarTable t1 = createTable( 3000 );
+        StarTable t2 = createTable( 2000 );
+        MatchEngine engine =
+            new IsotropicCartesianMatchEngine( 2, 0.01, false );
+        StarTable[] tables = new StarTable[] { t1, t2 };
+        PairMode[] modes = PairMode.values();
+        for ( int im = 0; im < modes.length; im++ ) {
+            RowMatcher m0 = new RowMatcher( engine, tables );
+            RowMatcher m1 = new RowMatcher( engine, tables );
+            m1.setLinkStorage( StoragePolicy.PREFER_MEMORY, 50 );
+            assertTrue( m1.createLinkSet() instanceof SpillLinkSet );
+            List links0 = toList( m0.findPairMatches( modes[ im ] ) );
+            List links1 = toList( m1.findPairMatches( modes[ im ] ) );
+            assertTrue( links0.size() > 100 );
+            assertEquals( links0, links1 );
+            for ( int i = 0; i < links0.size(); i++ ) {
+                assertEquals( ((RowLink2) links0.get( i )).getScore(),
+                              ((RowLink2) links1.get( i )).getScore() );
+            }
+        }
+        RowMatcher im0 = new RowMatcher( engine, new StarTable[] { t1 } );
+        RowMatcher im1 = new RowMatcher( engine, new StarTable[] { t1 } );
+        im1.setLinkStorage( StoragePolicy.PREFER_DISK, 20 );
+        assertEquals( toList( im0.findInternalMatches( false ) ),
+                      toList( im1.findInternalMatches( false ) ) );
+    }
+
+    private void exerciseLinkSet( StoragePolicy policy, int maxMem ) {
+        LinkSet ref = new TreeSetLinkSet();
+        SpillLinkSet lset = new SpillLinkSet( policy, maxMem );
+        for ( int i = 0; i < 2000; i++ ) {
+            RowLink link = createLink();
+            assertEquals( ref.containsLink( link ), lset.containsLink( link ) );
+            ref.addLink( link );
+            lset.addLink( link );
+            if ( i % 7 == 0 ) {
+                RowLink rlink = createLink();
+                assertEquals( ref.removeLink( rlink ),
+                              lset.removeLink( rlink ) );
+            }
+        }
+        assertTrue( lset.getRunCount() > 0 );
+        assertTrue( lset.getRunCount() < 12 );
+        assertTrue( lset.getMemoryCount() < maxMem );
+        assertEquals( ref.size(), lset.size() );
+        assertEquals( toList( ref ), toList( lset ) );
+
+        /* Remove about half of the links during iteration. */
+        for ( Iterator it = lset.iterator(); it.hasNext(); ) {
+            RowLink link = (RowLink) it.next();
+            if ( rnd_.nextBoolean() ) {
+                it.remove();
+                assertTrue( ref.removeLink( link ) );
+                assertFalse( lset.containsLink( link ) );
+            }
+        }
+        assertEquals( ref.size(), lset.size() );
+        assertEquals( toList( ref ), toList( lset ) );
+
+        /* Empty it. */
+        for ( Iterator it = lset.iterator(); it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+        assertEquals( 0, lset.size() );
+        assertFalse( lset.iterator().hasNext() );
+        assertEquals( 0, lset.getRunCount() );
+    }
+
+    private RowLink createLink() {
+        int nref = 1 + rnd_.nextInt( 3 );
+        List refs = new ArrayList();
+        for ( int i = 0; i < nref; i++ ) {
+            refs.add( new RowRef( i, rnd_.nextInt( 800 ) ) );
+        }
+        return new RowLink( refs );
+    }
+
+    private StarTable createTable( int nrow ) {
+        double[] xs = new double[ nrow ];
+        double[] ys = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            xs[ i ] = rnd_.nextDouble();
+            ys[ i ] = rnd_.nextDouble();
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "X", xs ) );
+        table.addColumn( ArrayColumn.makeColumn( "Y", ys ) );
+        return table;
+    }
+
+    /**
+     * Storage policy which keeps track of how many byte stores are open.
+     */
+    private static class CountingPolicy extends StoragePolicy {
+        int nOpen_;
+        public ByteStore makeByteStore() {
+            final ByteStore base = PREFER_MEMORY.makeByteStore();
+            nOpen_++;
+            return new ByteStore() {
+                boolean closed_;
+                public OutputStream getOutputStream() {
+                    return base.getOutputStream();
+                }
+                public long getLength() {
+                    return base.getLength();
+                }
+                public void copy( OutputStream out ) throws IOException {
+                    base.copy( out );
+                }
+                public ByteBuffer[] toByteBuffers() throws IOException {
+                    return base.toByteBuffers();
+                }
+                public void close() {
+                    if ( ! closed_ ) {
+                        closed_ = true;
+                        nOpen_--;
+                        base.close();
+                    }
+                }
+            };
+        }
+        public RowStore makeRowStore() {
+            return PREFER_MEMORY.makeRowStore();
+        }
+        public RowStore makeConfiguredRowStore( StarTable meta ) {
+            return PREFER_MEMORY.makeConfiguredRowStore( meta );
+        }
+    }
+
+    private static List toList( LinkSet links ) {
+        links.sort();
+        List list = new ArrayList();
+        for ( Iterator it = links.iterator(); it.hasNext(); ) {
+            list.add( it.next() );
+        }
+        return list;
+    }
+}
@@ -0,0 +1,69 @@
+package uk.ac.starlink.table.join;
+
+import java.util.Random;
+import uk.ac.starlink.util.TestCase;
+
+public class TupleCacheTest extends TestCase {
+
+    private final Random rnd_;
+
+    public TupleCacheTest( String name ) {
+        super( name );
+        rnd_ = new Random( 90221L );
+    }
+
+    public void testScores() {
+        SkyPixellator pixer = new PixtoolsHealpixSkyPixellator();
+        double scale = 1e-3;
+        checkScores( new FixedSkyMatchEngine( pixer, scale ), 2 );
+        checkScores( new ErrorSkyMatchEngine( pixer, scale ), 3 );
+        checkScores( new EllipseSkyMatchEngine( pixer, scale ), 5 );
+    }
+
+    private void checkScores( AbstractSkyMatchEngine engine, int ncol ) {
+        int nrow = 400;
+        Object[][] tuples = new Object[ nrow ][];
+        for ( int i = 0; i < nrow; i++ ) {
+            tuples[ i ] = createTuple( ncol, ncol < 5 && i % 97 == 0 );
+        }
+        TupleCache cache = engine.createTupleCache( nrow );
+        assertNotNull( cache );
+        for ( int i = 0; i < nrow; i++ ) {
+            cache.setTuple( i, tuples[ i ] );
+        }
+        int nmatch = 0;
+        for ( int iq = 0; iq < 50; iq++ ) {
+            Object[] query = createTuple( ncol, ncol < 5 && iq == 13 );
+            cache.setQuery( query );
+            for ( int i = 0; i < nrow; i++ ) {
+                double score = engine.matchScore( query, tuples[ i ] );
+                assertEquals( score, cache.score( i ) );
+                if ( score >= 0 ) {
+                    nmatch++;
+                }
+            }
+        }
+        assertTrue( nmatch > 100 );
+    }
+
+    /**
+     * Returns a tuple with a position near (1,0.5) radians,
+     * and if required an error or circular ellipse shape.
+     */
+    private Object[] createTuple( int ncol, boolean isBlank ) {
+        Object[] tuple = new Object[ ncol ];
+        tuple[ 0 ] = new Double( 1.0 + rnd_.nextDouble() * 0.01 );
+        tuple[ 1 ] = new Double( isBlank ? Double.NaN
+                                         : 0.5 + rnd_.nextDouble() * 0.01 );
+        if ( ncol == 3 ) {
+            tuple[ 2 ] = new Double( rnd_.nextDouble() * 1e-3 );
+        }
+        else if ( ncol == 5 ) {
+            double mu = rnd_.nextDouble() * 2e-3;
+            tuple[ 2 ] = new Double( mu );
+            tuple[ 3 ] = new Double( mu );
+            tuple[ 4 ] = new Double( rnd_.nextDouble() * Math.PI );
+        }
+        return tuple;
+    }
+}
@@ -10,12 +10,16 @@ import uk.ac.starlink.table.ByteStore;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.DoubleCellAccess;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.FormatsTest;
+import uk.ac.starlink.table.MetaCopyStarTable;
+import uk.ac.starlink.table.RowPermutedStarTable;
 import uk.ac.starlink.table.RowStore;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableFormatException;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
 import uk.ac.starlink.util.TestCase;
 
 /*
@@ -166,6 +170,101 @@ public class StorageTest extends TestCase {
         assertTrue( err.indexOf( "sky-blue" ) > 0 );
     }
 
+    public void testDoubleAccess() throws IOException {
+        int nrow = 200;
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( (long) nrow );
+        Object[] numData = {
+            new byte[ nrow ],
+            new short[ nrow ],
+            new int[ nrow ],
+            new long[ nrow ],
+            new float[ nrow ],
+            new double[ nrow ],
+        };
+        for ( int i = 0; i < numData.length; i++ ) {
+            fillRandom( numData[ i ], -100, 100 );
+            t0.addColumn( ArrayColumn.makeColumn( "col" + ( i + 1 ),
+                                                  numData[ i ] ) );
+        }
+        Integer[] nullInts = new Integer[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            nullInts[ i ] = i % 3 == 0 ? null : new Integer( i * 7 );
+        }
+        t0.addColumn( ArrayColumn.makeColumn( "nullInts", nullInts ) );
+        String[] strs = new String[ nrow ];
+        fillCycle( strs, new String[] { "a", "bb", null } );
+        t0.addColumn( ArrayColumn.makeColumn( "strs", strs ) );
+
+        StarTable seqTable = new WrapperStarTable( t0 ) {
+            public long getRowCount() {
+                return -1L;
+            }
+            public boolean isRandom() {
+                return false;
+            }
+        };
+        StarTable[] stored = new StarTable[] {
+            fillStore( new SidewaysRowStore(), t0 ).getStarTable(),
+            fillStore( new SidewaysRowStore(), seqTable ).getStarTable(),
+        };
+        int ncol = t0.getColumnCount();
+        for ( int it = 0; it < stored.length; it++ ) {
+            DoubleCellAccess dtable = (DoubleCellAccess) stored[ it ];
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                boolean isNum = icol < ncol - 1;
+                assertEquals( isNum, dtable.hasDoubleCells( icol ) );
+                if ( isNum ) {
+                    for ( long irow = 0; irow < nrow; irow++ ) {
+                        Object cell = t0.getCell( irow, icol );
+                        double dval = dtable.getDouble( irow, icol );
+                        if ( cell == null ) {
+                            assertTrue( Double.isNaN( dval ) );
+                        }
+                        else {
+                            assertEquals( ((Number) cell).doubleValue(),
+                                          dval );
+                        }
+                    }
+                }
+            }
+        }
+
+        /* Check that typed access is forwarded by suitable wrappers. */
+        StarTable base = stored[ 0 ];
+        long[] rowMap = new long[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            rowMap[ i ] = nrow - 1 - i;
+        }
+        StarTable metaTable = new MetaCopyStarTable( base );
+        StarTable permTable = new RowPermutedStarTable( base, rowMap );
+        assertFalse( Tables.hasDoubleCells( new WrapperStarTable( base ),
+                                            0 ) );
+        assertFalse( Tables.hasDoubleCells( metaTable, ncol - 1 ) );
+        assertFalse( Tables.hasDoubleCells( permTable, ncol - 1 ) );
+        for ( int icol = 0; icol < ncol - 1; icol++ ) {
+            assertTrue( Tables.hasDoubleCells( metaTable, icol ) );
+            assertTrue( Tables.hasDoubleCells( permTable, icol ) );
+            for ( long irow = 0; irow < nrow; irow++ ) {
+                double dval = ((DoubleCellAccess) base).getDouble( irow, icol );
+                assertEquals( dval, ((DoubleCellAccess) metaTable)
+                                   .getDouble( irow, icol ) );
+                assertEquals( dval, ((DoubleCellAccess) permTable)
+                                   .getDouble( nrow - 1 - irow, icol ) );
+            }
+            double[] buf = new double[ nrow + 1 ];
+            double[] pbuf = new double[ nrow ];
+            ((DoubleCellAccess) metaTable)
+           .readDoubleColumn( icol, 0, nrow, buf, 1 );
+            ((DoubleCellAccess) permTable)
+           .readDoubleColumn( icol, 0, nrow, pbuf, 0 );
+            for ( int irow = 0; irow < nrow; irow++ ) {
+                double dval = ((DoubleCellAccess) base).getDouble( irow, icol );
+                assertEquals( dval, buf[ irow + 1 ] );
+                assertEquals( dval, pbuf[ nrow - 1 - irow ] );
+            }
+        }
+    }
+
     public void testByteStorage() throws IOException {
         testByteStore( StoragePolicy.PREFER_MEMORY.makeByteStore() );
         testByteStore( StoragePolicy.PREFER_DISK.makeByteStore() );
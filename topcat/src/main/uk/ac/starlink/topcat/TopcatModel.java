@@ -8,7 +8,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -33,11 +32,11 @@ import javax.swing.event.ListDataListener;
 import javax.swing.table.DefaultTableColumnModel;
 import javax.swing.table.TableColumn;
 import javax.swing.table.TableColumnModel;
-import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.ColumnPermutedStarTable;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.KeySorter;
 import uk.ac.starlink.table.RowListStarTable;
 import uk.ac.starlink.table.ShapeIterator;
 import uk.ac.starlink.table.StarTable;
@@ -1041,46 +1040,25 @@ public class TopcatModel {
      */
     private int[] getSortOrder( int icol, final boolean ascending )
             throws IOException { 
-        final int sense = ascending ? 1 : -1;
-         
-        /* Define a little class for objects being sorted. */
-        class Item implements Comparable { 
-            int rank;
-            Comparable value;
-            public int compareTo( Object o ) {
-                Comparable oval = ((Item) o).value;
-                if ( value != null && oval != null ) {
-                    return sense * value.compareTo( oval );
-                } 
-                else if ( value == null && oval == null ) {
-                    return 0;
-                }
-                else {
-                    return sense * ( ( value == null ) ? 1 : -1 );
-                }
-            }
-        }
-
-        /* Construct a list of all the elements in the given column. */
-        int nrow = AbstractStarTable
-                  .checkedLongToInt( dataModel_.getRowCount() );
-        ColumnData coldata = dataModel_.getColumnData( icol );
-        Item[] items = new Item[ nrow ];
-        for ( int i = 0; i < nrow; i++ ) {
-            Item item = new Item();
-            item.rank = i;
-            item.value = (Comparable) coldata.readValue( (long) i );
-            items[ i ] = item;
+        final ColumnData coldata = dataModel_.getColumnData( icol );
+        Class clazz = coldata.getColumnInfo().getContentClass();
+        if ( ! Comparable.class.isAssignableFrom( clazz ) ) {
+            clazz = Comparable.class;
         }
+        KeySorter.KeyReader keyReader = new KeySorter.KeyReader( clazz ) {
+            public Object readKey( long irow ) throws IOException {
+                return coldata.readValue( irow );
+            }
+        };
 
-        /* Sort the list on the ordering of the items. */
-        Arrays.sort( items );
-
-        /* Construct and return a list of reordered ranks from the
-         * sorted array. */
+        /* Blanks go at the end of the ascending collation sequence. */
+        long[] lrowMap = new KeySorter( ascending, true )
+                        .sort( new KeySorter.KeyReader[] { keyReader },
+                               dataModel_.getRowCount() );
+        int nrow = lrowMap.length;
         int[] rowMap = new int[ nrow ];
         for ( int i = 0; i < nrow; i++ ) {
-            rowMap[ i ] = items[ i ].rank;
+            rowMap[ i ] = (int) lrowMap[ i ];
         }
         return rowMap;
     }
@@ -52,6 +52,13 @@ public class CountDataStore implements DataStore {
                                            maxCount_ );
     }
 
+    /**
+     * Returns a single truncated sequence.
+     */
+    public TupleSequence[] getTupleSequences( DataSpec spec, int nseq ) {
+        return new TupleSequence[] { getTupleSequence( spec ) };
+    }
+
     /**
      * Returns the total number of tuples represented by the tuple sequences
      * dispensed by this data store since construction time.
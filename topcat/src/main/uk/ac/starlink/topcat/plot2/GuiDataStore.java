@@ -64,13 +64,40 @@ public class GuiDataStore implements DataStore {
     }
 
     public TupleSequence getTupleSequence( DataSpec dataSpec ) {
+        init();
+        return createGuiSequence( base_.getTupleSequence( dataSpec ) );
+    }
+
+    public TupleSequence[] getTupleSequences( DataSpec dataSpec, int nseq ) {
+        init();
+        TupleSequence[] tseqs = base_.getTupleSequences( dataSpec, nseq );
+        for ( int is = 0; is < tseqs.length; is++ ) {
+            tseqs[ is ] = createGuiSequence( tseqs[ is ] );
+        }
+        return tseqs;
+    }
+
+    /**
+     * Performs any initialisation required before the first tuple
+     * sequence is dispensed.
+     */
+    private void init() {
         if ( ! isInit_ ) {
             if ( progresser_ != null ) {
                 progresser_.init();
             }
             isInit_ = true;
         }
-        final TupleSequence baseSeq = base_.getTupleSequence( dataSpec );
+    }
+
+    /**
+     * Wraps a tuple sequence to check for interruptions of the thread
+     * consuming it, and to report progress if required.
+     *
+     * @param  baseSeq  base sequence
+     * @return  wrapped sequence
+     */
+    private TupleSequence createGuiSequence( final TupleSequence baseSeq ) {
         if ( progresser_ == null ) {
             return new WrapperTupleSequence( baseSeq ) {
                 @Override
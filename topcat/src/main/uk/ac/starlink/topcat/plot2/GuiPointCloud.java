@@ -68,6 +68,18 @@ public class GuiPointCloud {
         return tclouds_;
     }
 
+    /**
+     * Returns the data store supplying position data for this point cloud.
+     * Iteration should normally be done using the result of
+     * {@link #createGuiDataStore} instead, but this object may be used
+     * to identify the data.
+     *
+     * @return  base data store
+     */
+    public DataStore getBaseDataStore() {
+        return baseDataStore_;
+    }
+
     /**
      * Returns a data store that can be used for iterating over
      * this point cloud.
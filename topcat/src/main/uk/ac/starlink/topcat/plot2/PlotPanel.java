@@ -1254,9 +1254,11 @@ public class PlotPanel<P,A> extends JComponent implements ActionListener {
             DataStore dataStore1 = dataStore;
             dataStore = null;
 
-            /* Pick subsample of rows if requested. */
+            /* Pick subsample of rows if requested.  Use a stratified
+             * random subsample, so that intermediate plots are not
+             * distorted by any regularity in the row order. */
             if ( rowStep > 1 ) {
-                dataStore1 = new StepDataStore( dataStore1, rowStep );
+                dataStore1 = new StepDataStore( dataStore1, rowStep, true );
             }
 
             /* Arrange for progress logging.  This also ensures that
@@ -74,6 +74,8 @@ import uk.ac.starlink.ttools.plot2.PlotLayer;
 import uk.ac.starlink.ttools.plot2.PlotType;
 import uk.ac.starlink.ttools.plot2.PlotUtil;
 import uk.ac.starlink.ttools.plot2.Plotter;
+import uk.ac.starlink.ttools.plot2.PointIndex;
+import uk.ac.starlink.ttools.plot2.PointIndexCache;
 import uk.ac.starlink.ttools.plot2.ReportKey;
 import uk.ac.starlink.ttools.plot2.ReportMap;
 import uk.ac.starlink.ttools.plot2.ReportMeta;
@@ -139,8 +141,12 @@ public class StackPlotWindow<P,A> extends AuxWindow {
     private final ToggleButtonModel axisLockModel_;
     private final ToggleButtonModel auxLockModel_;
     private final ZoneId dfltZone_;
+    private final PointIndexCache indexCache_;
     private boolean hasShader_;
     private static final Level REPORT_LEVEL = Level.INFO;
+
+    /** Maximum number of surfaces for which point indices are retained. */
+    private static final int MAX_INDEX_SURFACES = 4;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.ttools.plot2" );
 
@@ -158,6 +164,7 @@ public class StackPlotWindow<P,A> extends AuxWindow {
         super( name, parent );
         plotType_ = plotType;
         plotTypeGui_ = plotTypeGui;
+        indexCache_ = new PointIndexCache( MAX_INDEX_SURFACES );
         zoneFact_ = plotTypeGui_.createZoneFactory();
         canSelectPoints_ = plotTypeGui.hasPositions();
         dfltZone_ = zoneFact_.getDefaultZone();
@@ -1002,7 +1009,8 @@ public class StackPlotWindow<P,A> extends AuxWindow {
             return new Factory<Map<TopcatModel,Long>>() {
                 @Slow
                 public Map<TopcatModel,Long> getItem() {
-                    return findPoints( surface, pointCloud, pos );
+                    return findPoints( surface, pointCloud, pos,
+                                       indexCache_ );
                 }
             };
         }
@@ -1012,18 +1020,22 @@ public class StackPlotWindow<P,A> extends AuxWindow {
     }
 
     /**
-     * Iterates over the points in a given cloud to find out whether any
+     * Queries the points in a given cloud to find out whether any
      * are near to a given screen position.
      *
      * @param  surface  plot surface
      * @param  pointCloud   point cloud
      * @param  pos   query position in graphics coordinates
+     * @param  indexCache   storage for reusable point indices
      * @return  map of topcat models to row indices giving rows whose markers
      *          are close to pos; or null in case of interruption
      */
+    @Slow
     private static Map<TopcatModel,Long> findPoints( Surface surface,
                                                      GuiPointCloud pointCloud,
-                                                     Point pos ) {
+                                                     Point pos,
+                                                     PointIndexCache
+                                                         indexCache ) {
 
         /* Prepare a datastore which will watch for interruptions
          * and possibly log progress. */
@@ -1037,11 +1049,19 @@ public class StackPlotWindow<P,A> extends AuxWindow {
         /* Iterate over each sub point cloud distinct positions. */
         for ( int ic = 0; ic < tclouds.length; ic++ ) {
             TableCloud tcloud = tclouds[ ic ];
-            DataGeom geom = tcloud.getDataGeom();
-            int iPosCoord = tcloud.getPosCoordIndex();
-            TupleSequence tseq = tcloud.createTupleSequence( dataStore );
+            PointIndex pointIndex =
+                getPointIndex( indexCache, surface, pointCloud, tcloud,
+                               dataStore );
+            if ( pointIndex == null ) {
+                return null;
+            }
             IndicatedRow indicated =
-                PlotUtil.getClosestRow( surface, geom, iPosCoord, tseq, pos );
+                pointIndex.isOverflow()
+              ? PlotUtil.getClosestRow( surface, tcloud.getDataGeom(),
+                                        tcloud.getPosCoordIndex(),
+                                        tcloud.createTupleSequence( dataStore ),
+                                        pos )
+              : pointIndex.getClosestRow( pos );
             if ( indicated != null ) {
                 long index = indicated.getIndex();
                 double distance = indicated.getDistance();
@@ -1065,6 +1085,39 @@ public class StackPlotWindow<P,A> extends AuxWindow {
         return indexMap;
     }
 
+    /**
+     * Returns a spatial index for the points of a table cloud
+     * plotted on a given surface.  A stored index is used if available,
+     * otherwise a new one is created and stored.
+     *
+     * @param  indexCache   storage for reusable point indices
+     * @param  surface  plot surface
+     * @param  pointCloud   point cloud containing tcloud
+     * @param  tcloud   table cloud
+     * @param  dataStore  data store for iterating over pointCloud
+     * @return   point index, possibly an overflow index,
+     *           or null in case of interruption
+     */
+    @Slow
+    private static PointIndex getPointIndex( PointIndexCache indexCache,
+                                             Surface surface,
+                                             GuiPointCloud pointCloud,
+                                             TableCloud tcloud,
+                                             DataStore dataStore ) {
+        Object dataId = pointCloud.getBaseDataStore();
+        PointIndex index = indexCache.getIndex( surface, dataId, tcloud );
+        if ( index == null ) {
+            index = PointIndex
+                   .createPointIndex( surface, tcloud.getDataGeom(),
+                                      tcloud.getPosCoordIndex(),
+                                      tcloud.createTupleSequence( dataStore ) );
+            if ( index != null ) {
+                indexCache.putIndex( surface, dataId, tcloud, index );
+            }
+        }
+        return index;
+    }
+
     /**
      * Takes a map indicating a row to highlight for zero or more tables,
      * and highlights the relevant rows.
@@ -1232,7 +1285,8 @@ public class StackPlotWindow<P,A> extends AuxWindow {
                                               .createGuiPointCloud( iz ),
                                                PositionCriterion
                                               .createBlobCriterion( surface,
-                                                                    blob ) ) );
+                                                                    blob ),
+                                               surface, blob ) );
             }
         }
         return inclusions.toArray( new Inclusion[ 0 ] );
@@ -1243,13 +1297,18 @@ public class StackPlotWindow<P,A> extends AuxWindow {
      * table->row_inclusion_mask map to indicate which rows in the tables
      * are included.
      *
+     * If the inclusion is defined by a graphical region,
+     * a spatial index of the plotted points is used where possible.
+     *
      * @param   maskMap  map to update; will be populated with blank entries
      *                   as required
      * @param   inclusion  describes point data to include
+     * @param   indexCache   storage for reusable point indices
      */
     @Slow
     private static void updateMasks( Map<TopcatModel,BitSet> maskMap,
-                                     Inclusion inclusion ) {
+                                     Inclusion inclusion,
+                                     PointIndexCache indexCache ) {
         GuiPointCloud pointCloud = inclusion.pointCloud_;
         PositionCriterion criterion = inclusion.criterion_;
         TableCloud[] tclouds = pointCloud.getTableClouds();
@@ -1272,8 +1331,27 @@ public class StackPlotWindow<P,A> extends AuxWindow {
             }
             BitSet mask = maskMap.get( tcModel );
 
-            /* Iterate over the points in the cloud, testing inclusion and
-             * updating this table's mask accordingly. */
+            /* If the region is known in graphics coordinates, query
+             * the points in the relevant part of a spatial index,
+             * unless there are too many points to index. */
+            if ( inclusion.blob_ != null ) {
+                PointIndex pointIndex =
+                    getPointIndex( indexCache, inclusion.surface_, pointCloud,
+                                   tcloud, dataStore );
+                if ( pointIndex == null ) {
+                    continue;
+                }
+                if ( ! pointIndex.isOverflow() ) {
+                    for ( long ix :
+                          pointIndex.getRowsInShape( inclusion.blob_ ) ) {
+                        mask.set( Tables.checkedLongToInt( ix ) );
+                    }
+                    continue;
+                }
+            }
+
+            /* Otherwise iterate over the points in the cloud, testing
+             * inclusion and updating this table's mask accordingly. */
             double[] dpos = new double[ geom.getDataDimCount() ];
             TupleSequence tseq = tcloud.createTupleSequence( dataStore );
             while ( tseq.next() ) {
@@ -1402,7 +1480,7 @@ public class StackPlotWindow<P,A> extends AuxWindow {
                     new LinkedHashMap<TopcatModel,BitSet>();
                 long start = System.currentTimeMillis();
                 for ( Inclusion inclusion : inclusions ) {
-                    updateMasks( maskMap, inclusion );
+                    updateMasks( maskMap, inclusion, indexCache_ );
                     if ( Thread.currentThread().isInterrupted() ) {
                         return null;
                     }
@@ -1646,16 +1724,35 @@ public class StackPlotWindow<P,A> extends AuxWindow {
     private static class Inclusion {
         final GuiPointCloud pointCloud_;
         final PositionCriterion criterion_;
+        final Surface surface_;
+        final Shape blob_;
 
         /**
-         * Constructor.
+         * Constructs an inclusion based on a data position criterion.
          *
          * @param  pointCloud  set of data points
          * @param  criterion  inclusion criterion
          */
         Inclusion( GuiPointCloud pointCloud, PositionCriterion criterion ) {
+            this( pointCloud, criterion, null, null );
+        }
+
+        /**
+         * Constructs an inclusion which may also be described
+         * by a graphical region.  If supplied, the surface and blob
+         * must define the same inclusion as the criterion.
+         *
+         * @param  pointCloud  set of data points
+         * @param  criterion  inclusion criterion
+         * @param  surface   plot surface, or null
+         * @param  blob   region in graphics coordinates of surface, or null
+         */
+        Inclusion( GuiPointCloud pointCloud, PositionCriterion criterion,
+                   Surface surface, Shape blob ) {
             pointCloud_ = pointCloud;
             criterion_ = criterion;
+            surface_ = surface;
+            blob_ = blob;
         }
     }
 
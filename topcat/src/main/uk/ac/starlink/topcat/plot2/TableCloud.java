@@ -27,6 +27,7 @@ import uk.ac.starlink.ttools.plot2.data.TupleSequence;
  * in a TableCloud once.
  * When iterating over the points, no guarantee is given
  * about the order in which they appear.
+ * Instances with the same content are equal.
  *
  * @author   Mark Taylor
  * @since    27 Jan 2014
@@ -268,6 +269,7 @@ public abstract class TableCloud {
     /**
      * TableCloud implementation based on a single subcloud.
      */
+    @Equality
     private static class SingleTableCloud extends TableCloud {
         private final DataSpec dataSpec_;
 
@@ -290,12 +292,35 @@ public abstract class TableCloud {
         public long getReadRowCount() {
             return ((GuiDataSpec) dataSpec_).getRowCount();
         }
+
+        @Override
+        public int hashCode() {
+            int code = 44102;
+            code = 23 * code + getDataGeom().hashCode();
+            code = 23 * code + getPosCoordIndex();
+            code = 23 * code + dataSpec_.hashCode();
+            return code;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( o instanceof SingleTableCloud ) {
+                SingleTableCloud other = (SingleTableCloud) o;
+                return this.getDataGeom().equals( other.getDataGeom() )
+                    && this.getPosCoordIndex() == other.getPosCoordIndex()
+                    && this.dataSpec_.equals( other.dataSpec_ );
+            }
+            else {
+                return false;
+            }
+        }
     }
 
     /**
      * TableCloud implementation based on multiple subclouds with the same
      * geoms.
      */
+    @Equality
     private static class UnionTableCloud extends TableCloud {
         private final DataSpec[] dataSpecs_;
         private final int nrow_;
@@ -328,6 +353,28 @@ public abstract class TableCloud {
             }
             return nr;
         }
+
+        @Override
+        public int hashCode() {
+            int code = 55921;
+            code = 23 * code + getDataGeom().hashCode();
+            code = 23 * code + getPosCoordIndex();
+            code = 23 * code + Arrays.hashCode( dataSpecs_ );
+            return code;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( o instanceof UnionTableCloud ) {
+                UnionTableCloud other = (UnionTableCloud) o;
+                return this.getDataGeom().equals( other.getDataGeom() )
+                    && this.getPosCoordIndex() == other.getPosCoordIndex()
+                    && Arrays.equals( this.dataSpecs_, other.dataSpecs_ );
+            }
+            else {
+                return false;
+            }
+        }
     }
 
     /**
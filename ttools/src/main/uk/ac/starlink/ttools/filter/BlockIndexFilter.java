@@ -0,0 +1,171 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.BlockIndexAccess;
+import uk.ac.starlink.table.ColumnBlockIndex;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.ttools.jel.ColumnIdentifier;
+
+/**
+ * Processing step which builds block indexes for selected numeric columns
+ * of a random-access copy of its input table.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ * @see      uk.ac.starlink.table.ColumnBlockIndex
+ */
+public class BlockIndexFilter extends BasicFilter {
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.ttools.filter" );
+
+    public BlockIndexFilter() {
+        super( "blockindex", "[-blocksize <n>] <colid-list>" );
+    }
+
+    protected String[] getDescriptionLines() {
+        return new String[] {
+            "<p>Records the minimum and maximum values in each block of",
+            "rows for the numeric columns listed in",
+            "<code>&lt;colid-list&gt;</code>.",
+            "Downstream steps which look for rows in a given range of",
+            "values, such as the coverage check done by crossmatches,",
+            "can use this information to skip blocks of rows",
+            "that cannot contain any matches.",
+            "This works best when the table is sorted, or at least",
+            "clustered, on the indexed columns.",
+            "</p>",
+            "<p>The <code>-blocksize</code> flag gives the number of rows",
+            "in each block; the default is "
+            + ColumnBlockIndex.DEFAULT_BLOCK_SIZE + ".",
+            "</p>",
+            "<p>The result of this filter is guaranteed to be random-access;",
+            "the input table is cached if it is not.",
+            "Tables cached using the \"sideways\" storage policy",
+            "are indexed automatically.",
+            "</p>",
+            explainSyntax( new String[] { "colid-list", } ),
+        };
+    }
+
+    public ProcessingStep createStep( Iterator argIt ) throws ArgException {
+        int blockSize = ColumnBlockIndex.DEFAULT_BLOCK_SIZE;
+        String colIds = null;
+        while ( argIt.hasNext() && colIds == null ) {
+            String arg = (String) argIt.next();
+            if ( arg.equals( "-blocksize" ) && argIt.hasNext() ) {
+                argIt.remove();
+                String sizeStr = (String) argIt.next();
+                argIt.remove();
+                try {
+                    blockSize = Integer.parseInt( sizeStr );
+                }
+                catch ( NumberFormatException e ) {
+                    throw new ArgException( "Block size " + sizeStr
+                                          + " not numeric" );
+                }
+                if ( blockSize < 1 ) {
+                    throw new ArgException( "Block size must be >= 1" );
+                }
+            }
+            else {
+                argIt.remove();
+                colIds = arg;
+            }
+        }
+        if ( colIds == null ) {
+            throw new ArgException( "Missing column list" );
+        }
+        final String colIdList = colIds;
+        final int bsize = blockSize;
+        return new ProcessingStep() {
+            public StarTable wrap( StarTable base ) throws IOException {
+                StarTable rbase = Tables.randomTable( base );
+                int[] icols = new ColumnIdentifier( rbase )
+                             .getColumnIndices( colIdList );
+                return new BlockIndexTable( rbase, icols, bsize );
+            }
+        };
+    }
+
+    /**
+     * Wrapper table which supplies block indexes for some of its columns.
+     */
+    private static class BlockIndexTable extends WrapperStarTable
+                                         implements BlockIndexAccess {
+
+        private final ColumnBlockIndex[] indexes_;
+
+        /**
+         * Constructor.
+         *
+         * @param  base  random-access base table
+         * @param  icols  indices of columns to index
+         * @param  blockSize  number of rows per block
+         */
+        BlockIndexTable( StarTable base, int[] icols, int blockSize )
+                throws IOException {
+            super( base );
+            int ncol = base.getColumnCount();
+            indexes_ = new ColumnBlockIndex[ ncol ];
+            ColumnBlockIndex.Builder[] builders =
+                new ColumnBlockIndex.Builder[ ncol ];
+            int nb = 0;
+            for ( int i = 0; i < icols.length; i++ ) {
+                int icol = icols[ i ];
+                Class clazz = base.getColumnInfo( icol ).getContentClass();
+                ColumnBlockIndex index = Tables.getBlockIndex( base, icol );
+                if ( index != null && index.getBlockSize() == blockSize ) {
+                    indexes_[ icol ] = index;
+                }
+                else if ( Number.class.isAssignableFrom( clazz ) ) {
+                    if ( builders[ icol ] == null ) {
+                        builders[ icol ] =
+                            new ColumnBlockIndex.Builder( blockSize );
+                        nb++;
+                    }
+                }
+                else {
+                    logger_.warning( "Not indexing non-numeric column "
+                                   + base.getColumnInfo( icol ).getName() );
+                }
+            }
+            if ( nb > 0 ) {
+                RowSequence rseq = base.getRowSequence();
+                try {
+                    while ( rseq.next() ) {
+                        for ( int ic = 0; ic < ncol; ic++ ) {
+                            if ( builders[ ic ] != null ) {
+                                builders[ ic ]
+                                    .acceptValue( rseq.getCell( ic ) );
+                            }
+                        }
+                    }
+                }
+                finally {
+                    rseq.close();
+                }
+                for ( int ic = 0; ic < ncol; ic++ ) {
+                    if ( builders[ ic ] != null ) {
+                        indexes_[ ic ] = builders[ ic ].build();
+                    }
+                }
+            }
+        }
+
+        public ColumnBlockIndex getBlockIndex( int icol ) {
+            return indexes_[ icol ] != null
+                 ? indexes_[ icol ]
+                 : Tables.getBlockIndex( baseTable, icol );
+        }
+
+        public boolean hasRowRanges() {
+            return Tables.hasRowRanges( baseTable );
+        }
+    }
+}
@@ -7,6 +7,7 @@ import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.WrapperStarTable;
 
 /**
@@ -129,5 +130,13 @@ public class FixNamesFilter extends BasicFilter implements ProcessingStep {
             paramList_.remove( getParameterByName( dval.getInfo().getName() ) );
             paramList_.add( dval );
         }
+
+        public boolean hasRowRanges() {
+            return Tables.hasRowRanges( baseTable );
+        }
+
+        public boolean hasDoubleCells( int icol ) {
+            return Tables.hasDoubleCells( baseTable, icol );
+        }
     }
 }
@@ -4,11 +4,10 @@ import gnu.jel.CompilationException;
 import gnu.jel.CompiledExpression;
 import gnu.jel.Library;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import uk.ac.starlink.table.KeySorter;
 import uk.ac.starlink.table.RowPermutedStarTable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
@@ -110,141 +109,67 @@ public class SortFilter extends BasicFilter {
 
         public StarTable wrap( StarTable baseTable ) throws IOException {
             baseTable = Tables.randomTable( baseTable );
-            long lnrow = baseTable.getRowCount();
-            if ( lnrow > Integer.MAX_VALUE ) {
-                throw new UnsupportedOperationException( 
-                    "Sorry, can't sort tables with >2^31 rows" );
-            }
-            int nrow = (int) lnrow;
-            Number[] rowMap = new Number[ nrow ];
-            for ( int i = 0; i < nrow; i++ ) {
-                rowMap[ i ] = new Integer( i );
-            }
-            Comparator keyComparator;
+            KeySorter.KeyReader[] keyReaders;
             try {
-                keyComparator = new RowComparator( baseTable, keys_, up_,
-                                                   nullsLast_ );
+                keyReaders = createKeyReaders( baseTable, keys_ );
             }
             catch ( CompilationException e ) {
                 throw (IOException) new IOException( "Bad sort key(s)" )
                                    .initCause( e );
             }
+            long[] rmap;
             try {
-                Arrays.sort( rowMap, keyComparator );
+                rmap = new KeySorter( up_, nullsLast_ )
+                      .sort( keyReaders, baseTable.getRowCount() );
             }
-            catch ( SortException e ) {
-                throw e.asIOException();
-            }
-            long[] rmap = new long[ nrow ];
-            for ( int i = 0; i < nrow; i++ ) {
-                rmap[ i ] = rowMap[ i ].longValue();
+            catch ( ClassCastException e ) {
+                throw (IOException)
+                      new IOException( "Expression comparison error"
+                                     + " during sorting" )
+                     .initCause( e );
             }
             return new RowPermutedStarTable( baseTable, rmap );
         }
     }
 
-    /** 
-     * Comparator which will compare two objects which are Numbers 
-     * representing row indices of a given table.
-     */
-    private static class RowComparator implements Comparator {
-
-        final CompiledExpression[] compExs_;
-        final int nexpr_;
-        final RandomJELRowReader rowReader_;
-        boolean up_;
-        boolean nullsLast_;
-
-        /**
-         * Constructor.
-         *
-         * @param  table  table whose rows are to be examined
-         * @param  keys   array of column identifiers; first is most
-         *                significant for ordering, second next, etc
-         * @param   up  true for sorting into ascending order, false for
-         *          descending order
-         * @param   nullsLast  true if blank values should be considered
-         *          last in the collation order, false if they should
-         *          be considered first
-         */
-        public RowComparator( StarTable table, String[] keys, boolean up,
-                              boolean nullsLast )
-                throws CompilationException {
-            nexpr_ = keys.length;
-            up_ = up;
-            nullsLast_ = nullsLast;
-
-            /* Prepare compiled expressions for reading the data from 
-             * table rows. */
-            rowReader_ = new RandomJELRowReader( table );
-            Library lib = JELUtils.getLibrary( rowReader_ );
-            compExs_ = new CompiledExpression[ nexpr_ ];
-            for ( int i = 0; i < nexpr_; i++ ) {
-                compExs_[ i ] = JELUtils.compile( lib, table, keys[ i ] );
-            }
-        }
-
-        public int compare( Object o1, Object o2 ) {
-            long row1 = ((Number) o1).longValue();
-            long row2 = ((Number) o2).longValue();
-            int c = 0;
-            for ( int i = 0; i < nexpr_ && c == 0; i++ ) { 
-                CompiledExpression compEx = compExs_[ i ];
-                Object val1;
-                Object val2;
-                try {
-                    val1 = rowReader_.evaluateAtRow( compEx, row1 );
-                    val2 = rowReader_.evaluateAtRow( compEx, row2 );
-                }
-                catch ( Throwable e ) {
-                    throw new SortException( "Sort error", e );
-                }
-                try {
-                    c = compareValues( (Comparable) val1, (Comparable) val2 );
-                }
-                catch ( ClassCastException e ) {
-                    throw new SortException( 
-                        "Expression comparison error during sorting", e );
-                }
-            }
-            return up_ ? c : -c;
-        }
-
-        /**
-         * Compares the actual cell values.
-         */
-        private int compareValues( Comparable o1, Comparable o2 ) {
-            boolean null1 = Tables.isBlank( o1 );
-            boolean null2 = Tables.isBlank( o2 );
-            if ( null1 && null2 ) {
-                return 0;
-            }
-            else if ( null1 ) {
-                return nullsLast_ ? +1 : -1;
-            }
-            else if ( null2 ) {
-                return nullsLast_ ? -1 : +1;
-            }
-            else {
-                return o1.compareTo( o2 );
-            }
-        }
-    }
-
     /**
-     * Helper class defining private exception type.
-     * Used to smuggle a checked exception out of a sort comparison.
+     * Returns an array of objects which read sort key values from the
+     * rows of a table.
+     *
+     * @param  table  random-access table whose rows are to be examined
+     * @param  keys   array of JEL expressions; first is most
+     *                significant for ordering, second next, etc
+     * @return  key reader array
      */
-    private static class SortException extends RuntimeException {
-        SortException( String msg, Throwable e ) {
-            super( msg, e );
-        }
-        IOException asIOException() {
-            Throwable error = getCause();
-            return error instanceof IOException
-                 ? (IOException) error
-                 : (IOException) new IOException( error.getMessage() )
-                                .initCause( error );
+    private static KeySorter.KeyReader[]
+            createKeyReaders( StarTable table, String[] keys )
+            throws CompilationException {
+        final RandomJELRowReader rowReader = new RandomJELRowReader( table );
+        Library lib = JELUtils.getLibrary( rowReader );
+        int nexpr = keys.length;
+        KeySorter.KeyReader[] keyReaders = new KeySorter.KeyReader[ nexpr ];
+        for ( int i = 0; i < nexpr; i++ ) {
+            final CompiledExpression compEx =
+                JELUtils.compile( lib, table, keys[ i ] );
+            Class clazz = JELUtils.getWrapperType( compEx.getTypeC() );
+            if ( ! Comparable.class.isAssignableFrom( clazz ) ) {
+                clazz = Comparable.class;
+            }
+            keyReaders[ i ] = new KeySorter.KeyReader( clazz ) {
+                public Object readKey( long irow ) throws IOException {
+                    try {
+                        return rowReader.evaluateAtRow( compEx, irow );
+                    }
+                    catch ( IOException e ) {
+                        throw e;
+                    }
+                    catch ( Throwable e ) {
+                        throw (IOException) new IOException( "Sort error" )
+                                           .initCause( e );
+                    }
+                }
+            };
         }
+        return keyReaders;
     }
 }
@@ -1,6 +1,7 @@
 package uk.ac.starlink.ttools.filter;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -10,12 +11,19 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.xml.sax.SAXException;
 import uk.ac.starlink.table.AbstractStarTable;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.DoubleCellAccess;
 import uk.ac.starlink.table.RandomStarTable;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
@@ -36,6 +44,12 @@ public class StatsFilter extends BasicFilter {
     /** Maximum value for cardinality counters. */
     private static final int MAX_CARDINALITY = 100;
 
+    /** Minimum number of rows in a parallel accumulation partition. */
+    private static final long MIN_PARTITION_ROWS = 100000;
+
+    /** Number of rows read at a time from typed numeric columns. */
+    private static final int DOUBLE_BLOCK = 1024;
+
     /*
      * Metadata for calculated quantities.
      */
@@ -286,125 +300,318 @@ public class StatsFilter extends BasicFilter {
             }
         }
 
-        /* Populate them with the the data read from the table. */
-        RowSequence rseq = table.getRowSequence();
-        long irow = 0L;
+        /* If the table can supply primitive numeric values, work out
+         * which columns can be read without creating wrapper objects.
+         * This is not done for long integers, where conversion to
+         * double may lose precision, or where the objects themselves
+         * are required by the cardinality or quantile calculations. */
+        DoubleCellAccess dAccess = table instanceof DoubleCellAccess
+                                 ? (DoubleCellAccess) table
+                                 : null;
+        boolean[] dCols = new boolean[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            dCols[ icol ] =
+                Tables.hasDoubleCells( table, icol ) &&
+                ! doCard &&
+                quantCalcs[ icol ] == null &&
+                table.getColumnInfo( icol ).getContentClass() != Long.class;
+        }
+
+        /* Populate them with the the data read from the table.
+         * If only quantities which can be combined between row ranges
+         * are required, and the table can supply independent
+         * row range sequences, the ranges are read in parallel. */
+        int npart = doCard || doQuant ? 1 : getPartitionCount( table );
+        long irow = npart > 1
+                  ? accumulateParallel( table, npart, colStats, dCols,
+                                        dAccess )
+                  : accumulateRows( table.getRowSequence(), 0L,
+                                    table.getRowCount(), colStats,
+                                    cardCheckers, quantCalcs, dCols,
+                                    dAccess );
+
+        /* Get a MapGroup representing column metadata (the option is 
+         * provided to output this alongside the statistical results). */
+        MapGroup group = MetadataFilter.metadataMapGroup( table );
+
+        /* Augment the metadata with the relevant statistical results for
+         * each column. */
+        for ( int icol = 0; icol < ncol; icol++ ) {
+
+            /* Gather statistical results. */
+            UnivariateStats stats = colStats[ icol ];
+            long count = stats.getCount();
+            double dcount = (double) count;
+            double sum0 = dcount;
+            double sum1 = stats.getSum();
+            double sum2 = stats.getSum2();
+            double sum3 = stats.getSum3();
+            double sum4 = stats.getSum4();
+            double mean = sum1 / dcount;
+            double nvar = ( sum2 - sum1 * sum1 / dcount );
+            double popvar = nvar / dcount;
+            double sampvar = nvar / ( dcount - 1 );
+          
+            double skew = Math.sqrt( dcount ) / Math.pow( nvar, 1.5 )
+                        * ( + 1 * sum3
+                            - 3 * mean * sum2
+                            + 3 * mean * mean * sum1
+                            - 1 * mean * mean * mean * sum0 );
+            double kurtosis = ( dcount / ( nvar * nvar ) )
+                            * ( + 1 * sum4 
+                                - 4 * mean * sum3 
+                                + 6 * mean * mean * sum2
+                                - 4 * mean * mean * mean * sum1
+                                + 1 * mean * mean * mean * mean * sum0 )
+                            - 3.0;
+            Number min = stats.getMinimum();
+            Number max = stats.getMaximum();
+
+            /* Add statistical quantities to the column's
+             * info->values map. */
+            Map map = (Map) group.getMaps().get( icol );
+            map.put( NGOOD_INFO, new Long( count ) );
+            map.put( NBAD_INFO, new Long( irow - count ) );
+            map.put( SUM_INFO, new Double( sum1 ) );
+            if ( isFinite( mean ) ) {
+                map.put( MEAN_INFO, new Float( (float) mean ) );
+            }
+            if ( isFinite( popvar ) ) {
+                map.put( POPSD_INFO,
+                         new Float( (float) Math.sqrt( popvar ) ) );
+                map.put( POPVAR_INFO, new Float( (float) popvar ) );
+            }
+            if ( isFinite( sampvar ) ) {
+                map.put( SAMPSD_INFO,
+                         new Float( (float) Math.sqrt( sampvar ) ) );
+                map.put( SAMPVAR_INFO, new Float( (float) sampvar ) );
+            }
+            if ( isFinite( skew ) ) {
+                map.put( SKEW_INFO, new Float( (float) skew ) );
+            }
+            if ( isFinite( kurtosis ) ) {
+                map.put( KURT_INFO, new Float( (float) kurtosis ) );
+            }
+            if ( min instanceof Number &&
+                 isFinite( ((Number) min).doubleValue() ) ) {
+                map.put( MIN_INFO, min );
+                map.put( MINPOS_INFO, new Long( stats.getMinPos() + 1 ) );
+            }
+            if ( max instanceof Number &&
+                 isFinite( ((Number) max).doubleValue() ) ) {
+                map.put( MAX_INFO, max );
+                map.put( MAXPOS_INFO, new Long( stats.getMaxPos() + 1 ) );
+            }
+            if ( doCard ) {
+                int ncard = cardCheckers[ icol ].getCardinality();
+                if ( ncard > 0 ) {
+                    map.put( CARDINALITY_INFO, new Integer( ncard ) );
+                }
+            }
+            if ( quantCalcs[ icol ] != null ) {
+                quantCalcs[ icol ].ready();
+                for ( int iq = 0; iq < quantInfos.length; iq++ ) {
+                    QuantileInfo quantInfo = quantInfos[ iq ];
+                    Number quantile = quantCalcs[ icol ]
+                                     .getQuantile( quantInfo.getQuant() );
+                    map.put( quantInfo, quantile );
+                }
+                if ( doMad ) {
+                    Number mad =
+                        QuantCalc.calculateMedianAbsoluteDeviation(
+                                       quantCalcs[ icol ] );
+                    map.put( MAD_INFO, mad );
+                    map.put( SMAD_INFO, new Float( mad.floatValue() *
+                                                   QuantCalc.MAD_SCALE ) );
+                }
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Feeds the rows of a row sequence to statistical accumulators.
+     * The sequence is closed on exit.
+     * Values for columns flagged in <code>dCols</code> are read
+     * in blocks using <code>dAccess</code> rather than from the sequence.
+     *
+     * @param  rseq  row sequence, not yet advanced
+     * @param  irow0  index of the first row in the sequence
+     * @param  irow1  index after the last row in the sequence;
+     *                only used if <code>dAccess</code> is in use
+     * @param  colStats  per-column statistics accumulators
+     * @param  cardCheckers  per-column cardinality counters, or null
+     * @param  quantCalcs   per-column quantile accumulators,
+     *                      elements may be null
+     * @param  dCols   per-column flags indicating whether values
+     *                 should be read using <code>dAccess</code>
+     * @param  dAccess  typed cell access for the table, or null
+     * @return  number of rows read
+     */
+    private static long accumulateRows( RowSequence rseq, long irow0,
+                                        long irow1,
+                                        UnivariateStats[] colStats,
+                                        CardinalityChecker[] cardCheckers,
+                                        QuantCalc[] quantCalcs,
+                                        boolean[] dCols,
+                                        DoubleCellAccess dAccess )
+            throws IOException {
+        int ncol = colStats.length;
+        double[][] dBufs = new double[ ncol ][];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            if ( dCols[ icol ] ) {
+                dBufs[ icol ] = new double[ DOUBLE_BLOCK ];
+            }
+        }
+        long irow = irow0;
+        long blockStart = irow0;
+        int blockLeng = 0;
         try {
             while ( rseq.next() ) {
-                Object[] row = rseq.getRow();
+                int ib = (int) ( irow - blockStart );
+                if ( ib == blockLeng ) {
+                    blockStart = irow;
+                    blockLeng = (int) Math.min( DOUBLE_BLOCK, irow1 - irow );
+                    ib = 0;
+                    if ( blockLeng <= 0 ) {
+                        throw new IllegalStateException( "Too many rows" );
+                    }
+                    for ( int icol = 0; icol < ncol; icol++ ) {
+                        if ( dCols[ icol ] ) {
+                            dAccess.readDoubleColumn( icol, irow, blockLeng,
+                                                      dBufs[ icol ], 0 );
+                        }
+                    }
+                }
                 for ( int icol = 0; icol < ncol; icol++ ) {
-                    Object datum = row[ icol ];
-                    colStats[ icol ].acceptDatum( datum );
-                    if ( doCard ) {
-                        cardCheckers[ icol ].acceptDatum( datum );
+                    if ( dCols[ icol ] ) {
+                        colStats[ icol ].acceptDouble( dBufs[ icol ][ ib ] );
                     }
-                    if ( quantCalcs[ icol ] != null ) {
-                        quantCalcs[ icol ].acceptDatum( datum );
+                    else {
+                        Object datum = rseq.getCell( icol );
+                        colStats[ icol ].acceptDatum( datum );
+                        if ( cardCheckers != null ) {
+                            cardCheckers[ icol ].acceptDatum( datum );
+                        }
+                        if ( quantCalcs[ icol ] != null ) {
+                            quantCalcs[ icol ].acceptDatum( datum );
+                        }
                     }
                 }
                 irow++;
             }
+        }
+        finally {
+            rseq.close();
+        }
+        return irow - irow0;
+    }
 
-            /* Get a MapGroup representing column metadata (the option is 
-             * provided to output this alongside the statistical results). */
-            MapGroup group = MetadataFilter.metadataMapGroup( table );
-
-            /* Augment the metadata with the relevant statistical results for
-             * each column. */
-            for ( int icol = 0; icol < ncol; icol++ ) {
-
-                /* Gather statistical results. */
-                UnivariateStats stats = colStats[ icol ];
-                long count = stats.getCount();
-                double dcount = (double) count;
-                double sum0 = dcount;
-                double sum1 = stats.getSum();
-                double sum2 = stats.getSum2();
-                double sum3 = stats.getSum3();
-                double sum4 = stats.getSum4();
-                double mean = sum1 / dcount;
-                double nvar = ( sum2 - sum1 * sum1 / dcount );
-                double popvar = nvar / dcount;
-                double sampvar = nvar / ( dcount - 1 );
-              
-                double skew = Math.sqrt( dcount ) / Math.pow( nvar, 1.5 )
-                            * ( + 1 * sum3
-                                - 3 * mean * sum2
-                                + 3 * mean * mean * sum1
-                                - 1 * mean * mean * mean * sum0 );
-                double kurtosis = ( dcount / ( nvar * nvar ) )
-                                * ( + 1 * sum4 
-                                    - 4 * mean * sum3 
-                                    + 6 * mean * mean * sum2
-                                    - 4 * mean * mean * mean * sum1
-                                    + 1 * mean * mean * mean * mean * sum0 )
-                                - 3.0;
-                Number min = stats.getMinimum();
-                Number max = stats.getMaximum();
-
-                /* Add statistical quantities to the column's
-                 * info->values map. */
-                Map map = (Map) group.getMaps().get( icol );
-                map.put( NGOOD_INFO, new Long( count ) );
-                map.put( NBAD_INFO, new Long( irow - count ) );
-                map.put( SUM_INFO, new Double( sum1 ) );
-                if ( isFinite( mean ) ) {
-                    map.put( MEAN_INFO, new Float( (float) mean ) );
-                }
-                if ( isFinite( popvar ) ) {
-                    map.put( POPSD_INFO,
-                             new Float( (float) Math.sqrt( popvar ) ) );
-                    map.put( POPVAR_INFO, new Float( (float) popvar ) );
-                }
-                if ( isFinite( sampvar ) ) {
-                    map.put( SAMPSD_INFO,
-                             new Float( (float) Math.sqrt( sampvar ) ) );
-                    map.put( SAMPVAR_INFO, new Float( (float) sampvar ) );
-                }
-                if ( isFinite( skew ) ) {
-                    map.put( SKEW_INFO, new Float( (float) skew ) );
-                }
-                if ( isFinite( kurtosis ) ) {
-                    map.put( KURT_INFO, new Float( (float) kurtosis ) );
-                }
-                if ( min instanceof Number &&
-                     isFinite( ((Number) min).doubleValue() ) ) {
-                    map.put( MIN_INFO, min );
-                    map.put( MINPOS_INFO, new Long( stats.getMinPos() + 1 ) );
-                }
-                if ( max instanceof Number &&
-                     isFinite( ((Number) max).doubleValue() ) ) {
-                    map.put( MAX_INFO, max );
-                    map.put( MAXPOS_INFO, new Long( stats.getMaxPos() + 1 ) );
-                }
-                if ( doCard ) {
-                    int ncard = cardCheckers[ icol ].getCardinality();
-                    if ( ncard > 0 ) {
-                        map.put( CARDINALITY_INFO, new Integer( ncard ) );
+    /**
+     * Feeds the rows of a table to statistical accumulators,
+     * reading contiguous row ranges concurrently.
+     * Only the basic univariate statistics are accumulated.
+     *
+     * @param  table  table supplying row range sequences
+     * @param  npart  maximum number of row ranges
+     * @param  colStats  per-column statistics accumulators,
+     *                   which have not yet received any data
+     * @param  dCols   per-column flags indicating whether values
+     *                 should be read using <code>dAccess</code>
+     * @param  dAccess  typed cell access for the table, or null
+     * @return  number of rows read
+     */
+    private static long accumulateParallel( StarTable table, int npart,
+                                            final UnivariateStats[] colStats,
+                                            final boolean[] dCols,
+                                            final DoubleCellAccess dAccess )
+            throws IOException {
+        final int ncol = colStats.length;
+        final long nrow = table.getRowCount();
+        final ColumnInfo[] infos = Tables.getColumnInfos( table );
+        RowSequence[] rseqs = Tables.getRowRangeSequences( table, npart );
+        npart = rseqs.length;
+        ExecutorService executor =
+                Executors.newFixedThreadPool( npart, new ThreadFactory() {
+            public Thread newThread( Runnable r ) {
+                Thread th = new Thread( r, "Stats Accumulator" );
+                th.setDaemon( true );
+                return th;
+            }
+        } );
+        List<Future<UnivariateStats[]>> futures =
+            new ArrayList<Future<UnivariateStats[]>>( npart );
+        for ( int ip = 0; ip < npart; ip++ ) {
+            final RowSequence rseq = rseqs[ ip ];
+            final long irow0 = nrow * ip / npart;
+            final long irow1 = nrow * ( ip + 1 ) / npart;
+            futures.add( executor.submit( new Callable<UnivariateStats[]>() {
+                public UnivariateStats[] call() throws IOException {
+                    UnivariateStats[] stats = new UnivariateStats[ ncol ];
+                    for ( int icol = 0; icol < ncol; icol++ ) {
+                        stats[ icol ] = UnivariateStats
+                                       .createStats( infos[ icol ]
+                                                    .getContentClass() );
                     }
+                    accumulateRows( rseq, irow0, irow1, stats, null,
+                                    new QuantCalc[ ncol ], dCols, dAccess );
+                    return stats;
                 }
-                if ( quantCalcs[ icol ] != null ) {
-                    quantCalcs[ icol ].ready();
-                    for ( int iq = 0; iq < quantInfos.length; iq++ ) {
-                        QuantileInfo quantInfo = quantInfos[ iq ];
-                        Number quantile = quantCalcs[ icol ]
-                                         .getQuantile( quantInfo.getQuant() );
-                        map.put( quantInfo, quantile );
-                    }
-                    if ( doMad ) {
-                        Number mad =
-                            QuantCalc.calculateMedianAbsoluteDeviation(
-                                           quantCalcs[ icol ] );
-                        map.put( MAD_INFO, mad );
-                        map.put( SMAD_INFO, new Float( mad.floatValue() *
-                                                       QuantCalc.MAD_SCALE ) );
-                    }
+            } ) );
+        }
+        executor.shutdown();
+
+        /* Combine the per-range results in row order. */
+        try {
+            for ( Future<UnivariateStats[]> future : futures ) {
+                UnivariateStats[] stats = future.get();
+                for ( int icol = 0; icol < ncol; icol++ ) {
+                    colStats[ icol ].addStats( stats[ icol ] );
                 }
             }
-            return group;
+            return nrow;
+        }
+        catch ( InterruptedException e ) {
+            throw (IOException)
+                  new InterruptedIOException( "Interrupted" ).initCause( e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                throw (IOException) new IOException( "Stats error: " + cause )
+                                   .initCause( cause );
+            }
         }
         finally {
-            rseq.close();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of row ranges into which a table should
+     * be split for parallel accumulation.
+     *
+     * @param  table  input table
+     * @return  number of partitions; 1 means sequential processing
+     */
+    private static int getPartitionCount( StarTable table ) {
+        if ( Tables.hasRowRanges( table ) ) {
+            long nrow = table.getRowCount();
+            int nproc = Runtime.getRuntime().availableProcessors();
+            return (int) Math.max( 1, Math.min( (long) nproc,
+                                                nrow / MIN_PARTITION_ROWS ) );
+        }
+        else {
+            return 1;
         }
     }
 
@@ -36,6 +36,7 @@ public class StepFactory {
         filterFactory_.register( "addskycoords", pkg + "AddSkyCoordsFilter" );
         filterFactory_.register( "assert", pkg + "AssertFilter" );
         filterFactory_.register( "badval", pkg + "BadValueFilter" );
+        filterFactory_.register( "blockindex", pkg + "BlockIndexFilter" );
         filterFactory_.register( "cache", pkg + "CacheFilter" );
         filterFactory_.register( "check", pkg + "CheckFilter" );
         filterFactory_.register( "clearparams", pkg + "ClearParameterFilter" );
@@ -23,6 +23,18 @@ public abstract class UnivariateStats {
      */
     public abstract void acceptDatum( Object value );
 
+    /**
+     * Submits a single numeric value to the statistics accumulator.
+     * This has the same effect as calling {@link #acceptDatum} with
+     * the corresponding wrapper object, or null for NaN,
+     * but implementations may avoid the object creation.
+     *
+     * @param   value  numeric value, NaN for blank
+     */
+    public void acceptDouble( double value ) {
+        acceptDatum( Double.isNaN( value ) ? null : new Double( value ) );
+    }
+
     /**
      * Returns the number of good (non-null) values accumulated.
      *
@@ -88,6 +100,17 @@ public abstract class UnivariateStats {
      */
     public abstract long getMaxPos();
 
+    /**
+     * Accumulates into this object the contents of another one.
+     * The other object must have been created by the same factory call
+     * as this one, and must have been fed the data immediately
+     * following that submitted to this one, so that the result
+     * is the same as if all the data had been submitted to this object.
+     *
+     * @param  other  compatible stats object
+     */
+    public abstract void addStats( UnivariateStats other );
+
     /**
      * Factory method to construct an instance of this class for accumulating
      * particular types of values.
@@ -97,7 +120,7 @@ public abstract class UnivariateStats {
      */
     public static UnivariateStats createStats( Class clazz ) {
         if ( Number.class.isAssignableFrom( clazz ) ) {
-            return new NumberStats();
+            return new NumberStats( clazz );
         }
         else if ( clazz == Boolean.class ) {
             return new BooleanStats();
@@ -154,6 +177,10 @@ public abstract class UnivariateStats {
         public long getMaxPos() {
             return -1L;
         }
+
+        public void addStats( UnivariateStats other ) {
+            nGood_ += ((ObjectStats) other).nGood_;
+        }
     }
 
     /**
@@ -207,12 +234,19 @@ public abstract class UnivariateStats {
         public long getMaxPos() {
             return -1L;
         }
+
+        public void addStats( UnivariateStats other ) {
+            BooleanStats o = (BooleanStats) other;
+            nGood_ += o.nGood_;
+            nTrue_ += o.nTrue_;
+        }
     }
 
     /**
      * Stats implementation for Number objects.
      */
     private static class NumberStats extends UnivariateStats {
+        private final Class clazz_;
         private long iDatum_;
         private long nGood_;
         private double sum1_;
@@ -225,31 +259,56 @@ public abstract class UnivariateStats {
         private Number max_;
         private long minPos_ = -1L;
         private long maxPos_ = -1L;
+
+        /**
+         * Constructor.
+         *
+         * @param  clazz  class of submitted values
+         */
+        NumberStats( Class clazz ) {
+            clazz_ = clazz;
+        }
         
         public void acceptDatum( Object obj ) {
             if ( obj instanceof Number ) {
                 Number val = (Number) obj;
-                double dval = val.doubleValue();
-                if ( ! Double.isNaN( dval ) ) {
-                    nGood_++;
-                    double s1 = dval;
-                    double s2 = dval * s1;
-                    double s3 = dval * s2;
-                    double s4 = dval * s3;
-                    sum1_ += s1;
-                    sum2_ += s2;
-                    sum3_ += s3;
-                    sum4_ += s4;
-                    if ( ! ( dval >= dmin_ ) ) {  // note NaN handling
-                        dmin_ = dval;
-                        min_ = val;
-                        minPos_ = iDatum_;
-                    }
-                    if ( ! ( dval <= dmax_ ) ) {  // note NaN handling
-                        dmax_ = dval;
-                        max_ = val;
-                        maxPos_ = iDatum_;
-                    }
+                accept( val.doubleValue(), val );
+            }
+            else {
+                iDatum_++;
+            }
+        }
+
+        public void acceptDouble( double dval ) {
+            accept( dval, null );
+        }
+
+        /**
+         * Accumulates a value.
+         *
+         * @param  dval  numeric value
+         * @param  val   object value, or null if not available
+         */
+        private void accept( double dval, Number val ) {
+            if ( ! Double.isNaN( dval ) ) {
+                nGood_++;
+                double s1 = dval;
+                double s2 = dval * s1;
+                double s3 = dval * s2;
+                double s4 = dval * s3;
+                sum1_ += s1;
+                sum2_ += s2;
+                sum3_ += s3;
+                sum4_ += s4;
+                if ( ! ( dval >= dmin_ ) ) {  // note NaN handling
+                    dmin_ = dval;
+                    min_ = val;
+                    minPos_ = iDatum_;
+                }
+                if ( ! ( dval <= dmax_ ) ) {  // note NaN handling
+                    dmax_ = dval;
+                    max_ = val;
+                    maxPos_ = iDatum_;
                 }
             }
             iDatum_++;
@@ -276,11 +335,11 @@ public abstract class UnivariateStats {
         }
 
         public Number getMinimum() {
-            return min_;
+            return min_ == null && minPos_ >= 0 ? toNumber( dmin_ ) : min_;
         }
 
         public Number getMaximum() {
-            return max_;
+            return max_ == null && maxPos_ >= 0 ? toNumber( dmax_ ) : max_;
         }
 
         public long getMinPos() {
@@ -290,5 +349,55 @@ public abstract class UnivariateStats {
         public long getMaxPos() {
             return maxPos_;
         }
+
+        public void addStats( UnivariateStats other ) {
+            NumberStats o = (NumberStats) other;
+            nGood_ += o.nGood_;
+            sum1_ += o.sum1_;
+            sum2_ += o.sum2_;
+            sum3_ += o.sum3_;
+            sum4_ += o.sum4_;
+
+            /* In case of ties, the earlier (this object's) extremum wins,
+             * as it would for sequential accumulation. */
+            if ( o.minPos_ >= 0 && ! ( o.dmin_ >= dmin_ ) ) {
+                dmin_ = o.dmin_;
+                min_ = o.min_;
+                minPos_ = iDatum_ + o.minPos_;
+            }
+            if ( o.maxPos_ >= 0 && ! ( o.dmax_ <= dmax_ ) ) {
+                dmax_ = o.dmax_;
+                max_ = o.max_;
+                maxPos_ = iDatum_ + o.maxPos_;
+            }
+            iDatum_ += o.iDatum_;
+        }
+
+        /**
+         * Converts a double value to a Number of this object's value class.
+         *
+         * @param  dval  numeric value
+         * @return   number object
+         */
+        private Number toNumber( double dval ) {
+            if ( clazz_ == Byte.class ) {
+                return new Byte( (byte) dval );
+            }
+            else if ( clazz_ == Short.class ) {
+                return new Short( (short) dval );
+            }
+            else if ( clazz_ == Integer.class ) {
+                return new Integer( (int) dval );
+            }
+            else if ( clazz_ == Long.class ) {
+                return new Long( (long) dval );
+            }
+            else if ( clazz_ == Float.class ) {
+                return new Float( (float) dval );
+            }
+            else {
+                return new Double( dval );
+            }
+        }
     }
 }
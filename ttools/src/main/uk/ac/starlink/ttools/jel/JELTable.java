@@ -5,9 +5,12 @@ import gnu.jel.CompilationException;
 import gnu.jel.CompiledExpression;
 import gnu.jel.Evaluator;
 import gnu.jel.Library;
+import uk.ac.starlink.table.BlockIndexAccess;
+import uk.ac.starlink.table.ColumnBlockIndex;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.WrapperRowSequence;
 import uk.ac.starlink.table.WrapperStarTable;
@@ -16,17 +19,21 @@ import uk.ac.starlink.task.ExecutionException;
 /**
  * Wrapper table which is constructed entirely of columns defined by 
  * JEL expressions based on the base table.
+ * Block indexes of the base table are made available for columns
+ * whose expressions are simple references to base table columns.
  *
  * @author   Mark Taylor
  * @since    1 Sep 2005
  */
-public class JELTable extends WrapperStarTable {
+public class JELTable extends WrapperStarTable
+                      implements BlockIndexAccess {
 
     private final StarTable baseTable_;
     private final String[] exprs_;
     private final ColumnInfo[] colInfos_;
     private final CompiledExpression[] randomCompexs_;
     private final RandomJELRowReader randomReader_;
+    private final int[] baseCols_;
     private final int ncol_;
 
     /**
@@ -62,8 +69,12 @@ public class JELTable extends WrapperStarTable {
         randomReader_ = new RandomJELRowReader( baseTable );
         Library lib = JELUtils.getLibrary( randomReader_ );
         randomCompexs_ = new CompiledExpression[ ncol_ ];
+        baseCols_ = new int[ ncol_ ];
+        int nBaseCol = baseTable.getColumnCount();
         for ( int i = 0; i < ncol_; i++ ) {
             final String expr = exprs_[ i ];
+            int ibc = randomReader_.getColumnIndex( expr.trim() );
+            baseCols_[ i ] = ibc < nBaseCol ? ibc : -1;
             ColumnInfo colInfo = colInfos_[ i ];
             try {
                 randomCompexs_[ i ] = JELUtils.compile( lib, baseTable, expr );
@@ -107,6 +118,11 @@ public class JELTable extends WrapperStarTable {
         return colInfos_[ icol ];
     }
 
+    public ColumnBlockIndex getBlockIndex( int icol ) {
+        int ibc = baseCols_[ icol ];
+        return ibc >= 0 ? Tables.getBlockIndex( baseTable_, ibc ) : null;
+    }
+
     public Object getCell( long irow, int icol ) throws IOException {
         try {
             return randomReader_.evaluateAtRow( randomCompexs_[ icol ], irow );
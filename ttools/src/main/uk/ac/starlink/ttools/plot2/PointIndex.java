@@ -0,0 +1,532 @@
+package uk.ac.starlink.ttools.plot2;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import uk.ac.starlink.ttools.plot2.data.TupleSequence;
+
+/**
+ * Spatial index of the graphics positions at which a set of data points
+ * is plotted on a given surface.
+ * Points are binned into a regular grid of square cells covering the
+ * plot bounds, so that queries about the points near a given
+ * graphics position or within a given region can be answered
+ * by examining only the relevant cells, rather than by
+ * scanning the whole data set.
+ *
+ * <p>Only points visible on the surface are indexed.
+ * Storage is required for the graphics position and row index of
+ * each one, held in chunked primitive arrays which are sorted by cell
+ * in place, so the memory footprint is about 26 bytes per point,
+ * both during and after construction.
+ * To bound this, the number of indexed points is limited,
+ * by default according to the available heap size;
+ * if there are more visible points than that, an <em>overflow</em>
+ * index holding no points is created instead (see {@link #isOverflow}),
+ * and callers must fall back to scanning the data for each query.
+ * An index is only valid for the surface and data from which it was
+ * created; see {@link PointIndexCache}.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public class PointIndex {
+
+    private final Rectangle bounds_;
+    private final int cellSize_;
+    private final int nx_;
+    private final int ny_;
+    private final int[] cellStarts_;
+    private final PointBuffer pbuf_;
+    private final int np_;
+    private final boolean isOverflow_;
+
+    /** Approximate number of bytes required per indexed point. */
+    private static final int POINT_BYTES = 26;
+
+    /**
+     * Default maximum number of points indexed.
+     * This is set so that an index may use up to about an eighth of
+     * the maximum heap size, but is not less than a million.
+     */
+    public static final int DEFAULT_MAX_POINTS =
+        (int) Math.max( 1000000,
+                        Math.min( 1 << 27, Runtime.getRuntime().maxMemory()
+                                           / 8 / POINT_BYTES ) );
+
+    /** Target mean number of points per grid cell. */
+    private static final int CELL_POINTS = 4;
+
+    /**
+     * Constructs an index containing a given set of points.
+     *
+     * @param  bounds  region covered by grid
+     * @param  pbuf    buffer containing the points
+     */
+    private PointIndex( Rectangle bounds, PointBuffer pbuf ) {
+        int np = pbuf.size_;
+        isOverflow_ = false;
+        pbuf_ = pbuf;
+        np_ = np;
+        bounds_ = new Rectangle( bounds );
+        int w = Math.max( 1, bounds.width );
+        int h = Math.max( 1, bounds.height );
+        cellSize_ = Math.max( 1, (int) Math.ceil( Math.sqrt( (double) w * h
+                                                             * CELL_POINTS
+                                                    / Math.max( 1, np ) ) ) );
+        nx_ = ( w + cellSize_ - 1 ) / cellSize_;
+        ny_ = ( h + cellSize_ - 1 ) / cellSize_;
+        int ncell = nx_ * ny_;
+
+        /* Count the points in each cell. */
+        cellStarts_ = new int[ ncell + 1 ];
+        for ( int ip = 0; ip < np; ip++ ) {
+            cellStarts_[ getCell( pbuf.getX( ip ), pbuf.getY( ip ) ) + 1 ]++;
+        }
+        for ( int ic = 0; ic < ncell; ic++ ) {
+            cellStarts_[ ic + 1 ] += cellStarts_[ ic ];
+        }
+
+        /* Sort the points by cell in place, by swapping each point
+         * into the next free slot of its cell.  Cell indices are
+         * recalculated rather than stored, to save memory. */
+        int[] fills = new int[ ncell ];
+        System.arraycopy( cellStarts_, 0, fills, 0, ncell );
+        for ( int ic = 0; ic < ncell; ic++ ) {
+            int ip1 = cellStarts_[ ic + 1 ];
+            while ( fills[ ic ] < ip1 ) {
+                int ip = fills[ ic ];
+                int jc = getCell( pbuf.getX( ip ), pbuf.getY( ip ) );
+                if ( jc == ic ) {
+                    fills[ ic ]++;
+                }
+                else {
+                    pbuf.swap( ip, fills[ jc ]++ );
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructs an overflow index, which contains no points.
+     */
+    private PointIndex() {
+        isOverflow_ = true;
+        bounds_ = new Rectangle();
+        cellSize_ = 1;
+        nx_ = 0;
+        ny_ = 0;
+        cellStarts_ = new int[ 1 ];
+        pbuf_ = new PointBuffer();
+        np_ = 0;
+    }
+
+    /**
+     * Indicates whether this is an overflow index.
+     * An overflow index is one for which the data contained too many
+     * points to index; it contains no points, and its query methods
+     * may not be used.
+     *
+     * @return  true iff this index overflowed
+     */
+    public boolean isOverflow() {
+        return isOverflow_;
+    }
+
+    /**
+     * Returns the number of points in this index.
+     *
+     * @return  point count
+     */
+    public int getPointCount() {
+        return np_;
+    }
+
+    /**
+     * Returns the indexed row plotted closest to a given graphics position.
+     * The result is the same as that of
+     * {@link PlotUtil#getClosestRow PlotUtil.getClosestRow}
+     * for the data from which this index was created,
+     * except perhaps in the case of ties.
+     *
+     * @param   point    reference graphics position
+     * @return   object giving row index and distance;
+     *           null is returned if no points are present
+     */
+    public IndicatedRow getClosestRow( Point2D point ) {
+        checkNotOverflow();
+        if ( np_ == 0 ) {
+            return null;
+        }
+        double px = point.getX();
+        double py = point.getY();
+        int cx = getCellX( px );
+        int cy = getCellY( py );
+        int maxRing = Math.max( Math.max( cx, nx_ - 1 - cx ),
+                                Math.max( cy, ny_ - 1 - cy ) );
+        long bestIndex = -1;
+        double bestDist2 = Double.POSITIVE_INFINITY;
+
+        /* Search square rings of cells around the reference cell,
+         * moving outwards.  Once a point has been found that is closer
+         * than any cell outside the current ring can be, stop. */
+        for ( int ir = 0; ir <= maxRing; ir++ ) {
+            int iy0 = Math.max( 0, cy - ir );
+            int iy1 = Math.min( ny_ - 1, cy + ir );
+            for ( int iy = iy0; iy <= iy1; iy++ ) {
+                boolean isEdge = iy == cy - ir || iy == cy + ir;
+                int xstep = isEdge || ir == 0 ? 1 : 2 * ir;
+                for ( int ix = cx - ir; ix <= cx + ir; ix += xstep ) {
+                    if ( ix >= 0 && ix < nx_ ) {
+                        int icell = ix + nx_ * iy;
+                        int ip1 = cellStarts_[ icell + 1 ];
+                        for ( int ip = cellStarts_[ icell ]; ip < ip1; ip++ ) {
+                            double dx = pbuf_.getX( ip ) - px;
+                            double dy = pbuf_.getY( ip ) - py;
+                            double dist2 = dx * dx + dy * dy;
+                            long irow = pbuf_.getRow( ip );
+                            if ( dist2 < bestDist2 ||
+                                 dist2 == bestDist2 && irow < bestIndex ) {
+                                bestDist2 = dist2;
+                                bestIndex = irow;
+                            }
+                        }
+                    }
+                }
+            }
+            if ( bestIndex >= 0 ) {
+                double reach = ir * (double) cellSize_;
+                if ( reach * reach >= bestDist2 ) {
+                    break;
+                }
+            }
+        }
+        return new IndicatedRow( bestIndex, Math.sqrt( bestDist2 ) );
+    }
+
+    /**
+     * Returns the indices of all the rows whose plotted positions
+     * fall within a given shape.
+     * Positions are quantised to integer pixel coordinates using
+     * {@link PlotUtil#quantisePoint PlotUtil.quantisePoint}
+     * before testing for inclusion.
+     *
+     * @param  shape  region in graphics coordinates
+     * @return   array of row indices of included points
+     */
+    public long[] getRowsInShape( Shape shape ) {
+        checkNotOverflow();
+        Rectangle sBounds = shape.getBounds();
+        Rectangle box = sBounds.intersection( bounds_ );
+        if ( box.isEmpty() ) {
+            return new long[ 0 ];
+        }
+        int ix0 = getCellX( box.x );
+        int ix1 = getCellX( box.x + box.width - 1 );
+        int iy0 = getCellY( box.y );
+        int iy1 = getCellY( box.y + box.height - 1 );
+        Point2D.Double gp = new Point2D.Double();
+        Point gpi = new Point();
+        long[] rows = new long[ 64 ];
+        int nrow = 0;
+        for ( int iy = iy0; iy <= iy1; iy++ ) {
+            for ( int ix = ix0; ix <= ix1; ix++ ) {
+                int icell = ix + nx_ * iy;
+                int ip1 = cellStarts_[ icell + 1 ];
+                for ( int ip = cellStarts_[ icell ]; ip < ip1; ip++ ) {
+                    gp.x = pbuf_.getX( ip );
+                    gp.y = pbuf_.getY( ip );
+                    PlotUtil.quantisePoint( gp, gpi );
+                    if ( sBounds.contains( gpi ) && shape.contains( gpi ) ) {
+                        if ( nrow == rows.length ) {
+                            rows = Arrays.copyOf( rows, nrow * 2 );
+                        }
+                        rows[ nrow++ ] = pbuf_.getRow( ip );
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf( rows, nrow );
+    }
+
+    /**
+     * Throws an exception if this is an overflow index.
+     */
+    private void checkNotOverflow() {
+        if ( isOverflow_ ) {
+            throw new IllegalStateException( "Overflow index is empty" );
+        }
+    }
+
+    /**
+     * Returns the grid cell index for a graphics position.
+     *
+     * @param  gx  graphics X coordinate
+     * @param  gy  graphics Y coordinate
+     * @return  cell index
+     */
+    private int getCell( double gx, double gy ) {
+        return getCellX( gx ) + nx_ * getCellY( gy );
+    }
+
+    /**
+     * Returns the grid column index for a graphics X coordinate.
+     * Out of range values are clamped to the grid.
+     *
+     * @param  gx  graphics X coordinate
+     * @return   cell column index
+     */
+    private int getCellX( double gx ) {
+        return clamp( PlotUtil.ifloor( ( gx - bounds_.x ) / cellSize_ ),
+                      nx_ );
+    }
+
+    /**
+     * Returns the grid row index for a graphics Y coordinate.
+     * Out of range values are clamped to the grid.
+     *
+     * @param  gy  graphics Y coordinate
+     * @return   cell row index
+     */
+    private int getCellY( double gy ) {
+        return clamp( PlotUtil.ifloor( ( gy - bounds_.y ) / cellSize_ ),
+                      ny_ );
+    }
+
+    /**
+     * Creates an index of the points from a tuple sequence plotted on
+     * a given surface, with the default limit on the number of points.
+     * If the thread is interrupted during the read, null is returned,
+     * since the resulting index would be incomplete.
+     *
+     * @param  surface  plot surface
+     * @param  geom     maps tuple coordinates to data coordinates
+     * @param  iPosCoord  index of tuple coordinate at which
+     *                    position information starts
+     * @param  tseq     tuple sequence, not yet advanced
+     * @return   new index, possibly an overflow index, or null if interrupted
+     */
+    @Slow
+    public static PointIndex createPointIndex( Surface surface, DataGeom geom,
+                                               int iPosCoord,
+                                               TupleSequence tseq ) {
+        return createPointIndex( surface, geom, iPosCoord, tseq,
+                                 DEFAULT_MAX_POINTS );
+    }
+
+    /**
+     * Creates an index of the points from a tuple sequence plotted on
+     * a given surface, with a given limit on the number of points.
+     * If more than <code>maxPoints</code> points are visible,
+     * an overflow index is returned.
+     * If the thread is interrupted during the read, null is returned,
+     * since the resulting index would be incomplete.
+     *
+     * @param  surface  plot surface
+     * @param  geom     maps tuple coordinates to data coordinates
+     * @param  iPosCoord  index of tuple coordinate at which
+     *                    position information starts
+     * @param  tseq     tuple sequence, not yet advanced
+     * @param  maxPoints  maximum number of points to index
+     * @return   new index, possibly an overflow index, or null if interrupted
+     */
+    @Slow
+    public static PointIndex createPointIndex( Surface surface, DataGeom geom,
+                                               int iPosCoord,
+                                               TupleSequence tseq,
+                                               int maxPoints ) {
+        return createPointIndex( surface, geom, iPosCoord, tseq, maxPoints,
+                                 null, null );
+    }
+
+    /**
+     * Creates an index of the points from a tuple sequence plotted on
+     * a given surface, while also locating the point closest to a given
+     * graphics position.
+     * This allows the first query to be answered from the same pass
+     * through the data that builds the index, even if the index overflows.
+     * As soon as more than <code>maxPoints</code> visible points
+     * have been seen, the points collected so far are discarded,
+     * and reading continues only to find the closest point;
+     * an overflow index is then returned.
+     * If the thread is interrupted during the read, null is returned,
+     * since the resulting index would be incomplete.
+     *
+     * @param  surface  plot surface
+     * @param  geom     maps tuple coordinates to data coordinates
+     * @param  iPosCoord  index of tuple coordinate at which
+     *                    position information starts
+     * @param  tseq     tuple sequence, not yet advanced
+     * @param  maxPoints  maximum number of points to index
+     * @param  point    reference graphics position, or null
+     * @param  closestRow  if <code>point</code> is non-null,
+     *                     a 1-element array into which the result of
+     *                     {@link PlotUtil#getClosestRow PlotUtil.getClosestRow}
+     *                     for <code>point</code> will be written
+     * @return   new index, possibly an overflow index, or null if interrupted
+     */
+    @Slow
+    public static PointIndex createPointIndex( Surface surface, DataGeom geom,
+                                               int iPosCoord,
+                                               TupleSequence tseq,
+                                               int maxPoints, Point2D point,
+                                               IndicatedRow[] closestRow ) {
+        double[] dpos = new double[ surface.getDataDimCount() ];
+        Point2D.Double gp = new Point2D.Double();
+        PointBuffer pbuf = new PointBuffer();
+        long bestIndex = -1;
+        double bestDist2 = Double.POSITIVE_INFINITY;
+        while ( tseq.next() ) {
+            if ( geom.readDataPos( tseq, iPosCoord, dpos ) &&
+                 surface.dataToGraphics( dpos, true, gp ) ) {
+                if ( pbuf != null ) {
+                    if ( pbuf.size_ < maxPoints ) {
+                        pbuf.add( gp.x, gp.y, tseq.getRowIndex() );
+                    }
+                    else if ( point == null ) {
+                        return new PointIndex();
+                    }
+                    else {
+                        pbuf = null;
+                    }
+                }
+                if ( point != null ) {
+                    double dist2 = gp.distanceSq( point );
+                    if ( dist2 < bestDist2 ) {
+                        bestDist2 = dist2;
+                        bestIndex = tseq.getRowIndex();
+                    }
+                }
+            }
+        }
+        if ( Thread.currentThread().isInterrupted() ) {
+            return null;
+        }
+        if ( point != null ) {
+            closestRow[ 0 ] = bestIndex < 0
+                            ? null
+                            : new IndicatedRow( bestIndex,
+                                                Math.sqrt( bestDist2 ) );
+        }
+        return pbuf == null ? new PointIndex()
+                            : new PointIndex( surface.getPlotBounds(), pbuf );
+    }
+
+    /**
+     * Clamps an integer to the range 0..n-1.
+     *
+     * @param  i  input value
+     * @param  n  range size
+     * @return   clamped value
+     */
+    private static int clamp( int i, int n ) {
+        return Math.max( 0, Math.min( n - 1, i ) );
+    }
+
+    /**
+     * Accumulates point positions and row indices.
+     * Storage is in fixed-size chunks, so that growing it does not
+     * require copying, and never needs more than one chunk of
+     * memory beyond what is in use.
+     */
+    private static class PointBuffer {
+        private double[][] xChunks_;
+        private double[][] yChunks_;
+        private long[][] rowChunks_;
+        private int size_;
+
+        private static final int CHUNK_BITS = 16;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+        private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+        /**
+         * Constructor.
+         */
+        PointBuffer() {
+            xChunks_ = new double[ 0 ][];
+            yChunks_ = new double[ 0 ][];
+            rowChunks_ = new long[ 0 ][];
+        }
+
+        /**
+         * Adds a point.
+         *
+         * @param  gx  graphics X coordinate
+         * @param  gy  graphics Y coordinate
+         * @param  irow  row index
+         */
+        void add( double gx, double gy, long irow ) {
+            int ichunk = size_ >>> CHUNK_BITS;
+            int ioff = size_ & CHUNK_MASK;
+            if ( ioff == 0 ) {
+                if ( ichunk == xChunks_.length ) {
+                    int nc = Math.max( 4, ichunk * 2 );
+                    xChunks_ = Arrays.copyOf( xChunks_, nc );
+                    yChunks_ = Arrays.copyOf( yChunks_, nc );
+                    rowChunks_ = Arrays.copyOf( rowChunks_, nc );
+                }
+                xChunks_[ ichunk ] = new double[ CHUNK_SIZE ];
+                yChunks_[ ichunk ] = new double[ CHUNK_SIZE ];
+                rowChunks_[ ichunk ] = new long[ CHUNK_SIZE ];
+            }
+            xChunks_[ ichunk ][ ioff ] = gx;
+            yChunks_[ ichunk ][ ioff ] = gy;
+            rowChunks_[ ichunk ][ ioff ] = irow;
+            size_++;
+        }
+
+        /**
+         * Returns the X coordinate of a stored point.
+         *
+         * @param  ip  point index
+         * @return  graphics X coordinate
+         */
+        double getX( int ip ) {
+            return xChunks_[ ip >>> CHUNK_BITS ][ ip & CHUNK_MASK ];
+        }
+
+        /**
+         * Returns the Y coordinate of a stored point.
+         *
+         * @param  ip  point index
+         * @return  graphics Y coordinate
+         */
+        double getY( int ip ) {
+            return yChunks_[ ip >>> CHUNK_BITS ][ ip & CHUNK_MASK ];
+        }
+
+        /**
+         * Returns the row index of a stored point.
+         *
+         * @param  ip  point index
+         * @return  row index
+         */
+        long getRow( int ip ) {
+            return rowChunks_[ ip >>> CHUNK_BITS ][ ip & CHUNK_MASK ];
+        }
+
+        /**
+         * Exchanges two stored points.
+         *
+         * @param  ip  index of first point
+         * @param  jp  index of second point
+         */
+        void swap( int ip, int jp ) {
+            int ic = ip >>> CHUNK_BITS;
+            int io = ip & CHUNK_MASK;
+            int jc = jp >>> CHUNK_BITS;
+            int jo = jp & CHUNK_MASK;
+            double x = xChunks_[ ic ][ io ];
+            xChunks_[ ic ][ io ] = xChunks_[ jc ][ jo ];
+            xChunks_[ jc ][ jo ] = x;
+            double y = yChunks_[ ic ][ io ];
+            yChunks_[ ic ][ io ] = yChunks_[ jc ][ jo ];
+            yChunks_[ jc ][ jo ] = y;
+            long row = rowChunks_[ ic ][ io ];
+            rowChunks_[ ic ][ io ] = rowChunks_[ jc ][ jo ];
+            rowChunks_[ jc ][ jo ] = row;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package uk.ac.starlink.ttools.plot2;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Retains PointIndex objects for reuse between queries on the same plot.
+ * Indices are stored per surface and per point cloud,
+ * and are only valid for a particular data set, identified by an
+ * object supplied by the caller (typically the DataStore).
+ * When a different data identifier is presented, all existing
+ * entries are discarded.  A limited number of surfaces is retained;
+ * indices for the least recently used surface are discarded
+ * when that limit is exceeded, which means that indices relating to
+ * surfaces that are no longer displayed are released as the user
+ * navigates around the plot.
+ *
+ * <p>Instances of this class are thread-safe.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public class PointIndexCache {
+
+    private final Map<Surface,Map<Object,PointIndex>> surfMap_;
+    private Object dataId_;
+
+    /**
+     * Constructor.
+     *
+     * @param  maxSurfaces  maximum number of surfaces for which
+     *                      indices are retained
+     */
+    public PointIndexCache( final int maxSurfaces ) {
+        surfMap_ = new LinkedHashMap<Surface,Map<Object,PointIndex>>
+                                    ( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Surface,Map<Object,PointIndex>> entry ) {
+                return size() > maxSurfaces;
+            }
+        };
+    }
+
+    /**
+     * Returns a previously stored index.
+     *
+     * @param  surface  plot surface
+     * @param  dataId   identifier for the data set, for instance DataStore
+     * @param  cloudId  identifier for the point cloud, for instance SubCloud;
+     *                  must implement equals and hashCode sensibly
+     * @return   stored index, or null if none is available
+     */
+    public synchronized PointIndex getIndex( Surface surface, Object dataId,
+                                             Object cloudId ) {
+        if ( dataId != dataId_ ) {
+            return null;
+        }
+        Map<Object,PointIndex> cloudMap = surfMap_.get( surface );
+        return cloudMap == null ? null : cloudMap.get( cloudId );
+    }
+
+    /**
+     * Stores an index for later use.
+     *
+     * @param  surface  plot surface
+     * @param  dataId   identifier for the data set, for instance DataStore
+     * @param  cloudId  identifier for the point cloud, for instance SubCloud;
+     *                  must implement equals and hashCode sensibly
+     * @param  index    index of the cloud's points plotted on the surface
+     */
+    public synchronized void putIndex( Surface surface, Object dataId,
+                                       Object cloudId, PointIndex index ) {
+        if ( dataId != dataId_ ) {
+            surfMap_.clear();
+            dataId_ = dataId;
+        }
+        Map<Object,PointIndex> cloudMap = surfMap_.get( surface );
+        if ( cloudMap == null ) {
+            cloudMap = new HashMap<Object,PointIndex>();
+            surfMap_.put( surface, cloudMap );
+        }
+        cloudMap.put( cloudId, index );
+    }
+
+    /**
+     * Discards all stored indices.
+     */
+    public synchronized void clear() {
+        surfMap_.clear();
+        dataId_ = null;
+    }
+}
@@ -15,6 +15,14 @@ import uk.ac.starlink.ttools.plot2.Equality;
  */
 public abstract class AbstractDataSpec implements DataSpec {
 
+    /**
+     * Returns -1.
+     * Subclasses may override this if they know better.
+     */
+    public int getUserCoordColumnIndex( int icoord ) {
+        return -1;
+    }
+
     @Override
     public int hashCode() {
         return getId( this ).hashCode();
@@ -5,7 +5,7 @@ package uk.ac.starlink.ttools.plot2.data;
  *
  * <p>The usage sequence for an instance of this class is:
  * <ul>
- * <li>Call {@link #add} zero or more times
+ * <li>Call {@link #add} or {@link #addDouble} zero or more times
  * <li>Call {@link #endAdd}
  * <li>Call {@link #createSequence}
  * </ul>
@@ -24,6 +24,18 @@ public interface CachedColumn {
      */
     void add( Object value );
 
+    /**
+     * Adds a numeric entry to this vector data container.
+     * The effect is the same as calling {@link #add add} with a
+     * <code>Double</code> wrapping <code>value</code>,
+     * but no object is created.
+     * This may only be used for columns with a scalar numeric
+     * storage type; other columns throw an UnsupportedOperationException.
+     *
+     * @param  value  value to store
+     */
+    void addDouble( double value );
+
     /**
      * Indicates that no more calls to {@link #endAdd} will be made
      */
@@ -9,8 +9,10 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.DomainMapper;
+import uk.ac.starlink.table.DoubleCellAccess;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.ttools.plot2.Equality;
 import uk.ac.starlink.ttools.plot2.Slow;
 
@@ -29,6 +31,12 @@ public class CachedDataStoreFactory implements DataStoreFactory {
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.ttools.plot2" );
 
+    /** Minimum number of rows per partition worth splitting for. */
+    private static final long MIN_PARTITION_ROWS = 100000;
+
+    /** Number of rows read at a time from typed numeric columns. */
+    private static final int DOUBLE_BLOCK = 1024;
+
     /**
      * Constructor.
      *
@@ -120,24 +128,68 @@ public class CachedDataStoreFactory implements DataStoreFactory {
             coordCols[ ic ] =
                 colFact.createColumn( coords[ ic ].getStorageType(), nrow );
         }
-        RowSequence rseq = table.getRowSequence();
-        try {
-            for ( long irow = 0; rseq.next(); irow++ ) {
-                if ( Thread.currentThread().isInterrupted() ) {
-                    throw new InterruptedException();
-                }
-                for ( int im = 0; im < nm; im++ ) {
-                    boolean include = masks[ im ].readFlag( rseq, irow );
-                    maskCols[ im ].add( Boolean.valueOf( include ) );
-                }
-                for ( int ic = 0; ic < nc; ic++ ) {
-                    Object value = coords[ ic ].readValue( rseq, irow );
-                    coordCols[ ic ].add( value );
+
+        /* Where a floating point coordinate is just the value of a
+         * column which the table can supply as a primitive,
+         * it is read directly in blocks rather than by way of the
+         * row sequence. */
+        boolean[] isTyped = new boolean[ nc ];
+        int nSeqCoord = 0;
+        for ( int ic = 0; ic < nc; ic++ ) {
+            int icol = coords[ ic ].icol_;
+            isTyped[ ic ] = icol >= 0 && Tables.hasDoubleCells( table, icol );
+            if ( ! isTyped[ ic ] ) {
+                nSeqCoord++;
+            }
+        }
+
+        /* Read masks and other coordinates from a row sequence,
+         * if there are any. */
+        if ( nm > 0 || nSeqCoord > 0 ) {
+            RowSequence rseq = table.getRowSequence();
+            try {
+                for ( long irow = 0; rseq.next(); irow++ ) {
+                    if ( Thread.currentThread().isInterrupted() ) {
+                        throw new InterruptedException();
+                    }
+                    for ( int im = 0; im < nm; im++ ) {
+                        boolean include = masks[ im ].readFlag( rseq, irow );
+                        maskCols[ im ].add( Boolean.valueOf( include ) );
+                    }
+                    for ( int ic = 0; ic < nc; ic++ ) {
+                        if ( ! isTyped[ ic ] ) {
+                            Object value = coords[ ic ].readValue( rseq, irow );
+                            coordCols[ ic ].add( value );
+                        }
+                    }
                 }
             }
+            finally {
+                rseq.close();
+            }
         }
-        finally {
-            rseq.close();
+
+        /* Read typed coordinates a block of rows at a time. */
+        if ( nSeqCoord < nc ) {
+            DoubleCellAccess dAccess = (DoubleCellAccess) table;
+            double[] buf = new double[ DOUBLE_BLOCK ];
+            for ( int ic = 0; ic < nc; ic++ ) {
+                if ( isTyped[ ic ] ) {
+                    int icol = coords[ ic ].icol_;
+                    CachedColumn col = coordCols[ ic ];
+                    for ( long irow0 = 0; irow0 < nrow;
+                          irow0 += DOUBLE_BLOCK ) {
+                        if ( Thread.currentThread().isInterrupted() ) {
+                            throw new InterruptedException();
+                        }
+                        int leng = (int) Math.min( DOUBLE_BLOCK, nrow - irow0 );
+                        dAccess.readDoubleColumn( icol, irow0, leng, buf, 0 );
+                        for ( int i = 0; i < leng; i++ ) {
+                            col.addDouble( buf[ i ] );
+                        }
+                    }
+                }
+            }
         }
         for ( int im = 0; im < nm; im++ ) {
             maskCols[ im ].endAdd();
@@ -432,7 +484,34 @@ public class CachedDataStoreFactory implements DataStoreFactory {
 
         public TupleSequence getTupleSequence( DataSpec spec ) {
             return new CachedTupleSequence( getMask( spec ),
-                                            getColumns( spec ) );
+                                            getColumns( spec ),
+                                            0, Long.MAX_VALUE );
+        }
+
+        /**
+         * Partitions the rows into contiguous ranges of roughly equal
+         * length.  If the row count is not known, a single sequence
+         * is returned.
+         */
+        public TupleSequence[] getTupleSequences( DataSpec spec, int nseq ) {
+            long nrow = spec.getSourceTable().getRowCount();
+            int npart = nrow >= 0
+                      ? (int) Math.min( nseq, nrow / MIN_PARTITION_ROWS )
+                      : 1;
+            npart = Math.max( 1, npart );
+            if ( npart == 1 ) {
+                return new TupleSequence[] { getTupleSequence( spec ) };
+            }
+            CachedColumn mask = getMask( spec );
+            CachedColumn[] cols = getColumns( spec );
+            TupleSequence[] tseqs = new TupleSequence[ npart ];
+            for ( int ip = 0; ip < npart; ip++ ) {
+                long irow0 = nrow * ip / npart;
+                long irow1 = nrow * ( ip + 1 ) / npart;
+                tseqs[ ip ] = new CachedTupleSequence( mask, cols,
+                                                       irow0, irow1 );
+            }
+            return tseqs;
         }
     }
 
@@ -506,6 +585,7 @@ public class CachedDataStoreFactory implements DataStoreFactory {
         final Coord coord_;
         final Object coordId_;
         final DomainMapper[] mappers_;
+        final int icol_;
 
         /**
          * Constructor.
@@ -521,6 +601,13 @@ public class CachedDataStoreFactory implements DataStoreFactory {
             coord_ = dataSpec.getCoord( icoord );
             mappers_ = SimpleDataStoreFactory
                       .getUserCoordMappers( dataSpec, icoord );
+
+            /* Note the source column if the stored value is just
+             * the numeric value of the column cell.  This is the case
+             * for plain (not subclassed) FloatingCoords. */
+            icol_ = coord_.getClass() == FloatingCoord.class
+                  ? dataSpec.getUserCoordColumnIndex( icoord )
+                  : -1;
         }
 
         /**
@@ -572,31 +659,43 @@ public class CachedDataStoreFactory implements DataStoreFactory {
 
     /**
      * TupleSequence implementation based on CachedColumns.
+     * It may be restricted to a contiguous range of the rows,
+     * in which case the underlying sequences are advanced directly
+     * to the start of the range, and reading stops at its end.
      */
     private static class CachedTupleSequence implements TupleSequence {
 
         private final int ncol_;
         private final CachedSequence maskSeq_;
         private final CachedSequence[] colSeqs_;
-        private long irow_ = -1;
+        private final long irowEnd_;
+        private long irow_;
 
         /**
          * Constructor.
          *
          * @param  mask  boolean-typed column providing inclusion flags per row
          * @param  cols  array of columns providing data cells per row
+         * @param  irow0  index of first row dispensed by this sequence
+         * @param  irow1  index after last row dispensed by this sequence;
+         *                Long.MAX_VALUE means continue to the end
          */
-        CachedTupleSequence( CachedColumn mask, CachedColumn[] cols ) {
+        CachedTupleSequence( CachedColumn mask, CachedColumn[] cols,
+                             long irow0, long irow1 ) {
             ncol_ = cols.length;
+            irowEnd_ = irow1 - 1;
+            irow_ = irow0 - 1;
             maskSeq_ = mask.createSequence();
+            maskSeq_.skip( irow0 );
             colSeqs_ = new CachedSequence[ ncol_ ];
             for ( int ic = 0; ic < ncol_; ic++ ) {
                 colSeqs_[ ic ] = cols[ ic ].createSequence();
+                colSeqs_[ ic ].skip( irow0 );
             }
         }
 
         public boolean next() {
-            while ( maskSeq_.next() ) {
+            while ( irow_ < irowEnd_ && maskSeq_.next() ) {
                 irow_++;
                 for ( int ic = 0; ic < ncol_; ic++ ) {
                     colSeqs_[ ic ].next();
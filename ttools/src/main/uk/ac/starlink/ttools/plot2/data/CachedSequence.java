@@ -28,6 +28,18 @@ public interface CachedSequence {
      */
     boolean next();
 
+    /**
+     * Advances the sequence by a given number of items without
+     * retrieving their values.
+     * The effect on the position of the sequence is the same as
+     * calling {@link #next} <code>n</code> times,
+     * but implementations will usually be able to do it without
+     * visiting the intermediate items.
+     *
+     * @param   n  number of items to skip, &gt;=0
+     */
+    void skip( long n );
+
     /**
      * Retrieve the current value of this sequence as an object.
      * Note it is permitted for the same instance to be returned each time,
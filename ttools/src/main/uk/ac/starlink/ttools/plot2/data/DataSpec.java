@@ -106,4 +106,18 @@ public interface DataSpec {
      * @return  true if all values in the column are always blank
      */
     boolean isCoordBlank( int icoord );
+
+    /**
+     * Returns the index of a column in the source table which supplies,
+     * unchanged, the single user value for a given coord.
+     * If the user values for the coord are not simply taken from one
+     * column of the source table, -1 is returned.
+     * This may be used by data stores to read cell values directly
+     * from the table rather than by way of the user data reader.
+     * False negatives are permitted.
+     *
+     * @param  icoord  coordinate index
+     * @return  source table column index, or -1
+     */
+    int getUserCoordColumnIndex( int icoord );
 }
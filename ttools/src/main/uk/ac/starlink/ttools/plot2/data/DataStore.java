@@ -42,4 +42,25 @@ public interface DataStore {
      * @return  sequence of values which can be used to perform a plot
      */
     TupleSequence getTupleSequence( DataSpec spec );
+
+    /**
+     * Returns the data described by a given DataSpec as a number of
+     * disjoint tuple sequences, which may be consumed concurrently
+     * in different threads.
+     * Between them, the returned sequences dispense exactly the tuples
+     * that would be dispensed by {@link #getTupleSequence},
+     * though not necessarily in the same order.
+     * Implementations may return fewer sequences than requested,
+     * for instance if the data set is small or the storage does not
+     * lend itself to partitioning,
+     * but at least one is always returned.
+     * Must only be called if {@link #hasData} returns true for the
+     * given DataSpec; if not, behaviour is undefined.
+     *
+     * @param   spec   plot data specification object
+     * @param   nseq   maximum number of sequences required
+     * @return  array of between 1 and <code>nseq</code>
+     *          disjoint tuple sequences
+     */
+    TupleSequence[] getTupleSequences( DataSpec spec, int nseq );
 }
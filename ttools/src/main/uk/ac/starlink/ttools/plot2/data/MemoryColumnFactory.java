@@ -258,6 +258,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public void add( Object value ) {
             mask_.set( irow_++, toBoolean( value ) );
         }
+        public void addDouble( double value ) {
+            throw new UnsupportedOperationException();
+        }
         public void endAdd() {
             nrow_ = new Integer( irow_ );
         }
@@ -296,6 +299,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             data_[ irow_++ ] = clazz_.cast( value );
         }
 
+        public void addDouble( double value ) {
+            throw new UnsupportedOperationException();
+        }
+
         public void endAdd() {
             assert irow_ == nrow_;
         }
@@ -330,6 +337,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             data_[ irow_++ ] = toDouble( value );
         }
 
+        public void addDouble( double value ) {
+            data_[ irow_++ ] = value;
+        }
+
         public void endAdd() {
             assert irow_ == nrow_;
         }
@@ -364,6 +375,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             data_[ irow_++ ] = toFloat( value );
         }
 
+        public void addDouble( double value ) {
+            data_[ irow_++ ] = (float) value;
+        }
+
         public void endAdd() {
             assert irow_ == nrow_;
         }
@@ -398,6 +413,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             data_[ irow_++ ] = toInt( value );
         }
 
+        public void addDouble( double value ) {
+            data_[ irow_++ ] = (int) value;
+        }
+
         public void endAdd() {
             assert irow_ == nrow_;
         }
@@ -432,6 +451,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             data_[ irow_++ ] = toShort( value );
         }
 
+        public void addDouble( double value ) {
+            data_[ irow_++ ] = (short) value;
+        }
+
         public void endAdd() {
             assert irow_ == nrow_;
         }
@@ -466,6 +489,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             data_[ irow_++ ] = toByte( value );
         }
 
+        public void addDouble( double value ) {
+            data_[ irow_++ ] = (byte) value;
+        }
+
         public void endAdd() {
             assert irow_ == nrow_;
         }
@@ -508,6 +535,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             }
         }
 
+        public void addDouble( double value ) {
+            throw new UnsupportedOperationException();
+        }
+
         public void endAdd() {
             assert ipos_ == nrow_ * ncol_;
         }
@@ -558,6 +589,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             }
         }
 
+        public void addDouble( double value ) {
+            throw new UnsupportedOperationException();
+        }
+
         public void endAdd() {
             assert ipos_ == nrow_ * ncol_;
         }
@@ -608,6 +643,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             }
         }
 
+        public void addDouble( double value ) {
+            throw new UnsupportedOperationException();
+        }
+
         public void endAdd() {
             assert ipos_ == nrow_ * ncol_;
         }
@@ -652,6 +691,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             list_.add( clazz_.cast( value ) );
         }
 
+        public void addDouble( double value ) {
+            throw new UnsupportedOperationException();
+        }
+
         public void endAdd() {
             data_ = list_.toArray( zArray_ );
             list_ = null;
@@ -680,6 +723,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             list_.add( toDouble( value ) );
         }
 
+        public void addDouble( double value ) {
+            list_.add( value );
+        }
+
         public void endAdd() {
             data_ = list_.toDoubleArray();
             list_ = null;
@@ -705,6 +752,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             list_.add( toFloat( value ) );
         }
 
+        public void addDouble( double value ) {
+            list_.add( (float) value );
+        }
+
         public void endAdd() {
             data_ = list_.toFloatArray();
             list_ = null;
@@ -730,6 +781,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             list_.add( toInt( value ) );
         }
 
+        public void addDouble( double value ) {
+            list_.add( (int) value );
+        }
+
         public void endAdd() {
             data_ = list_.toIntArray();
             list_ = null;
@@ -755,6 +810,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             list_.add( toShort( value ) );
         }
 
+        public void addDouble( double value ) {
+            list_.add( (short) value );
+        }
+
         public void endAdd() {
             data_ = list_.toShortArray();
             list_ = null;
@@ -780,6 +839,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             list_.add( toByte( value ) );
         }
 
+        public void addDouble( double value ) {
+            list_.add( (byte) value );
+        }
+
         public void endAdd() {
             data_ = list_.toByteArray();
             list_ = null;
@@ -817,6 +880,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             }
         }
 
+        public void addDouble( double value ) {
+            throw new UnsupportedOperationException();
+        }
+
         public void endAdd() {
             data_ = list_.toDoubleArray();
             list_ = null;
@@ -862,6 +929,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             }
         }
 
+        public void addDouble( double value ) {
+            throw new UnsupportedOperationException();
+        }
+
         public void endAdd() {
             data_ = list_.toFloatArray();
             list_ = null;
@@ -907,6 +978,10 @@ public class MemoryColumnFactory implements CachedColumnFactory {
             }
         }
 
+        public void addDouble( double value ) {
+            throw new UnsupportedOperationException();
+        }
+
         public void endAdd() {
             data_ = list_.toIntArray();
             list_ = null;
@@ -946,6 +1021,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public Object getObjectValue() {
             return Boolean.valueOf( mask_.get( irow_ ) );
         }
@@ -980,6 +1058,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public T getObjectValue() {
             return data_[ irow_ ];
         }
@@ -1014,6 +1095,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public Object getObjectValue() {
             return new Double( data_[ irow_ ] );
         }
@@ -1048,6 +1132,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public Object getObjectValue() {
             return new Float( data_[ irow_ ] );
         }
@@ -1082,6 +1169,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public Object getObjectValue() {
             return new Integer( data_[ irow_ ] );
         }
@@ -1116,6 +1206,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public Object getObjectValue() {
             return new Short( data_[ irow_ ] );
         }
@@ -1150,6 +1243,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public Object getObjectValue() {
             return new Byte( data_[ irow_ ] );
         }
@@ -1188,6 +1284,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public Object getObjectValue() {
             int ipos = irow_ * 3;
             v3_[ 0 ] = data_[ ipos++ ];
@@ -1230,6 +1329,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public Object getObjectValue() {
             int ipos = irow_ * 3;
             v3_[ 0 ] = data_[ ipos++ ];
@@ -1272,6 +1374,9 @@ public class MemoryColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return ++irow_ < nrow_;
         }
+        public void skip( long n ) {
+            irow_ = (int) Math.min( irow_ + n, nrow_ );
+        }
         public Object getObjectValue() {
             int ipos = irow_ * 3;
             v3_[ 0 ] = data_[ ipos++ ];
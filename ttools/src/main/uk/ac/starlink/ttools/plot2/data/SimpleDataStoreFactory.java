@@ -45,6 +45,13 @@ public class SimpleDataStoreFactory implements DataStoreFactory, DataStore {
         }
     }
 
+    /**
+     * Returns a single sequence, since the table is read sequentially.
+     */
+    public TupleSequence[] getTupleSequences( DataSpec spec, int nseq ) {
+        return new TupleSequence[] { getTupleSequence( spec ) };
+    }
+
     /**
      * Utility method to work out the domain mappers for a given
      * coordinate of a DataSpec.
@@ -180,6 +180,24 @@ public class SmartColumnFactory implements CachedColumnFactory {
             }
         }
 
+        public void addDouble( double value ) {
+            if ( bulkCol_ != null ) {
+                bulkCol_.addDouble( value );
+            }
+
+            /* Compare with the constant value without creating an object;
+             * Double.equals compares bit patterns, so NaNs are equal. */
+            else if ( constCount_ > 0 && value1_ instanceof Double &&
+                      Double.doubleToLongBits( value ) ==
+                      Double.doubleToLongBits( ((Double) value1_)
+                                              .doubleValue() ) ) {
+                constCount_++;
+            }
+            else {
+                add( new Double( value ) );
+            }
+        }
+
         public void endAdd() {
             ( bulkCol_ != null ? bulkCol_ : constCol_ ).endAdd();
             assert constCol_ == null || nrow_ < 0 || constCount_ == nrow_;
@@ -242,6 +260,10 @@ public class SmartColumnFactory implements CachedColumnFactory {
         public boolean next() {
             return irow_++ < nrow_;
         }
+
+        public void skip( long n ) {
+            irow_ = Math.min( irow_ + n, nrow_ );
+        }
     }
 
     /**
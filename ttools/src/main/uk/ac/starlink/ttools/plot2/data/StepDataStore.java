@@ -2,7 +2,16 @@ package uk.ac.starlink.ttools.plot2.data;
 
 /**
  * Wrapper data store implementation that dispenses all column data
- * as evenly spaced subsamples by row.
+ * as subsamples by row.
+ *
+ * <p>The subsample may either be evenly spaced, or stratified.
+ * In the stratified case, one row is chosen at a pseudo-random position
+ * within each consecutive block of <code>step</code> rows.
+ * That has the same density as the evenly spaced subsample,
+ * but avoids aliasing effects if there is some regularity in the
+ * row ordering, which is quite common in sorted or gridded data.
+ * The pseudo-random choice is deterministic, so the same subsample is
+ * presented each time a sequence is obtained from the same data.
  *
  * @author   Mark Taylor
  * @since    13 Nov 2013
@@ -11,9 +20,13 @@ public class StepDataStore implements DataStore {
 
     private final DataStore baseStore_;
     private final int step_;
+    private final boolean isStratified_;
+
+    /** Seed for pseudo-random row selection in stratified subsamples. */
+    private static final long SEED = 0x2545f4914f6cdd1dL;
 
     /**
-     * Constructor.
+     * Constructs an evenly spaced subsample store.
      *
      * @param   base  base data store to which most behaviour is delegated
      * @param   step  stride indicating the size of the subsample;
@@ -21,15 +34,75 @@ public class StepDataStore implements DataStore {
      *                
      */
     public StepDataStore( DataStore base, int step ) {
+        this( base, step, false );
+    }
+
+    /**
+     * Constructs an evenly spaced or stratified subsample store.
+     *
+     * @param   base  base data store to which most behaviour is delegated
+     * @param   step  stride indicating the size of the subsample;
+     *                step=1 means all rows, step=2 means one in two etc
+     * @param   isStratified  false for every step'th row,
+     *                        true for a pseudo-random row from each
+     *                        block of step rows
+     */
+    public StepDataStore( DataStore base, int step, boolean isStratified ) {
         baseStore_ = base;
         step_ = step;
+        isStratified_ = isStratified;
     }
 
     public TupleSequence getTupleSequence( DataSpec spec ) {
-        final TupleSequence baseSeq = baseStore_.getTupleSequence( spec );
+        return createStepSequence( baseStore_.getTupleSequence( spec ) );
+    }
+
+    /**
+     * Returns a subsample of each of the base store's sequences.
+     * The subsample is not in general quite the same as that provided
+     * by {@link #getTupleSequence}, but it has the same density.
+     */
+    public TupleSequence[] getTupleSequences( DataSpec spec, int nseq ) {
+        TupleSequence[] tseqs = baseStore_.getTupleSequences( spec, nseq );
+        for ( int is = 0; is < tseqs.length; is++ ) {
+            tseqs[ is ] = createStepSequence( tseqs[ is ] );
+        }
+        return tseqs;
+    }
+
+    public boolean hasData( DataSpec spec ) {
+        return baseStore_.hasData( spec );
+    }
+
+    /**
+     * Returns a tuple sequence that dispenses one tuple from each
+     * step tuples of a base sequence.
+     *
+     * @param  baseSeq  base tuple sequence
+     * @return  subsampled sequence
+     */
+    private TupleSequence createStepSequence( final TupleSequence baseSeq ) {
         return new TupleSequence() {
+            int nskip_;
+            long rnd_ = SEED;
             public boolean next() {
-                for ( int i = 0; i < step_; i++ ) {
+
+                /* Find out how many rows to advance.  For stratified
+                 * sampling, that's the remainder of the previous block
+                 * followed by a random offset into the next one. */
+                int nadv;
+                if ( isStratified_ ) {
+                    rnd_ ^= rnd_ << 13;
+                    rnd_ ^= rnd_ >>> 7;
+                    rnd_ ^= rnd_ << 17;
+                    int ioff = (int) ( ( rnd_ >>> 1 ) % step_ );
+                    nadv = nskip_ + ioff + 1;
+                    nskip_ = step_ - ioff - 1;
+                }
+                else {
+                    nadv = step_;
+                }
+                for ( int i = 0; i < nadv; i++ ) {
                     if ( ! baseSeq.next() ) {
                         return false;
                     }
@@ -53,8 +126,4 @@ public class StepDataStore implements DataStore {
             }
         };
     }
-
-    public boolean hasData( DataSpec spec ) {
-        return baseStore_.hasData( spec );
-    }
 }
@@ -0,0 +1,174 @@
+package uk.ac.starlink.ttools.plot2.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import uk.ac.starlink.ttools.plot2.Slow;
+
+/**
+ * Accumulates a result from all the tuples of a data set,
+ * using several threads if the data store can supply the data
+ * as a number of disjoint tuple sequences.
+ * Each sequence is accumulated into its own accumulator object
+ * on its own thread, and the accumulators are merged at the end.
+ *
+ * <p>One of the sequences is always consumed on the calling thread,
+ * so if the data store can only supply a single sequence
+ * this behaves just like a sequential loop.
+ * If the calling thread is interrupted, the other threads are
+ * interrupted too, and the partial result is returned with the
+ * calling thread's interrupted status set,
+ * which is how interrupted tuple sequences normally behave.
+ *
+ * @param   <A>  accumulator type
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public abstract class TupleCollector<A> {
+
+    private final int nthread_;
+
+    /** Default number of threads. */
+    public static final int DEFAULT_NTHREAD =
+        Runtime.getRuntime().availableProcessors();
+
+    private static ExecutorService executor_;
+
+    /**
+     * Constructs a collector with a default number of threads.
+     */
+    protected TupleCollector() {
+        this( DEFAULT_NTHREAD );
+    }
+
+    /**
+     * Constructs a collector with a given number of threads.
+     *
+     * @param  nthread  maximum number of threads;
+     *                  if &lt;=1 no additional threads are used
+     */
+    protected TupleCollector( int nthread ) {
+        nthread_ = nthread;
+    }
+
+    /**
+     * Returns a new accumulator with no content.
+     *
+     * @return  new accumulator
+     */
+    public abstract A createAccumulator();
+
+    /**
+     * Accumulates all the tuples from a tuple sequence into
+     * an accumulator.
+     * This may be called concurrently in different threads with
+     * different arguments, so any non-thread-safe workspace objects
+     * must be created within this method.
+     *
+     * @param  tseq  tuple sequence, not yet advanced
+     * @param  acc   accumulator
+     */
+    public abstract void accumulate( TupleSequence tseq, A acc );
+
+    /**
+     * Merges the contents of one accumulator into another.
+     * The second accumulator is not used after this call.
+     *
+     * @param  acc0  accumulator to update
+     * @param  acc1  accumulator whose contents are to be added to
+     *               <code>acc0</code>
+     */
+    public abstract void combine( A acc0, A acc1 );
+
+    /**
+     * Returns an accumulator containing all the tuples described
+     * by a given data spec.
+     *
+     * @param  dataStore  data storage
+     * @param  dataSpec   data specification
+     * @return   populated accumulator
+     */
+    @Slow
+    public A collect( DataStore dataStore, DataSpec dataSpec ) {
+        A acc0 = createAccumulator();
+        TupleSequence[] tseqs =
+              nthread_ > 1
+            ? dataStore.getTupleSequences( dataSpec, nthread_ )
+            : new TupleSequence[] { dataStore.getTupleSequence( dataSpec ) };
+        int nseq = tseqs.length;
+        if ( nseq == 1 ) {
+            accumulate( tseqs[ 0 ], acc0 );
+            return acc0;
+        }
+        ExecutorService executor = getExecutor();
+        List<Future<A>> futures = new ArrayList<Future<A>>( nseq - 1 );
+        for ( int is = 1; is < nseq; is++ ) {
+            final TupleSequence tseq = tseqs[ is ];
+            futures.add( executor.submit( new Callable<A>() {
+                public A call() {
+                    A acc = createAccumulator();
+                    accumulate( tseq, acc );
+                    return acc;
+                }
+            } ) );
+        }
+        boolean done = false;
+        try {
+            accumulate( tseqs[ 0 ], acc0 );
+            for ( Future<A> future : futures ) {
+                combine( acc0, future.get() );
+            }
+            done = true;
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else {
+                throw new RuntimeException( cause.getMessage(), cause );
+            }
+        }
+        finally {
+            if ( ! done ) {
+                for ( Future<A> future : futures ) {
+                    future.cancel( true );
+                }
+            }
+        }
+        return acc0;
+    }
+
+    /**
+     * Returns the executor service used for accumulating partitions.
+     * This is a lazily created, bounded pool of daemon threads
+     * shared by all instances of this class.
+     *
+     * @return  executor
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if ( executor_ == null ) {
+            executor_ =
+                Executors.newFixedThreadPool( DEFAULT_NTHREAD,
+                                              new ThreadFactory() {
+                    public Thread newThread( Runnable r ) {
+                        Thread th = new Thread( r, "Plot data collector" );
+                        th.setDaemon( true );
+                        return th;
+                    }
+                } );
+        }
+        return executor_;
+    }
+}
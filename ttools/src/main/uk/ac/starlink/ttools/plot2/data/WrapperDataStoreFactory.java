@@ -3,6 +3,7 @@ package uk.ac.starlink.ttools.plot2.data;
 import java.io.IOException;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.WrapperRowSequence;
 import uk.ac.starlink.table.WrapperStarTable;
@@ -101,6 +102,11 @@ public abstract class WrapperDataStoreFactory implements DataStoreFactory {
             return baseStore_.getTupleSequence( new WrapperDataSpec( spec ) );
         }
 
+        public TupleSequence[] getTupleSequences( DataSpec spec, int nseq ) {
+            return baseStore_.getTupleSequences( new WrapperDataSpec( spec ),
+                                                 nseq );
+        }
+
         public boolean hasData( DataSpec spec ) {
             return baseStore_.hasData( new WrapperDataSpec( spec ) );
         }
@@ -133,6 +139,10 @@ public abstract class WrapperDataStoreFactory implements DataStoreFactory {
                     return createRowSequence( baseSourceTable );
                 }
                 @Override
+                public boolean hasDoubleCells( int icol ) {
+                    return Tables.hasDoubleCells( baseSourceTable, icol );
+                }
+                @Override
                 public int hashCode() {
                     return baseSourceTable.hashCode();
                 }
@@ -176,5 +186,10 @@ public abstract class WrapperDataStoreFactory implements DataStoreFactory {
         public boolean isCoordBlank( int icoord ) {
             return baseSpec_.isCoordBlank( icoord );
         }
+
+        @Override
+        public int getUserCoordColumnIndex( int icoord ) {
+            return baseSpec_.getUserCoordColumnIndex( icoord );
+        }
     }
 }
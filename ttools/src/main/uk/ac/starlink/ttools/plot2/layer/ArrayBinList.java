@@ -1,9 +1,7 @@
 package uk.ac.starlink.ttools.plot2.layer;
 
 import java.util.BitSet;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -50,12 +48,29 @@ public abstract class ArrayBinList implements BinList {
      */
     protected abstract double getBinResultInt( int index );
 
+    /**
+     * Accumulates the bin contents of another bin list into this one.
+     * The other list is an instance of the same class as this one,
+     * with the same size, and was created by the same combiner.
+     * Bins which are empty in the other list must not affect
+     * the content of this one.
+     *
+     * @param  other  compatible bin list
+     */
+    protected abstract void addBinsInt( ArrayBinList other );
+
     public void submitToBin( long lndex, double datum ) {
         int index = (int) lndex;
         mask_.set( index );
         submitToBinInt( index, datum );
     }
 
+    public void addBins( BinList other ) {
+        ArrayBinList aOther = (ArrayBinList) other;
+        addBinsInt( aOther );
+        mask_.or( aOther.mask_ );
+    }
+
     public long getSize() {
         return size_;
     }
@@ -139,15 +154,21 @@ public abstract class ArrayBinList implements BinList {
 
         public Result compact() {
 
-            /* If the array is sparse, use a hash-based implementation. */
-            double frac = mask_.cardinality() * 1.0 / arraysize_;
+            /* If the array is sparse, use an implementation based on
+             * sorted arrays.  Mask iteration is already in index order. */
+            int nbin = mask_.cardinality();
+            double frac = nbin * 1.0 / arraysize_;
             if ( frac < 0.25 ) {
-                Map<Long,Double> map = new HashMap<Long,Double>();
-                for ( Iterator<Long> it = indexIterator(); it.hasNext(); ) {
-                    Long key = it.next();
-                    map.put( key, getPopulatedBinValue( key.intValue() ) );
+                long[] indices = new long[ nbin ];
+                double[] values = new double[ nbin ];
+                int i = 0;
+                for ( int index = mask_.nextSetBit( 0 ); index >= 0;
+                      index = mask_.nextSetBit( index + 1 ) ) {
+                    indices[ i ] = index;
+                    values[ i ] = getPopulatedBinValue( index );
+                    i++;
                 }
-                return HashBinList.createHashResult( map );
+                return HashBinList.createSortedResult( indices, values );
             }
 
             /* If the value container array elements are large, copy the
@@ -77,6 +77,26 @@ public class BinBag {
         }
     }
 
+    /**
+     * Accumulates all the bin values from another bin bag into this one.
+     * The other bag must have been constructed with the same arguments
+     * as this one, and should not be used after this call.
+     *
+     * @param  other  compatible bin bag
+     */
+    public void add( BinBag other ) {
+        for ( Map.Entry<Integer,Value> entry : other.valueMap_.entrySet() ) {
+            Integer ix = entry.getKey();
+            Value val = valueMap_.get( ix );
+            if ( val == null ) {
+                valueMap_.put( ix, entry.getValue() );
+            }
+            else {
+                val.value_ += entry.getValue().value_;
+            }
+        }
+    }
+
     /**
      * Returns a sorted iterator over all bins with non-zero values.
      *
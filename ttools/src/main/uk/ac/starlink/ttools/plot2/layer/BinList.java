@@ -44,6 +44,23 @@ public interface BinList {
      */
     void submitToBin( long index, double datum );
 
+    /**
+     * Accumulates into this bin list all the values that have been
+     * submitted to another one.
+     * The effect is the same, apart perhaps from floating point rounding
+     * differences, as if all the values submitted to <code>other</code>
+     * had been submitted to this list instead.
+     * This makes it possible to populate several bin lists concurrently
+     * from disjoint subsets of the data and then merge them.
+     *
+     * <p>The other bin list must have been created in the same way
+     * as this one, that is by the same method of the same combiner
+     * with the same size.  It should not be used after this call.
+     *
+     * @param  other  compatible bin list
+     */
+    void addBins( BinList other );
+
     /**
      * Returns an object containing the result values accumulated into
      * the bins so far.
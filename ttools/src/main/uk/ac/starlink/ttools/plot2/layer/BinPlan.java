@@ -2,10 +2,14 @@ package uk.ac.starlink.ttools.plot2.layer;
 
 import java.awt.Rectangle;
 import java.awt.geom.Point2D;
+import uk.ac.starlink.ttools.plot2.DataGeom;
 import uk.ac.starlink.ttools.plot2.PlotUtil;
 import uk.ac.starlink.ttools.plot2.PointCloud;
+import uk.ac.starlink.ttools.plot2.SubCloud;
 import uk.ac.starlink.ttools.plot2.Surface;
 import uk.ac.starlink.ttools.plot2.data.DataStore;
+import uk.ac.starlink.ttools.plot2.data.TupleCollector;
+import uk.ac.starlink.ttools.plot2.data.TupleSequence;
 
 /**
  * Drawing plan object for counting the number of hits to each bin in
@@ -79,21 +83,65 @@ public class BinPlan {
             }
         }
         Rectangle bounds = surface.getPlotBounds();
-        int xoff = bounds.x;
-        int yoff = bounds.y;
         Gridder gridder = new Gridder( bounds.width, bounds.height );
         Binner binner = new Binner( gridder.getLength() );
-        Point2D.Double gp = new Point2D.Double();
-        for ( double[] dpos : pointCloud.createDataPosIterable( dataStore ) ) {
-            if ( surface.dataToGraphics( dpos, true, gp ) ) {
-                int gx = PlotUtil.ifloor( gp.x ) - xoff;
-                int gy = PlotUtil.ifloor( gp.y ) - yoff;
-                binner.increment( gridder.getIndex( gx, gy ) );
-            }
+        for ( SubCloud subCloud : pointCloud.getSubClouds() ) {
+            binner.add( new CloudCollector( subCloud, surface, gridder )
+                       .collect( dataStore, subCloud.getDataSpec() ) );
         }
         return new PointCloudBinPlan( binner, gridder, pointCloud, surface );
     }
 
+    /**
+     * Accumulates the grid positions of the points in a SubCloud.
+     */
+    private static class CloudCollector extends TupleCollector<Binner> {
+        private final DataGeom geom_;
+        private final int iPosCoord_;
+        private final Surface surface_;
+        private final Gridder gridder_;
+        private final int xoff_;
+        private final int yoff_;
+
+        /**
+         * Constructor.
+         *
+         * @param  subCloud  data position set
+         * @param  surface  plot surface
+         * @param  gridder  pixel grid geometry
+         */
+        CloudCollector( SubCloud subCloud, Surface surface, Gridder gridder ) {
+            geom_ = subCloud.getDataGeom();
+            iPosCoord_ = subCloud.getPosCoordIndex();
+            surface_ = surface;
+            gridder_ = gridder;
+            Rectangle bounds = surface.getPlotBounds();
+            xoff_ = bounds.x;
+            yoff_ = bounds.y;
+        }
+
+        public Binner createAccumulator() {
+            return new Binner( gridder_.getLength() );
+        }
+
+        public void accumulate( TupleSequence tseq, Binner binner ) {
+            double[] dpos = new double[ geom_.getDataDimCount() ];
+            Point2D.Double gp = new Point2D.Double();
+            while ( tseq.next() ) {
+                if ( geom_.readDataPos( tseq, iPosCoord_, dpos ) &&
+                     surface_.dataToGraphics( dpos, true, gp ) ) {
+                    int gx = PlotUtil.ifloor( gp.x ) - xoff_;
+                    int gy = PlotUtil.ifloor( gp.y ) - yoff_;
+                    binner.increment( gridder_.getIndex( gx, gy ) );
+                }
+            }
+        }
+
+        public void combine( Binner binner0, Binner binner1 ) {
+            binner0.add( binner1 );
+        }
+    }
+
     /**
      * Concrete BinPlan implementation for the positions represented
      * in a PointCloud.
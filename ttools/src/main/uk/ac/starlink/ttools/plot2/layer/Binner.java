@@ -43,24 +43,54 @@ public class Binner {
     public void increment( int index ) {
         total_++;
         if ( ! aBinner_.increment( index ) ) {
-            final ArrayBinner aBinner1;
-            if ( aBinner_ instanceof ByteBinner ) {
-                aBinner1 = new ShortBinner( n_ );
-            }
-            else if ( aBinner_ instanceof ShortBinner ) {
-                aBinner1 = new IntBinner( n_ );
-            }
-            else {
-                throw new RuntimeException( "Do what?" );
-            }
-            for ( int i = 0; i < n_; i++ ) {
-                aBinner1.setCount( i, aBinner_.getCount( i ) );
-            }
-            aBinner1.setCount( index, aBinner_.maxValue() );
-            aBinner_ = aBinner1;
+            int max = aBinner_.maxValue();
+            promote();
+            aBinner_.setCount( index, max );
             increment( index );
         }
     }
+
+    /**
+     * Adds the counts from another binner of the same length
+     * to this one.
+     *
+     * @param  other  binner to add
+     */
+    public void add( Binner other ) {
+        total_ += other.total_;
+        for ( int i = 0; i < n_; i++ ) {
+            int c1 = other.getCount( i );
+            if ( c1 != 0 ) {
+                long count = (long) aBinner_.getCount( i ) + c1;
+                while ( count > aBinner_.maxValue() &&
+                        ! ( aBinner_ instanceof IntBinner ) ) {
+                    promote();
+                }
+                aBinner_.setCount( i, (int) Math.min( count,
+                                                      Integer.MAX_VALUE ) );
+            }
+        }
+    }
+
+    /**
+     * Replaces the array binner with one that can store larger counts.
+     */
+    private void promote() {
+        final ArrayBinner aBinner1;
+        if ( aBinner_ instanceof ByteBinner ) {
+            aBinner1 = new ShortBinner( n_ );
+        }
+        else if ( aBinner_ instanceof ShortBinner ) {
+            aBinner1 = new IntBinner( n_ );
+        }
+        else {
+            throw new RuntimeException( "Do what?" );
+        }
+        for ( int i = 0; i < n_; i++ ) {
+            aBinner1.setCount( i, aBinner_.getCount( i ) );
+        }
+        aBinner_ = aBinner1;
+    }
  
     /**
      * Returns the count in a given bin.
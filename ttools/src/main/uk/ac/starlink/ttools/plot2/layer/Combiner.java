@@ -228,6 +228,16 @@ public abstract class Combiner {
          * @return  combined value of all submitted data
          */
         double getResult();
+
+        /**
+         * Accumulates into this container all the values that have
+         * been submitted to another one.
+         * The other container must have been created by the same
+         * combiner as this one, and should not be used after this call.
+         *
+         * @param  other  compatible container
+         */
+        void add( Container other );
     }
 
     /**
@@ -266,19 +276,12 @@ public abstract class Combiner {
         }
 
         public BinList createArrayBinList( int size ) {
-            final int[] counts = new int[ size ];
-            final double[] sums = new double[ size ];
-            return new ArrayBinList( size, this ) {
-                public void submitToBinInt( int index, double value ) {
-                    counts[ index ]++;
-                    sums[ index ] += value;
-                }
-                public double getBinResultInt( int index ) {
-                    int count = counts[ index ];
-                    return count == 0 ? Double.NaN
-                                      : sums[ index ] / (double) count;
-                }
-            };
+            return new MeanBinList( size, this );
+        }
+
+        @Override
+        public BinList createHashBinList( long size ) {
+            return new MeanHashBinList( size, this );
         }
 
         public Container createContainer() {
@@ -309,6 +312,63 @@ public abstract class Combiner {
             public double getResult() {
                 return count_ == 0 ? Double.NaN : sum_ / (double) count_;
             }
+            public void add( Container other ) {
+                MeanContainer o = (MeanContainer) other;
+                count_ += o.count_;
+                sum_ += o.sum_;
+            }
+        }
+
+        /**
+         * ArrayBinList implementation that holds counts and sums.
+         */
+        private static class MeanBinList extends ArrayBinList {
+            final int[] counts_;
+            final double[] sums_;
+            MeanBinList( int size, Combiner combiner ) {
+                super( size, combiner );
+                counts_ = new int[ size ];
+                sums_ = new double[ size ];
+            }
+            public void submitToBinInt( int index, double value ) {
+                counts_[ index ]++;
+                sums_[ index ] += value;
+            }
+            public double getBinResultInt( int index ) {
+                int count = counts_[ index ];
+                return count == 0 ? Double.NaN
+                                  : sums_[ index ] / (double) count;
+            }
+            public void addBinsInt( ArrayBinList other ) {
+                MeanBinList o = (MeanBinList) other;
+                int n = counts_.length;
+                for ( int i = 0; i < n; i++ ) {
+                    counts_[ i ] += o.counts_[ i ];
+                    sums_[ i ] += o.sums_[ i ];
+                }
+            }
+        }
+
+        /**
+         * OpenHashBinList implementation that holds counts and sums.
+         */
+        private static class MeanHashBinList extends OpenHashBinList {
+            MeanHashBinList( long size, Combiner combiner ) {
+                super( size, combiner, 2 );
+            }
+            protected void submitToSlot( double[][] vals, int islot,
+                                         boolean isNew, double datum ) {
+                vals[ 0 ][ islot ]++;
+                vals[ 1 ][ islot ] += datum;
+            }
+            protected void addToSlot( double[][] vals, int islot,
+                                      double[][] oVals, int oslot ) {
+                vals[ 0 ][ islot ] += oVals[ 0 ][ oslot ];
+                vals[ 1 ][ islot ] += oVals[ 1 ][ oslot ];
+            }
+            protected double getSlotResult( double[][] vals, int islot ) {
+                return vals[ 1 ][ islot ] / vals[ 0 ][ islot ];
+            }
         }
     }
 
@@ -368,20 +428,7 @@ public abstract class Combiner {
         }
 
         public BinList createArrayBinList( int size ) {
-            final int[] counts = new int[ size ];
-            final double[] sum1s = new double[ size ];
-            final double[] sum2s = new double[ size ];
-            return new ArrayBinList( size, this ) {
-                public void submitToBinInt( int index, double value ) {
-                    counts[ index ]++;
-                    sum1s[ index ] += value;
-                    sum2s[ index ] += value * value;
-                }
-                public double getBinResultInt( int index ) {
-                    return getStdev( isSampleStdev_, counts[ index ],
-                                     sum1s[ index ], sum2s[ index ] );
-                }
-            };
+            return new StdevBinList( size, this );
         }
 
         public Container createContainer() {
@@ -415,6 +462,12 @@ public abstract class Combiner {
                 sum1_ += datum;
                 sum2_ += datum * datum;
             }
+            public void add( Container other ) {
+                StdevContainer o = (StdevContainer) other;
+                count_ += o.count_;
+                sum1_ += o.sum1_;
+                sum2_ += o.sum2_;
+            }
         }
 
         /**
@@ -462,6 +515,42 @@ public abstract class Combiner {
                 return Math.sqrt( nvar / divisor );
             }
         }
+
+        /**
+         * ArrayBinList implementation that holds counts, sums and
+         * sums of squares.
+         */
+        private static class StdevBinList extends ArrayBinList {
+            final boolean isSampleStdev_;
+            final int[] counts_;
+            final double[] sum1s_;
+            final double[] sum2s_;
+            StdevBinList( int size, StdevCombiner combiner ) {
+                super( size, combiner );
+                isSampleStdev_ = combiner.isSampleStdev_;
+                counts_ = new int[ size ];
+                sum1s_ = new double[ size ];
+                sum2s_ = new double[ size ];
+            }
+            public void submitToBinInt( int index, double value ) {
+                counts_[ index ]++;
+                sum1s_[ index ] += value;
+                sum2s_[ index ] += value * value;
+            }
+            public double getBinResultInt( int index ) {
+                return getStdev( isSampleStdev_, counts_[ index ],
+                                 sum1s_[ index ], sum2s_[ index ] );
+            }
+            public void addBinsInt( ArrayBinList other ) {
+                StdevBinList o = (StdevBinList) other;
+                int n = counts_.length;
+                for ( int i = 0; i < n; i++ ) {
+                    counts_[ i ] += o.counts_[ i ];
+                    sum1s_[ i ] += o.sum1s_[ i ];
+                    sum2s_[ i ] += o.sum2s_[ i ];
+                }
+            }
+        }
     }
 
     /**
@@ -479,16 +568,12 @@ public abstract class Combiner {
         }
 
         public BinList createArrayBinList( int size ) {
-            final int[] counts = new int[ size ];
-            return new ArrayBinList( size, this ) {
-                public void submitToBinInt( int index, double value ) {
-                    counts[ index ]++;
-                }
-                public double getBinResultInt( int index ) {
-                    int count = counts[ index ];
-                    return count == 0 ? Double.NaN : count;
-                }
-            };
+            return new CountBinList( size, this );
+        }
+
+        @Override
+        public BinList createHashBinList( long size ) {
+            return new CountHashBinList( size, this );
         }
 
         public Container createContainer() {
@@ -516,6 +601,54 @@ public abstract class Combiner {
             public double getResult() {
                 return count_ == 0 ? Double.NaN : count_;
             }
+            public void add( Container other ) {
+                count_ += ((CountContainer) other).count_;
+            }
+        }
+
+        /**
+         * ArrayBinList implementation that holds counts.
+         */
+        private static class CountBinList extends ArrayBinList {
+            final int[] counts_;
+            CountBinList( int size, Combiner combiner ) {
+                super( size, combiner );
+                counts_ = new int[ size ];
+            }
+            public void submitToBinInt( int index, double value ) {
+                counts_[ index ]++;
+            }
+            public double getBinResultInt( int index ) {
+                int count = counts_[ index ];
+                return count == 0 ? Double.NaN : count;
+            }
+            public void addBinsInt( ArrayBinList other ) {
+                int[] oCounts = ((CountBinList) other).counts_;
+                int n = counts_.length;
+                for ( int i = 0; i < n; i++ ) {
+                    counts_[ i ] += oCounts[ i ];
+                }
+            }
+        }
+
+        /**
+         * OpenHashBinList implementation that holds counts.
+         */
+        private static class CountHashBinList extends OpenHashBinList {
+            CountHashBinList( long size, Combiner combiner ) {
+                super( size, combiner, 1 );
+            }
+            protected void submitToSlot( double[][] vals, int islot,
+                                         boolean isNew, double datum ) {
+                vals[ 0 ][ islot ]++;
+            }
+            protected void addToSlot( double[][] vals, int islot,
+                                      double[][] oVals, int oslot ) {
+                vals[ 0 ][ islot ] += oVals[ 0 ][ oslot ];
+            }
+            protected double getSlotResult( double[][] vals, int islot ) {
+                return vals[ 0 ][ islot ];
+            }
         }
     }
 
@@ -544,16 +677,12 @@ public abstract class Combiner {
         }
 
         public BinList createArrayBinList( int size ) {
-            final double[] sums = new double[ size ];
-            Arrays.fill( sums, Double.NaN );
-            return new ArrayBinList( size, this ) {
-                public void submitToBinInt( int index, double datum ) {
-                    sums[ index ] = combineSum( sums[ index ], datum );
-                }
-                public double getBinResultInt( int index ) {
-                    return sums[ index ];
-                }
-            };
+            return new SumBinList( size, this );
+        }
+
+        @Override
+        public BinList createHashBinList( long size ) {
+            return new SumHashBinList( size, this );
         }
 
         public Container createContainer() {
@@ -583,6 +712,62 @@ public abstract class Combiner {
             public double getResult() {
                 return sum_;
             }
+            public void add( Container other ) {
+                double o = ((SumContainer) other).sum_;
+                if ( ! Double.isNaN( o ) ) {
+                    sum_ = combineSum( sum_, o );
+                }
+            }
+        }
+
+        /**
+         * ArrayBinList implementation that holds sums.
+         */
+        private static class SumBinList extends ArrayBinList {
+            final double[] sums_;
+            SumBinList( int size, Combiner combiner ) {
+                super( size, combiner );
+                sums_ = new double[ size ];
+                Arrays.fill( sums_, Double.NaN );
+            }
+            public void submitToBinInt( int index, double datum ) {
+                sums_[ index ] = combineSum( sums_[ index ], datum );
+            }
+            public double getBinResultInt( int index ) {
+                return sums_[ index ];
+            }
+            public void addBinsInt( ArrayBinList other ) {
+                double[] oSums = ((SumBinList) other).sums_;
+                int n = sums_.length;
+                for ( int i = 0; i < n; i++ ) {
+                    double o = oSums[ i ];
+                    if ( ! Double.isNaN( o ) ) {
+                        sums_[ i ] = combineSum( sums_[ i ], o );
+                    }
+                }
+            }
+        }
+
+        /**
+         * OpenHashBinList implementation that holds sums.
+         */
+        private static class SumHashBinList extends OpenHashBinList {
+            SumHashBinList( long size, Combiner combiner ) {
+                super( size, combiner, 1 );
+            }
+            protected void submitToSlot( double[][] vals, int islot,
+                                         boolean isNew, double datum ) {
+                double[] v = vals[ 0 ];
+                v[ islot ] = isNew ? datum : combineSum( v[ islot ], datum );
+            }
+            protected void addToSlot( double[][] vals, int islot,
+                                      double[][] oVals, int oslot ) {
+                double[] v = vals[ 0 ];
+                v[ islot ] = combineSum( v[ islot ], oVals[ 0 ][ oslot ] );
+            }
+            protected double getSlotResult( double[][] vals, int islot ) {
+                return vals[ 0 ][ islot ];
+            }
         }
     }
 
@@ -612,16 +797,12 @@ public abstract class Combiner {
         }
 
         public BinList createArrayBinList( int size ) {
-            final double[] mins = new double[ size ];
-            Arrays.fill( mins, Double.NaN );
-            return new ArrayBinList( size, this ) {
-                public void submitToBinInt( int index, double datum ) {
-                    mins[ index ] = combineMin( mins[ index ], datum );
-                }
-                public double getBinResultInt( int index ) {
-                    return mins[ index ];
-                }
-            };
+            return new MinBinList( size, this );
+        }
+
+        @Override
+        public BinList createHashBinList( long size ) {
+            return new MinHashBinList( size, this );
         }
 
         public Container createContainer() {
@@ -652,6 +833,62 @@ public abstract class Combiner {
             public double getResult() {
                 return min_;
             }
+            public void add( Container other ) {
+                double o = ((MinContainer) other).min_;
+                if ( ! Double.isNaN( o ) ) {
+                    min_ = combineMin( min_, o );
+                }
+            }
+        }
+
+        /**
+         * ArrayBinList implementation that holds minima.
+         */
+        private static class MinBinList extends ArrayBinList {
+            final double[] mins_;
+            MinBinList( int size, Combiner combiner ) {
+                super( size, combiner );
+                mins_ = new double[ size ];
+                Arrays.fill( mins_, Double.NaN );
+            }
+            public void submitToBinInt( int index, double datum ) {
+                mins_[ index ] = combineMin( mins_[ index ], datum );
+            }
+            public double getBinResultInt( int index ) {
+                return mins_[ index ];
+            }
+            public void addBinsInt( ArrayBinList other ) {
+                double[] oMins = ((MinBinList) other).mins_;
+                int n = mins_.length;
+                for ( int i = 0; i < n; i++ ) {
+                    double o = oMins[ i ];
+                    if ( ! Double.isNaN( o ) ) {
+                        mins_[ i ] = combineMin( mins_[ i ], o );
+                    }
+                }
+            }
+        }
+
+        /**
+         * OpenHashBinList implementation that holds minima.
+         */
+        private static class MinHashBinList extends OpenHashBinList {
+            MinHashBinList( long size, Combiner combiner ) {
+                super( size, combiner, 1 );
+            }
+            protected void submitToSlot( double[][] vals, int islot,
+                                         boolean isNew, double datum ) {
+                double[] v = vals[ 0 ];
+                v[ islot ] = isNew ? datum : combineMin( v[ islot ], datum );
+            }
+            protected void addToSlot( double[][] vals, int islot,
+                                      double[][] oVals, int oslot ) {
+                double[] v = vals[ 0 ];
+                v[ islot ] = combineMin( v[ islot ], oVals[ 0 ][ oslot ] );
+            }
+            protected double getSlotResult( double[][] vals, int islot ) {
+                return vals[ 0 ][ islot ];
+            }
         }
     }
 
@@ -681,16 +918,12 @@ public abstract class Combiner {
         }
 
         public BinList createArrayBinList( int size ) {
-            final double[] maxs = new double[ size ];
-            Arrays.fill( maxs, Double.NaN );
-            return new ArrayBinList( size, this ) {
-                public void submitToBinInt( int index, double datum ) {
-                    maxs[ index ] = combineMax( maxs[ index ], datum );
-                }
-                public double getBinResultInt( int index ) {
-                    return maxs[ index ];
-                }
-            };
+            return new MaxBinList( size, this );
+        }
+
+        @Override
+        public BinList createHashBinList( long size ) {
+            return new MaxHashBinList( size, this );
         }
 
         public Container createContainer() {
@@ -721,6 +954,62 @@ public abstract class Combiner {
             public double getResult() {
                 return max_;
             }
+            public void add( Container other ) {
+                double o = ((MaxContainer) other).max_;
+                if ( ! Double.isNaN( o ) ) {
+                    max_ = combineMax( max_, o );
+                }
+            }
+        }
+
+        /**
+         * ArrayBinList implementation that holds maxima.
+         */
+        private static class MaxBinList extends ArrayBinList {
+            final double[] maxs_;
+            MaxBinList( int size, Combiner combiner ) {
+                super( size, combiner );
+                maxs_ = new double[ size ];
+                Arrays.fill( maxs_, Double.NaN );
+            }
+            public void submitToBinInt( int index, double datum ) {
+                maxs_[ index ] = combineMax( maxs_[ index ], datum );
+            }
+            public double getBinResultInt( int index ) {
+                return maxs_[ index ];
+            }
+            public void addBinsInt( ArrayBinList other ) {
+                double[] oMaxs = ((MaxBinList) other).maxs_;
+                int n = maxs_.length;
+                for ( int i = 0; i < n; i++ ) {
+                    double o = oMaxs[ i ];
+                    if ( ! Double.isNaN( o ) ) {
+                        maxs_[ i ] = combineMax( maxs_[ i ], o );
+                    }
+                }
+            }
+        }
+
+        /**
+         * OpenHashBinList implementation that holds maxima.
+         */
+        private static class MaxHashBinList extends OpenHashBinList {
+            MaxHashBinList( long size, Combiner combiner ) {
+                super( size, combiner, 1 );
+            }
+            protected void submitToSlot( double[][] vals, int islot,
+                                         boolean isNew, double datum ) {
+                double[] v = vals[ 0 ];
+                v[ islot ] = isNew ? datum : combineMax( v[ islot ], datum );
+            }
+            protected void addToSlot( double[][] vals, int islot,
+                                      double[][] oVals, int oslot ) {
+                double[] v = vals[ 0 ];
+                v[ islot ] = combineMax( v[ islot ], oVals[ 0 ][ oslot ] );
+            }
+            protected double getSlotResult( double[][] vals, int islot ) {
+                return vals[ 0 ][ islot ];
+            }
         }
     }
 
@@ -739,15 +1028,12 @@ public abstract class Combiner {
         }
 
         public BinList createArrayBinList( int size ) {
-            final BitSet mask = new BitSet();
-            return new ArrayBinList( size, this ) {
-                public void submitToBinInt( int index, double datum ) {
-                    mask.set( index );
-                }
-                public double getBinResultInt( int index ) {
-                    return mask.get( index ) ? 1 : Double.NaN;
-                }
-            };
+            return new HitBinList( size, this );
+        }
+
+        @Override
+        public BinList createHashBinList( long size ) {
+            return new HitHashBinList( size, this );
         }
 
         public Container createContainer() {
@@ -767,6 +1053,48 @@ public abstract class Combiner {
             public double getResult() {
                 return hit_ ? 1 : Double.NaN;
             }
+            public void add( Container other ) {
+                hit_ = hit_ || ((HitContainer) other).hit_;
+            }
+        }
+
+        /**
+         * ArrayBinList implementation that holds a hit mask.
+         */
+        private static class HitBinList extends ArrayBinList {
+            final BitSet mask_;
+            HitBinList( int size, Combiner combiner ) {
+                super( size, combiner );
+                mask_ = new BitSet();
+            }
+            public void submitToBinInt( int index, double datum ) {
+                mask_.set( index );
+            }
+            public double getBinResultInt( int index ) {
+                return mask_.get( index ) ? 1 : Double.NaN;
+            }
+            public void addBinsInt( ArrayBinList other ) {
+                mask_.or( ((HitBinList) other).mask_ );
+            }
+        }
+
+        /**
+         * OpenHashBinList implementation that holds only the keys
+         * of occupied bins.
+         */
+        private static class HitHashBinList extends OpenHashBinList {
+            HitHashBinList( long size, Combiner combiner ) {
+                super( size, combiner, 0 );
+            }
+            protected void submitToSlot( double[][] vals, int islot,
+                                         boolean isNew, double datum ) {
+            }
+            protected void addToSlot( double[][] vals, int islot,
+                                      double[][] oVals, int oslot ) {
+            }
+            protected double getSlotResult( double[][] vals, int islot ) {
+                return 1;
+            }
         }
     }
 }
@@ -46,6 +46,7 @@ import uk.ac.starlink.ttools.plot2.data.CoordGroup;
 import uk.ac.starlink.ttools.plot2.data.DataSpec;
 import uk.ac.starlink.ttools.plot2.data.DataStore;
 import uk.ac.starlink.ttools.plot2.data.FloatingCoord;
+import uk.ac.starlink.ttools.plot2.data.TupleCollector;
 import uk.ac.starlink.ttools.plot2.data.TupleSequence;
 import uk.ac.starlink.ttools.plot2.geom.PlanarSurface;
 import uk.ac.starlink.ttools.plot2.paper.Paper;
@@ -621,44 +622,52 @@ public class GridPlotter implements Plotter<GridPlotter.GridStyle> {
          * @param  dataStore  data storage
          * @return   populated bin list
          */
-        private BinList readBins( GridPixer pixer, DataSpec dataSpec,
+        private BinList readBins( final GridPixer pixer, DataSpec dataSpec,
                                   DataStore dataStore ) {
-            int nbin = pixer.getBinCount();
-            Combiner combiner = gstyle_.combiner_;
-            BinList binList = combiner.createArrayBinList( nbin );
-            TupleSequence tseq = dataStore.getTupleSequence( dataSpec );
-            Point2D.Double gp = new Point2D.Double();
-            DataGeom geom = getDataGeom();
-            double[] dpos = new double[ geom.getDataDimCount() ];
-
-            /* Unweighted. */
-            if ( dataSpec.isCoordBlank( icWeight_ ) ) {
-                while ( tseq.next() ) {
-                    if ( geom.readDataPos( tseq, icPos_, dpos ) ) {
-                        int ibin = pixer.getBinIndex( dpos );
-                        if ( ibin >= 0 ) {
-                            binList.submitToBin( ibin, 1 );
+            final int nbin = pixer.getBinCount();
+            final Combiner combiner = gstyle_.combiner_;
+            final DataGeom geom = getDataGeom();
+            final boolean isWeighted = ! dataSpec.isCoordBlank( icWeight_ );
+            return new TupleCollector<BinList>() {
+                public BinList createAccumulator() {
+                    return combiner.createArrayBinList( nbin );
+                }
+                public void accumulate( TupleSequence tseq, BinList binList ) {
+                    double[] dpos = new double[ geom.getDataDimCount() ];
+
+                    /* Unweighted. */
+                    if ( ! isWeighted ) {
+                        while ( tseq.next() ) {
+                            if ( geom.readDataPos( tseq, icPos_, dpos ) ) {
+                                int ibin = pixer.getBinIndex( dpos );
+                                if ( ibin >= 0 ) {
+                                    binList.submitToBin( ibin, 1 );
+                                }
+                            }
                         }
                     }
-                }
-            }
 
-            /* Weighted. */
-            else {
-                while ( tseq.next() ) {
-                    if ( geom.readDataPos( tseq, icPos_, dpos ) ) {
-                        int ibin = pixer.getBinIndex( dpos );
-                        if ( ibin >= 0 ) {
-                            double w = WEIGHT_COORD
-                                      .readDoubleCoord( tseq, icWeight_ );
-                            if ( ! Double.isNaN( w ) ) {
-                                binList.submitToBin( ibin, w );
+                    /* Weighted. */
+                    else {
+                        while ( tseq.next() ) {
+                            if ( geom.readDataPos( tseq, icPos_, dpos ) ) {
+                                int ibin = pixer.getBinIndex( dpos );
+                                if ( ibin >= 0 ) {
+                                    double w = WEIGHT_COORD
+                                              .readDoubleCoord( tseq,
+                                                                icWeight_ );
+                                    if ( ! Double.isNaN( w ) ) {
+                                        binList.submitToBin( ibin, w );
+                                    }
+                                }
                             }
                         }
                     }
                 }
-            }
-            return binList;
+                public void combine( BinList binList0, BinList binList1 ) {
+                    binList0.addBins( binList1 );
+                }
+            }.collect( dataStore, dataSpec );
         }
 
         /**
@@ -1,13 +1,17 @@
 package uk.ac.starlink.ttools.plot2.layer;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * BinList implementation based on a hash.
  * Good for sparse bin lists.
+ * This works with any combiner, but requires a container object per bin;
+ * for simple combiners {@link OpenHashBinList} is much more compact.
  *
  * @author   Mark Taylor
  * @since    5 Oct 2015
@@ -48,6 +52,20 @@ public class HashBinList implements BinList {
         container.submit( value );
     }
 
+    public void addBins( BinList other ) {
+        for ( Map.Entry<Long,Combiner.Container> entry :
+              ((HashBinList) other).map_.entrySet() ) {
+            Long key = entry.getKey();
+            Combiner.Container container = map_.get( key );
+            if ( container == null ) {
+                map_.put( key, entry.getValue() );
+            }
+            else {
+                container.add( entry.getValue() );
+            }
+        }
+    }
+
     public Result getResult() {
         return new Result() {
             public double getBinValue( long index ) {
@@ -74,15 +92,18 @@ public class HashBinList implements BinList {
                     return ArrayBinList.createDoubleMaskResult( mask, values );
                 }
                 else if ( combiner_.hasBigBin() ) {
-                    Map<Long,Double> cmap = new HashMap<Long,Double>();
+                    int n = map_.size();
+                    long[] indices = new long[ n ];
+                    int i = 0;
                     for ( Iterator<Long> it = indexIterator(); it.hasNext(); ) {
-                        Long key = it.next();
-                        Combiner.Container container = map_.get( key );
-                        double val = container == null ? Double.NaN
-                                                       : container.getResult();
-                        cmap.put( key, new Double( val ) );
+                        indices[ i++ ] = it.next().longValue();
+                    }
+                    Arrays.sort( indices );
+                    double[] values = new double[ n ];
+                    for ( int j = 0; j < n; j++ ) {
+                        values[ j ] = getBinValue( indices[ j ] );
                     }
-                    return createHashResult( cmap );
+                    return createSortedResult( indices, values );
                 }
                 else {
                     return this;
@@ -91,6 +112,50 @@ public class HashBinList implements BinList {
         };
     }
 
+    /**
+     * Returns a new Result instance based on a pair of parallel arrays.
+     * This is compact, requiring only 16 bytes per populated bin,
+     * and bin lookup is by binary search.
+     *
+     * @param  indices  bin indices in strictly ascending order
+     * @param  values   bin values corresponding to <code>indices</code>
+     * @return  result based on the arrays
+     */
+    public static Result createSortedResult( final long[] indices,
+                                             final double[] values ) {
+        return new Result() {
+            public double getBinValue( long index ) {
+                int i = Arrays.binarySearch( indices, index );
+                return i >= 0 ? values[ i ] : Double.NaN;
+            }
+            public long getBinCount() {
+                return indices.length;
+            }
+            public Iterator<Long> indexIterator() {
+                return new Iterator<Long>() {
+                    int i_;
+                    public boolean hasNext() {
+                        return i_ < indices.length;
+                    }
+                    public Long next() {
+                        if ( i_ < indices.length ) {
+                            return new Long( indices[ i_++ ] );
+                        }
+                        else {
+                            throw new NoSuchElementException();
+                        }
+                    }
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+            public Result compact() {
+                return this;
+            }
+        };
+    }
+
     /**
      * Returns a new Result instance based on a Map.
      *
@@ -46,6 +46,7 @@ import uk.ac.starlink.ttools.plot2.data.DataStore;
 import uk.ac.starlink.ttools.plot2.data.FloatingCoord;
 import uk.ac.starlink.ttools.plot2.data.InputMeta;
 import uk.ac.starlink.ttools.plot2.data.IntegerCoord;
+import uk.ac.starlink.ttools.plot2.data.TupleCollector;
 import uk.ac.starlink.ttools.plot2.data.TupleSequence;
 import uk.ac.starlink.ttools.plot2.geom.Rotation;
 import uk.ac.starlink.ttools.plot2.geom.SkySurface;
@@ -356,25 +357,11 @@ public class HealpixPlotter
         long nbin = 12 * ( 1 << ( 2 * viewLevel ) );
         boolean isFew = nbin < 1e6;
         if ( Combiner.MEAN.equals( combiner ) ) {
-            final double factor = 1.0 / ( 1 << ( 2 * degrade ) );
-            final BinList baseList =
+            double factor = 1.0 / ( 1 << ( 2 * degrade ) );
+            BinList baseList =
                 isFew ? Combiner.SUM.createArrayBinList( (int) nbin )
                       : Combiner.SUM.createHashBinList( nbin );
-            return new BinList() {
-                public Combiner getCombiner() {
-                    return combiner;
-                }
-                public long getSize() {
-                    return baseList.getSize();
-                }
-                public void submitToBin( long index, double datum ) {
-                    baseList.submitToBin( index, datum );
-                }
-                public BinList.Result getResult() {
-                    return new FactorResult( baseList.getResult(), factor,
-                                             false );
-                }
-            };
+            return new FactorBinList( baseList, combiner, factor );
         }
         else { 
             if ( ! Arrays.asList( new Combiner[] {
@@ -387,6 +374,44 @@ public class HealpixPlotter
         }
     }
 
+    /**
+     * Wrapper implementation of BinList whose result multiplies
+     * bin values by a fixed factor.
+     */
+    private static class FactorBinList implements BinList {
+        private final BinList baseList_;
+        private final Combiner combiner_;
+        private final double factor_;
+
+        /**
+         * Constructor.
+         *
+         * @param  baseList  base bin list to which values are submitted
+         * @param  combiner  combiner reported by this list
+         * @param  factor   factor by which result values are multiplied
+         */
+        FactorBinList( BinList baseList, Combiner combiner, double factor ) {
+            baseList_ = baseList;
+            combiner_ = combiner;
+            factor_ = factor;
+        }
+        public Combiner getCombiner() {
+            return combiner_;
+        }
+        public long getSize() {
+            return baseList_.getSize();
+        }
+        public void submitToBin( long index, double datum ) {
+            baseList_.submitToBin( index, datum );
+        }
+        public void addBins( BinList other ) {
+            baseList_.addBins( ((FactorBinList) other).baseList_ );
+        }
+        public BinList.Result getResult() {
+            return new FactorResult( baseList_.getResult(), factor_, false );
+        }
+    }
+
     /**
      * Wrapper implementation of BinList.Result that multiplies
      * bin values by a fixed factor.
@@ -647,18 +672,26 @@ public class HealpixPlotter
                                          DataStore dataStore ) {
             int degrade = dataLevel_ - viewLevel_;
             assert degrade >= 0;
-            int shift = degrade * 2;
-            BinList binList =
-                createBinList( hstyle_.combiner_, dataLevel_, viewLevel_ );
-            TupleSequence tseq = dataStore.getTupleSequence( dataSpec );
-            while ( tseq.next() ) {
-                double value = tseq.getDoubleValue( icValue_ );
-                if ( ! Double.isNaN( value ) ) {
-                    long hpx = indexReader_.getHealpixIndex( tseq );
-                    long ibin = hpx >> shift;
-                    binList.submitToBin( ibin, value );
+            final int shift = degrade * 2;
+            BinList binList = new TupleCollector<BinList>() {
+                public BinList createAccumulator() {
+                    return createBinList( hstyle_.combiner_,
+                                          dataLevel_, viewLevel_ );
                 }
-            }
+                public void accumulate( TupleSequence tseq, BinList binList ) {
+                    while ( tseq.next() ) {
+                        double value = tseq.getDoubleValue( icValue_ );
+                        if ( ! Double.isNaN( value ) ) {
+                            long hpx = indexReader_.getHealpixIndex( tseq );
+                            long ibin = hpx >> shift;
+                            binList.submitToBin( ibin, value );
+                        }
+                    }
+                }
+                public void combine( BinList binList0, BinList binList1 ) {
+                    binList0.addBins( binList1 );
+                }
+            }.collect( dataStore, dataSpec );
             return binList.getResult();
         }
     }
@@ -37,6 +37,7 @@ import uk.ac.starlink.ttools.plot2.data.CoordGroup;
 import uk.ac.starlink.ttools.plot2.data.DataSpec;
 import uk.ac.starlink.ttools.plot2.data.DataStore;
 import uk.ac.starlink.ttools.plot2.data.FloatingCoord;
+import uk.ac.starlink.ttools.plot2.data.TupleCollector;
 import uk.ac.starlink.ttools.plot2.data.TupleSequence;
 import uk.ac.starlink.ttools.plot2.geom.PlanarSurface;
 import uk.ac.starlink.ttools.plot2.geom.SliceDataGeom;
@@ -375,26 +376,36 @@ public class HistogramPlotter
      * @param   dataSpec  specification for histogram data values
      * @param   dataStore  data storage
      */
-    private BinBag readBins( boolean xlog, double binWidth, double binPhase,
-                             double point, DataSpec dataSpec,
-                             DataStore dataStore ) {
-        BinBag binBag = new BinBag( xlog, binWidth, binPhase, point );
-        TupleSequence tseq = dataStore.getTupleSequence( dataSpec );
-        if ( weightCoord_ == null || dataSpec.isCoordBlank( icWeight_ ) ) {
-            while ( tseq.next() ) {
-                double x = xCoord_.readDoubleCoord( tseq, icX_ );
-                binBag.addToBin( x, 1 );
+    private BinBag readBins( final boolean xlog, final double binWidth,
+                             final double binPhase, final double point,
+                             DataSpec dataSpec, DataStore dataStore ) {
+        final boolean isWeighted =
+            ! ( weightCoord_ == null || dataSpec.isCoordBlank( icWeight_ ) );
+        return new TupleCollector<BinBag>() {
+            public BinBag createAccumulator() {
+                return new BinBag( xlog, binWidth, binPhase, point );
             }
-        }
-        else {
-            while ( tseq.next() ) {
-                double x = xCoord_.readDoubleCoord( tseq, icX_ );
-                double w = weightCoord_.readDoubleCoord( tseq, icWeight_ );
-                double weight = Double.isNaN( w ) ? 0 : w;
-                binBag.addToBin( x, weight );
+            public void accumulate( TupleSequence tseq, BinBag binBag ) {
+                if ( ! isWeighted ) {
+                    while ( tseq.next() ) {
+                        double x = xCoord_.readDoubleCoord( tseq, icX_ );
+                        binBag.addToBin( x, 1 );
+                    }
+                }
+                else {
+                    while ( tseq.next() ) {
+                        double x = xCoord_.readDoubleCoord( tseq, icX_ );
+                        double w =
+                            weightCoord_.readDoubleCoord( tseq, icWeight_ );
+                        double weight = Double.isNaN( w ) ? 0 : w;
+                        binBag.addToBin( x, weight );
+                    }
+                }
             }
-        }
-        return binBag;
+            public void combine( BinBag binBag0, BinBag binBag1 ) {
+                binBag0.add( binBag1 );
+            }
+        }.collect( dataStore, dataSpec );
     }
 
     /**
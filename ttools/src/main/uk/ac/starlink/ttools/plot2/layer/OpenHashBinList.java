@@ -0,0 +1,288 @@
+package uk.ac.starlink.ttools.plot2.layer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Abstract BinList implementation based on an open-addressing hash table
+ * with primitive keys and values.
+ * Like {@link HashBinList} it is suitable for sparse bin lists,
+ * but it does not require a boxed key and a container object for
+ * each occupied bin, so it is much more economical on memory.
+ *
+ * <p>The state of each occupied bin is stored as a fixed number of
+ * double values, held in parallel arrays alongside the key array.
+ * Concrete subclasses define how these values are updated and
+ * how the bin result is calculated from them.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public abstract class OpenHashBinList implements BinList {
+
+    private final long size_;
+    private final Combiner combiner_;
+    private final int nval_;
+    private long[] keys_;
+    private double[][] vals_;
+    private int nbit_;
+    private int nentry_;
+    private int maxEntry_;
+
+    /** Key value marking an unoccupied slot. */
+    private static final long NO_KEY = -1;
+
+    /** Base 2 logarithm of the initial table capacity. */
+    private static final int INITIAL_NBIT = 6;
+
+    /** Multiplier used for scrambling key values. */
+    private static final long HASH_MULT = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Constructor.
+     *
+     * @param  size  number of bins
+     * @param  combiner  combiner
+     * @param  nval  number of double values required to store the
+     *               state of each bin
+     */
+    protected OpenHashBinList( long size, Combiner combiner, int nval ) {
+        size_ = size;
+        combiner_ = combiner;
+        nval_ = nval;
+        allocate( INITIAL_NBIT );
+    }
+
+    /**
+     * Updates the state of a bin with a submitted value.
+     * If the bin is new, all its state values are initially zero.
+     *
+     * @param  vals  array of per-slot state value arrays
+     * @param  islot  slot index of the bin
+     * @param  isNew  true iff no value has previously been submitted
+     *                to this bin
+     * @param  datum  submitted value
+     */
+    protected abstract void submitToSlot( double[][] vals, int islot,
+                                          boolean isNew, double datum );
+
+    /**
+     * Accumulates the state of a bin from another list into an
+     * occupied bin of this one.
+     *
+     * @param  vals  array of per-slot state value arrays for this list
+     * @param  islot  slot index of the bin in this list
+     * @param  oVals  array of per-slot state value arrays for other list
+     * @param  oslot  slot index of the bin in the other list
+     */
+    protected abstract void addToSlot( double[][] vals, int islot,
+                                       double[][] oVals, int oslot );
+
+    /**
+     * Returns the result value for an occupied bin.
+     *
+     * @param  vals  array of per-slot state value arrays
+     * @param  islot  slot index of the bin
+     * @return   bin result
+     */
+    protected abstract double getSlotResult( double[][] vals, int islot );
+
+    public long getSize() {
+        return size_;
+    }
+
+    public Combiner getCombiner() {
+        return combiner_;
+    }
+
+    public void submitToBin( long index, double datum ) {
+        int islot = findSlot( index );
+        boolean isNew = keys_[ islot ] != index;
+        if ( isNew ) {
+            islot = addKey( islot, index );
+        }
+        submitToSlot( vals_, islot, isNew, datum );
+    }
+
+    public void addBins( BinList other ) {
+        OpenHashBinList hOther = (OpenHashBinList) other;
+        long[] oKeys = hOther.keys_;
+        double[][] oVals = hOther.vals_;
+        int nslot = oKeys.length;
+        for ( int oslot = 0; oslot < nslot; oslot++ ) {
+            long key = oKeys[ oslot ];
+            if ( key != NO_KEY ) {
+                int islot = findSlot( key );
+                if ( keys_[ islot ] == key ) {
+                    addToSlot( vals_, islot, oVals, oslot );
+                }
+                else {
+                    islot = addKey( islot, key );
+                    for ( int iv = 0; iv < nval_; iv++ ) {
+                        vals_[ iv ][ islot ] = oVals[ iv ][ oslot ];
+                    }
+                }
+            }
+        }
+    }
+
+    public Result getResult() {
+        return new Result() {
+            public double getBinValue( long index ) {
+                int islot = findSlot( index );
+                return keys_[ islot ] == index ? getSlotResult( vals_, islot )
+                                               : Double.NaN;
+            }
+            public long getBinCount() {
+                return nentry_;
+            }
+            public Iterator<Long> indexIterator() {
+                return createKeyIterator( keys_ );
+            }
+            public Result compact() {
+                double frac = nentry_ * 1.0 / size_;
+                if ( frac > 0.25 && size_ < Integer.MAX_VALUE ) {
+                    int isize = (int) size_;
+                    double[] values = new double[ isize ];
+                    BitSet mask = new BitSet( isize );
+                    for ( int islot = 0; islot < keys_.length; islot++ ) {
+                        long key = keys_[ islot ];
+                        if ( key != NO_KEY ) {
+                            int index = (int) key;
+                            mask.set( index );
+                            values[ index ] = getSlotResult( vals_, islot );
+                        }
+                    }
+                    return ArrayBinList.createDoubleMaskResult( mask, values );
+                }
+                else {
+                    long[] indices = new long[ nentry_ ];
+                    int ie = 0;
+                    for ( int islot = 0; islot < keys_.length; islot++ ) {
+                        long key = keys_[ islot ];
+                        if ( key != NO_KEY ) {
+                            indices[ ie++ ] = key;
+                        }
+                    }
+                    Arrays.sort( indices );
+                    double[] values = new double[ nentry_ ];
+                    for ( int i = 0; i < nentry_; i++ ) {
+                        values[ i ] = getBinValue( indices[ i ] );
+                    }
+                    return HashBinList.createSortedResult( indices, values );
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the slot at which a given key is stored,
+     * or the empty slot at which it would be stored if it is not present.
+     *
+     * @param  key  bin index
+     * @return  slot index
+     */
+    private int findSlot( long key ) {
+        long[] keys = keys_;
+        int mask = keys.length - 1;
+        int islot = (int) ( ( key * HASH_MULT ) >>> ( 64 - nbit_ ) );
+        while ( true ) {
+            long k = keys[ islot ];
+            if ( k == key || k == NO_KEY ) {
+                return islot;
+            }
+            islot = ( islot + 1 ) & mask;
+        }
+    }
+
+    /**
+     * Stores a new key in the table.
+     * The table may be resized as a result, in which case the
+     * returned slot may differ from the supplied one.
+     *
+     * @param  islot  empty slot returned by findSlot for the key
+     * @param  key   key to add
+     * @return   slot at which the key is now stored
+     */
+    private int addKey( int islot, long key ) {
+        if ( nentry_ >= maxEntry_ ) {
+            rehash();
+            islot = findSlot( key );
+        }
+        keys_[ islot ] = key;
+        nentry_++;
+        return islot;
+    }
+
+    /**
+     * Allocates empty storage arrays.
+     *
+     * @param  nbit  base 2 logarithm of table capacity
+     */
+    private void allocate( int nbit ) {
+        int nslot = 1 << nbit;
+        nbit_ = nbit;
+        keys_ = new long[ nslot ];
+        Arrays.fill( keys_, NO_KEY );
+        vals_ = new double[ nval_ ][ nslot ];
+        maxEntry_ = nslot / 2;
+        nentry_ = 0;
+    }
+
+    /**
+     * Doubles the capacity of the table, retaining its contents.
+     */
+    private void rehash() {
+        long[] oldKeys = keys_;
+        double[][] oldVals = vals_;
+        allocate( nbit_ + 1 );
+        int nslot = oldKeys.length;
+        for ( int oslot = 0; oslot < nslot; oslot++ ) {
+            long key = oldKeys[ oslot ];
+            if ( key != NO_KEY ) {
+                int islot = findSlot( key );
+                keys_[ islot ] = key;
+                for ( int iv = 0; iv < nval_; iv++ ) {
+                    vals_[ iv ][ islot ] = oldVals[ iv ][ oslot ];
+                }
+                nentry_++;
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over the occupied keys in a key array.
+     *
+     * @param  keys  key array
+     * @return  iterator over keys that are not NO_KEY
+     */
+    private static Iterator<Long> createKeyIterator( final long[] keys ) {
+        return new Iterator<Long>() {
+            int islot = nextSlot( 0 );
+            public boolean hasNext() {
+                return islot < keys.length;
+            }
+            public Long next() {
+                if ( islot < keys.length ) {
+                    Long result = new Long( keys[ islot ] );
+                    islot = nextSlot( islot + 1 );
+                    return result;
+                }
+                else {
+                    throw new NoSuchElementException();
+                }
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+            private int nextSlot( int is ) {
+                while ( is < keys.length && keys[ is ] == NO_KEY ) {
+                    is++;
+                }
+                return is;
+            }
+        };
+    }
+}
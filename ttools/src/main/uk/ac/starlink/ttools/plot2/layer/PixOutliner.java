@@ -9,6 +9,7 @@ import uk.ac.starlink.ttools.plot2.Pixer;
 import uk.ac.starlink.ttools.plot2.Surface;
 import uk.ac.starlink.ttools.plot2.data.DataSpec;
 import uk.ac.starlink.ttools.plot2.data.DataStore;
+import uk.ac.starlink.ttools.plot2.data.TupleCollector;
 import uk.ac.starlink.ttools.plot2.data.TupleSequence;
 
 /**
@@ -21,8 +22,9 @@ import uk.ac.starlink.ttools.plot2.data.TupleSequence;
  */
 public abstract class PixOutliner implements Outliner {
 
-    public Object calculateBinPlan( Surface surface, DataGeom geom,
-                                    Map<AuxScale,Range> auxRanges,
+    public Object calculateBinPlan( final Surface surface,
+                                    final DataGeom geom,
+                                    final Map<AuxScale,Range> auxRanges,
                                     DataStore dataStore, DataSpec dataSpec,
                                     Object[] knownPlans ) {
 
@@ -37,14 +39,25 @@ public abstract class PixOutliner implements Outliner {
         }
 
         /* Otherwise set up a limited PaperType implementation that takes
-         * glyphs and turns them into a bit map, and plot the glyphs on it. */
-        BinPaper paper = new BinPaper( surface.getPlotBounds() );
-        ShapePainter painter =
-            create2DPainter( surface, geom, auxRanges, paper.getPaperType() );
-        TupleSequence tseq = dataStore.getTupleSequence( dataSpec );
-        while( tseq.next() ) {
-            painter.paintPoint( tseq, null, paper );
-        }
+         * glyphs and turns them into a bit map, and plot the glyphs on it.
+         * Each partition of the data gets its own paper and painter. */
+        final Rectangle bounds = surface.getPlotBounds();
+        BinPaper paper = new TupleCollector<BinPaper>() {
+            public BinPaper createAccumulator() {
+                return new BinPaper( bounds );
+            }
+            public void accumulate( TupleSequence tseq, BinPaper paper ) {
+                ShapePainter painter =
+                    create2DPainter( surface, geom, auxRanges,
+                                     paper.getPaperType() );
+                while ( tseq.next() ) {
+                    painter.paintPoint( tseq, null, paper );
+                }
+            }
+            public void combine( BinPaper paper0, BinPaper paper1 ) {
+                paper0.add( paper1 );
+            }
+        }.collect( dataStore, dataSpec );
 
         /* Extract the result as a bin plan. */
         return new PixBinPlan( paper.counts_, paper.pointCount_,
@@ -94,6 +107,20 @@ public abstract class PixOutliner implements Outliner {
             }
             pointCount_++;
         }
+
+        /**
+         * Adds the counts from another paper with the same bounds
+         * to this one.
+         *
+         * @param  other  paper to add
+         */
+        void add( BinPaper other ) {
+            int n = counts_.length;
+            for ( int i = 0; i < n; i++ ) {
+                counts_[ i ] += other.counts_[ i ];
+            }
+            pointCount_ += other.pointCount_;
+        }
     }
 
     /**
@@ -33,23 +33,7 @@ public abstract class QuantileCombiner extends Combiner {
     }
 
     public BinList createArrayBinList( int size ) {
-        final DoubleList[] dlists = new DoubleList[ size ];
-        return new ArrayBinList( size, this ) {
-            public void submitToBinInt( int index, double value ) {
-                DoubleList dlist = dlists[ index ];
-                if ( dlist == null ) {
-                    dlists[ index ] = new DoubleList( new double[] { value } );
-                }
-                else {
-                    dlist.add( value );
-                }
-            }
-            public double getBinResultInt( int index ) {
-                DoubleList dlist = dlists[ index ];
-                return dlist == null ? Double.NaN
-                                     : calculateQuantile( dlist );
-            }
-        };
+        return new QuantileBinList( size );
     }
 
     public BinList createHashBinList( long size ) {
@@ -57,15 +41,7 @@ public abstract class QuantileCombiner extends Combiner {
     }
 
     public Container createContainer() {
-        final DoubleList dlist_ = new DoubleList();
-        return new Container() {
-            public void submit( double datum ) {
-                dlist_.add( datum );
-            }
-            public double getResult() {
-                return calculateQuantile( dlist_ );
-            }
-        };
+        return new QuantileContainer();
     }
 
     @Override
@@ -98,6 +74,85 @@ public abstract class QuantileCombiner extends Combiner {
         return quantiler_.calculateValue( values );
     }
 
+    /**
+     * Appends all the values in one list to another.
+     *
+     * @param  dlist  list to append to
+     * @param  other  list of values to append
+     */
+    private static void addAll( DoubleList dlist, DoubleList other ) {
+        int n = other.size();
+        for ( int i = 0; i < n; i++ ) {
+            dlist.add( other.get( i ) );
+        }
+    }
+
+    /**
+     * Container implementation that stores all the submitted values.
+     */
+    private class QuantileContainer implements Container {
+        final DoubleList dlist_ = new DoubleList();
+        public void submit( double datum ) {
+            dlist_.add( datum );
+        }
+        public double getResult() {
+            return calculateQuantile( dlist_ );
+        }
+        public void add( Container other ) {
+            addAll( dlist_, ((QuantileContainer) other).dlist_ );
+        }
+    }
+
+    /**
+     * ArrayBinList implementation that stores all the submitted values
+     * for each bin.
+     */
+    private class QuantileBinList extends ArrayBinList {
+        final DoubleList[] dlists_;
+
+        /**
+         * Constructor.
+         *
+         * @param  size  bin count
+         */
+        QuantileBinList( int size ) {
+            super( size, QuantileCombiner.this );
+            dlists_ = new DoubleList[ size ];
+        }
+
+        public void submitToBinInt( int index, double value ) {
+            DoubleList dlist = dlists_[ index ];
+            if ( dlist == null ) {
+                dlists_[ index ] = new DoubleList( new double[] { value } );
+            }
+            else {
+                dlist.add( value );
+            }
+        }
+
+        public double getBinResultInt( int index ) {
+            DoubleList dlist = dlists_[ index ];
+            return dlist == null ? Double.NaN
+                                 : calculateQuantile( dlist );
+        }
+
+        public void addBinsInt( ArrayBinList other ) {
+            DoubleList[] oLists = ((QuantileBinList) other).dlists_;
+            int n = dlists_.length;
+            for ( int i = 0; i < n; i++ ) {
+                DoubleList oList = oLists[ i ];
+                if ( oList != null ) {
+                    if ( dlists_[ i ] == null ) {
+                        dlists_[ i ] = oList;
+                    }
+                    else {
+                        addAll( dlists_[ i ], oList );
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Defines the calculation of the combined result from submitted
      * data values.
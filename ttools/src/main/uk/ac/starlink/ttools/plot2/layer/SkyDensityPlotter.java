@@ -48,6 +48,7 @@ import uk.ac.starlink.ttools.plot2.data.CoordGroup;
 import uk.ac.starlink.ttools.plot2.data.DataSpec;
 import uk.ac.starlink.ttools.plot2.data.DataStore;
 import uk.ac.starlink.ttools.plot2.data.FloatingCoord;
+import uk.ac.starlink.ttools.plot2.data.TupleCollector;
 import uk.ac.starlink.ttools.plot2.data.TupleSequence;
 import uk.ac.starlink.ttools.plot2.geom.Rotation;
 import uk.ac.starlink.ttools.plot2.geom.SkyDataGeom;
@@ -450,45 +451,60 @@ public class SkyDensityPlotter
          * @return   populated bin list
          * @slow
          */
-        private BinList readBins( SkySurface surface, DataSpec dataSpec,
-                                  DataStore dataStore ) {
-            SkyPixer skyPixer = createSkyPixer( surface );
-            BinList binList = null;
-            long npix = skyPixer.getPixelCount();
-            Combiner combiner = dstyle_.combiner_;
-            if ( npix < 200000 ) {
-                binList = combiner.createArrayBinList( (int) npix );
-            }
-            if ( binList == null ) {
-                binList = combiner.createHashBinList( npix );
-            }
-            assert binList != null;
-            TupleSequence tseq = dataStore.getTupleSequence( dataSpec );
-            int icPos = coordGrp_.getPosCoordIndex( 0, geom_ );
-            double[] v3 = new double[ 3 ];
-
-            /* Unweighted. */
-            if ( icWeight_ < 0 || dataSpec.isCoordBlank( icWeight_ ) ) {
-                while ( tseq.next() ) {
-                    if ( geom_.readDataPos( tseq, icPos, v3 ) ) {
-                        binList.submitToBin( skyPixer.getIndex( v3 ), 1 );
+        private BinList readBins( final SkySurface surface,
+                                  DataSpec dataSpec, DataStore dataStore ) {
+            final long npix = createSkyPixer( surface ).getPixelCount();
+            final Combiner combiner = dstyle_.combiner_;
+            final int icPos = coordGrp_.getPosCoordIndex( 0, geom_ );
+            final boolean isWeighted =
+                ! ( icWeight_ < 0 || dataSpec.isCoordBlank( icWeight_ ) );
+
+            /* Each partition of the data is binned on its own thread,
+             * with its own SkyPixer, since that is not thread-safe. */
+            return new TupleCollector<BinList>() {
+                public BinList createAccumulator() {
+                    BinList binList = null;
+                    if ( npix < 200000 ) {
+                        binList = combiner.createArrayBinList( (int) npix );
+                    }
+                    if ( binList == null ) {
+                        binList = combiner.createHashBinList( npix );
                     }
+                    assert binList != null;
+                    return binList;
                 }
-            }
+                public void accumulate( TupleSequence tseq, BinList binList ) {
+                    SkyPixer skyPixer = createSkyPixer( surface );
+                    double[] v3 = new double[ 3 ];
+
+                    /* Unweighted. */
+                    if ( ! isWeighted ) {
+                        while ( tseq.next() ) {
+                            if ( geom_.readDataPos( tseq, icPos, v3 ) ) {
+                                binList.submitToBin( skyPixer.getIndex( v3 ),
+                                                     1 );
+                            }
+                        }
+                    }
 
-            /* Weighted. */
-            else {
-                while ( tseq.next() ) {
-                    if ( geom_.readDataPos( tseq, icPos, v3 ) ) {
-                        double w = weightCoord_
-                                  .readDoubleCoord( tseq, icWeight_ );
-                        if ( ! Double.isNaN( w ) ) {
-                            binList.submitToBin( skyPixer.getIndex( v3 ), w );
+                    /* Weighted. */
+                    else {
+                        while ( tseq.next() ) {
+                            if ( geom_.readDataPos( tseq, icPos, v3 ) ) {
+                                double w = weightCoord_
+                                          .readDoubleCoord( tseq, icWeight_ );
+                                if ( ! Double.isNaN( w ) ) {
+                                    binList.submitToBin( skyPixer
+                                                        .getIndex( v3 ), w );
+                                }
+                            }
                         }
                     }
                 }
-            }
-            return binList;
+                public void combine( BinList binList0, BinList binList1 ) {
+                    binList0.addBins( binList1 );
+                }
+            }.collect( dataStore, dataSpec );
         }
 
         /**
@@ -68,10 +68,10 @@ public abstract class PaperTypeSelector {
          * However, it would be possible to use one with continuous
          * coordinates insteead. */
         PaperType vectorType = PaintPaperType2D.createPaperType( true );
-        PaperType pixelOpaqueType = new OverPaperType2D();
+        PaperType pixelOpaqueType = createTiled( new OverPaperType2D() );
         return new BasicSelector( vectorType, pixelOpaqueType ) {
             PaperType createGeneralPixelPaperType( Compositor compos ) {
-                return new CompositePaperType2D( compos );
+                return createTiled( new CompositePaperType2D( compos ) );
             }
         };
     }
@@ -83,9 +83,10 @@ public abstract class PaperTypeSelector {
      */
     private static PaperTypeSelector createSelector3D() {
         return new BasicSelector( new SortedPaperType3D(),
-                                  new ZBufferPaperType3D() ) {
+                                  createTiled( new ZBufferPaperType3D() ) ) {
             PaperType createGeneralPixelPaperType( Compositor compos ) {
-                return new PixelStackPaperType3D( compos, 1e-4f );
+                return createTiled( new PixelStackPaperType3D( compos,
+                                                               1e-4f ) );
             }
         };
     }
@@ -111,6 +112,22 @@ public abstract class PaperTypeSelector {
         };
     }
 
+    /**
+     * Returns a paper type which renders like a given bitmapped paper type,
+     * but which uses multiple threads if more than one processor
+     * is available.
+     *
+     * @param  ptype  base paper type
+     * @return   tiled version of <code>ptype</code>, or <code>ptype</code>
+     *           itself
+     */
+    private static PaperType createTiled( RgbPaperType ptype ) {
+        return TiledPaperType.DEFAULT_NTILE > 1
+             ? TiledPaperType
+              .createTiledPaperType( ptype, TiledPaperType.DEFAULT_NTILE )
+             : ptype;
+    }
+
     /**
      * Returns an array of layer options corresponding to an array of layers.
      *
@@ -193,7 +210,7 @@ public abstract class PaperTypeSelector {
             }
             Color color = getMonochromeColor( opts );
             if ( color != null ) {
-                return new MonoPaperType( color, compos );
+                return createTiled( new MonoPaperType( color, compos ) );
             }
             return createGeneralPixelPaperType( compos );
         }
@@ -89,6 +89,15 @@ public abstract class RgbPaperType implements PaperType {
         return name_;
     }
 
+    /**
+     * Indicates the order in which layers are rendered.
+     *
+     * @return  true for ascending order, false for descending order
+     */
+    boolean isUpLayer() {
+        return upLayer_;
+    }
+
     /**
      * Creates a paper object for given bounds.
      *
@@ -149,6 +158,16 @@ public abstract class RgbPaperType implements PaperType {
             return bounds_;
         }
 
+        /**
+         * Returns a graphics context that paints directly onto the
+         * RGB image, with coordinates matching the plot bounds.
+         *
+         * @return  graphics context
+         */
+        Graphics getGraphics() {
+            return graphics_;
+        }
+
         /**
          * Does the work for placing a decal.
          * Invoked by {@link RgbPaperType#placeDecal}.
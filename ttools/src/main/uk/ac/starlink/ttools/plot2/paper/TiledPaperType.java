@@ -0,0 +1,515 @@
+package uk.ac.starlink.ttools.plot2.paper;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.swing.Icon;
+import uk.ac.starlink.ttools.plot2.Decal;
+import uk.ac.starlink.ttools.plot2.Drawing;
+import uk.ac.starlink.ttools.plot2.Glyph;
+import uk.ac.starlink.ttools.plot2.Surface;
+import uk.ac.starlink.ttools.plot2.data.DataStore;
+
+/**
+ * Bitmapped PaperType which rasterises using several threads.
+ * It wraps an existing {@link RgbPaperType} and divides the plot
+ * bounds into a number of horizontal bands (tiles).
+ * Each tile has its own paper, created by the base paper type,
+ * and its own thread.
+ *
+ * <p>Glyph and decal placements made by the drawings are gathered
+ * into batches on the calling thread, and each batch is passed to
+ * every tile thread.  Each tile thread replays the placements in order
+ * onto its own paper, whose clip region discards anything that falls
+ * outside the tile, then flushes the paper when the drawing is complete.
+ * Since the base paper types composite each pixel independently of
+ * its neighbours, and every tile sees the placements in the original order,
+ * the output is the same as that of the base paper type,
+ * including the ordering of transparent pixels and of equal-depth
+ * pixels in 3D.
+ *
+ * <p>Instances are obtained from the
+ * {@link #createTiledPaperType createTiledPaperType} factory method.
+ * The returned object implements the same
+ * {@link PaperType2D} and/or {@link PaperType3D} interfaces as the base.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+public abstract class TiledPaperType implements PaperType {
+
+    private final RgbPaperType base_;
+    private final int ntile_;
+
+    /** Default number of tiles. */
+    public static final int DEFAULT_NTILE =
+        Runtime.getRuntime().availableProcessors();
+
+    /** Minimum height in pixels of a tile. */
+    private static final int MIN_TILE_HEIGHT = 32;
+
+    /** Number of placements in a batch. */
+    private static final int BATCH_SIZE = 4096;
+
+    /** Maximum number of batches queued for each tile. */
+    private static final int QUEUE_SIZE = 4;
+
+    private static final byte GLYPH2 = 2;
+    private static final byte GLYPH3 = 3;
+    private static final byte DECAL = 4;
+    private static final Batch END = new Batch();
+
+    /**
+     * Constructor.
+     *
+     * @param  base  paper type doing the rendering for each tile
+     * @param  ntile  maximum number of tiles
+     */
+    private TiledPaperType( RgbPaperType base, int ntile ) {
+        base_ = base;
+        ntile_ = ntile;
+    }
+
+    /**
+     * Returns true.
+     */
+    public boolean isBitmap() {
+        return true;
+    }
+
+    public void placeDecal( Paper paper, Decal decal ) {
+        ((TiledPaper) paper).addPlacement( DECAL, 0, 0, 0, null, null,
+                                           decal );
+    }
+
+    public Icon createDataIcon( Surface surface, Drawing[] drawings,
+                                Object[] plans, DataStore dataStore,
+                                boolean requireCached ) {
+
+        /* If the plot is too small to be worth splitting up,
+         * just let the base paper type do the work. */
+        final Rectangle bounds = surface.getPlotBounds();
+        int ntile = Math.min( ntile_, bounds.height / MIN_TILE_HEIGHT );
+        if ( ntile <= 1 ) {
+            return base_.createDataIcon( surface, drawings, plans, dataStore,
+                                         requireCached );
+        }
+
+        /* Set up a paper and painting thread for each tile. */
+        final RgbImage image =
+            RgbImage.createRgbImage( bounds.width, bounds.height, false );
+        TileThread[] threads = new TileThread[ ntile ];
+        int y0 = 0;
+        for ( int it = 0; it < ntile; it++ ) {
+            int y1 = (int) ( ( it + 1L ) * bounds.height / ntile );
+            Rectangle tileBounds =
+                new Rectangle( bounds.x, bounds.y + y0,
+                               bounds.width, y1 - y0 );
+            RgbPaperType.RgbPaper tilePaper = base_.createPaper( tileBounds );
+            surface.paintBackground( tilePaper.getGraphics() );
+            threads[ it ] = new TileThread( tilePaper, image.getBuffer(),
+                                            y0 * bounds.width );
+            y0 = y1;
+        }
+        for ( TileThread thread : threads ) {
+            thread.start();
+        }
+
+        /* Draw each of the drawings on the tiled paper in turn. */
+        TiledPaper paper = new TiledPaper( threads );
+        try {
+            int nlayer = drawings.length;
+            boolean upLayer = base_.isUpLayer();
+            for ( int il = 0; il < nlayer; il++ ) {
+                int jl = upLayer ? il : nlayer - 1 - il;
+                drawings[ jl ].paintData( plans[ jl ], paper, dataStore );
+            }
+        }
+        finally {
+            paper.finish();
+        }
+
+        /* Return an icon based on the assembled tile images. */
+        return new Icon() {
+            public int getIconWidth() {
+                return bounds.x + bounds.width;
+            }
+            public int getIconHeight() {
+                return bounds.y + bounds.height;
+            }
+            public void paintIcon( Component c, Graphics g, int x, int y ) {
+                g.drawImage( image.getImage(), x, y, null );
+            }
+        };
+    }
+
+    /**
+     * Returns the name of the base paper type.
+     */
+    public String toString() {
+        return base_.toString();
+    }
+
+    /**
+     * Returns a paper type that renders like a given RGB paper type,
+     * but using multiple threads.
+     * The returned object implements the same geometry-specific
+     * PaperType sub-interfaces as the supplied base.
+     *
+     * @param  base  paper type doing the rendering;
+     *               must implement PaperType2D and/or PaperType3D
+     * @param  ntile  maximum number of tiles, hence threads, to use
+     * @return  tiled paper type
+     */
+    public static PaperType createTiledPaperType( RgbPaperType base,
+                                                  int ntile ) {
+        boolean is2d = base instanceof PaperType2D;
+        boolean is3d = base instanceof PaperType3D;
+        if ( is2d && is3d ) {
+            return new TiledPaperType23( base, ntile );
+        }
+        else if ( is2d ) {
+            return new TiledPaperType2D( base, ntile );
+        }
+        else if ( is3d ) {
+            return new TiledPaperType3D( base, ntile );
+        }
+        else {
+            throw new IllegalArgumentException( "Not 2D or 3D: " + base );
+        }
+    }
+
+    /**
+     * Records a 2D glyph placement.
+     *
+     * @param  paper  tiled paper
+     * @param  dx  graphics X coordinate
+     * @param  dy  graphics Y coordinate
+     * @param  glyph  graphics shape
+     * @param  color  colour
+     */
+    void placeGlyph2D( Paper paper, double dx, double dy, Glyph glyph,
+                       Color color ) {
+        ((TiledPaper) paper).addPlacement( GLYPH2, dx, dy, 0, glyph, color,
+                                           null );
+    }
+
+    /**
+     * Records a 3D glyph placement.
+     *
+     * @param  paper  tiled paper
+     * @param  dx  graphics X coordinate
+     * @param  dy  graphics Y coordinate
+     * @param  dz  depth coordinate
+     * @param  glyph  graphics shape
+     * @param  color  colour
+     */
+    void placeGlyph3D( Paper paper, double dx, double dy, double dz,
+                       Glyph glyph, Color color ) {
+        ((TiledPaper) paper).addPlacement( GLYPH3, dx, dy, dz, glyph, color,
+                                           null );
+    }
+
+    /**
+     * Replays a batch of placements onto the paper for a single tile.
+     *
+     * @param  batch  batch of placements
+     * @param  paper  tile paper
+     */
+    private void replay( Batch batch, Paper paper ) {
+        int n = batch.n_;
+        for ( int i = 0; i < n; i++ ) {
+            switch ( batch.types_[ i ] ) {
+                case GLYPH2:
+                    ((PaperType2D) base_)
+                   .placeGlyph( paper, batch.dxs_[ i ], batch.dys_[ i ],
+                                batch.glyphs_[ i ], batch.colors_[ i ] );
+                    break;
+                case GLYPH3:
+                    ((PaperType3D) base_)
+                   .placeGlyph( paper, batch.dxs_[ i ], batch.dys_[ i ],
+                                batch.dzs_[ i ], batch.glyphs_[ i ],
+                                batch.colors_[ i ] );
+                    break;
+                case DECAL:
+                    base_.placeDecal( paper, batch.decals_[ i ] );
+                    break;
+                default:
+                    assert false;
+            }
+        }
+    }
+
+    /**
+     * Tiled paper type for a 2D base.
+     */
+    private static class TiledPaperType2D extends TiledPaperType
+                                          implements PaperType2D {
+        TiledPaperType2D( RgbPaperType base, int ntile ) {
+            super( base, ntile );
+        }
+        public void placeGlyph( Paper paper, double dx, double dy,
+                                Glyph glyph, Color color ) {
+            placeGlyph2D( paper, dx, dy, glyph, color );
+        }
+    }
+
+    /**
+     * Tiled paper type for a 3D base.
+     */
+    private static class TiledPaperType3D extends TiledPaperType
+                                          implements PaperType3D {
+        TiledPaperType3D( RgbPaperType base, int ntile ) {
+            super( base, ntile );
+        }
+        public void placeGlyph( Paper paper, double dx, double dy, double dz,
+                                Glyph glyph, Color color ) {
+            placeGlyph3D( paper, dx, dy, dz, glyph, color );
+        }
+    }
+
+    /**
+     * Tiled paper type for a base that is both 2D and 3D.
+     */
+    private static class TiledPaperType23 extends TiledPaperType
+                                          implements PaperType2D,
+                                                     PaperType3D {
+        TiledPaperType23( RgbPaperType base, int ntile ) {
+            super( base, ntile );
+        }
+        public void placeGlyph( Paper paper, double dx, double dy,
+                                Glyph glyph, Color color ) {
+            placeGlyph2D( paper, dx, dy, glyph, color );
+        }
+        public void placeGlyph( Paper paper, double dx, double dy, double dz,
+                                Glyph glyph, Color color ) {
+            placeGlyph3D( paper, dx, dy, dz, glyph, color );
+        }
+    }
+
+    /**
+     * Fixed-size list of placements.
+     * Once dispatched, a batch is read concurrently by all the tile
+     * threads and not modified further.
+     */
+    private static class Batch {
+        final byte[] types_;
+        final double[] dxs_;
+        final double[] dys_;
+        final double[] dzs_;
+        final Glyph[] glyphs_;
+        final Color[] colors_;
+        final Decal[] decals_;
+        int n_;
+
+        /**
+         * Constructs an empty batch with room for BATCH_SIZE placements.
+         */
+        Batch() {
+            types_ = new byte[ BATCH_SIZE ];
+            dxs_ = new double[ BATCH_SIZE ];
+            dys_ = new double[ BATCH_SIZE ];
+            dzs_ = new double[ BATCH_SIZE ];
+            glyphs_ = new Glyph[ BATCH_SIZE ];
+            colors_ = new Color[ BATCH_SIZE ];
+            decals_ = new Decal[ BATCH_SIZE ];
+        }
+    }
+
+    /**
+     * Paper implementation which gathers placements on the calling thread
+     * and dispatches them to the tile threads.
+     */
+    private class TiledPaper implements Paper {
+        private final TileThread[] threads_;
+        private Batch batch_;
+        private boolean aborted_;
+
+        /**
+         * Constructor.
+         *
+         * @param  threads  started tile threads
+         */
+        TiledPaper( TileThread[] threads ) {
+            threads_ = threads;
+            batch_ = new Batch();
+        }
+
+        public PaperType getPaperType() {
+            return TiledPaperType.this;
+        }
+
+        /**
+         * Records a placement.
+         *
+         * @param  type  placement type code
+         * @param  dx  graphics X coordinate
+         * @param  dy  graphics Y coordinate
+         * @param  dz  depth coordinate
+         * @param  glyph  glyph, or null
+         * @param  color  colour, or null
+         * @param  decal  decal, or null
+         */
+        void addPlacement( byte type, double dx, double dy, double dz,
+                           Glyph glyph, Color color, Decal decal ) {
+            Batch batch = batch_;
+            int i = batch.n_++;
+            batch.types_[ i ] = type;
+            batch.dxs_[ i ] = dx;
+            batch.dys_[ i ] = dy;
+            batch.dzs_[ i ] = dz;
+            batch.glyphs_[ i ] = glyph;
+            batch.colors_[ i ] = color;
+            batch.decals_[ i ] = decal;
+            if ( batch.n_ == BATCH_SIZE ) {
+                dispatch();
+            }
+        }
+
+        /**
+         * Passes the current batch to all the tile threads,
+         * and starts a new one.
+         */
+        private void dispatch() {
+            Batch batch = batch_;
+            batch_ = new Batch();
+            if ( batch.n_ > 0 && ! aborted_ ) {
+                try {
+                    for ( TileThread thread : threads_ ) {
+                        thread.queue_.put( batch );
+                    }
+                }
+                catch ( InterruptedException e ) {
+                    aborted_ = true;
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * Dispatches any outstanding placements, waits for all the tiles
+         * to be painted and flushed, and rethrows any error that
+         * occurred during painting.
+         */
+        void finish() {
+            dispatch();
+            boolean interrupted = aborted_;
+            for ( TileThread thread : threads_ ) {
+                if ( aborted_ ) {
+                    thread.abort_ = true;
+                    thread.queue_.clear();
+                }
+
+                /* The tile threads keep taking from their queues until
+                 * they see the END marker, so this will not block
+                 * indefinitely. */
+                while ( true ) {
+                    try {
+                        thread.queue_.put( END );
+                        break;
+                    }
+                    catch ( InterruptedException e ) {
+                        interrupted = true;
+                        thread.abort_ = true;
+                        thread.queue_.clear();
+                    }
+                }
+            }
+
+            /* Wait for the threads to complete.  If we are interrupted
+             * during the wait, the threads are told to abort, but we
+             * still wait for them, since they are writing to the
+             * output image. */
+            for ( TileThread thread : threads_ ) {
+                while ( thread.isAlive() ) {
+                    try {
+                        thread.join();
+                    }
+                    catch ( InterruptedException e ) {
+                        interrupted = true;
+                        for ( TileThread th : threads_ ) {
+                            th.abort_ = true;
+                        }
+                    }
+                }
+            }
+            if ( interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+            for ( TileThread thread : threads_ ) {
+                Throwable error = thread.error_;
+                if ( error instanceof RuntimeException ) {
+                    throw (RuntimeException) error;
+                }
+                else if ( error instanceof Error ) {
+                    throw (Error) error;
+                }
+                else if ( error != null ) {
+                    throw new RuntimeException( error.getMessage(), error );
+                }
+            }
+        }
+    }
+
+    /**
+     * Thread which paints the placements for a single tile,
+     * and copies the result into the output image.
+     */
+    private class TileThread extends Thread {
+        private final RgbPaperType.RgbPaper paper_;
+        private final int[] outBuf_;
+        private final int outOffset_;
+        final BlockingQueue<Batch> queue_;
+        volatile Throwable error_;
+        volatile boolean abort_;
+
+        /**
+         * Constructor.
+         *
+         * @param  paper  paper for this tile
+         * @param  outBuf  RGB buffer of output image
+         * @param  outOffset  offset into outBuf of this tile's first pixel
+         */
+        TileThread( RgbPaperType.RgbPaper paper, int[] outBuf,
+                    int outOffset ) {
+            super( "Tile painter" );
+            setDaemon( true );
+            paper_ = paper;
+            outBuf_ = outBuf;
+            outOffset_ = outOffset;
+            queue_ = new ArrayBlockingQueue<Batch>( QUEUE_SIZE );
+        }
+
+        public void run() {
+
+            /* After an error, keep draining the queue so that the
+             * dispatching thread does not block. */
+            try {
+                for ( Batch batch; ( batch = queue_.take() ) != END; ) {
+                    if ( error_ == null && ! abort_ ) {
+                        try {
+                            replay( batch, paper_ );
+                        }
+                        catch ( Throwable e ) {
+                            error_ = e;
+                        }
+                    }
+                }
+                if ( error_ == null && ! abort_ ) {
+                    paper_.flush();
+                    int[] tileBuf = paper_.getRgbImage().getBuffer();
+                    System.arraycopy( tileBuf, 0, outBuf_, outOffset_,
+                                      tileBuf.length );
+                }
+            }
+            catch ( Throwable e ) {
+                if ( error_ == null ) {
+                    error_ = e;
+                }
+            }
+        }
+    }
+}
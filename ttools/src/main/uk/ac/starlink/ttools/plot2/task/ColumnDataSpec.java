@@ -106,4 +106,10 @@ public class ColumnDataSpec extends AbstractDataSpec {
     public boolean isCoordBlank( int icoord ) {
         return false;
     }
+
+    @Override
+    public int getUserCoordColumnIndex( int icoord ) {
+        int[] icols = userCoordColIndices_[ icoord ];
+        return icols.length == 1 ? icols[ 0 ] : -1;
+    }
 }
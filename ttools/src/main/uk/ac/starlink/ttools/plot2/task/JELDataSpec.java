@@ -37,6 +37,7 @@ public class JELDataSpec extends AbstractDataSpec {
     private final ValueInfo[][] userCoordInfos_;
     private final JELKey maskId_;
     private final JELKey[] coordIds_;
+    private final int[] userCoordColIndices_;
 
     /** Mask ID corresponding to all rows. */
     private static final JELKey ALL_MASK =
@@ -63,8 +64,13 @@ public class JELDataSpec extends AbstractDataSpec {
                 ? ALL_MASK
                 : new JELKey( new String[] { maskExpr } );
         coordIds_ = new JELKey[ nCoord ];
+        userCoordColIndices_ = new int[ nCoord ];
         for ( int ic = 0; ic < nCoord; ic++ ) {
-            coordIds_[ ic ] = new JELKey( coordValues[ ic ].getExpressions() );
+            String[] exprs = coordValues[ ic ].getExpressions();
+            coordIds_[ ic ] = new JELKey( exprs );
+            userCoordColIndices_[ ic ] = exprs.length == 1
+                                       ? getColumnIndex( table, exprs[ 0 ] )
+                                       : -1;
         }
 
         /* Dry run of creating a data reader.  This checks that the JEL
@@ -125,6 +131,11 @@ public class JELDataSpec extends AbstractDataSpec {
         return true;
     }
 
+    @Override
+    public int getUserCoordColumnIndex( int icoord ) {
+        return userCoordColIndices_[ icoord ];
+    }
+
     /**
      * Returns the user input strings used to supply the value for a given
      * coordinate in this DataSpec.
@@ -243,12 +254,9 @@ public class JELDataSpec extends AbstractDataSpec {
         /* Look for a column with a matching name.  As well as a (possible,
          * small) increase in efficiency over doing it the JEL way, this
          * enables us to get the metadata from the column. */
-        int ncol = table.getColumnCount();
-        for ( int icol = 0; icol < ncol; icol++ ) {
-            ValueInfo info = table.getColumnInfo( icol );
-            if ( expr.trim().equalsIgnoreCase( info.getName().trim() ) ) {
-                return new ColumnValueReader( table, icol );
-            }
+        int icol = getColumnIndex( table, expr );
+        if ( icol >= 0 ) {
+            return new ColumnValueReader( table, icol );
         }
 
         /* If that doesn't work, treat it as a JEL expression.
@@ -277,6 +285,28 @@ public class JELDataSpec extends AbstractDataSpec {
         return new JelValueReader( evaluator, compex, expr );
     }
 
+    /**
+     * Returns the index of a table column whose name matches
+     * a given expression.
+     *
+     * @param  table  table
+     * @param  expr   JEL expression, column name, or null
+     * @return  index of column named by <code>expr</code>, or -1
+     */
+    private static int getColumnIndex( StarTable table, String expr ) {
+        if ( expr != null ) {
+            String name = expr.trim();
+            int ncol = table.getColumnCount();
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                ValueInfo info = table.getColumnInfo( icol );
+                if ( name.equalsIgnoreCase( info.getName().trim() ) ) {
+                    return icol;
+                }
+            }
+        }
+        return -1;
+    }
+
     /**
      * Acquires a value at a given row of a sequence.
      */
@@ -14,7 +14,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 import javax.swing.Icon;
@@ -22,7 +24,6 @@ import javax.swing.JComponent;
 import javax.swing.SwingUtilities;
 import uk.ac.starlink.ttools.plot.Range;
 import uk.ac.starlink.ttools.plot2.AuxScale;
-import uk.ac.starlink.ttools.plot2.DataGeom;
 import uk.ac.starlink.ttools.plot2.Decoration;
 import uk.ac.starlink.ttools.plot2.Gang;
 import uk.ac.starlink.ttools.plot2.Ganger;
@@ -33,6 +34,8 @@ import uk.ac.starlink.ttools.plot2.PlotLayer;
 import uk.ac.starlink.ttools.plot2.PlotPlacement;
 import uk.ac.starlink.ttools.plot2.PlotUtil;
 import uk.ac.starlink.ttools.plot2.PointCloud;
+import uk.ac.starlink.ttools.plot2.PointIndex;
+import uk.ac.starlink.ttools.plot2.PointIndexCache;
 import uk.ac.starlink.ttools.plot2.NavigationListener;
 import uk.ac.starlink.ttools.plot2.Navigator;
 import uk.ac.starlink.ttools.plot2.SingleGanger;
@@ -45,8 +48,11 @@ import uk.ac.starlink.ttools.plot2.Surface;
 import uk.ac.starlink.ttools.plot2.SurfaceFactory;
 import uk.ac.starlink.ttools.plot2.ZoneContent;
 import uk.ac.starlink.ttools.plot2.config.ConfigMap;
+import uk.ac.starlink.ttools.plot2.data.DataSpec;
 import uk.ac.starlink.ttools.plot2.data.DataStore;
+import uk.ac.starlink.ttools.plot2.data.StepDataStore;
 import uk.ac.starlink.ttools.plot2.data.TupleSequence;
+import uk.ac.starlink.ttools.plot2.data.WrapperTupleSequence;
 import uk.ac.starlink.ttools.plot2.paper.Compositor;
 import uk.ac.starlink.ttools.plot2.paper.PaperType;
 import uk.ac.starlink.ttools.plot2.paper.PaperTypeSelector;
@@ -57,6 +63,14 @@ import uk.ac.starlink.ttools.plot2.paper.PaperTypeSelector;
  * over the lifetime of the component according to user navigation actions,
  * window size, and underlying data, depending on configuration.
  *
+ * <p>For interactive displays with image caching, plotting is progressive.
+ * If the full plot of a zone took a long time last time round,
+ * then following navigation or other changes a preview is painted
+ * straight away from a stratified subsample of the data,
+ * and the full plot is calculated in the background and displayed
+ * when it is ready.  Background work is cancelled if the plot
+ * changes again in the mean time.
+ *
  * <p>This class can be used as-is, or as a template.
  *
  * @author   Mark Taylor
@@ -72,8 +86,11 @@ public class PlotDisplay<P,A> extends JComponent {
     private final Compositor compositor_;
     private final boolean surfaceAuxRanging_;
     private final boolean cacheImage_;
+    private final boolean progressive_;
     private final List<PointSelectionListener> pslList_;
     private final Executor clickExecutor_;
+    private final PointIndexCache indexCache_;
+    private final ExecutorService refineExecutor_;
     private final Zone<P,A>[] zones_;
     private Gang gang_;
     private Decoration navDecoration_;
@@ -87,6 +104,12 @@ public class PlotDisplay<P,A> extends JComponent {
     public static final String ASPECTS_PROPERTY = "Plot2Aspects";
 
     private static final boolean WITH_SCROLL = true;
+
+    /** Full plot time in milliseconds below which no preview is done. */
+    private static final int MAX_FULL_PLOT_MILLIS = 250;
+
+    /** Target time in milliseconds for plotting preview plots. */
+    private static final int MAX_PREVIEW_PLOT_MILLIS = 100;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.ttools.plot2.task" );
 
@@ -135,6 +158,7 @@ public class PlotDisplay<P,A> extends JComponent {
         dataStore_ = dataStore;
         surfaceAuxRanging_ = ! caching.getReuseRanges();
         cacheImage_ = caching.getCacheImage();
+        progressive_ = navigator != null && cacheImage_;
         pslList_ = new ArrayList<PointSelectionListener>();
 
         /* Add navigation mouse listeners if required. */
@@ -218,6 +242,24 @@ public class PlotDisplay<P,A> extends JComponent {
                 return th;
             }
         } );
+
+        /* Storage for spatial indices used by point identification. */
+        indexCache_ = new PointIndexCache( nz );
+
+        /* Executor to calculate full plots following previews. */
+        if ( progressive_ ) {
+            refineExecutor_ =
+                Executors.newSingleThreadExecutor( new ThreadFactory() {
+                    public Thread newThread( Runnable r ) {
+                        Thread th = new Thread( r, "Plot Refiner" );
+                        th.setDaemon( true );
+                        return th;
+                    }
+                } );
+        }
+        else {
+            refineExecutor_ = null;
+        }
     }
 
     /**
@@ -390,11 +432,35 @@ public class PlotDisplay<P,A> extends JComponent {
                 PaperType paperType =
                     ptSel_.getPixelPaperType( opts, compositor_, this );
 
-                /* Create the plot icon. */
-                zone.icon_ =
-                    PlotUtil.createPlotIcon( placer, layers, zone.auxRanges_,
-                                             dataStore_, paperType,
-                                             cacheImage_, zone.plans_ );
+                /* Create the plot icon.  If a full plot is expected to be
+                 * slow, paint a preview from a subsample now, and arrange
+                 * for the full plot to replace it later. */
+                if ( zone.refiner_ != null ) {
+                    zone.refiner_.cancel( true );
+                    zone.refiner_ = null;
+                }
+                int step = progressive_ ? getPreviewStep( zone ) : 1;
+                if ( step > 1 ) {
+                    logger_.info( "Preview plot with row step " + step );
+                    DataStore previewStore =
+                        new StepDataStore( dataStore_, step, true );
+                    zone.icon_ =
+                        PlotUtil.createPlotIcon( placer, layers,
+                                                 zone.auxRanges_, previewStore,
+                                                 paperType, true,
+                                                 copyPlans( zone.plans_ ) );
+                    submitRefinement( zone, placer, paperType );
+                }
+                else {
+                    long plotStart = System.currentTimeMillis();
+                    zone.icon_ =
+                        PlotUtil.createPlotIcon( placer, layers,
+                                                 zone.auxRanges_, dataStore_,
+                                                 paperType, cacheImage_,
+                                                 zone.plans_ );
+                    zone.fullPlotMillis_ =
+                        System.currentTimeMillis() - plotStart;
+                }
             }
         }
         PlotUtil.logTime( logger_, "Cache", cacheStart );
@@ -414,6 +480,77 @@ public class PlotDisplay<P,A> extends JComponent {
         PlotUtil.logTime( logger_, "Paint", paintStart );
     }
 
+    /**
+     * Returns the row step to use for a preview plot of a zone,
+     * based on how long the last full plot took.
+     *
+     * @param  zone  zone
+     * @return   subsample step, or 1 if no preview is required
+     */
+    private static int getPreviewStep( Zone<?,?> zone ) {
+        long plotMillis = zone.fullPlotMillis_;
+        return plotMillis > MAX_FULL_PLOT_MILLIS
+             ? (int) Math.min( Integer.MAX_VALUE,
+                               plotMillis / MAX_PREVIEW_PLOT_MILLIS )
+             : 1;
+    }
+
+    /**
+     * Starts calculation of a full plot for a zone whose icon is
+     * currently a preview.  When the plot is complete, it replaces
+     * the preview icon, as long as the zone icon has not been changed
+     * or invalidated in the mean time.
+     *
+     * @param  zone  zone whose icon is a preview
+     * @param  placer  plot placement
+     * @param  paperType  paper type
+     */
+    private void submitRefinement( final Zone<P,A> zone,
+                                   final PlotPlacement placer,
+                                   final PaperType paperType ) {
+        final Icon previewIcon = zone.icon_;
+        final PlotLayer[] layers = zone.content_.getLayers();
+        final Map<AuxScale,Range> auxRanges = zone.auxRanges_;
+        final Set<Object> plans = copyPlans( zone.plans_ );
+        final DataStore dataStore = new InterruptibleDataStore( dataStore_ );
+        zone.refiner_ = refineExecutor_.submit( new Runnable() {
+            public void run() {
+                long plotStart = System.currentTimeMillis();
+                final Icon icon =
+                    PlotUtil.createPlotIcon( placer, layers, auxRanges,
+                                             dataStore, paperType, true,
+                                             plans );
+                final long plotMillis = System.currentTimeMillis() - plotStart;
+                if ( ! Thread.currentThread().isInterrupted() ) {
+                    SwingUtilities.invokeLater( new Runnable() {
+                        public void run() {
+                            zone.fullPlotMillis_ = plotMillis;
+                            if ( zone.icon_ == previewIcon ) {
+                                zone.icon_ = icon;
+                                zone.refiner_ = null;
+                                if ( zone.plans_ != null ) {
+                                    zone.plans_.clear();
+                                    zone.plans_.addAll( plans );
+                                }
+                                repaint();
+                            }
+                        }
+                    } );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Returns an independent copy of a zone's stored plan collection.
+     *
+     * @param  plans  stored plans, or null
+     * @return  copy of plans, or null
+     */
+    private static Set<Object> copyPlans( Set<Object> plans ) {
+        return plans == null ? null : new HashSet<Object>( plans );
+    }
+
     /**
      * Sets the aspects of the plot zones.
      * This triggers a repaint if required.
@@ -540,7 +677,12 @@ public class PlotDisplay<P,A> extends JComponent {
     private long[] findClosestRows( Surface surface, PlotLayer[] layers,
                                     Point point ) {
 
-        /* The donkey work here is done by PlotUtil.getClosestRow.
+        /* The donkey work here is done by a PointIndex for each cloud,
+         * which is retained for subsequent queries on the same surface.
+         * The first query is answered from the same pass through the
+         * data that builds the index.  If a cloud has too many points
+         * to index, PlotUtil.getClosestRow scans its data for each
+         * later query instead.
          * However, we need to do some disentangling in order to work out
          * what tuple sequences to send it.  Sending one for each layer is
          * not quite good enough: for one thing some layers may have multiple
@@ -573,13 +715,35 @@ public class PlotDisplay<P,A> extends JComponent {
          * identify the closest plotted data point to the requested
          * reference position. */
         for ( SubCloud cloud : cloudMap.keySet() ) {
-            DataGeom geom = cloud.getDataGeom();
-            int iPosCoord = cloud.getPosCoordIndex();
-            TupleSequence tseq =
-                dataStore_.getTupleSequence( cloud.getDataSpec() );
-            cloudMap.put( cloud,
-                          PlotUtil.getClosestRow( surface, geom, iPosCoord,
-                                                  tseq, point ) );
+            PointIndex index =
+                indexCache_.getIndex( surface, dataStore_, cloud );
+            IndicatedRow row;
+            if ( index == null ) {
+                TupleSequence tseq =
+                    dataStore_.getTupleSequence( cloud.getDataSpec() );
+                IndicatedRow[] closest = new IndicatedRow[ 1 ];
+                index = PointIndex
+                       .createPointIndex( surface, cloud.getDataGeom(),
+                                          cloud.getPosCoordIndex(), tseq,
+                                          PointIndex.DEFAULT_MAX_POINTS,
+                                          point, closest );
+                if ( index == null ) {
+                    return null;
+                }
+                indexCache_.putIndex( surface, dataStore_, cloud, index );
+                row = closest[ 0 ];
+            }
+            else if ( index.isOverflow() ) {
+                TupleSequence tseq =
+                    dataStore_.getTupleSequence( cloud.getDataSpec() );
+                row = PlotUtil.getClosestRow( surface, cloud.getDataGeom(),
+                                              cloud.getPosCoordIndex(), tseq,
+                                              point );
+            }
+            else {
+                row = index.getClosestRow( point );
+            }
+            cloudMap.put( cloud, row );
         }
 
         /* Go back to the list of clouds per layer and work out the closest
@@ -816,6 +980,12 @@ public class PlotDisplay<P,A> extends JComponent {
         /** If non-null, indicates icon is currently up to date. */
         Icon icon_;
 
+        /** Time taken by the most recent full plot, or 0 if unknown. */
+        long fullPlotMillis_;
+
+        /** Background calculation of full plot, or null. */
+        Future<?> refiner_;
+
         /**
          * Constructor.
          *
@@ -836,4 +1006,56 @@ public class PlotDisplay<P,A> extends JComponent {
             plans_ = usePlans ? new HashSet<Object>() : null;
         }
     }
+
+    /**
+     * DataStore wrapper which stops dispensing tuples if the
+     * consuming thread is interrupted.
+     * The interruption status of the thread is left set.
+     */
+    private static class InterruptibleDataStore implements DataStore {
+        private final DataStore base_;
+
+        /**
+         * Constructor.
+         *
+         * @param  base  base data store
+         */
+        InterruptibleDataStore( DataStore base ) {
+            base_ = base;
+        }
+
+        public boolean hasData( DataSpec spec ) {
+            return base_.hasData( spec );
+        }
+
+        public TupleSequence getTupleSequence( DataSpec spec ) {
+            return createInterruptibleSequence( base_
+                                               .getTupleSequence( spec ) );
+        }
+
+        public TupleSequence[] getTupleSequences( DataSpec spec, int nseq ) {
+            TupleSequence[] tseqs = base_.getTupleSequences( spec, nseq );
+            for ( int is = 0; is < tseqs.length; is++ ) {
+                tseqs[ is ] = createInterruptibleSequence( tseqs[ is ] );
+            }
+            return tseqs;
+        }
+
+        /**
+         * Wraps a tuple sequence to check for thread interruption.
+         *
+         * @param  baseSeq  base sequence
+         * @return  wrapped sequence
+         */
+        private static TupleSequence
+                createInterruptibleSequence( final TupleSequence baseSeq ) {
+            return new WrapperTupleSequence( baseSeq ) {
+                @Override
+                public boolean next() {
+                    return ! Thread.currentThread().isInterrupted()
+                        && baseSeq.next();
+                }
+            };
+        }
+    }
 }
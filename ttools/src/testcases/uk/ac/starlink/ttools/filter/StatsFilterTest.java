@@ -0,0 +1,124 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.util.Random;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.table.storage.SidewaysRowStore;
+
+public class StatsFilterTest extends TestCase {
+
+    public StatsFilterTest( String name ) {
+        super( name );
+    }
+
+    public void testAddStats() {
+        Random rnd = new Random( 99001 );
+        int n = 5000;
+        Object[] values = new Object[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            values[ i ] = i % 9 == 0 ? null
+                                     : new Integer( rnd.nextInt( 100 ) );
+        }
+        Class[] clazzes = { Integer.class, Boolean.class, String.class };
+        for ( Class clazz : clazzes ) {
+            Object[] vals = new Object[ n ];
+            for ( int i = 0; i < n; i++ ) {
+                Object v = values[ i ];
+                vals[ i ] = v == null || clazz == Integer.class
+                          ? v
+                          : clazz == Boolean.class
+                                ? Boolean.valueOf( ((Integer) v).intValue()
+                                                   % 2 == 0 )
+                                : v.toString();
+            }
+            UnivariateStats all = UnivariateStats.createStats( clazz );
+            for ( int i = 0; i < n; i++ ) {
+                all.acceptDatum( vals[ i ] );
+            }
+            int[] splits = { 0, 1, 17, 2000, 2001, 4999, n };
+            UnivariateStats merged = null;
+            for ( int is = 0; is < splits.length - 1; is++ ) {
+                UnivariateStats part = UnivariateStats.createStats( clazz );
+                for ( int i = splits[ is ]; i < splits[ is + 1 ]; i++ ) {
+                    part.acceptDatum( vals[ i ] );
+                }
+                if ( merged == null ) {
+                    merged = part;
+                }
+                else {
+                    merged.addStats( part );
+                }
+            }
+            assertEquals( all.getCount(), merged.getCount() );
+            assertEquals( all.getSum(), merged.getSum() );
+            assertEquals( all.getSum2(), merged.getSum2() );
+            assertEquals( all.getMinimum(), merged.getMinimum() );
+            assertEquals( all.getMaximum(), merged.getMaximum() );
+            assertEquals( all.getMinPos(), merged.getMinPos() );
+            assertEquals( all.getMaxPos(), merged.getMaxPos() );
+        }
+    }
+
+    public void testRowRangeStats() throws Exception {
+        int nrow = 330000;
+        Random rnd = new Random( 332211 );
+        double[] ds = new double[ nrow ];
+        Integer[] is = new Integer[ nrow ];
+        Boolean[] bs = new Boolean[ nrow ];
+        String[] ss = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ds[ i ] = i % 11 == 0 ? Double.NaN : rnd.nextGaussian();
+            is[ i ] = i % 7 == 0 ? null : new Integer( rnd.nextInt( 1000 ) );
+            bs[ i ] = i % 5 == 0 ? null : Boolean.valueOf( rnd.nextBoolean() );
+            ss[ i ] = i % 3 == 0 ? null : "s" + ( i % 13 );
+        }
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        t0.addColumn( ArrayColumn.makeColumn( "d", ds ) );
+        t0.addColumn( ArrayColumn.makeColumn( "i", is ) );
+        t0.addColumn( ArrayColumn.makeColumn( "b", bs ) );
+        t0.addColumn( ArrayColumn.makeColumn( "s", ss ) );
+        RowStore store = new SidewaysRowStore();
+        store.acceptMetadata( t0 );
+        RowSequence rseq = t0.getRowSequence();
+        while ( rseq.next() ) {
+            store.acceptRow( rseq.getRow() );
+        }
+        rseq.close();
+        store.endRows();
+        StarTable rangeTable = store.getStarTable();
+        assertTrue( Tables.hasRowRanges( rangeTable ) );
+        StarTable seqTable = new WrapperStarTable( rangeTable );
+        assertFalse( Tables.hasRowRanges( seqTable ) );
+
+        ProcessingStep step =
+            StepFactory.getInstance()
+           .createStep( "stats name mean stdev minimum maximum "
+                      + "minpos maxpos ngood nbad sum" );
+        StarTable rangeStats = Tables.randomTable( step.wrap( rangeTable ) );
+        StarTable seqStats = Tables.randomTable( step.wrap( seqTable ) );
+        int ncol = seqStats.getColumnCount();
+        int nr = (int) seqStats.getRowCount();
+        assertEquals( 4, nr );
+        for ( int ir = 0; ir < nr; ir++ ) {
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                Object c0 = seqStats.getCell( ir, ic );
+                Object c1 = rangeStats.getCell( ir, ic );
+                if ( c0 instanceof Double || c0 instanceof Float ) {
+                    assertEquals( ((Number) c0).doubleValue(),
+                                  ((Number) c1).doubleValue(),
+                                  1e-5 * Math.abs( ((Number) c0)
+                                                  .doubleValue() ) );
+                }
+                else {
+                    assertEquals( c0, c1 );
+                }
+            }
+        }
+    }
+}
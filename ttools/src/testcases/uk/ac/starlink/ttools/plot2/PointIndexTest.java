@@ -0,0 +1,220 @@
+package uk.ac.starlink.ttools.plot2;
+
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import uk.ac.starlink.ttools.plot2.data.Coord;
+import uk.ac.starlink.ttools.plot2.data.TupleSequence;
+
+public class PointIndexTest extends TestCase {
+
+    public void testIndex() {
+        Random random = new Random( 2299001 );
+        Surface surface = new TestSurface( new Rectangle( 20, 30, 400, 300 ) );
+        for ( int np : new int[] { 0, 1, 7, 500, 20000 } ) {
+            double[][] points = new double[ np ][];
+            for ( int ip = 0; ip < np; ip++ ) {
+                points[ ip ] = ip % 5 == 0
+                             ? new double[] { 100 + random.nextGaussian(),
+                                              80 + random.nextGaussian() }
+                             : new double[] { random.nextDouble() * 440,
+                                              random.nextDouble() * 340 };
+            }
+            PointIndex index =
+                PointIndex.createPointIndex( surface, TEST_GEOM, 0,
+                                             new TestSequence( points ) );
+            for ( int iq = 0; iq < 200; iq++ ) {
+                Point2D.Double pos =
+                    new Point2D.Double( random.nextDouble() * 500 - 30,
+                                        random.nextDouble() * 400 - 30 );
+                IndicatedRow r0 =
+                    PlotUtil.getClosestRow( surface, TEST_GEOM, 0,
+                                            new TestSequence( points ), pos );
+                IndicatedRow r1 = index.getClosestRow( pos );
+                if ( r0 == null ) {
+                    assertNull( r1 );
+                }
+                else {
+                    assertEquals( r0.getDistance(), r1.getDistance() );
+                }
+            }
+            Shape[] shapes = {
+                new Rectangle( 50, 50, 100, 40 ),
+                new Ellipse2D.Double( 80, 60, 50, 30 ),
+                new Ellipse2D.Double( -100, -100, 1000, 1000 ),
+                new Rectangle( 1000, 1000, 10, 10 ),
+            };
+            for ( Shape shape : shapes ) {
+                List<Long> rowList = new ArrayList<Long>();
+                Point2D.Double gp = new Point2D.Double();
+                Point gpi = new Point();
+                for ( int ip = 0; ip < np; ip++ ) {
+                    if ( surface.dataToGraphics( points[ ip ], true, gp ) ) {
+                        PlotUtil.quantisePoint( gp, gpi );
+                        if ( shape.contains( gpi ) ) {
+                            rowList.add( new Long( ip ) );
+                        }
+                    }
+                }
+                long[] rows0 = new long[ rowList.size() ];
+                for ( int i = 0; i < rows0.length; i++ ) {
+                    rows0[ i ] = rowList.get( i ).longValue();
+                }
+                long[] rows1 = index.getRowsInShape( shape );
+                Arrays.sort( rows1 );
+                assertTrue( Arrays.equals( rows0, rows1 ) );
+            }
+        }
+    }
+
+    public void testMaxPoints() {
+        Random random = new Random( 44012 );
+        Surface surface = new TestSurface( new Rectangle( 0, 0, 300, 200 ) );
+        int np = 150000;
+        double[][] points = new double[ np ][];
+        for ( int ip = 0; ip < np; ip++ ) {
+            points[ ip ] = new double[] { random.nextDouble() * 300,
+                                          random.nextDouble() * 200 };
+        }
+        PointIndex over =
+            PointIndex.createPointIndex( surface, TEST_GEOM, 0,
+                                         new TestSequence( points ),
+                                         np - 1 );
+        assertTrue( over.isOverflow() );
+        assertEquals( 0, over.getPointCount() );
+        try {
+            over.getClosestRow( new Point( 10, 10 ) );
+            fail();
+        }
+        catch ( IllegalStateException e ) {
+        }
+
+        PointIndex index =
+            PointIndex.createPointIndex( surface, TEST_GEOM, 0,
+                                         new TestSequence( points ), np );
+        assertFalse( index.isOverflow() );
+        assertEquals( np, index.getPointCount() );
+        for ( int iq = 0; iq < 20; iq++ ) {
+            Point2D.Double pos =
+                new Point2D.Double( random.nextDouble() * 300,
+                                    random.nextDouble() * 200 );
+            IndicatedRow r0 =
+                PlotUtil.getClosestRow( surface, TEST_GEOM, 0,
+                                        new TestSequence( points ), pos );
+            assertEquals( r0.getDistance(),
+                          index.getClosestRow( pos ).getDistance() );
+            for ( int max : new int[] { np / 2, np } ) {
+                IndicatedRow[] closest = new IndicatedRow[ 1 ];
+                PointIndex ix =
+                    PointIndex.createPointIndex( surface, TEST_GEOM, 0,
+                                                 new TestSequence( points ),
+                                                 max, pos, closest );
+                assertEquals( max < np, ix.isOverflow() );
+                assertEquals( r0.getIndex(), closest[ 0 ].getIndex() );
+                assertEquals( r0.getDistance(), closest[ 0 ].getDistance() );
+            }
+        }
+        assertTrue( PointIndex.DEFAULT_MAX_POINTS >= 1000000 );
+    }
+
+    private static final DataGeom TEST_GEOM = new DataGeom() {
+        public int getDataDimCount() {
+            return 2;
+        }
+        public Coord[] getPosCoords() {
+            return new Coord[ 0 ];
+        }
+        public boolean hasPosition() {
+            return true;
+        }
+        public boolean readDataPos( TupleSequence tseq, int icol,
+                                    double[] dpos ) {
+            dpos[ 0 ] = tseq.getDoubleValue( icol );
+            dpos[ 1 ] = tseq.getDoubleValue( icol + 1 );
+            return true;
+        }
+        public String getVariantName() {
+            return "test";
+        }
+    };
+
+    private static class TestSequence implements TupleSequence {
+        private final double[][] points_;
+        private int irow_ = -1;
+
+        TestSequence( double[][] points ) {
+            points_ = points;
+        }
+        public boolean next() {
+            return ++irow_ < points_.length;
+        }
+        public long getRowIndex() {
+            return irow_;
+        }
+        public Object getObjectValue( int icol ) {
+            return new Double( getDoubleValue( icol ) );
+        }
+        public double getDoubleValue( int icol ) {
+            return points_[ irow_ ][ icol ];
+        }
+        public int getIntValue( int icol ) {
+            throw new UnsupportedOperationException();
+        }
+        public boolean getBooleanValue( int icol ) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class TestSurface implements Surface {
+        private final Rectangle bounds_;
+
+        TestSurface( Rectangle bounds ) {
+            bounds_ = bounds;
+        }
+        public Rectangle getPlotBounds() {
+            return new Rectangle( bounds_ );
+        }
+        public Insets getPlotInsets( boolean withScroll ) {
+            return new Insets( 0, 0, 0, 0 );
+        }
+        public void paintBackground( Graphics g ) {
+        }
+        public void paintForeground( Graphics g ) {
+        }
+        public int getDataDimCount() {
+            return 2;
+        }
+        public boolean dataToGraphics( double[] dpos, boolean visibleOnly,
+                                       Point2D.Double gpos ) {
+            gpos.x = dpos[ 0 ];
+            gpos.y = dpos[ 1 ];
+            return ! visibleOnly || bounds_.contains( gpos );
+        }
+        public boolean dataToGraphicsOffset( double[] dpos0,
+                                             Point2D.Double gpos0,
+                                             double[] dpos1,
+                                             boolean visibleOnly,
+                                             Point2D.Double gpos1 ) {
+            return dataToGraphics( dpos1, visibleOnly, gpos1 );
+        }
+        public double[] graphicsToData( Point2D gpos,
+                                        Iterable<double[]> dposIt ) {
+            return new double[] { gpos.getX(), gpos.getY() };
+        }
+        public String formatPosition( double[] dpos ) {
+            return null;
+        }
+        public Captioner getCaptioner() {
+            return null;
+        }
+    }
+}
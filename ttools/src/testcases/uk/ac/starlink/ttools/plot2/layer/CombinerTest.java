@@ -58,6 +58,90 @@ public class CombinerTest extends TestCase {
         }
     }
 
+    public void testMerge() {
+        int nbin = 200;
+        for ( Combiner combiner : combiners_ ) {
+            BinList[] wholes = { combiner.createArrayBinList( nbin ),
+                                 new HashBinList( nbin, combiner ),
+                                 combiner.createHashBinList( nbin ) };
+            BinList[] parts0 = { combiner.createArrayBinList( nbin ),
+                                 new HashBinList( nbin, combiner ),
+                                 combiner.createHashBinList( nbin ) };
+            BinList[] parts1 = { combiner.createArrayBinList( nbin ),
+                                 new HashBinList( nbin, combiner ),
+                                 combiner.createHashBinList( nbin ) };
+            Combiner.Container cWhole = combiner.createContainer();
+            Combiner.Container cPart0 = combiner.createContainer();
+            Combiner.Container cPart1 = combiner.createContainer();
+            for ( int is = 0; is < 1000; is++ ) {
+                int ibin = random_.nextInt( nbin );
+                boolean isPart0 = ibin % 3 == 0 || random_.nextBoolean();
+                if ( ! skipBin( nbin, ibin ) ) {
+                    double datum = random_.nextDouble() * 10 - 1;
+                    for ( int il = 0; il < wholes.length; il++ ) {
+                        wholes[ il ].submitToBin( ibin, datum );
+                        ( isPart0 ? parts0 : parts1 )[ il ]
+                       .submitToBin( ibin, datum );
+                    }
+                    cWhole.submit( datum );
+                    ( isPart0 ? cPart0 : cPart1 ).submit( datum );
+                }
+            }
+            cPart0.add( cPart1 );
+            assertEquals( cWhole.getResult(), cPart0.getResult(), 1e-8 );
+            for ( int il = 0; il < wholes.length; il++ ) {
+                parts0[ il ].addBins( parts1[ il ] );
+                BinList.Result wResult = wholes[ il ].getResult();
+                BinList.Result pResult = parts0[ il ].getResult();
+                for ( int ib = 0; ib < nbin; ib++ ) {
+                    double wval = wResult.getBinValue( ib );
+                    double pval = pResult.getBinValue( ib );
+                    if ( Double.isNaN( wval ) ) {
+                        assertTrue( Double.isNaN( pval ) );
+                    }
+                    else {
+                        assertEquals( wval, pval, 1e-8 );
+                    }
+                }
+                assertEquals( countOccupiedBins( wResult, nbin ),
+                              countOccupiedBins( pResult, nbin ) );
+            }
+        }
+    }
+
+    public void testSparse() {
+        long nbin = 12L << ( 2 * 14 );
+        for ( Combiner combiner : combiners_ ) {
+            BinList hbins = new HashBinList( nbin, combiner );
+            BinList sbins = combiner.createHashBinList( nbin );
+            for ( int is = 0; is < 20000; is++ ) {
+                long ibin = (long) ( random_.nextDouble() * nbin );
+                double datum = random_.nextDouble();
+                int nsub = 1 + random_.nextInt( 3 );
+                for ( int i = 0; i < nsub; i++ ) {
+                    hbins.submitToBin( ibin, datum * i );
+                    sbins.submitToBin( ibin, datum * i );
+                }
+            }
+            BinList.Result hResult = hbins.getResult();
+            BinList.Result sResult = sbins.getResult();
+            BinList.Result scResult = sResult.compact();
+            assertEquals( hResult.getBinCount(), sResult.getBinCount() );
+            assertEquals( hResult.getBinCount(), scResult.getBinCount() );
+            long lastIndex = -1;
+            for ( Iterator<Long> it = scResult.indexIterator();
+                  it.hasNext(); ) {
+                long index = it.next().longValue();
+                assertTrue( index > lastIndex );
+                lastIndex = index;
+                double value = hResult.getBinValue( index );
+                assertEquals( value, sResult.getBinValue( index ), 1e-10 );
+                assertEquals( value, scResult.getBinValue( index ), 1e-10 );
+            }
+            assertTrue( Double.isNaN( scResult.getBinValue( nbin - 1 ) ) );
+        }
+    }
+
     private class CTest {
         final Combiner combiner_;
         final double result_;
@@ -90,12 +174,14 @@ public class CombinerTest extends TestCase {
         BitSet mask = new BitSet( nbin );
         BinList abins = combiner.createArrayBinList( nbin );
         BinList hbins = new HashBinList( nbin, combiner );
+        BinList sbins = combiner.createHashBinList( nbin );
         for ( int is = 0; is < nsamp; is++ ) {
             int ibin = random_.nextInt( nbin );
             if ( ! skipBin( nbin, ibin ) ) {
                 double datum = Math.max( 0, ( random_.nextDouble() * 10 - 1 ) );
                 abins.submitToBin( ibin, datum );
                 hbins.submitToBin( ibin, datum );
+                sbins.submitToBin( ibin, datum );
                 mask.set( ibin );
             }
         }
@@ -105,11 +191,15 @@ public class CombinerTest extends TestCase {
         BinList.Result acResult = aResult.compact();
         BinList.Result hResult = hbins.getResult();
         BinList.Result hcResult = hResult.compact();
+        BinList.Result sResult = sbins.getResult();
+        BinList.Result scResult = sResult.compact();
         for ( int ib = 0; ib < nbin; ib++ ) {
             double value = aResult.getBinValue( ib );
             assertEquals( value, hResult.getBinValue( ib ) );
             assertEquals( value, acResult.getBinValue( ib ) );
             assertEquals( value, hcResult.getBinValue( ib ) );
+            assertEquals( value, sResult.getBinValue( ib ) );
+            assertEquals( value, scResult.getBinValue( ib ) );
             if ( skipBin( nbin, ib ) ) {
                 nskip++;
                 assertTrue( Double.isNaN( value ) );
@@ -120,6 +210,8 @@ public class CombinerTest extends TestCase {
         assertEquals( nOc, countOccupiedBins( acResult, nbin ) );
         assertEquals( nOc, countOccupiedBins( hResult, nbin ) );
         assertEquals( nOc, countOccupiedBins( hcResult, nbin ) );
+        assertEquals( nOc, countOccupiedBins( sResult, nbin ) );
+        assertEquals( nOc, countOccupiedBins( scResult, nbin ) );
     }
 
     private static boolean skipBin( int nbin, int ibin ) {
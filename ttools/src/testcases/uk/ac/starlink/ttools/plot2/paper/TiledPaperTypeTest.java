@@ -0,0 +1,222 @@
+package uk.ac.starlink.ttools.plot2.paper;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import javax.swing.Icon;
+import junit.framework.TestCase;
+import uk.ac.starlink.ttools.plot2.Captioner;
+import uk.ac.starlink.ttools.plot2.Decal;
+import uk.ac.starlink.ttools.plot2.Drawing;
+import uk.ac.starlink.ttools.plot2.Glyph;
+import uk.ac.starlink.ttools.plot2.Pixer;
+import uk.ac.starlink.ttools.plot2.ReportMap;
+import uk.ac.starlink.ttools.plot2.Surface;
+import uk.ac.starlink.ttools.plot2.data.DataStore;
+
+public class TiledPaperTypeTest extends TestCase {
+
+    public void testTiles() {
+        Compositor boost = new Compositor.BoostCompositor( 0.1f );
+        RgbPaperType[] ptypes = {
+            new OverPaperType2D(),
+            new CompositePaperType2D( Compositor.SATURATION ),
+            new MonoPaperType( Color.RED, boost ),
+            new ZBufferPaperType3D(),
+            new PixelStackPaperType3D( boost, 1e-4f ),
+        };
+        Surface surface = new TestSurface( new Rectangle( 10, 20, 301, 257 ) );
+        Drawing[] drawings = { new TestDrawing( 22, false ),
+                               new TestDrawing( 23, true ) };
+        Object[] plans = new Object[ drawings.length ];
+        for ( RgbPaperType ptype : ptypes ) {
+            boolean isMono = ptype instanceof MonoPaperType;
+            for ( Drawing drawing : drawings ) {
+                ((TestDrawing) drawing).isMono_ = isMono;
+            }
+            int[] rgbs0 = paint( ptype, surface, drawings, plans );
+            for ( int ntile : new int[] { 2, 3, 5, 100 } ) {
+                PaperType tiled =
+                    TiledPaperType.createTiledPaperType( ptype, ntile );
+                assertEquals( ptype instanceof PaperType2D,
+                              tiled instanceof PaperType2D );
+                assertEquals( ptype instanceof PaperType3D,
+                              tiled instanceof PaperType3D );
+                for ( Drawing drawing : drawings ) {
+                    ((TestDrawing) drawing).ptype_ = tiled;
+                }
+                int[] rgbs1 = paint( tiled, surface, drawings, plans );
+                assertEquals( ptype.toString(), rgbs0.length, rgbs1.length );
+                for ( int i = 0; i < rgbs0.length; i++ ) {
+                    assertEquals( ptype + " " + ntile + " " + i,
+                                  rgbs0[ i ], rgbs1[ i ] );
+                }
+            }
+        }
+    }
+
+    private static int[] paint( PaperType ptype, Surface surface,
+                                Drawing[] drawings, Object[] plans ) {
+        for ( Drawing drawing : drawings ) {
+            ((TestDrawing) drawing).ptype_ = ptype;
+        }
+        Icon icon = ptype.createDataIcon( surface, drawings, plans, null,
+                                          false );
+        int w = icon.getIconWidth();
+        int h = icon.getIconHeight();
+        BufferedImage image =
+            new BufferedImage( w, h, BufferedImage.TYPE_INT_ARGB );
+        Graphics g = image.createGraphics();
+        icon.paintIcon( null, g, 0, 0 );
+        g.dispose();
+        return image.getRGB( 0, 0, w, h, null, 0, w );
+    }
+
+    private static class TestDrawing implements Drawing {
+        private final long seed_;
+        private final boolean withDecal_;
+        PaperType ptype_;
+        boolean isMono_;
+
+        TestDrawing( long seed, boolean withDecal ) {
+            seed_ = seed;
+            withDecal_ = withDecal;
+        }
+
+        public Object calculatePlan( Object[] knownPlans,
+                                     DataStore dataStore ) {
+            return null;
+        }
+
+        public void paintData( Object plan, Paper paper,
+                               DataStore dataStore ) {
+            Random random = new Random( seed_ );
+            for ( int i = 0; i < 20000; i++ ) {
+                if ( withDecal_ && i == 10000 ) {
+                    ptype_.placeDecal( paper, new Decal() {
+                        public void paintDecal( Graphics g ) {
+                            g.setColor( Color.RED );
+                            g.fillOval( 50, 60, 200, 150 );
+                        }
+                        public boolean isOpaque() {
+                            return true;
+                        }
+                    } );
+                }
+                double x = 5 + random.nextDouble() * 310;
+                double y = 15 + random.nextDouble() * 270;
+                int size = random.nextInt( 8 );
+                Glyph glyph = new SquareGlyph( size );
+                float alpha = 0.1f + 0.9f * random.nextFloat();
+                Color color = isMono_
+                            ? new Color( 1f, 0f, 0f, alpha )
+                            : new Color( random.nextFloat(),
+                                         random.nextFloat(),
+                                         random.nextFloat(), alpha );
+                if ( ptype_ instanceof PaperType3D ) {
+                    double z = random.nextInt( 20 );
+                    ((PaperType3D) ptype_)
+                   .placeGlyph( paper, x, y, z, glyph, color );
+                }
+                else {
+                    ((PaperType2D) ptype_)
+                   .placeGlyph( paper, x, y, glyph, color );
+                }
+            }
+        }
+
+        public ReportMap getReport( Object plan ) {
+            return null;
+        }
+    }
+
+    private static class SquareGlyph implements Glyph {
+        private final int r_;
+
+        SquareGlyph( int r ) {
+            r_ = r;
+        }
+
+        public void paintGlyph( Graphics g ) {
+            g.fillRect( -r_, -r_, 2 * r_ + 1, 2 * r_ + 1 );
+        }
+
+        public Pixer createPixer( Rectangle clip ) {
+            final int xmin = Math.max( -r_, clip.x );
+            final int xmax = Math.min( r_, clip.x + clip.width - 1 );
+            final int ymin = Math.max( -r_, clip.y );
+            final int ymax = Math.min( r_, clip.y + clip.height - 1 );
+            if ( xmin > xmax || ymin > ymax ) {
+                return null;
+            }
+            return new Pixer() {
+                int x_ = xmin - 1;
+                int y_ = ymin;
+                public boolean next() {
+                    if ( ++x_ > xmax ) {
+                        x_ = xmin;
+                        y_++;
+                    }
+                    return y_ <= ymax;
+                }
+                public int getX() {
+                    return x_;
+                }
+                public int getY() {
+                    return y_;
+                }
+            };
+        }
+    }
+
+    private static class TestSurface implements Surface {
+        private final Rectangle bounds_;
+
+        TestSurface( Rectangle bounds ) {
+            bounds_ = bounds;
+        }
+        public Rectangle getPlotBounds() {
+            return new Rectangle( bounds_ );
+        }
+        public Insets getPlotInsets( boolean withScroll ) {
+            return new Insets( 0, 0, 0, 0 );
+        }
+        public void paintBackground( Graphics g ) {
+            g.setColor( Color.WHITE );
+            g.fillRect( bounds_.x, bounds_.y, bounds_.width, bounds_.height );
+            g.setColor( Color.GRAY );
+            g.drawLine( bounds_.x, bounds_.y,
+                        bounds_.x + bounds_.width, bounds_.y + bounds_.height );
+        }
+        public void paintForeground( Graphics g ) {
+        }
+        public int getDataDimCount() {
+            return 2;
+        }
+        public boolean dataToGraphics( double[] dpos, boolean visibleOnly,
+                                       Point2D.Double gpos ) {
+            return false;
+        }
+        public boolean dataToGraphicsOffset( double[] dpos0,
+                                             Point2D.Double gpos0,
+                                             double[] dpos1,
+                                             boolean visibleOnly,
+                                             Point2D.Double gpos1 ) {
+            return false;
+        }
+        public double[] graphicsToData( Point2D gpos,
+                                        Iterable<double[]> dposIt ) {
+            return null;
+        }
+        public String formatPosition( double[] dpos ) {
+            return null;
+        }
+        public Captioner getCaptioner() {
+            return null;
+        }
+    }
+}
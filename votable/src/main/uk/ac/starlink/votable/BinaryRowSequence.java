@@ -1,26 +1,25 @@
 package uk.ac.starlink.votable;
 
-import java.io.DataInput;
-import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
 import java.util.zip.GZIPInputStream;
 import uk.ac.starlink.table.RowSequence;
-import uk.ac.starlink.util.Base64InputStream;
 
 /**
  * RowSequence implementation which reads streamed data in VOTable BINARY
  * format.
  *
+ * <p>Base64 text is decoded a block at a time, and cell values are
+ * decoded directly from a large byte buffer rather than by reading the
+ * underlying stream a byte at a time.
+ *
  * @author   Mark Taylor
  * @since    31 Jul 2006
  */
 class BinaryRowSequence implements RowSequence {
 
-    private final PushbackInputStream pIn_;
-    private final DataInput dataIn_;
+    private final BlockDataInput dataIn_;
     private final int ncol_;
     private final RowReader rowReader_;
     private Object[] row_;
@@ -43,10 +42,9 @@ class BinaryRowSequence implements RowSequence {
             in = new GZIPInputStream( in );
         }
         else if ( "base64".equals( encoding ) ) {
-            in = new Base64InputStream( in );
+            in = new BlockBase64InputStream( in );
         }
-        pIn_ = new PushbackInputStream( in );
-        dataIn_ = new DataInputStream( pIn_ );
+        dataIn_ = new BlockDataInput( in );
         rowReader_ = isBinary2
             ? new RowReader() {
                   final boolean[] nullFlags = new boolean[ ncol_ ];
@@ -77,18 +75,17 @@ class BinaryRowSequence implements RowSequence {
     }
 
     public boolean next() throws IOException {
-        final int b;
+        final boolean hasMore;
         try {
-            b = pIn_.read();
+            hasMore = dataIn_.hasMore();
         }
         catch ( EOFException e ) {
             return false;
         }
-        if ( b < 0 ) {
+        if ( ! hasMore ) {
             return false;
         }
         else {
-            pIn_.unread( b );
             Object[] row = new Object[ ncol_ ];
             rowReader_.readRow( row );
             row_ = row;
@@ -115,7 +112,7 @@ class BinaryRowSequence implements RowSequence {
     }
 
     public void close() throws IOException {
-        pIn_.close();
+        dataIn_.close();
     }
 
     /**
@@ -0,0 +1,201 @@
+package uk.ac.starlink.votable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes base64-encoded input a block at a time.
+ * This does the same job as {@link uk.ac.starlink.util.Base64InputStream},
+ * but reads the encoded text from the underlying stream in large chunks
+ * and decodes each chunk in a single tight loop, so it is much faster
+ * for bulk reads.
+ * As with that class, whitespace and other non-base64 characters
+ * are ignored, and a '=' pad character marks the end of the data.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class BlockBase64InputStream extends InputStream {
+
+    private final InputStream in_;
+    private final byte[] inBuf_;
+    private final byte[] outBuf_;
+    private int outPos_;
+    private int outLeng_;
+    private int accum_;
+    private int nacc_;
+    private boolean inEnd_;
+
+    /** Default size of encoded input chunk. */
+    public static final int DEFAULT_BUFSIZ = 64 * 1024;
+
+    /** Map from encoded byte value to 6-bit value, or -1 if not base64. */
+    private static final byte[] TABLE = createTable();
+
+    /**
+     * Constructs a stream with a default buffer size.
+     *
+     * @param  in  input stream containing base64-encoded text
+     */
+    public BlockBase64InputStream( InputStream in ) {
+        this( in, DEFAULT_BUFSIZ );
+    }
+
+    /**
+     * Constructs a stream with a given buffer size.
+     *
+     * @param  in  input stream containing base64-encoded text
+     * @param  bufsiz  number of encoded bytes read at a time
+     */
+    public BlockBase64InputStream( InputStream in, int bufsiz ) {
+        in_ = in;
+        inBuf_ = new byte[ bufsiz ];
+        outBuf_ = new byte[ ( bufsiz / 4 ) * 3 + 6 ];
+    }
+
+    public int read() throws IOException {
+        return outPos_ < outLeng_ || fill() ? outBuf_[ outPos_++ ] & 0xff
+                                            : -1;
+    }
+
+    public int read( byte[] b, int off, int len ) throws IOException {
+        if ( len == 0 ) {
+            return 0;
+        }
+        if ( outPos_ >= outLeng_ && ! fill() ) {
+            return -1;
+        }
+        int n = Math.min( len, outLeng_ - outPos_ );
+        System.arraycopy( outBuf_, outPos_, b, off, n );
+        outPos_ += n;
+        return n;
+    }
+
+    public long skip( long n ) throws IOException {
+        long count = 0;
+        while ( count < n && ( outPos_ < outLeng_ || fill() ) ) {
+            int k = (int) Math.min( n - count, outLeng_ - outPos_ );
+            outPos_ += k;
+            count += k;
+        }
+        return count;
+    }
+
+    public int available() {
+        return outLeng_ - outPos_;
+    }
+
+    public void close() throws IOException {
+        in_.close();
+    }
+
+    /**
+     * Refills the output buffer with decoded bytes.
+     *
+     * @return  true if some bytes are now available,
+     *          false if the end of the data has been reached
+     */
+    private boolean fill() throws IOException {
+        outPos_ = 0;
+        outLeng_ = 0;
+        while ( outLeng_ == 0 && ! inEnd_ ) {
+            int n = in_.read( inBuf_ );
+            if ( n < 0 ) {
+                inEnd_ = true;
+                flushPartial();
+            }
+            else {
+                decode( n );
+            }
+        }
+        return outLeng_ > 0;
+    }
+
+    /**
+     * Decodes a given number of bytes from the start of the input buffer
+     * into the output buffer.
+     *
+     * @param  n  number of encoded bytes
+     */
+    private void decode( int n ) throws IOException {
+        byte[] inBuf = inBuf_;
+        byte[] outBuf = outBuf_;
+        int accum = accum_;
+        int nacc = nacc_;
+        int iout = outLeng_;
+        for ( int i = 0; i < n; i++ ) {
+            byte b = inBuf[ i ];
+            int v = TABLE[ b & 0xff ];
+            if ( v >= 0 ) {
+                accum = ( accum << 6 ) | v;
+                if ( ++nacc == 4 ) {
+                    outBuf[ iout++ ] = (byte) ( accum >> 16 );
+                    outBuf[ iout++ ] = (byte) ( accum >> 8 );
+                    outBuf[ iout++ ] = (byte) accum;
+                    accum = 0;
+                    nacc = 0;
+                }
+            }
+            else if ( b == '=' ) {
+                inEnd_ = true;
+                break;
+            }
+        }
+        accum_ = accum;
+        nacc_ = nacc;
+        outLeng_ = iout;
+        if ( inEnd_ ) {
+            flushPartial();
+        }
+    }
+
+    /**
+     * Writes any bytes represented by a partial quantum of
+     * encoded characters to the output buffer.
+     * Called at the end of the data.
+     */
+    private void flushPartial() throws IOException {
+        switch ( nacc_ ) {
+            case 0:
+                break;
+            case 1:
+                throw new EOFException( "Unexpected end of base64 data" );
+            case 2:
+                outBuf_[ outLeng_++ ] = (byte) ( accum_ >> 4 );
+                break;
+            case 3:
+                outBuf_[ outLeng_++ ] = (byte) ( accum_ >> 10 );
+                outBuf_[ outLeng_++ ] = (byte) ( accum_ >> 2 );
+                break;
+            default:
+                assert false;
+        }
+        accum_ = 0;
+        nacc_ = 0;
+    }
+
+    /**
+     * Returns the base64 decoding table.
+     *
+     * @return  256-element array mapping byte to 6-bit value or -1
+     */
+    private static byte[] createTable() {
+        byte[] table = new byte[ 256 ];
+        Arrays.fill( table, (byte) -1 );
+        int i = 0;
+        for ( char c = 'A'; c <= 'Z'; c++ ) {
+            table[ c ] = (byte) i++;
+        }
+        for ( char c = 'a'; c <= 'z'; c++ ) {
+            table[ c ] = (byte) i++;
+        }
+        for ( char c = '0'; c <= '9'; c++ ) {
+            table[ c ] = (byte) i++;
+        }
+        table[ '+' ] = 62;
+        table[ '/' ] = 63;
+        return table;
+    }
+}
@@ -0,0 +1,223 @@
+package uk.ac.starlink.votable;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Base64-encodes output a block at a time.
+ * The output is identical to that of a
+ * {@link uk.ac.starlink.util.Base64OutputStream} with line breaks,
+ * including its treatment of line ends,
+ * but encoding is done in a tight loop over each block of input
+ * and the encoded text is passed downstream in large chunks,
+ * so it is much faster for bulk writes.
+ *
+ * <p>As with that class, {@link #endBase64} must be called to
+ * write the final padding; {@link #close} does this automatically.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class BlockBase64OutputStream extends FilterOutputStream {
+
+    private final int charsPerLine_;
+    private final byte[] outBuf_;
+    private final byte[] partial_;
+    private int nPartial_;
+    private int nOut_;
+    private int charsOnLine_;
+
+    private static final byte[] END_LINE = getEndLine();
+    private static final byte[] ENCODING =
+        ( "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/" )
+       .getBytes();
+
+    /** Default size of the encoded output buffer. */
+    public static final int DEFAULT_BUFSIZ = 64 * 1024;
+
+    /**
+     * Constructor.
+     *
+     * @param  out  destination stream for base64-encoded text
+     * @param  quadsPerLine  number of 4-character groups written
+     *                       before each line break
+     */
+    public BlockBase64OutputStream( OutputStream out, int quadsPerLine ) {
+        super( out );
+        charsPerLine_ = quadsPerLine * 4;
+        outBuf_ = new byte[ Math.max( DEFAULT_BUFSIZ,
+                                      charsPerLine_ + END_LINE.length ) ];
+        partial_ = new byte[ 3 ];
+    }
+
+    public void write( int b ) throws IOException {
+        partial_[ nPartial_++ ] = (byte) b;
+        if ( nPartial_ == 3 ) {
+            nPartial_ = 0;
+            encodeAtom( partial_[ 0 ], partial_[ 1 ], partial_[ 2 ], true );
+        }
+    }
+
+    public void write( byte[] b ) throws IOException {
+        write( b, 0, b.length );
+    }
+
+    public void write( byte[] b, int off, int len ) throws IOException {
+
+        /* Complete any partial atom left over from last time. */
+        while ( nPartial_ > 0 && len > 0 ) {
+            write( b[ off++ ] );
+            len--;
+        }
+
+        /* Encode whole atoms directly from the input array. */
+        byte[] outBuf = outBuf_;
+        int lineMax = outBuf.length - charsPerLine_ - END_LINE.length;
+        int end = off + ( len / 3 ) * 3;
+        while ( off < end ) {
+            if ( nOut_ > lineMax ) {
+                flushBuffer();
+            }
+            int nchar = Math.min( charsPerLine_ - charsOnLine_,
+                                  ( ( end - off ) / 3 ) * 4 );
+            int iout = nOut_;
+            for ( int ic = 0; ic < nchar; ic += 4 ) {
+                int b0 = b[ off++ ] & 0xff;
+                int b1 = b[ off++ ] & 0xff;
+                int b2 = b[ off++ ] & 0xff;
+                outBuf[ iout++ ] = ENCODING[ b0 >>> 2 ];
+                outBuf[ iout++ ] = ENCODING[ ( ( b0 << 4 ) & 0x30 )
+                                           | ( b1 >>> 4 ) ];
+                outBuf[ iout++ ] = ENCODING[ ( ( b1 << 2 ) & 0x3c )
+                                           | ( b2 >>> 6 ) ];
+                outBuf[ iout++ ] = ENCODING[ b2 & 0x3f ];
+            }
+            nOut_ = iout;
+            charsOnLine_ += nchar;
+            if ( charsOnLine_ == charsPerLine_ ) {
+                endLine();
+            }
+        }
+
+        /* Save any remaining bytes for next time. */
+        for ( int i = 0; i < len % 3; i++ ) {
+            partial_[ nPartial_++ ] = b[ off++ ];
+        }
+    }
+
+    /**
+     * Writes any outstanding partial atom, with padding, followed by
+     * a line end, and passes all encoded output downstream.
+     * Call this when there is no more data to write.
+     */
+    public void endBase64() throws IOException {
+        if ( nPartial_ > 0 ) {
+            int n = nPartial_;
+            byte b1 = n > 1 ? partial_[ 1 ] : 0;
+            nPartial_ = 0;
+            ensureSpace( 4 + END_LINE.length );
+            int iout = nOut_;
+            encodeAtom( partial_[ 0 ], b1, (byte) 0, false );
+            outBuf_[ iout + 3 ] = (byte) '=';
+            if ( n < 2 ) {
+                outBuf_[ iout + 2 ] = (byte) '=';
+            }
+        }
+        ensureSpace( END_LINE.length );
+        System.arraycopy( END_LINE, 0, outBuf_, nOut_, END_LINE.length );
+        nOut_ += END_LINE.length;
+        charsOnLine_ = 0;
+        flushBuffer();
+    }
+
+    /**
+     * Passes encoded text downstream and flushes the underlying stream.
+     * Any partial atom is retained.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Invokes {@link #endBase64} and closes the underlying stream.
+     */
+    public void close() throws IOException {
+        endBase64();
+        out.close();
+    }
+
+    /**
+     * Encodes three bytes as four characters in the output buffer.
+     * The characters are written at the current output position,
+     * which may be relied on by the caller.
+     *
+     * @param  b0  first byte
+     * @param  b1  second byte
+     * @param  b2  third byte
+     * @param  breakLine  whether to add a line end if the line is full
+     */
+    private void encodeAtom( byte b0, byte b1, byte b2, boolean breakLine )
+            throws IOException {
+        ensureSpace( 4 + END_LINE.length );
+        int i0 = b0 & 0xff;
+        int i1 = b1 & 0xff;
+        int i2 = b2 & 0xff;
+        byte[] outBuf = outBuf_;
+        outBuf[ nOut_++ ] = ENCODING[ i0 >>> 2 ];
+        outBuf[ nOut_++ ] = ENCODING[ ( ( i0 << 4 ) & 0x30 ) | ( i1 >>> 4 ) ];
+        outBuf[ nOut_++ ] = ENCODING[ ( ( i1 << 2 ) & 0x3c ) | ( i2 >>> 6 ) ];
+        outBuf[ nOut_++ ] = ENCODING[ i2 & 0x3f ];
+        charsOnLine_ += 4;
+        if ( breakLine && charsOnLine_ == charsPerLine_ ) {
+            endLine();
+        }
+    }
+
+    /**
+     * Writes a line end to the output buffer.
+     */
+    private void endLine() {
+        System.arraycopy( END_LINE, 0, outBuf_, nOut_, END_LINE.length );
+        nOut_ += END_LINE.length;
+        charsOnLine_ = 0;
+    }
+
+    /**
+     * Ensures that there is room for a given number of bytes in the
+     * output buffer, flushing it downstream if necessary.
+     *
+     * @param  n  number of bytes required
+     */
+    private void ensureSpace( int n ) throws IOException {
+        if ( nOut_ + n > outBuf_.length ) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Passes the contents of the output buffer downstream.
+     */
+    private void flushBuffer() throws IOException {
+        if ( nOut_ > 0 ) {
+            out.write( outBuf_, 0, nOut_ );
+            nOut_ = 0;
+        }
+    }
+
+    /**
+     * Returns the platform line end sequence, as used by
+     * Base64OutputStream.
+     *
+     * @return  line end bytes
+     */
+    private static byte[] getEndLine() {
+        try {
+            return System.getProperty( "line.separator" ).getBytes();
+        }
+        catch ( SecurityException e ) {
+            return new byte[] { (byte) '\n' };
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package uk.ac.starlink.votable;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * DataInput implementation which reads from an input stream via
+ * a large internal buffer.
+ * Primitive values are decoded directly from the buffer, so that
+ * reading a multi-byte value costs no more than a bounds check
+ * rather than one call to the underlying stream per byte,
+ * as is the case for a <code>DataInputStream</code>.
+ *
+ * <p>It also offers a cheap test for end of data ({@link #hasMore}),
+ * which avoids the need for a pushback stream.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class BlockDataInput implements DataInput {
+
+    private final InputStream in_;
+    private final byte[] buf_;
+    private final ByteBuffer bbuf_;
+    private int pos_;
+    private int leng_;
+
+    /** Default buffer size. */
+    public static final int DEFAULT_BUFSIZ = 64 * 1024;
+
+    /**
+     * Constructs an input with a default buffer size.
+     *
+     * @param  in  underlying input stream
+     */
+    public BlockDataInput( InputStream in ) {
+        this( in, DEFAULT_BUFSIZ );
+    }
+
+    /**
+     * Constructs an input with a given buffer size.
+     *
+     * @param  in  underlying input stream
+     * @param  bufsiz  buffer size in bytes; must be at least 8
+     */
+    public BlockDataInput( InputStream in, int bufsiz ) {
+        in_ = in;
+        buf_ = new byte[ Math.max( bufsiz, 8 ) ];
+        bbuf_ = ByteBuffer.wrap( buf_ );
+    }
+
+    /**
+     * Indicates whether any more bytes are available.
+     * This may block until the answer is known.
+     *
+     * @return  true iff at least one more byte can be read
+     */
+    public boolean hasMore() throws IOException {
+        return fill( 1 );
+    }
+
+    public byte readByte() throws IOException {
+        require( 1 );
+        return buf_[ pos_++ ];
+    }
+
+    public int readUnsignedByte() throws IOException {
+        require( 1 );
+        return buf_[ pos_++ ] & 0xff;
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public short readShort() throws IOException {
+        require( 2 );
+        short v = bbuf_.getShort( pos_ );
+        pos_ += 2;
+        return v;
+    }
+
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xffff;
+    }
+
+    public char readChar() throws IOException {
+        require( 2 );
+        char v = bbuf_.getChar( pos_ );
+        pos_ += 2;
+        return v;
+    }
+
+    public int readInt() throws IOException {
+        require( 4 );
+        int v = bbuf_.getInt( pos_ );
+        pos_ += 4;
+        return v;
+    }
+
+    public long readLong() throws IOException {
+        require( 8 );
+        long v = bbuf_.getLong( pos_ );
+        pos_ += 8;
+        return v;
+    }
+
+    public float readFloat() throws IOException {
+        require( 4 );
+        float v = bbuf_.getFloat( pos_ );
+        pos_ += 4;
+        return v;
+    }
+
+    public double readDouble() throws IOException {
+        require( 8 );
+        double v = bbuf_.getDouble( pos_ );
+        pos_ += 8;
+        return v;
+    }
+
+    public void readFully( byte[] b ) throws IOException {
+        readFully( b, 0, b.length );
+    }
+
+    public void readFully( byte[] b, int off, int len ) throws IOException {
+        int n = Math.min( len, leng_ - pos_ );
+        System.arraycopy( buf_, pos_, b, off, n );
+        pos_ += n;
+        off += n;
+        len -= n;
+        while ( len > 0 ) {
+            int k = in_.read( b, off, len );
+            if ( k < 0 ) {
+                throw new EOFException();
+            }
+            off += k;
+            len -= k;
+        }
+    }
+
+    public int skipBytes( int n ) throws IOException {
+        int count = Math.min( n, leng_ - pos_ );
+        pos_ += count;
+        while ( count < n ) {
+            long k = in_.skip( n - count );
+            if ( k <= 0 ) {
+                if ( in_.read() < 0 ) {
+                    break;
+                }
+                k = 1;
+            }
+            count += (int) k;
+        }
+        return count;
+    }
+
+    /**
+     * Reads a line of text, terminated by a newline or carriage return
+     * character, treating each byte as a character.
+     */
+    public String readLine() throws IOException {
+        if ( ! hasMore() ) {
+            return null;
+        }
+        StringBuffer sbuf = new StringBuffer();
+        while ( hasMore() ) {
+            char c = (char) readUnsignedByte();
+            if ( c == '\n' ) {
+                break;
+            }
+            else if ( c == '\r' ) {
+                if ( hasMore() && buf_[ pos_ ] == '\n' ) {
+                    pos_++;
+                }
+                break;
+            }
+            sbuf.append( c );
+        }
+        return sbuf.toString();
+    }
+
+    public String readUTF() throws IOException {
+        return DataInputStream.readUTF( this );
+    }
+
+    /**
+     * Closes the underlying stream.
+     */
+    public void close() throws IOException {
+        in_.close();
+    }
+
+    /**
+     * Ensures that a given number of bytes are available in the buffer,
+     * throwing an EOFException if that is not possible.
+     *
+     * @param  n  number of bytes required, not greater than the buffer size
+     */
+    private void require( int n ) throws IOException {
+        if ( leng_ - pos_ < n && ! fill( n ) ) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Attempts to ensure that a given number of bytes are available
+     * in the buffer, reading from the underlying stream if necessary.
+     *
+     * @param  n  number of bytes required, not greater than the buffer size
+     * @return  true iff at least n bytes are now available
+     */
+    private boolean fill( int n ) throws IOException {
+        int nleft = leng_ - pos_;
+        if ( nleft >= n ) {
+            return true;
+        }
+        if ( pos_ > 0 ) {
+            System.arraycopy( buf_, pos_, buf_, 0, nleft );
+            pos_ = 0;
+            leng_ = nleft;
+        }
+        while ( leng_ < n ) {
+            int k = in_.read( buf_, leng_, buf_.length - leng_ );
+            if ( k < 0 ) {
+                return false;
+            }
+            leng_ += k;
+        }
+        return true;
+    }
+}
@@ -74,7 +74,8 @@ public class FitsPlusTableWriter extends VOTableFitsTableWriter {
 
     protected FitsTableSerializer createSerializer( StarTable table ) 
             throws IOException {
-        return new StandardFitsTableSerializer( table, false );
+        return new StandardFitsTableSerializer( table, false,
+                                                getSpillPolicy() );
     }
 
     /**
@@ -291,6 +291,9 @@ class ShortDecoder extends NumericDecoder {
     public boolean isNull( Object array, int index ) {
         return hasBad && ((short[]) array)[ index ] == bad;
     }
+    boolean isBad( short value ) {
+        return hasBad && value == bad;
+    }
 }
 
 class ScalarShortDecoder extends ShortDecoder {
@@ -304,6 +307,10 @@ class ScalarShortDecoder extends ShortDecoder {
     public Object decodeString( String txt ) {
         return scalarDecodeString( txt );
     }
+    public Object decodeStream( DataInput strm ) throws IOException {
+        short value = strm.readShort();
+        return isBad( value ) ? null : new Short( value );
+    }
 }
 
 class UnsignedByteDecoder extends ShortDecoder {
@@ -331,6 +338,10 @@ class ScalarUnsignedByteDecoder extends UnsignedByteDecoder {
     public Object decodeString( String txt ) {
         return scalarDecodeString( txt );
     }
+    public Object decodeStream( DataInput strm ) throws IOException {
+        short value = (short) strm.readUnsignedByte();
+        return isBad( value ) ? null : new Short( value );
+    }
 }
 
 class IntDecoder extends NumericDecoder {
@@ -362,6 +373,9 @@ class IntDecoder extends NumericDecoder {
     public boolean isNull( Object array, int index ) {
         return hasBad && ((int[]) array)[ index ] == bad;
     }
+    boolean isBad( int value ) {
+        return hasBad && value == bad;
+    }
 }
 
 class ScalarIntDecoder extends IntDecoder {
@@ -375,6 +389,10 @@ class ScalarIntDecoder extends IntDecoder {
     public Object decodeString( String txt ) {
         return scalarDecodeString( txt );
     }
+    public Object decodeStream( DataInput strm ) throws IOException {
+        int value = strm.readInt();
+        return isBad( value ) ? null : new Integer( value );
+    }
 }
 
 class LongDecoder extends NumericDecoder {
@@ -406,6 +424,9 @@ class LongDecoder extends NumericDecoder {
     public boolean isNull( Object array, int index ) {
         return hasBad && ((long[]) array)[ index ] == bad;
     }
+    boolean isBad( long value ) {
+        return hasBad && value == bad;
+    }
 }
 
 class ScalarLongDecoder extends LongDecoder {
@@ -419,6 +440,10 @@ class ScalarLongDecoder extends LongDecoder {
     public Object decodeString( String txt ) {
         return scalarDecodeString( txt );
     }
+    public Object decodeStream( DataInput strm ) throws IOException {
+        long value = strm.readLong();
+        return isBad( value ) ? null : new Long( value );
+    }
 }
 
 class FloatDecoder extends NumericDecoder {
@@ -460,6 +485,10 @@ class ScalarFloatDecoder extends FloatDecoder {
     public Object decodeString( String txt ) {
         return scalarDecodeString( txt );
     }
+    public Object decodeStream( DataInput strm ) throws IOException {
+        float value = strm.readFloat();
+        return Float.isNaN( value ) ? null : new Float( value );
+    }
 }
 
 class DoubleDecoder extends NumericDecoder {
@@ -501,4 +530,8 @@ class ScalarDoubleDecoder extends DoubleDecoder {
     public Object decodeString( String txt ) {
         return scalarDecodeString( txt );
     }
+    public Object decodeStream( DataInput strm ) throws IOException {
+        double value = strm.readDouble();
+        return Double.isNaN( value ) ? null : new Double( value );
+    }
 }
@@ -18,7 +18,6 @@ import uk.ac.starlink.fits.FitsTableBuilder;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.TableSink;
-import uk.ac.starlink.util.Base64InputStream;
 import uk.ac.starlink.util.PipeReaderThread;
 import uk.ac.starlink.util.URLUtils;
 
@@ -257,19 +256,24 @@ abstract class SkeletonDOMBuilder extends CustomDOMBuilder {
 
     /**
      * Custom handler for TABLEDATA element.
+     * Cell text is gathered here, but decoding is delegated to a
+     * {@link TabledataDecoder}, which may do it in other threads.
      */
     private class TabledataHandler extends NullContentHandler {
-        final Decoder[] decoders_;
+        final TabledataDecoder rowDecoder_;
         final int ncol_;
         StringBuffer cell_;
-        Object[] row_;
+        String[] row_;
         int icol_;
         boolean inCell_;
 
         TabledataHandler() throws SAXException {
             FieldElement[] fields = tableEl_.getFields();
             ncol_ = fields.length;
-            decoders_ = getDecoders( fields );
+            rowDecoder_ = tableHandler_ == null
+                        ? null
+                        : new TabledataDecoder( getDecoders( fields ),
+                                                tableHandler_ );
             cell_ = new StringBuffer();
             Element tabledataEl = (Element) getNewestNode();
             String comment = "Invisible data nodes were parsed directly";
@@ -288,7 +292,7 @@ abstract class SkeletonDOMBuilder extends CustomDOMBuilder {
                 inCell_ = true;
             }
             else if ( "TR".equals( tagName ) ) {
-                row_ = new Object[ ncol_ ];
+                row_ = new String[ ncol_ ];
                 icol_ = 0;
             }
         }
@@ -310,20 +314,22 @@ abstract class SkeletonDOMBuilder extends CustomDOMBuilder {
             String tagName = getVOTagName( namespaceURI, localName, qName );
             if ( inCell_ && "TD".equals( tagName ) && icol_ < ncol_
                          && row_ != null ) {
-                row_[ icol_ ] = cell_.length() > 0
-                         ? decoders_[ icol_ ].decodeString( cell_.toString() )
-                         : null;
+                row_[ icol_ ] = cell_.length() > 0 ? cell_.toString()
+                                                   : null;
                 icol_++;
                 inCell_ = false;
             }
             else if ( "TR".equals( tagName ) ) {
-                if ( tableHandler_ != null ) {
-                    tableHandler_.rowData( row_ );
+                if ( rowDecoder_ != null ) {
+                    rowDecoder_.addRow( row_ );
                 }
             }
             else if (  "TABLEDATA".equals( tagName ) ) {
                 defaultHandler_.endElement( namespaceURI, localName, qName );
                 setCustomHandler( basicHandler_ );
+                if ( rowDecoder_ != null ) {
+                    rowDecoder_.flush();
+                }
                 if ( tableHandler_ != null ) {
                     tableHandler_.endTable();
                 }
@@ -464,7 +470,7 @@ abstract class SkeletonDOMBuilder extends CustomDOMBuilder {
             reader_ = new PipeReaderThread() {
                 protected void doReading( InputStream datain )
                         throws IOException {
-                    InputStream in = new Base64InputStream(
+                    InputStream in = new BlockBase64InputStream(
                                          new BufferedInputStream( datain ) );
                     new FitsTableBuilder().streamStarTable( in, sink, ihdu );
                 }
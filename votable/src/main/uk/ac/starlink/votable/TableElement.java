@@ -16,7 +16,6 @@ import org.w3c.dom.Text;
 import uk.ac.starlink.fits.FitsTableBuilder;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
-import uk.ac.starlink.util.Base64InputStream;
 import uk.ac.starlink.util.DataSource;
 
 /**
@@ -268,7 +267,7 @@ public class TableElement extends VOElement {
                 datsrc = new DataSource() {
                     protected InputStream getRawInputStream() {
                         return new BufferedInputStream(
-                                   new Base64InputStream(
+                                   new BlockBase64InputStream(
                                        getTextChildrenStream( streamEl ) ) );
                     }
                 };
@@ -0,0 +1,191 @@
+package uk.ac.starlink.votable;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Decodes the cell text of TABLEDATA rows into typed rows, using a pool
+ * of worker threads.
+ * The SAX thread just accumulates the raw text of each row's TD elements
+ * and passes it to {@link #addRow}; rows are grouped into batches
+ * which are decoded concurrently, and the decoded rows are passed
+ * to the table handler, in their original order, from the thread
+ * which calls this object's methods.
+ * The handler therefore never sees calls from more than one thread.
+ *
+ * <p>Small tables, and the last batch of any table, are decoded
+ * directly in the calling thread, so the overhead for short tables
+ * is negligible.
+ *
+ * @author   Mark Taylor
+ * @since    18 Oct 2026
+ */
+class TabledataDecoder {
+
+    private final Decoder[] decoders_;
+    private final TableHandler handler_;
+    private final int batchSize_;
+    private final int maxPending_;
+    private final LinkedList<Future<Object[][]>> pending_;
+    private String[][] batch_;
+    private int nrow_;
+
+    /** Approximate number of cells decoded by each batch job. */
+    private static final int BATCH_CELLS = 16 * 1024;
+
+    /** Number of worker threads. */
+    private static final int NTHREAD =
+        Runtime.getRuntime().availableProcessors();
+
+    private static ExecutorService executor_;
+
+    /**
+     * Constructor.
+     *
+     * @param  decoders  one decoder for each column
+     * @param  handler   destination for decoded rows
+     */
+    public TabledataDecoder( Decoder[] decoders, TableHandler handler ) {
+        decoders_ = decoders;
+        handler_ = handler;
+        batchSize_ = Math.max( 1, BATCH_CELLS / Math.max( 1,
+                                                          decoders.length ) );
+        maxPending_ = 2 * NTHREAD;
+        pending_ = new LinkedList<Future<Object[][]>>();
+        batch_ = new String[ batchSize_ ][];
+    }
+
+    /**
+     * Adds the raw cell text for a row.
+     * Elements of the array may be null to indicate empty cells.
+     * This may cause earlier rows to be passed to the table handler.
+     *
+     * @param  cells  ncol-element array of TD contents
+     */
+    public void addRow( String[] cells ) throws SAXException {
+        batch_[ nrow_++ ] = cells;
+        if ( nrow_ == batchSize_ ) {
+            if ( NTHREAD > 1 ) {
+                while ( pending_.size() >= maxPending_ ) {
+                    deliver( waitFor( pending_.removeFirst() ) );
+                }
+                final String[][] batch = batch_;
+                pending_.add( getExecutor().submit( new Callable<Object[][]>() {
+                    public Object[][] call() {
+                        return decodeRows( batch, batch.length );
+                    }
+                } ) );
+                batch_ = new String[ batchSize_ ][];
+            }
+            else {
+                deliver( decodeRows( batch_, nrow_ ) );
+            }
+            nrow_ = 0;
+        }
+    }
+
+    /**
+     * Passes all outstanding rows to the table handler.
+     * Must be called after the last row has been added.
+     */
+    public void flush() throws SAXException {
+        while ( ! pending_.isEmpty() ) {
+            deliver( waitFor( pending_.removeFirst() ) );
+        }
+        if ( nrow_ > 0 ) {
+            deliver( decodeRows( batch_, nrow_ ) );
+            nrow_ = 0;
+        }
+    }
+
+    /**
+     * Decodes a batch of rows.
+     *
+     * @param  batch  array of rows of cell text
+     * @param  nrow   number of rows in batch to decode
+     * @return  nrow-element array of decoded rows
+     */
+    private Object[][] decodeRows( String[][] batch, int nrow ) {
+        int ncol = decoders_.length;
+        Object[][] rows = new Object[ nrow ][];
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            String[] cells = batch[ ir ];
+            Object[] row = new Object[ ncol ];
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                String cell = cells[ ic ];
+                row[ ic ] = cell == null ? null
+                                         : decoders_[ ic ].decodeString( cell );
+            }
+            rows[ ir ] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * Passes decoded rows to the table handler.
+     *
+     * @param  rows  rows
+     */
+    private void deliver( Object[][] rows ) throws SAXException {
+        for ( int ir = 0; ir < rows.length; ir++ ) {
+            handler_.rowData( rows[ ir ] );
+        }
+    }
+
+    /**
+     * Waits for the result of a batch decode job.
+     *
+     * @param  future  submitted job
+     * @return  decoded rows
+     */
+    private static Object[][] waitFor( Future<Object[][]> future )
+            throws SAXException {
+        try {
+            return future.get();
+        }
+        catch ( InterruptedException e ) {
+            throw (SAXException)
+                  new SAXException( "Interrupted", e ).initCause( e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                throw (SAXException)
+                      new SAXException( cause.getMessage(), e ).initCause( e );
+            }
+        }
+    }
+
+    /**
+     * Returns the executor service used for decoding batches.
+     * This is a lazily created, bounded pool of daemon threads
+     * shared by all instances of this class.
+     *
+     * @return  executor
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if ( executor_ == null ) {
+            executor_ =
+                Executors.newFixedThreadPool( NTHREAD, new ThreadFactory() {
+                    public Thread newThread( Runnable r ) {
+                        Thread th = new Thread( r, "TABLEDATA decoder" );
+                        th.setDaemon( true );
+                        return th;
+                    }
+                } );
+        }
+        return executor_;
+    }
+}
@@ -21,12 +21,12 @@ import uk.ac.starlink.fits.StandardFitsTableSerializer;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.PipelinedRowWriter;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.WrapperStarTable;
-import uk.ac.starlink.util.Base64OutputStream;
 import uk.ac.starlink.util.IntList;
 
 /**
@@ -667,12 +667,7 @@ public abstract class VOSerializer {
         Encoder[] encoders = new Encoder[ ncol ];
         for ( int icol = 0; icol < ncol; icol++ ) {
             ColumnInfo info = table.getColumnInfo( icol );
-            boolean isUnicode =
-                "unicodeChar"
-               .equals( info.getAuxDatumValue( VOStarTable.DATATYPE_INFO,
-                                               String.class ) );
-            encoders[ icol ] =
-                Encoder.getEncoder( info, magicNulls, isUnicode );
+            encoders[ icol ] = createEncoder( info, magicNulls );
             if ( encoders[ icol ] == null ) {
                 logger.warning( "Can't serialize column " + info + " of type " +
                                 info.getContentClass().getName() );
@@ -681,6 +676,47 @@ public abstract class VOSerializer {
         return encoders;
     }
 
+    /**
+     * Returns a new set of encoders equivalent to an existing set
+     * obtained from {@link #getEncoders}.
+     * Since encoders may not be thread-safe, this is used to get
+     * private copies for concurrent encoding.
+     *
+     * @param  encoders  existing encoders
+     * @param  table  the table they characterise
+     * @param  magicNulls  magic nulls flag used to create them
+     * @return  new encoders
+     */
+    private static Encoder[] copyEncoders( Encoder[] encoders,
+                                           StarTable table,
+                                           boolean magicNulls ) {
+        int ncol = encoders.length;
+        Encoder[] copies = new Encoder[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            if ( encoders[ icol ] != null ) {
+                copies[ icol ] =
+                    createEncoder( table.getColumnInfo( icol ), magicNulls );
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Returns an encoder for a single column.
+     *
+     * @param  info  column metadata
+     * @param  magicNulls  whether magic values should be used for nulls
+     * @return  encoder, or null if the column can't be serialized
+     */
+    private static Encoder createEncoder( ColumnInfo info,
+                                          boolean magicNulls ) {
+        boolean isUnicode =
+            "unicodeChar"
+           .equals( info.getAuxDatumValue( VOStarTable.DATATYPE_INFO,
+                                           String.class ) );
+        return Encoder.getEncoder( info, magicNulls, isUnicode );
+    }
+
     /**
      * Writes the FIELD elements corresponding to a set of Encoders.
      *
@@ -812,8 +848,9 @@ public abstract class VOSerializer {
             /* Write the STREAM element. */
             writer.write( "<STREAM encoding='base64'>" );
             writer.newLine();
-            Base64OutputStream b64out = 
-                new Base64OutputStream( new WriterOutputStream( writer ), 16 );
+            BlockBase64OutputStream b64out =
+                new BlockBase64OutputStream( new WriterOutputStream( writer ),
+                                             16 );
             DataOutputStream dataout = new DataOutputStream( b64out );
             streamData( dataout );
             dataout.flush();
@@ -859,10 +896,12 @@ public abstract class VOSerializer {
      */
     private static class BinaryVOSerializer extends StreamableVOSerializer {
         private final Encoder[] encoders;
+        private final boolean magicNulls;
 
         BinaryVOSerializer( StarTable table, boolean magicNulls ) {
             super( table, DataFormat.BINARY, "BINARY" );
             encoders = getEncoders( table, magicNulls );
+            this.magicNulls = magicNulls;
         }
 
         public void writeFields( BufferedWriter writer ) throws IOException {
@@ -870,18 +909,28 @@ public abstract class VOSerializer {
         }
 
         public void streamData( DataOutput out ) throws IOException {
-            int ncol = encoders.length;
-            RowSequence rseq = getTable().getRowSequence();
-            try {
-                while ( rseq.next() ) {
-                    Object[] row = rseq.getRow();
-                    for ( int icol = 0; icol < ncol; icol++ ) {
-                        Encoder encoder = encoders[ icol ];
-                        if ( encoder != null ) {
-                            encoder.encodeToStream( row[ icol ], out );
+            final StarTable table = getTable();
+            final int ncol = encoders.length;
+            PipelinedRowWriter rowWriter = new PipelinedRowWriter() {
+                protected RowEncoder createRowEncoder() {
+                    final Encoder[] encs =
+                        copyEncoders( encoders, table, magicNulls );
+                    return new RowEncoder() {
+                        public void encodeRow( Object[] row, DataOutput out )
+                                throws IOException {
+                            for ( int icol = 0; icol < ncol; icol++ ) {
+                                Encoder encoder = encs[ icol ];
+                                if ( encoder != null ) {
+                                    encoder.encodeToStream( row[ icol ], out );
+                                }
+                            }
                         }
-                    }
+                    };
                 }
+            };
+            RowSequence rseq = table.getRowSequence();
+            try {
+                rowWriter.writeRows( rseq, out );
             }
             finally {
                 rseq.close();
@@ -894,10 +943,12 @@ public abstract class VOSerializer {
      */
     private static class Binary2VOSerializer extends StreamableVOSerializer {
         private final Encoder[] encoders;
+        private final boolean magicNulls;
 
         Binary2VOSerializer( StarTable table, boolean magicNulls ) {
             super( table, DataFormat.BINARY2, "BINARY2" );
             encoders = getEncoders( table, magicNulls );
+            this.magicNulls = magicNulls;
         }
 
         public void writeFields( BufferedWriter writer ) throws IOException {
@@ -914,31 +965,41 @@ public abstract class VOSerializer {
                     icolList.add( icol );
                 }
             }
-            int[] icols = icolList.toIntArray();
-            int ncol = icols.length;
-            boolean[] nullFlags = new boolean[ ncol ];
+            final int[] icols = icolList.toIntArray();
+            final int ncol = icols.length;
+            final StarTable table = getTable();
+            PipelinedRowWriter rowWriter = new PipelinedRowWriter() {
+                protected RowEncoder createRowEncoder() {
+                    final Encoder[] encs =
+                        copyEncoders( encoders, table, magicNulls );
+                    final boolean[] nullFlags = new boolean[ ncol ];
+                    return new RowEncoder() {
+                        public void encodeRow( Object[] row, DataOutput out )
+                                throws IOException {
+
+                            /* Prepare and write the null-flag array. */
+                            for ( int jcol = 0; jcol < ncol; jcol++ ) {
+                                int icol = icols[ jcol ];
+                                Object cell = row[ icol ];
+                                nullFlags[ jcol ] = cell == null;
+                            }
+                            FlagIO.writeFlags( out, nullFlags );
+
+                            /* Write the data cells. */
+                            for ( int jcol = 0; jcol < ncol; jcol++ ) {
+                                int icol = icols[ jcol ];
+                                Object cell = row[ icol ];
+                                encs[ icol ].encodeToStream( cell, out );
+                            }
+                        }
+                    };
+                }
+            };
 
             /* Read data from table. */
-            RowSequence rseq = getTable().getRowSequence();
+            RowSequence rseq = table.getRowSequence();
             try {
-                while ( rseq.next() ) {
- 
-                    /* Prepare and write the null-flag array. */
-                    Object[] row = rseq.getRow();
-                    for ( int jcol = 0; jcol < ncol; jcol++ ) {
-                        int icol = icols[ jcol ];
-                        Object cell = row[ icol ];
-                        nullFlags[ jcol ] = cell == null;
-                    }
-                    FlagIO.writeFlags( out, nullFlags );
-
-                    /* Write the data cells. */
-                    for ( int jcol = 0; jcol < ncol; jcol++ ) {
-                        int icol = icols[ jcol ];
-                        Object cell = row[ icol ];
-                        encoders[ icol ].encodeToStream( cell, out );
-                    }
-                }
+                rowWriter.writeRows( rseq, out );
             }
             finally {
                 rseq.close();
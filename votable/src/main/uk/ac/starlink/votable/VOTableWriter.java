@@ -21,7 +21,6 @@ import uk.ac.starlink.table.StarTableWriter;
 import uk.ac.starlink.table.TableFormatException;
 import uk.ac.starlink.table.TableSequence;
 import uk.ac.starlink.table.Tables;
-import uk.ac.starlink.util.Base64OutputStream;
 import uk.ac.starlink.util.IOUtils;
 
 /**
@@ -280,9 +279,8 @@ public class VOTableWriter implements StarTableWriter, MultiStarTableWriter {
                     writer.write( "<STREAM encoding='base64'>" );
                     writer.newLine();
                     writer.flush();
-                    Base64OutputStream b64strm = 
-                        new Base64OutputStream( new BufferedOutputStream( out ),
-                                                16 );
+                    BlockBase64OutputStream b64strm =
+                        new BlockBase64OutputStream( out, 16 );
                     DataOutputStream dataout = new DataOutputStream( b64strm );
                     streamer.streamData( dataout );
                     dataout.flush();
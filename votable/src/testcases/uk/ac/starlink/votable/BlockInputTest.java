@@ -0,0 +1,159 @@
+package uk.ac.starlink.votable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import junit.framework.TestCase;
+import uk.ac.starlink.util.Base64OutputStream;
+
+public class BlockInputTest extends TestCase {
+
+    public BlockInputTest( String name ) {
+        super( name );
+    }
+
+    public void testBase64() throws IOException {
+        Random rnd = new Random( 2299 );
+        int[] sizes = { 0, 1, 2, 3, 4, 5, 99, 1000, 100001 };
+        int[] bufsizs = {
+            4, 5, 17, 1024, BlockBase64InputStream.DEFAULT_BUFSIZ,
+        };
+        for ( int is = 0; is < sizes.length; is++ ) {
+            byte[] data = new byte[ sizes[ is ] ];
+            rnd.nextBytes( data );
+            byte[] b64 = encode( data );
+            for ( int ib = 0; ib < bufsizs.length; ib++ ) {
+                InputStream in =
+                    new BlockBase64InputStream(
+                        new ByteArrayInputStream( b64 ), bufsizs[ ib ] );
+                assertArrayEquals( data, readAll( in ) );
+            }
+        }
+        assertArrayEquals( "Man".getBytes(), decode( " TW\nFu " ) );
+        assertArrayEquals( "Ma".getBytes(), decode( "TWE=" ) );
+        assertArrayEquals( "M".getBytes(), decode( "TQ==junk" ) );
+        try {
+            decode( "TWFuT" );
+            fail();
+        }
+        catch ( EOFException e ) {
+        }
+    }
+
+    public void testBase64Output() throws IOException {
+        Random rnd = new Random( 23 );
+        int[] sizes = { 0, 1, 2, 3, 47, 48, 49, 96, 1000, 200001 };
+        for ( int is = 0; is < sizes.length; is++ ) {
+            byte[] data = new byte[ sizes[ is ] ];
+            rnd.nextBytes( data );
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            OutputStream out = new BlockBase64OutputStream( bout, 16 );
+            int off = 0;
+            while ( off < data.length ) {
+                int n = Math.min( data.length - off, rnd.nextInt( 200 ) );
+                if ( n == 1 ) {
+                    out.write( data[ off ] );
+                }
+                else {
+                    out.write( data, off, n );
+                }
+                off += n;
+            }
+            out.close();
+            assertArrayEquals( encode( data ), bout.toByteArray() );
+        }
+    }
+
+    public void testDataInput() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bout );
+        Random rnd = new Random( 101 );
+        int n = 5000;
+        for ( int i = 0; i < n; i++ ) {
+            out.writeByte( i );
+            out.writeShort( i * 3 );
+            out.writeChar( 'a' + i % 26 );
+            out.writeInt( rnd.nextInt() );
+            out.writeLong( rnd.nextLong() );
+            out.writeFloat( rnd.nextFloat() );
+            out.writeDouble( rnd.nextDouble() );
+            out.writeUTF( "x" + i );
+            out.write( new byte[ i % 50 ] );
+        }
+        out.close();
+        byte[] buf = bout.toByteArray();
+        int[] bufsizs = { 8, 9, 100, BlockDataInput.DEFAULT_BUFSIZ };
+        for ( int ib = 0; ib < bufsizs.length; ib++ ) {
+            DataInputStream in0 =
+                new DataInputStream( new ByteArrayInputStream( buf ) );
+            BlockDataInput in1 =
+                new BlockDataInput( new ByteArrayInputStream( buf ),
+                                    bufsizs[ ib ] );
+            for ( int i = 0; i < n; i++ ) {
+                assertTrue( in1.hasMore() );
+                assertEquals( in0.readUnsignedByte(), in1.readUnsignedByte() );
+                assertEquals( in0.readShort(), in1.readShort() );
+                assertEquals( in0.readChar(), in1.readChar() );
+                assertEquals( in0.readInt(), in1.readInt() );
+                assertEquals( in0.readLong(), in1.readLong() );
+                assertEquals( in0.readFloat(), in1.readFloat() );
+                assertEquals( in0.readDouble(), in1.readDouble() );
+                assertEquals( in0.readUTF(), in1.readUTF() );
+                if ( i % 2 == 0 ) {
+                    byte[] b0 = new byte[ i % 50 ];
+                    byte[] b1 = new byte[ i % 50 ];
+                    in0.readFully( b0 );
+                    in1.readFully( b1 );
+                    assertArrayEquals( b0, b1 );
+                }
+                else {
+                    assertEquals( in0.skipBytes( i % 50 ),
+                                  in1.skipBytes( i % 50 ) );
+                }
+            }
+            assertTrue( ! in1.hasMore() );
+            try {
+                in1.readInt();
+                fail();
+            }
+            catch ( EOFException e ) {
+            }
+        }
+    }
+
+    private static byte[] encode( byte[] data ) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OutputStream out = new Base64OutputStream( bout, 16 );
+        out.write( data );
+        out.close();
+        return bout.toByteArray();
+    }
+
+    private static byte[] decode( String txt ) throws IOException {
+        return readAll( new BlockBase64InputStream(
+                            new ByteArrayInputStream( txt.getBytes() ) ) );
+    }
+
+    private static byte[] readAll( InputStream in ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[ 777 ];
+        for ( int n; ( n = in.read( buf ) ) >= 0; ) {
+            out.write( buf, 0, n );
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static void assertArrayEquals( byte[] b0, byte[] b1 ) {
+        assertEquals( b0.length, b1.length );
+        for ( int i = 0; i < b0.length; i++ ) {
+            assertEquals( b0[ i ], b1[ i ] );
+        }
+    }
+}
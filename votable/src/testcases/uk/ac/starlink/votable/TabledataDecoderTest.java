@@ -0,0 +1,58 @@
+package uk.ac.starlink.votable;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.xml.sax.SAXException;
+import uk.ac.starlink.table.StarTable;
+
+public class TabledataDecoderTest extends TestCase {
+
+    public TabledataDecoderTest( String name ) {
+        super( name );
+    }
+
+    public void testOrder() throws SAXException {
+        Decoder[] decoders = new Decoder[] {
+            Decoder.makeDecoder( "int", new long[ 0 ], "-1" ),
+            Decoder.makeDecoder( "double", new long[ 0 ], null ),
+            Decoder.makeDecoder( "char", new long[] { -1 }, null ),
+            Decoder.makeDecoder( "short", new long[] { 2 }, null ),
+        };
+        int[] nrows = { 0, 1, 4095, 4096, 4097, 100000 };
+        for ( int in = 0; in < nrows.length; in++ ) {
+            int nrow = nrows[ in ];
+            final List<Object[]> rows = new ArrayList<Object[]>();
+            TableHandler handler = new TableHandler() {
+                public void startTable( StarTable meta ) {
+                }
+                public void rowData( Object[] row ) {
+                    rows.add( row );
+                }
+                public void endTable() {
+                }
+            };
+            TabledataDecoder tdec = new TabledataDecoder( decoders, handler );
+            for ( int i = 0; i < nrow; i++ ) {
+                tdec.addRow( new String[] {
+                    i % 10 == 0 ? "-1" : Integer.toString( i ),
+                    i % 7 == 0 ? null : Double.toString( i * 0.5 ),
+                    "r" + i,
+                    ( i % 1000 ) + " " + ( -i % 1000 ),
+                } );
+            }
+            tdec.flush();
+            assertEquals( nrow, rows.size() );
+            for ( int i = 0; i < nrow; i++ ) {
+                Object[] row = rows.get( i );
+                assertEquals( i % 10 == 0 ? null : new Integer( i ), row[ 0 ] );
+                assertEquals( i % 7 == 0 ? null : new Double( i * 0.5 ),
+                              row[ 1 ] );
+                assertEquals( "r" + i, row[ 2 ] );
+                short[] pair = (short[]) row[ 3 ];
+                assertEquals( (short) ( i % 1000 ), pair[ 0 ] );
+                assertEquals( (short) ( -i % 1000 ), pair[ 1 ] );
+            }
+        }
+    }
+}